@@ -5,10 +5,12 @@ import com.yourcompany.agritrade.catalog.dto.request.ProductRejectRequest;
 import com.yourcompany.agritrade.catalog.dto.response.CategoryResponse;
 import com.yourcompany.agritrade.catalog.dto.response.ProductDetailResponse;
 import com.yourcompany.agritrade.catalog.dto.response.ProductSummaryResponse;
+import com.yourcompany.agritrade.catalog.service.CatalogCacheService;
 import com.yourcompany.agritrade.catalog.service.CategoryService;
 import com.yourcompany.agritrade.catalog.service.ProductService;
 import com.yourcompany.agritrade.common.dto.ApiResponse;
 import jakarta.validation.Valid;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -27,6 +29,7 @@ public class AdminCatalogController {
 
   private final CategoryService categoryService;
   private final ProductService productService;
+  private final CatalogCacheService catalogCacheService;
 
   // --- Category Management ---
   @PostMapping("/categories")
@@ -90,10 +93,26 @@ public class AdminCatalogController {
     return ResponseEntity.ok(ApiResponse.success(product, "Product rejected successfully"));
   }
 
+  @PostMapping("/products/{id}/hot-stock")
+  public ResponseEntity<ApiResponse<ProductDetailResponse>> setHotStockMode(
+      @PathVariable Long id, @RequestParam boolean enabled) {
+
+    ProductDetailResponse product = productService.setHotStockMode(id, enabled);
+    return ResponseEntity.ok(ApiResponse.success(product, "Hot stock mode updated successfully"));
+  }
+
   @DeleteMapping("/products/{id}/force")
   public ResponseEntity<ApiResponse<Void>> forceDeleteProduct(@PathVariable Long id) {
 
     productService.forceDeleteProduct(id);
     return ResponseEntity.ok(ApiResponse.success("Product permanently deleted"));
   }
+
+  // --- Catalog Cache ---
+  @GetMapping("/catalog/cache-stats")
+  public ResponseEntity<
+          ApiResponse<Map<CatalogCacheService.Region, CatalogCacheService.RegionStats>>>
+      getCatalogCacheStats() {
+    return ResponseEntity.ok(ApiResponse.success(catalogCacheService.getStats()));
+  }
 }
@@ -1,5 +1,6 @@
 package com.yourcompany.agritrade.catalog.domain;
 
+import com.yourcompany.agritrade.common.util.SearchTextNormalizer;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
@@ -17,6 +18,8 @@ import org.hibernate.annotations.Where;
 @Table(
     name = "products",
     uniqueConstraints = {@UniqueConstraint(columnNames = "slug")})
+// Chỉ mục FULLTEXT (ngram) trên search_name, search_text được tạo bởi
+// ProductSearchIndexInitializer vì JPA không khai báo được loại chỉ mục này
 @Getter
 @Setter
 @NoArgsConstructor
@@ -78,6 +81,14 @@ public class Product {
   @Column(nullable = false)
   private Integer favoriteCount = 0;
 
+  // Chế độ "hot stock" (flash sale): tồn kho được giữ chỗ trong Redis và ghi trễ xuống DB
+  @Column(nullable = false)
+  private boolean hotStockEnabled = false;
+
+  // Mã lượt flush hot stock gần nhất đã cộng vào stockQuantity (chặn cộng lặp khi flush lại)
+  @Column(length = 36)
+  private String hotStockFlushId;
+
   @OneToMany(
       mappedBy = "product",
       cascade = CascadeType.ALL,
@@ -114,4 +125,19 @@ public class Product {
 
   @Column(nullable = false)
   private boolean isDeleted = false;
+
+  // Bản sao không dấu, chữ thường của name / name + description, phục vụ tìm kiếm toàn văn
+  @Column(length = 255)
+  private String searchName;
+
+  @Lob
+  @Column(columnDefinition = "LONGTEXT")
+  private String searchText;
+
+  @PrePersist
+  @PreUpdate
+  void refreshSearchColumns() {
+    searchName = SearchTextNormalizer.truncate(SearchTextNormalizer.fold(name), 255);
+    searchText = SearchTextNormalizer.foldAll(name, description);
+  }
 }
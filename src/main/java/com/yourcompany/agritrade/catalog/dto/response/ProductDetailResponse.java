@@ -36,6 +36,7 @@ public class ProductDetailResponse {
   private LocalDate harvestDate;
   private LocalDateTime lastStockUpdate;
   private boolean negotiablePrice;
+  private boolean hotStockEnabled;
   private String wholesaleUnit;
   private BigDecimal referenceWholesalePrice;
 
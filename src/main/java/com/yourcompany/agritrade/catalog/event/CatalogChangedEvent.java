@@ -0,0 +1,56 @@
+package com.yourcompany.agritrade.catalog.event;
+
+import com.yourcompany.agritrade.catalog.domain.Product;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Dữ liệu catalog public đã thay đổi. Được phát bên trong transaction ghi và chỉ được cache catalog
+ * xử lý sau khi transaction commit.
+ *
+ * @param scope Mức ảnh hưởng của thay đổi.
+ * @param productIds Các sản phẩm bị ảnh hưởng (rỗng với {@link Scope#CATEGORY}).
+ * @param productSlugs Slug hiện tại của các sản phẩm đó, kèm slug cũ nếu vừa đổi.
+ */
+public record CatalogChangedEvent(Scope scope, Set<Long> productIds, Set<String> productSlugs) {
+
+  public enum Scope {
+    /** Tồn kho thay đổi (checkout/hủy đơn): chỉ làm mới chi tiết sản phẩm. */
+    STOCK,
+    /** Sản phẩm được duyệt/sửa/xóa: làm mới chi tiết và các trang danh sách. */
+    PRODUCT,
+    /** Danh mục thay đổi: làm mới cây danh mục và mọi dữ liệu sản phẩm có nhúng danh mục. */
+    CATEGORY
+  }
+
+  public static CatalogChangedEvent stockChanged(Collection<Product> products) {
+    return of(Scope.STOCK, products, List.of());
+  }
+
+  public static CatalogChangedEvent productChanged(Product product, String... previousSlugs) {
+    return of(Scope.PRODUCT, List.of(product), Arrays.asList(previousSlugs));
+  }
+
+  public static CatalogChangedEvent categoryChanged() {
+    return new CatalogChangedEvent(Scope.CATEGORY, Set.of(), Set.of());
+  }
+
+  private static CatalogChangedEvent of(
+      Scope scope, Collection<Product> products, Collection<String> extraSlugs) {
+    Set<Long> ids = new HashSet<>();
+    Set<String> slugs = new HashSet<>(extraSlugs);
+    slugs.remove(null);
+    for (Product product : products) {
+      if (product.getId() != null) {
+        ids.add(product.getId());
+      }
+      if (product.getSlug() != null) {
+        slugs.add(product.getSlug());
+      }
+    }
+    return new CatalogChangedEvent(scope, Set.copyOf(ids), Set.copyOf(slugs));
+  }
+}
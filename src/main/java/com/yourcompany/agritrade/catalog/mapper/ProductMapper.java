@@ -3,21 +3,26 @@ package com.yourcompany.agritrade.catalog.mapper;
 import com.yourcompany.agritrade.catalog.domain.Product;
 import com.yourcompany.agritrade.catalog.domain.ProductImage;
 import com.yourcompany.agritrade.catalog.dto.request.ProductRequest;
+import com.yourcompany.agritrade.catalog.dto.response.CategoryInfoResponse;
 import com.yourcompany.agritrade.catalog.dto.response.FarmerInfoResponse;
 import com.yourcompany.agritrade.catalog.dto.response.ProductDetailResponse;
 import com.yourcompany.agritrade.catalog.dto.response.ProductInfoResponse;
 import com.yourcompany.agritrade.catalog.dto.response.ProductSummaryResponse;
+import com.yourcompany.agritrade.catalog.repository.projection.ProductSummaryView;
 import com.yourcompany.agritrade.common.service.FileStorageService;
 import com.yourcompany.agritrade.usermanagement.domain.FarmerProfile;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import org.mapstruct.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.StringUtils;
 
 @Mapper(
     componentModel = "spring",
@@ -28,6 +33,8 @@ import org.springframework.beans.factory.annotation.Autowired;
     })
 public abstract class ProductMapper {
 
+  private static final String PLACEHOLDER_IMAGE = "assets/images/placeholder-image.png";
+
   @Autowired protected FarmerInfoMapper farmerInfoMapper;
 
   @Autowired protected FileStorageService fileStorageService;
@@ -45,17 +52,88 @@ public abstract class ProductMapper {
 
   @AfterMapping
   protected void setIsNewFlag(@MappingTarget ProductSummaryResponse dto, Product product) {
-    if (product.getCreatedAt() != null) {
-      //  Sản phẩm tạo trong vòng 7 ngày gần nhất được coi là mới
-      long daysSinceCreation = ChronoUnit.DAYS.between(product.getCreatedAt(), LocalDateTime.now());
-      dto.setNew(daysSinceCreation <= 7);
-    } else {
-      dto.setNew(false); // Hoặc true nếu muốn coi sp không có ngày tạo là mới?
-    }
+    dto.setNew(isNewProduct(product.getCreatedAt()));
   }
 
   public abstract List<ProductSummaryResponse> toProductSummaryResponseList(List<Product> products);
 
+  /**
+   * Map một trang projection sang ProductSummaryResponse, cùng kết quả với {@link
+   * #toProductSummaryResponse(Product)}. URL ảnh đại diện được ký theo lô một lần cho cả trang.
+   */
+  public List<ProductSummaryResponse> toProductSummaryResponses(List<ProductSummaryView> views) {
+    List<String> blobPaths =
+        views.stream()
+            .map(ProductSummaryView::thumbnailBlobPath)
+            .filter(StringUtils::hasText)
+            .distinct()
+            .toList();
+    Map<String, String> urls = Map.of();
+    if (!blobPaths.isEmpty()) {
+      try {
+        urls = fileStorageService.getFileUrls(blobPaths);
+      } catch (Exception e) {
+        // Giống getDefaultImageUrl: lỗi lấy URL thì dùng ảnh placeholder
+      }
+    }
+    List<ProductSummaryResponse> responses = new ArrayList<>(views.size());
+    for (ProductSummaryView view : views) {
+      String url = view.thumbnailBlobPath() != null ? urls.get(view.thumbnailBlobPath()) : null;
+      responses.add(toProductSummaryResponse(view, url != null ? url : PLACEHOLDER_IMAGE));
+    }
+    return responses;
+  }
+
+  protected ProductSummaryResponse toProductSummaryResponse(
+      ProductSummaryView view, String thumbnailUrl) {
+    ProductSummaryResponse dto = new ProductSummaryResponse();
+    dto.setId(view.id());
+    dto.setName(view.name());
+    dto.setSlug(view.slug());
+    dto.setThumbnailUrl(thumbnailUrl);
+    dto.setPrice(view.price());
+    dto.setUnit(view.unit());
+    dto.setStockQuantity(view.stockQuantity());
+    dto.setAverageRating(view.averageRating());
+    dto.setProvinceCode(view.provinceCode());
+    dto.setStatus(view.status());
+    dto.setCreatedAt(view.createdAt());
+    dto.setUpdatedAt(view.updatedAt());
+    dto.setB2bEnabled(Boolean.TRUE.equals(view.b2bEnabled()));
+    dto.setNew(isNewProduct(view.createdAt()));
+    dto.setHarvestDate(view.harvestDate());
+    dto.setLastStockUpdate(view.lastStockUpdate());
+    dto.setNegotiablePrice(Boolean.TRUE.equals(view.negotiablePrice()));
+    dto.setWholesaleUnit(view.wholesaleUnit());
+    dto.setReferenceWholesalePrice(view.referenceWholesalePrice());
+
+    if (view.categoryId() != null) {
+      CategoryInfoResponse category = new CategoryInfoResponse();
+      category.setId(view.categoryId());
+      category.setName(view.categoryName());
+      category.setSlug(view.categorySlug());
+      dto.setCategory(category);
+    }
+
+    if (view.farmerId() != null) {
+      FarmerInfoResponse farmerInfo = new FarmerInfoResponse();
+      farmerInfo.setFarmerId(view.farmerId());
+      farmerInfo.setFullName(view.farmerFullName());
+      farmerInfo.setFarmerAvatarUrl(view.farmerAvatarUrl());
+      farmerInfo.setProvinceCode(view.farmerProvinceCode());
+      // Fallback giống mapProductToFarmerInfo
+      farmerInfo.setFarmName(
+          StringUtils.hasLength(view.farmName()) ? view.farmName() : view.farmerFullName());
+      dto.setFarmerInfo(farmerInfo);
+    }
+    return dto;
+  }
+
+  //  Sản phẩm tạo trong vòng 7 ngày gần nhất được coi là mới
+  private boolean isNewProduct(LocalDateTime createdAt) {
+    return createdAt != null && ChronoUnit.DAYS.between(createdAt, LocalDateTime.now()) <= 7;
+  }
+
   @Mapping(target = "category", source = "category") // MapStruct dùng CategoryMapper
   @Mapping(
       target = "farmer",
@@ -81,6 +159,7 @@ public abstract class ProductMapper {
   @Mapping(target = "updatedAt", ignore = true)
   @Mapping(target = "version", ignore = true) // Bỏ qua version khi tạo mới
   @Mapping(target = "rejectReason", ignore = true) // Bỏ qua rejectReason khi tạo mới
+  @Mapping(target = "hotStockEnabled", ignore = true) // Chỉ Admin bật/tắt
   @Mapping(target = "b2bEnabled", source = "b2bEnabled")
   public abstract Product requestToProduct(ProductRequest request);
 
@@ -99,6 +178,7 @@ public abstract class ProductMapper {
   @Mapping(target = "updatedAt", ignore = true)
   @Mapping(target = "b2bEnabled", source = "b2bEnabled")
   @Mapping(target = "version", ignore = true) // Không map version
+  @Mapping(target = "hotStockEnabled", ignore = true)
   public abstract void updateProductFromRequest(
       ProductRequest request, @MappingTarget Product product);
 
@@ -113,7 +193,7 @@ public abstract class ProductMapper {
   String getDefaultImageUrl(Set<ProductImage> images) {
     if (images == null || images.isEmpty()) {
 
-      return "assets/images/placeholder-image.png"; // Trả về placeholder nếu không có ảnh
+      return PLACEHOLDER_IMAGE; // Trả về placeholder nếu không có ảnh
     }
     Optional<ProductImage> imageOpt =
         images.stream()
@@ -127,10 +207,10 @@ public abstract class ProductMapper {
         return fileStorageService.getFileUrl(imageOpt.get().getBlobPath());
       } catch (Exception e) {
 
-        return "assets/images/placeholder-image.png";
+        return PLACEHOLDER_IMAGE;
       }
     }
-    return "assets/images/placeholder-image.png";
+    return PLACEHOLDER_IMAGE;
   }
 
   @Named("mapProductToFarmerInfo")
@@ -3,18 +3,25 @@ package com.yourcompany.agritrade.catalog.repository;
 import com.yourcompany.agritrade.catalog.domain.Product;
 import com.yourcompany.agritrade.catalog.domain.ProductStatus;
 import com.yourcompany.agritrade.catalog.dto.response.TopProductResponse;
+import jakarta.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 // Kế thừa JpaSpecificationExecutor để dùng Specification API cho filter động
 public interface ProductRepository
-    extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
+    extends JpaRepository<Product, Long>,
+        JpaSpecificationExecutor<Product>,
+        ProductSummaryQueryRepository {
 
   Optional<Product> findBySlug(String slug);
 
@@ -127,4 +134,48 @@ public interface ProductRepository
 
   @Query("SELECT p FROM Product p LEFT JOIN FETCH p.images WHERE p.id IN :ids")
   List<Product> findByIdInWithImages(@Param("ids") List<Long> ids);
+
+  /**
+   * Tải và khóa ghi (SELECT ... FOR UPDATE) nhiều sản phẩm trong một truy vấn. Các hàng luôn được
+   * khóa theo thứ tự id tăng dần để hai giỏ hàng có sản phẩm chung không thể deadlock lẫn nhau.
+   *
+   * @param ids Danh sách ID sản phẩm cần khóa.
+   * @return Danh sách sản phẩm (chưa bị xóa mềm) đã được khóa, sắp xếp theo id.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT p FROM Product p WHERE p.id IN :ids ORDER BY p.id ASC")
+  List<Product> findAllByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+  // --- Hot stock (ledger Redis + ghi trễ) ---
+
+  @Query("SELECT p.id FROM Product p WHERE p.hotStockEnabled = true")
+  List<Long> findHotStockProductIds();
+
+  /**
+   * Cộng dồn một lượng chênh lệch tồn kho (âm khi bán, dương khi hoàn kho) mà không cần đọc entity.
+   * Tăng version để các thao tác optimistic đang giữ bản cũ của sản phẩm bị phát hiện. Bỏ qua (trả
+   * về 0) nếu lượt flush {@code flushId} đã được áp dụng cho sản phẩm này.
+   */
+  @Modifying
+  @Query(
+      "UPDATE Product p SET p.stockQuantity = p.stockQuantity + :delta, "
+          + "p.version = p.version + 1, p.lastStockUpdate = :now, p.hotStockFlushId = :flushId "
+          + "WHERE p.id = :productId "
+          + "AND (p.hotStockFlushId IS NULL OR p.hotStockFlushId <> :flushId)")
+  int applyStockDelta(
+      @Param("productId") Long productId,
+      @Param("delta") int delta,
+      @Param("flushId") String flushId,
+      @Param("now") LocalDateTime now);
+
+  // Trừ kho có điều kiện (không vượt quá tồn kho hiện có). Trả về 0 nếu không đủ hàng.
+  @Modifying
+  @Query(
+      "UPDATE Product p SET p.stockQuantity = p.stockQuantity - :quantity, "
+          + "p.version = p.version + 1, p.lastStockUpdate = :now "
+          + "WHERE p.id = :productId AND p.stockQuantity >= :quantity")
+  int decrementStockIfAvailable(
+      @Param("productId") Long productId,
+      @Param("quantity") int quantity,
+      @Param("now") LocalDateTime now);
 }
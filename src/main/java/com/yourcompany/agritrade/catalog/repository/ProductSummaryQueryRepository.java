@@ -0,0 +1,20 @@
+package com.yourcompany.agritrade.catalog.repository;
+
+import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.catalog.repository.projection.ProductSummaryView;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Truy vấn danh sách sản phẩm dạng projection, dùng chung các Specification của ProductRepository.
+ */
+public interface ProductSummaryQueryRepository {
+
+  /**
+   * Tương đương {@code findAll(spec, pageable)} nhưng chỉ đọc các cột tóm tắt. Specification truyền
+   * vào không được fetch association (ví dụ {@code fetchFarmerAndProfile}) vì kết quả không phải
+   * entity.
+   */
+  Page<ProductSummaryView> findSummaries(Specification<Product> spec, Pageable pageable);
+}
@@ -0,0 +1,119 @@
+package com.yourcompany.agritrade.catalog.repository;
+
+import com.yourcompany.agritrade.catalog.domain.Category;
+import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.catalog.domain.ProductImage;
+import com.yourcompany.agritrade.catalog.repository.projection.ProductSummaryView;
+import com.yourcompany.agritrade.usermanagement.domain.FarmerProfile;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import java.util.List;
+import org.hibernate.query.criteria.JpaSubQuery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+/** Cài đặt fragment {@link ProductSummaryQueryRepository} bằng Criteria API. */
+class ProductSummaryQueryRepositoryImpl implements ProductSummaryQueryRepository {
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Override
+  public Page<ProductSummaryView> findSummaries(Specification<Product> spec, Pageable pageable) {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<ProductSummaryView> query = cb.createQuery(ProductSummaryView.class);
+    Root<Product> root = query.from(Product.class);
+    Join<Product, Category> category = root.join("category", JoinType.INNER);
+    Join<Product, User> farmer = root.join("farmer", JoinType.INNER);
+    Join<User, FarmerProfile> profile = farmer.join("farmerProfile", JoinType.LEFT);
+
+    query.select(
+        cb.construct(
+            ProductSummaryView.class,
+            root.get("id"),
+            root.get("name"),
+            root.get("slug"),
+            root.get("price"),
+            root.get("unit"),
+            root.get("stockQuantity"),
+            root.get("averageRating"),
+            root.get("provinceCode"),
+            root.get("status"),
+            root.get("createdAt"),
+            root.get("updatedAt"),
+            root.get("b2bEnabled"),
+            root.get("harvestDate"),
+            root.get("lastStockUpdate"),
+            root.get("negotiablePrice"),
+            root.get("wholesaleUnit"),
+            root.get("referenceWholesalePrice"),
+            category.get("id"),
+            category.get("name"),
+            category.get("slug"),
+            farmer.get("id"),
+            farmer.get("fullName"),
+            farmer.get("avatarUrl"),
+            profile.get("farmName"),
+            profile.get("provinceCode"),
+            thumbnailBlobPath(query, root, cb)));
+    Predicate predicate = spec == null ? null : spec.toPredicate(root, query, cb);
+    if (predicate != null) {
+      query.where(predicate);
+    }
+    // Specification có thể tự đặt ORDER BY (sort=relevance); chỉ ghi đè khi Pageable có sort
+    if (pageable.getSort().isSorted()) {
+      query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+    }
+
+    TypedQuery<ProductSummaryView> typedQuery = entityManager.createQuery(query);
+    if (pageable.isPaged()) {
+      typedQuery.setFirstResult((int) pageable.getOffset());
+      typedQuery.setMaxResults(pageable.getPageSize());
+    }
+    List<ProductSummaryView> content = typedQuery.getResultList();
+    return PageableExecutionUtils.getPage(content, pageable, () -> count(spec));
+  }
+
+  /**
+   * Subquery tương quan lấy ảnh đại diện giống ProductMapper: ảnh isDefault trước, sau đó theo
+   * displayOrder. Chạy trên index product_id của product_images, mỗi dòng chỉ trả về một blobPath.
+   */
+  private Subquery<String> thumbnailBlobPath(
+      CriteriaQuery<?> query, Root<Product> product, CriteriaBuilder cb) {
+    Subquery<String> subquery = query.subquery(String.class);
+    Root<ProductImage> image = subquery.from(ProductImage.class);
+    subquery.select(image.get("blobPath")).where(cb.equal(image.get("product"), product));
+    ((JpaSubQuery<String>) subquery)
+        .orderBy(
+            cb.desc(image.get("isDefault")),
+            cb.asc(image.get("displayOrder")),
+            cb.asc(image.get("id")))
+        .fetch(1);
+    return subquery;
+  }
+
+  private long count(Specification<Product> spec) {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+    Root<Product> root = countQuery.from(Product.class);
+    Predicate predicate = spec == null ? null : spec.toPredicate(root, countQuery, cb);
+    if (predicate != null) {
+      countQuery.where(predicate);
+    }
+    countQuery.select(countQuery.isDistinct() ? cb.countDistinct(root) : cb.count(root));
+    // Specification có thể đã thêm ORDER BY, không cần cho COUNT
+    countQuery.orderBy(List.of());
+    return entityManager.createQuery(countQuery).getSingleResult();
+  }
+}
@@ -0,0 +1,42 @@
+package com.yourcompany.agritrade.catalog.repository.projection;
+
+import com.yourcompany.agritrade.catalog.domain.ProductStatus;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Một dòng danh sách sản phẩm đọc bằng constructor projection: chỉ các cột mà {@code
+ * ProductSummaryResponse} cần (không có description/search_text), kèm danh mục, farmer và đường dẫn
+ * ảnh đại diện lấy trong cùng một câu SQL.
+ *
+ * @param thumbnailBlobPath blobPath của ảnh mặc định (hoặc ảnh có displayOrder nhỏ nhất), null nếu
+ *     sản phẩm chưa có ảnh.
+ */
+public record ProductSummaryView(
+    Long id,
+    String name,
+    String slug,
+    BigDecimal price,
+    String unit,
+    Integer stockQuantity,
+    Float averageRating,
+    String provinceCode,
+    ProductStatus status,
+    LocalDateTime createdAt,
+    LocalDateTime updatedAt,
+    Boolean b2bEnabled,
+    LocalDate harvestDate,
+    LocalDateTime lastStockUpdate,
+    Boolean negotiablePrice,
+    String wholesaleUnit,
+    BigDecimal referenceWholesalePrice,
+    Integer categoryId,
+    String categoryName,
+    String categorySlug,
+    Long farmerId,
+    String farmerFullName,
+    String farmerAvatarUrl,
+    String farmName,
+    String farmerProvinceCode,
+    String thumbnailBlobPath) {}
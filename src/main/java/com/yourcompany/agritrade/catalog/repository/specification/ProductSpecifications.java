@@ -3,19 +3,30 @@ package com.yourcompany.agritrade.catalog.repository.specification;
 import com.yourcompany.agritrade.catalog.domain.Category;
 import com.yourcompany.agritrade.catalog.domain.Product;
 import com.yourcompany.agritrade.catalog.domain.ProductStatus;
+import com.yourcompany.agritrade.common.util.SearchTextNormalizer;
+import com.yourcompany.agritrade.config.persistence.FullTextSearchFunctionContributor;
 import com.yourcompany.agritrade.usermanagement.domain.FarmerProfile;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import jakarta.persistence.criteria.*;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.util.StringUtils;
 
 public class ProductSpecifications {
 
+  // Giá trị sort đặc biệt cho tìm kiếm: sắp xếp theo độ liên quan thay vì theo cột
+  public static final String RELEVANCE_SORT = "relevance";
+
+  // Bằng ngram_token_size của MySQL (mặc định 2): token ngắn hơn không có trong chỉ mục FULLTEXT
+  public static final int MIN_FULLTEXT_TOKEN_LENGTH = 2;
+
   public static Specification<Product> fetchFarmerAndProfile() {
     return (root, query, cb) -> {
       // Chỉ thực hiện fetch khi query không phải là count query
-      if (Long.class != query.getResultType() && long.class != query.getResultType()) {
+      if (!isCountQuery(query)) {
         // Fetch farmer (User)
         Fetch<Product, User> farmerFetch =
             root.fetch("farmer", JoinType.INNER); // INNER vì product phải có farmer
@@ -33,21 +44,84 @@ public class ProductSpecifications {
         criteriaBuilder.equal(root.get("status"), ProductStatus.PUBLISHED);
   }
 
-  // Specification: Tìm kiếm theo keyword trong tên hoặc mô tả
+  // Specification: Tìm kiếm theo keyword trong tên hoặc mô tả (không phân biệt dấu, hoa/thường).
+  // Dùng LIKE trên cột search_text nên vẫn quét bảng; phù hợp cho danh sách đã lọc theo farmer.
   public static Specification<Product> hasKeyword(String keyword) {
     return (root, query, criteriaBuilder) -> {
       if (!StringUtils.hasText(keyword)) {
         return criteriaBuilder.conjunction(); // Không có điều kiện nếu keyword rỗng
       }
-      String pattern = "%" + keyword.toLowerCase() + "%";
-      // Tạo biểu thức OR cho tìm kiếm trong name hoặc description
-      Predicate nameLike = criteriaBuilder.like(criteriaBuilder.lower(root.get("name")), pattern);
-      Predicate descriptionLike =
-          criteriaBuilder.like(root.get("description"), "%" + keyword + "%");
-      return criteriaBuilder.or(nameLike, descriptionLike);
+      return criteriaBuilder.like(
+          root.get("searchText"), "%" + SearchTextNormalizer.fold(keyword) + "%");
+    };
+  }
+
+  /**
+   * Tìm kiếm toàn văn theo keyword cho các trang tìm kiếm công khai. Khi useFullText bật và keyword
+   * có ít nhất một token dài từ {@link #MIN_FULLTEXT_TOKEN_LENGTH} ký tự, dùng MATCH ... AGAINST
+   * trên chỉ mục FULLTEXT ngram (search_name, search_text); các token ngắn hơn được lọc thêm bằng
+   * LIKE. Ngược lại quay về {@link #hasKeyword(String)}.
+   *
+   * <p>orderByRelevance: sắp xếp theo điểm liên quan giảm dần (chỉ có khi dùng FULLTEXT), nếu không
+   * thì theo sản phẩm mới nhất. Pageable truyền vào findAll phải không có sort để thứ tự này được
+   * giữ.
+   */
+  public static Specification<Product> matchesKeyword(
+      String keyword, boolean useFullText, boolean orderByRelevance) {
+    return (root, query, cb) -> {
+      List<String> tokens = SearchTextNormalizer.tokenize(keyword);
+      String booleanQuery = useFullText ? toBooleanModeQuery(tokens) : null;
+
+      if (booleanQuery == null) {
+        if (orderByRelevance && !isCountQuery(query)) {
+          query.orderBy(cb.desc(root.get("createdAt")), cb.desc(root.get("id")));
+        }
+        return hasKeyword(keyword).toPredicate(root, query, cb);
+      }
+
+      Expression<Double> score =
+          cb.function(
+              FullTextSearchFunctionContributor.MATCH_AGAINST,
+              Double.class,
+              root.get("searchName"),
+              root.get("searchText"),
+              cb.literal(booleanQuery));
+      List<Predicate> predicates = new ArrayList<>();
+      predicates.add(cb.greaterThan(score, 0d));
+      // Token ngắn hơn kích thước ngram không tra được trên chỉ mục FULLTEXT
+      for (String token : tokens) {
+        if (token.length() < MIN_FULLTEXT_TOKEN_LENGTH) {
+          predicates.add(cb.like(root.get("searchText"), "%" + token + "%"));
+        }
+      }
+      if (orderByRelevance && !isCountQuery(query)) {
+        query.orderBy(cb.desc(score), cb.desc(root.get("id")));
+      }
+      return cb.and(predicates.toArray(new Predicate[0]));
     };
   }
 
+  /**
+   * Dựng chuỗi truy vấn BOOLEAN MODE: mọi token đủ dài đều bắt buộc (+token). Trả về null nếu không
+   * có token nào dùng được với chỉ mục FULLTEXT.
+   */
+  static String toBooleanModeQuery(List<String> tokens) {
+    StringBuilder sb = new StringBuilder();
+    for (String token : tokens) {
+      if (token.length() >= MIN_FULLTEXT_TOKEN_LENGTH) {
+        if (sb.length() > 0) {
+          sb.append(' ');
+        }
+        sb.append('+').append(token);
+      }
+    }
+    return sb.length() == 0 ? null : sb.toString();
+  }
+
+  private static boolean isCountQuery(CriteriaQuery<?> query) {
+    return Long.class == query.getResultType() || long.class == query.getResultType();
+  }
+
   // Specification: Lọc theo categoryId
   public static Specification<Product> inCategory(Integer categoryId) {
     return (root, query, criteriaBuilder) -> {
@@ -61,6 +135,11 @@ public class ProductSpecifications {
     };
   }
 
+  // Specification: Lọc theo danh sách ID (đọc lại một trang ID đã phân trang ở nơi khác)
+  public static Specification<Product> hasIdIn(Collection<Long> ids) {
+    return (root, query, criteriaBuilder) -> root.get("id").in(ids);
+  }
+
   // Specification: Lọc theo provinceCode
   public static Specification<Product> inProvince(String provinceCode) {
     return (root, query, criteriaBuilder) -> {
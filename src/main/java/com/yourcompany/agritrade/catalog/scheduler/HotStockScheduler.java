@@ -0,0 +1,44 @@
+package com.yourcompany.agritrade.catalog.scheduler;
+
+import com.yourcompany.agritrade.catalog.service.HotStockLedgerService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HotStockScheduler {
+
+  private final HotStockLedgerService hotStockLedgerService;
+
+  // Ghi trễ các chênh lệch tồn kho của sản phẩm hot stock xuống DB
+  @Scheduled(
+      fixedDelayString = "${app.stock.hot.flush-interval-ms:2000}",
+      initialDelayString = "${app.stock.hot.flush-interval-ms:2000}")
+  public void flushPendingStock() {
+    try {
+      int flushed = hotStockLedgerService.flushPendingToDatabase();
+      if (flushed > 0) {
+        log.debug("Scheduled task: flushed hot stock deltas for {} products", flushed);
+      }
+    } catch (Exception e) {
+      // Chênh lệch vẫn nằm trong Redis, lượt chạy sau sẽ thử lại
+      log.error("Scheduled task: failed to flush hot stock deltas: {}", e.getMessage(), e);
+    }
+  }
+
+  // Đối soát ledger với DB: seed bộ đếm mới và cảnh báo lệch số liệu
+  @Scheduled(fixedDelayString = "${app.stock.hot.reconcile-interval-ms:60000}")
+  public void reconcileLedger() {
+    try {
+      int drifted = hotStockLedgerService.reconcile();
+      if (drifted > 0) {
+        log.warn("Scheduled task: hot stock reconciliation found {} drifted products", drifted);
+      }
+    } catch (Exception e) {
+      log.error("Scheduled task: hot stock reconciliation failed: {}", e.getMessage(), e);
+    }
+  }
+}
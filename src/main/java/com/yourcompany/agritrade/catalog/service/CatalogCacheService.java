@@ -0,0 +1,64 @@
+package com.yourcompany.agritrade.catalog.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.springframework.data.domain.Page;
+
+/**
+ * Cache hai tầng cho dữ liệu catalog public: L1 trong bộ nhớ từng node, L2 dùng chung qua Redis. Dữ
+ * liệu được làm mới theo {@link com.yourcompany.agritrade.catalog.event.CatalogChangedEvent} sau
+ * khi transaction ghi commit; TTL chỉ là giới hạn trên cho độ cũ khi lỡ mất sự kiện.
+ *
+ * <p>Giá trị trả về có thể là chính đối tượng đang nằm trong L1, nên nơi gọi không được sửa nó.
+ */
+public interface CatalogCacheService {
+
+  enum Region {
+    CATEGORY,
+    PRODUCT_DETAIL,
+    PRODUCT_LISTING
+  }
+
+  /** Số liệu của một vùng cache trên node hiện tại. */
+  record RegionStats(
+      long l1Hits, long l2Hits, long misses, long evictions, long redisErrors, int size) {
+    @JsonProperty("hitRatio")
+    public double hitRatio() {
+      long total = l1Hits + l2Hits + misses;
+      return total == 0 ? 0d : (double) (l1Hits + l2Hits) / total;
+    }
+  }
+
+  /** Một trang kết quả ở dạng lưu được vào cache; nơi gọi dựng lại {@link Page} từ Pageable. */
+  record PageSlice<T>(List<T> content, long totalElements) {
+    public static <T> PageSlice<T> of(Page<T> page) {
+      return new PageSlice<>(List.copyOf(page.getContent()), page.getTotalElements());
+    }
+  }
+
+  /**
+   * Trả về giá trị trong cache, nếu không có thì gọi {@code loader} và lưu kết quả (trừ khi null).
+   * Lỗi Redis không làm hỏng request: khi đó dữ liệu được đọc thẳng từ {@code loader}.
+   */
+  <T> T get(Region region, String key, TypeReference<T> type, Supplier<T> loader);
+
+  /** Xóa các khóa khỏi L1 của mọi node và khỏi Redis. */
+  void invalidate(Region region, Collection<String> keys);
+
+  /** Bỏ toàn bộ một vùng trên mọi node. */
+  void invalidateRegion(Region region);
+
+  Map<Region, RegionStats> getStats();
+
+  static String productSlugKey(String slug) {
+    return "slug:" + slug;
+  }
+
+  static String productIdKey(Long id) {
+    return "id:" + id;
+  }
+}
@@ -0,0 +1,76 @@
+package com.yourcompany.agritrade.catalog.service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sổ tồn kho trong Redis cho các sản phẩm ở chế độ "hot stock" (flash sale). Giữ chỗ được trừ
+ * nguyên tử trong Redis, các chênh lệch được gom lại và ghi trễ xuống bảng products theo chu kỳ.
+ *
+ * <p>Quy ước: bộ đếm của một sản phẩm chỉ được khởi tạo (seed) khi đang giữ khóa hàng của sản phẩm
+ * đó trong DB, nên một checkout đã khóa hàng và thấy bộ đếm chưa tồn tại có thể trừ thẳng vào DB mà
+ * không gây lệch số liệu.
+ */
+public interface HotStockLedgerService {
+
+  /** Trả về tập con các productId đang nằm trong tập hot stock (một lượt gọi Redis). */
+  Set<Long> findHotProductIds(Collection<Long> productIds);
+
+  /** Tồn kho khả dụng trong ledger. Sản phẩm chưa có bộ đếm sẽ không có trong map. */
+  Map<Long, Integer> getAvailableStock(Collection<Long> productIds);
+
+  /**
+   * Giữ chỗ nguyên tử cho nhiều sản phẩm (tất cả hoặc không gì cả).
+   *
+   * @return Kết quả giữ chỗ; khi thất bại cho biết sản phẩm nào thiếu hàng hoặc chưa có bộ đếm.
+   */
+  ReservationResult tryReserve(Map<Long, Integer> quantitiesByProductId);
+
+  /**
+   * Cộng (delta dương) hoặc trừ (delta âm) tồn kho trong ledger và ghi nhận chênh lệch để flush
+   * xuống DB. Dùng khi hoàn kho do hủy đơn hoặc khi nông dân chỉnh số lượng.
+   */
+  void adjust(Long productId, int delta);
+
+  /** Đưa sản phẩm vào tập hot stock. Bộ đếm sẽ được seed ở lần đối soát kế tiếp. */
+  void enable(Long productId);
+
+  /**
+   * Seed ngay bộ đếm của một sản phẩm đang bật hot stock mà ledger không có (vd Redis mất key),
+   * thay vì chờ lượt đối soát kế tiếp; trong lúc đó mọi checkout của sản phẩm đều phải trừ thẳng
+   * vào DB. Chạy bất đồng bộ, không làm gì nếu bộ đếm đã có hoặc cờ hot stock đã tắt.
+   */
+  void reseed(Long productId);
+
+  /** Gỡ sản phẩm khỏi ledger: xóa bộ đếm rồi flush toàn bộ chênh lệch còn treo xuống DB. */
+  void disable(Long productId);
+
+  /**
+   * Ghi các chênh lệch đang chờ xuống DB trong một transaction.
+   *
+   * @return Số sản phẩm đã được cập nhật.
+   */
+  int flushPendingToDatabase();
+
+  /**
+   * Đối soát ledger với DB: seed bộ đếm còn thiếu và phát hiện lệch (drift).
+   *
+   * @return Số sản phẩm bị lệch.
+   */
+  int reconcile();
+
+  /**
+   * Kết quả của {@link #tryReserve}.
+   *
+   * @param success Giữ chỗ thành công cho toàn bộ sản phẩm.
+   * @param failedProductId Sản phẩm gây thất bại (null nếu thành công).
+   * @param counterMissing true nếu thất bại do sản phẩm chưa có bộ đếm (cần đi đường DB).
+   */
+  record ReservationResult(boolean success, Long failedProductId, boolean counterMissing) {
+
+    public static ReservationResult ok() {
+      return new ReservationResult(true, null, false);
+    }
+  }
+}
@@ -60,6 +60,9 @@ public interface ProductService {
 
   void forceDeleteProduct(Long productId); // Xóa vật lý
 
+  // Bật/tắt chế độ hot stock (flash sale): tồn kho giữ chỗ trong Redis, ghi trễ xuống DB
+  ProductDetailResponse setHotStockMode(Long productId, boolean enabled);
+
   Page<SupplySourceResponse> findSupplySources(
       String productKeyword,
       Integer categoryId,
@@ -0,0 +1,451 @@
+package com.yourcompany.agritrade.catalog.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yourcompany.agritrade.catalog.event.CatalogChangedEvent;
+import com.yourcompany.agritrade.catalog.service.CatalogCacheService;
+import jakarta.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * L1 là map giới hạn số phần tử có TTL trên từng node, L2 là JSON trong Redis với khóa {@code
+ * catalog:{region}:{generation}:{key}}. Bỏ cả một vùng chỉ cần tăng {@code catalog:gen:{region}}:
+ * khóa của thế hệ cũ không còn được đọc và tự hết hạn. Mọi thay đổi được phát qua kênh {@code
+ * catalog:invalidate} để các node khác xóa L1 của mình.
+ *
+ * <p>Mỗi khóa có thêm bộ đếm phiên bản {@code catalog:ver:{region}:{key}}, được tăng mỗi lần
+ * invalidate. Sau khi nạp từ DB, L2 chỉ được ghi nếu phiên bản vẫn như lúc bắt đầu đọc: một node
+ * nạp bản cũ chậm hơn lệnh invalidate của node khác sẽ không ghi đè lên Redis.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogCacheServiceImpl implements CatalogCacheService {
+
+  static final String INVALIDATE_CHANNEL = "catalog:invalidate";
+  private static final String KEY_PREFIX = "catalog:";
+  private static final String GENERATION_PREFIX = "catalog:gen:";
+  private static final String VERSION_PREFIX = "catalog:ver:";
+
+  /**
+   * KEYS[1]: khóa dữ liệu, KEYS[2]: khóa phiên bản. ARGV: JSON, phiên bản lúc đọc ("" nếu chưa có),
+   * TTL ms.
+   */
+  static final RedisScript<Long> WRITE_IF_UNCHANGED_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          if (redis.call('GET', KEYS[2]) or '') ~= ARGV[2] then return 0 end
+          redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[3])
+          return 1
+          """,
+          Long.class);
+
+  /** KEYS: n khóa dữ liệu rồi n khóa phiên bản tương ứng. ARGV[1]: TTL ms của khóa phiên bản. */
+  static final RedisScript<Long> INVALIDATE_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          local n = #KEYS / 2
+          for i = 1, n do
+            redis.call('DEL', KEYS[i])
+            redis.call('INCR', KEYS[n + i])
+            redis.call('PEXPIRE', KEYS[n + i], ARGV[1])
+          end
+          return n
+          """,
+          Long.class);
+
+  /** Thông điệp pub/sub; {@code keys == null} nghĩa là bỏ cả vùng. */
+  record Invalidation(String origin, Region region, long generation, List<String> keys) {}
+
+  record RemoteEntry(long expiresAt, Object value) {}
+
+  private final StringRedisTemplate redisTemplate;
+  private final RedisMessageListenerContainer listenerContainer;
+  private final ObjectMapper objectMapper;
+
+  Clock clock = Clock.systemUTC();
+
+  @Value("${app.catalog.cache.enabled:true}")
+  private boolean enabled;
+
+  @Value("${app.catalog.cache.redis-enabled:true}")
+  private boolean redisEnabled;
+
+  @Value("${app.catalog.cache.category-ttl-seconds:300}")
+  private long categoryTtlSeconds;
+
+  @Value("${app.catalog.cache.product-detail-ttl-seconds:300}")
+  private long productDetailTtlSeconds;
+
+  @Value("${app.catalog.cache.product-listing-ttl-seconds:60}")
+  private long productListingTtlSeconds;
+
+  @Value("${app.catalog.cache.max-entries-per-region:5000}")
+  private int maxEntriesPerRegion;
+
+  private final String nodeId = UUID.randomUUID().toString();
+  private final Map<Region, LocalRegion> regions = new EnumMap<>(Region.class);
+  private Map<Region, RegionStats> lastLoggedStats;
+
+  @PostConstruct
+  void init() {
+    regions.put(
+        Region.CATEGORY,
+        new LocalRegion(Duration.ofSeconds(categoryTtlSeconds), maxEntriesPerRegion));
+    regions.put(
+        Region.PRODUCT_DETAIL,
+        new LocalRegion(Duration.ofSeconds(productDetailTtlSeconds), maxEntriesPerRegion));
+    regions.put(
+        Region.PRODUCT_LISTING,
+        new LocalRegion(Duration.ofSeconds(productListingTtlSeconds), maxEntriesPerRegion));
+    if (enabled && redisEnabled) {
+      listenerContainer.addMessageListener(
+          (message, pattern) -> handleInvalidationMessage(message.getBody()),
+          new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Region region, String key, TypeReference<T> type, Supplier<T> loader) {
+    if (!enabled) {
+      return loader.get();
+    }
+    LocalRegion local = regions.get(region);
+    Instant now = clock.instant();
+    LocalEntry cached = local.entries.get(key);
+    if (cached != null && cached.expiresAt().isAfter(now)) {
+      local.l1Hits.increment();
+      return (T) cached.value();
+    }
+
+    // Ghi nhận epoch trước khi đọc: nếu có invalidate chen vào thì kết quả đọc cũ không được lưu
+    long epoch = local.epoch.get();
+    RemoteRead<T> remote = readRemote(region, local, key, type);
+    if (remote != null && remote.value() != null) {
+      local.l2Hits.increment();
+      local.put(key, remote.value(), remote.expiresAt(), epoch, now);
+      return remote.value();
+    }
+
+    local.misses.increment();
+    T value = loader.get();
+    if (value != null) {
+      Instant expiresAt = now.plus(local.ttl);
+      // Không đọc được Redis thì cũng không ghi: thiếu phiên bản để so sánh
+      if (local.put(key, value, expiresAt, epoch, now) && remote != null) {
+        writeRemote(region, local, key, value, expiresAt, remote);
+      }
+    }
+    return value;
+  }
+
+  @Override
+  public void invalidate(Region region, Collection<String> keys) {
+    if (!enabled || keys.isEmpty()) {
+      return;
+    }
+    LocalRegion local = regions.get(region);
+    local.epoch.incrementAndGet();
+    keys.forEach(local.entries::remove);
+    if (!redisEnabled) {
+      return;
+    }
+    try {
+      long generation = currentGeneration(region, local);
+      List<String> scriptKeys = new ArrayList<>(keys.size() * 2);
+      keys.forEach(key -> scriptKeys.add(remoteKey(region, generation, key)));
+      keys.forEach(key -> scriptKeys.add(versionKey(region, key)));
+      redisTemplate.execute(INVALIDATE_SCRIPT, scriptKeys, String.valueOf(local.ttl.toMillis()));
+      publish(new Invalidation(nodeId, region, generation, List.copyOf(keys)));
+    } catch (Exception e) {
+      local.redisErrors.increment();
+      log.warn(
+          "Could not invalidate catalog cache keys {} in {}: {}", keys, region, e.getMessage());
+    }
+  }
+
+  @Override
+  public void invalidateRegion(Region region) {
+    if (!enabled) {
+      return;
+    }
+    LocalRegion local = regions.get(region);
+    local.clear();
+    if (!redisEnabled) {
+      return;
+    }
+    try {
+      Long generation = redisTemplate.opsForValue().increment(GENERATION_PREFIX + region.name());
+      local.generation = generation != null ? generation : -1L;
+      publish(new Invalidation(nodeId, region, local.generation, null));
+    } catch (Exception e) {
+      local.redisErrors.increment();
+      log.warn("Could not invalidate catalog cache region {}: {}", region, e.getMessage());
+    }
+  }
+
+  /** Dữ liệu catalog đã commit thay đổi. */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onCatalogChanged(CatalogChangedEvent event) {
+    switch (event.scope()) {
+      case STOCK -> invalidate(Region.PRODUCT_DETAIL, detailKeys(event));
+      case PRODUCT -> {
+        invalidate(Region.PRODUCT_DETAIL, detailKeys(event));
+        invalidateRegion(Region.PRODUCT_LISTING);
+      }
+      case CATEGORY -> {
+        for (Region region : Region.values()) {
+          invalidateRegion(region);
+        }
+      }
+    }
+  }
+
+  @Override
+  public Map<Region, RegionStats> getStats() {
+    Map<Region, RegionStats> stats = new EnumMap<>(Region.class);
+    regions.forEach((region, local) -> stats.put(region, local.stats()));
+    return stats;
+  }
+
+  // Ghi log định kỳ tỉ lệ hit từng vùng (chỉ khi có hoạt động mới)
+  @Scheduled(fixedDelayString = "${app.catalog.cache.stats-log-interval-ms:300000}")
+  public void logStats() {
+    Map<Region, RegionStats> stats = getStats();
+    if (stats.equals(lastLoggedStats)) {
+      return;
+    }
+    lastLoggedStats = stats;
+    stats.forEach(
+        (region, s) ->
+            log.info(
+                "Catalog cache {}: l1Hits={}, l2Hits={}, misses={}, hitRatio={}, evictions={},"
+                    + " redisErrors={}, size={}",
+                region,
+                s.l1Hits(),
+                s.l2Hits(),
+                s.misses(),
+                String.format("%.2f", s.hitRatio()),
+                s.evictions(),
+                s.redisErrors(),
+                s.size()));
+  }
+
+  void handleInvalidationMessage(byte[] body) {
+    Invalidation invalidation;
+    try {
+      invalidation = objectMapper.readValue(body, Invalidation.class);
+    } catch (Exception e) {
+      log.warn("Ignoring malformed catalog cache invalidation: {}", e.getMessage());
+      return;
+    }
+    if (nodeId.equals(invalidation.origin())) {
+      return;
+    }
+    LocalRegion local = regions.get(invalidation.region());
+    if (invalidation.keys() == null) {
+      local.clear();
+      local.generation = Math.max(local.generation, invalidation.generation());
+    } else {
+      local.epoch.incrementAndGet();
+      invalidation.keys().forEach(local.entries::remove);
+    }
+  }
+
+  private List<String> detailKeys(CatalogChangedEvent event) {
+    List<String> keys = new ArrayList<>();
+    event.productIds().forEach(id -> keys.add(CatalogCacheService.productIdKey(id)));
+    event.productSlugs().forEach(slug -> keys.add(CatalogCacheService.productSlugKey(slug)));
+    return keys;
+  }
+
+  /**
+   * Đọc bản L2 cùng phiên bản của khóa trong một lượt. Trả về null nếu Redis lỗi hoặc bị tắt;
+   * {@code value} null nếu Redis chưa có bản nào.
+   */
+  private <T> RemoteRead<T> readRemote(
+      Region region, LocalRegion local, String key, TypeReference<T> type) {
+    if (!redisEnabled) {
+      return null;
+    }
+    try {
+      long generation = currentGeneration(region, local);
+      List<String> values =
+          redisTemplate
+              .opsForValue()
+              .multiGet(List.of(remoteKey(region, generation, key), versionKey(region, key)));
+      String json = values != null ? values.get(0) : null;
+      String version = values != null && values.get(1) != null ? values.get(1) : "";
+      if (json == null) {
+        return new RemoteRead<>(generation, version, null, null);
+      }
+      JsonNode node = objectMapper.readTree(json);
+      Instant expiresAt = Instant.ofEpochMilli(node.get("expiresAt").asLong());
+      T value = objectMapper.readerFor(type).readValue(node.get("value"));
+      return new RemoteRead<>(generation, version, value, expiresAt);
+    } catch (Exception e) {
+      local.redisErrors.increment();
+      log.debug("Catalog cache read of {} in {} failed: {}", key, region, e.getMessage());
+      return null;
+    }
+  }
+
+  // Ghi vào đúng thế hệ và chỉ khi phiên bản chưa đổi kể từ lúc đọc (trước khi nạp từ DB)
+  private void writeRemote(
+      Region region,
+      LocalRegion local,
+      String key,
+      Object value,
+      Instant expiresAt,
+      RemoteRead<?> readAt) {
+    try {
+      String json =
+          objectMapper.writeValueAsString(new RemoteEntry(expiresAt.toEpochMilli(), value));
+      redisTemplate.execute(
+          WRITE_IF_UNCHANGED_SCRIPT,
+          List.of(remoteKey(region, readAt.generation(), key), versionKey(region, key)),
+          json,
+          readAt.version(),
+          String.valueOf(local.ttl.toMillis()));
+    } catch (Exception e) {
+      local.redisErrors.increment();
+      log.debug("Catalog cache write of {} in {} failed: {}", key, region, e.getMessage());
+    }
+  }
+
+  // Thế hệ hiện tại của vùng; đọc từ Redis một lần, sau đó được cập nhật qua pub/sub
+  private long currentGeneration(Region region, LocalRegion local) {
+    long generation = local.generation;
+    if (generation < 0) {
+      String stored = redisTemplate.opsForValue().get(GENERATION_PREFIX + region.name());
+      generation = stored != null ? Long.parseLong(stored) : 0L;
+      local.generation = generation;
+    }
+    return generation;
+  }
+
+  private void publish(Invalidation invalidation) throws Exception {
+    redisTemplate.convertAndSend(INVALIDATE_CHANNEL, objectMapper.writeValueAsString(invalidation));
+  }
+
+  private static String remoteKey(Region region, long generation, String key) {
+    return KEY_PREFIX + region.name() + ":" + generation + ":" + key;
+  }
+
+  private static String versionKey(Region region, String key) {
+    return VERSION_PREFIX + region.name() + ":" + key;
+  }
+
+  private record RemoteRead<T>(long generation, String version, T value, Instant expiresAt) {}
+
+  private record LocalEntry(Object value, Instant expiresAt) {}
+
+  private static final class LocalRegion {
+
+    private final ConcurrentHashMap<String, LocalEntry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private final Duration ttl;
+    private final int maxEntries;
+    private volatile long generation = -1L;
+
+    private final LongAdder l1Hits = new LongAdder();
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+
+    private LocalRegion(Duration ttl, int maxEntries) {
+      this.ttl = ttl;
+      this.maxEntries = maxEntries;
+    }
+
+    /** Lưu nếu không có invalidate nào xảy ra kể từ {@code epochAtLoad}. */
+    private boolean put(
+        String key, Object value, Instant expiresAt, long epochAtLoad, Instant now) {
+      if (epoch.get() != epochAtLoad || !expiresAt.isAfter(now)) {
+        return false;
+      }
+      entries.put(key, new LocalEntry(value, expiresAt));
+      if (epoch.get() != epochAtLoad) {
+        entries.remove(key); // Invalidate chen vào giữa lúc kiểm tra và lúc ghi
+        return false;
+      }
+      if (entries.size() > maxEntries) {
+        evict(now);
+      }
+      return true;
+    }
+
+    private void clear() {
+      epoch.incrementAndGet();
+      entries.clear();
+    }
+
+    private RegionStats stats() {
+      return new RegionStats(
+          l1Hits.sum(),
+          l2Hits.sum(),
+          misses.sum(),
+          evictions.sum(),
+          redisErrors.sum(),
+          entries.size());
+    }
+
+    // Bỏ các phần tử đã hết hạn, nếu vẫn đầy thì bỏ các phần tử hết hạn sớm nhất xuống còn 90%
+    private synchronized void evict(Instant now) {
+      if (entries.size() <= maxEntries) {
+        return;
+      }
+      entries
+          .entrySet()
+          .removeIf(
+              entry -> {
+                boolean expired = !entry.getValue().expiresAt().isAfter(now);
+                if (expired) {
+                  evictions.increment();
+                }
+                return expired;
+              });
+      int excess = entries.size() - maxEntries * 9 / 10;
+      if (excess > 0) {
+        entries.entrySet().stream()
+            .sorted(Comparator.comparing(entry -> entry.getValue().expiresAt()))
+            .limit(excess)
+            .map(Map.Entry::getKey)
+            .toList()
+            .forEach(
+                key -> {
+                  if (entries.remove(key) != null) {
+                    evictions.increment();
+                  }
+                });
+      }
+    }
+  }
+}
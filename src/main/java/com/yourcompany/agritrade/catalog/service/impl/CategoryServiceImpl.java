@@ -1,23 +1,31 @@
 package com.yourcompany.agritrade.catalog.service.impl;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.github.slugify.Slugify;
 import com.yourcompany.agritrade.catalog.domain.Category;
 import com.yourcompany.agritrade.catalog.dto.request.CategoryRequest;
 import com.yourcompany.agritrade.catalog.dto.response.CategoryResponse;
+import com.yourcompany.agritrade.catalog.event.CatalogChangedEvent;
 import com.yourcompany.agritrade.catalog.mapper.CategoryMapper;
 import com.yourcompany.agritrade.catalog.repository.CategoryRepository;
 import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.catalog.service.CatalogCacheService;
+import com.yourcompany.agritrade.catalog.service.CatalogCacheService.Region;
 import com.yourcompany.agritrade.catalog.service.CategoryService;
 import com.yourcompany.agritrade.common.exception.BadRequestException;
 import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
 import com.yourcompany.agritrade.common.service.FileStorageService;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 @Service
@@ -30,36 +38,65 @@ public class CategoryServiceImpl implements CategoryService {
   private final CategoryMapper categoryMapper;
   private final Slugify slugify = Slugify.builder().build(); // Khởi tạo slugify
   private final FileStorageService fileStorageService;
+  private final CatalogCacheService catalogCacheService;
+  private final ApplicationEventPublisher eventPublisher;
+  private final PlatformTransactionManager transactionManager;
+
+  private static final TypeReference<List<CategoryResponse>> LIST_TYPE = new TypeReference<>() {};
+  private static final TypeReference<CategoryResponse> ITEM_TYPE = new TypeReference<>() {};
 
   @Override
-  @Transactional(readOnly = true)
   public List<CategoryResponse> getAllCategoriesForDropdown() {
-    log.debug("Fetching all categories for dropdown");
-    List<Category> categories =
-        categoryRepository.findAll(
-            Sort.by(Sort.Direction.ASC, "name")); // Lấy tất cả, sắp xếp theo tên
+    return catalogCacheService.get(
+        Region.CATEGORY,
+        "dropdown",
+        LIST_TYPE,
+        () ->
+            inReadOnlyTransaction(
+                () -> {
+                  log.debug("Fetching all categories for dropdown");
+                  List<Category> categories =
+                      categoryRepository.findAll(
+                          Sort.by(Sort.Direction.ASC, "name")); // Lấy tất cả, sắp xếp theo tên
 
-    return categoryMapper.toCategoryResponseList(categories); // Sử dụng MapStruct mapper
+                  return categoryMapper.toCategoryResponseList(
+                      categories); // Sử dụng MapStruct mapper
+                }));
   }
 
   @Override
-  @Transactional(readOnly = true)
   public List<CategoryResponse> getCategoryTree() {
-    // Lấy các category gốc và map đệ quy
-    List<Category> rootCategories = categoryRepository.findByParentIsNull();
-    return rootCategories.stream()
-        .map(categoryMapper::toCategoryResponse) // MapStruct sẽ tự xử lý children nếu cấu hình đúng
-        .collect(Collectors.toList());
+    return catalogCacheService.get(
+        Region.CATEGORY,
+        "tree",
+        LIST_TYPE,
+        () ->
+            inReadOnlyTransaction(
+                () -> {
+                  // Lấy các category gốc và map đệ quy
+                  List<Category> rootCategories = categoryRepository.findByParentIsNull();
+                  return rootCategories.stream()
+                      .map(categoryMapper::toCategoryResponse) // MapStruct tự xử lý children
+                      .collect(Collectors.toList());
+                }));
   }
 
   @Override
-  @Transactional(readOnly = true)
   public CategoryResponse getCategoryBySlug(String slug) {
-    Category category =
-        categoryRepository
-            .findBySlug(slug)
-            .orElseThrow(() -> new ResourceNotFoundException("Category", "slug", slug));
-    return categoryMapper.toCategoryResponse(category);
+    return catalogCacheService.get(
+        Region.CATEGORY,
+        "slug:" + slug,
+        ITEM_TYPE,
+        () ->
+            inReadOnlyTransaction(
+                () -> {
+                  Category category =
+                      categoryRepository
+                          .findBySlug(slug)
+                          .orElseThrow(
+                              () -> new ResourceNotFoundException("Category", "slug", slug));
+                  return categoryMapper.toCategoryResponse(category);
+                }));
   }
 
   @Override
@@ -102,6 +139,7 @@ public class CategoryServiceImpl implements CategoryService {
 
     Category savedCategory = categoryRepository.save(category);
     log.info("Category created with id: {}", savedCategory.getId());
+    eventPublisher.publishEvent(CatalogChangedEvent.categoryChanged());
     return categoryMapper.toCategoryResponse(savedCategory);
   }
 
@@ -166,6 +204,7 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     Category updatedCategory = categoryRepository.save(category);
+    eventPublisher.publishEvent(CatalogChangedEvent.categoryChanged());
 
     //  xóa ảnh cũ trên storage SAU KHI đã lưu thành công
     if ((imageChanged || imageRemoved) && StringUtils.hasText(oldBlobPath)) {
@@ -211,6 +250,7 @@ public class CategoryServiceImpl implements CategoryService {
 
     categoryRepository.delete(category);
     log.info("Category deleted with id: {}", id);
+    eventPublisher.publishEvent(CatalogChangedEvent.categoryChanged());
 
     // Xóa ảnh trên storage nếu có
     if (StringUtils.hasText(blobPathToDelete)) {
@@ -225,4 +265,10 @@ public class CategoryServiceImpl implements CategoryService {
       }
     }
   }
+
+  private <T> T inReadOnlyTransaction(Supplier<T> work) {
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    transactionTemplate.setReadOnly(true);
+    return transactionTemplate.execute(status -> work.get());
+  }
 }
@@ -0,0 +1,462 @@
+package com.yourcompany.agritrade.catalog.service.impl;
+
+import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.catalog.event.CatalogChangedEvent;
+import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.catalog.service.HotStockLedgerService;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HotStockLedgerServiceImpl implements HotStockLedgerService {
+
+  // Hash tag {ledger} giữ mọi key trong cùng một slot để script nhiều key chạy được trên Redis
+  // Cluster
+  private static final String KEY_PREFIX = "hot_stock:{ledger}:";
+  private static final String PRODUCTS_KEY = KEY_PREFIX + "products";
+  private static final String AVAILABLE_KEY_PREFIX = KEY_PREFIX + "available:";
+  private static final String PENDING_KEY = KEY_PREFIX + "pending";
+  private static final String FLUSHING_KEY = KEY_PREFIX + "flushing";
+  private static final String FLUSH_ID_KEY = KEY_PREFIX + "flush_id";
+  private static final String FLUSH_LOCK_KEY = KEY_PREFIX + "flush_lock";
+
+  /**
+   * KEYS[1..n]: bộ đếm available, KEYS[n+1]: hash pending. ARGV[1..n]: số lượng, ARGV[n+1..2n]:
+   * productId. Trả về 0 nếu thành công, i nếu sản phẩm thứ i thiếu hàng, -i nếu chưa có bộ đếm.
+   */
+  private static final RedisScript<Long> RESERVE_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          local n = #KEYS - 1
+          for i = 1, n do
+            local current = redis.call('GET', KEYS[i])
+            if not current then return -i end
+            if tonumber(current) < tonumber(ARGV[i]) then return i end
+          end
+          for i = 1, n do
+            redis.call('DECRBY', KEYS[i], ARGV[i])
+            redis.call('HINCRBY', KEYS[n + 1], ARGV[n + i], -tonumber(ARGV[i]))
+          end
+          return 0
+          """,
+          Long.class);
+
+  /** KEYS[1]: bộ đếm, KEYS[2]: hash pending. ARGV[1]: delta, ARGV[2]: productId. */
+  private static final RedisScript<Long> ADJUST_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          if redis.call('EXISTS', KEYS[1]) == 1 then
+            redis.call('INCRBY', KEYS[1], ARGV[1])
+          end
+          redis.call('HINCRBY', KEYS[2], ARGV[2], ARGV[1])
+          return 1
+          """,
+          Long.class);
+
+  /**
+   * Chuyển hash pending sang flushing (nếu chưa có lượt flush dở dang) và gắn cho nó mã lượt flush.
+   * KEYS[1]: pending, KEYS[2]: flushing, KEYS[3]: mã lượt flush. ARGV[1]: mã mới. Trả về mã của
+   * lượt cần flush (mã cũ nếu lượt trước còn dở), hoặc nil nếu không có gì để flush.
+   */
+  private static final RedisScript<String> BEGIN_FLUSH_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          if redis.call('EXISTS', KEYS[2]) == 0 then
+            if redis.call('EXISTS', KEYS[1]) == 0 then return false end
+            redis.call('RENAME', KEYS[1], KEYS[2])
+            redis.call('DEL', KEYS[3])
+          end
+          local id = redis.call('GET', KEYS[3])
+          if not id then
+            id = ARGV[1]
+            redis.call('SET', KEYS[3], id)
+          end
+          return id
+          """,
+          String.class);
+
+  /**
+   * Đọc nguyên tử bộ đếm và pending của một sản phẩm; seed bộ đếm nếu chưa có. KEYS[1]: bộ đếm,
+   * KEYS[2]: pending. ARGV[1]: productId, ARGV[2]: tồn kho DB. Trả về {available, pending, seeded}.
+   */
+  private static final RedisScript<List> SNAPSHOT_OR_SEED_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          local pending = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+          local current = redis.call('GET', KEYS[1])
+          if not current then
+            local seeded = tonumber(ARGV[2]) + pending
+            redis.call('SET', KEYS[1], seeded)
+            return {seeded, pending, 1}
+          end
+          return {tonumber(current), pending, 0}
+          """,
+          List.class);
+
+  private static final RedisScript<Long> RELEASE_LOCK_SCRIPT =
+      new DefaultRedisScript<>(
+          """
+          if redis.call('GET', KEYS[1]) == ARGV[1] then
+            return redis.call('DEL', KEYS[1])
+          end
+          return 0
+          """,
+          Long.class);
+
+  private final StringRedisTemplate redisTemplate;
+  private final ProductRepository productRepository;
+  private final PlatformTransactionManager transactionManager;
+  private final ApplicationEventPublisher eventPublisher;
+
+  @Value("${app.stock.hot.flush-lock-ttl-seconds:30}")
+  private long flushLockTtlSeconds;
+
+  @Value("${app.stock.hot.auto-correct-drift:false}")
+  private boolean autoCorrectDrift;
+
+  @Override
+  public Set<Long> findHotProductIds(Collection<Long> productIds) {
+    if (productIds == null || productIds.isEmpty()) {
+      return Collections.emptySet();
+    }
+    try {
+      Map<Object, Boolean> membership =
+          redisTemplate.opsForSet().isMember(PRODUCTS_KEY, toStringArray(productIds));
+      Set<Long> hotIds = new HashSet<>();
+      if (membership != null) {
+        membership.forEach(
+            (id, member) -> {
+              if (Boolean.TRUE.equals(member)) {
+                hotIds.add(Long.valueOf(id.toString()));
+              }
+            });
+      }
+      return hotIds;
+    } catch (Exception e) {
+      // Không chặn checkout: sản phẩm sẽ được khóa hàng trong DB, việc định tuyến cuối cùng vẫn
+      // dựa trên cờ hotStockEnabled của entity
+      log.error("Error reading hot stock product set from Redis: {}", e.getMessage());
+      return Collections.emptySet();
+    }
+  }
+
+  @Override
+  public Map<Long, Integer> getAvailableStock(Collection<Long> productIds) {
+    if (productIds == null || productIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    List<Long> ids = new ArrayList<>(productIds);
+    List<String> values =
+        redisTemplate.opsForValue().multiGet(ids.stream().map(this::availableKey).toList());
+    Map<Long, Integer> available = new HashMap<>();
+    if (values != null) {
+      for (int i = 0; i < ids.size(); i++) {
+        if (values.get(i) != null) {
+          available.put(ids.get(i), Integer.valueOf(values.get(i)));
+        }
+      }
+    }
+    return available;
+  }
+
+  @Override
+  public ReservationResult tryReserve(Map<Long, Integer> quantitiesByProductId) {
+    if (quantitiesByProductId == null || quantitiesByProductId.isEmpty()) {
+      return ReservationResult.ok();
+    }
+    List<Long> ids = new ArrayList<>(new TreeSet<>(quantitiesByProductId.keySet()));
+    List<String> keys = new ArrayList<>(ids.size() + 1);
+    List<String> args = new ArrayList<>(ids.size() * 2);
+    for (Long id : ids) {
+      keys.add(availableKey(id));
+      args.add(String.valueOf(quantitiesByProductId.get(id)));
+    }
+    keys.add(PENDING_KEY);
+    ids.forEach(id -> args.add(String.valueOf(id)));
+
+    Long result = redisTemplate.execute(RESERVE_SCRIPT, keys, args.toArray());
+    if (result == null) {
+      throw new IllegalStateException("Hot stock reservation script returned no result");
+    }
+    if (result == 0) {
+      return ReservationResult.ok();
+    }
+    Long failedProductId = ids.get((int) Math.abs(result) - 1);
+    return new ReservationResult(false, failedProductId, result < 0);
+  }
+
+  @Override
+  public void adjust(Long productId, int delta) {
+    if (delta == 0) {
+      return;
+    }
+    redisTemplate.execute(
+        ADJUST_SCRIPT,
+        List.of(availableKey(productId), PENDING_KEY),
+        String.valueOf(delta),
+        String.valueOf(productId));
+    log.debug("Adjusted hot stock for product {} by {}", productId, delta);
+  }
+
+  @Override
+  public void enable(Long productId) {
+    redisTemplate.opsForSet().add(PRODUCTS_KEY, String.valueOf(productId));
+    log.info(
+        "Product {} added to hot stock ledger. Counter will be seeded on reconcile.", productId);
+  }
+
+  @Override
+  @Async("taskExecutor")
+  public void reseed(Long productId) {
+    if (Boolean.TRUE.equals(redisTemplate.hasKey(availableKey(productId)))) {
+      return; // Một lượt reseed/đối soát khác vừa seed xong
+    }
+    Boolean done =
+        withFlushLock(
+            Duration.ofSeconds(flushLockTtlSeconds),
+            () -> {
+              // Như reconcile: flush lượt dở dang trước để tồn kho DB + pending là con số đúng
+              doFlush();
+              new TransactionTemplate(transactionManager)
+                  .executeWithoutResult(
+                      status -> {
+                        for (Product product :
+                            productRepository.findAllByIdInForUpdate(List.of(productId))) {
+                          if (product.isHotStockEnabled()) {
+                            redisTemplate.opsForSet().add(PRODUCTS_KEY, String.valueOf(productId));
+                            reconcileProduct(product);
+                          }
+                        }
+                      });
+              return Boolean.TRUE;
+            });
+    if (done == null) {
+      log.warn(
+          "Could not acquire hot stock flush lock to reseed product {}. "
+              + "The counter will be seeded on the next reconciliation.",
+          productId);
+    }
+  }
+
+  @Override
+  public void disable(Long productId) {
+    redisTemplate.opsForSet().remove(PRODUCTS_KEY, String.valueOf(productId));
+    Boolean done =
+        withFlushLock(
+            Duration.ofSeconds(flushLockTtlSeconds),
+            () -> {
+              // Xóa bộ đếm trước: mọi giữ chỗ sau thời điểm này sẽ đi đường DB,
+              // mọi giữ chỗ trước đó đã nằm trong pending và được flush ngay dưới đây
+              redisTemplate.delete(availableKey(productId));
+              doFlush();
+              return Boolean.TRUE;
+            });
+    if (!Boolean.TRUE.equals(done)) {
+      log.warn(
+          "Could not acquire hot stock flush lock while disabling product {}. "
+              + "Pending deltas will be flushed by the scheduler.",
+          productId);
+      redisTemplate.delete(availableKey(productId));
+    }
+    log.info("Product {} removed from hot stock ledger.", productId);
+  }
+
+  @Override
+  public int flushPendingToDatabase() {
+    Integer flushed = withFlushLock(Duration.ZERO, this::doFlush);
+    return flushed == null ? 0 : flushed;
+  }
+
+  @Override
+  public int reconcile() {
+    Integer drifted =
+        withFlushLock(
+            Duration.ofSeconds(flushLockTtlSeconds),
+            () -> {
+              doFlush();
+              return doReconcile();
+            });
+    if (drifted == null) {
+      log.warn("Skipped hot stock reconciliation: flush lock is held by another node.");
+      return 0;
+    }
+    return drifted;
+  }
+
+  // Phải được gọi khi đang giữ flush lock
+  private int doFlush() {
+    String flushId =
+        redisTemplate.execute(
+            BEGIN_FLUSH_SCRIPT,
+            List.of(PENDING_KEY, FLUSHING_KEY, FLUSH_ID_KEY),
+            UUID.randomUUID().toString());
+    if (flushId == null) {
+      return 0;
+    }
+    Map<Object, Object> entries = redisTemplate.opsForHash().entries(FLUSHING_KEY);
+    LocalDateTime now = LocalDateTime.now();
+    Integer updated =
+        new TransactionTemplate(transactionManager)
+            .execute(
+                status -> {
+                  List<Long> changedIds = new ArrayList<>();
+                  for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                    int delta = Integer.parseInt(entry.getValue().toString());
+                    if (delta != 0) {
+                      Long productId = Long.valueOf(entry.getKey().toString());
+                      if (productRepository.applyStockDelta(productId, delta, flushId, now) > 0) {
+                        changedIds.add(productId);
+                      }
+                    }
+                  }
+                  if (!changedIds.isEmpty()) {
+                    // Cache chi tiết sản phẩm hiển thị stockQuantity: làm mới sau khi commit
+                    eventPublisher.publishEvent(
+                        CatalogChangedEvent.stockChanged(
+                            productRepository.findAllById(changedIds)));
+                  }
+                  return changedIds.size();
+                });
+    // Nếu tiến trình dừng giữa commit và lệnh DEL, lượt flush sau đọc lại đúng hash và mã này;
+    // các sản phẩm đã mang mã lượt flush trong DB được bỏ qua nên không bị cộng hai lần
+    redisTemplate.delete(List.of(FLUSHING_KEY, FLUSH_ID_KEY));
+    log.debug("Flushed hot stock deltas for {} products to database", updated);
+    return updated == null ? 0 : updated;
+  }
+
+  // Phải được gọi khi đang giữ flush lock và ngay sau doFlush()
+  private int doReconcile() {
+    List<Long> flaggedIds = productRepository.findHotStockProductIds();
+
+    // Đồng bộ tập hot stock với cờ trong DB (phục hồi khi Redis mất dữ liệu)
+    Set<String> members = redisTemplate.opsForSet().members(PRODUCTS_KEY);
+    Set<String> flagged = new HashSet<>();
+    flaggedIds.forEach(id -> flagged.add(String.valueOf(id)));
+    if (!flagged.isEmpty()) {
+      redisTemplate.opsForSet().add(PRODUCTS_KEY, flagged.toArray(String[]::new));
+    }
+    if (members != null) {
+      for (String member : members) {
+        if (!flagged.contains(member)) {
+          redisTemplate.opsForSet().remove(PRODUCTS_KEY, member);
+          redisTemplate.delete(AVAILABLE_KEY_PREFIX + member);
+        }
+      }
+    }
+    if (flaggedIds.isEmpty()) {
+      return 0;
+    }
+
+    // Khóa hàng trong DB khi seed/đối soát để không chen vào giữa một checkout đi đường DB
+    Integer drifted =
+        new TransactionTemplate(transactionManager)
+            .execute(
+                status -> {
+                  int driftCount = 0;
+                  for (Product product : productRepository.findAllByIdInForUpdate(flaggedIds)) {
+                    driftCount += reconcileProduct(product);
+                  }
+                  return driftCount;
+                });
+    return drifted == null ? 0 : drifted;
+  }
+
+  private int reconcileProduct(Product product) {
+    int dbStock = product.getStockQuantity();
+    List<?> snapshot =
+        redisTemplate.execute(
+            SNAPSHOT_OR_SEED_SCRIPT,
+            List.of(availableKey(product.getId()), PENDING_KEY),
+            String.valueOf(product.getId()),
+            String.valueOf(dbStock));
+    if (snapshot == null || snapshot.size() < 3) {
+      return 0;
+    }
+    long available = ((Number) snapshot.get(0)).longValue();
+    long pending = ((Number) snapshot.get(1)).longValue();
+    boolean seeded = ((Number) snapshot.get(2)).longValue() == 1;
+    if (seeded) {
+      log.info(
+          "Seeded hot stock counter for product {} with {} (db={}, pending={})",
+          product.getId(),
+          available,
+          dbStock,
+          pending);
+      return 0;
+    }
+
+    long expected = dbStock + pending;
+    if (available == expected) {
+      return 0;
+    }
+    log.warn(
+        "Hot stock drift detected for product {}: ledger={}, db={}, pending={}, drift={}",
+        product.getId(),
+        available,
+        dbStock,
+        pending,
+        available - expected);
+    if (autoCorrectDrift) {
+      redisTemplate.opsForValue().set(availableKey(product.getId()), String.valueOf(expected));
+      log.warn("Hot stock counter for product {} reset to {}", product.getId(), expected);
+    }
+    return 1;
+  }
+
+  /**
+   * Chạy action khi giữ khóa flush toàn cục (đảm bảo chỉ một node flush/đối soát tại một thời
+   * điểm).
+   *
+   * @return Kết quả của action, hoặc null nếu không lấy được khóa trong thời gian chờ.
+   */
+  private <T> T withFlushLock(Duration maxWait, Supplier<T> action) {
+    String token = UUID.randomUUID().toString();
+    long deadline = System.currentTimeMillis() + maxWait.toMillis();
+    while (true) {
+      Boolean acquired =
+          redisTemplate
+              .opsForValue()
+              .setIfAbsent(FLUSH_LOCK_KEY, token, Duration.ofSeconds(flushLockTtlSeconds));
+      if (Boolean.TRUE.equals(acquired)) {
+        break;
+      }
+      if (System.currentTimeMillis() >= deadline) {
+        return null;
+      }
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+    }
+    try {
+      return action.get();
+    } finally {
+      redisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(FLUSH_LOCK_KEY), token);
+    }
+  }
+
+  private String availableKey(Long productId) {
+    return AVAILABLE_KEY_PREFIX + productId;
+  }
+
+  private static Object[] toStringArray(Collection<Long> ids) {
+    return ids.stream().map(String::valueOf).toArray();
+  }
+}
@@ -1,5 +1,6 @@
 package com.yourcompany.agritrade.catalog.service.impl;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.github.slugify.Slugify;
 import com.yourcompany.agritrade.catalog.domain.*;
 import com.yourcompany.agritrade.catalog.dto.request.ProductImageRequest;
@@ -7,10 +8,16 @@ import com.yourcompany.agritrade.catalog.dto.request.ProductRequest;
 import com.yourcompany.agritrade.catalog.dto.response.ProductDetailResponse;
 import com.yourcompany.agritrade.catalog.dto.response.ProductSummaryResponse;
 import com.yourcompany.agritrade.catalog.dto.response.SupplySourceResponse;
+import com.yourcompany.agritrade.catalog.event.CatalogChangedEvent;
 import com.yourcompany.agritrade.catalog.mapper.ProductImageMapper;
 import com.yourcompany.agritrade.catalog.mapper.ProductMapper;
 import com.yourcompany.agritrade.catalog.repository.*;
+import com.yourcompany.agritrade.catalog.repository.projection.ProductSummaryView;
 import com.yourcompany.agritrade.catalog.repository.specification.ProductSpecifications;
+import com.yourcompany.agritrade.catalog.service.CatalogCacheService;
+import com.yourcompany.agritrade.catalog.service.CatalogCacheService.PageSlice;
+import com.yourcompany.agritrade.catalog.service.CatalogCacheService.Region;
+import com.yourcompany.agritrade.catalog.service.HotStockLedgerService;
 import com.yourcompany.agritrade.catalog.service.ProductService;
 import com.yourcompany.agritrade.common.exception.BadRequestException;
 import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
@@ -31,18 +38,22 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 @Service
@@ -66,10 +77,26 @@ public class ProductServiceImpl implements ProductService {
 
   private final NotificationService notificationService;
   private final EmailService emailService;
+  private final HotStockLedgerService hotStockLedgerService;
+  private final CatalogCacheService catalogCacheService;
+  private final ApplicationEventPublisher eventPublisher;
+  private final PlatformTransactionManager transactionManager;
+
+  private static final TypeReference<ProductDetailResponse> DETAIL_TYPE = new TypeReference<>() {};
+  private static final TypeReference<PageSlice<ProductSummaryResponse>> LISTING_TYPE =
+      new TypeReference<>() {};
 
   @Value("${firebase.storage.public-base-url:#{null}}") // Inject giá trị từ application.yml
   private String publicBaseUrl;
 
+  // Tắt để quay về tìm kiếm LIKE (ví dụ khi DB chưa có chỉ mục FULLTEXT)
+  @Value("${app.search.product.fulltext-enabled:true}")
+  private boolean fullTextSearchEnabled;
+
+  // Chỉ cache các trang đầu của danh sách public (trang 0..n-1), trang sâu hơn luôn đọc DB
+  @Value("${app.catalog.cache.listing-max-page:3}")
+  private int listingCacheMaxPage;
+
   // --- Farmer Methods ---
 
   @Override
@@ -93,12 +120,7 @@ public class ProductServiceImpl implements ProductService {
                   status.name())); //  sử dụng specification, truyền tên Enum
     }
 
-    Page<Product> productPage = productRepository.findAll(spec, pageable);
-
-    //  Gọi populateImageUrls cho mỗi sản phẩm TRƯỚC KHI MAP
-    productPage.getContent().forEach(this::populateImageUrls);
-
-    return productPage.map(productMapper::toProductSummaryResponse);
+    return findSummaryPage(spec, pageable);
   }
 
   @Override
@@ -117,9 +139,7 @@ public class ProductServiceImpl implements ProductService {
       spec = spec.and(ProductSpecifications.hasStatus(status.name()));
     }
 
-    Page<Product> productPage = productRepository.findAll(spec, pageable);
-    productPage.getContent().forEach(this::populateImageUrls); // Hàm helper của bạn
-    return productPage.map(productMapper::toProductSummaryResponse);
+    return findSummaryPage(spec, pageable);
   }
 
   @Override
@@ -138,20 +158,22 @@ public class ProductServiceImpl implements ProductService {
       spec = spec.and(ProductSpecifications.hasStatus(status.name()));
     }
 
-    Page<Product> productPage = productRepository.findAll(spec, pageable);
-    productPage.getContent().forEach(this::populateImageUrls);
-    return productPage.map(productMapper::toProductSummaryResponse);
+    return findSummaryPage(spec, pageable);
   }
 
-  // Phương thức helper để điền imageUrls
-  private void populateImageUrls(Product product) {
-    if (product != null && product.getImages() != null && !product.getImages().isEmpty()) {
-      for (ProductImage image : product.getImages()) {
-        if (StringUtils.hasText(image.getBlobPath())) {
-          image.setImageUrl(fileStorageService.getFileUrl(image.getBlobPath()));
-        }
-      }
-    }
+  // sort=relevance không phải cột của Product: bỏ khỏi Pageable, Specification tự sắp xếp
+  private boolean isRelevanceSort(Pageable pageable) {
+    return pageable.getSort().getOrderFor(ProductSpecifications.RELEVANCE_SORT) != null;
+  }
+
+  // Danh sách sản phẩm: chỉ đọc cột tóm tắt và ảnh đại diện trong một câu SQL, ký URL theo lô
+  private Page<ProductSummaryResponse> findSummaryPage(
+      Specification<Product> spec, Pageable pageable) {
+    Page<ProductSummaryView> page = productRepository.findSummaries(spec, pageable);
+    return new PageImpl<>(
+        productMapper.toProductSummaryResponses(page.getContent()),
+        page.getPageable(),
+        page.getTotalElements());
   }
 
   @Override
@@ -243,10 +265,18 @@ public class ProductServiceImpl implements ProductService {
 
     ProductStatus previousStatus = existingProduct.getStatus(); // Lưu trạng thái cũ
     boolean wasPublished = previousStatus == ProductStatus.PUBLISHED;
+    Integer previousStock = existingProduct.getStockQuantity();
+    String previousSlug = existingProduct.getSlug();
 
     // 3. Cập nhật các trường cơ bản
     productMapper.updateProductFromRequest(request, existingProduct);
 
+    // Sản phẩm hot stock: tồn kho do ledger quản lý, chuyển số lượng mới thành một điều chỉnh
+    if (existingProduct.isHotStockEnabled() && request.getStockQuantity() != null) {
+      existingProduct.setStockQuantity(previousStock);
+      scheduleHotStockAdjustment(productId, previousStock, request.getStockQuantity());
+    }
+
     // 4. Cập nhật Category nếu có thay đổi
     updateCategoryIfNeeded(request, existingProduct);
 
@@ -283,6 +313,7 @@ public class ProductServiceImpl implements ProductService {
     // 8. Lưu sản phẩm và các thay đổi liên quan
     Product savedProduct = productRepository.save(existingProduct);
     log.info("Updated product {} for farmer {}", productId, farmer.getId());
+    eventPublisher.publishEvent(CatalogChangedEvent.productChanged(savedProduct, previousSlug));
 
     // 9. Gửi thông báo nếu trạng thái chuyển về PENDING_APPROVAL
     if (savedProduct.getStatus() == ProductStatus.PENDING_APPROVAL && wasPublished) {
@@ -296,6 +327,23 @@ public class ProductServiceImpl implements ProductService {
 
   //  Helper Methods cho updateMyProduct
 
+  private void scheduleHotStockAdjustment(Long productId, int dbStock, int requestedStock) {
+    Integer ledgerStock =
+        hotStockLedgerService.getAvailableStock(List.of(productId)).get(productId);
+    int delta = requestedStock - (ledgerStock != null ? ledgerStock : dbStock);
+    if (delta == 0) {
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            hotStockLedgerService.adjust(productId, delta);
+          }
+        });
+    log.info("Scheduled hot stock adjustment of {} for product {}", delta, productId);
+  }
+
   private void updateCategoryIfNeeded(ProductRequest request, Product product) {
     if (request.getCategoryId() != null
         && !request.getCategoryId().equals(product.getCategory().getId())) {
@@ -454,11 +502,11 @@ public class ProductServiceImpl implements ProductService {
     // Thực hiện soft delete
     productRepository.delete(product);
     log.info("Product soft deleted with id: {} by farmer: {}", productId, farmer.getId());
+    eventPublisher.publishEvent(CatalogChangedEvent.productChanged(product));
   }
 
-  // tìm kiếm like % .... %
+  // Các trang đầu được cache theo bộ lọc; transaction chỉ mở khi thật sự phải đọc DB
   @Override
-  @Transactional(readOnly = true)
   public Page<ProductSummaryResponse> searchPublicProducts(
       String keyword,
       Integer categoryId,
@@ -467,13 +515,61 @@ public class ProductServiceImpl implements ProductService {
       Double maxPrice,
       Integer minRating,
       Pageable pageable) {
+    Supplier<Page<ProductSummaryResponse>> query =
+        () ->
+            inReadOnlyTransaction(
+                () ->
+                    findPublicProducts(
+                        keyword,
+                        categoryId,
+                        provinceCode,
+                        minPrice,
+                        maxPrice,
+                        minRating,
+                        pageable));
+    if (pageable.isUnpaged() || pageable.getPageNumber() >= listingCacheMaxPage) {
+      return query.get();
+    }
+    String key =
+        String.join(
+            "|",
+            "q=" + (keyword != null ? keyword.trim().toLowerCase(Locale.ROOT) : ""),
+            "c=" + categoryId,
+            "p=" + provinceCode,
+            "min=" + minPrice,
+            "max=" + maxPrice,
+            "r=" + minRating,
+            "page=" + pageable.getPageNumber(),
+            "size=" + pageable.getPageSize(),
+            "sort=" + pageable.getSort());
+    PageSlice<ProductSummaryResponse> slice =
+        catalogCacheService.get(
+            Region.PRODUCT_LISTING, key, LISTING_TYPE, () -> PageSlice.of(query.get()));
+    return new PageImpl<>(slice.content(), pageable, slice.totalElements());
+  }
+
+  // Tìm kiếm toàn văn (FULLTEXT ngram trên cột không dấu), hỗ trợ sort=relevance
+  private Page<ProductSummaryResponse> findPublicProducts(
+      String keyword,
+      Integer categoryId,
+      String provinceCode,
+      Double minPrice,
+      Double maxPrice,
+      Integer minRating,
+      Pageable pageable) {
+
+    boolean sortByRelevance = isRelevanceSort(pageable);
+    if (sortByRelevance) {
+      pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+    }
 
     Specification<Product> spec =
         Specification.where(ProductSpecifications.isPublished())
-            .and(ProductSpecifications.hasKeyword(keyword))
+            .and(
+                ProductSpecifications.matchesKeyword(
+                    keyword, fullTextSearchEnabled, sortByRelevance))
             .and(ProductSpecifications.inCategory(categoryId))
             .and(ProductSpecifications.inProvince(provinceCode))
-            .and(ProductSpecifications.fetchFarmerAndProfile())
             .and(ProductSpecifications.isB2cProduct());
 
     // Thêm các điều kiện lọc mới vào Specification
@@ -491,16 +587,20 @@ public class ProductServiceImpl implements ProductService {
                   minRating.doubleValue())); // Chuyển sang double cho averageRating
     }
 
-    // findAll với Specification và Pageable (đã bao gồm sort)
-    Page<Product> productPage = productRepository.findAll(spec, pageable);
-    // Map kết quả sang DTO
-    return productPage.map(productMapper::toProductSummaryResponse);
+    // Projection với Specification và Pageable (đã bao gồm sort)
+    return findSummaryPage(spec, pageable);
   }
 
   @Override
-  @Transactional(readOnly = true)
   public ProductDetailResponse getPublicProductBySlug(String slug) {
+    return catalogCacheService.get(
+        Region.PRODUCT_DETAIL,
+        CatalogCacheService.productSlugKey(slug),
+        DETAIL_TYPE,
+        () -> inReadOnlyTransaction(() -> loadPublicProductBySlug(slug)));
+  }
 
+  private ProductDetailResponse loadPublicProductBySlug(String slug) {
     Product product =
         productRepository
             .findBySlugAndStatus(slug, ProductStatus.PUBLISHED)
@@ -525,8 +625,15 @@ public class ProductServiceImpl implements ProductService {
   }
 
   @Override
-  @Transactional(readOnly = true)
   public ProductDetailResponse getPublicProductById(Long id) {
+    return catalogCacheService.get(
+        Region.PRODUCT_DETAIL,
+        CatalogCacheService.productIdKey(id),
+        DETAIL_TYPE,
+        () -> inReadOnlyTransaction(() -> loadPublicProductById(id)));
+  }
+
+  private ProductDetailResponse loadPublicProductById(Long id) {
     Specification<Product> spec =
         Specification.where(ProductSpecifications.fetchFarmerAndProfile())
             .and((root, query, cb) -> cb.equal(root.get("id"), id))
@@ -565,15 +672,10 @@ public class ProductServiceImpl implements ProductService {
       return Page.empty(pageable); // Trả về trang rỗng
     }
 
-    // Gọi phương thức repository
-    Page<Product> productPage =
-        productRepository.findByFarmerIdAndStatus(
-            farmerId,
-            ProductStatus.PUBLISHED, // Chỉ lấy sản phẩm đã PUBLISHED
-            pageable);
-
-    // Map kết quả Page<Product> sang Page<ProductSummaryResponse>
-    return productPage.map(productMapper::toProductSummaryResponse);
+    Specification<Product> spec =
+        Specification.where(ProductSpecifications.byFarmer(farmerId))
+            .and(ProductSpecifications.isPublished()); // Chỉ lấy sản phẩm đã PUBLISHED
+    return findSummaryPage(spec, pageable);
   }
 
   // --- Admin Methods ---
@@ -590,12 +692,7 @@ public class ProductServiceImpl implements ProductService {
             .and(ProductSpecifications.inCategory(categoryId))
             .and(ProductSpecifications.byFarmer(farmerId));
 
-    Page<Product> productPage = productRepository.findAll(spec, pageable);
-
-    // Gọi populateImageUrls nếu ProductSummaryResponse cần thumbnail
-    productPage.getContent().forEach(this::populateImageUrls);
-
-    return productPage.map(productMapper::toProductSummaryResponse);
+    return findSummaryPage(spec, pageable);
   }
 
   @Override
@@ -617,6 +714,7 @@ public class ProductServiceImpl implements ProductService {
       product.setRejectReason(null); // Xóa lý do từ chối nếu có
       Product savedProduct = productRepository.save(product);
       log.info("Product {} approved by admin.", productId);
+      eventPublisher.publishEvent(CatalogChangedEvent.productChanged(savedProduct));
       //  TẢI TRƯỚC THÔNG TIN FARMER
       //  Load lại User đầy đủ
       User farmer =
@@ -689,6 +787,11 @@ public class ProductServiceImpl implements ProductService {
   public void forceDeleteProduct(Long productId) {
 
     if (productRepository.existsById(productId)) { // Kiểm tra tồn tại (kể cả đã soft delete)
+      // Sản phẩm còn hiển thị thì cần bỏ khỏi cache catalog
+      productRepository
+          .findById(productId)
+          .ifPresent(
+              product -> eventPublisher.publishEvent(CatalogChangedEvent.productChanged(product)));
       productRepository.deleteById(productId); // Xóa vật lý
       log.info("Product {} permanently deleted by admin.", productId);
     } else {
@@ -706,6 +809,42 @@ public class ProductServiceImpl implements ProductService {
                     "Product", "id", productId + " for farmer " + farmerId));
   }
 
+  @Override
+  @Transactional
+  public ProductDetailResponse setHotStockMode(Long productId, boolean enabled) {
+    // Khóa hàng để việc bật/tắt không chen vào giữa một checkout đang trừ kho trong DB
+    Product product =
+        productRepository.findAllByIdInForUpdate(List.of(productId)).stream()
+            .findFirst()
+            .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
+    if (product.isHotStockEnabled() != enabled) {
+      product.setHotStockEnabled(enabled);
+      productRepository.save(product);
+      // Chỉ cập nhật Redis khi DB đã commit; cờ trong DB là nguồn sự thật khi đối soát
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              if (enabled) {
+                hotStockLedgerService.enable(productId);
+              } else {
+                hotStockLedgerService.disable(productId);
+              }
+            }
+          });
+      log.info("Hot stock mode for product {} set to {} by admin.", productId, enabled);
+      eventPublisher.publishEvent(CatalogChangedEvent.productChanged(product));
+    }
+    Product reloadedProduct = productRepository.findByIdWithDetails(productId).orElse(product);
+    return productMapper.toProductDetailResponse(reloadedProduct);
+  }
+
+  private <T> T inReadOnlyTransaction(Supplier<T> work) {
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    transactionTemplate.setReadOnly(true);
+    return transactionTemplate.execute(status -> work.get());
+  }
+
   private Product findProductByIdForAdmin(Long productId) {
     // findById đã tự lọc is_deleted=false
     return productRepository
@@ -942,14 +1081,18 @@ public class ProductServiceImpl implements ProductService {
       Integer minQuantityNeeded,
       Pageable pageable) {
 
+    boolean sortByRelevance = isRelevanceSort(pageable);
+    if (sortByRelevance) {
+      pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+    }
+
     // 1. Tạo Specification để tìm Product phù hợp
     Specification<Product> productSpec =
         Specification.where(ProductSpecifications.isPublished()) // Chỉ sản phẩm đã published
-            .and(ProductSpecifications.isB2bSupply());
-
-    if (StringUtils.hasText(productKeyword)) {
-      productSpec = productSpec.and(ProductSpecifications.hasKeyword(productKeyword));
-    }
+            .and(ProductSpecifications.isB2bSupply())
+            .and(
+                ProductSpecifications.matchesKeyword(
+                    productKeyword, fullTextSearchEnabled, sortByRelevance));
     if (categoryId != null) {
       productSpec = productSpec.and(ProductSpecifications.inCategory(categoryId));
     }
@@ -975,6 +1118,15 @@ public class ProductServiceImpl implements ProductService {
 
     Page<Product> products = productRepository.findAll(productSpec, pageable);
 
+    // Lấy URL thumbnail của cả trang trong một lần gọi
+    Map<String, String> thumbnailUrls =
+        fileStorageService.getFileUrls(
+            products.getContent().stream()
+                .map(this::findThumbnailImage)
+                .flatMap(Optional::stream)
+                .map(ProductImage::getBlobPath)
+                .toList());
+
     // 3. Chuyển đổi Page<Product> sang Page<SupplySourceResponse>
     List<SupplySourceResponse> supplySources =
         products.getContent().stream()
@@ -1015,17 +1167,8 @@ public class ProductServiceImpl implements ProductService {
 
                   // Lấy thumbnail URL
                   String thumbnailUrl =
-                      product.getImages().stream()
-                          .filter(ProductImage::isDefault)
-                          .findFirst()
-                          .or(
-                              () ->
-                                  product.getImages().stream()
-                                      .min(Comparator.comparingInt(ProductImage::getDisplayOrder)))
-                          .map(
-                              img ->
-                                  fileStorageService.getFileUrl(
-                                      img.getBlobPath())) // Gọi getFileUrl
+                      findThumbnailImage(product)
+                          .map(img -> thumbnailUrls.get(img.getBlobPath()))
                           .orElse("assets/images/placeholder-image.png"); // Placeholder
                   ssr.setThumbnailUrl(thumbnailUrl);
 
@@ -1042,4 +1185,19 @@ public class ProductServiceImpl implements ProductService {
 
     return new PageImpl<>(supplySources, pageable, products.getTotalElements());
   }
+
+  // Ảnh thumbnail: ưu tiên ảnh default, sau đó đến ảnh có displayOrder nhỏ nhất
+  private Optional<ProductImage> findThumbnailImage(Product product) {
+    if (product.getImages() == null) {
+      return Optional.empty();
+    }
+    return product.getImages().stream()
+        .filter(ProductImage::isDefault)
+        .findFirst()
+        .or(
+            () ->
+                product.getImages().stream()
+                    .min(Comparator.comparingInt(ProductImage::getDisplayOrder)))
+        .filter(img -> StringUtils.hasText(img.getBlobPath()));
+  }
 }
@@ -0,0 +1,17 @@
+package com.yourcompany.agritrade.common.dto.response;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Một trang kết quả phân trang theo con trỏ (keyset), không kèm tổng số bản ghi. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+  private List<T> content;
+  private int size; // Kích thước trang đã yêu cầu
+  private boolean hasNext;
+  private String nextCursor; // Truyền lại ở tham số cursor để lấy trang kế tiếp (null nếu hết)
+}
@@ -197,6 +197,25 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
     return new ResponseEntity<>(apiResponse, HttpStatus.BAD_REQUEST);
   }
 
+  @ExceptionHandler(PaymentGatewayUnavailableException.class)
+  public ResponseEntity<ApiResponse<Object>> handlePaymentGatewayUnavailableException(
+      PaymentGatewayUnavailableException ex, WebRequest request) {
+    log.warn(
+        "Cổng thanh toán {} không khả dụng: {}. Request: {}",
+        ex.getGateway(),
+        ex.getMessage(),
+        request.getDescription(false));
+    Map<String, Object> errorDetails = new HashMap<>();
+    errorDetails.put("errorCode", "ERR_PAYMENT_GATEWAY_UNAVAILABLE");
+    errorDetails.put("gateway", ex.getGateway());
+    ApiResponse<Object> apiResponse =
+        ApiResponse.error(
+            HttpStatus.SERVICE_UNAVAILABLE.value(),
+            "Cổng thanh toán đang tạm thời gián đoạn. Vui lòng thử lại sau.",
+            errorDetails);
+    return new ResponseEntity<>(apiResponse, HttpStatus.SERVICE_UNAVAILABLE);
+  }
+
   @ExceptionHandler(ResourceNotFoundException.class)
   public ResponseEntity<ApiResponse<Object>> handleResourceNotFoundException(
       ResourceNotFoundException ex, WebRequest request) {
@@ -0,0 +1,20 @@
+package com.yourcompany.agritrade.common.exception;
+
+import lombok.Getter;
+
+// Cổng thanh toán không phản hồi, quá tải (bulkhead đầy) hoặc đang bị ngắt (circuit breaker mở)
+@Getter
+public class PaymentGatewayUnavailableException extends RuntimeException {
+
+  private final String gateway;
+
+  public PaymentGatewayUnavailableException(String gateway, String message) {
+    super(message);
+    this.gateway = gateway;
+  }
+
+  public PaymentGatewayUnavailableException(String gateway, String message, Throwable cause) {
+    super(message, cause);
+    this.gateway = gateway;
+  }
+}
@@ -0,0 +1,6 @@
+package com.yourcompany.agritrade.common.model;
+
+public enum ExportFormat {
+  XLSX,
+  CSV
+}
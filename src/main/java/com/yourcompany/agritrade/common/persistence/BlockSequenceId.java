@@ -0,0 +1,26 @@
+package com.yourcompany.agritrade.common.persistence;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import org.hibernate.annotations.IdGeneratorType;
+
+/**
+ * Sinh ID cho entity theo khối lấy từ bảng {@code id_block_sequences} thay cho IDENTITY. ID có
+ * trước khi INSERT nên Hibernate gom được các INSERT cùng loại thành JDBC batch (IDENTITY buộc mỗi
+ * dòng một round-trip để đọc lại khóa).
+ */
+@IdGeneratorType(BlockSequenceIdGenerator.class)
+@Retention(RUNTIME)
+@Target({FIELD, METHOD})
+public @interface BlockSequenceId {
+
+  /** Tên dãy trong {@code id_block_sequences}, dùng chung giữa các node. */
+  String name();
+
+  /** Số ID mỗi lần lấy từ DB; phần còn dư khi node dừng sẽ bị bỏ. */
+  int blockSize() default 50;
+}
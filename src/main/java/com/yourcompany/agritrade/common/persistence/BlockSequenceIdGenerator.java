@@ -0,0 +1,96 @@
+package com.yourcompany.agritrade.common.persistence;
+
+import com.yourcompany.agritrade.common.service.impl.JdbcIdBlockAllocator;
+import java.lang.reflect.Member;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumSet;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+import org.hibernate.jdbc.AbstractReturningWork;
+
+/**
+ * Generator của {@link BlockSequenceId}. Mỗi khối được cấp trong một kết nối/transaction cô lập của
+ * Hibernate (giống {@code TableGenerator}) nên khóa dòng dãy không bị giữ tới hết transaction
+ * nghiệp vụ. Số nhỏ nhất của khối không thấp hơn {@code MAX(id) + 1} của bảng, để chuyển từ
+ * IDENTITY sang không đụng dữ liệu cũ.
+ */
+public class BlockSequenceIdGenerator implements BeforeExecutionGenerator {
+
+  private final String sequenceName;
+  private final int blockSize;
+  private final String maxIdSql;
+
+  private boolean tableReady;
+  private long next;
+  private long blockEnd; // Không bao gồm
+
+  public BlockSequenceIdGenerator(
+      BlockSequenceId config, Member member, CustomIdGeneratorCreationContext context) {
+    this(
+        config.name(),
+        config.blockSize(),
+        context.getPersistentClass().getTable().getQuotedName(),
+        context.getProperty().getValue().getColumns().get(0).getQuotedName());
+  }
+
+  BlockSequenceIdGenerator(
+      String sequenceName, int blockSize, String tableName, String idColumnName) {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("blockSize must be positive");
+    }
+    this.sequenceName = sequenceName;
+    this.blockSize = blockSize;
+    this.maxIdSql = "SELECT COALESCE(MAX(" + idColumnName + "), 0) + 1 FROM " + tableName;
+  }
+
+  @Override
+  public synchronized Object generate(
+      SharedSessionContractImplementor session,
+      Object owner,
+      Object currentValue,
+      EventType eventType) {
+    if (next >= blockEnd) {
+      next = allocateBlock(session);
+      blockEnd = next + blockSize;
+    }
+    return next++;
+  }
+
+  private long allocateBlock(SharedSessionContractImplementor session) {
+    return session
+        .getTransactionCoordinator()
+        .createIsolationDelegate()
+        .delegateWork(
+            new AbstractReturningWork<Long>() {
+              @Override
+              public Long execute(Connection connection) throws SQLException {
+                if (!tableReady) {
+                  JdbcIdBlockAllocator.createTableIfMissing(connection);
+                  tableReady = true;
+                }
+                return JdbcIdBlockAllocator.allocate(
+                    connection, sequenceName, blockSize, minimumStart(connection));
+              }
+            },
+            true);
+  }
+
+  private long minimumStart(Connection connection) throws SQLException {
+    try (Statement st = connection.createStatement();
+        ResultSet rs = st.executeQuery(maxIdSql)) {
+      rs.next();
+      return rs.getLong(1);
+    }
+  }
+
+  @Override
+  public EnumSet<EventType> getEventTypes() {
+    return EventTypeSets.INSERT_ONLY;
+  }
+}
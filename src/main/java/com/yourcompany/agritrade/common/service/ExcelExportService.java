@@ -1,48 +1,63 @@
 package com.yourcompany.agritrade.common.service;
 
 import com.yourcompany.agritrade.ordering.dto.response.OrderSummaryResponse;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.Iterator;
+import java.util.stream.Stream;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.stereotype.Service;
 
+/**
+ * Xuất danh sách đơn hàng theo kiểu streaming: dữ liệu được đọc từ Stream và ghi thẳng ra
+ * OutputStream, bộ nhớ sử dụng không phụ thuộc vào số dòng.
+ */
 @Service
 public class ExcelExportService {
 
-  public ByteArrayInputStream ordersToExcel(List<OrderSummaryResponse> orders) throws IOException {
-    String[] COLUMNS = {
-      "Mã ĐH", "Ngày đặt", "Người mua", "Người bán", "Tổng tiền", "Trạng thái ĐH", "Trạng thái TT"
-    };
+  private static final String[] ORDER_COLUMNS = {
+    "Mã ĐH", "Ngày đặt", "Người mua", "Người bán", "Tổng tiền", "Trạng thái ĐH", "Trạng thái TT"
+  };
+  private static final DateTimeFormatter DATE_FORMATTER =
+      DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
-    try (Workbook workbook = new XSSFWorkbook();
-        ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+  // Số dòng SXSSF giữ trong bộ nhớ; các dòng cũ hơn được ghi ra file tạm
+  private static final int ROW_ACCESS_WINDOW = 100;
+
+  public void writeOrdersToExcel(Stream<OrderSummaryResponse> orders, OutputStream out)
+      throws IOException {
+    SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+    workbook.setCompressTempFiles(true); // File tạm có thể rất lớn với export cả năm
+    try {
       Sheet sheet = workbook.createSheet("DonHang");
 
       // Header
       Row headerRow = sheet.createRow(0);
-      for (int col = 0; col < COLUMNS.length; col++) {
+      for (int col = 0; col < ORDER_COLUMNS.length; col++) {
         Cell cell = headerRow.createCell(col);
-        cell.setCellValue(COLUMNS[col]);
+        cell.setCellValue(ORDER_COLUMNS[col]);
       }
 
       // Data
       int rowIdx = 1;
-      for (OrderSummaryResponse order : orders) {
+      for (Iterator<OrderSummaryResponse> it = orders.iterator(); it.hasNext(); ) {
+        OrderSummaryResponse order = it.next();
         Row row = sheet.createRow(rowIdx++);
         row.createCell(0).setCellValue(order.getOrderCode());
-        row.createCell(1)
-            .setCellValue(
-                order.getCreatedAt().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")));
+        row.createCell(1).setCellValue(formatDate(order));
         row.createCell(2).setCellValue(order.getBuyerName());
         row.createCell(3).setCellValue(order.getFarmerName());
-        row.createCell(4).setCellValue(order.getTotalAmount().doubleValue());
+        if (order.getTotalAmount() != null) {
+          row.createCell(4).setCellValue(order.getTotalAmount().doubleValue());
+        }
         row.createCell(5)
             .setCellValue(order.getStatus() != null ? order.getStatus().name() : "N/A");
         row.createCell(6)
@@ -51,7 +66,58 @@ public class ExcelExportService {
       }
 
       workbook.write(out);
-      return new ByteArrayInputStream(out.toByteArray());
+      out.flush();
+    } finally {
+      workbook.close();
+      workbook.dispose(); // Xóa các file tạm của SXSSF
+    }
+  }
+
+  /** Biến thể CSV (UTF-8 có BOM để Excel hiển thị đúng tiếng Việt), rẻ hơn XLSX. */
+  public void writeOrdersToCsv(Stream<OrderSummaryResponse> orders, OutputStream out)
+      throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    writer.write('\uFEFF');
+    writeCsvLine(writer, ORDER_COLUMNS);
+    for (Iterator<OrderSummaryResponse> it = orders.iterator(); it.hasNext(); ) {
+      OrderSummaryResponse order = it.next();
+      writeCsvLine(
+          writer,
+          order.getOrderCode(),
+          formatDate(order),
+          order.getBuyerName(),
+          order.getFarmerName(),
+          order.getTotalAmount() != null ? order.getTotalAmount().toPlainString() : "",
+          order.getStatus() != null ? order.getStatus().name() : "N/A",
+          order.getPaymentStatus() != null ? order.getPaymentStatus().name() : "N/A");
+    }
+    writer.flush();
+  }
+
+  private static String formatDate(OrderSummaryResponse order) {
+    return order.getCreatedAt() != null ? order.getCreatedAt().format(DATE_FORMATTER) : "";
+  }
+
+  private static void writeCsvLine(Writer writer, String... values) throws IOException {
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        writer.write(',');
+      }
+      writer.write(escapeCsv(values[i]));
+    }
+    writer.write("\r\n");
+  }
+
+  private static String escapeCsv(String value) {
+    if (value == null) {
+      return "";
+    }
+    if (value.indexOf(',') >= 0
+        || value.indexOf('"') >= 0
+        || value.indexOf('\n') >= 0
+        || value.indexOf('\r') >= 0) {
+      return '"' + value.replace("\"", "\"\"") + '"';
     }
+    return value;
   }
 }
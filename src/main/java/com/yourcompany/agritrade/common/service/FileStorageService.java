@@ -1,6 +1,8 @@
 package com.yourcompany.agritrade.common.service;
 
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
 import java.util.stream.Stream;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
@@ -20,5 +22,12 @@ public interface FileStorageService {
 
   String getFileUrl(String blobPath);
 
+  /**
+   * Lấy URL cho nhiều file trong một lần gọi. Bỏ qua blobPath rỗng và trùng lặp.
+   *
+   * @return Map blobPath -> URL, giữ nguyên thứ tự đầu vào.
+   */
+  Map<String, String> getFileUrls(Collection<String> blobPaths);
+
   void deleteAll(String subFolderPrefix); // Xóa toàn bộ thư mục con
 }
@@ -0,0 +1,34 @@
+package com.yourcompany.agritrade.common.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+/**
+ * Cấp phát các khối số liên tiếp cho một dãy (sequence) dùng chung giữa các node. Mỗi node lấy một
+ * khối rồi phát số từ bộ nhớ, nên không cần một round-trip tới DB cho mỗi ID và các node không bao
+ * giờ trùng số của nhau.
+ */
+public interface IdBlockAllocator {
+
+  /**
+   * Cấp một khối {@code blockSize} số liên tiếp của dãy {@code sequenceName}.
+   *
+   * @param minimumStart Số nhỏ nhất được phép cấp (vd MAX(id) + 1 của bảng đích), để dãy không lùi
+   *     về vùng đã có dữ liệu.
+   * @return Số đầu tiên của khối; khối là [start, start + blockSize).
+   */
+  long allocateBlock(String sequenceName, int blockSize, long minimumStart);
+
+  /**
+   * Cấp một khối như {@link #allocateBlock} nhưng không trên luồng gọi, để lấy trước khối kế tiếp:
+   * luồng gọi thường đang giữ kết nối của transaction nghiệp vụ và không nên mượn thêm một kết nối
+   * nữa từ pool. Mặc định cấp ngay trên luồng gọi.
+   *
+   * @param minimumStart Được gọi khi thực sự cấp khối.
+   */
+  default CompletableFuture<Long> allocateBlockAsync(
+      String sequenceName, int blockSize, LongSupplier minimumStart) {
+    return CompletableFuture.completedFuture(
+        allocateBlock(sequenceName, blockSize, minimumStart.getAsLong()));
+  }
+}
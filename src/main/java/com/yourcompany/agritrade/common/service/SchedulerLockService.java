@@ -0,0 +1,22 @@
+package com.yourcompany.agritrade.common.service;
+
+import java.time.Duration;
+
+/**
+ * Khóa dùng chung giữa các node cho job định kỳ (cùng cách làm với ShedLock): mỗi lần kích hoạt chỉ
+ * node giành được khóa mới chạy job, các node khác bỏ qua lượt đó.
+ */
+public interface SchedulerLockService {
+
+  /**
+   * Chạy {@code task} nếu giành được khóa {@code lockName}. Phải gọi ngoài transaction.
+   *
+   * @param lockAtMostFor Khóa tự hết hạn sau khoảng này, để node chết giữa chừng không giữ khóa
+   *     mãi. Phải dài hơn thời gian chạy bình thường của job.
+   * @param lockAtLeastFor Giữ khóa tối thiểu chừng này kể từ lúc giành, để node có đồng hồ lệch vài
+   *     giây không chạy lại cùng lượt vừa xong.
+   * @return true nếu task đã chạy trên node này.
+   */
+  boolean runExclusively(
+      String lockName, Duration lockAtMostFor, Duration lockAtLeastFor, Runnable task);
+}
@@ -14,6 +14,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
@@ -22,6 +27,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
@@ -37,11 +43,31 @@ public class FirebaseStorageService implements FileStorageService {
   @Value("${firebase.storage.service-account-key-path}")
   private String serviceAccountKeyPath;
 
+  // Thời hạn của signed URL và khoảng thời gian trước khi hết hạn thì ký lại
+  @Value("${firebase.storage.signed-url.ttl-minutes:60}")
+  private long signedUrlTtlMinutes;
+
+  @Value("${firebase.storage.signed-url.refresh-before-minutes:10}")
+  private long signedUrlRefreshBeforeMinutes;
+
+  @Value("${firebase.storage.signed-url.cache-max-entries:10000}")
+  private int signedUrlCacheMaxEntries;
+
   private Storage storage; // Client của Google Cloud Storage
 
+  // Ký V4 là một phép ký RSA, tốn CPU nên URL được cache theo blobPath
+  private SignedUrlCache signedUrlCache;
+  private SignedUrlCache.Stats lastLoggedStats;
+
   @PostConstruct // Khởi tạo Firebase Admin SDK khi service được tạo
   @Override
   public void init() {
+    this.signedUrlCache =
+        new SignedUrlCache(
+            Duration.ofMinutes(signedUrlTtlMinutes),
+            Duration.ofMinutes(signedUrlRefreshBeforeMinutes),
+            signedUrlCacheMaxEntries,
+            Clock.systemUTC());
     try {
       // Lấy đường dẫn tuyệt đối đến file key từ classpath
       InputStream serviceAccount =
@@ -151,6 +177,7 @@ public class FirebaseStorageService implements FileStorageService {
     try {
       BlobId blobId = BlobId.of(bucketName, blobPath);
       boolean deleted = storage.delete(blobId);
+      signedUrlCache.invalidate(blobPath);
       if (deleted) {
         log.info("Deleted file from Firebase Storage: {}", blobPath);
       } else {
@@ -164,13 +191,9 @@ public class FirebaseStorageService implements FileStorageService {
 
   @Override
   public String getFileUrl(String blobPath) { // Nhận blobPath
-    // Luôn tạo Signed URL
+    // Dùng lại Signed URL trong cache, chỉ ký lại khi URL sắp hết hạn
     try {
-      BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(bucketName, blobPath)).build();
-      // Tạo URL có hiệu lực trong 1 giờ (ví dụ)
-      URL signedUrl =
-          storage.signUrl(blobInfo, 1, TimeUnit.HOURS, Storage.SignUrlOption.withV4Signature());
-      return signedUrl.toString();
+      return signedUrlCache.get(blobPath, this::signUrl);
     } catch (Exception e) {
       log.error("Error generating signed URL for blob: {}", blobPath, e);
       // Trả về một URL placeholder hoặc ném lỗi tùy theo yêu cầu
@@ -179,6 +202,52 @@ public class FirebaseStorageService implements FileStorageService {
     }
   }
 
+  @Override
+  public Map<String, String> getFileUrls(Collection<String> blobPaths) {
+    Map<String, String> urls = new LinkedHashMap<>();
+    if (blobPaths == null) {
+      return urls;
+    }
+    for (String blobPath : blobPaths) {
+      if (StringUtils.hasText(blobPath) && !urls.containsKey(blobPath)) {
+        urls.put(blobPath, getFileUrl(blobPath));
+      }
+    }
+    return urls;
+  }
+
+  public SignedUrlCache.Stats getSignedUrlCacheStats() {
+    return signedUrlCache.stats();
+  }
+
+  // Ghi log định kỳ số liệu hit/miss của cache signed URL (chỉ khi có hoạt động mới)
+  @Scheduled(fixedDelayString = "${firebase.storage.signed-url.stats-log-interval-ms:300000}")
+  public void logSignedUrlCacheStats() {
+    SignedUrlCache.Stats stats = signedUrlCache.stats();
+    if (stats.equals(lastLoggedStats)) {
+      return;
+    }
+    lastLoggedStats = stats;
+    log.info(
+        "Signed URL cache: hits={}, misses={}, hitRate={}, evictions={}, size={}",
+        stats.hits(),
+        stats.misses(),
+        String.format("%.2f", stats.hitRate()),
+        stats.evictions(),
+        stats.size());
+  }
+
+  private String signUrl(String blobPath) {
+    BlobInfo blobInfo = BlobInfo.newBuilder(BlobId.of(bucketName, blobPath)).build();
+    URL signedUrl =
+        storage.signUrl(
+            blobInfo,
+            signedUrlCache.getTtl().toSeconds(),
+            TimeUnit.SECONDS,
+            Storage.SignUrlOption.withV4Signature());
+    return signedUrl.toString();
+  }
+
   @Override
   public void deleteAll(String subFolderPrefix) {
     log.warn("deleteAll not implemented for Firebase");
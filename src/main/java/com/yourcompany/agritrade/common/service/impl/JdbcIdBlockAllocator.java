@@ -0,0 +1,130 @@
+package com.yourcompany.agritrade.common.service.impl;
+
+import com.yourcompany.agritrade.common.service.IdBlockAllocator;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Cấp phát khối số bằng bảng {@code id_block_sequences} trong MySQL (một dòng cho mỗi dãy).
+ *
+ * <p>Mỗi lần cấp là một câu {@code INSERT ... ON DUPLICATE KEY UPDATE} nguyên tử kết hợp {@code
+ * LAST_INSERT_ID(expr)} để đọc lại giá trị mới trên cùng kết nối. Chạy trong transaction riêng
+ * (REQUIRES_NEW) nên khóa dòng được nhả ngay, không giữ tới khi transaction của nơi gọi kết thúc.
+ * Bảng được tạo khi dùng lần đầu vì ddl-auto không quản lý nó.
+ *
+ * <p>REQUIRES_NEW mượn kết nối thứ hai trong khi kết nối của nơi gọi vẫn bị giữ, nên {@link
+ * com.yourcompany.agritrade.common.util.PooledIdSequence} lấy trước khối kế tiếp qua {@link
+ * #allocateBlockAsync} trên một luồng nền không giữ kết nối nào. Lời gọi đồng bộ chỉ còn khi lấy
+ * trước lỗi; kích thước pool Hikari phải tính cả kết nối này (xem application.yaml).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JdbcIdBlockAllocator implements IdBlockAllocator {
+
+  private static final String CREATE_TABLE_SQL =
+      "CREATE TABLE IF NOT EXISTS id_block_sequences ("
+          + " name VARCHAR(100) NOT NULL PRIMARY KEY,"
+          + " next_value BIGINT NOT NULL,"
+          + " updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP)";
+
+  // next_value là số đầu tiên chưa cấp; sau câu lệnh, LAST_INSERT_ID() = số cuối khối + 1
+  private static final String ALLOCATE_SQL =
+      "INSERT INTO id_block_sequences (name, next_value) VALUES (?, LAST_INSERT_ID(? + ?))"
+          + " ON DUPLICATE KEY UPDATE"
+          + " next_value = LAST_INSERT_ID(GREATEST(next_value, ?) + ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private volatile boolean tableReady = false;
+  private ExecutorService prefetchExecutor;
+
+  @PostConstruct
+  void init() {
+    // Một luồng là đủ: mỗi dãy chỉ lấy trước một khối mỗi lần
+    prefetchExecutor =
+        Executors.newSingleThreadExecutor(
+            runnable ->
+                Thread.ofPlatform().name("id-block-prefetch").daemon(true).unstarted(runnable));
+  }
+
+  @PreDestroy
+  void shutdown() {
+    prefetchExecutor.shutdownNow();
+  }
+
+  @Override
+  @Transactional(propagation = Propagation.REQUIRES_NEW)
+  public long allocateBlock(String sequenceName, int blockSize, long minimumStart) {
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("blockSize must be positive");
+    }
+    ensureTable();
+    long start =
+        jdbcTemplate.execute(
+            (ConnectionCallback<Long>)
+                connection -> allocate(connection, sequenceName, blockSize, minimumStart));
+    log.debug(
+        "Allocated id block [{}, {}) for sequence {}", start, start + blockSize, sequenceName);
+    return start;
+  }
+
+  @Override
+  public CompletableFuture<Long> allocateBlockAsync(
+      String sequenceName, int blockSize, LongSupplier minimumStart) {
+    // Gọi trực tiếp (không qua proxy): luồng nền không có transaction, câu lệnh tự commit ngay
+    return CompletableFuture.supplyAsync(
+        () -> allocateBlock(sequenceName, blockSize, minimumStart.getAsLong()), prefetchExecutor);
+  }
+
+  /**
+   * Cấp một khối trên kết nối cho sẵn; dùng chung cho nơi không đi qua Spring (vd id generator của
+   * Hibernate chạy trong kết nối cô lập của nó). Kết nối phải tự commit hoặc do nơi gọi commit.
+   */
+  public static long allocate(
+      Connection connection, String sequenceName, int blockSize, long minimumStart)
+      throws SQLException {
+    try (PreparedStatement ps = connection.prepareStatement(ALLOCATE_SQL)) {
+      ps.setString(1, sequenceName);
+      ps.setLong(2, minimumStart);
+      ps.setInt(3, blockSize);
+      ps.setLong(4, minimumStart);
+      ps.setInt(5, blockSize);
+      ps.executeUpdate();
+    }
+    try (Statement st = connection.createStatement();
+        ResultSet rs = st.executeQuery("SELECT LAST_INSERT_ID()")) {
+      rs.next();
+      return rs.getLong(1) - blockSize;
+    }
+  }
+
+  public static void createTableIfMissing(Connection connection) throws SQLException {
+    try (Statement st = connection.createStatement()) {
+      st.execute(CREATE_TABLE_SQL);
+    }
+  }
+
+  private void ensureTable() {
+    if (!tableReady) {
+      jdbcTemplate.execute(CREATE_TABLE_SQL);
+      tableReady = true;
+    }
+  }
+}
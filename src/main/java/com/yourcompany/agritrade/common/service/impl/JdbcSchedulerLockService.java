@@ -0,0 +1,121 @@
+package com.yourcompany.agritrade.common.service.impl;
+
+import com.yourcompany.agritrade.common.service.SchedulerLockService;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Khóa job bằng bảng {@code scheduler_locks} trong MySQL (một dòng cho mỗi khóa), theo mô hình của
+ * ShedLock: giành khóa là một câu UPDATE có điều kiện {@code lock_until <= NOW}, dòng chưa có thì
+ * INSERT IGNORE. Mọi mốc thời gian lấy theo đồng hồ của DB nên không phụ thuộc đồng hồ từng node.
+ * Mỗi câu lệnh chạy trong transaction riêng (REQUIRES_NEW) nên khóa dòng được nhả ngay. Bảng được
+ * tạo khi dùng lần đầu vì ddl-auto không quản lý nó.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JdbcSchedulerLockService implements SchedulerLockService {
+
+  private static final String CREATE_TABLE_SQL =
+      "CREATE TABLE IF NOT EXISTS scheduler_locks ("
+          + " name VARCHAR(64) NOT NULL PRIMARY KEY,"
+          + " lock_until TIMESTAMP(3) NOT NULL,"
+          + " locked_at TIMESTAMP(3) NOT NULL,"
+          + " locked_by VARCHAR(255) NOT NULL)";
+
+  private static final String UPDATE_SQL =
+      "UPDATE scheduler_locks SET"
+          + " lock_until = TIMESTAMPADD(MICROSECOND, ? * 1000, CURRENT_TIMESTAMP(3)),"
+          + " locked_at = CURRENT_TIMESTAMP(3), locked_by = ?"
+          + " WHERE name = ? AND lock_until <= CURRENT_TIMESTAMP(3)";
+
+  private static final String INSERT_SQL =
+      "INSERT IGNORE INTO scheduler_locks (name, lock_until, locked_at, locked_by)"
+          + " VALUES (?, TIMESTAMPADD(MICROSECOND, ? * 1000, CURRENT_TIMESTAMP(3)),"
+          + " CURRENT_TIMESTAMP(3), ?)";
+
+  // Nhả khóa nhưng vẫn giữ tới locked_at + lockAtLeastFor
+  private static final String UNLOCK_SQL =
+      "UPDATE scheduler_locks SET lock_until = GREATEST(CURRENT_TIMESTAMP(3),"
+          + " TIMESTAMPADD(MICROSECOND, ? * 1000, locked_at))"
+          + " WHERE name = ? AND locked_by = ?";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final PlatformTransactionManager transactionManager;
+
+  private volatile boolean tableReady = false;
+
+  @Override
+  public boolean runExclusively(
+      String lockName, Duration lockAtMostFor, Duration lockAtLeastFor, Runnable task) {
+    ensureTable();
+    // Mỗi lần giành khóa có định danh riêng để chỉ chính lần đó nhả được khóa
+    String lockedBy = hostName() + ":" + UUID.randomUUID();
+    if (!tryLock(lockName, lockAtMostFor, lockedBy)) {
+      log.debug("Scheduler lock {} is held by another node, skipping", lockName);
+      return false;
+    }
+    log.debug("Acquired scheduler lock {} as {}", lockName, lockedBy);
+    try {
+      task.run();
+      return true;
+    } finally {
+      unlock(lockName, lockAtLeastFor, lockedBy);
+    }
+  }
+
+  private boolean tryLock(String lockName, Duration lockAtMostFor, String lockedBy) {
+    Boolean acquired =
+        inNewTransaction()
+            .execute(
+                status ->
+                    jdbcTemplate.update(UPDATE_SQL, lockAtMostFor.toMillis(), lockedBy, lockName)
+                            > 0
+                        || jdbcTemplate.update(
+                                INSERT_SQL, lockName, lockAtMostFor.toMillis(), lockedBy)
+                            > 0);
+    return Boolean.TRUE.equals(acquired);
+  }
+
+  private void unlock(String lockName, Duration lockAtLeastFor, String lockedBy) {
+    try {
+      inNewTransaction()
+          .executeWithoutResult(
+              status ->
+                  jdbcTemplate.update(UNLOCK_SQL, lockAtLeastFor.toMillis(), lockName, lockedBy));
+    } catch (Exception e) {
+      // Khóa sẽ tự hết hạn sau lockAtMostFor
+      log.warn("Failed to release scheduler lock {}: {}", lockName, e.getMessage());
+    }
+  }
+
+  private TransactionTemplate inNewTransaction() {
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    return transactionTemplate;
+  }
+
+  private void ensureTable() {
+    if (!tableReady) {
+      jdbcTemplate.execute(CREATE_TABLE_SQL);
+      tableReady = true;
+    }
+  }
+
+  private static String hostName() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      return "unknown-host";
+    }
+  }
+}
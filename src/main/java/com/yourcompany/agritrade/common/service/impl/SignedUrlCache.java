@@ -0,0 +1,118 @@
+package com.yourcompany.agritrade.common.service.impl;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache URL đã ký (signed URL) theo blobPath. Một URL được dùng lại cho tới khi thời hạn còn lại
+ * ngắn hơn {@code refreshBefore}, sau đó mới ký lại, nên client luôn nhận URL còn hiệu lực ít nhất
+ * {@code refreshBefore}. Số phần tử bị giới hạn; khi vượt ngưỡng sẽ bỏ các URL sắp hết hạn trước.
+ */
+public class SignedUrlCache {
+
+  private record CachedUrl(String url, Instant expiresAt) {}
+
+  /** Số liệu hit/miss của cache. */
+  public record Stats(long hits, long misses, long evictions, int size) {
+    public double hitRate() {
+      long total = hits + misses;
+      return total == 0 ? 0d : (double) hits / total;
+    }
+  }
+
+  private final ConcurrentHashMap<String, CachedUrl> entries = new ConcurrentHashMap<>();
+  private final Duration ttl;
+  private final Duration refreshBefore;
+  private final int maxEntries;
+  private final Clock clock;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  SignedUrlCache(Duration ttl, Duration refreshBefore, int maxEntries, Clock clock) {
+    if (!refreshBefore.minus(ttl).isNegative()) {
+      throw new IllegalArgumentException("refreshBefore must be shorter than ttl");
+    }
+    this.ttl = ttl;
+    this.refreshBefore = refreshBefore;
+    this.maxEntries = maxEntries;
+    this.clock = clock;
+  }
+
+  Duration getTtl() {
+    return ttl;
+  }
+
+  /**
+   * Trả về URL trong cache nếu còn đủ hạn, nếu không thì gọi {@code signer} để ký mới. Ngoại lệ từ
+   * signer được ném ra ngoài và không có gì được lưu vào cache.
+   */
+  String get(String blobPath, Function<String, String> signer) {
+    Instant now = clock.instant();
+    CachedUrl cached = entries.get(blobPath);
+    if (cached != null && isFresh(cached, now)) {
+      hits.increment();
+      return cached.url();
+    }
+    misses.increment();
+    String url = signer.apply(blobPath);
+    entries.put(blobPath, new CachedUrl(url, now.plus(ttl)));
+    if (entries.size() > maxEntries) {
+      evict(now);
+    }
+    return url;
+  }
+
+  void invalidate(String blobPath) {
+    entries.remove(blobPath);
+  }
+
+  Stats stats() {
+    return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+  }
+
+  private boolean isFresh(CachedUrl cached, Instant now) {
+    return cached.expiresAt().minus(refreshBefore).isAfter(now);
+  }
+
+  // Bỏ các URL đã cần ký lại, nếu vẫn đầy thì bỏ các URL hết hạn sớm nhất xuống còn 90% ngưỡng
+  private synchronized void evict(Instant now) {
+    if (entries.size() <= maxEntries) {
+      return;
+    }
+    entries
+        .entrySet()
+        .removeIf(
+            entry -> {
+              boolean stale = !isFresh(entry.getValue(), now);
+              if (stale) {
+                evictions.increment();
+              }
+              return stale;
+            });
+
+    int excess = entries.size() - maxEntries * 9 / 10;
+    if (excess > 0) {
+      List<String> oldest =
+          entries.entrySet().stream()
+              .sorted(Comparator.comparing(entry -> entry.getValue().expiresAt()))
+              .limit(excess)
+              .map(Map.Entry::getKey)
+              .toList();
+      oldest.forEach(
+          key -> {
+            if (entries.remove(key) != null) {
+              evictions.increment();
+            }
+          });
+    }
+  }
+}
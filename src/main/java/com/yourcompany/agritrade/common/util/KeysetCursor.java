@@ -0,0 +1,47 @@
+package com.yourcompany.agritrade.common.util;
+
+import com.yourcompany.agritrade.common.exception.BadRequestException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Con trỏ phân trang keyset theo cặp (createdAt, id) - vị trí của bản ghi cuối cùng ở trang trước.
+ * Được mã hóa Base64 URL-safe để client chỉ cần truyền lại nguyên chuỗi.
+ */
+public record KeysetCursor(LocalDateTime createdAt, Long id) {
+
+  private static final String SEPARATOR = "|";
+
+  public String encode() {
+    String raw = createdAt + SEPARATOR + id;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Giải mã con trỏ từ client.
+   *
+   * @return null nếu cursor rỗng (trang đầu tiên).
+   * @throws BadRequestException nếu cursor không hợp lệ.
+   */
+  public static KeysetCursor decode(String cursor) {
+    if (cursor == null || cursor.isBlank()) {
+      return null;
+    }
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      int separatorIndex = raw.lastIndexOf(SEPARATOR);
+      if (separatorIndex <= 0) {
+        throw new BadRequestException("Cursor không hợp lệ.");
+      }
+      return new KeysetCursor(
+          LocalDateTime.parse(raw.substring(0, separatorIndex)),
+          Long.valueOf(raw.substring(separatorIndex + 1)));
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      throw new BadRequestException("Cursor không hợp lệ.");
+    }
+  }
+}
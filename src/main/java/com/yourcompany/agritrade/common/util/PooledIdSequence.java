@@ -0,0 +1,69 @@
+package com.yourcompany.agritrade.common.util;
+
+import com.yourcompany.agritrade.common.service.IdBlockAllocator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongSupplier;
+
+/**
+ * Phát số tăng dần từ bộ nhớ theo từng khối lấy từ {@link IdBlockAllocator}. Chỉ gọi tới allocator
+ * khi khối hiện tại đã dùng hết; số do các node khác nhau phát ra không trùng nhau nhưng không liên
+ * tục (khối còn dư khi node dừng sẽ bị bỏ).
+ *
+ * <p>Khối kế tiếp được lấy trước qua {@link IdBlockAllocator#allocateBlockAsync} (ngay khi tạo và
+ * khi khối hiện tại đã dùng quá nửa), nên luồng gọi, thường đang trong transaction nghiệp vụ, không
+ * phải tự mượn thêm kết nối DB để cấp khối.
+ */
+public final class PooledIdSequence {
+
+  private final IdBlockAllocator allocator;
+  private final String sequenceName;
+  private final int blockSize;
+  private final LongSupplier minimumStart;
+
+  private long next;
+  private long blockEnd; // Không bao gồm
+  private CompletableFuture<Long> prefetched; // Khối kế tiếp đang lấy trước, null nếu chưa bắt đầu
+
+  /**
+   * @param minimumStart Được gọi mỗi lần lấy khối mới, trả về số nhỏ nhất được phép cấp (vd MAX(id)
+   *     + 1 của bảng đích).
+   */
+  public PooledIdSequence(
+      IdBlockAllocator allocator, String sequenceName, int blockSize, LongSupplier minimumStart) {
+    this.allocator = allocator;
+    this.sequenceName = sequenceName;
+    this.blockSize = blockSize;
+    this.minimumStart = minimumStart;
+    this.prefetched = allocator.allocateBlockAsync(sequenceName, blockSize, minimumStart);
+  }
+
+  public synchronized long next() {
+    if (next >= blockEnd) {
+      next = takeNextBlock();
+      blockEnd = next + blockSize;
+    }
+    long id = next++;
+    if (prefetched == null && blockEnd - next <= blockSize / 2) {
+      prefetched = allocator.allocateBlockAsync(sequenceName, blockSize, minimumStart);
+    }
+    return id;
+  }
+
+  private long takeNextBlock() {
+    CompletableFuture<Long> block = prefetched;
+    prefetched = null;
+    if (block != null) {
+      try {
+        Long start = block.join();
+        if (start != null) {
+          return start;
+        }
+      } catch (CompletionException | CancellationException e) {
+        // Lấy trước lỗi (vd DB vừa chập chờn): cấp lại ngay trên luồng gọi
+      }
+    }
+    return allocator.allocateBlock(sequenceName, blockSize, minimumStart.getAsLong());
+  }
+}
@@ -0,0 +1,102 @@
+package com.yourcompany.agritrade.common.util;
+
+import com.ibm.icu.lang.UCharacter;
+import com.ibm.icu.text.Normalizer2;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Chuẩn hóa văn bản tiếng Việt cho tìm kiếm: bỏ dấu, đổi đ/Đ thành d, chữ thường và gộp khoảng
+ * trắng. Dùng chung cho cột tìm kiếm (search_name, search_text) lẫn từ khóa người dùng nhập, để
+ * "Xoài cát" và "xoai cat" khớp nhau.
+ */
+public final class SearchTextNormalizer {
+
+  private static final Normalizer2 NFD = Normalizer2.getNFDInstance();
+
+  private SearchTextNormalizer() {}
+
+  /** Trả về chuỗi đã bỏ dấu, chữ thường; null nếu đầu vào null. */
+  public static String fold(String text) {
+    if (text == null) {
+      return null;
+    }
+    String decomposed = NFD.normalize(text);
+    StringBuilder sb = new StringBuilder(decomposed.length());
+    boolean lastWasSpace = true; // Bỏ khoảng trắng đầu chuỗi
+    for (int i = 0; i < decomposed.length(); i++) {
+      char c = decomposed.charAt(i);
+      if (UCharacter.getType(c) == UCharacter.NON_SPACING_MARK) {
+        continue; // Dấu thanh, dấu mũ... đã được tách ra sau NFD
+      }
+      if (c == 'đ' || c == 'Đ') {
+        c = 'd';
+      }
+      if (Character.isWhitespace(c)) {
+        if (!lastWasSpace) {
+          sb.append(' ');
+          lastWasSpace = true;
+        }
+        continue;
+      }
+      sb.append(c);
+      lastWasSpace = false;
+    }
+    int len = sb.length();
+    if (len > 0 && sb.charAt(len - 1) == ' ') {
+      sb.setLength(len - 1);
+    }
+    return sb.toString().toLowerCase(Locale.ROOT);
+  }
+
+  /** Chuẩn hóa từng phần rồi nối bằng khoảng trắng, bỏ qua phần null/rỗng. */
+  public static String foldAll(String... parts) {
+    StringBuilder sb = new StringBuilder();
+    for (String part : parts) {
+      String folded = fold(part);
+      if (folded != null && !folded.isEmpty()) {
+        if (sb.length() > 0) {
+          sb.append(' ');
+        }
+        sb.append(folded);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Tách từ khóa đã chuẩn hóa thành các token chỉ gồm chữ/số. Ký tự đặc biệt (kể cả toán tử của
+   * MySQL boolean mode như + - * " ~ &lt; &gt;) bị coi là dấu phân cách.
+   */
+  public static List<String> tokenize(String text) {
+    String folded = fold(text);
+    if (folded == null || folded.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<String> tokens = new ArrayList<>();
+    StringBuilder current = new StringBuilder();
+    for (int i = 0; i < folded.length(); i++) {
+      char c = folded.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        current.append(c);
+      } else if (current.length() > 0) {
+        tokens.add(current.toString());
+        current.setLength(0);
+      }
+    }
+    if (current.length() > 0) {
+      tokens.add(current.toString());
+    }
+    return tokens;
+  }
+
+  /** Cắt chuỗi về tối đa maxLength ký tự (dùng cho cột có giới hạn độ dài). */
+  public static String truncate(String text, int maxLength) {
+    if (text == null || text.length() <= maxLength) {
+      return text;
+    }
+    return text.substring(0, maxLength);
+  }
+}
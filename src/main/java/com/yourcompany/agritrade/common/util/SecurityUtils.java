@@ -1,28 +1,38 @@
 package com.yourcompany.agritrade.common.util;
 
+import com.yourcompany.agritrade.config.security.AuthenticatedUser;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import com.yourcompany.agritrade.usermanagement.service.UserCacheService;
+import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Component // Đánh dấu là một Spring bean để có thể inject UserRepository
 @Slf4j
 public class SecurityUtils {
 
   private static UserRepository staticUserRepository;
+  private static UserCacheService staticUserCacheService;
 
-  public SecurityUtils(UserRepository userRepository) {
+  public SecurityUtils(UserRepository userRepository, UserCacheService userCacheService) {
     SecurityUtils.staticUserRepository = userRepository;
+    SecurityUtils.staticUserCacheService = userCacheService;
   }
 
   /**
    * Lấy thông tin User entity của người dùng đang được xác thực. Phương thức này là static để có
    * thể gọi trực tiếp từ bất kỳ đâu mà không cần inject SecurityUtils.
    *
+   * <p>Khi principal mang sẵn id (token mới) và đang ở trong transaction chỉ đọc, kết quả lấy từ
+   * {@link UserCacheService} (bản sao chỉ đọc, không tốn truy vấn khi cache còn hạn). Trong
+   * transaction ghi, user luôn được nạp theo id từ persistence context để thay đổi được lưu đúng.
+   *
    * @return User entity của người dùng hiện tại.
    * @throws AccessDeniedException Nếu không có người dùng nào được xác thực.
    * @throws UsernameNotFoundException Nếu thông tin xác thực có nhưng không tìm thấy user trong DB.
@@ -41,7 +51,9 @@ public class SecurityUtils {
     Object principal = authentication.getPrincipal();
     String userIdentifier;
 
-    if (principal instanceof org.springframework.security.core.userdetails.UserDetails) {
+    if (principal instanceof AuthenticatedUser authenticatedUser) {
+      return findUserById(authenticatedUser.id());
+    } else if (principal instanceof org.springframework.security.core.userdetails.UserDetails) {
       userIdentifier =
           ((org.springframework.security.core.userdetails.UserDetails) principal).getUsername();
     } else if (principal instanceof String) {
@@ -54,12 +66,7 @@ public class SecurityUtils {
       throw new AccessDeniedException("Cannot identify user from authentication principal.");
     }
 
-    if (staticUserRepository == null) {
-      log.error(
-          "UserRepository has not been injected into SecurityUtils. This typically happens if SecurityUtils is not managed by Spring or an issue with component scanning.");
-      throw new IllegalStateException(
-          "UserRepository not available in SecurityUtils. Ensure SecurityUtils is a Spring managed bean and UserRepository is correctly injected.");
-    }
+    ensureRepositoryInjected();
 
     return staticUserRepository
         .findByEmail(userIdentifier)
@@ -72,6 +79,48 @@ public class SecurityUtils {
             });
   }
 
+  /**
+   * Lấy id của người dùng đang được xác thực. Với token có claim id, giá trị lấy thẳng từ principal
+   * mà không truy vấn DB; với token cũ thì tra cứu user như {@link #getCurrentAuthenticatedUser()}.
+   *
+   * @return Id của người dùng hiện tại.
+   * @throws AccessDeniedException Nếu không có người dùng nào được xác thực.
+   */
+  public static Long getCurrentUserId() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication != null
+        && authentication.isAuthenticated()
+        && authentication.getPrincipal() instanceof AuthenticatedUser authenticatedUser) {
+      return authenticatedUser.id();
+    }
+    return getCurrentAuthenticatedUser().getId();
+  }
+
+  private static User findUserById(Long userId) {
+    ensureRepositoryInjected();
+    boolean readOnlyTransaction =
+        TransactionSynchronizationManager.isActualTransactionActive()
+            && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    Optional<User> user =
+        readOnlyTransaction && staticUserCacheService != null
+            ? staticUserCacheService.findById(userId)
+            : staticUserRepository.findWithFarmerProfileById(userId); // HQL nên vẫn áp dụng @Where
+    return user.orElseThrow(
+        () -> {
+          log.error("Authenticated user not found in database with id: {}", userId);
+          return new UsernameNotFoundException("Authenticated user not found: " + userId);
+        });
+  }
+
+  private static void ensureRepositoryInjected() {
+    if (staticUserRepository == null) {
+      log.error(
+          "UserRepository has not been injected into SecurityUtils. This typically happens if SecurityUtils is not managed by Spring or an issue with component scanning.");
+      throw new IllegalStateException(
+          "UserRepository not available in SecurityUtils. Ensure SecurityUtils is a Spring managed bean and UserRepository is correctly injected.");
+    }
+  }
+
   /**
    * Lấy đối tượng Authentication hiện tại từ SecurityContextHolder.
    *
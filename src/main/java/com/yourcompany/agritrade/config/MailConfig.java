@@ -0,0 +1,42 @@
+package com.yourcompany.agritrade.config;
+
+import com.yourcompany.agritrade.config.mail.PooledJavaMailSender;
+import com.yourcompany.agritrade.config.properties.MailPoolProperties;
+import java.util.Properties;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+// Thay JavaMailSender mặc định của Spring Boot bằng bản giữ kết nối SMTP để dùng lại
+@Configuration
+@EnableConfigurationProperties(MailProperties.class)
+public class MailConfig {
+
+  @Bean
+  public JavaMailSenderImpl mailSender(
+      MailProperties mailProperties, MailPoolProperties mailPoolProperties) {
+    JavaMailSenderImpl sender =
+        mailPoolProperties.isEnabled()
+            ? new PooledJavaMailSender(mailPoolProperties)
+            : new JavaMailSenderImpl();
+    // Áp dụng spring.mail.* giống MailSenderPropertiesConfiguration của Spring Boot
+    sender.setHost(mailProperties.getHost());
+    if (mailProperties.getPort() != null) {
+      sender.setPort(mailProperties.getPort());
+    }
+    sender.setUsername(mailProperties.getUsername());
+    sender.setPassword(mailProperties.getPassword());
+    sender.setProtocol(mailProperties.getProtocol());
+    if (mailProperties.getDefaultEncoding() != null) {
+      sender.setDefaultEncoding(mailProperties.getDefaultEncoding().name());
+    }
+    if (!mailProperties.getProperties().isEmpty()) {
+      Properties javaMailProperties = new Properties();
+      javaMailProperties.putAll(mailProperties.getProperties());
+      sender.setJavaMailProperties(javaMailProperties);
+    }
+    return sender;
+  }
+}
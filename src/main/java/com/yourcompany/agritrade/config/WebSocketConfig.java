@@ -1,6 +1,7 @@
 package com.yourcompany.agritrade.config;
 
 import com.yourcompany.agritrade.config.websocket.AuthChannelInterceptor;
+import com.yourcompany.agritrade.interaction.websocket.ClusterMessageRelay;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.ChannelRegistration;
@@ -16,15 +17,22 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
   @Autowired // Inject interceptor
   private AuthChannelInterceptor authChannelInterceptor;
 
+  @Autowired // Phát tán message sang các node khác khi bật app.websocket.cluster.enabled
+  private ClusterMessageRelay clusterMessageRelay;
+
   @Override
   public void configureMessageBroker(MessageBrokerRegistry config) {
     // Tiền tố cho các đích đến mà client sẽ subscribe (ví dụ: /topic/public, /user/queue/private)
     // enableSimpleBroker sẽ tạo một message broker đơn giản trong bộ nhớ
-    config.enableSimpleBroker("/topic", "/user"); // /user dùng cho private message
+    // /queue: đích đã phân giải của private message (/user/{email}/queue/x ->
+    // /queue/x-user{session})
+    config.enableSimpleBroker("/topic", "/user", "/queue"); // /user dùng cho private message
     // Tiền tố cho các đích đến mà client gửi message đến server (ví dụ: /app/chat.sendMessage)
     config.setApplicationDestinationPrefixes("/app");
     // Cấu hình để gửi tin nhắn riêng tư cho user theo session id
     config.setUserDestinationPrefix("/user");
+    // Message ứng dụng gửi tới broker đi qua relay để tới cả client đang kết nối ở node khác
+    config.configureBrokerChannel().interceptors(clusterMessageRelay);
   }
 
   @Override
@@ -0,0 +1,233 @@
+package com.yourcompany.agritrade.config.mail;
+
+import com.yourcompany.agritrade.config.properties.MailPoolProperties;
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import java.time.Clock;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * {@link JavaMailSenderImpl} giữ các kết nối SMTP đã bắt tay (TCP + STARTTLS + AUTH) để dùng lại.
+ * Bản gốc mở một kết nối cho mỗi lời gọi {@code send} và gửi NOOP trước mỗi email; ở đây mỗi lời
+ * gọi mượn một kết nối trong pool, gửi cả lô email trên đó rồi trả lại.
+ *
+ * <p>Số kết nối mở cùng lúc giới hạn bởi {@code max-connections}. Kết nối nhàn rỗi quá {@code
+ * max-idle-ms} hoặc đã gửi {@code max-messages-per-connection} email thì được đóng. Kết nối lấy từ
+ * pool có thể đã bị máy chủ ngắt: khi đó email được gửi lại một lần trên kết nối mới.
+ */
+@Slf4j
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean {
+
+  private static final String HEADER_MESSAGE_ID = "Message-ID";
+
+  /** Số liệu pool trên node hiện tại. */
+  public record PoolStats(
+      long connectionsOpened, long connectionsReused, long messagesSent, int idle, int inUse) {}
+
+  private final MailPoolProperties poolProperties;
+  private final Semaphore connectionPermits;
+  // LIFO: kết nối vừa dùng nằm đầu hàng, ít khả năng đã bị máy chủ ngắt nhất
+  private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+  private final LongAdder connectionsOpened = new LongAdder();
+  private final LongAdder connectionsReused = new LongAdder();
+  private final LongAdder messagesSent = new LongAdder();
+
+  // Cho phép test thay đồng hồ khi kiểm tra thời gian nhàn rỗi
+  Clock clock = Clock.systemUTC();
+
+  public PooledJavaMailSender(MailPoolProperties poolProperties) {
+    this.poolProperties = poolProperties;
+    this.connectionPermits = new Semaphore(poolProperties.getMaxConnections());
+  }
+
+  @Override
+  protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) {
+    acquirePermit();
+    Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+    PooledConnection connection = null;
+    try {
+      for (int i = 0; i < mimeMessages.length; i++) {
+        MimeMessage mimeMessage = mimeMessages[i];
+        Object original = originalMessages != null ? originalMessages[i] : mimeMessage;
+        Address[] recipients;
+        try {
+          recipients = prepare(mimeMessage);
+        } catch (MessagingException e) {
+          failedMessages.put(original, e);
+          continue;
+        }
+        boolean retried = false;
+        while (true) {
+          if (connection == null) {
+            try {
+              connection = borrowConnection();
+            } catch (AuthenticationFailedException e) {
+              throw new MailAuthenticationException(e);
+            } catch (MessagingException e) {
+              // Không kết nối được máy chủ: mọi email còn lại coi như lỗi
+              for (int j = i; j < mimeMessages.length; j++) {
+                failedMessages.put(
+                    originalMessages != null ? originalMessages[j] : mimeMessages[j], e);
+              }
+              throw new MailSendException("Mail server connection failed", e, failedMessages);
+            }
+          }
+          try {
+            connection.transport.sendMessage(mimeMessage, recipients);
+            connection.messagesSent++;
+            messagesSent.increment();
+            break;
+          } catch (MessagingException | IllegalStateException e) {
+            if (e instanceof SendFailedException && connection.transport.isConnected()) {
+              // Máy chủ từ chối riêng email này (người nhận, nội dung); kết nối vẫn dùng tiếp được
+              failedMessages.put(original, e);
+              break;
+            }
+            // Lỗi ở mức kết nối, thường do máy chủ đã đóng kết nối đang nằm trong pool
+            boolean usedBefore = connection.reused || connection.messagesSent > 0;
+            close(connection);
+            connection = null;
+            if (usedBefore && !retried) {
+              retried = true;
+              log.debug("Pooled SMTP connection failed ({}), retrying", e.getMessage());
+              continue;
+            }
+            failedMessages.put(original, e);
+            break;
+          }
+        }
+        if (connection != null
+            && connection.messagesSent >= poolProperties.getMaxMessagesPerConnection()) {
+          close(connection);
+          connection = null;
+        }
+      }
+    } finally {
+      if (connection != null) {
+        release(connection);
+      }
+      connectionPermits.release();
+    }
+    if (!failedMessages.isEmpty()) {
+      throw new MailSendException(failedMessages);
+    }
+  }
+
+  // Giống JavaMailSenderImpl: giữ Message-ID đã đặt sẵn khi saveChanges
+  private Address[] prepare(MimeMessage mimeMessage) throws MessagingException {
+    if (mimeMessage.getSentDate() == null) {
+      mimeMessage.setSentDate(new Date());
+    }
+    String messageId = mimeMessage.getMessageID();
+    mimeMessage.saveChanges();
+    if (messageId != null) {
+      mimeMessage.setHeader(HEADER_MESSAGE_ID, messageId);
+    }
+    Address[] recipients = mimeMessage.getAllRecipients();
+    return recipients != null ? recipients : new Address[0];
+  }
+
+  private void acquirePermit() {
+    boolean acquired;
+    try {
+      acquired =
+          connectionPermits.tryAcquire(poolProperties.getBorrowTimeoutMs(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MailSendException("Interrupted while waiting for an SMTP connection", e);
+    }
+    if (!acquired) {
+      throw new MailSendException(
+          "No SMTP connection available within " + poolProperties.getBorrowTimeoutMs() + " ms");
+    }
+  }
+
+  private PooledConnection borrowConnection() throws MessagingException {
+    PooledConnection connection;
+    while ((connection = idleConnections.pollFirst()) != null) {
+      if (!isExpired(connection)) {
+        connection.reused = true;
+        connectionsReused.increment();
+        return connection;
+      }
+      close(connection);
+    }
+    Transport transport = connectTransport();
+    connectionsOpened.increment();
+    return new PooledConnection(transport);
+  }
+
+  // Chỉ được tạo khi pool bật (MailConfig), nên kết nối luôn quay lại pool
+  private void release(PooledConnection connection) {
+    connection.lastUsedAt = clock.millis();
+    idleConnections.offerFirst(connection);
+  }
+
+  private boolean isExpired(PooledConnection connection) {
+    return clock.millis() - connection.lastUsedAt > poolProperties.getMaxIdleMs();
+  }
+
+  private void close(PooledConnection connection) {
+    try {
+      connection.transport.close();
+    } catch (MessagingException | RuntimeException e) {
+      log.debug("Error closing SMTP connection: {}", e.getMessage());
+    }
+  }
+
+  /** Đóng các kết nối nhàn rỗi quá hạn để không giữ socket mà máy chủ sắp ngắt. */
+  @Scheduled(fixedDelayString = "${app.mail.pool.evict-interval-ms:15000}")
+  public void evictIdleConnections() {
+    idleConnections.removeIf(
+        connection -> {
+          if (isExpired(connection)) {
+            close(connection);
+            return true;
+          }
+          return false;
+        });
+  }
+
+  public PoolStats getPoolStats() {
+    int idle = idleConnections.size();
+    int inUse = poolProperties.getMaxConnections() - connectionPermits.availablePermits();
+    return new PoolStats(
+        connectionsOpened.sum(), connectionsReused.sum(), messagesSent.sum(), idle, inUse);
+  }
+
+  @Override
+  public void destroy() {
+    PooledConnection connection;
+    while ((connection = idleConnections.pollFirst()) != null) {
+      close(connection);
+    }
+  }
+
+  private final class PooledConnection {
+    private final Transport transport;
+    private long lastUsedAt = clock.millis();
+    private int messagesSent;
+    private boolean reused;
+
+    private PooledConnection(Transport transport) {
+      this.transport = transport;
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package com.yourcompany.agritrade.config.persistence;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Đăng ký hàm {@code match_against(col1, col2, query)} cho HQL/Criteria, sinh ra {@code MATCH(col1,
+ * col2) AGAINST (query IN BOOLEAN MODE)} của MySQL. Giá trị trả về là điểm liên quan (0 nếu không
+ * khớp), dùng được cả trong WHERE lẫn ORDER BY.
+ *
+ * <p>Được nạp qua META-INF/services/org.hibernate.boot.model.FunctionContributor.
+ */
+public class FullTextSearchFunctionContributor implements FunctionContributor {
+
+  public static final String MATCH_AGAINST = "match_against";
+
+  @Override
+  public void contributeFunctions(FunctionContributions functionContributions) {
+    functionContributions
+        .getFunctionRegistry()
+        .registerPattern(
+            MATCH_AGAINST,
+            "match(?1, ?2) against (?3 in boolean mode)",
+            functionContributions
+                .getTypeConfiguration()
+                .getBasicTypeRegistry()
+                .resolve(StandardBasicTypes.DOUBLE));
+  }
+}
@@ -0,0 +1,81 @@
+package com.yourcompany.agritrade.config.persistence;
+
+import com.yourcompany.agritrade.ordering.domain.Payment;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Đưa bảng payments cũ về khóa idempotency (payment_gateway, transaction_code) khi khởi động:
+ *
+ * <ol>
+ *   <li>Chuẩn hóa tên cổng cũ lưu kèm hậu tố "_IPN" (vd "VNPAY_IPN" thành "VNPAY") để IPN gửi lại
+ *       tìm thấy giao dịch đã ghi nhận.
+ *   <li>Xóa chỉ mục unique cũ chỉ trên transaction_code. ddl-auto: update tạo khóa mới nhưng không
+ *       bao giờ xóa khóa cũ, nên IPN trùng vẫn vướng khóa cũ và không được nhận ra là bản trùng.
+ * </ol>
+ *
+ * Chạy lại nhiều lần không thay đổi gì thêm. Chuẩn hóa chạy trước khi xóa chỉ mục: khi khóa cũ còn,
+ * mỗi transaction_code chỉ có một dòng nên đổi tên cổng không thể trùng khóa mới.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentSchemaInitializer implements ApplicationRunner {
+
+  private final JdbcTemplate jdbcTemplate;
+
+  @Value("${app.payment.schema-init-on-startup:true}")
+  private boolean initOnStartup;
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (!initOnStartup) {
+      return;
+    }
+    try {
+      normalizeLegacyGatewayNames();
+      dropLegacyTransactionCodeIndexes();
+    } catch (DataAccessException e) {
+      // Không chặn khởi động; IPN trùng có thể trả lỗi cho cổng tới khi sửa schema
+      log.error("Không thể chuẩn hóa schema bảng payments: {}", e.getMessage(), e);
+    }
+  }
+
+  /** Bỏ hậu tố "_IPN" khỏi tên cổng của các payment cũ. Trả về số dòng đã cập nhật. */
+  public int normalizeLegacyGatewayNames() {
+    int updated =
+        jdbcTemplate.update(
+            "UPDATE payments SET payment_gateway ="
+                + " LEFT(payment_gateway, CHAR_LENGTH(payment_gateway) - 4)"
+                + " WHERE payment_gateway LIKE '%\\_IPN'");
+    if (updated > 0) {
+      log.info("Đã chuẩn hóa tên cổng thanh toán cho {} payment cũ", updated);
+    }
+    return updated;
+  }
+
+  /** Xóa các chỉ mục unique chỉ gồm cột transaction_code. Trả về tên các chỉ mục đã xóa. */
+  public List<String> dropLegacyTransactionCodeIndexes() {
+    List<String> legacyIndexes =
+        jdbcTemplate.queryForList(
+            "SELECT index_name FROM information_schema.statistics"
+                + " WHERE table_schema = DATABASE() AND table_name = 'payments'"
+                + " AND non_unique = 0 AND index_name NOT IN ('PRIMARY', ?)"
+                + " GROUP BY index_name"
+                + " HAVING COUNT(*) = 1 AND MAX(column_name) = 'transaction_code'",
+            String.class,
+            Payment.GATEWAY_TRANSACTION_KEY);
+    for (String indexName : legacyIndexes) {
+      jdbcTemplate.execute("ALTER TABLE payments DROP INDEX `" + indexName + "`");
+      log.info("Đã xóa chỉ mục unique cũ {} trên payments.transaction_code", indexName);
+    }
+    return legacyIndexes;
+  }
+}
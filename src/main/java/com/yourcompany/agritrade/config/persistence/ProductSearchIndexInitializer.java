@@ -0,0 +1,125 @@
+package com.yourcompany.agritrade.config.persistence;
+
+import com.yourcompany.agritrade.common.util.SearchTextNormalizer;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Chuẩn bị dữ liệu cho tìm kiếm toàn văn sản phẩm khi khởi động:
+ *
+ * <ol>
+ *   <li>Điền search_name/search_text cho các dòng cũ chưa có (theo lô, bằng JDBC để không tăng
+ *       version hay updatedAt của sản phẩm).
+ *   <li>Tạo chỉ mục FULLTEXT ngram trên (search_name, search_text) nếu chưa có. ddl-auto không tạo
+ *       được loại chỉ mục này.
+ * </ol>
+ *
+ * Sau đó các cột được giữ đồng bộ bởi callback @PrePersist/@PreUpdate của Product. Lưu ý: với ngram
+ * parser, bigram chứa stopword mặc định của InnoDB (vd "an", "on") bị loại khỏi chỉ mục, nên nên
+ * đặt innodb_ft_enable_stopword=OFF trước khi tạo chỉ mục.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchIndexInitializer implements ApplicationRunner {
+
+  static final String FULLTEXT_INDEX_NAME = "ft_products_search";
+  private static final int BACKFILL_BATCH_SIZE = 1000;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  @Value("${app.search.product.fulltext-enabled:true}")
+  private boolean fullTextSearchEnabled;
+
+  @Value("${app.search.product.init-on-startup:true}")
+  private boolean initOnStartup;
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (!initOnStartup) {
+      return;
+    }
+    try {
+      backfillSearchColumns();
+      if (fullTextSearchEnabled) {
+        ensureFullTextIndex();
+      }
+    } catch (DataAccessException e) {
+      // Không chặn khởi động; tìm kiếm sẽ lỗi/thiếu kết quả cho tới khi sửa schema
+      log.error("Không thể khởi tạo chỉ mục tìm kiếm sản phẩm: {}", e.getMessage(), e);
+    }
+  }
+
+  /** Điền cột tìm kiếm cho các sản phẩm chưa có. Trả về số dòng đã cập nhật. */
+  public int backfillSearchColumns() {
+    int updated = 0;
+    long lastId = 0;
+    while (true) {
+      List<Object[]> batch = new ArrayList<>(BACKFILL_BATCH_SIZE);
+      jdbcTemplate.query(
+          "SELECT id, name, description FROM products"
+              + " WHERE id > ? AND search_name IS NULL ORDER BY id LIMIT ?",
+          rs -> {
+            String name = rs.getString("name");
+            batch.add(
+                new Object[] {
+                  SearchTextNormalizer.truncate(SearchTextNormalizer.fold(name), 255),
+                  SearchTextNormalizer.foldAll(name, rs.getString("description")),
+                  rs.getLong("id")
+                });
+          },
+          lastId,
+          BACKFILL_BATCH_SIZE);
+      if (batch.isEmpty()) {
+        break;
+      }
+      jdbcTemplate.batchUpdate(
+          "UPDATE products SET search_name = ?, search_text = ? WHERE id = ?", batch);
+      updated += batch.size();
+      lastId = (Long) batch.get(batch.size() - 1)[2];
+    }
+    if (updated > 0) {
+      log.info("Đã điền cột tìm kiếm cho {} sản phẩm", updated);
+    }
+    return updated;
+  }
+
+  /** Tạo chỉ mục FULLTEXT ngram nếu chưa tồn tại. Trả về true nếu vừa tạo mới. */
+  public boolean ensureFullTextIndex() {
+    Integer existing =
+        jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM information_schema.statistics"
+                + " WHERE table_schema = DATABASE() AND table_name = 'products'"
+                + " AND index_name = ?",
+            Integer.class,
+            FULLTEXT_INDEX_NAME);
+    if (existing != null && existing > 0) {
+      return false;
+    }
+    Integer stopwordsEnabled =
+        jdbcTemplate.queryForObject("SELECT @@innodb_ft_enable_stopword", Integer.class);
+    if (stopwordsEnabled != null && stopwordsEnabled == 1) {
+      log.warn(
+          "innodb_ft_enable_stopword đang bật: một số bigram (vd 'an', 'on') sẽ không được đánh chỉ"
+              + " mục, có thể làm thiếu kết quả tìm kiếm");
+    }
+    long start = System.currentTimeMillis();
+    jdbcTemplate.execute(
+        "ALTER TABLE products ADD FULLTEXT INDEX "
+            + FULLTEXT_INDEX_NAME
+            + " (search_name, search_text) WITH PARSER ngram");
+    log.info(
+        "Đã tạo chỉ mục FULLTEXT {} trong {} ms",
+        FULLTEXT_INDEX_NAME,
+        System.currentTimeMillis() - start);
+    return true;
+  }
+}
@@ -13,10 +13,20 @@ public class JwtProperties {
   private String secret;
   private long expirationMs;
   private RefreshToken refreshToken;
+  private VerifiedCache verifiedCache = new VerifiedCache();
 
   @Getter
   @Setter
   public static class RefreshToken {
     private long expirationMs;
   }
+
+  // Cache các access token đã kiểm tra chữ ký trong JwtTokenProvider
+  @Getter
+  @Setter
+  public static class VerifiedCache {
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+  }
 }
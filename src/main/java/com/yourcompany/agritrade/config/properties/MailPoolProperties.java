@@ -0,0 +1,23 @@
+package com.yourcompany.agritrade.config.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// Pool kết nối SMTP dùng lại giữa các lần gửi (tránh bắt tay TCP + STARTTLS + AUTH mỗi email)
+@Component
+@ConfigurationProperties(prefix = "app.mail.pool")
+@Getter
+@Setter
+public class MailPoolProperties {
+  private boolean enabled = true;
+  // Số kết nối SMTP mở cùng lúc tối đa; nên bằng app.notification.outbox.email-concurrency
+  private int maxConnections = 4;
+  // Chờ một kết nối trống tối đa bao lâu trước khi báo lỗi (email được outbox gửi lại sau)
+  private long borrowTimeoutMs = 5000;
+  // Kết nối nhàn rỗi quá lâu bị đóng; giữ thấp hơn thời gian máy chủ SMTP tự ngắt
+  private long maxIdleMs = 30000;
+  // Mở kết nối mới sau chừng này email (nhiều nhà cung cấp giới hạn số email mỗi phiên)
+  private int maxMessagesPerConnection = 100;
+}
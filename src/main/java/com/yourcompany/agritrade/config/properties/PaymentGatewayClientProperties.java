@@ -0,0 +1,38 @@
+package com.yourcompany.agritrade.config.properties;
+
+import com.yourcompany.agritrade.ordering.domain.PaymentMethod;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// Cấu hình HTTP client gọi cổng thanh toán (VNPay, MoMo): timeout, bulkhead, circuit breaker
+@Component
+@ConfigurationProperties(prefix = "app.payment.gateway-client")
+@Getter
+@Setter
+public class PaymentGatewayClientProperties {
+  private long connectTimeoutMs = 2000;
+  private long statsLogIntervalMs = 60000;
+  // Khóa là tên cổng viết thường: vnpay, momo
+  private Map<String, Gateway> gateways = new HashMap<>();
+
+  public Gateway gateway(PaymentMethod paymentMethod) {
+    return gateways.getOrDefault(paymentMethod.name().toLowerCase(Locale.ROOT), new Gateway());
+  }
+
+  @Getter
+  @Setter
+  public static class Gateway {
+    private long readTimeoutMs = 5000;
+    // Bulkhead: số lời gọi đồng thời tối đa và thời gian chờ một chỗ trống trước khi từ chối
+    private int maxConcurrentCalls = 10;
+    private long bulkheadWaitMs = 100;
+    // Circuit breaker: mở sau N lỗi liên tiếp, sau openDurationMs cho một lời gọi thử
+    private int failureThreshold = 5;
+    private long openDurationMs = 30000;
+  }
+}
@@ -0,0 +1,19 @@
+package com.yourcompany.agritrade.config.security;
+
+import java.io.Serializable;
+import java.util.List;
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+/**
+ * Principal của một request đã xác thực bằng JWT, dựng hoàn toàn từ claims của token (không truy
+ * vấn DB). {@link #getName()} trả về email để {@code authentication.getName()} giữ nguyên hành vi
+ * cũ.
+ */
+public record AuthenticatedUser(Long id, String email, List<String> roles)
+    implements AuthenticatedPrincipal, Serializable {
+
+  @Override
+  public String getName() {
+    return email;
+  }
+}
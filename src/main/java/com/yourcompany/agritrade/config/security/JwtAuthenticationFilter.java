@@ -36,9 +36,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     try {
       String jwt = getJwtFromRequest(request);
 
-      if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
+      // Parse và kiểm tra chữ ký một lần (có cache), lấy đủ claim cho các bước sau
+      VerifiedToken verified = StringUtils.hasText(jwt) ? tokenProvider.verify(jwt) : null;
+      if (verified != null) {
         // << THÊM KIỂM TRA BLACKLIST >>
-        String jti = tokenProvider.getJtiFromToken(jwt);
+        String jti = verified.jti();
         if (jti != null && tokenBlacklistService.isBlacklisted(jti)) {
           response.setStatus(HttpServletResponse.SC_UNAUTHORIZED); // Set status 401
           response
@@ -48,26 +50,26 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
           response.setContentType("application/json");
           return; // Dừng filter chain ở đây
         } else {
-          // Nếu không bị blacklist (hoặc không lấy được JTI - trường hợp này token có thể không hợp
-          // lệ
-          String email = tokenProvider.getEmailFromToken(jwt);
-
           // Lấy authorities trực tiếp từ token
-          List<String> authoritiesStrings = tokenProvider.getAuthoritiesFromToken(jwt);
+          List<String> authoritiesStrings = verified.authorities();
           List<SimpleGrantedAuthority> authorities =
               authoritiesStrings.stream()
                   .map(SimpleGrantedAuthority::new)
                   .collect(Collectors.toList());
 
-          // Tạo đối tượng Authentication với email và authorities từ token
+          // Token mới mang sẵn id của user -> principal đủ thông tin, không cần tra DB.
+          // Token cũ (chưa có claim uid) vẫn dùng email làm principal như trước.
+          Object principal = verified.toPrincipal();
+
+          // Tạo đối tượng Authentication với principal và authorities từ token
           UsernamePasswordAuthenticationToken authentication =
-              new UsernamePasswordAuthenticationToken(email, null, authorities);
+              new UsernamePasswordAuthenticationToken(principal, null, authorities);
           authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
           SecurityContextHolder.getContext().setAuthentication(authentication);
           log.debug(
               "Set Authentication to security context for user '{}', authorities: {}",
-              email,
+              verified.email(),
               authoritiesStrings);
         }
       }
@@ -5,16 +5,27 @@ import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import javax.crypto.SecretKey;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
 @Component
 @Slf4j // Lombok logger
@@ -23,20 +34,50 @@ public class JwtTokenProvider {
   private final SecretKey key; // Sử dụng SecretKey
   private final long jwtExpirationMs;
   private static final String AUTHORITIES_KEY = "roles"; // Key để lưu roles trong claims
+  private static final String USER_ID_KEY = "uid"; // Key để lưu id của user trong claims
 
   private final long refreshTokenExpirationMs;
 
+  // JwtParser bất biến, an toàn đa luồng: tạo một lần thay vì build lại cho mỗi lần parse
+  private final JwtParser parser;
+  private final Clock clock;
+
+  // Token đã kiểm tra chữ ký, khóa theo SHA-256 của token; phần tử hết hạn theo claim exp
+  private final ConcurrentHashMap<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
+  private final int verifiedCacheMaxEntries;
+  // Khi cache đầy toàn token còn hạn: thời điểm (epoch ms) token sớm nhất hết hạn, trước đó không
+  // dọn lại. Long.MAX_VALUE trong lúc một luồng đang dọn.
+  private final AtomicLong nextSweepAtMillis = new AtomicLong();
+
+  @Autowired
   public JwtTokenProvider(JwtProperties jwtProperties) {
+    this(jwtProperties, Clock.systemUTC());
+  }
+
+  JwtTokenProvider(JwtProperties jwtProperties, Clock clock) {
     byte[] keyBytes = Decoders.BASE64.decode(jwtProperties.getSecret());
     this.key = Keys.hmacShaKeyFor(keyBytes); // Tạo SecretKey an toàn
     this.jwtExpirationMs = jwtProperties.getExpirationMs();
     this.refreshTokenExpirationMs = jwtProperties.getRefreshToken().getExpirationMs();
+    this.clock = clock;
+    this.parser =
+        Jwts.parserBuilder().setSigningKey(key).setClock(() -> Date.from(clock.instant())).build();
+    JwtProperties.VerifiedCache cacheProperties = jwtProperties.getVerifiedCache();
+    this.verifiedCacheMaxEntries =
+        cacheProperties != null
+            ? cacheProperties.getMaxEntries()
+            : JwtProperties.VerifiedCache.DEFAULT_MAX_ENTRIES;
   }
 
   // Tạo JWT từ thông tin Authentication
   public String generateAccessToken(Authentication authentication) {
+    return generateAccessToken(authentication, null);
+  }
+
+  // Tạo JWT kèm id của user để các request sau không cần tra cứu user theo email
+  public String generateAccessToken(Authentication authentication, Long userId) {
     String username = getUsernameFromAuthentication(authentication);
-    Date now = new Date();
+    Date now = Date.from(clock.instant());
     Date expiryDate = new Date(now.getTime() + jwtExpirationMs);
 
     // Lấy danh sách roles từ authorities
@@ -45,10 +86,15 @@ public class JwtTokenProvider {
             .map(GrantedAuthority::getAuthority)
             .collect(Collectors.toList()); // Thu thập thành List
 
-    return Jwts.builder()
-        .setId(UUID.randomUUID().toString())
-        .setSubject(username)
-        .claim(AUTHORITIES_KEY, authorities) // Đưa List authorities vào claim
+    JwtBuilder builder =
+        Jwts.builder()
+            .setId(UUID.randomUUID().toString())
+            .setSubject(username)
+            .claim(AUTHORITIES_KEY, authorities); // Đưa List authorities vào claim
+    if (userId != null) {
+      builder.claim(USER_ID_KEY, userId);
+    }
+    return builder
         .setIssuedAt(now)
         .setExpiration(expiryDate)
         .signWith(key, SignatureAlgorithm.HS512)
@@ -57,7 +103,7 @@ public class JwtTokenProvider {
 
   public String generateRefreshToken(Authentication authentication) {
     String username = getUsernameFromAuthentication(authentication); // Dùng lại helper
-    Date now = new Date();
+    Date now = Date.from(clock.instant());
     Date expiryDate = new Date(now.getTime() + refreshTokenExpirationMs);
 
     return Jwts.builder()
@@ -69,25 +115,53 @@ public class JwtTokenProvider {
         .compact();
   }
 
+  /**
+   * Parse và kiểm tra chữ ký token một lần, trả về mọi claim cần cho xác thực; null nếu token không
+   * hợp lệ hoặc đã hết hạn. Kết quả được cache theo hash của token cho tới khi token hết hạn, nên
+   * các request sau với cùng token không phải kiểm tra lại HMAC.
+   */
+  public VerifiedToken verify(String token) {
+    if (!StringUtils.hasText(token)) {
+      return null;
+    }
+    Instant now = clock.instant();
+    String cacheKey = hashToken(token);
+    VerifiedToken cached = verifiedTokens.get(cacheKey);
+    if (cached != null) {
+      if (!cached.isExpiredAt(now)) {
+        return cached;
+      }
+      verifiedTokens.remove(cacheKey, cached);
+      log.error("Expired JWT token: expired at {}", cached.expiresAt());
+      return null;
+    }
+
+    Claims claims = parseAndValidate(token);
+    if (claims == null) {
+      return null; // Không cache token lỗi
+    }
+    VerifiedToken verified = toVerifiedToken(claims);
+    cacheVerifiedToken(cacheKey, verified, now);
+    return verified;
+  }
+
   // Lấy email từ JWT
   public String getEmailFromToken(String token) {
-    Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
-
-    return claims.getSubject();
+    return parseClaims(token).getSubject();
   }
 
-  @SuppressWarnings("unchecked")
   public List<String> getAuthoritiesFromToken(String token) {
-    Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
-    // Lấy claim "authorities" dưới dạng List
-    return (List<String>) claims.get(AUTHORITIES_KEY, List.class);
+    return getAuthorities(parseClaims(token));
+  }
+
+  // Lấy id của user từ JWT, null nếu token được cấp trước khi có claim này
+  public Long getUserIdFromToken(String token) {
+    return getUserId(parseClaims(token));
   }
 
   public String getJtiFromToken(String token) {
     try {
-      Claims claims =
-          Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
-      return claims.getId();
+      return parseClaims(token).getId();
     } catch (JwtException e) {
       log.warn("Could not get JTI from token: {}", e.getMessage());
       return null;
@@ -96,9 +170,7 @@ public class JwtTokenProvider {
 
   public Date getExpiryDateFromToken(String token) {
     try {
-      Claims claims =
-          Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
-      return claims.getExpiration();
+      return parseClaims(token).getExpiration();
     } catch (JwtException e) {
       log.warn("Could not get Expiry Date from token: {}", e.getMessage());
       return null;
@@ -107,9 +179,17 @@ public class JwtTokenProvider {
 
   // Xác thực JWT
   public boolean validateToken(String authToken) {
+    return parseAndValidate(authToken) != null;
+  }
+
+  private Claims parseClaims(String token) {
+    return parser.parseClaimsJws(token).getBody();
+  }
+
+  // Parse + kiểm tra chữ ký, ghi log và trả về null nếu token không hợp lệ
+  private Claims parseAndValidate(String authToken) {
     try {
-      Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
-      return true;
+      return parseClaims(authToken);
     } catch (SignatureException ex) {
       log.error("Invalid JWT signature: {}", ex.getMessage());
     } catch (MalformedJwtException ex) {
@@ -121,7 +201,79 @@ public class JwtTokenProvider {
     } catch (IllegalArgumentException ex) {
       log.error("JWT claims string is empty: {}", ex.getMessage());
     }
-    return false;
+    return null;
+  }
+
+  private VerifiedToken toVerifiedToken(Claims claims) {
+    Date expiration = claims.getExpiration();
+    List<String> authorities = getAuthorities(claims);
+    return new VerifiedToken(
+        claims.getSubject(),
+        claims.getId(),
+        getUserId(claims),
+        authorities != null ? List.copyOf(authorities) : List.of(),
+        expiration != null ? expiration.toInstant() : null);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<String> getAuthorities(Claims claims) {
+    // Lấy claim "authorities" dưới dạng List
+    return (List<String>) claims.get(AUTHORITIES_KEY, List.class);
+  }
+
+  private Long getUserId(Claims claims) {
+    Number userId = claims.get(USER_ID_KEY, Number.class);
+    return userId != null ? userId.longValue() : null;
+  }
+
+  private void cacheVerifiedToken(String cacheKey, VerifiedToken verified, Instant now) {
+    if (verifiedTokens.size() >= verifiedCacheMaxEntries && !sweepExpired(now)) {
+      // Cache đầy toàn token còn hạn: bỏ qua, lần sau sẽ kiểm tra chữ ký lại
+      return;
+    }
+    verifiedTokens.put(cacheKey, verified);
+  }
+
+  /**
+   * Bỏ các token đã hết hạn khỏi cache đầy; trả về true nếu đã có chỗ trống. Nếu không giải phóng
+   * được gì thì không duyệt lại cho tới khi token sớm nhất hết hạn, để mỗi lần verify khi cache đầy
+   * chỉ tốn một phép so sánh thay vì duyệt toàn bộ cache.
+   */
+  private boolean sweepExpired(Instant now) {
+    long nextSweepAt = nextSweepAtMillis.get();
+    if (now.toEpochMilli() < nextSweepAt
+        || !nextSweepAtMillis.compareAndSet(nextSweepAt, Long.MAX_VALUE)) {
+      return false; // Chưa có token nào kịp hết hạn, hoặc luồng khác đang dọn
+    }
+    long earliestExpiry = Long.MAX_VALUE;
+    Iterator<VerifiedToken> entries = verifiedTokens.values().iterator();
+    while (entries.hasNext()) {
+      VerifiedToken entry = entries.next();
+      if (entry.isExpiredAt(now)) {
+        entries.remove();
+      } else if (entry.expiresAt() != null) {
+        earliestExpiry = Math.min(earliestExpiry, entry.expiresAt().toEpochMilli());
+      }
+    }
+    boolean hasRoom = verifiedTokens.size() < verifiedCacheMaxEntries;
+    nextSweepAtMillis.set(hasRoom ? 0L : earliestExpiry);
+    if (!hasRoom) {
+      log.debug(
+          "Verified token cache is full ({} entries) until {}",
+          verifiedCacheMaxEntries,
+          Instant.ofEpochMilli(earliestExpiry));
+    }
+    return hasRoom;
+  }
+
+  // Không giữ nguyên token trong bộ nhớ làm khóa cache
+  private static String hashToken(String token) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
   }
 
   private String getUsernameFromAuthentication(Authentication authentication) {
@@ -130,6 +282,8 @@ public class JwtTokenProvider {
       return ((UserDetails) principal).getUsername();
     } else if (principal instanceof String) {
       return (String) principal;
+    } else if (principal instanceof AuthenticatedUser authenticatedUser) {
+      return authenticatedUser.email();
     }
     log.error(
         "Cannot determine username from principal type {}",
@@ -1,19 +1,91 @@
 package com.yourcompany.agritrade.config.security; // Hoặc một package service phù hợp
 
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import lombok.RequiredArgsConstructor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+/**
+ * Blacklist JTI của các access token đã bị thu hồi (logout).
+ *
+ * <p>Redis là nguồn dữ liệu gốc. Mỗi node giữ thêm một bản sao cục bộ các JTI đã thu hồi (jti ->
+ * thời điểm hết hạn), được đồng bộ qua kênh pub/sub khi có token mới bị thu hồi và được đối soát
+ * định kỳ bằng SCAN. Khi bản sao cục bộ đã đồng bộ, trường hợp phổ biến "token chưa bị thu hồi"
+ * được trả lời ngay trong bộ nhớ; nếu chưa đồng bộ được (Redis lỗi, vừa khởi động) hoặc bản sao
+ * đầy, việc kiểm tra quay về hỏi Redis như trước.
+ *
+ * <p>Bản sao chỉ được coi là đồng bộ khi lần đối soát thành công bắt đầu sau lúc kênh pub/sub được
+ * đăng ký. Khi container báo hủy hoặc đăng ký lại kênh (sau khi mất kết nối), mọi message trong
+ * khoảng gián đoạn có thể đã bị lỡ nên node quay về hỏi Redis cho tới lần đối soát kế tiếp. Còn một
+ * khoảng hở: từ lúc kết nối pub/sub thực sự đứt tới lúc client Redis phát hiện và đăng ký lại,
+ * token bị thu hồi ở node khác vẫn được node này chấp nhận. Khoảng này bị chặn bởi thời gian phát
+ * hiện mất kết nối của client và chu kỳ đối soát ({@code resync-interval-ms}).
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class TokenBlacklistService {
 
-  private final StringRedisTemplate redisTemplate;
   private static final String BLACKLIST_PREFIX = "jwt_blacklist:";
+  static final String REVOCATION_CHANNEL = "jwt_blacklist:events";
+
+  /** Số liệu của lớp kiểm tra blacklist. */
+  public record Stats(
+      long checks,
+      long remoteChecks,
+      long revokedHits,
+      double avgCheckMicros,
+      int localSize,
+      boolean synced) {}
+
+  private final StringRedisTemplate redisTemplate;
+  private final RedisMessageListenerContainer listenerContainer;
+  private final int maxLocalEntries;
+
+  private final ConcurrentHashMap<String, Long> revokedJtis = new ConcurrentHashMap<>();
+  private volatile boolean synced = false;
+  private volatile boolean subscribed = false;
+  // Tăng mỗi khi trạng thái đăng ký kênh thay đổi; lần đối soát chồng lên thay đổi đó không được
+  // đánh dấu đồng bộ
+  private final AtomicLong subscriptionEpoch = new AtomicLong();
+
+  private final LongAdder checks = new LongAdder();
+  private final LongAdder remoteChecks = new LongAdder();
+  private final LongAdder revokedHits = new LongAdder();
+  private final LongAdder checkNanos = new LongAdder();
+  private Stats lastLoggedStats;
+
+  public TokenBlacklistService(
+      StringRedisTemplate redisTemplate,
+      RedisMessageListenerContainer listenerContainer,
+      @Value("${app.security.token-blacklist.max-local-entries:100000}") int maxLocalEntries) {
+    this.redisTemplate = redisTemplate;
+    this.listenerContainer = listenerContainer;
+    this.maxLocalEntries = maxLocalEntries;
+  }
+
+  @PostConstruct
+  void subscribe() {
+    listenerContainer.addMessageListener(
+        new RevocationListener(), new ChannelTopic(REVOCATION_CHANNEL));
+  }
 
   /**
    * Thêm JTI của token vào blacklist. Token sẽ tự động bị xóa khỏi blacklist khi nó hết hạn.
@@ -27,16 +99,23 @@ public class TokenBlacklistService {
       return;
     }
     long now = System.currentTimeMillis();
-    long ttlMillis =
-        expiryDate.getTime() - now; // Thời gian còn lại của token (tính bằng mili giây)
+    long expiresAtMillis = expiryDate.getTime();
+    long ttlMillis = expiresAtMillis - now; // Thời gian còn lại của token (tính bằng mili giây)
 
     if (ttlMillis > 0) {
+      // Ghi nhận cục bộ trước để node hiện tại từ chối token ngay cả khi Redis lỗi
+      putLocal(jti, expiresAtMillis);
       try {
-        // Key trong Redis sẽ là "jwt_blacklist:jti_value"
-        // Value có thể là bất cứ gì, ví dụ "blacklisted" hoặc thời gian blacklist
+        // Key trong Redis sẽ là "jwt_blacklist:jti_value", value là thời điểm hết hạn (epoch ms)
+        // để các node khác dựng lại bản sao cục bộ mà không cần hỏi TTL từng key
         redisTemplate
             .opsForValue()
-            .set(BLACKLIST_PREFIX + jti, "blacklisted", ttlMillis, TimeUnit.MILLISECONDS);
+            .set(
+                BLACKLIST_PREFIX + jti,
+                String.valueOf(expiresAtMillis),
+                ttlMillis,
+                TimeUnit.MILLISECONDS);
+        redisTemplate.convertAndSend(REVOCATION_CHANNEL, expiresAtMillis + ":" + jti);
         log.info("JTI {} added to blacklist with TTL: {} ms", jti, ttlMillis);
       } catch (Exception e) {
         log.error("Error adding JTI {} to Redis blacklist: {}", jti, e.getMessage(), e);
@@ -58,6 +137,178 @@ public class TokenBlacklistService {
     if (jti == null) {
       return false; // Không thể kiểm tra JTI null
     }
+    long start = System.nanoTime();
+    try {
+      Long expiresAtMillis = revokedJtis.get(jti);
+      if (expiresAtMillis != null && expiresAtMillis > System.currentTimeMillis()) {
+        revokedHits.increment();
+        return true;
+      }
+      if (synced && revokedJtis.size() < maxLocalEntries) {
+        return false; // Bản sao cục bộ đầy đủ -> không cần hỏi Redis
+      }
+      remoteChecks.increment();
+      boolean blacklisted = isBlacklistedInRedis(jti);
+      if (blacklisted) {
+        revokedHits.increment();
+      }
+      return blacklisted;
+    } finally {
+      checks.increment();
+      checkNanos.add(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Đối soát bản sao cục bộ với Redis: nạp mọi JTI đang bị thu hồi và bỏ các JTI đã hết hạn. Chạy
+   * ngay khi khởi động và định kỳ sau đó để bù các message pub/sub bị lỡ (pub/sub không đảm bảo
+   * giao nhận khi mất kết nối).
+   */
+  @Scheduled(
+      fixedDelayString = "${app.security.token-blacklist.resync-interval-ms:60000}",
+      initialDelay = 0)
+  public void resyncFromRedis() {
+    long epoch = subscriptionEpoch.get();
+    try {
+      List<String> keys = new ArrayList<>();
+      ScanOptions options =
+          ScanOptions.scanOptions().match(BLACKLIST_PREFIX + "*").count(500).build();
+      try (Cursor<String> cursor = redisTemplate.scan(options)) {
+        while (cursor.hasNext()) {
+          keys.add(cursor.next());
+        }
+      }
+      Map<String, Long> loaded = new ConcurrentHashMap<>();
+      if (!keys.isEmpty()) {
+        List<String> values = redisTemplate.opsForValue().multiGet(keys);
+        for (int i = 0; i < keys.size(); i++) {
+          String key = keys.get(i);
+          Long expiresAtMillis = parseExpiry(key, values != null ? values.get(i) : null);
+          if (expiresAtMillis != null) {
+            loaded.put(key.substring(BLACKLIST_PREFIX.length()), expiresAtMillis);
+          }
+        }
+      }
+
+      long now = System.currentTimeMillis();
+      revokedJtis.values().removeIf(expiresAtMillis -> expiresAtMillis <= now);
+      loaded.forEach(this::putLocal);
+      synced = subscribed && subscriptionEpoch.get() == epoch;
+      log.debug(
+          "Token blacklist resynced: {} revoked JTIs in Redis, {} cached locally",
+          loaded.size(),
+          revokedJtis.size());
+    } catch (Exception e) {
+      // Không đối soát được -> quay về hỏi Redis cho tới lần đối soát thành công tiếp theo
+      synced = false;
+      log.warn("Could not resync token blacklist from Redis: {}", e.getMessage());
+    }
+  }
+
+  public Stats getStats() {
+    long checkCount = checks.sum();
+    return new Stats(
+        checkCount,
+        remoteChecks.sum(),
+        revokedHits.sum(),
+        checkCount == 0 ? 0d : checkNanos.sum() / 1_000d / checkCount,
+        revokedJtis.size(),
+        synced);
+  }
+
+  // Ghi log định kỳ số liệu kiểm tra blacklist (chỉ khi có hoạt động mới)
+  @Scheduled(fixedDelayString = "${app.security.token-blacklist.stats-log-interval-ms:300000}")
+  public void logStats() {
+    Stats stats = getStats();
+    if (lastLoggedStats != null && stats.checks() == lastLoggedStats.checks()) {
+      return;
+    }
+    lastLoggedStats = stats;
+    log.info(
+        "Token blacklist: checks={}, remoteChecks={}, revokedHits={}, avgCheckMicros={}, localSize={}, synced={}",
+        stats.checks(),
+        stats.remoteChecks(),
+        stats.revokedHits(),
+        String.format("%.1f", stats.avgCheckMicros()),
+        stats.localSize(),
+        stats.synced());
+  }
+
+  /**
+   * Kênh vừa được đăng ký hoặc bị hủy. Trong cả hai trường hợp bản sao cục bộ có thể đã lỡ message
+   * nên phải chờ lần đối soát kế tiếp. Không đối soát ngay tại đây vì callback chạy trên luồng I/O
+   * của client Redis.
+   */
+  void onSubscriptionChanged(boolean active) {
+    subscriptionEpoch.incrementAndGet();
+    subscribed = active;
+    synced = false;
+    if (active) {
+      log.info("Token revocation channel subscribed; local blacklist resyncs on next run");
+    } else {
+      log.warn("Token revocation channel unsubscribed; falling back to Redis for checks");
+    }
+  }
+
+  void handleRevocationMessage(String payload) {
+    int separator = payload.indexOf(':');
+    if (separator <= 0 || separator == payload.length() - 1) {
+      log.warn("Ignoring malformed token revocation message: {}", payload);
+      return;
+    }
+    try {
+      long expiresAtMillis = Long.parseLong(payload.substring(0, separator));
+      putLocal(payload.substring(separator + 1), expiresAtMillis);
+    } catch (NumberFormatException e) {
+      log.warn("Ignoring malformed token revocation message: {}", payload);
+    }
+  }
+
+  private void putLocal(String jti, long expiresAtMillis) {
+    if (expiresAtMillis <= System.currentTimeMillis()) {
+      return;
+    }
+    if (revokedJtis.size() >= maxLocalEntries && !revokedJtis.containsKey(jti)) {
+      // Bản sao đầy: isBlacklisted sẽ tự quay về hỏi Redis nên vẫn đúng ngữ nghĩa
+      log.warn(
+          "Local token blacklist is full ({} entries), falling back to Redis", maxLocalEntries);
+      return;
+    }
+    revokedJtis.put(jti, expiresAtMillis);
+  }
+
+  private Long parseExpiry(String key, String value) {
+    if (value == null) {
+      return null; // Key vừa hết hạn giữa SCAN và MGET
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      // Key ghi bởi phiên bản cũ (value = "blacklisted") -> lấy thời hạn từ TTL của key
+      Long ttlMillis = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+      return ttlMillis != null && ttlMillis > 0 ? System.currentTimeMillis() + ttlMillis : null;
+    }
+  }
+
+  private final class RevocationListener implements MessageListener, SubscriptionListener {
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+      handleRevocationMessage(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+      onSubscriptionChanged(true);
+    }
+
+    @Override
+    public void onChannelUnsubscribed(byte[] channel, long count) {
+      onSubscriptionChanged(false);
+    }
+  }
+
+  private boolean isBlacklistedInRedis(String jti) {
     try {
       Boolean isBlacklisted = redisTemplate.hasKey(BLACKLIST_PREFIX + jti);
       return Boolean.TRUE.equals(isBlacklisted);
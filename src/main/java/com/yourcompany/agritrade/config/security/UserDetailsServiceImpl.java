@@ -5,6 +5,7 @@ import com.yourcompany.agritrade.usermanagement.domain.User;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.GrantedAuthority;
@@ -24,12 +25,7 @@ public class UserDetailsServiceImpl implements UserDetailsService {
   @Override
   @Transactional(readOnly = true) // Chỉ đọc dữ liệu
   public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-    // Tìm user đang active bằng email
-    User user =
-        userRepository
-            .findByEmailAndIsActiveTrue(email)
-            .orElseThrow(
-                () -> new UsernameNotFoundException("User not found with email: " + email));
+    User user = findActiveUser(email);
 
     // Lấy cả Roles và Permissions làm Authorities
     Collection<? extends GrantedAuthority> authorities =
@@ -45,6 +41,27 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         authorities); // Truyền authorities đã bao gồm cả permissions
   }
 
+  /**
+   * Nạp principal mang sẵn id của user (dùng cho token cũ không có claim uid), để các thành phần
+   * phía sau như WebSocketEventListener không phải tra DB theo email thêm lần nữa.
+   */
+  @Transactional(readOnly = true)
+  public AuthenticatedUser loadAuthenticatedUser(String email) throws UsernameNotFoundException {
+    User user = findActiveUser(email);
+    List<String> authorities =
+        mapRolesAndPermissionsToAuthorities(user.getRoles()).stream()
+            .map(GrantedAuthority::getAuthority)
+            .toList();
+    return new AuthenticatedUser(user.getId(), user.getEmail(), authorities);
+  }
+
+  private User findActiveUser(String email) {
+    // Tìm user đang active bằng email
+    return userRepository
+        .findByEmailAndIsActiveTrue(email)
+        .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+  }
+
   // Đổi tên hàm và logic để lấy cả role và permission
   private Collection<? extends GrantedAuthority> mapRolesAndPermissionsToAuthorities(
       Set<Role> roles) {
@@ -0,0 +1,27 @@
+package com.yourcompany.agritrade.config.security;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Kết quả của một lần parse + kiểm tra chữ ký JWT: toàn bộ claim mà filter HTTP và STOMP cần, để
+ * không phải parse lại token cho từng claim.
+ *
+ * @param email subject của token
+ * @param jti id của token, dùng để kiểm tra blacklist (null với refresh token)
+ * @param userId id của user, null nếu token được cấp trước khi có claim uid
+ * @param authorities danh sách role trong claim "roles"
+ * @param expiresAt thời điểm hết hạn
+ */
+public record VerifiedToken(
+    String email, String jti, Long userId, List<String> authorities, Instant expiresAt) {
+
+  public boolean isExpiredAt(Instant now) {
+    return expiresAt != null && !now.isBefore(expiresAt);
+  }
+
+  /** Principal cho Authentication: AuthenticatedUser nếu có uid, ngược lại là email như cũ. */
+  public Object toPrincipal() {
+    return userId != null ? new AuthenticatedUser(userId, email, authorities) : email;
+  }
+}
@@ -1,8 +1,12 @@
 package com.yourcompany.agritrade.config.websocket;
 
+import com.yourcompany.agritrade.config.security.AuthenticatedUser;
 import com.yourcompany.agritrade.config.security.JwtTokenProvider;
+import com.yourcompany.agritrade.config.security.TokenBlacklistService;
 import com.yourcompany.agritrade.config.security.UserDetailsServiceImpl;
+import com.yourcompany.agritrade.config.security.VerifiedToken;
 import java.security.Principal;
+import java.util.List;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.Message;
@@ -12,6 +16,7 @@ import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -22,6 +27,7 @@ public class AuthChannelInterceptor implements ChannelInterceptor {
   // Inject các bean cần thiết cho xác thực JWT
   private final JwtTokenProvider tokenProvider;
   private final UserDetailsServiceImpl userDetailsService;
+  private final TokenBlacklistService tokenBlacklistService;
 
   @Override
   public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -36,19 +42,29 @@ public class AuthChannelInterceptor implements ChannelInterceptor {
       if (authHeader != null && authHeader.startsWith("Bearer ")) {
         String jwt = authHeader.substring(7);
         try {
-          if (tokenProvider.validateToken(jwt)) { // Hàm validate token của bạn
-            String username = tokenProvider.getEmailFromToken(jwt); // Hàm lấy username từ token
-            // Tạo đối tượng Authentication
-            var userDetails = userDetailsService.loadUserByUsername(username);
+          // Dùng chung đường kiểm tra token (có cache) với JwtAuthenticationFilter
+          VerifiedToken verified = tokenProvider.verify(jwt);
+          if (verified == null) {
+            log.warn("STOMP CONNECT failed: Invalid JWT token provided.");
+            // Không set user, Spring Security có thể sẽ từ chối sau đó
+          } else if (verified.jti() != null
+              && tokenBlacklistService.isBlacklisted(verified.jti())) {
+            log.warn("STOMP CONNECT failed: JWT token has been invalidated (logged out).");
+          } else {
+            // Principal luôn mang id của user để WebSocketEventListener không phải tra DB
+            AuthenticatedUser principal =
+                verified.userId() != null
+                    ? new AuthenticatedUser(
+                        verified.userId(), verified.email(), verified.authorities())
+                    // Token cũ không có uid: nạp theo email như trước
+                    : userDetailsService.loadAuthenticatedUser(verified.email());
+            List<SimpleGrantedAuthority> authorities =
+                principal.roles().stream().map(SimpleGrantedAuthority::new).toList();
             UsernamePasswordAuthenticationToken authentication =
-                new UsernamePasswordAuthenticationToken(
-                    userDetails, null, userDetails.getAuthorities());
+                new UsernamePasswordAuthenticationToken(principal, null, authorities);
 
             accessor.setUser(authentication);
-            log.info("STOMP CONNECT authenticated for user: {}", username);
-          } else {
-            log.warn("STOMP CONNECT failed: Invalid JWT token provided.");
-            // Không set user, Spring Security có thể sẽ từ chối sau đó
+            log.info("STOMP CONNECT authenticated for user: {}", verified.email());
           }
         } catch (Exception e) {
           log.error("STOMP CONNECT failed: Error validating JWT token.", e);
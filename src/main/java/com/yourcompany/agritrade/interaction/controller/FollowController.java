@@ -1,6 +1,7 @@
 package com.yourcompany.agritrade.interaction.controller;
 
 import com.yourcompany.agritrade.common.dto.ApiResponse;
+import com.yourcompany.agritrade.common.dto.response.CursorPageResponse;
 import com.yourcompany.agritrade.interaction.dto.response.FollowUserResponse;
 import com.yourcompany.agritrade.interaction.service.FollowService;
 import lombok.RequiredArgsConstructor;
@@ -64,6 +65,38 @@ public class FollowController {
     return ResponseEntity.ok(ApiResponse.success(followers));
   }
 
+  // Các danh sách trên phân trang theo con trỏ: không đếm tổng, ổn định ở trang sâu.
+  // Trang đầu bỏ trống cursor, các trang sau truyền nextCursor của trang trước.
+  @GetMapping("/following/my/cursor")
+  @PreAuthorize("isAuthenticated()")
+  public ResponseEntity<ApiResponse<CursorPageResponse<FollowUserResponse>>> getMyFollowingByCursor(
+      Authentication authentication,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size) {
+    return ResponseEntity.ok(
+        ApiResponse.success(followService.getFollowingByCursor(authentication, cursor, size)));
+  }
+
+  @GetMapping("/followers/my/cursor")
+  @PreAuthorize("isAuthenticated()")
+  public ResponseEntity<ApiResponse<CursorPageResponse<FollowUserResponse>>> getMyFollowersByCursor(
+      Authentication authentication,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size) {
+    return ResponseEntity.ok(
+        ApiResponse.success(followService.getFollowersByCursor(authentication, cursor, size)));
+  }
+
+  @GetMapping("/followers/user/{userId}/cursor")
+  public ResponseEntity<ApiResponse<CursorPageResponse<FollowUserResponse>>>
+      getFollowersPublicByCursor(
+          @PathVariable Long userId,
+          @RequestParam(required = false) String cursor,
+          @RequestParam(defaultValue = "20") int size) {
+    return ResponseEntity.ok(
+        ApiResponse.success(followService.getFollowersPublicByCursor(userId, cursor, size)));
+  }
+
   // Kiểm tra xem mình có đang follow user khác không
   @GetMapping("/following/status/{followingId}")
   @PreAuthorize("isAuthenticated()")
@@ -13,9 +13,8 @@ import lombok.Setter;
 @Setter
 @NoArgsConstructor
 public class ChatMessage {
-  @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
-  private Long id;
+  // ID được cấp trước từ ChatMessageWriteService (theo khối) để đẩy WebSocket trước khi ghi DB
+  @Id private Long id;
 
   @ManyToOne(fetch = FetchType.LAZY, optional = false)
   @JoinColumn(name = "room_id", nullable = false)
@@ -0,0 +1,15 @@
+package com.yourcompany.agritrade.interaction.domain;
+
+/**
+ * Khóa chuẩn của phòng chat 1-1: cặp (ID nhỏ hơn, ID lớn hơn), cùng thứ tự với user1/user2 của
+ * {@link ChatRoom}. Hai người dùng luôn cho ra cùng một khóa bất kể ai là người gửi.
+ */
+public record ChatRoomKey(long minUserId, long maxUserId) {
+
+  public static ChatRoomKey of(Long userId, Long otherUserId) {
+    if (userId.equals(otherUserId)) {
+      throw new IllegalArgumentException("Cannot create chat room with the same user.");
+    }
+    return new ChatRoomKey(Math.min(userId, otherUserId), Math.max(userId, otherUserId));
+  }
+}
@@ -11,7 +11,17 @@ import lombok.Setter;
 import org.hibernate.annotations.CreationTimestamp;
 
 @Entity
-@Table(name = "user_follows")
+@Table(
+    name = "user_follows",
+    indexes = {
+      // Phục vụ danh sách following/followers sắp xếp theo thời gian follow (phân trang trong DB)
+      @Index(
+          name = "idx_user_follows_follower_followed_at",
+          columnList = "follower_id, followedAt"),
+      @Index(
+          name = "idx_user_follows_following_followed_at",
+          columnList = "following_id, followedAt")
+    })
 @Getter
 @Setter
 @NoArgsConstructor
@@ -1,9 +1,13 @@
 package com.yourcompany.agritrade.interaction.dto.response;
 
 import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor // Dùng cho constructor expression trong các truy vấn của UserFollowRepository
 public class FollowUserResponse {
   private Long userId; // ID của user được follow/đang follow
   private String fullName;
@@ -1,5 +1,6 @@
 package com.yourcompany.agritrade.interaction.mapper;
 
+import com.yourcompany.agritrade.config.security.AuthenticatedUser;
 import com.yourcompany.agritrade.interaction.domain.ChatRoom;
 import com.yourcompany.agritrade.interaction.dto.response.ChatRoomResponse;
 import com.yourcompany.agritrade.usermanagement.domain.User;
@@ -64,6 +65,10 @@ public abstract class ChatRoomMapper {
     if (authentication == null
         || !authentication.isAuthenticated()
         || "anonymousUser".equals(authentication.getPrincipal())) return null;
+    // Token mới mang sẵn id trong principal, không cần tra DB cho từng phòng chat
+    if (authentication.getPrincipal() instanceof AuthenticatedUser authenticatedUser) {
+      return authenticatedUser.id();
+    }
     String email = authentication.getName();
 
     return userRepository.findByEmail(email).map(User::getId).orElse(null);
@@ -4,6 +4,7 @@ import com.yourcompany.agritrade.interaction.domain.ChatRoom;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -21,6 +22,30 @@ public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long> {
   Optional<ChatRoom> findRoomBetweenUsers(
       @Param("userId1") Long userId1, @Param("userId2") Long userId2);
 
+  /**
+   * Tìm phòng chat theo khóa chuẩn (ID nhỏ hơn, ID lớn hơn) - khớp thẳng ràng buộc unique
+   * (user_id_1, user_id_2) nên chỉ là một lần tra chỉ mục, không cần OR hai chiều như {@link
+   * #findRoomBetweenUsers}.
+   */
+  @Query("SELECT cr FROM ChatRoom cr WHERE cr.user1.id = :minUserId AND cr.user2.id = :maxUserId")
+  Optional<ChatRoom> findByUserPair(
+      @Param("minUserId") Long minUserId, @Param("maxUserId") Long maxUserId);
+
+  /**
+   * Đưa số tin chưa đọc của một thành viên trong phòng về 0 bằng một câu UPDATE, không đọc rồi ghi
+   * lại cả entity (tránh ghi đè bộ đếm mà luồng ghi tin nhắn đang cộng dồn).
+   *
+   * @return Số dòng thay đổi (0 nếu bộ đếm vốn đã bằng 0).
+   */
+  @Modifying
+  @Query(
+      "UPDATE ChatRoom cr SET "
+          + "cr.user1UnreadCount = CASE WHEN cr.user1.id = :userId THEN 0 ELSE cr.user1UnreadCount END, "
+          + "cr.user2UnreadCount = CASE WHEN cr.user2.id = :userId THEN 0 ELSE cr.user2UnreadCount END "
+          + "WHERE cr.id = :roomId AND ((cr.user1.id = :userId AND cr.user1UnreadCount > 0) "
+          + "OR (cr.user2.id = :userId AND cr.user2UnreadCount > 0))")
+  int resetUnreadCount(@Param("roomId") Long roomId, @Param("userId") Long userId);
+
   /**
    * Tìm tất cả các phòng chat mà một người dùng tham gia. Sắp xếp theo thời gian tin nhắn cuối cùng
    * giảm dần để hiển thị gần đây nhất lên đầu. Sử dụng JOIN FETCH để tải thông tin user và tin nhắn
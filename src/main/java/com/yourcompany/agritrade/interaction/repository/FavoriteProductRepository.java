@@ -1,6 +1,5 @@
 package com.yourcompany.agritrade.interaction.repository;
 
-import com.yourcompany.agritrade.catalog.domain.Product;
 import com.yourcompany.agritrade.interaction.domain.FavoriteProduct;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
@@ -18,9 +17,10 @@ public interface FavoriteProductRepository
   // Tìm bản ghi yêu thích cụ thể
   Optional<FavoriteProduct> findByUserIdAndProductId(Long userId, Long productId);
 
-  // Lấy danh sách sản phẩm yêu thích của user (phân trang)
-  @Query("SELECT fp.product FROM FavoriteProduct fp WHERE fp.user.id = :userId")
-  Page<Product> findFavoriteProductsByUserId(@Param("userId") Long userId, Pageable pageable);
+  // Lấy ID các sản phẩm yêu thích của user (phân trang, sort theo cột của FavoriteProduct).
+  // Dữ liệu hiển thị được đọc sau bằng projection của ProductRepository.
+  @Query("SELECT fp.product.id FROM FavoriteProduct fp WHERE fp.user.id = :userId")
+  Page<Long> findFavoriteProductIdsByUserId(@Param("userId") Long userId, Pageable pageable);
 
   // Đếm số lượng sản phẩm yêu thích của user
   long countByUserId(Long userId);
@@ -1,10 +1,14 @@
 package com.yourcompany.agritrade.interaction.repository;
 
 import com.yourcompany.agritrade.interaction.domain.UserFollow;
-import com.yourcompany.agritrade.usermanagement.domain.User;
+import com.yourcompany.agritrade.interaction.dto.response.FollowUserResponse;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -16,17 +20,59 @@ public interface UserFollowRepository extends JpaRepository<UserFollow, UserFoll
   // Tìm bản ghi follow cụ thể
   Optional<UserFollow> findByFollowerIdAndFollowingId(Long followerId, Long followingId);
 
-  // Lấy danh sách những người mà user này đang follow (following)
-  @Query("SELECT uf.following FROM UserFollow uf WHERE uf.follower.id = :followerId")
-  List<User> findFollowingByFollowerId(@Param("followerId") Long followerId);
+  // Trang danh sách những người mà user này đang follow, chiếu thẳng sang DTO (mới follow trước)
+  @Query(
+      value =
+          "SELECT new com.yourcompany.agritrade.interaction.dto.response.FollowUserResponse("
+              + "u.id, u.fullName, u.avatarUrl, fp.farmName, uf.followedAt) "
+              + "FROM UserFollow uf JOIN uf.following u LEFT JOIN u.farmerProfile fp "
+              + "WHERE uf.follower.id = :followerId "
+              + "ORDER BY uf.followedAt DESC, u.id DESC",
+      countQuery = "SELECT COUNT(uf) FROM UserFollow uf WHERE uf.follower.id = :followerId")
+  Page<FollowUserResponse> findFollowingResponses(
+      @Param("followerId") Long followerId, Pageable pageable);
 
-  // Có thể trả về Page<User> nếu cần phân trang
+  // Như trên nhưng phân trang keyset theo (followedAt, id) của bản ghi cuối trang trước
+  @Query(
+      "SELECT new com.yourcompany.agritrade.interaction.dto.response.FollowUserResponse("
+          + "u.id, u.fullName, u.avatarUrl, fp.farmName, uf.followedAt) "
+          + "FROM UserFollow uf JOIN uf.following u LEFT JOIN u.farmerProfile fp "
+          + "WHERE uf.follower.id = :followerId "
+          + "AND (:cursorAt IS NULL OR uf.followedAt < :cursorAt "
+          + "OR (uf.followedAt = :cursorAt AND u.id < :cursorId)) "
+          + "ORDER BY uf.followedAt DESC, u.id DESC")
+  List<FollowUserResponse> findFollowingResponsesBefore(
+      @Param("followerId") Long followerId,
+      @Param("cursorAt") LocalDateTime cursorAt,
+      @Param("cursorId") Long cursorId,
+      Pageable limit);
 
-  // Lấy danh sách những người đang follow user này (followers)
-  @Query("SELECT uf.follower FROM UserFollow uf WHERE uf.following.id = :followingId")
-  List<User> findFollowersByFollowingId(@Param("followingId") Long followingId);
+  // Trang danh sách những người đang follow user này (followers), chiếu thẳng sang DTO
+  @Query(
+      value =
+          "SELECT new com.yourcompany.agritrade.interaction.dto.response.FollowUserResponse("
+              + "u.id, u.fullName, u.avatarUrl, fp.farmName, uf.followedAt) "
+              + "FROM UserFollow uf JOIN uf.follower u LEFT JOIN u.farmerProfile fp "
+              + "WHERE uf.following.id = :followingId "
+              + "ORDER BY uf.followedAt DESC, u.id DESC",
+      countQuery = "SELECT COUNT(uf) FROM UserFollow uf WHERE uf.following.id = :followingId")
+  Page<FollowUserResponse> findFollowerResponses(
+      @Param("followingId") Long followingId, Pageable pageable);
 
-  // Có thể trả về Page<User> nếu cần phân trang
+  // Như trên nhưng phân trang keyset theo (followedAt, id) của bản ghi cuối trang trước
+  @Query(
+      "SELECT new com.yourcompany.agritrade.interaction.dto.response.FollowUserResponse("
+          + "u.id, u.fullName, u.avatarUrl, fp.farmName, uf.followedAt) "
+          + "FROM UserFollow uf JOIN uf.follower u LEFT JOIN u.farmerProfile fp "
+          + "WHERE uf.following.id = :followingId "
+          + "AND (:cursorAt IS NULL OR uf.followedAt < :cursorAt "
+          + "OR (uf.followedAt = :cursorAt AND u.id < :cursorId)) "
+          + "ORDER BY uf.followedAt DESC, u.id DESC")
+  List<FollowUserResponse> findFollowerResponsesBefore(
+      @Param("followingId") Long followingId,
+      @Param("cursorAt") LocalDateTime cursorAt,
+      @Param("cursorId") Long cursorId,
+      Pageable limit);
 
   // Đếm số người đang follow
   long countByFollowerId(Long followerId);
@@ -34,6 +80,10 @@ public interface UserFollowRepository extends JpaRepository<UserFollow, UserFoll
   // Đếm số người được follow
   long countByFollowingId(Long followingId);
 
-  // Xóa bản ghi follow
-  void deleteByFollowerIdAndFollowingId(Long followerId, Long followingId);
+  // Xóa bản ghi follow, trả về số bản ghi đã xóa (0 nếu chưa follow)
+  @Modifying
+  @Query(
+      "DELETE FROM UserFollow uf WHERE uf.follower.id = :followerId AND uf.following.id = :followingId")
+  int deleteByFollowerIdAndFollowingId(
+      @Param("followerId") Long followerId, @Param("followingId") Long followingId);
 }
@@ -0,0 +1,32 @@
+package com.yourcompany.agritrade.interaction.service;
+
+import com.yourcompany.agritrade.interaction.domain.ChatMessage;
+import java.util.List;
+
+/**
+ * Luồng ghi tin nhắn chat: cấp ID trước, sau đó gom tin nhắn thành từng lô nhỏ theo thời gian để
+ * INSERT một lần và cộng dồn bộ đếm chưa đọc / tin nhắn cuối của phòng bằng UPDATE nguyên tử.
+ */
+public interface ChatMessageWriteService {
+
+  /** Số liệu của luồng ghi trên node hiện tại. */
+  record Stats(long enqueued, long written, long failed, long batches, long inlineWrites) {}
+
+  /** Cấp ID cho một tin nhắn mới, dùng được ngay để đẩy qua WebSocket trước khi ghi DB. */
+  long nextMessageId();
+
+  /**
+   * Đưa các tin nhắn (đã có ID, room, sender, recipient, sentAt) vào hàng đợi ghi. Các tin nhắn
+   * trong cùng một lời gọi luôn nằm cùng một lô. Nếu hàng đợi đầy hoặc tắt gom lô thì ghi ngay trên
+   * luồng gọi.
+   */
+  void enqueue(List<ChatMessage> messages);
+
+  /**
+   * Chờ (tối đa {@code flush-timeout-ms}) tới khi mọi tin nhắn đã đưa vào hàng đợi trước lời gọi
+   * này được ghi xong, kể cả phần cộng bộ đếm chưa đọc của phòng. Gọi trước khi đánh dấu đã đọc.
+   */
+  void awaitPendingWrites();
+
+  Stats getStats();
+}
@@ -1,5 +1,6 @@
 package com.yourcompany.agritrade.interaction.service;
 
+import com.yourcompany.agritrade.common.dto.response.CursorPageResponse;
 import com.yourcompany.agritrade.interaction.dto.response.FollowUserResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -50,6 +51,39 @@ public interface FollowService {
    */
   Page<FollowUserResponse> getFollowersPublic(Long userId, Pageable pageable);
 
+  /**
+   * Lấy danh sách following của user hiện tại theo con trỏ (keyset), không đếm tổng số bản ghi.
+   *
+   * @param authentication Thông tin user hiện tại.
+   * @param cursor nextCursor của trang trước, bỏ trống để lấy trang đầu.
+   * @param size Số phần tử mỗi trang.
+   * @return Trang kết quả kèm con trỏ của trang kế tiếp.
+   */
+  CursorPageResponse<FollowUserResponse> getFollowingByCursor(
+      Authentication authentication, String cursor, int size);
+
+  /**
+   * Lấy danh sách followers của user hiện tại theo con trỏ (keyset).
+   *
+   * @param authentication Thông tin user hiện tại.
+   * @param cursor nextCursor của trang trước, bỏ trống để lấy trang đầu.
+   * @param size Số phần tử mỗi trang.
+   * @return Trang kết quả kèm con trỏ của trang kế tiếp.
+   */
+  CursorPageResponse<FollowUserResponse> getFollowersByCursor(
+      Authentication authentication, String cursor, int size);
+
+  /**
+   * Lấy danh sách followers của một user cụ thể (public) theo con trỏ (keyset).
+   *
+   * @param userId ID của user muốn xem followers.
+   * @param cursor nextCursor của trang trước, bỏ trống để lấy trang đầu.
+   * @param size Số phần tử mỗi trang.
+   * @return Trang kết quả kèm con trỏ của trang kế tiếp.
+   */
+  CursorPageResponse<FollowUserResponse> getFollowersPublicByCursor(
+      Long userId, String cursor, int size);
+
   /**
    * Kiểm tra xem user hiện tại có đang follow user khác không.
    *
@@ -0,0 +1,402 @@
+package com.yourcompany.agritrade.interaction.service.impl;
+
+import com.yourcompany.agritrade.common.service.IdBlockAllocator;
+import com.yourcompany.agritrade.common.util.PooledIdSequence;
+import com.yourcompany.agritrade.interaction.domain.ChatMessage;
+import com.yourcompany.agritrade.interaction.domain.MessageType;
+import com.yourcompany.agritrade.interaction.dto.event.WebSocketErrorEvent;
+import com.yourcompany.agritrade.interaction.service.ChatMessageWriteService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Ghi tin nhắn chat theo lô (group commit) trên một luồng ghi riêng.
+ *
+ * <p>Luồng ghi lấy tin nhắn từ hàng đợi cho tới khi đủ {@code batch-max-size} hoặc hết {@code
+ * batch-max-delay-ms} kể từ tin nhắn đầu lô, rồi trong một transaction: INSERT cả lô bằng JDBC
+ * batch, và cập nhật mỗi phòng đúng một câu UPDATE cộng dồn bộ đếm chưa đọc, gán tin nhắn cuối nếu
+ * mới hơn. Không đọc entity phòng nên hai luồng ghi (nhiều node) không ghi đè số đếm của nhau.
+ *
+ * <p>{@link #awaitPendingWrites()} đặt một mốc vào hàng đợi: luồng ghi ghi ngay lô đang gom cùng
+ * mọi tin nhắn đứng trước mốc rồi mới báo xong, để việc đánh dấu đã đọc không bị lô đến sau cộng
+ * lại bộ đếm chưa đọc.
+ *
+ * <p>Lô lỗi được ghi lại từng tin nhắn một; tin nhắn vẫn lỗi thì người gửi nhận thông báo qua
+ * {@code /queue/errors} (họ đã thấy tin nhắn trên WebSocket trước đó).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChatMessageWriteServiceImpl implements ChatMessageWriteService {
+
+  static final String SEQUENCE_NAME = "chat_messages";
+
+  private static final String INSERT_SQL =
+      "INSERT INTO chat_messages"
+          + " (id, room_id, sender_id, recipient_id, content, message_type, sent_at, is_read)"
+          + " VALUES (?, ?, ?, ?, ?, ?, ?, false)";
+
+  // last_message_id phải gán trước last_message_time: MySQL dùng giá trị mới của cột đã gán trước
+  // trong cùng câu SET
+  private static final String UPDATE_ROOM_SQL =
+      "UPDATE chat_rooms SET"
+          + " user1_unread_count = user1_unread_count + ?,"
+          + " user2_unread_count = user2_unread_count + ?,"
+          + " last_message_id = CASE WHEN last_message_time IS NULL OR last_message_time <= ?"
+          + " THEN ? ELSE last_message_id END,"
+          + " last_message_time = CASE WHEN last_message_time IS NULL OR last_message_time <= ?"
+          + " THEN ? ELSE last_message_time END,"
+          + " updated_at = ?"
+          + " WHERE id = ?";
+
+  private static final String MAX_ID_SQL = "SELECT COALESCE(MAX(id), 0) + 1 FROM chat_messages";
+
+  /** Bản chụp dữ liệu cần ghi, không giữ entity/proxy Hibernate sang luồng ghi. */
+  record PendingMessage(
+      long id,
+      long roomId,
+      long senderId,
+      long recipientId,
+      String senderEmail,
+      String content,
+      MessageType messageType,
+      LocalDateTime sentAt) {
+
+    static PendingMessage of(ChatMessage message) {
+      return new PendingMessage(
+          message.getId(),
+          message.getRoom().getId(),
+          message.getSender().getId(),
+          message.getRecipient().getId(),
+          message.getSender().getEmail(),
+          message.getContent(),
+          message.getMessageType(),
+          message.getSentAt());
+    }
+  }
+
+  // Phần tử hàng đợi: một nhóm tin nhắn, hoặc một mốc chờ của awaitPendingWrites (written khác
+  // null)
+  private record WriteRequest(List<PendingMessage> messages, CountDownLatch written) {}
+
+  // Thay đổi gộp của một phòng trong lô
+  private static final class RoomDelta {
+    int user1Unread;
+    int user2Unread;
+    PendingMessage latest;
+  }
+
+  private final JdbcTemplate jdbcTemplate;
+  private final PlatformTransactionManager transactionManager;
+  private final IdBlockAllocator idBlockAllocator;
+  private final SimpMessagingTemplate messagingTemplate;
+
+  @Value("${app.chat.write.batching-enabled:true}")
+  private boolean batchingEnabled;
+
+  @Value("${app.chat.write.batch-max-size:200}")
+  private int batchMaxSize;
+
+  @Value("${app.chat.write.batch-max-delay-ms:10}")
+  private long batchMaxDelayMillis;
+
+  @Value("${app.chat.write.queue-capacity:10000}")
+  private int queueCapacity;
+
+  @Value("${app.chat.write.id-block-size:100}")
+  private int idBlockSize;
+
+  @Value("${app.chat.write.shutdown-timeout-ms:10000}")
+  private long shutdownTimeoutMillis;
+
+  @Value("${app.chat.write.flush-timeout-ms:2000}")
+  private long flushTimeoutMillis;
+
+  private final LongAdder enqueued = new LongAdder();
+  private final LongAdder written = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder inlineWrites = new LongAdder();
+
+  private volatile PooledIdSequence idSequence;
+  private volatile BlockingQueue<WriteRequest> queue;
+  private volatile Thread writerThread;
+  private volatile boolean running = false;
+
+  @PostConstruct
+  void start() {
+    idSequence =
+        new PooledIdSequence(
+            idBlockAllocator,
+            SEQUENCE_NAME,
+            idBlockSize,
+            () -> jdbcTemplate.queryForObject(MAX_ID_SQL, Long.class));
+    if (!batchingEnabled) {
+      log.info("Chat message batching disabled, messages are written on the caller thread");
+      return;
+    }
+    queue = new ArrayBlockingQueue<>(queueCapacity);
+    running = true;
+    writerThread = Thread.ofPlatform().name("chat-message-writer").start(this::runWriterLoop);
+    log.info(
+        "Chat message writer started (batch max size {}, max delay {} ms)",
+        batchMaxSize,
+        batchMaxDelayMillis);
+  }
+
+  @PreDestroy
+  void stop() {
+    running = false;
+    Thread thread = writerThread;
+    if (thread == null) {
+      return;
+    }
+    try {
+      // Luồng ghi tự thoát sau khi xả hết hàng đợi
+      thread.join(shutdownTimeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (thread.isAlive()) {
+      log.warn(
+          "Chat message writer did not drain within {} ms, {} group(s) left in queue",
+          shutdownTimeoutMillis,
+          queue.size());
+      thread.interrupt();
+      return;
+    }
+    // Nhóm được đưa vào đúng lúc luồng ghi vừa thoát
+    List<WriteRequest> leftovers = new ArrayList<>();
+    queue.drainTo(leftovers);
+    for (WriteRequest request : leftovers) {
+      if (request.written() != null) {
+        request.written().countDown();
+      } else {
+        writeBatch(request.messages());
+      }
+    }
+  }
+
+  @Override
+  public long nextMessageId() {
+    return idSequence.next();
+  }
+
+  @Override
+  public void enqueue(List<ChatMessage> messages) {
+    if (messages == null || messages.isEmpty()) {
+      return;
+    }
+    List<PendingMessage> group = messages.stream().map(PendingMessage::of).toList();
+    enqueued.add(group.size());
+    if (running && queue.offer(new WriteRequest(group, null))) {
+      return;
+    }
+    // Hàng đợi đầy (DB không theo kịp) hoặc đang tắt: ghi ngay, tự tạo áp lực ngược lên người gửi
+    inlineWrites.add(group.size());
+    writeBatch(group);
+  }
+
+  @Override
+  public void awaitPendingWrites() {
+    if (!running) {
+      return; // Không gom lô: tin nhắn đã được ghi trên luồng gửi
+    }
+    CountDownLatch written = new CountDownLatch(1);
+    try {
+      if (!queue.offer(
+              new WriteRequest(List.of(), written), flushTimeoutMillis, TimeUnit.MILLISECONDS)
+          || !written.await(flushTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        log.warn(
+            "Timed out after {} ms waiting for queued chat messages to be written",
+            flushTimeoutMillis);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public Stats getStats() {
+    return new Stats(
+        enqueued.sum(), written.sum(), failed.sum(), batches.sum(), inlineWrites.sum());
+  }
+
+  private void runWriterLoop() {
+    List<PendingMessage> batch = new ArrayList<>(batchMaxSize);
+    List<CountDownLatch> barriers = new ArrayList<>();
+    while (running || !queue.isEmpty()) {
+      try {
+        WriteRequest first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        boolean flushNow = collect(first, batch, barriers);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchMaxDelayMillis);
+        while (!flushNow && batch.size() < batchMaxSize) {
+          long remaining = deadline - System.nanoTime();
+          WriteRequest next =
+              remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+          if (next == null) {
+            break;
+          }
+          flushNow = collect(next, batch, barriers);
+        }
+        writeBatch(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        writeBatch(batch);
+        break;
+      } catch (Exception e) {
+        // writeBatch tự xử lý lỗi; đây chỉ để luồng ghi không bao giờ chết
+        log.error("Unexpected error in chat message writer", e);
+      } finally {
+        batch.clear();
+        // Mốc chỉ được báo sau khi lô chứa mọi tin nhắn đứng trước nó đã ghi (hoặc lỗi) xong
+        barriers.forEach(CountDownLatch::countDown);
+        barriers.clear();
+      }
+    }
+    log.info("Chat message writer stopped");
+  }
+
+  // Trả về true nếu gặp mốc chờ: lô đang gom phải được ghi ngay
+  private static boolean collect(
+      WriteRequest request, List<PendingMessage> batch, List<CountDownLatch> barriers) {
+    if (request.written() != null) {
+      barriers.add(request.written());
+      return true;
+    }
+    batch.addAll(request.messages());
+    return false;
+  }
+
+  void writeBatch(List<PendingMessage> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      new TransactionTemplate(transactionManager).executeWithoutResult(status -> persist(batch));
+      written.add(batch.size());
+      batches.increment();
+      log.debug("Wrote batch of {} chat message(s)", batch.size());
+    } catch (Exception e) {
+      if (batch.size() == 1) {
+        handleFailure(batch.get(0), e);
+        return;
+      }
+      log.warn(
+          "Chat message batch of {} failed ({}), retrying one by one",
+          batch.size(),
+          e.getMessage());
+      for (PendingMessage message : batch) {
+        try {
+          new TransactionTemplate(transactionManager)
+              .executeWithoutResult(status -> persist(List.of(message)));
+          written.increment();
+        } catch (Exception ex) {
+          handleFailure(message, ex);
+        }
+      }
+    }
+  }
+
+  private void persist(List<PendingMessage> batch) {
+    jdbcTemplate.batchUpdate(
+        INSERT_SQL,
+        batch,
+        batch.size(),
+        (ps, message) -> {
+          ps.setLong(1, message.id());
+          ps.setLong(2, message.roomId());
+          ps.setLong(3, message.senderId());
+          ps.setLong(4, message.recipientId());
+          ps.setString(5, message.content());
+          ps.setString(6, message.messageType().name());
+          ps.setTimestamp(7, Timestamp.valueOf(message.sentAt()));
+        });
+
+    Map<Long, RoomDelta> deltas = new LinkedHashMap<>();
+    for (PendingMessage message : batch) {
+      RoomDelta delta = deltas.computeIfAbsent(message.roomId(), k -> new RoomDelta());
+      // Tin nhắn hệ thống (ngữ cảnh sản phẩm) không tính là chưa đọc
+      if (message.messageType() != MessageType.SYSTEM) {
+        // user1 của phòng luôn là người có ID nhỏ hơn
+        if (message.recipientId() < message.senderId()) {
+          delta.user1Unread++;
+        } else {
+          delta.user2Unread++;
+        }
+      }
+      if (delta.latest == null || isNewer(message, delta.latest)) {
+        delta.latest = message;
+      }
+    }
+
+    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    List<Object[]> args = new ArrayList<>(deltas.size());
+    deltas.forEach(
+        (roomId, delta) -> {
+          Timestamp latestTime = Timestamp.valueOf(delta.latest.sentAt());
+          args.add(
+              new Object[] {
+                delta.user1Unread,
+                delta.user2Unread,
+                latestTime,
+                delta.latest.id(),
+                latestTime,
+                latestTime,
+                now,
+                roomId
+              });
+        });
+    jdbcTemplate.batchUpdate(UPDATE_ROOM_SQL, args);
+  }
+
+  private static boolean isNewer(PendingMessage candidate, PendingMessage current) {
+    int byTime = candidate.sentAt().compareTo(current.sentAt());
+    return byTime > 0 || (byTime == 0 && candidate.id() > current.id());
+  }
+
+  private void handleFailure(PendingMessage message, Exception e) {
+    failed.increment();
+    log.error(
+        "Could not persist chat message {} in room {} from user {}: {}",
+        message.id(),
+        message.roomId(),
+        message.senderId(),
+        e.getMessage());
+    try {
+      messagingTemplate.convertAndSend(
+          "/user/" + message.senderEmail() + "/queue/errors",
+          new WebSocketErrorEvent(
+              "MessageNotSaved",
+              "Message " + message.id() + " could not be saved, please send it again."));
+    } catch (Exception notifyError) {
+      log.warn(
+          "Could not notify user {} about unsaved message {}: {}",
+          message.senderId(),
+          message.id(),
+          notifyError.getMessage());
+    }
+  }
+}
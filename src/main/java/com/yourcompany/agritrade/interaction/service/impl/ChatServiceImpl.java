@@ -6,6 +6,7 @@ import com.yourcompany.agritrade.common.model.RoleType;
 import com.yourcompany.agritrade.common.util.SecurityUtils;
 import com.yourcompany.agritrade.interaction.domain.ChatMessage;
 import com.yourcompany.agritrade.interaction.domain.ChatRoom;
+import com.yourcompany.agritrade.interaction.domain.ChatRoomKey;
 import com.yourcompany.agritrade.interaction.domain.MessageType;
 import com.yourcompany.agritrade.interaction.dto.event.MessageReadEvent;
 import com.yourcompany.agritrade.interaction.dto.request.ChatMessageRequest;
@@ -15,13 +16,19 @@ import com.yourcompany.agritrade.interaction.mapper.ChatMessageMapper;
 import com.yourcompany.agritrade.interaction.mapper.ChatRoomMapper;
 import com.yourcompany.agritrade.interaction.repository.ChatMessageRepository;
 import com.yourcompany.agritrade.interaction.repository.ChatRoomRepository;
+import com.yourcompany.agritrade.interaction.service.ChatMessageWriteService;
 import com.yourcompany.agritrade.interaction.service.ChatService;
 import com.yourcompany.agritrade.ordering.domain.SupplyOrderRequestStatus;
 import com.yourcompany.agritrade.ordering.repository.SupplyOrderRequestRepository;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -34,6 +41,8 @@ import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 @RequiredArgsConstructor
@@ -48,9 +57,21 @@ public class ChatServiceImpl implements ChatService {
   private final SimpMessagingTemplate messagingTemplate;
   private final SupplyOrderRequestRepository supplyOrderRequestRepository;
 
+  private final ChatMessageWriteService chatMessageWriteService;
+
   @Value("${app.frontend.url}") // Lấy URL frontend
   private String frontendUrl;
 
+  private static final int ROOM_ID_CACHE_MAX_SIZE = 50_000;
+  private static final int CONTEXT_MESSAGE_CACHE_MAX_SIZE = 10_000;
+  private static final Duration CONTEXT_MESSAGE_WINDOW = Duration.ofMinutes(1);
+
+  // Khóa chuẩn của cặp người dùng -> ID phòng (phòng chat không bị xóa nên không cần vô hiệu hóa)
+  private final Map<ChatRoomKey, Long> roomIdCache = new ConcurrentHashMap<>();
+
+  // "room:sender:product" -> thời điểm gửi tin nhắn ngữ cảnh gần nhất
+  private final Map<String, LocalDateTime> recentContextMessages = new ConcurrentHashMap<>();
+
   @Override
   @Transactional
   public ChatRoomResponse getOrCreateChatRoom(Authentication authentication, Long recipientId) {
@@ -61,21 +82,20 @@ public class ChatServiceImpl implements ChatService {
             .orElseThrow(() -> new ResourceNotFoundException("User", "id", recipientId));
 
     // Tìm hoặc tạo phòng chat
+    ChatRoomKey key = ChatRoomKey.of(sender.getId(), recipient.getId());
     ChatRoom room =
         chatRoomRepository
-            .findRoomBetweenUsers(sender.getId(), recipient.getId())
-            .orElseGet(
-                () -> {
-                  log.info(
-                      "Creating new chat room between user {} and {}",
-                      sender.getId(),
-                      recipient.getId());
-                  return chatRoomRepository.save(new ChatRoom(sender, recipient));
-                });
+            .findByUserPair(key.minUserId(), key.maxUserId())
+            .orElseGet(() -> createRoom(sender, recipient));
 
     return chatRoomMapper.toChatRoomResponse(room); // Mapper sẽ tính unread count và other user
   }
 
+  /**
+   * Gửi tin nhắn: đẩy WebSocket cho hai bên trước với ID đã cấp sẵn, còn việc INSERT tin nhắn và
+   * cập nhật bộ đếm/tin nhắn cuối của phòng được giao cho {@link ChatMessageWriteService} (gom lô)
+   * sau khi transaction hiện tại commit.
+   */
   @Override
   @Transactional
   public ChatMessageResponse sendMessage(
@@ -95,10 +115,7 @@ public class ChatServiceImpl implements ChatService {
     }
 
     // Lấy hoặc tạo phòng chat
-    ChatRoom room =
-        chatRoomRepository
-            .findRoomBetweenUsers(sender.getId(), recipient.getId())
-            .orElseGet(() -> chatRoomRepository.save(new ChatRoom(sender, recipient)));
+    ChatRoom room = resolveRoom(sender, recipient);
 
     // Logic cập nhật trạng thái SupplyRequest khi Farmer bắt đầu chat
     if (request.getContextProductId() != null
@@ -127,6 +144,9 @@ public class ChatServiceImpl implements ChatService {
             && !hasRecentContextMessage(
                 room.getId(), request.getContextProductId(), sender.getId());
 
+    List<ChatMessage> toPersist = new ArrayList<>(2);
+    LocalDateTime now = LocalDateTime.now();
+
     if (shouldSendContextMessage) {
       String productLink = "#"; // Link mặc định
       if (request.getContextProductSlug() != null) {
@@ -143,19 +163,20 @@ public class ChatServiceImpl implements ChatService {
                   "Thông tin sản phẩm đang quan tâm: <a href='%s' target='_blank'>%s</a> (ID: %d)",
                   productLink, request.getContextProductName(), request.getContextProductId()));
 
-      ChatMessage contextMessage = new ChatMessage();
-      contextMessage.setRoom(room);
-      contextMessage.setSender(sender); // Người gửi vẫn là người dùng hiện tại
-      contextMessage.setRecipient(recipient);
-      contextMessage.setContent(contextMessageContent);
-      contextMessage.setMessageType(MessageType.SYSTEM); // Đánh dấu là tin nhắn hệ thống/ngữ cảnh
-      contextMessage.setSentAt(
-          LocalDateTime.now().minusNanos(1000000)); // Gửi trước tin nhắn chính một chút
-      contextMessage.setRead(false); // Ban đầu chưa đọc
-      ChatMessage savedContextMessage = chatMessageRepository.save(contextMessage);
+      // Gửi trước tin nhắn chính một chút; tin nhắn hệ thống không tăng unread count
+      ChatMessage contextMessage =
+          buildMessage(
+              room,
+              sender,
+              recipient,
+              contextMessageContent,
+              MessageType.SYSTEM,
+              now.minusNanos(1000000));
+      toPersist.add(contextMessage);
+      rememberContextMessage(room.getId(), request.getContextProductId(), sender.getId(), now);
 
       // Gửi tin nhắn ngữ cảnh qua WebSocket cho cả hai bên
-      ChatMessageResponse contextDto = chatMessageMapper.toChatMessageResponse(savedContextMessage);
+      ChatMessageResponse contextDto = chatMessageMapper.toChatMessageResponse(contextMessage);
       String recipientContextDest = "/user/" + recipient.getEmail() + "/queue/messages";
       messagingTemplate.convertAndSend(recipientContextDest, contextDto);
       String senderContextDest =
@@ -165,61 +186,114 @@ public class ChatServiceImpl implements ChatService {
           "Sent SYSTEM context product message for product ID {} to room {}",
           request.getContextProductId(),
           room.getId());
-
-      // Cập nhật lastMessage của phòng nếu đây là tin nhắn đầu tiên
-      // (Tin nhắn người dùng sẽ ghi đè sau)
-      if (room.getLastMessage() == null) {
-        room.setLastMessage(savedContextMessage);
-        room.setLastMessageTime(savedContextMessage.getSentAt());
-        // Không tăng unread count cho tin nhắn hệ thống này
-        chatRoomRepository.save(room);
-      }
     }
 
-    // Tạo và lưu tin nhắn
-    ChatMessage message = new ChatMessage();
-    message.setRoom(room);
-    message.setSender(sender);
-    message.setRecipient(recipient);
-    message.setContent(request.getContent()); // Nội dung người dùng nhập
-    message.setMessageType(request.getMessageType());
-    message.setSentAt(LocalDateTime.now()); // Gán thời gian gửi
-    message.setRead(false); // Tin nhắn mới chưa đọc
-
-    ChatMessage savedMessage = chatMessageRepository.save(message);
-
-    // Cập nhật thông tin phòng chat
-    room.setLastMessage(savedMessage);
-    room.setLastMessageTime(savedMessage.getSentAt());
-    // Tăng unread count cho người nhận
-    if (room.getUser1().getId().equals(recipient.getId())) {
-      room.setUser1UnreadCount(room.getUser1UnreadCount() + 1);
-    } else {
-      room.setUser2UnreadCount(room.getUser2UnreadCount() + 1);
-    }
-    chatRoomRepository.save(room); // Lưu lại phòng chat
+    // Tạo tin nhắn với ID cấp sẵn
+    ChatMessage message =
+        buildMessage(room, sender, recipient, request.getContent(), request.getMessageType(), now);
+    toPersist.add(message);
 
     // Map sang response DTO
-    ChatMessageResponse responseDto = chatMessageMapper.toChatMessageResponse(savedMessage);
+    ChatMessageResponse responseDto = chatMessageMapper.toChatMessageResponse(message);
 
     // *** Gửi tin nhắn qua WebSocket đến người nhận ***
     // Đích đến là private queue của người nhận
     String destination = "/user/" + recipient.getEmail() + "/queue/messages";
     messagingTemplate.convertAndSend(destination, responseDto);
-    log.info("Sent WebSocket message to {}: {}", destination, responseDto.getId());
+    log.debug("Sent WebSocket message to {}: {}", destination, responseDto.getId());
 
     //  Gửi lại cho người gửi để xác nhận đã gửi thành công
     String senderDestination =
         "/user/" + sender.getEmail() + "/queue/messages"; // Gửi vào cùng queue
     messagingTemplate.convertAndSend(senderDestination, responseDto);
-    log.info(
+    log.debug(
         "Sent WebSocket message back to sender {}: {}", senderDestination, responseDto.getId());
 
+    persistAfterCommit(toPersist);
     return responseDto;
   }
 
+  private ChatRoom resolveRoom(User sender, User recipient) {
+    ChatRoomKey key = ChatRoomKey.of(sender.getId(), recipient.getId());
+    Long cachedRoomId = roomIdCache.get(key);
+    if (cachedRoomId != null) {
+      return chatRoomRepository.getReferenceById(cachedRoomId);
+    }
+    Optional<ChatRoom> existing =
+        chatRoomRepository.findByUserPair(key.minUserId(), key.maxUserId());
+    if (existing.isEmpty()) {
+      // Phòng mới chỉ vào cache ở lần gửi sau, khi chắc chắn đã được commit
+      return createRoom(sender, recipient);
+    }
+    if (roomIdCache.size() >= ROOM_ID_CACHE_MAX_SIZE) {
+      roomIdCache.clear();
+    }
+    roomIdCache.put(key, existing.get().getId());
+    return existing.get();
+  }
+
+  private ChatRoom createRoom(User sender, User recipient) {
+    log.info("Creating new chat room between user {} and {}", sender.getId(), recipient.getId());
+    return chatRoomRepository.save(new ChatRoom(sender, recipient));
+  }
+
+  private ChatMessage buildMessage(
+      ChatRoom room,
+      User sender,
+      User recipient,
+      String content,
+      MessageType messageType,
+      LocalDateTime sentAt) {
+    ChatMessage message = new ChatMessage();
+    message.setId(chatMessageWriteService.nextMessageId());
+    message.setRoom(room);
+    message.setSender(sender);
+    message.setRecipient(recipient);
+    message.setContent(content);
+    message.setMessageType(messageType);
+    message.setSentAt(sentAt);
+    message.setRead(false); // Tin nhắn mới chưa đọc
+    return message;
+  }
+
+  // Phòng vừa tạo và trạng thái SupplyRequest phải commit trước khi tin nhắn được ghi
+  private void persistAfterCommit(List<ChatMessage> messages) {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              chatMessageWriteService.enqueue(messages);
+            }
+          });
+    } else {
+      chatMessageWriteService.enqueue(messages);
+    }
+  }
+
+  private void rememberContextMessage(
+      Long roomId, Long contextProductId, Long senderId, LocalDateTime sentAt) {
+    if (recentContextMessages.size() >= CONTEXT_MESSAGE_CACHE_MAX_SIZE) {
+      LocalDateTime cutoff = LocalDateTime.now().minus(CONTEXT_MESSAGE_WINDOW);
+      recentContextMessages.values().removeIf(time -> time.isBefore(cutoff));
+    }
+    recentContextMessages.put(contextMessageKey(roomId, contextProductId, senderId), sentAt);
+  }
+
+  private static String contextMessageKey(Long roomId, Long contextProductId, Long senderId) {
+    return roomId + ":" + senderId + ":" + contextProductId;
+  }
+
   // Helper method để kiểm tra xem có tin nhắn context gần đây không
   private boolean hasRecentContextMessage(Long roomId, Long contextProductId, Long senderId) {
+    // Tin nhắn vừa gửi có thể còn nằm trong lô chưa ghi -> xem bộ nhớ trước
+    LocalDateTime cutoff = LocalDateTime.now().minus(CONTEXT_MESSAGE_WINDOW);
+    LocalDateTime rememberedAt =
+        recentContextMessages.get(contextMessageKey(roomId, contextProductId, senderId));
+    if (rememberedAt != null && rememberedAt.isAfter(cutoff)) {
+      return true;
+    }
+
     // Tìm 5 tin nhắn cuối cùng trong phòng của sender này
     Pageable recentMessagesPageable = PageRequest.of(0, 5, Sort.by(Sort.Direction.DESC, "sentAt"));
     Page<ChatMessage> recentMessages =
@@ -231,8 +305,7 @@ public class ChatServiceImpl implements ChatService {
           && msg.getContent() != null
           && // Thêm kiểm tra null cho content
           msg.getContent().contains("(ID: " + contextProductId + ")")) { // Kiểm tra nội dung
-        if (msg.getSentAt()
-            .isAfter(LocalDateTime.now().minusMinutes(1))) { // Giảm thời gian kiểm tra xuống 1 phút
+        if (msg.getSentAt().isAfter(cutoff)) { // Giảm thời gian kiểm tra xuống 1 phút
           log.debug(
               "Recent SYSTEM message for product {} in room {} by sender {} found. Skipping duplicate.",
               contextProductId,
@@ -290,23 +363,18 @@ public class ChatServiceImpl implements ChatService {
       throw new AccessDeniedException("User does not belong to this chat room");
     }
 
+    // Tin nhắn còn trong lô chờ ghi sẽ cộng lại bộ đếm chưa đọc sau khi reset: ghi hết trước đã.
+    // Các UPDATE bên dưới đọc dữ liệu đã commit mới nhất nên thấy được các tin nhắn này
+    chatMessageWriteService.awaitPendingWrites();
+
     // Đánh dấu tin nhắn là đã đọc trong DB
     int updatedCount =
         chatMessageRepository.markMessagesAsRead(roomId, user.getId(), LocalDateTime.now());
 
-    // Reset unread count của user này trong phòng chat
-    // Reset unread count và lưu phòng chat
+    // Reset unread count của user này trong phòng chat bằng UPDATE nguyên tử (luồng ghi tin nhắn
+    // có thể đang cộng dồn bộ đếm của phòng này)
     if (updatedCount > 0) {
-      boolean updated = false;
-      if (room.getUser1().getId().equals(user.getId()) && room.getUser1UnreadCount() > 0) {
-        room.setUser1UnreadCount(0);
-        updated = true;
-      } else if (room.getUser2().getId().equals(user.getId()) && room.getUser2UnreadCount() > 0) {
-        room.setUser2UnreadCount(0);
-        updated = true;
-      }
-      if (updated) {
-        chatRoomRepository.save(room);
+      if (chatRoomRepository.resetUnreadCount(roomId, user.getId()) > 0) {
         log.info(
             "Marked {} messages as read for user {} in room {}",
             updatedCount,
@@ -4,6 +4,8 @@ import com.yourcompany.agritrade.catalog.domain.Product;
 import com.yourcompany.agritrade.catalog.dto.response.ProductSummaryResponse;
 import com.yourcompany.agritrade.catalog.mapper.ProductMapper;
 import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.catalog.repository.projection.ProductSummaryView;
+import com.yourcompany.agritrade.catalog.repository.specification.ProductSpecifications;
 import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
 import com.yourcompany.agritrade.common.util.SecurityUtils;
 import com.yourcompany.agritrade.interaction.domain.FavoriteProduct;
@@ -11,9 +13,15 @@ import com.yourcompany.agritrade.interaction.repository.FavoriteProductRepositor
 import com.yourcompany.agritrade.interaction.service.FavoriteService;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
@@ -77,11 +85,23 @@ public class FavoriteServiceImpl implements FavoriteService {
   public Page<ProductSummaryResponse> getMyFavorites(
       Authentication authentication, Pageable pageable) {
     User user = SecurityUtils.getCurrentAuthenticatedUser();
-    // Dùng phương thức repo để lấy Page<Product>
-    Page<Product> favoriteProductsPage =
-        favoriteProductRepository.findFavoriteProductsByUserId(user.getId(), pageable);
-    // Map sang Page<ProductSummaryResponse>
-    return favoriteProductsPage.map(productMapper::toProductSummaryResponse);
+    // Phân trang trên bảng favorite_products (giữ sort theo addedAt), rồi đọc projection một lần
+    Page<Long> productIdPage =
+        favoriteProductRepository.findFavoriteProductIdsByUserId(user.getId(), pageable);
+    if (productIdPage.isEmpty()) {
+      return new PageImpl<>(List.of(), pageable, productIdPage.getTotalElements());
+    }
+    Map<Long, ProductSummaryView> viewsById =
+        productRepository
+            .findSummaries(
+                ProductSpecifications.hasIdIn(productIdPage.getContent()), Pageable.unpaged())
+            .stream()
+            .collect(Collectors.toMap(ProductSummaryView::id, Function.identity()));
+    // Giữ thứ tự của trang ID; sản phẩm đã bị xóa mềm không còn trong kết quả projection
+    List<ProductSummaryView> views =
+        productIdPage.getContent().stream().map(viewsById::get).filter(Objects::nonNull).toList();
+    return new PageImpl<>(
+        productMapper.toProductSummaryResponses(views), pageable, productIdPage.getTotalElements());
   }
 
   @Override
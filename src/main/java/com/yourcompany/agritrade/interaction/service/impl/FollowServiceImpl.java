@@ -1,21 +1,24 @@
 package com.yourcompany.agritrade.interaction.service.impl;
 
+import com.yourcompany.agritrade.common.dto.response.CursorPageResponse;
 import com.yourcompany.agritrade.common.exception.BadRequestException;
 import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
+import com.yourcompany.agritrade.common.util.KeysetCursor;
 import com.yourcompany.agritrade.common.util.SecurityUtils;
 import com.yourcompany.agritrade.interaction.domain.UserFollow;
 import com.yourcompany.agritrade.interaction.dto.response.FollowUserResponse;
-import com.yourcompany.agritrade.interaction.mapper.FollowUserMapper;
 import com.yourcompany.agritrade.interaction.repository.UserFollowRepository;
 import com.yourcompany.agritrade.interaction.service.FollowService;
 import com.yourcompany.agritrade.notification.service.NotificationService;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import com.yourcompany.agritrade.usermanagement.service.UserCacheService;
 import java.util.List;
+import java.util.function.BiFunction;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
@@ -28,8 +31,10 @@ public class FollowServiceImpl implements FollowService {
 
   private final UserFollowRepository userFollowRepository;
   private final UserRepository userRepository;
-  private final FollowUserMapper followUserMapper;
   private final NotificationService notificationService;
+  private final UserCacheService userCacheService;
+
+  private static final int MAX_CURSOR_PAGE_SIZE = 100;
 
   @Override
   @Transactional
@@ -56,7 +61,7 @@ public class FollowServiceImpl implements FollowService {
     userFollow.setFollowing(following);
     userFollowRepository.save(userFollow);
 
-    updateFollowCounts(follower.getId(), followingId, true); // Gọi hàm cập nhật count
+    updateFollowCounts(follower.getId(), followingId, 1); // Gọi hàm cập nhật count
 
     log.info("User {} started following user {}", follower.getId(), followingId);
     // Gửi thông báo cho người được follow
@@ -68,16 +73,17 @@ public class FollowServiceImpl implements FollowService {
   public void unfollowUser(Authentication authentication, Long followingId) {
     User follower = SecurityUtils.getCurrentAuthenticatedUser();
 
-    if (!userFollowRepository.existsByFollowerIdAndFollowingId(follower.getId(), followingId)) {
+    // Chỉ giảm count khi thực sự xóa được bản ghi (an toàn khi hai request unfollow chạy song song)
+    int deleted =
+        userFollowRepository.deleteByFollowerIdAndFollowingId(follower.getId(), followingId);
+    if (deleted == 0) {
       log.warn("User {} is not following user {}", follower.getId(), followingId);
       // Có thể throw lỗi hoặc không làm gì cả
       // throw new BadRequestException("You are not following this user.");
       return;
     }
 
-    userFollowRepository.deleteByFollowerIdAndFollowingId(follower.getId(), followingId);
-
-    updateFollowCounts(follower.getId(), followingId, false); // Gọi hàm cập nhật count
+    updateFollowCounts(follower.getId(), followingId, -1); // Gọi hàm cập nhật count
 
     log.info("User {} unfollowed user {}", follower.getId(), followingId);
   }
@@ -85,27 +91,15 @@ public class FollowServiceImpl implements FollowService {
   @Override
   @Transactional(readOnly = true)
   public Page<FollowUserResponse> getFollowing(Authentication authentication, Pageable pageable) {
-    User follower = SecurityUtils.getCurrentAuthenticatedUser();
-    // Cần tạo phương thức trả về Page<User> trong repository hoặc xử lý phân trang ở đây
-    // Ví dụ tạm: Lấy List rồi tạo Page thủ công (không hiệu quả với dữ liệu lớn)
-    List<User> followingUsers = userFollowRepository.findFollowingByFollowerId(follower.getId());
-    List<FollowUserResponse> responseList =
-        followUserMapper.toFollowUserResponseList(followingUsers);
-    // Tạo Page thủ công (cần tính toán total elements nếu repo không trả về Page)
-    long totalElements = userFollowRepository.countByFollowerId(follower.getId());
-    return new PageImpl<>(responseList, pageable, totalElements);
+    Long followerId = SecurityUtils.getCurrentUserId();
+    return userFollowRepository.findFollowingResponses(followerId, withoutSort(pageable));
   }
 
   @Override
   @Transactional(readOnly = true)
   public Page<FollowUserResponse> getFollowers(Authentication authentication, Pageable pageable) {
-    User following = SecurityUtils.getCurrentAuthenticatedUser();
-    // Tương tự getFollowing, cần xử lý phân trang
-    List<User> followerUsers = userFollowRepository.findFollowersByFollowingId(following.getId());
-    List<FollowUserResponse> responseList =
-        followUserMapper.toFollowUserResponseList(followerUsers);
-    long totalElements = userFollowRepository.countByFollowingId(following.getId());
-    return new PageImpl<>(responseList, pageable, totalElements);
+    Long followingId = SecurityUtils.getCurrentUserId();
+    return userFollowRepository.findFollowerResponses(followingId, withoutSort(pageable));
   }
 
   @Override
@@ -115,12 +109,40 @@ public class FollowServiceImpl implements FollowService {
     if (!userRepository.existsById(userId)) {
       throw new ResourceNotFoundException("User", "id", userId);
     }
-    // Tương tự getFollowers, cần xử lý phân trang
-    List<User> followerUsers = userFollowRepository.findFollowersByFollowingId(userId);
-    List<FollowUserResponse> responseList =
-        followUserMapper.toFollowUserResponseList(followerUsers);
-    long totalElements = userFollowRepository.countByFollowingId(userId);
-    return new PageImpl<>(responseList, pageable, totalElements);
+    return userFollowRepository.findFollowerResponses(userId, withoutSort(pageable));
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public CursorPageResponse<FollowUserResponse> getFollowingByCursor(
+      Authentication authentication, String cursor, int size) {
+    Long followerId = SecurityUtils.getCurrentUserId();
+    return findByCursor(
+        cursor,
+        size,
+        (position, limit) ->
+            userFollowRepository.findFollowingResponsesBefore(
+                followerId,
+                position == null ? null : position.createdAt(),
+                position == null ? null : position.id(),
+                limit));
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public CursorPageResponse<FollowUserResponse> getFollowersByCursor(
+      Authentication authentication, String cursor, int size) {
+    return findFollowersByCursor(SecurityUtils.getCurrentUserId(), cursor, size);
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public CursorPageResponse<FollowUserResponse> getFollowersPublicByCursor(
+      Long userId, String cursor, int size) {
+    if (!userRepository.existsById(userId)) {
+      throw new ResourceNotFoundException("User", "id", userId);
+    }
+    return findFollowersByCursor(userId, cursor, size);
   }
 
   @Override
@@ -130,27 +152,53 @@ public class FollowServiceImpl implements FollowService {
     return userFollowRepository.existsByFollowerIdAndFollowingId(follower.getId(), followingId);
   }
 
-  private void updateFollowCounts(Long followerId, Long followingId, boolean isFollowing) {
-    User follower = userRepository.findById(followerId).orElse(null);
-    User following = userRepository.findById(followingId).orElse(null);
-    if (follower != null && following != null) {
-
-      // Đếm lại và ép kiểu sang int
-      int currentFollowingCount = (int) userFollowRepository.countByFollowerId(followerId);
-      int currentFollowerCount = (int) userFollowRepository.countByFollowingId(followingId);
-
-      follower.setFollowingCount(
-          currentFollowingCount); // Truyền int vào setter nhận Integer (auto-boxing)
-      following.setFollowerCount(currentFollowerCount); // Truyền int vào setter nhận Integer
-
-      userRepository.save(follower);
-      userRepository.save(following);
-      log.debug(
-          "Updated follow counts for follower {} ({}) and following {} ({})",
-          followerId,
-          currentFollowingCount,
-          followingId,
-          currentFollowerCount);
+  // Cập nhật bộ đếm bằng UPDATE cộng/trừ trực tiếp, không đếm lại toàn bộ bảng user_follows
+  private void updateFollowCounts(Long followerId, Long followingId, int delta) {
+    userRepository.adjustFollowingCount(followerId, delta);
+    userRepository.adjustFollowerCount(followingId, delta);
+    userCacheService.evictAfterCommit(followerId);
+    userCacheService.evictAfterCommit(followingId);
+    log.debug(
+        "Adjusted follow counts by {} for follower {} and following {}",
+        delta,
+        followerId,
+        followingId);
+  }
+
+  private CursorPageResponse<FollowUserResponse> findFollowersByCursor(
+      Long followingId, String cursor, int size) {
+    return findByCursor(
+        cursor,
+        size,
+        (position, limit) ->
+            userFollowRepository.findFollowerResponsesBefore(
+                followingId,
+                position == null ? null : position.createdAt(),
+                position == null ? null : position.id(),
+                limit));
+  }
+
+  // Lấy dư một bản ghi để biết còn trang sau hay không; con trỏ là (followedAt, userId) cuối trang
+  private CursorPageResponse<FollowUserResponse> findByCursor(
+      String cursor, int size, BiFunction<KeysetCursor, Pageable, List<FollowUserResponse>> query) {
+    int pageSize = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+    List<FollowUserResponse> rows =
+        query.apply(KeysetCursor.decode(cursor), PageRequest.of(0, pageSize + 1));
+
+    boolean hasNext = rows.size() > pageSize;
+    List<FollowUserResponse> pageContent = hasNext ? rows.subList(0, pageSize) : rows;
+    String nextCursor = null;
+    if (hasNext) {
+      FollowUserResponse last = pageContent.get(pageContent.size() - 1);
+      nextCursor = new KeysetCursor(last.getFollowedAt(), last.getUserId()).encode();
     }
+    return new CursorPageResponse<>(pageContent, pageSize, hasNext, nextCursor);
+  }
+
+  // Thứ tự đã cố định trong truy vấn (mới follow trước), bỏ sort do client truyền vào
+  private Pageable withoutSort(Pageable pageable) {
+    return pageable.isPaged()
+        ? PageRequest.of(pageable.getPageNumber(), pageable.getPageSize())
+        : pageable;
   }
 }
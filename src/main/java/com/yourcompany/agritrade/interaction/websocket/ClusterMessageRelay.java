@@ -0,0 +1,168 @@
+package com.yourcompany.agritrade.interaction.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+/**
+ * Phát tán message STOMP giữa các node qua Redis pub/sub khi chạy nhiều bản sao.
+ *
+ * <p>Được gắn làm interceptor của {@code brokerChannel}: mọi message ứng dụng gửi tới {@code
+ * /topic/**} hoặc {@code /user/**} (SimpMessagingTemplate, @SendTo...) vẫn đi tới simple broker cục
+ * bộ như cũ, đồng thời được publish lên kênh {@code ws:fanout}. Các node khác nhận và đẩy lại vào
+ * {@code brokerChannel} của mình, nên {@code /user/{email}/queue/...} được phân giải theo session
+ * trên node đang giữ kết nối của người nhận. Message đã qua relay mang header {@link
+ * #ORIGIN_HEADER} để không bị phát lại lần nữa.
+ */
+@Component
+@Slf4j
+public class ClusterMessageRelay implements ChannelInterceptor {
+
+  static final String FANOUT_CHANNEL = "ws:fanout";
+
+  /** Đánh dấu message chỉ gửi cho subscriber trên node hiện tại (đã relay hoặc cố ý cục bộ). */
+  public static final String ORIGIN_HEADER = "x-cluster-origin";
+
+  private static final List<String> RELAYED_PREFIXES = List.of("/topic/", "/user/");
+
+  /** Số liệu relay của node. */
+  public record Stats(long published, long received, long skipped) {}
+
+  record Envelope(String origin, String destination, String contentType, byte[] payload) {}
+
+  private final StringRedisTemplate redisTemplate;
+  private final RedisMessageListenerContainer listenerContainer;
+  private final ClusterPresenceRegistry presenceRegistry;
+  private final ObjectMapper objectMapper;
+  private final MessageChannel brokerChannel;
+
+  private final LongAdder published = new LongAdder();
+  private final LongAdder received = new LongAdder();
+  private final LongAdder skipped = new LongAdder();
+
+  public ClusterMessageRelay(
+      StringRedisTemplate redisTemplate,
+      RedisMessageListenerContainer listenerContainer,
+      ClusterPresenceRegistry presenceRegistry,
+      ObjectMapper objectMapper,
+      @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel) {
+    this.redisTemplate = redisTemplate;
+    this.listenerContainer = listenerContainer;
+    this.presenceRegistry = presenceRegistry;
+    this.objectMapper = objectMapper;
+    this.brokerChannel = brokerChannel;
+  }
+
+  @PostConstruct
+  void subscribe() {
+    if (!presenceRegistry.isEnabled()) {
+      return;
+    }
+    listenerContainer.addMessageListener(
+        (message, pattern) -> handleFanOutMessage(message.getBody()),
+        new ChannelTopic(FANOUT_CHANNEL));
+  }
+
+  @Override
+  public Message<?> preSend(Message<?> message, MessageChannel channel) {
+    if (presenceRegistry.isEnabled() && isRelayable(message)) {
+      publish(message);
+    }
+    return message;
+  }
+
+  public Stats getStats() {
+    return new Stats(published.sum(), received.sum(), skipped.sum());
+  }
+
+  void handleFanOutMessage(byte[] body) {
+    Envelope envelope;
+    try {
+      envelope = objectMapper.readValue(body, Envelope.class);
+    } catch (Exception e) {
+      log.warn("Ignoring malformed WebSocket fan-out message: {}", e.getMessage());
+      return;
+    }
+    if (presenceRegistry.getNodeId().equals(envelope.origin())) {
+      return; // Node gửi đã tự giao cho subscriber cục bộ
+    }
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setDestination(envelope.destination());
+    if (envelope.contentType() != null) {
+      accessor.setContentType(MimeType.valueOf(envelope.contentType()));
+    }
+    accessor.setHeader(ORIGIN_HEADER, envelope.origin());
+    brokerChannel.send(
+        MessageBuilder.createMessage(envelope.payload(), accessor.getMessageHeaders()));
+    received.increment();
+  }
+
+  private boolean isRelayable(Message<?> message) {
+    MessageHeaders headers = message.getHeaders();
+    if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE) {
+      return false;
+    }
+    String destination = SimpMessageHeaderAccessor.getDestination(headers);
+    if (destination == null || RELAYED_PREFIXES.stream().noneMatch(destination::startsWith)) {
+      return false;
+    }
+    if (headers.containsKey(ORIGIN_HEADER)
+        || SimpMessageHeaderAccessor.getFirstNativeHeader(ORIGIN_HEADER, headers) != null) {
+      return false;
+    }
+    if (!presenceRegistry.hasRemoteNodes()) {
+      skipped.increment(); // Chỉ có một node -> không cần đi qua Redis
+      return false;
+    }
+    return true;
+  }
+
+  private void publish(Message<?> message) {
+    MessageHeaders headers = message.getHeaders();
+    Object payload = message.getPayload();
+    byte[] body;
+    if (payload instanceof byte[] bytes) {
+      body = bytes;
+    } else if (payload instanceof String text) {
+      body = text.getBytes(StandardCharsets.UTF_8);
+    } else {
+      log.warn(
+          "Cannot relay WebSocket payload of type {} to other nodes", payload.getClass().getName());
+      return;
+    }
+    Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+    Envelope envelope =
+        new Envelope(
+            presenceRegistry.getNodeId(),
+            SimpMessageHeaderAccessor.getDestination(headers),
+            contentType != null ? contentType.toString() : null,
+            body);
+    try {
+      redisTemplate.convertAndSend(FANOUT_CHANNEL, objectMapper.writeValueAsString(envelope));
+      published.increment();
+    } catch (Exception e) {
+      // Subscriber cục bộ vẫn nhận được; chỉ người dùng ở node khác bị lỡ message này
+      log.error(
+          "Could not relay WebSocket message to {} via Redis: {}",
+          envelope.destination(),
+          e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,274 @@
+package com.yourcompany.agritrade.interaction.websocket;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Trạng thái online của người dùng trên toàn cụm khi chạy nhiều node WebSocket.
+ *
+ * <p>Mỗi node ghi tập userId đang có session trên node đó vào Redis ({@code
+ * ws:presence:node:{nodeId}}, có TTL) và đăng ký nhịp heartbeat vào {@code ws:presence:nodes}. Thay
+ * đổi online/offline được phát qua kênh pub/sub để các node khác cập nhật bản sao cục bộ ngay; nhịp
+ * heartbeat ghi lại toàn bộ tập của node và đọc lại tập của các node khác để bù message bị lỡ. Node
+ * chết (không còn heartbeat quá TTL) bị loại khỏi cụm, người dùng chỉ online trên node đó được coi
+ * là offline.
+ *
+ * <p>Khi {@code app.websocket.cluster.enabled=false} (mặc định), lớp này không làm gì và trạng thái
+ * online chỉ dựa trên session cục bộ như trước.
+ */
+@Component
+@Slf4j
+public class ClusterPresenceRegistry {
+
+  static final String NODES_KEY = "ws:presence:nodes";
+  static final String NODE_USERS_PREFIX = "ws:presence:node:";
+  static final String PRESENCE_CHANNEL = "ws:presence:events";
+
+  /** Người dùng không còn online ở đâu trong cụm do node chứa session của họ đã ngừng hoạt động. */
+  public record RemoteUsersOfflineEvent(Set<Long> userIds) {}
+
+  private final StringRedisTemplate redisTemplate;
+  private final RedisMessageListenerContainer listenerContainer;
+  private final ApplicationEventPublisher eventPublisher;
+  private final boolean enabled;
+  private final String nodeId;
+  private final long presenceTtlMillis;
+
+  // Người dùng có ít nhất một session trên node này
+  private final Set<Long> localUsers = ConcurrentHashMap.newKeySet();
+  // Bản sao trạng thái của các node khác còn sống (nodeId -> userId đang online trên node đó)
+  private final Map<String, Set<Long>> remotePresence = new ConcurrentHashMap<>();
+
+  public ClusterPresenceRegistry(
+      StringRedisTemplate redisTemplate,
+      RedisMessageListenerContainer listenerContainer,
+      ApplicationEventPublisher eventPublisher,
+      @Value("${app.websocket.cluster.enabled:false}") boolean enabled,
+      @Value("${app.websocket.cluster.node-id:}") String nodeId,
+      @Value("${app.websocket.cluster.presence-ttl-seconds:30}") long presenceTtlSeconds) {
+    this.redisTemplate = redisTemplate;
+    this.listenerContainer = listenerContainer;
+    this.eventPublisher = eventPublisher;
+    this.enabled = enabled;
+    this.nodeId = nodeId == null || nodeId.isBlank() ? generateNodeId() : nodeId;
+    this.presenceTtlMillis = TimeUnit.SECONDS.toMillis(presenceTtlSeconds);
+  }
+
+  @PostConstruct
+  void subscribe() {
+    if (!enabled) {
+      return;
+    }
+    listenerContainer.addMessageListener(
+        (message, pattern) ->
+            handlePresenceMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+        new ChannelTopic(PRESENCE_CHANNEL));
+    log.info("WebSocket cluster mode enabled, node id: {}", nodeId);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /** Ghi nhận người dùng vừa có session đầu tiên trên node này. */
+  public void markOnline(Long userId) {
+    if (!enabled || !localUsers.add(userId)) {
+      return;
+    }
+    try {
+      String key = NODE_USERS_PREFIX + nodeId;
+      redisTemplate.opsForSet().add(key, userId.toString());
+      redisTemplate.expire(key, presenceTtlMillis, TimeUnit.MILLISECONDS);
+      redisTemplate.convertAndSend(PRESENCE_CHANNEL, "1:" + nodeId + ":" + userId);
+    } catch (Exception e) {
+      // Heartbeat kế tiếp sẽ ghi lại toàn bộ tập người dùng của node
+      log.warn("Could not publish ONLINE presence of user {}: {}", userId, e.getMessage());
+    }
+  }
+
+  /** Ghi nhận người dùng vừa đóng session cuối cùng trên node này. */
+  public void markOffline(Long userId) {
+    if (!enabled || !localUsers.remove(userId)) {
+      return;
+    }
+    try {
+      redisTemplate.opsForSet().remove(NODE_USERS_PREFIX + nodeId, userId.toString());
+      redisTemplate.convertAndSend(PRESENCE_CHANNEL, "0:" + nodeId + ":" + userId);
+    } catch (Exception e) {
+      log.warn("Could not publish OFFLINE presence of user {}: {}", userId, e.getMessage());
+    }
+  }
+
+  /** Người dùng có đang online trên một node khác trong cụm không. */
+  public boolean isOnlineElsewhere(Long userId) {
+    if (!enabled || userId == null) {
+      return false;
+    }
+    for (Set<Long> users : remotePresence.values()) {
+      if (users.contains(userId)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Tập userId đang online trên các node khác. */
+  public Set<Long> getRemoteOnlineUserIds() {
+    Set<Long> result = new HashSet<>();
+    remotePresence.values().forEach(result::addAll);
+    return result;
+  }
+
+  /** Cụm còn node nào khác đang hoạt động không (không có thì không cần phát tin qua Redis). */
+  public boolean hasRemoteNodes() {
+    return enabled && !remotePresence.isEmpty();
+  }
+
+  /**
+   * Heartbeat: gia hạn sự có mặt của node này, ghi lại tập người dùng cục bộ rồi nạp lại trạng thái
+   * của các node khác. Chu kỳ phải ngắn hơn nhiều so với TTL.
+   */
+  @Scheduled(
+      fixedDelayString = "${app.websocket.cluster.heartbeat-interval-ms:10000}",
+      initialDelay = 0)
+  public void heartbeat() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      long now = System.currentTimeMillis();
+      redisTemplate.opsForZSet().add(NODES_KEY, nodeId, now);
+      writeLocalUsers();
+      redisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, 0, now - presenceTtlMillis);
+
+      Set<String> liveNodes =
+          redisTemplate
+              .opsForZSet()
+              .rangeByScore(NODES_KEY, now - presenceTtlMillis, Long.MAX_VALUE);
+      Map<String, Set<Long>> loaded = new HashMap<>();
+      if (liveNodes != null) {
+        for (String liveNode : liveNodes) {
+          if (!nodeId.equals(liveNode)) {
+            loaded.put(liveNode, readNodeUsers(liveNode));
+          }
+        }
+      }
+      replaceRemotePresence(loaded);
+    } catch (Exception e) {
+      log.warn("WebSocket presence heartbeat failed on node {}: {}", nodeId, e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  void leaveCluster() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      redisTemplate.opsForZSet().remove(NODES_KEY, nodeId);
+      redisTemplate.delete(NODE_USERS_PREFIX + nodeId);
+    } catch (Exception e) {
+      log.warn("Could not remove node {} from WebSocket cluster: {}", nodeId, e.getMessage());
+    }
+  }
+
+  void handlePresenceMessage(String payload) {
+    // Định dạng: "{1|0}:{nodeId}:{userId}"
+    int first = payload.indexOf(':');
+    int last = payload.lastIndexOf(':');
+    if (first != 1 || last <= first + 1 || last == payload.length() - 1) {
+      log.warn("Ignoring malformed presence message: {}", payload);
+      return;
+    }
+    String sourceNode = payload.substring(first + 1, last);
+    if (nodeId.equals(sourceNode)) {
+      return;
+    }
+    try {
+      Long userId = Long.valueOf(payload.substring(last + 1));
+      Set<Long> users =
+          remotePresence.computeIfAbsent(sourceNode, k -> ConcurrentHashMap.newKeySet());
+      if (payload.charAt(0) == '1') {
+        users.add(userId);
+      } else {
+        users.remove(userId);
+      }
+    } catch (NumberFormatException e) {
+      log.warn("Ignoring malformed presence message: {}", payload);
+    }
+  }
+
+  // Ghi tập người dùng vào key tạm rồi RENAME để node khác không đọc phải tập rỗng giữa chừng
+  private void writeLocalUsers() {
+    String key = NODE_USERS_PREFIX + nodeId;
+    String[] members = localUsers.stream().map(String::valueOf).toArray(String[]::new);
+    if (members.length == 0) {
+      redisTemplate.delete(key);
+      return;
+    }
+    String tmpKey = key + ":tmp";
+    redisTemplate.opsForSet().add(tmpKey, members);
+    redisTemplate.rename(tmpKey, key);
+    redisTemplate.expire(key, presenceTtlMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private Set<Long> readNodeUsers(String node) {
+    Set<Long> users = ConcurrentHashMap.newKeySet();
+    Set<String> members = redisTemplate.opsForSet().members(NODE_USERS_PREFIX + node);
+    if (members != null) {
+      for (String member : members) {
+        try {
+          users.add(Long.valueOf(member));
+        } catch (NumberFormatException e) {
+          log.warn("Ignoring invalid user id '{}' in presence set of node {}", member, node);
+        }
+      }
+    }
+    return users;
+  }
+
+  private void replaceRemotePresence(Map<String, Set<Long>> loaded) {
+    Set<Long> before = getRemoteOnlineUserIds();
+    remotePresence.keySet().retainAll(loaded.keySet());
+    remotePresence.putAll(loaded);
+
+    Set<Long> lost = new HashSet<>(before);
+    lost.removeAll(getRemoteOnlineUserIds());
+    lost.removeAll(localUsers);
+    if (!lost.isEmpty()) {
+      log.info("{} user(s) went offline with a departed WebSocket node", lost.size());
+      eventPublisher.publishEvent(new RemoteUsersOfflineEvent(lost));
+    }
+  }
+
+  private static String generateNodeId() {
+    String host;
+    try {
+      host = InetAddress.getLocalHost().getHostName();
+    } catch (Exception e) {
+      host = "node";
+    }
+    return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+  }
+}
@@ -1,19 +1,24 @@
 package com.yourcompany.agritrade.interaction.websocket;
 
+import com.yourcompany.agritrade.config.security.AuthenticatedUser;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
 import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
 import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
@@ -33,12 +38,39 @@ public class WebSocketEventListener {
 
   private final UserRepository userRepository;
 
+  // Trạng thái online trên các node khác (chỉ hoạt động khi bật chế độ cụm)
+  private final ClusterPresenceRegistry clusterPresenceRegistry;
+
   // Map lưu trạng thái online (UserId -> isOnline) - Đơn giản hóa
   private final Map<Long, Boolean> onlineUsersStatus = new ConcurrentHashMap<>();
 
   // Map theo dõi session của user (UserId -> Set<SessionId>)
   private final Map<Long, Set<String>> userSessions = new ConcurrentHashMap<>();
 
+  // Chỉ mục ngược SessionId -> UserId để xử lý disconnect trong O(1)
+  private final Map<String, Long> sessionOwners = new ConcurrentHashMap<>();
+
+  // Email của user đang có session trên node này (dùng cho log/broadcast, không cần tra DB)
+  private final Map<Long, String> usernames = new ConcurrentHashMap<>();
+
+  // Thông báo presence đang chờ gửi (UserId -> trạng thái cuối cùng trong cửa sổ gom)
+  private final Map<Long, PendingPresence> pendingPresence = new ConcurrentHashMap<>();
+
+  // Cửa sổ gom thông báo ONLINE/OFFLINE; 0 = gửi ngay
+  @Value("${app.websocket.presence.debounce-ms:0}")
+  private long presenceDebounceMillis;
+
+  private record PendingPresence(String username, boolean online, long dueAtMillis) {}
+
+  // Khóa phân dải theo user cho bước đồng bộ presence (registry cụm + broadcast), chạy ngoài
+  // compute của userSessions để Redis/broker chậm không giữ khóa bin của map
+  private static final int PRESENCE_LOCK_STRIPES = 64;
+  private final Object[] presenceLocks = newPresenceLocks();
+
+  // User đã được báo ONLINE (registry cụm + /topic/presence) từ node này; chỉ đổi dưới khóa của
+  // user
+  private final Set<Long> publishedOnline = ConcurrentHashMap.newKeySet();
+
   @EventListener
   public void handleWebSocketConnectListener(SessionConnectEvent event) {
     StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
@@ -47,19 +79,26 @@ public class WebSocketEventListener {
 
     if (userPrincipal != null && userPrincipal.getName() != null && sessionId != null) {
       String username = userPrincipal.getName(); // Email
-      Long userId = getUserIdFromUsername(username);
+      Long userId = resolveUserId(userPrincipal);
 
       if (userId != null) {
-        // Thêm session vào danh sách theo dõi
+        // Thêm session vào danh sách theo dõi (compute: nguyên tử theo từng user). Trong compute
+        // chỉ
+        // cập nhật trạng thái trong bộ nhớ; Redis và broadcast chạy sau trong syncPresence.
         Set<String> sessions =
-            userSessions.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet());
-        sessions.add(sessionId);
-
-        // Kiểm tra xem user đã online trước đó chưa (từ session khác)
-        boolean wasOffline = !onlineUsersStatus.getOrDefault(userId, false);
-
-        // Đánh dấu user là online
-        onlineUsersStatus.put(userId, true);
+            userSessions.compute(
+                userId,
+                (id, current) -> {
+                  Set<String> updated = current;
+                  if (updated == null) {
+                    updated = ConcurrentHashMap.newKeySet();
+                    onlineUsersStatus.put(id, true);
+                  }
+                  usernames.put(id, username);
+                  updated.add(sessionId);
+                  return updated;
+                });
+        sessionOwners.put(sessionId, userId);
 
         log.info(
             "WebSocket Connected: User -> {} (ID: {}), Session -> {}. Total sessions for user: {}. Total online users: {}",
@@ -69,11 +108,7 @@ public class WebSocketEventListener {
             sessions.size(),
             onlineUsersStatus.size());
 
-        // Chỉ gửi broadcast ONLINE nếu user vừa chuyển từ offline sang online
-        if (wasOffline) {
-          log.info("User ONLINE: User -> {} (ID: {})", username, userId);
-          broadcastPresenceStatus(userId, username, true);
-        }
+        syncPresence(userId, username);
       } else {
         log.error("Could not find user ID for connected user: {}", username);
       }
@@ -90,34 +125,36 @@ public class WebSocketEventListener {
     String sessionId = headerAccessor.getSessionId();
 
     if (sessionId != null) {
-      Long userIdToRemove = null;
-      boolean userBecameOffline = false;
-
-      // Tìm userId và xóa session khỏi map userSessions
-      for (Map.Entry<Long, Set<String>> entry : userSessions.entrySet()) {
-        if (entry.getValue().remove(sessionId)) { // Xóa session thành công
-          userIdToRemove = entry.getKey();
-          if (entry.getValue().isEmpty()) { // Nếu không còn session nào khác
-            userSessions.remove(userIdToRemove); // Xóa user khỏi map session
-            userBecameOffline = true; // Đánh dấu user đã offline
-          }
-          break; // Tìm thấy và xử lý xong
-        }
-      }
-
+      // Tra chủ sở hữu session qua chỉ mục ngược, không duyệt toàn bộ userSessions
+      Long userIdToRemove = sessionOwners.remove(sessionId);
       if (userIdToRemove != null) {
+        boolean[] userBecameOffline = {false};
+        String[] removedUsername = {null};
+        // Xóa trạng thái trong cùng computeIfPresent: connect mới của user này chờ tới khi xong
+        userSessions.computeIfPresent(
+            userIdToRemove,
+            (id, sessions) -> {
+              sessions.remove(sessionId);
+              if (sessions.isEmpty()) { // Nếu không còn session nào khác
+                userBecameOffline[0] = true;
+                removedUsername[0] = usernames.remove(id);
+                onlineUsersStatus.remove(id); // Xóa khỏi map trạng thái online
+                return null; // Xóa user khỏi map session
+              }
+              return sessions;
+            });
+
         String username =
-            getUsernameFromUserId(userIdToRemove); // Lấy lại username để log/broadcast
-        // Chỉ cập nhật trạng thái và broadcast nếu user thực sự offline
-        if (userBecameOffline) {
-          onlineUsersStatus.remove(userIdToRemove); // Xóa khỏi map trạng thái online
+            removedUsername[0] != null
+                ? removedUsername[0]
+                : usernames.getOrDefault(userIdToRemove, "unknown");
+        if (userBecameOffline[0]) {
           log.info(
-              "User OFFLINE: User -> {} (ID: {}), Session -> {}. No more sessions. Total online users: {}",
+              "WebSocket Session Disconnected: User -> {} (ID: {}), Session -> {}. No more sessions on this node.",
               username,
               userIdToRemove,
-              sessionId,
-              onlineUsersStatus.size());
-          broadcastPresenceStatus(userIdToRemove, username, false); // Gửi thông báo offline
+              sessionId);
+          syncPresence(userIdToRemove, username);
         } else {
           log.info(
               "WebSocket Session Disconnected: User -> {} (ID: {}), Session -> {}. Still has other sessions online.",
@@ -158,23 +195,134 @@ public class WebSocketEventListener {
     }
   }
 
+  /**
+   * Gửi các thông báo presence đã hết cửa sổ gom. Một lần rớt mạng rồi kết nối lại (OFFLINE rồi
+   * ONLINE trong cùng cửa sổ) triệt tiêu nhau nên không gửi gì lên /topic/presence.
+   */
+  @Scheduled(fixedDelayString = "${app.websocket.presence.flush-interval-ms:500}")
+  public void flushPresenceBroadcasts() {
+    long now = System.currentTimeMillis();
+    for (Map.Entry<Long, PendingPresence> entry : pendingPresence.entrySet()) {
+      PendingPresence pending = entry.getValue();
+      if (pending.dueAtMillis() > now || !pendingPresence.remove(entry.getKey(), pending)) {
+        continue;
+      }
+      // Trạng thái có thể đã đổi lại qua node khác trong lúc chờ
+      if (isUserOnline(entry.getKey()) == pending.online()) {
+        broadcastPresenceStatus(entry.getKey(), pending.username(), pending.online(), false);
+      }
+    }
+  }
+
+  /**
+   * Đưa trạng thái hiện tại của user trên node này ra registry cụm và /topic/presence, nếu khác lần
+   * đã đưa trước đó. Chạy sau compute của userSessions, dưới khóa phân dải của user: connect và
+   * disconnect chạy đua của cùng user đọc trạng thái mới nhất lần lượt, nên lần đồng bộ cuối cùng
+   * luôn gửi đúng trạng thái cuối cùng.
+   */
+  private void syncPresence(Long userId, String username) {
+    synchronized (presenceLock(userId)) {
+      boolean online = userSessions.containsKey(userId);
+      if (online == publishedOnline.contains(userId)) {
+        return; // Lần đồng bộ khác đã đưa trạng thái này ra
+      }
+      if (online) {
+        publishedOnline.add(userId);
+        clusterPresenceRegistry.markOnline(userId);
+      } else {
+        publishedOnline.remove(userId);
+        clusterPresenceRegistry.markOffline(userId);
+      }
+      // Vẫn còn session trên node khác: trạng thái chung của user không đổi
+      if (clusterPresenceRegistry.isOnlineElsewhere(userId)) {
+        log.info(
+            "User {} (ID: {}) is {} on this node but still online on another node",
+            username,
+            userId,
+            online ? "ONLINE" : "OFFLINE");
+        return;
+      }
+      log.info(
+          "User {}: User -> {} (ID: {}). Total online users: {}",
+          online ? "ONLINE" : "OFFLINE",
+          username,
+          userId,
+          onlineUsersStatus.size());
+      requestPresenceBroadcast(userId, username, online);
+    }
+  }
+
+  private Object presenceLock(Long userId) {
+    return presenceLocks[Math.floorMod(userId.hashCode(), PRESENCE_LOCK_STRIPES)];
+  }
+
+  private static Object[] newPresenceLocks() {
+    Object[] locks = new Object[PRESENCE_LOCK_STRIPES];
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
+    return locks;
+  }
+
+  // Gom thông báo trong cửa sổ debounce: hai lần chuyển trạng thái ngược chiều triệt tiêu nhau
+  private void requestPresenceBroadcast(Long userId, String username, boolean online) {
+    if (presenceDebounceMillis <= 0) {
+      broadcastPresenceStatus(userId, username, online, false);
+      return;
+    }
+    long dueAt = System.currentTimeMillis() + presenceDebounceMillis;
+    pendingPresence.compute(
+        userId,
+        (id, pending) -> {
+          if (pending != null && pending.online() != online) {
+            log.debug("Presence flap of user {} coalesced, no broadcast", userId);
+            return null;
+          }
+          return new PendingPresence(username, online, dueAt);
+        });
+  }
+
+  // Node khác ngừng hoạt động: báo OFFLINE cho subscriber trên node này (mỗi node tự báo cục bộ)
+  @EventListener
+  public void handleRemoteUsersOffline(ClusterPresenceRegistry.RemoteUsersOfflineEvent event) {
+    for (Long userId : event.userIds()) {
+      if (!onlineUsersStatus.getOrDefault(userId, false)) {
+        broadcastPresenceStatus(userId, getUsernameFromUserId(userId), false, true);
+      }
+    }
+  }
+
   // Hàm helper để gửi thông báo trạng thái
-  private void broadcastPresenceStatus(Long userId, String username, boolean isOnline) {
+  // localOnly = true: không relay sang node khác vì node nào cũng tự gửi thông báo này
+  private void broadcastPresenceStatus(
+      Long userId, String username, boolean isOnline, boolean localOnly) {
     String destination = "/topic/presence";
     Map<String, Object> payload = new HashMap<>(); // Dùng HashMap để dễ thêm bớt
     payload.put("userId", userId);
     payload.put("online", isOnline);
     payload.put("username", username); // Gửi thêm username nếu Frontend cần
     payload.put("timestamp", LocalDateTime.now().toString()); // Gửi timestamp dạng ISO string
-    messagingTemplate.convertAndSend(destination, payload);
+    if (localOnly) {
+      messagingTemplate.convertAndSend(
+          destination, payload, Map.of(ClusterMessageRelay.ORIGIN_HEADER, "local"));
+    } else {
+      messagingTemplate.convertAndSend(destination, payload);
+    }
     log.info(
         "Broadcasted presence status for user {}: {}", userId, isOnline ? "ONLINE" : "OFFLINE");
   }
 
-  private Long getUserIdFromUsername(String username) {
-    if (username == null) return null;
-    // Query DB để lấy ID từ email (username)
-    return userRepository.findByEmail(username).map(User::getId).orElse(null);
+  // Lấy userId từ principal do AuthChannelInterceptor gắn khi CONNECT, không cần query DB
+  private Long resolveUserId(Principal principal) {
+    Object candidate =
+        principal instanceof Authentication authentication
+            ? authentication.getPrincipal()
+            : principal;
+    if (candidate instanceof AuthenticatedUser authenticatedUser) {
+      return authenticatedUser.id();
+    }
+    // Principal không mang id (dự phòng): query DB để lấy ID từ email (username)
+    return userRepository.findByEmail(principal.getName()).map(User::getId).orElse(null);
   }
 
   // Hàm helper lấy username từ userId (để log khi disconnect)
@@ -185,14 +333,18 @@ public class WebSocketEventListener {
 
   // Hàm để service khác kiểm tra trạng thái online
   public boolean isUserOnline(Long userId) {
-    return onlineUsersStatus.getOrDefault(userId, false);
+    return onlineUsersStatus.getOrDefault(userId, false)
+        || clusterPresenceRegistry.isOnlineElsewhere(userId);
   }
 
   // Hàm lấy danh sách ID user đang online
   public Set<Long> getOnlineUserIds() {
-    return onlineUsersStatus.entrySet().stream()
-        .filter(Map.Entry::getValue)
-        .map(Map.Entry::getKey)
-        .collect(Collectors.toSet());
+    Set<Long> onlineIds =
+        onlineUsersStatus.entrySet().stream()
+            .filter(Map.Entry::getValue)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toCollection(HashSet::new));
+    onlineIds.addAll(clusterPresenceRegistry.getRemoteOnlineUserIds());
+    return onlineIds;
   }
 }
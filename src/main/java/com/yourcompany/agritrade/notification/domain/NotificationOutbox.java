@@ -0,0 +1,81 @@
+package com.yourcompany.agritrade.notification.domain;
+
+import com.yourcompany.agritrade.common.model.NotificationType;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+/**
+ * Một thông báo (trong ứng dụng hoặc email) chờ gửi. Được ghi cùng transaction với thay đổi nghiệp
+ * vụ nên chỉ tồn tại khi transaction đó commit; NotificationOutboxDispatcher đọc và gửi sau.
+ */
+@Entity
+@Table(
+    name = "notification_outbox",
+    indexes = {
+      // Dispatcher quét theo (kênh, trạng thái, tới hạn)
+      @Index(
+          name = "idx_outbox_channel_status_next",
+          columnList = "channel, status, nextAttemptAt"),
+      @Index(name = "idx_outbox_claim_token", columnList = "claimToken")
+    })
+@Getter
+@Setter
+@NoArgsConstructor
+public class NotificationOutbox {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, length = 10)
+  private OutboxChannel channel;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, length = 12)
+  private OutboxStatus status = OutboxStatus.PENDING;
+
+  private Long recipientId; // Chỉ dùng cho IN_APP
+
+  @Column(nullable = false)
+  private String recipientEmail;
+
+  @Enumerated(EnumType.STRING)
+  @Column(length = 30)
+  private NotificationType notificationType; // Chỉ dùng cho IN_APP
+
+  private String subject; // Chỉ dùng cho EMAIL
+
+  @Lob // Nội dung thông báo hoặc HTML email đã render
+  @Column(nullable = false, columnDefinition = "MEDIUMTEXT")
+  private String body;
+
+  @Column(length = 512)
+  private String link;
+
+  // Email chứa link mang token dùng một lần (xác thực, đặt lại mật khẩu): xóa ngay khi gửi xong,
+  // che nội dung khi hết lượt thử
+  @Column(name = "sensitive_content", nullable = false) // SENSITIVE là từ khóa của MySQL
+  private boolean sensitive = false;
+
+  @Column(nullable = false)
+  private int attempts = 0;
+
+  @Column(nullable = false)
+  private LocalDateTime nextAttemptAt; // PROCESSING: hết hạn giữ
+
+  @Column(length = 36)
+  private String claimToken;
+
+  @Column(length = 1000)
+  private String lastError;
+
+  @CreationTimestamp
+  @Column(nullable = false, updatable = false)
+  private LocalDateTime createdAt;
+
+  private LocalDateTime sentAt;
+}
@@ -0,0 +1,6 @@
+package com.yourcompany.agritrade.notification.domain;
+
+public enum OutboxChannel {
+  IN_APP, // Lưu Notification + đẩy WebSocket
+  EMAIL
+}
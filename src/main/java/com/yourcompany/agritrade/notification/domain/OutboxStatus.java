@@ -0,0 +1,8 @@
+package com.yourcompany.agritrade.notification.domain;
+
+public enum OutboxStatus {
+  PENDING, // Chờ gửi (hoặc chờ tới lượt thử lại)
+  PROCESSING, // Đã được một dispatcher nhận, hết hạn giữ thì có thể nhận lại
+  SENT,
+  FAILED // Hết số lần thử
+}
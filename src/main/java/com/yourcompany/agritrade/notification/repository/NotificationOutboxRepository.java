@@ -0,0 +1,95 @@
+package com.yourcompany.agritrade.notification.repository;
+
+import com.yourcompany.agritrade.notification.domain.NotificationOutbox;
+import com.yourcompany.agritrade.notification.domain.OutboxStatus;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+
+  /**
+   * Khóa các bản ghi tới hạn của một kênh (PENDING, hoặc PROCESSING đã hết hạn giữ). SKIP LOCKED để
+   * nhiều dispatcher chạy song song không chờ nhau và không nhận trùng.
+   */
+  @Query(
+      value =
+          "SELECT id FROM notification_outbox WHERE channel = :channel"
+              + " AND status IN ('PENDING', 'PROCESSING') AND next_attempt_at <= :now"
+              + " ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED",
+      nativeQuery = true)
+  List<Long> lockDueIds(
+      @Param("channel") String channel, @Param("now") LocalDateTime now, @Param("limit") int limit);
+
+  @Modifying
+  @Query(
+      "UPDATE NotificationOutbox o SET o.status = :status, o.claimToken = :claimToken, "
+          + "o.nextAttemptAt = :leaseUntil WHERE o.id IN :ids")
+  int claim(
+      @Param("ids") Collection<Long> ids,
+      @Param("claimToken") String claimToken,
+      @Param("leaseUntil") LocalDateTime leaseUntil,
+      @Param("status") OutboxStatus status);
+
+  List<NotificationOutbox> findByClaimTokenOrderByIdAsc(String claimToken);
+
+  /**
+   * Đánh dấu đã gửi, chỉ khi lượt nhận (claimToken) vẫn còn hiệu lực.
+   *
+   * @return Số bản ghi cập nhật; nhỏ hơn số ID truyền vào nghĩa là đã bị dispatcher khác nhận lại.
+   */
+  @Modifying
+  @Query(
+      "UPDATE NotificationOutbox o SET o.status = :sent, o.sentAt = :sentAt, o.claimToken = null "
+          + "WHERE o.id IN :ids AND o.claimToken = :claimToken AND o.status = :processing")
+  int markSent(
+      @Param("ids") Collection<Long> ids,
+      @Param("claimToken") String claimToken,
+      @Param("sentAt") LocalDateTime sentAt,
+      @Param("sent") OutboxStatus sent,
+      @Param("processing") OutboxStatus processing);
+
+  /** Xóa email nhạy cảm đã gửi xong, chỉ khi lượt nhận vẫn còn hiệu lực (thay cho markSent). */
+  @Modifying
+  @Query(
+      "DELETE FROM NotificationOutbox o "
+          + "WHERE o.id IN :ids AND o.claimToken = :claimToken AND o.status = :processing")
+  int deleteSent(
+      @Param("ids") Collection<Long> ids,
+      @Param("claimToken") String claimToken,
+      @Param("processing") OutboxStatus processing);
+
+  /** Che nội dung email nhạy cảm đã hết lượt thử; bản ghi FAILED vẫn còn để theo dõi. */
+  @Modifying
+  @Query("UPDATE NotificationOutbox o SET o.body = :body WHERE o.id = :id")
+  int redactBody(@Param("id") Long id, @Param("body") String body);
+
+  /** Trả bản ghi về PENDING (chờ thử lại tại nextAttemptAt) hoặc FAILED khi hết lượt. */
+  @Modifying
+  @Query(
+      "UPDATE NotificationOutbox o SET o.status = :status, o.attempts = o.attempts + 1, "
+          + "o.nextAttemptAt = :nextAttemptAt, o.lastError = :lastError, o.claimToken = null "
+          + "WHERE o.id = :id AND o.claimToken = :claimToken")
+  int markAttemptFailed(
+      @Param("id") Long id,
+      @Param("claimToken") String claimToken,
+      @Param("status") OutboxStatus status,
+      @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+      @Param("lastError") String lastError);
+
+  @Modifying
+  @Query("DELETE FROM NotificationOutbox o WHERE o.status = :status AND o.sentAt < :cutoff")
+  int deleteByStatusAndSentAtBefore(
+      @Param("status") OutboxStatus status, @Param("cutoff") LocalDateTime cutoff);
+
+  @Modifying
+  @Query("DELETE FROM NotificationOutbox o WHERE o.status = :status AND o.createdAt < :cutoff")
+  int deleteByStatusAndCreatedAtBefore(
+      @Param("status") OutboxStatus status, @Param("cutoff") LocalDateTime cutoff);
+
+  long countByStatus(OutboxStatus status);
+}
@@ -0,0 +1,437 @@
+package com.yourcompany.agritrade.notification.scheduler;
+
+import com.yourcompany.agritrade.notification.domain.NotificationOutbox;
+import com.yourcompany.agritrade.notification.domain.OutboxChannel;
+import com.yourcompany.agritrade.notification.domain.OutboxStatus;
+import com.yourcompany.agritrade.notification.repository.NotificationOutboxRepository;
+import com.yourcompany.agritrade.notification.service.EmailService;
+import com.yourcompany.agritrade.notification.service.InAppNotificationService;
+import com.yourcompany.agritrade.notification.service.NotificationOutboxService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Gửi các thông báo trong bảng {@code notification_outbox}.
+ *
+ * <p>Một luồng dispatcher nhận bản ghi tới hạn theo lô ({@code SELECT ... FOR UPDATE SKIP LOCKED}
+ * rồi gắn claimToken + hạn giữ), nên nhiều node chạy cùng lúc không nhận trùng. Kênh IN_APP: lưu cả
+ * lô Notification và đánh dấu SENT trong cùng một transaction (mỗi bản ghi outbox thành đúng một
+ * Notification), WebSocket đẩy sau commit. Kênh EMAIL: gửi trên pool riêng giới hạn {@code
+ * email-concurrency} luồng, mỗi luồng gửi một lô tối đa {@code email-batch-size} email trên cùng
+ * một kết nối SMTP; dispatcher chỉ nhận thêm email khi còn slot, phần còn lại chờ trong bảng. Gửi
+ * lỗi được thử lại với thời gian chờ tăng dần tới {@code max-attempts} lần. Email chứa token (xác
+ * thực, đặt lại mật khẩu) bị xóa ngay khi gửi xong và bị che nội dung khi hết lượt thử.
+ *
+ * <p>Dispatcher được đánh thức ngay khi có bản ghi mới commit, ngoài ra quét định kỳ {@code
+ * poll-interval-ms} cho lượt thử lại và bản ghi của node đã dừng (hết hạn giữ).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationOutboxDispatcher {
+
+  /** Số liệu của dispatcher trên node hiện tại. */
+  public record Stats(
+      long inAppDelivered, long emailDelivered, long retried, long failed, long leaseLost) {}
+
+  private record Claim(String token, List<NotificationOutbox> entries) {}
+
+  private static final int MAX_ERROR_LENGTH = 1000;
+  static final String REDACTED_BODY = "[redacted]";
+
+  private final NotificationOutboxRepository outboxRepository;
+  private final InAppNotificationService inAppNotificationService;
+  private final EmailService emailService;
+  private final PlatformTransactionManager transactionManager;
+
+  @Value("${app.notification.outbox.dispatcher-enabled:true}")
+  private boolean dispatcherEnabled;
+
+  @Value("${app.notification.outbox.in-app-batch-size:500}")
+  private int inAppBatchSize;
+
+  @Value("${app.notification.outbox.email-concurrency:4}")
+  private int emailConcurrency;
+
+  @Value("${app.notification.outbox.email-batch-size:20}")
+  private int emailBatchSize;
+
+  @Value("${app.notification.outbox.poll-interval-ms:1000}")
+  private long pollIntervalMillis;
+
+  @Value("${app.notification.outbox.lease-seconds:120}")
+  private long leaseSeconds;
+
+  @Value("${app.notification.outbox.max-attempts:8}")
+  private int maxAttempts;
+
+  @Value("${app.notification.outbox.retry-base-delay-ms:5000}")
+  private long retryBaseDelayMillis;
+
+  @Value("${app.notification.outbox.retry-max-delay-ms:900000}")
+  private long retryMaxDelayMillis;
+
+  @Value("${app.notification.outbox.retention-days:7}")
+  private int retentionDays;
+
+  @Value("${app.notification.outbox.failed-retention-days:30}")
+  private int failedRetentionDays;
+
+  private final LongAdder inAppDelivered = new LongAdder();
+  private final LongAdder emailDelivered = new LongAdder();
+  private final LongAdder retried = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder leaseLost = new LongAdder();
+
+  private final Semaphore wakeUpSignal = new Semaphore(0);
+  private volatile boolean running = false;
+  private volatile Thread dispatcherThread;
+  private ExecutorService emailExecutor;
+  private Semaphore emailSlots;
+
+  @PostConstruct
+  void start() {
+    emailSlots = new Semaphore(emailConcurrency);
+    if (!dispatcherEnabled) {
+      log.info("Notification outbox dispatcher disabled on this node");
+      return;
+    }
+    AtomicInteger emailThreadCounter = new AtomicInteger();
+    emailExecutor =
+        Executors.newFixedThreadPool(
+            emailConcurrency,
+            runnable ->
+                Thread.ofPlatform()
+                    .name("outbox-email-" + emailThreadCounter.incrementAndGet())
+                    .unstarted(runnable));
+    running = true;
+    dispatcherThread =
+        Thread.ofPlatform().name("notification-outbox-dispatcher").start(this::runLoop);
+  }
+
+  @PreDestroy
+  void stop() {
+    running = false;
+    wakeUp();
+    Thread thread = dispatcherThread;
+    if (thread == null) {
+      return;
+    }
+    try {
+      thread.join(TimeUnit.SECONDS.toMillis(10));
+      emailExecutor.shutdown();
+      // Email đang gửi dở mà không kịp đánh dấu sẽ được gửi lại sau khi hết hạn giữ
+      if (!emailExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+        emailExecutor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Có bản ghi outbox mới được commit. */
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onEnqueued(NotificationOutboxService.EnqueuedEvent event) {
+    wakeUp();
+  }
+
+  public Stats getStats() {
+    return new Stats(
+        inAppDelivered.sum(), emailDelivered.sum(), retried.sum(), failed.sum(), leaseLost.sum());
+  }
+
+  /** Xóa bản ghi đã gửi và bản ghi hết lượt thử (FAILED) quá thời gian lưu giữ. */
+  @Scheduled(cron = "${app.notification.outbox.purge-cron:0 30 3 * * *}")
+  public void purgeSentEntries() {
+    LocalDateTime now = LocalDateTime.now();
+    LocalDateTime sentCutoff = now.minusDays(retentionDays);
+    LocalDateTime failedCutoff = now.minusDays(failedRetentionDays);
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    Integer sentDeleted =
+        transactionTemplate.execute(
+            status ->
+                outboxRepository.deleteByStatusAndSentAtBefore(OutboxStatus.SENT, sentCutoff));
+    Integer failedDeleted =
+        transactionTemplate.execute(
+            status ->
+                outboxRepository.deleteByStatusAndCreatedAtBefore(
+                    OutboxStatus.FAILED, failedCutoff));
+    log.info(
+        "Purged {} sent notification outbox entries older than {} and {} failed entries created"
+            + " before {}",
+        sentDeleted,
+        sentCutoff,
+        failedDeleted,
+        failedCutoff);
+  }
+
+  /**
+   * Một lượt gửi: một lô IN_APP và số email vừa đủ lấp các slot gửi đang trống.
+   *
+   * @return Số bản ghi đã nhận xử lý trong lượt này.
+   */
+  public int dispatchOnce() {
+    return dispatchInApp() + dispatchEmail();
+  }
+
+  private void runLoop() {
+    while (running) {
+      try {
+        if (dispatchOnce() == 0) {
+          wakeUpSignal.tryAcquire(pollIntervalMillis, TimeUnit.MILLISECONDS);
+          wakeUpSignal.drainPermits();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (Exception e) {
+        // Thường là DB tạm thời không truy cập được: nghỉ một nhịp rồi thử lại
+        log.error("Notification outbox dispatch failed: {}", e.getMessage(), e);
+        try {
+          Thread.sleep(pollIntervalMillis);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+    }
+    log.info("Notification outbox dispatcher stopped");
+  }
+
+  private void wakeUp() {
+    if (wakeUpSignal.availablePermits() == 0) {
+      wakeUpSignal.release();
+    }
+  }
+
+  int dispatchInApp() {
+    Claim claim = claim(OutboxChannel.IN_APP, inAppBatchSize);
+    List<NotificationOutbox> entries = claim.entries();
+    if (entries.isEmpty()) {
+      return 0;
+    }
+    try {
+      new TransactionTemplate(transactionManager)
+          .executeWithoutResult(status -> deliverInApp(claim.token(), entries));
+      inAppDelivered.add(entries.size());
+    } catch (Exception e) {
+      if (entries.size() == 1) {
+        recordFailure(claim.token(), entries.get(0), e);
+        return 1;
+      }
+      log.warn(
+          "In-app outbox batch of {} failed ({}), retrying one by one",
+          entries.size(),
+          e.getMessage());
+      for (NotificationOutbox entry : entries) {
+        try {
+          new TransactionTemplate(transactionManager)
+              .executeWithoutResult(status -> deliverInApp(claim.token(), List.of(entry)));
+          inAppDelivered.increment();
+        } catch (Exception ex) {
+          recordFailure(claim.token(), entry, ex);
+        }
+      }
+    }
+    return entries.size();
+  }
+
+  // Đánh dấu SENT và lưu Notification trong cùng transaction -> không mất, không trùng
+  private void deliverInApp(String token, List<NotificationOutbox> entries) {
+    List<Long> ids = entries.stream().map(NotificationOutbox::getId).toList();
+    int marked =
+        outboxRepository.markSent(
+            ids, token, LocalDateTime.now(), OutboxStatus.SENT, OutboxStatus.PROCESSING);
+    if (marked != ids.size()) {
+      throw new IllegalStateException(
+          (ids.size() - marked) + " outbox entries were reclaimed by another dispatcher");
+    }
+    inAppNotificationService.deliver(entries);
+  }
+
+  int dispatchEmail() {
+    int freeSlots = emailSlots.availablePermits();
+    if (freeSlots == 0) {
+      return 0;
+    }
+    Claim claim = claim(OutboxChannel.EMAIL, freeSlots * Math.max(1, emailBatchSize));
+    List<NotificationOutbox> entries = claim.entries();
+    if (entries.isEmpty()) {
+      return 0;
+    }
+    // Chia đều cho các slot trống: ít email thì mỗi lô nhỏ, gửi song song thay vì dồn vào một lô
+    int batchCount = Math.min(freeSlots, entries.size());
+    int batchSize = (entries.size() + batchCount - 1) / batchCount;
+    for (int from = 0; from < entries.size(); from += batchSize) {
+      List<NotificationOutbox> batch =
+          entries.subList(from, Math.min(from + batchSize, entries.size()));
+      emailSlots.acquireUninterruptibly(); // Chỉ dispatcher lấy slot nên không phải chờ
+      try {
+        emailExecutor.execute(
+            () -> {
+              try {
+                deliverEmails(claim.token(), batch);
+              } finally {
+                emailSlots.release();
+                wakeUp();
+              }
+            });
+      } catch (RuntimeException e) {
+        // Pool đã đóng (đang tắt): bản ghi sẽ được nhận lại khi hết hạn giữ
+        emailSlots.release();
+        log.warn("Could not schedule {} outbox emails: {}", batch.size(), e.getMessage());
+      }
+    }
+    return entries.size();
+  }
+
+  private void deliverEmails(String token, List<NotificationOutbox> batch) {
+    Map<Integer, Exception> failures;
+    try {
+      failures =
+          emailService.deliverBatch(
+              batch.stream()
+                  .map(
+                      entry ->
+                          new EmailService.OutgoingEmail(
+                              entry.getRecipientEmail(), entry.getSubject(), entry.getBody()))
+                  .toList());
+    } catch (Exception e) {
+      batch.forEach(entry -> recordFailure(token, entry, e));
+      return;
+    }
+    List<Long> sentIds = new ArrayList<>(batch.size());
+    List<Long> sentSensitiveIds = new ArrayList<>();
+    for (int i = 0; i < batch.size(); i++) {
+      Exception failure = failures.get(i);
+      NotificationOutbox entry = batch.get(i);
+      if (failure != null) {
+        recordFailure(token, entry, failure);
+      } else if (entry.isSensitive()) {
+        sentSensitiveIds.add(entry.getId());
+      } else {
+        sentIds.add(entry.getId());
+      }
+    }
+    if (sentIds.isEmpty() && sentSensitiveIds.isEmpty()) {
+      return;
+    }
+    // Email chứa token bị xóa luôn thay vì giữ lại tới lượt purge
+    Integer marked =
+        new TransactionTemplate(transactionManager)
+            .execute(
+                status ->
+                    (sentIds.isEmpty()
+                            ? 0
+                            : outboxRepository.markSent(
+                                sentIds,
+                                token,
+                                LocalDateTime.now(),
+                                OutboxStatus.SENT,
+                                OutboxStatus.PROCESSING))
+                        + (sentSensitiveIds.isEmpty()
+                            ? 0
+                            : outboxRepository.deleteSent(
+                                sentSensitiveIds, token, OutboxStatus.PROCESSING)));
+    int markedCount = marked == null ? 0 : marked;
+    int sentCount = sentIds.size() + sentSensitiveIds.size();
+    if (markedCount < sentCount) {
+      // SMTP không có transaction: gửi quá hạn giữ thì email có thể bị gửi lại một lần
+      leaseLost.add(sentCount - markedCount);
+      log.warn(
+          "{} of {} outbox emails were sent after their lease expired",
+          sentCount - markedCount,
+          sentCount);
+    }
+    emailDelivered.add(markedCount);
+  }
+
+  private Claim claim(OutboxChannel channel, int limit) {
+    String token = UUID.randomUUID().toString();
+    List<NotificationOutbox> entries =
+        new TransactionTemplate(transactionManager)
+            .execute(
+                status -> {
+                  LocalDateTime now = LocalDateTime.now();
+                  List<Long> ids = outboxRepository.lockDueIds(channel.name(), now, limit);
+                  if (ids.isEmpty()) {
+                    return List.of();
+                  }
+                  outboxRepository.claim(
+                      ids, token, now.plusSeconds(leaseSeconds), OutboxStatus.PROCESSING);
+                  return outboxRepository.findByClaimTokenOrderByIdAsc(token);
+                });
+    return new Claim(token, entries == null ? List.of() : entries);
+  }
+
+  private void recordFailure(String token, NotificationOutbox entry, Exception e) {
+    int attempts = entry.getAttempts() + 1;
+    boolean giveUp = attempts >= maxAttempts;
+    String error = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+    String lastError =
+        error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    Integer updated =
+        new TransactionTemplate(transactionManager)
+            .execute(
+                status -> {
+                  int marked =
+                      outboxRepository.markAttemptFailed(
+                          entry.getId(),
+                          token,
+                          giveUp ? OutboxStatus.FAILED : OutboxStatus.PENDING,
+                          LocalDateTime.now().plus(retryDelay(attempts)),
+                          lastError);
+                  if (marked > 0 && giveUp && entry.isSensitive()) {
+                    outboxRepository.redactBody(entry.getId(), REDACTED_BODY);
+                  }
+                  return marked;
+                });
+    if (updated == null || updated == 0) {
+      leaseLost.increment(); // Đã được dispatcher khác nhận lại
+      return;
+    }
+    if (giveUp) {
+      failed.increment();
+      log.error(
+          "Giving up {} outbox entry {} to {} after {} attempts: {}",
+          entry.getChannel(),
+          entry.getId(),
+          entry.getRecipientEmail(),
+          attempts,
+          lastError);
+    } else {
+      retried.increment();
+      log.warn(
+          "{} outbox entry {} failed (attempt {}), will retry: {}",
+          entry.getChannel(),
+          entry.getId(),
+          attempts,
+          lastError);
+    }
+  }
+
+  Duration retryDelay(int attempts) {
+    long delay = retryBaseDelayMillis << Math.min(attempts - 1, 20);
+    return Duration.ofMillis(Math.min(delay, retryMaxDelayMillis));
+  }
+}
@@ -6,9 +6,13 @@ import com.yourcompany.agritrade.ordering.domain.Order;
 import com.yourcompany.agritrade.ordering.domain.OrderStatus;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import java.util.List;
+import java.util.Map;
 
 public interface EmailService {
 
+  /** Email đã render, chờ gửi qua SMTP. */
+  record OutgoingEmail(String recipientEmail, String subject, String htmlBody) {}
+
   // --- User Related ---
   void sendVerificationEmail(User user, String token, String verificationUrl);
 
@@ -44,4 +48,17 @@ public interface EmailService {
   void sendDueSoonInvoiceReminderEmail(Invoice invoice);
 
   void sendOverdueInvoiceAdminEmail(Invoice invoice, List<User> adminUsers);
+
+  // --- Gửi thực tế ---
+  /**
+   * Gửi ngay một email đã render qua SMTP. Các hàm send* ở trên chỉ ghi email vào outbox; hàm này
+   * được dispatcher gọi, ném MailException khi gửi lỗi để được thử lại.
+   */
+  void deliver(String recipientEmail, String subject, String htmlBody);
+
+  /**
+   * Gửi một lô email trên cùng một kết nối SMTP. Không ném lỗi cho từng email: trả về vị trí (trong
+   * {@code emails}) của các email gửi lỗi kèm nguyên nhân; map rỗng nghĩa là gửi hết.
+   */
+  Map<Integer, Exception> deliverBatch(List<OutgoingEmail> emails);
 }
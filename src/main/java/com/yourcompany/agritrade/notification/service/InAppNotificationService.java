@@ -1,12 +1,16 @@
 package com.yourcompany.agritrade.notification.service;
 
 import com.yourcompany.agritrade.common.model.NotificationType;
+import com.yourcompany.agritrade.notification.domain.NotificationOutbox;
 import com.yourcompany.agritrade.usermanagement.domain.User;
+import java.util.List;
 
 public interface InAppNotificationService {
 
   /**
-   * Tạo và lưu thông báo trong ứng dụng, đồng thời gửi real-time qua WebSocket.
+   * Tạo thông báo trong ứng dụng cho người nhận. Thông báo được ghi vào outbox trong transaction
+   * hiện tại; việc lưu Notification và gửi real-time qua WebSocket do dispatcher thực hiện sau khi
+   * commit.
    *
    * @param recipient Người nhận.
    * @param message Nội dung thông báo.
@@ -15,4 +19,10 @@ public interface InAppNotificationService {
    */
   void createAndSendInAppNotification(
       User recipient, String message, NotificationType type, String link);
+
+  /**
+   * Lưu các thông báo từ outbox vào bảng notifications trong transaction hiện tại (bắt buộc phải
+   * có) và gửi chúng qua WebSocket sau khi transaction đó commit.
+   */
+  void deliver(List<NotificationOutbox> entries);
 }
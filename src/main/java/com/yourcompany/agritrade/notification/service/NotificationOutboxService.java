@@ -0,0 +1,26 @@
+package com.yourcompany.agritrade.notification.service;
+
+import com.yourcompany.agritrade.common.model.NotificationType;
+import com.yourcompany.agritrade.notification.domain.OutboxChannel;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+
+/**
+ * Ghi thông báo vào bảng outbox trong transaction hiện tại (nếu có). Thông báo chỉ được gửi khi
+ * transaction commit, và vẫn còn đó nếu ứng dụng dừng trước khi gửi xong.
+ */
+public interface NotificationOutboxService {
+
+  /** Phát sau khi bản ghi outbox được commit, để dispatcher gửi ngay thay vì chờ lượt quét. */
+  record EnqueuedEvent(OutboxChannel channel) {}
+
+  void enqueueInApp(User recipient, String message, NotificationType type, String link);
+
+  void enqueueEmail(String recipientEmail, String subject, String htmlBody);
+
+  /**
+   * Như {@link #enqueueEmail} cho email chứa token bí mật (link xác thực, đặt lại mật khẩu): bản
+   * ghi bị xóa ngay khi gửi xong, nội dung bị che khi hết lượt thử, nên token không nằm lại trong
+   * bảng.
+   */
+  void enqueueSensitiveEmail(String recipientEmail, String subject, String htmlBody);
+}
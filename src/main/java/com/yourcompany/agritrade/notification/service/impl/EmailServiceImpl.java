@@ -2,21 +2,35 @@ package com.yourcompany.agritrade.notification.service.impl;
 
 import com.yourcompany.agritrade.catalog.domain.Product;
 import com.yourcompany.agritrade.notification.service.EmailService;
+import com.yourcompany.agritrade.notification.service.NotificationOutboxService;
 import com.yourcompany.agritrade.ordering.domain.*;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
+import java.io.UnsupportedEncodingException;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.thymeleaf.cache.ICache;
+import org.thymeleaf.cache.ICacheManager;
+import org.thymeleaf.cache.TemplateCacheKey;
 import org.thymeleaf.context.Context;
+import org.thymeleaf.engine.TemplateModel;
 import org.thymeleaf.spring6.SpringTemplateEngine;
 
 @Service
@@ -24,8 +38,29 @@ import org.thymeleaf.spring6.SpringTemplateEngine;
 @Slf4j
 public class EmailServiceImpl implements EmailService {
 
+  // Mọi template email đang dùng; được parse sẵn khi khởi động
+  static final List<String> MAIL_TEMPLATES =
+      List.of(
+          "mail/email-verification",
+          "mail/password-reset",
+          "mail/welcome",
+          "mail/password-changed",
+          "mail/order-confirmation-buyer",
+          "mail/new-order-farmer",
+          "mail/order-status-update-buyer",
+          "mail/order-cancellation-buyer",
+          "mail/order-cancellation-farmer",
+          "mail/payment-success-buyer",
+          "mail/payment-failure-buyer",
+          "mail/product-approved-farmer",
+          "mail/product-rejected-farmer",
+          "mail/invoice-overdue-reminder",
+          "mail/invoice-due-soon-reminder",
+          "mail/invoice-overdue-admin-alert");
+
   private final JavaMailSender mailSender;
   private final SpringTemplateEngine thymeleafTemplateEngine;
+  private final NotificationOutboxService notificationOutboxService;
 
   @Value("${spring.mail.username}")
   private String senderEmail;
@@ -45,7 +80,6 @@ public class EmailServiceImpl implements EmailService {
   // --- User Related ---
 
   @Override
-  @Async("taskExecutor")
   public void sendVerificationEmail(User user, String token, String verificationUrl) {
     String subject = String.format("[%s] Xác thực tài khoản của bạn", appName);
     Context context = new Context();
@@ -53,11 +87,10 @@ public class EmailServiceImpl implements EmailService {
     context.setVariable("verificationUrl", verificationUrl);
     context.setVariable("appName", appName);
     String htmlBody = thymeleafTemplateEngine.process("mail/email-verification", context);
-    sendHtmlEmail(subject, user.getEmail(), htmlBody);
+    sendSensitiveHtmlEmail(subject, user.getEmail(), htmlBody);
   }
 
   @Override
-  @Async("taskExecutor")
   public void sendPasswordResetEmail(User user, String token, String resetUrl) {
     String subject = String.format("[%s] Yêu cầu đặt lại mật khẩu", appName);
     Context context = new Context();
@@ -65,11 +98,10 @@ public class EmailServiceImpl implements EmailService {
     context.setVariable("resetUrl", resetUrl);
     context.setVariable("appName", appName);
     String htmlBody = thymeleafTemplateEngine.process("mail/password-reset", context);
-    sendHtmlEmail(subject, user.getEmail(), htmlBody);
+    sendSensitiveHtmlEmail(subject, user.getEmail(), htmlBody);
   }
 
   @Override
-  @Async("taskExecutor")
   public void sendWelcomeEmail(User user) {
     String subject = String.format("Chào mừng bạn đến với %s!", appName);
     Context context = new Context();
@@ -81,7 +113,6 @@ public class EmailServiceImpl implements EmailService {
   }
 
   @Override
-  @Async("taskExecutor")
   public void sendPasswordChangedEmail(User user) {
     String subject = String.format("[%s] Mật khẩu của bạn đã được thay đổi", appName);
     Context context = new Context();
@@ -94,7 +125,6 @@ public class EmailServiceImpl implements EmailService {
   // --- Order Related ---
 
   @Override
-  @Async("taskExecutor")
   public void sendOrderConfirmationEmailToBuyer(Order order) {
     String subject = String.format("[%s] Xác nhận đơn hàng #%s", appName, order.getOrderCode());
     Context context = new Context();
@@ -108,7 +138,6 @@ public class EmailServiceImpl implements EmailService {
   }
 
   @Override
-  @Async("taskExecutor")
   public void sendNewOrderNotificationToFarmer(Order order) {
     String subject = String.format("[%s] Bạn có đơn hàng mới #%s", appName, order.getOrderCode());
     Context context = new Context();
@@ -123,7 +152,6 @@ public class EmailServiceImpl implements EmailService {
   }
 
   @Override
-  @Async("taskExecutor")
   public void sendOrderStatusUpdateEmailToBuyer(Order order, OrderStatus previousStatus) {
     // Chỉ gửi nếu trạng thái thực sự thay đổi và là trạng thái quan trọng
     if (order.getStatus() == previousStatus) return;
@@ -142,7 +170,6 @@ public class EmailServiceImpl implements EmailService {
   }
 
   @Override
-  @Async("taskExecutor")
   public void sendOrderCancellationEmailToBuyer(Order order) {
     String subject =
         String.format("[%s] Đơn hàng #%s của bạn đã bị hủy", appName, order.getOrderCode());
@@ -156,7 +183,6 @@ public class EmailServiceImpl implements EmailService {
   }
 
   @Override
-  @Async("taskExecutor")
   public void sendOrderCancellationNotificationToFarmer(Order order) {
     String subject = String.format("[%s] Đơn hàng #%s đã bị hủy", appName, order.getOrderCode());
     Context context = new Context();
@@ -173,7 +199,6 @@ public class EmailServiceImpl implements EmailService {
   // --- Payment Related ---
 
   @Override
-  @Async("taskExecutor")
   public void sendPaymentSuccessEmailToBuyer(Order order) {
     String subject =
         String.format("[%s] Thanh toán thành công cho đơn hàng #%s", appName, order.getOrderCode());
@@ -187,7 +212,6 @@ public class EmailServiceImpl implements EmailService {
   }
 
   @Override
-  @Async("taskExecutor")
   public void sendPaymentFailureEmailToBuyer(Order order) {
     String subject =
         String.format("[%s] Thanh toán thất bại cho đơn hàng #%s", appName, order.getOrderCode());
@@ -209,7 +233,6 @@ public class EmailServiceImpl implements EmailService {
   }
 
   @Override
-  @Async("taskExecutor")
   public void sendProductApprovedEmailToFarmer(Product product, User farmer) {
     if (farmer == null || farmer.getEmail() == null) {
       log.error(
@@ -239,7 +262,6 @@ public class EmailServiceImpl implements EmailService {
   }
 
   @Override
-  @Async("taskExecutor")
   public void sendProductRejectedEmailToFarmer(Product product, String reason, User farmer) {
     if (farmer == null || farmer.getEmail() == null) {
       log.error(
@@ -269,7 +291,6 @@ public class EmailServiceImpl implements EmailService {
 
   // --- Invoice Related ---
   @Override
-  @Async("taskExecutor")
   public void sendOverdueInvoiceReminderEmail(Invoice invoice) {
     if (invoice == null || invoice.getOrder() == null || invoice.getOrder().getBuyer() == null) {
       log.warn("Cannot send overdue invoice email: invoice, order, or buyer is null.");
@@ -299,7 +320,6 @@ public class EmailServiceImpl implements EmailService {
   }
 
   @Override
-  @Async("taskExecutor")
   public void sendDueSoonInvoiceReminderEmail(Invoice invoice) {
     if (invoice == null || invoice.getOrder() == null || invoice.getOrder().getBuyer() == null) {
       log.warn("Cannot send due soon invoice email: invoice, order, or buyer is null.");
@@ -329,7 +349,6 @@ public class EmailServiceImpl implements EmailService {
   }
 
   @Override
-  @Async("taskExecutor")
   public void sendOverdueInvoiceAdminEmail(Invoice invoice, List<User> adminUsers) {
     if (invoice == null || adminUsers == null || adminUsers.isEmpty()) {
       log.warn(
@@ -373,26 +392,141 @@ public class EmailServiceImpl implements EmailService {
     }
   }
 
-  // --- Private Helper Method ---
-  private void sendHtmlEmail(String subject, String recipientEmail, String htmlContent) {
-    if (!StringUtils.hasText(recipientEmail)) {
-      log.warn("Skipping email send: Recipient email is empty. Subject: {}", subject);
-      return;
+  // --- Gửi thực tế (gọi từ NotificationOutboxDispatcher) ---
+
+  @Override
+  public void deliver(String recipientEmail, String subject, String htmlBody) {
+    MimeMessage message = buildMessage(recipientEmail, subject, htmlBody);
+    mailSender.send(message); // Lỗi SMTP ném MailException để dispatcher thử lại
+    log.info("HTML email sent successfully to {}", recipientEmail);
+  }
+
+  @Override
+  public Map<Integer, Exception> deliverBatch(List<OutgoingEmail> emails) {
+    Map<Integer, Exception> failures = new HashMap<>();
+    List<MimeMessage> messages = new ArrayList<>(emails.size());
+    Map<MimeMessage, Integer> positions = new IdentityHashMap<>();
+    for (int i = 0; i < emails.size(); i++) {
+      OutgoingEmail email = emails.get(i);
+      try {
+        MimeMessage message =
+            buildMessage(email.recipientEmail(), email.subject(), email.htmlBody());
+        messages.add(message);
+        positions.put(message, i);
+      } catch (MailPreparationException e) {
+        failures.put(i, e);
+      }
     }
+    if (messages.isEmpty()) {
+      return failures;
+    }
+    // Một lời gọi send cho cả lô: JavaMailSender gửi tất cả trên cùng một kết nối SMTP
+    try {
+      mailSender.send(messages.toArray(MimeMessage[]::new));
+    } catch (MailSendException e) {
+      Map<Object, Exception> failedMessages = e.getFailedMessages();
+      if (failedMessages.isEmpty()) {
+        positions.values().forEach(position -> failures.put(position, e));
+      } else {
+        failedMessages.forEach(
+            (message, cause) -> {
+              Integer position = positions.get(message);
+              if (position != null) {
+                failures.put(position, cause);
+              }
+            });
+      }
+    } catch (MailException e) {
+      positions.values().forEach(position -> failures.put(position, e));
+    }
+    log.info("Sent {} of {} HTML emails in batch", emails.size() - failures.size(), emails.size());
+    return failures;
+  }
+
+  private MimeMessage buildMessage(String recipientEmail, String subject, String htmlBody) {
     MimeMessage message = mailSender.createMimeMessage();
     try {
       MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
       helper.setFrom(appMailFrom, appMailSenderName);
       helper.setTo(recipientEmail);
       helper.setSubject(subject);
-      helper.setText(htmlContent, true); // true = HTML content
-      mailSender.send(message);
-      log.info("HTML email sent successfully to {}", recipientEmail);
-    } catch (MessagingException e) {
-      log.error("Failed to send HTML email to {}: {}", recipientEmail, e.getMessage(), e);
+      helper.setText(htmlBody, true); // true = HTML content
+    } catch (MessagingException | UnsupportedEncodingException e) {
+      throw new MailPreparationException("Could not build email to " + recipientEmail, e);
+    }
+    return message;
+  }
 
-    } catch (Exception e) {
-      log.error("Unexpected error sending email to {}: {}", recipientEmail, e.getMessage(), e);
+  /**
+   * Parse trước mọi template email vào cache của Thymeleaf, để email đầu tiên sau khi khởi động
+   * không phải đọc và parse file. Context rỗng nên biểu thức cần dữ liệu (vd {@code
+   * order.orderCode}) có thể lỗi khi xử lý, sau khi template đã được parse và cache; vì vậy chỉ
+   * template thực sự có trong cache mới được tính là đã warm up.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUpTemplates() {
+    long start = System.nanoTime();
+    int warmed = warmUpTemplates(MAIL_TEMPLATES);
+    log.info(
+        "Warmed up {} of {} mail templates in {} ms",
+        warmed,
+        MAIL_TEMPLATES.size(),
+        (System.nanoTime() - start) / 1_000_000);
+  }
+
+  // Trả về số template đã nằm trong cache
+  int warmUpTemplates(List<String> templates) {
+    int warmed = 0;
+    for (String template : templates) {
+      RuntimeException failure = null;
+      try {
+        thymeleafTemplateEngine.process(template, new Context());
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+      if (isTemplateCached(template)) {
+        warmed++;
+        if (failure != null) {
+          log.debug(
+              "Mail template {} cached; rendering without data failed: {}",
+              template,
+              failure.getMessage());
+        }
+      } else {
+        // Lỗi đọc/parse file template: báo sớm thay vì khi gửi email đầu tiên
+        log.warn(
+            "Could not warm up mail template {}: {}",
+            template,
+            failure != null ? failure.getMessage() : "template is not cacheable");
+      }
+    }
+    return warmed;
+  }
+
+  private boolean isTemplateCached(String template) {
+    ICacheManager cacheManager = thymeleafTemplateEngine.getCacheManager();
+    ICache<TemplateCacheKey, TemplateModel> cache =
+        cacheManager != null ? cacheManager.getTemplateCache() : null;
+    return cache != null
+        && cache.keySet().stream().anyMatch(key -> template.equals(key.getTemplate()));
+  }
+
+  // --- Private Helper Method ---
+  // Email đã render được ghi vào outbox cùng transaction của nơi gọi và gửi sau khi commit
+  private void sendHtmlEmail(String subject, String recipientEmail, String htmlContent) {
+    if (!StringUtils.hasText(recipientEmail)) {
+      log.warn("Skipping email send: Recipient email is empty. Subject: {}", subject);
+      return;
+    }
+    notificationOutboxService.enqueueEmail(recipientEmail, subject, htmlContent);
+  }
+
+  // Email chứa link mang token: outbox không giữ lại nội dung sau khi gửi
+  private void sendSensitiveHtmlEmail(String subject, String recipientEmail, String htmlContent) {
+    if (!StringUtils.hasText(recipientEmail)) {
+      log.warn("Skipping email send: Recipient email is empty. Subject: {}", subject);
+      return;
     }
+    notificationOutboxService.enqueueSensitiveEmail(recipientEmail, subject, htmlContent);
   }
 }
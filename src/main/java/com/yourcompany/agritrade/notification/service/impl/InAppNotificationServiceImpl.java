@@ -2,17 +2,24 @@ package com.yourcompany.agritrade.notification.service.impl;
 
 import com.yourcompany.agritrade.common.model.NotificationType;
 import com.yourcompany.agritrade.notification.domain.Notification;
+import com.yourcompany.agritrade.notification.domain.NotificationOutbox;
 import com.yourcompany.agritrade.notification.dto.response.NotificationResponse;
 import com.yourcompany.agritrade.notification.mapper.NotificationMapper;
 import com.yourcompany.agritrade.notification.repository.NotificationRepository;
 import com.yourcompany.agritrade.notification.service.InAppNotificationService;
+import com.yourcompany.agritrade.notification.service.NotificationOutboxService;
 import com.yourcompany.agritrade.usermanagement.domain.User;
+import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 @RequiredArgsConstructor
@@ -22,40 +29,61 @@ public class InAppNotificationServiceImpl implements InAppNotificationService {
   private final NotificationRepository notificationRepository;
   private final SimpMessagingTemplate messagingTemplate;
   private final NotificationMapper notificationMapper;
+  private final NotificationOutboxService notificationOutboxService;
+  private final UserRepository userRepository;
 
   @Override
-  @Transactional
-  @Async("taskExecutor") // Chạy bất đồng bộ
   public void createAndSendInAppNotification(
       User recipient, String message, NotificationType type, String link) {
-    if (recipient == null) {
-      log.warn("Cannot send in-app notification: Recipient is null. Message: {}", message);
+    // Ghi vào outbox cùng transaction của nghiệp vụ: rollback thì không có thông báo nào được gửi
+    notificationOutboxService.enqueueInApp(recipient, message, type, link);
+  }
+
+  @Override
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void deliver(List<NotificationOutbox> entries) {
+    if (entries.isEmpty()) {
       return;
     }
+    // 1. Tạo và lưu Notification vào DB
+    List<Notification> notifications = new ArrayList<>(entries.size());
+    for (NotificationOutbox entry : entries) {
+      notifications.add(
+          new Notification(
+              userRepository.getReferenceById(entry.getRecipientId()),
+              entry.getBody(),
+              entry.getNotificationType(),
+              entry.getLink()));
+    }
+    List<Notification> savedNotifications = notificationRepository.saveAll(notifications);
 
-    try {
-      // 1. Tạo và lưu Notification vào DB
-      Notification notification = new Notification(recipient, message, type, link);
-      Notification savedNotification = notificationRepository.save(notification);
-      log.info(
-          "Saved in-app notification {} for user {}", savedNotification.getId(), recipient.getId());
-
-      // 2. Chuẩn bị DTO để gửi qua WebSocket
-      NotificationResponse notificationDto =
-          notificationMapper.toNotificationResponse(savedNotification);
-
-      // 3. Gửi thông báo real-time qua WebSocket đến private queue của người nhận
-      String destination =
-          "/user/" + recipient.getEmail() + "/queue/notifications"; // Queue riêng cho notification
-      messagingTemplate.convertAndSend(destination, notificationDto);
-      log.info("Sent WebSocket notification to {}: {}", destination, notificationDto.getId());
-
-    } catch (Exception e) {
-      log.error(
-          "Failed to create or send in-app notification for user {}: {}",
-          recipient.getId(),
-          e.getMessage(),
-          e);
+    // 2. Chuẩn bị DTO để gửi qua WebSocket
+    List<String> destinations = new ArrayList<>(entries.size());
+    List<NotificationResponse> payloads = new ArrayList<>(entries.size());
+    for (int i = 0; i < entries.size(); i++) {
+      // Queue riêng cho notification
+      destinations.add("/user/" + entries.get(i).getRecipientEmail() + "/queue/notifications");
+      payloads.add(notificationMapper.toNotificationResponse(savedNotifications.get(i)));
     }
+
+    // 3. Gửi real-time sau khi commit, để client không thấy thông báo chưa tồn tại trong DB
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            for (int i = 0; i < destinations.size(); i++) {
+              try {
+                messagingTemplate.convertAndSend(destinations.get(i), payloads.get(i));
+              } catch (Exception e) {
+                // Thông báo đã lưu, người dùng vẫn thấy khi tải lại danh sách
+                log.error(
+                    "Failed to send WebSocket notification to {}: {}",
+                    destinations.get(i),
+                    e.getMessage());
+              }
+            }
+          }
+        });
+    log.debug("Saved {} in-app notification(s) from outbox", savedNotifications.size());
   }
 }
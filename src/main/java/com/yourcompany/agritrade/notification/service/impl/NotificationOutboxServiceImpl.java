@@ -0,0 +1,73 @@
+package com.yourcompany.agritrade.notification.service.impl;
+
+import com.yourcompany.agritrade.common.model.NotificationType;
+import com.yourcompany.agritrade.notification.domain.NotificationOutbox;
+import com.yourcompany.agritrade.notification.domain.OutboxChannel;
+import com.yourcompany.agritrade.notification.repository.NotificationOutboxRepository;
+import com.yourcompany.agritrade.notification.service.NotificationOutboxService;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import java.time.LocalDateTime;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationOutboxServiceImpl implements NotificationOutboxService {
+
+  private final NotificationOutboxRepository outboxRepository;
+  private final ApplicationEventPublisher eventPublisher;
+
+  @Override
+  @Transactional // Tham gia transaction của nơi gọi nếu có
+  public void enqueueInApp(User recipient, String message, NotificationType type, String link) {
+    if (recipient == null) {
+      log.warn("Cannot send in-app notification: Recipient is null. Message: {}", message);
+      return;
+    }
+    NotificationOutbox entry = newEntry(OutboxChannel.IN_APP, recipient.getEmail(), message);
+    entry.setRecipientId(recipient.getId());
+    entry.setNotificationType(type);
+    entry.setLink(link);
+    outboxRepository.save(entry);
+    eventPublisher.publishEvent(new EnqueuedEvent(OutboxChannel.IN_APP));
+  }
+
+  @Override
+  @Transactional
+  public void enqueueEmail(String recipientEmail, String subject, String htmlBody) {
+    saveEmail(recipientEmail, subject, htmlBody, false);
+  }
+
+  @Override
+  @Transactional
+  public void enqueueSensitiveEmail(String recipientEmail, String subject, String htmlBody) {
+    saveEmail(recipientEmail, subject, htmlBody, true);
+  }
+
+  private void saveEmail(
+      String recipientEmail, String subject, String htmlBody, boolean sensitive) {
+    if (!StringUtils.hasText(recipientEmail)) {
+      log.warn("Skipping email send: Recipient email is empty. Subject: {}", subject);
+      return;
+    }
+    NotificationOutbox entry = newEntry(OutboxChannel.EMAIL, recipientEmail, htmlBody);
+    entry.setSubject(subject);
+    entry.setSensitive(sensitive);
+    outboxRepository.save(entry);
+    eventPublisher.publishEvent(new EnqueuedEvent(OutboxChannel.EMAIL));
+  }
+
+  private NotificationOutbox newEntry(OutboxChannel channel, String recipientEmail, String body) {
+    NotificationOutbox entry = new NotificationOutbox();
+    entry.setChannel(channel);
+    entry.setRecipientEmail(recipientEmail);
+    entry.setBody(body);
+    entry.setNextAttemptAt(LocalDateTime.now());
+    return entry;
+  }
+}
@@ -4,14 +4,22 @@ import com.yourcompany.agritrade.common.dto.ApiResponse;
 import com.yourcompany.agritrade.ordering.domain.InvoiceStatus;
 import com.yourcompany.agritrade.ordering.domain.PaymentStatus;
 import com.yourcompany.agritrade.ordering.dto.response.InvoiceSummaryResponse;
+import com.yourcompany.agritrade.ordering.repository.projection.InvoicePdfKey;
+import com.yourcompany.agritrade.ordering.service.InvoicePdfService;
 import com.yourcompany.agritrade.ordering.service.InvoiceService;
+import java.time.LocalDate;
+import java.util.List;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/admin/invoices")
@@ -20,6 +28,7 @@ import org.springframework.web.bind.annotation.*;
 public class AdminInvoiceController {
 
   private final InvoiceService invoiceService; // Tạo service này
+  private final InvoicePdfService invoicePdfService;
 
   @GetMapping
   public ResponseEntity<ApiResponse<Page<InvoiceSummaryResponse>>> getAllInvoices(
@@ -31,4 +40,20 @@ public class AdminInvoiceController {
         invoiceService.getAllInvoicesForAdmin(status, paymentStatus, keyword, pageable);
     return ResponseEntity.ok(ApiResponse.success(invoices));
   }
+
+  // Tải PDF của mọi hóa đơn phát hành trong khoảng ngày thành một file ZIP. Khoảng ngày được kiểm
+  // tra trước khi bắt đầu stream; các PDF chưa có trong store được render song song
+  @GetMapping("/export-pdf")
+  public ResponseEntity<StreamingResponseBody> exportInvoicePdfs(
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate) {
+    List<InvoicePdfKey> invoices = invoicePdfService.findInvoicesForExport(fromDate, toDate);
+    StreamingResponseBody body = out -> invoicePdfService.writeInvoicesZip(invoices, out);
+    return ResponseEntity.ok()
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=hoa_don_" + fromDate + "_" + toDate + ".zip")
+        .contentType(MediaType.parseMediaType("application/zip"))
+        .body(body);
+  }
 }
@@ -1,7 +1,8 @@
 package com.yourcompany.agritrade.ordering.controller;
 
 import com.yourcompany.agritrade.common.dto.ApiResponse;
-import com.yourcompany.agritrade.common.service.ExcelExportService;
+import com.yourcompany.agritrade.common.dto.response.CursorPageResponse;
+import com.yourcompany.agritrade.common.model.ExportFormat;
 import com.yourcompany.agritrade.ordering.domain.OrderStatus;
 import com.yourcompany.agritrade.ordering.domain.OrderType;
 import com.yourcompany.agritrade.ordering.domain.PaymentMethod;
@@ -11,14 +12,9 @@ import com.yourcompany.agritrade.ordering.dto.response.OrderResponse;
 import com.yourcompany.agritrade.ordering.dto.response.OrderSummaryResponse;
 import com.yourcompany.agritrade.ordering.service.OrderService;
 import jakarta.validation.Valid;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.time.LocalDate;
-import java.util.List;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
@@ -27,8 +23,8 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
-import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/admin/orders") // Base path cho Admin
@@ -38,8 +34,6 @@ public class AdminOrderController {
 
   private final OrderService orderService;
 
-  @Autowired private ExcelExportService excelExportService;
-
   // Lấy tất cả đơn hàng với bộ lọc
   @GetMapping
   public ResponseEntity<ApiResponse<Page<OrderSummaryResponse>>> getAllOrders(
@@ -52,19 +46,10 @@ public class AdminOrderController {
       @RequestParam(required = false) Long farmerId,
       @PageableDefault(size = 20, sort = "createdAt,desc") Pageable pageable) {
 
-    OrderStatus statusEnum = null;
-    if (StringUtils.hasText(status)) {
-      try {
-        statusEnum = OrderStatus.valueOf(status.toUpperCase());
-      } catch (IllegalArgumentException e) {
-        // Log lại cảnh báo nếu cần, nhưng không ném lỗi
-
-      }
-    }
     Page<OrderSummaryResponse> orders =
         orderService.getAllOrdersForAdmin(
             keyword,
-            statusEnum,
+            OrderStatus.fromString(status),
             paymentMethod,
             paymentStatus,
             orderType,
@@ -74,6 +59,33 @@ public class AdminOrderController {
     return ResponseEntity.ok(ApiResponse.success(orders));
   }
 
+  // Danh sách đơn hàng phân trang theo con trỏ (keyset): không chạy count, không dùng OFFSET
+  @GetMapping("/cursor")
+  public ResponseEntity<ApiResponse<CursorPageResponse<OrderSummaryResponse>>> getAllOrdersByCursor(
+      @RequestParam(required = false) String keyword,
+      @RequestParam(required = false) String status,
+      @RequestParam(required = false) PaymentMethod paymentMethod,
+      @RequestParam(required = false) PaymentStatus paymentStatus,
+      @RequestParam(required = false) OrderType orderType,
+      @RequestParam(required = false) Long buyerId,
+      @RequestParam(required = false) Long farmerId,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "20") int size) {
+
+    CursorPageResponse<OrderSummaryResponse> orders =
+        orderService.getAllOrdersForAdminByCursor(
+            keyword,
+            OrderStatus.fromString(status),
+            paymentMethod,
+            paymentStatus,
+            orderType,
+            buyerId,
+            farmerId,
+            cursor,
+            size);
+    return ResponseEntity.ok(ApiResponse.success(orders));
+  }
+
   // Lấy chi tiết đơn hàng bất kỳ
   @GetMapping("/{orderId}")
   public ResponseEntity<ApiResponse<OrderResponse>> getOrderDetailsForAdmin(
@@ -132,32 +144,42 @@ public class AdminOrderController {
             updatedOrder, "Xác nhận thanh toán cho đơn hàng #" + orderId + " thành công."));
   }
 
+  // Xuất đơn hàng theo kiểu streaming (XLSX mặc định, hoặc format=CSV): dữ liệu được ghi thẳng ra
+  // response nên bộ nhớ không tăng theo số dòng
   @GetMapping("/export")
-  public ResponseEntity<InputStreamResource> exportOrdersToExcel(
+  public ResponseEntity<StreamingResponseBody> exportOrdersToExcel(
       @RequestParam(required = false) String keyword,
       @RequestParam(required = false) OrderStatus status,
       @RequestParam(required = false) PaymentMethod paymentMethod,
       @RequestParam(required = false) PaymentStatus paymentStatus,
       @RequestParam(required = false) Long buyerId,
       @RequestParam(required = false) Long farmerId,
-      @RequestParam(required = false) OrderType orderType) {
-    List<OrderSummaryResponse> ordersToExport =
-        orderService.getAllOrdersForAdminExport(
-            keyword, status, paymentMethod, paymentStatus, buyerId, farmerId, orderType);
-
-    try {
-      ByteArrayInputStream in = excelExportService.ordersToExcel(ordersToExport);
-      String filename = "don_hang_" + LocalDate.now().toString() + ".xlsx";
-      InputStreamResource file = new InputStreamResource(in);
-
-      return ResponseEntity.ok()
-          .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
-          .contentType(
-              MediaType.parseMediaType(
-                  "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-          .body(file);
-    } catch (IOException e) {
-      throw new RuntimeException("Failed to export data to Excel file: " + e.getMessage());
-    }
+      @RequestParam(required = false) OrderType orderType,
+      @RequestParam(defaultValue = "XLSX") ExportFormat format) {
+    boolean csv = format == ExportFormat.CSV;
+    String filename = "don_hang_" + LocalDate.now() + (csv ? ".csv" : ".xlsx");
+    MediaType mediaType =
+        csv
+            ? MediaType.parseMediaType("text/csv; charset=UTF-8")
+            : MediaType.parseMediaType(
+                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+
+    StreamingResponseBody body =
+        out ->
+            orderService.exportOrdersForAdmin(
+                keyword,
+                status,
+                paymentMethod,
+                paymentStatus,
+                buyerId,
+                farmerId,
+                orderType,
+                format,
+                out);
+
+    return ResponseEntity.ok()
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
+        .contentType(mediaType)
+        .body(body);
   }
 }
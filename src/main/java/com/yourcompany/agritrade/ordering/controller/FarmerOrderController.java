@@ -1,6 +1,7 @@
 package com.yourcompany.agritrade.ordering.controller;
 
 import com.yourcompany.agritrade.common.dto.ApiResponse;
+import com.yourcompany.agritrade.common.dto.response.CursorPageResponse;
 import com.yourcompany.agritrade.ordering.domain.OrderStatus;
 import com.yourcompany.agritrade.ordering.domain.OrderType;
 import com.yourcompany.agritrade.ordering.domain.PaymentMethod;
@@ -17,7 +18,6 @@ import org.springframework.data.web.PageableDefault;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
-import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -39,18 +39,41 @@ public class FarmerOrderController {
       @RequestParam(required = false) OrderType orderType,
       @PageableDefault(size = 15, sort = "createdAt,desc") Pageable pageable) {
 
-    OrderStatus statusEnum = null;
-    if (StringUtils.hasText(status)) {
-      try {
-        statusEnum = OrderStatus.valueOf(status.toUpperCase());
-      } catch (IllegalArgumentException e) {
-
-      }
-    }
-
     Page<OrderSummaryResponse> orders =
         orderService.getMyOrdersAsFarmer(
-            authentication, keyword, statusEnum, paymentMethod, paymentStatus, orderType, pageable);
+            authentication,
+            keyword,
+            OrderStatus.fromString(status),
+            paymentMethod,
+            paymentStatus,
+            orderType,
+            pageable);
+    return ResponseEntity.ok(ApiResponse.success(orders));
+  }
+
+  // Đơn hàng MÀ MÌNH LÀ NGƯỜI BÁN - phân trang theo con trỏ (không đếm tổng)
+  @GetMapping("/my/cursor")
+  public ResponseEntity<ApiResponse<CursorPageResponse<OrderSummaryResponse>>>
+      getMyOrdersAsFarmerByCursor(
+          Authentication authentication,
+          @RequestParam(required = false) String keyword,
+          @RequestParam(required = false) String status,
+          @RequestParam(required = false) PaymentMethod paymentMethod,
+          @RequestParam(required = false) PaymentStatus paymentStatus,
+          @RequestParam(required = false) OrderType orderType,
+          @RequestParam(required = false) String cursor,
+          @RequestParam(defaultValue = "15") int size) {
+
+    CursorPageResponse<OrderSummaryResponse> orders =
+        orderService.getMyOrdersAsFarmerByCursor(
+            authentication,
+            keyword,
+            OrderStatus.fromString(status),
+            paymentMethod,
+            paymentStatus,
+            orderType,
+            cursor,
+            size);
     return ResponseEntity.ok(ApiResponse.success(orders));
   }
 
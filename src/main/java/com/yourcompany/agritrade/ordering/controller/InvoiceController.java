@@ -5,10 +5,11 @@ import com.yourcompany.agritrade.ordering.domain.Invoice;
 import com.yourcompany.agritrade.ordering.domain.Order;
 import com.yourcompany.agritrade.ordering.repository.InvoiceRepository;
 import com.yourcompany.agritrade.ordering.repository.OrderRepository;
+import com.yourcompany.agritrade.ordering.service.InvoicePdfService;
+import com.yourcompany.agritrade.ordering.service.InvoicePdfService.InvoicePdf;
 import com.yourcompany.agritrade.ordering.service.InvoiceService;
-import java.io.ByteArrayInputStream;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -21,53 +22,45 @@ import org.springframework.web.bind.annotation.*;
 public class InvoiceController {
 
   private final InvoiceService invoiceService;
+  private final InvoicePdfService invoicePdfService;
   private final OrderRepository orderRepository;
   private final InvoiceRepository invoiceRepository;
 
   // Endpoint tải hóa đơn theo Order ID
   @GetMapping("/orders/{orderId}/invoice/download")
   @PreAuthorize("isAuthenticated()") // Yêu cầu đăng nhập
-  public ResponseEntity<InputStreamResource> downloadInvoiceByOrderId(@PathVariable Long orderId) {
-
-    Order order =
-        orderRepository
-            .findById(orderId)
-            .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
-
-    // Lấy hoặc tạo hóa đơn
-    Invoice invoice = invoiceService.getOrCreateInvoiceForOrder(order);
-
-    // Tạo file PDF
-    ByteArrayInputStream pdfInputStream = invoiceService.generateInvoicePdf(invoice.getId());
-
-    HttpHeaders headers = new HttpHeaders();
-    headers.add(
-        HttpHeaders.CONTENT_DISPOSITION,
-        "attachment; filename=invoice-" + invoice.getInvoiceNumber() + ".pdf");
+  public ResponseEntity<Resource> downloadInvoiceByOrderId(@PathVariable Long orderId) {
+    // Hóa đơn đã có thì không cần nạp cả đơn hàng; chỉ lần đầu mới nạp order để tạo hóa đơn
+    Long invoiceId =
+        invoiceRepository
+            .findByOrderId(orderId)
+            .map(Invoice::getId)
+            .orElseGet(
+                () -> {
+                  Order order =
+                      orderRepository
+                          .findById(orderId)
+                          .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
+                  return invoiceService.getOrCreateInvoiceForOrder(order).getId();
+                });
 
-    return ResponseEntity.ok()
-        .headers(headers)
-        .contentType(MediaType.APPLICATION_PDF)
-        .body(new InputStreamResource(pdfInputStream));
+    return toPdfResponse(invoicePdfService.getInvoicePdf(invoiceId));
   }
 
   //  Endpoint tải hóa đơn theo Invoice ID
   @GetMapping("/invoices/{invoiceId}/download")
   @PreAuthorize("isAuthenticated()")
-  public ResponseEntity<InputStreamResource> downloadInvoiceById(@PathVariable Long invoiceId) {
-    Invoice invoice =
-        invoiceRepository
-            .findById(invoiceId)
-            .orElseThrow(() -> new ResourceNotFoundException("Invoice", "id", invoiceId));
+  public ResponseEntity<Resource> downloadInvoiceById(@PathVariable Long invoiceId) {
+    return toPdfResponse(invoicePdfService.getInvoicePdf(invoiceId));
+  }
 
-    ByteArrayInputStream pdfInputStream = invoiceService.generateInvoicePdf(invoiceId);
-    HttpHeaders headers = new HttpHeaders();
-    headers.add(
-        HttpHeaders.CONTENT_DISPOSITION,
-        "attachment; filename=invoice-" + invoice.getInvoiceNumber() + ".pdf");
+  // File PDF được stream thẳng từ store ra response, không đọc hết vào bộ nhớ
+  private ResponseEntity<Resource> toPdfResponse(InvoicePdf pdf) {
     return ResponseEntity.ok()
-        .headers(headers)
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=invoice-" + pdf.invoiceNumber() + ".pdf")
         .contentType(MediaType.APPLICATION_PDF)
-        .body(new InputStreamResource(pdfInputStream));
+        .body(pdf.content());
   }
 }
@@ -1,6 +1,7 @@
 package com.yourcompany.agritrade.ordering.controller;
 
 import com.yourcompany.agritrade.common.dto.ApiResponse;
+import com.yourcompany.agritrade.common.dto.response.CursorPageResponse;
 import com.yourcompany.agritrade.ordering.domain.*;
 import com.yourcompany.agritrade.ordering.dto.request.AgreedOrderRequest;
 import com.yourcompany.agritrade.ordering.dto.request.CheckoutRequest;
@@ -60,6 +61,27 @@ public class OrderController {
     return ResponseEntity.ok(ApiResponse.success(orders));
   }
 
+  // Lịch sử đơn hàng (vai trò Buyer) phân trang theo con trỏ: không đếm tổng, hiệu năng ổn định
+  // ở trang sâu. Trang đầu bỏ trống cursor, các trang sau truyền nextCursor của trang trước.
+  @GetMapping("/my/cursor")
+  @PreAuthorize("hasAnyRole('CONSUMER', 'BUSINESS_BUYER')")
+  public ResponseEntity<ApiResponse<CursorPageResponse<OrderSummaryResponse>>>
+      getMyOrdersAsBuyerByCursor(
+          Authentication authentication,
+          @RequestParam(required = false) String keyword,
+          @RequestParam(required = false) OrderStatus status,
+          @RequestParam(required = false) PaymentMethod paymentMethod,
+          @RequestParam(required = false) PaymentStatus paymentStatus,
+          @RequestParam(required = false) OrderType orderType,
+          @RequestParam(required = false) String cursor,
+          @RequestParam(defaultValue = "15") int size) {
+
+    CursorPageResponse<OrderSummaryResponse> orders =
+        orderService.getMyOrdersAsBuyerByCursor(
+            authentication, keyword, status, paymentMethod, paymentStatus, orderType, cursor, size);
+    return ResponseEntity.ok(ApiResponse.success(orders));
+  }
+
   // Lấy chi tiết đơn hàng theo ID (người dùng hiện tại phải là buyer hoặc farmer của đơn hàng đó)
   @GetMapping("/{orderId}")
   public ResponseEntity<ApiResponse<OrderResponse>> getMyOrderDetailsById(
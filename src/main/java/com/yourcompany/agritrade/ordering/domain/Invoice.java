@@ -11,7 +11,12 @@ import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
 @Entity
-@Table(name = "invoices")
+@Table(
+    name = "invoices",
+    indexes = {
+      @Index(name = "idx_invoices_status_due_date", columnList = "status, dueDate"),
+      @Index(name = "idx_invoices_overdue_marked_on", columnList = "overdueMarkedOn")
+    })
 @Getter
 @Setter
 @NoArgsConstructor
@@ -42,6 +47,8 @@ public class Invoice {
   private InvoiceStatus status =
       InvoiceStatus.DRAFT; // Trạng thái hóa đơn (Draft, Issued, Paid, Void)
 
+  private LocalDate overdueMarkedOn; // Ngày job nhắc hạn chuyển hóa đơn sang OVERDUE
+
   @CreationTimestamp
   @Column(nullable = false, updatable = false)
   private LocalDateTime createdAt;
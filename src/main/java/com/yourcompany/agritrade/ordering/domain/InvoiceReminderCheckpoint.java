@@ -0,0 +1,48 @@
+package com.yourcompany.agritrade.ordering.domain;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.UpdateTimestamp;
+
+/**
+ * Tiến độ của lượt nhắc hạn hóa đơn gần nhất: bước đang chạy và id hóa đơn lớn nhất đã gửi nhắc
+ * trong bước đó. Được ghi cùng transaction với mỗi lô nhắc, nên lượt bị dừng giữa chừng tiếp tục
+ * đúng từ lô kế tiếp.
+ */
+@Entity
+@Table(name = "invoice_reminder_checkpoints")
+@Getter
+@Setter
+@NoArgsConstructor
+public class InvoiceReminderCheckpoint {
+
+  @Id
+  @Column(length = 50)
+  private String name;
+
+  @Column(nullable = false)
+  private LocalDate runDate;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, length = 20)
+  private InvoiceReminderPhase phase;
+
+  @Column(nullable = false)
+  private Long lastInvoiceId;
+
+  @UpdateTimestamp
+  @Column(nullable = false)
+  private LocalDateTime updatedAt;
+
+  public InvoiceReminderCheckpoint(
+      String name, LocalDate runDate, InvoiceReminderPhase phase, Long lastInvoiceId) {
+    this.name = name;
+    this.runDate = runDate;
+    this.phase = phase;
+    this.lastInvoiceId = lastInvoiceId;
+  }
+}
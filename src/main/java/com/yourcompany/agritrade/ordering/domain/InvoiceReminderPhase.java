@@ -0,0 +1,8 @@
+package com.yourcompany.agritrade.ordering.domain;
+
+// Các bước của một lượt nhắc hạn hóa đơn, theo thứ tự chạy
+public enum InvoiceReminderPhase {
+  OVERDUE, // Gửi nhắc cho các hóa đơn vừa chuyển sang OVERDUE
+  DUE_SOON, // Gửi nhắc cho các hóa đơn ISSUED sắp đến hạn
+  DONE
+}
@@ -1,5 +1,6 @@
 package com.yourcompany.agritrade.ordering.domain;
 
+import com.yourcompany.agritrade.common.persistence.BlockSequenceId;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
@@ -15,13 +16,21 @@ import org.hibernate.annotations.UpdateTimestamp;
 @Entity
 @Table(
     name = "orders",
-    uniqueConstraints = {@UniqueConstraint(columnNames = "orderCode")})
+    uniqueConstraints = {@UniqueConstraint(columnNames = "orderCode")},
+    // Phục vụ phân trang keyset (createdAt DESC, id DESC) cho admin, buyer và farmer
+    indexes = {
+      @Index(name = "idx_orders_created_id", columnList = "createdAt, id"),
+      @Index(name = "idx_orders_buyer_created_id", columnList = "buyer_id, createdAt, id"),
+      @Index(name = "idx_orders_farmer_created_id", columnList = "farmer_id, createdAt, id"),
+      // Job tổng hợp số liệu dashboard quét các đơn thay đổi theo updatedAt
+      @Index(name = "idx_orders_updated_at", columnList = "updatedAt")
+    })
 @Getter
 @Setter
 @NoArgsConstructor
 public class Order {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @BlockSequenceId(name = "orders") // ID cấp theo khối để INSERT lúc checkout được gom batch
   private Long id;
 
   @Column(nullable = false, unique = true, length = 20)
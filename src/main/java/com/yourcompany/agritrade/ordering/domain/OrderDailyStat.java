@@ -0,0 +1,70 @@
+package com.yourcompany.agritrade.ordering.domain;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Số liệu đơn hàng đã tổng hợp sẵn theo (ngày tạo đơn, phạm vi, đối tượng, trạng thái hiện tại).
+ * Dashboard đọc bảng này thay vì GROUP BY trực tiếp trên bảng orders. Dữ liệu được dựng lại theo
+ * từng ngày bởi {@code OrderStatsRollupService}.
+ */
+@Entity
+@Table(
+    name = "order_daily_stats",
+    uniqueConstraints = {
+      @UniqueConstraint(
+          name = "uk_order_daily_stats",
+          columnNames = {"scope", "partyId", "statDate", "status"})
+    },
+    indexes = {@Index(name = "idx_order_daily_stats_date_scope", columnList = "statDate, scope")})
+@Getter
+@Setter
+@NoArgsConstructor
+public class OrderDailyStat {
+
+  /** partyId dùng cho các dòng có phạm vi {@link OrderStatScope#ALL}. */
+  public static final long ALL_PARTIES = 0L;
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(nullable = false)
+  private LocalDate statDate;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, length = 10)
+  private OrderStatScope scope;
+
+  @Column(nullable = false)
+  private Long partyId;
+
+  @Enumerated(EnumType.STRING)
+  @Column(nullable = false, length = 20)
+  private OrderStatus status;
+
+  @Column(nullable = false)
+  private long orderCount;
+
+  @Column(nullable = false, precision = 19, scale = 2)
+  private BigDecimal totalAmount = BigDecimal.ZERO;
+
+  public OrderDailyStat(
+      LocalDate statDate,
+      OrderStatScope scope,
+      Long partyId,
+      OrderStatus status,
+      long orderCount,
+      BigDecimal totalAmount) {
+    this.statDate = statDate;
+    this.scope = scope;
+    this.partyId = partyId;
+    this.status = status;
+    this.orderCount = orderCount;
+    this.totalAmount = totalAmount != null ? totalAmount : BigDecimal.ZERO;
+  }
+}
@@ -1,6 +1,7 @@
 package com.yourcompany.agritrade.ordering.domain;
 
 import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.common.persistence.BlockSequenceId;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import lombok.Getter;
@@ -14,7 +15,7 @@ import lombok.Setter;
 @NoArgsConstructor
 public class OrderItem {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @BlockSequenceId(name = "order_items") // ID cấp theo khối để INSERT lúc checkout được gom batch
   private Long id;
 
   @ManyToOne(fetch = FetchType.LAZY, optional = false)
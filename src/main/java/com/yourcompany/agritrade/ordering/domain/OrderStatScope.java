@@ -0,0 +1,8 @@
+package com.yourcompany.agritrade.ordering.domain;
+
+/** Phạm vi của một dòng thống kê đơn hàng theo ngày. */
+public enum OrderStatScope {
+  ALL, // Toàn hệ thống (partyId = 0)
+  FARMER, // Theo người bán (partyId = farmer_id)
+  BUYER // Theo người mua (partyId = buyer_id)
+}
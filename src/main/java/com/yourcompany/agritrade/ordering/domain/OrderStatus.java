@@ -1,5 +1,7 @@
 package com.yourcompany.agritrade.ordering.domain;
 
+import java.util.Locale;
+
 public enum OrderStatus {
   PENDING,
   CONFIRMED,
@@ -8,5 +10,22 @@ public enum OrderStatus {
   DELIVERED,
   CANCELLED,
   RETURNED,
-  AWAITING_PAYMENT
+  AWAITING_PAYMENT;
+
+  /**
+   * Lấy OrderStatus từ tham số lọc (không phân biệt hoa thường).
+   *
+   * @param status Chuỗi trạng thái (ví dụ: "pending", "SHIPPING")
+   * @return OrderStatus tương ứng, hoặc null nếu rỗng hoặc không hợp lệ (bỏ qua bộ lọc).
+   */
+  public static OrderStatus fromString(String status) {
+    if (status == null || status.isBlank()) {
+      return null;
+    }
+    try {
+      return valueOf(status.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
 }
@@ -1,5 +1,6 @@
 package com.yourcompany.agritrade.ordering.domain;
 
+import com.yourcompany.agritrade.common.persistence.BlockSequenceId;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -12,20 +13,28 @@ import org.hibernate.annotations.UpdateTimestamp;
 @Entity
 @Table(
     name = "payments",
-    uniqueConstraints = {@UniqueConstraint(columnNames = "transactionCode")})
+    // Khóa idempotency của IPN: cổng gửi lại cùng giao dịch không tạo được bản ghi thứ hai
+    uniqueConstraints = {
+      @UniqueConstraint(
+          name = Payment.GATEWAY_TRANSACTION_KEY,
+          columnNames = {"paymentGateway", "transactionCode"})
+    })
 @Getter
 @Setter
 @NoArgsConstructor
 public class Payment {
+
+  public static final String GATEWAY_TRANSACTION_KEY = "uk_payments_gateway_transaction";
+
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @BlockSequenceId(name = "payments") // ID cấp theo khối để INSERT lúc checkout được gom batch
   private Long id;
 
   @ManyToOne(fetch = FetchType.LAZY, optional = false)
   @JoinColumn(name = "order_id", nullable = false)
   private Order order;
 
-  @Column(unique = true, length = 100)
+  @Column(length = 100)
   private String transactionCode; // Mã từ cổng thanh toán
 
   @Column(nullable = false, length = 50)
@@ -0,0 +1,28 @@
+package com.yourcompany.agritrade.ordering.domain;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/** Mốc thời gian (theo orders.updatedAt) mà job tổng hợp số liệu đã xử lý tới. */
+@Entity
+@Table(name = "stat_rollup_checkpoints")
+@Getter
+@Setter
+@NoArgsConstructor
+public class StatRollupCheckpoint {
+
+  @Id
+  @Column(length = 50)
+  private String name;
+
+  @Column(nullable = false)
+  private LocalDateTime processedUntil;
+
+  public StatRollupCheckpoint(String name, LocalDateTime processedUntil) {
+    this.name = name;
+    this.processedUntil = processedUntil;
+  }
+}
@@ -1,6 +1,7 @@
 package com.yourcompany.agritrade.ordering.repository;
 
 import com.yourcompany.agritrade.ordering.domain.CartItem;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -12,6 +13,24 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
 
   List<CartItem> findByUserId(Long userId);
 
+  // Giỏ hàng kèm sản phẩm, ảnh, farmer và danh mục trong một truy vấn (đủ để map
+  // ProductSummaryResponse). LEFT JOIN để item trỏ tới sản phẩm đã xóa mềm vẫn được trả về
+  @Query(
+      "SELECT DISTINCT ci FROM CartItem ci"
+          + " LEFT JOIN FETCH ci.product p"
+          + " LEFT JOIN FETCH p.images"
+          + " LEFT JOIN FETCH p.farmer f"
+          + " LEFT JOIN FETCH f.farmerProfile"
+          + " LEFT JOIN FETCH p.category"
+          + " WHERE ci.user.id = :userId ORDER BY ci.id")
+  List<CartItem> findCartViewByUserId(@Param("userId") Long userId);
+
+  // Giỏ hàng kèm sản phẩm (không cần ảnh/farmer), dùng khi kiểm tra giỏ trước checkout
+  @Query(
+      "SELECT ci FROM CartItem ci LEFT JOIN FETCH ci.product"
+          + " WHERE ci.user.id = :userId ORDER BY ci.id")
+  List<CartItem> findWithProductByUserId(@Param("userId") Long userId);
+
   Optional<CartItem> findByUserIdAndProductId(Long userId, Long productId);
 
   // Xóa tất cả item của user (ví dụ: sau khi checkout)
@@ -28,4 +47,18 @@ public interface CartItemRepository extends JpaRepository<CartItem, Long> {
       @Param("userId") Long userId,
       @Param("cartItemId") Long cartItemId,
       @Param("quantity") int quantity);
+
+  @Modifying
+  @Query("DELETE FROM CartItem c WHERE c.user.id = :userId AND c.id IN :ids")
+  int deleteByUserIdAndIdIn(@Param("userId") Long userId, @Param("ids") Collection<Long> ids);
+
+  // Chỉ giảm số lượng: nếu user đã tự giảm thấp hơn trong lúc chờ thì giữ nguyên
+  @Modifying
+  @Query(
+      "UPDATE CartItem c SET c.quantity = :quantity, c.updatedAt = CURRENT_TIMESTAMP"
+          + " WHERE c.id = :cartItemId AND c.user.id = :userId AND c.quantity > :quantity")
+  int capQuantityForUser(
+      @Param("userId") Long userId,
+      @Param("cartItemId") Long cartItemId,
+      @Param("quantity") int quantity);
 }
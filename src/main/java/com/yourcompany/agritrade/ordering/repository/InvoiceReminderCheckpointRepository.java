@@ -0,0 +1,7 @@
+package com.yourcompany.agritrade.ordering.repository;
+
+import com.yourcompany.agritrade.ordering.domain.InvoiceReminderCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface InvoiceReminderCheckpointRepository
+    extends JpaRepository<InvoiceReminderCheckpoint, String> {}
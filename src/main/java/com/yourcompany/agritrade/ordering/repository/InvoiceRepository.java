@@ -3,13 +3,17 @@ package com.yourcompany.agritrade.ordering.repository;
 
 import com.yourcompany.agritrade.ordering.domain.Invoice;
 import com.yourcompany.agritrade.ordering.domain.InvoiceStatus;
+import com.yourcompany.agritrade.ordering.repository.projection.InvoicePdfKey;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -18,19 +22,68 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
 
   Optional<Invoice> findByInvoiceNumber(String invoiceNumber);
 
-  // Query để lấy hóa đơn ISSUED quá hạn, fetch thêm order và buyer
+  /**
+   * Chuyển mọi hóa đơn ISSUED đã quá hạn sang OVERDUE bằng một câu UPDATE. {@code overdueMarkedOn}
+   * ghi lại ngày của lượt chạy để đọc lại đúng các id vừa chuyển (MySQL không có UPDATE ...
+   * RETURNING).
+   */
+  @Modifying
   @Query(
-      "SELECT i FROM Invoice i JOIN FETCH i.order o JOIN FETCH o.buyer b WHERE i.status = :status AND i.dueDate < :date")
-  List<Invoice> findWithDetailsByStatusAndDueDateBefore(
-      @Param("status") InvoiceStatus status, @Param("date") LocalDate date);
+      "UPDATE Invoice i SET i.status = com.yourcompany.agritrade.ordering.domain.InvoiceStatus.OVERDUE, "
+          + "i.overdueMarkedOn = :runDate, i.updatedAt = :now "
+          + "WHERE i.status = com.yourcompany.agritrade.ordering.domain.InvoiceStatus.ISSUED "
+          + "AND i.dueDate < :runDate")
+  int markOverdue(@Param("runDate") LocalDate runDate, @Param("now") LocalDateTime now);
 
-  // Query để lấy hóa đơn ISSUED sắp đến hạn, fetch thêm order và buyer
+  // Lô id tiếp theo (sau afterId) trong các hóa đơn lượt runDate đã chuyển sang OVERDUE
   @Query(
-      "SELECT i FROM Invoice i JOIN FETCH i.order o JOIN FETCH o.buyer b WHERE i.status = :status AND i.dueDate BETWEEN :startDate AND :endDate")
-  List<Invoice> findWithDetailsByStatusAndDueDateBetween(
+      "SELECT i.id FROM Invoice i WHERE i.overdueMarkedOn = :runDate "
+          + "AND i.status = com.yourcompany.agritrade.ordering.domain.InvoiceStatus.OVERDUE "
+          + "AND i.id > :afterId ORDER BY i.id")
+  List<Long> findIdsMarkedOverdueOn(
+      @Param("runDate") LocalDate runDate, @Param("afterId") Long afterId, Pageable pageable);
+
+  // Lô id tiếp theo (sau afterId) của hóa đơn theo trạng thái có hạn trong [startDate, endDate]
+  @Query(
+      "SELECT i.id FROM Invoice i WHERE i.status = :status "
+          + "AND i.dueDate BETWEEN :startDate AND :endDate "
+          + "AND i.id > :afterId ORDER BY i.id")
+  List<Long> findIdsByStatusAndDueDateBetween(
       @Param("status") InvoiceStatus status,
       @Param("startDate") LocalDate startDate,
-      @Param("endDate") LocalDate endDate);
+      @Param("endDate") LocalDate endDate,
+      @Param("afterId") Long afterId,
+      Pageable pageable);
+
+  // Nạp một lô hóa đơn kèm order và buyer để gửi nhắc
+  @Query(
+      "SELECT i FROM Invoice i JOIN FETCH i.order o JOIN FETCH o.buyer b "
+          + "WHERE i.id IN :ids ORDER BY i.id")
+  List<Invoice> findWithDetailsByIdIn(@Param("ids") Collection<Long> ids);
+
+  // Khóa cache PDF của hóa đơn, không nạp entity. LEFT JOIN: @Where của User bỏ user đã xóa mềm
+  @Query(
+      "SELECT new com.yourcompany.agritrade.ordering.repository.projection.InvoicePdfKey("
+          + "i.id, i.invoiceNumber, i.updatedAt, b.updatedAt, f.updatedAt) FROM Invoice i "
+          + "JOIN i.order o LEFT JOIN o.buyer b LEFT JOIN o.farmer f WHERE i.id = :id")
+  Optional<InvoicePdfKey> findPdfKeyById(@Param("id") Long id);
+
+  // Hóa đơn phát hành trong khoảng ngày (bỏ DRAFT), cho export ZIP
+  @Query(
+      "SELECT new com.yourcompany.agritrade.ordering.repository.projection.InvoicePdfKey("
+          + "i.id, i.invoiceNumber, i.updatedAt, b.updatedAt, f.updatedAt) FROM Invoice i "
+          + "JOIN i.order o LEFT JOIN o.buyer b LEFT JOIN o.farmer f "
+          + "WHERE i.issueDate BETWEEN :fromDate AND :toDate "
+          + "AND i.status <> com.yourcompany.agritrade.ordering.domain.InvoiceStatus.DRAFT "
+          + "ORDER BY i.id")
+  List<InvoicePdfKey> findPdfKeysByIssueDateBetween(
+      @Param("fromDate") LocalDate fromDate, @Param("toDate") LocalDate toDate, Pageable pageable);
+
+  // Chỉ những gì PDF hiển thị: order, buyer, farmer và các dòng hàng (không nạp product, payments)
+  @Query(
+      "SELECT DISTINCT i FROM Invoice i JOIN FETCH i.order o JOIN FETCH o.buyer "
+          + "JOIN FETCH o.farmer LEFT JOIN FETCH o.orderItems WHERE i.id = :id")
+  Optional<Invoice> findForPdfById(@Param("id") Long id);
 
   Page<Invoice> findByStatus(InvoiceStatus status, Pageable pageable);
 
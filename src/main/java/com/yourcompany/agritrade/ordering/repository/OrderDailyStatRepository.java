@@ -0,0 +1,92 @@
+package com.yourcompany.agritrade.ordering.repository;
+
+import com.yourcompany.agritrade.ordering.domain.OrderDailyStat;
+import com.yourcompany.agritrade.ordering.domain.OrderStatScope;
+import com.yourcompany.agritrade.ordering.domain.OrderStatus;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Truy vấn trên bảng số liệu đã tổng hợp theo ngày. Mọi truy vấn chỉ đọc tối đa (số ngày × số trạng
+ * thái) dòng cho một đối tượng, không phụ thuộc vào số lượng đơn hàng.
+ */
+public interface OrderDailyStatRepository extends JpaRepository<OrderDailyStat, Long> {
+
+  @Query(
+      "SELECT COALESCE(SUM(s.orderCount), 0) FROM OrderDailyStat s "
+          + "WHERE s.scope = :scope AND s.partyId = :partyId AND s.statDate BETWEEN :from AND :to")
+  long sumOrderCount(
+      @Param("scope") OrderStatScope scope,
+      @Param("partyId") Long partyId,
+      @Param("from") LocalDate from,
+      @Param("to") LocalDate to);
+
+  @Query(
+      "SELECT COALESCE(SUM(s.totalAmount), 0) FROM OrderDailyStat s "
+          + "WHERE s.scope = :scope AND s.partyId = :partyId AND s.status IN :statuses "
+          + "AND s.statDate BETWEEN :from AND :to")
+  BigDecimal sumTotalAmount(
+      @Param("scope") OrderStatScope scope,
+      @Param("partyId") Long partyId,
+      @Param("statuses") List<OrderStatus> statuses,
+      @Param("from") LocalDate from,
+      @Param("to") LocalDate to);
+
+  // Phân bổ số đơn theo trạng thái hiện tại (mọi ngày). Trả về [OrderStatus, Long]
+  @Query(
+      "SELECT s.status, SUM(s.orderCount) FROM OrderDailyStat s "
+          + "WHERE s.scope = :scope AND s.partyId = :partyId "
+          + "GROUP BY s.status")
+  List<Object[]> sumOrderCountGroupByStatus(
+      @Param("scope") OrderStatScope scope, @Param("partyId") Long partyId);
+
+  // Số đơn theo ngày. Trả về [LocalDate, Long]
+  @Query(
+      "SELECT s.statDate, SUM(s.orderCount) FROM OrderDailyStat s "
+          + "WHERE s.scope = :scope AND s.partyId = :partyId AND s.statDate BETWEEN :from AND :to "
+          + "GROUP BY s.statDate "
+          + "ORDER BY s.statDate ASC")
+  List<Object[]> findDailyOrderCounts(
+      @Param("scope") OrderStatScope scope,
+      @Param("partyId") Long partyId,
+      @Param("from") LocalDate from,
+      @Param("to") LocalDate to);
+
+  // Tổng tiền theo ngày, chỉ tính các trạng thái truyền vào. Trả về [LocalDate, BigDecimal]
+  @Query(
+      "SELECT s.statDate, SUM(s.totalAmount) FROM OrderDailyStat s "
+          + "WHERE s.scope = :scope AND s.partyId = :partyId AND s.status IN :statuses "
+          + "AND s.statDate BETWEEN :from AND :to "
+          + "GROUP BY s.statDate "
+          + "ORDER BY s.statDate ASC")
+  List<Object[]> findDailyTotalAmounts(
+      @Param("scope") OrderStatScope scope,
+      @Param("partyId") Long partyId,
+      @Param("statuses") List<OrderStatus> statuses,
+      @Param("from") LocalDate from,
+      @Param("to") LocalDate to);
+
+  // Top farmer/buyer theo tổng tiền trong khoảng ngày. Trả về [Long partyId, BigDecimal total]
+  @Query(
+      "SELECT s.partyId, SUM(s.totalAmount) as total FROM OrderDailyStat s "
+          + "WHERE s.scope = :scope AND s.status IN :statuses "
+          + "AND s.statDate BETWEEN :from AND :to "
+          + "GROUP BY s.partyId "
+          + "ORDER BY total DESC")
+  List<Object[]> findTopPartiesByTotalAmount(
+      @Param("scope") OrderStatScope scope,
+      @Param("statuses") List<OrderStatus> statuses,
+      @Param("from") LocalDate from,
+      @Param("to") LocalDate to,
+      Pageable pageable);
+
+  @Modifying
+  @Query("DELETE FROM OrderDailyStat s WHERE s.statDate = :statDate")
+  int deleteByStatDate(@Param("statDate") LocalDate statDate);
+}
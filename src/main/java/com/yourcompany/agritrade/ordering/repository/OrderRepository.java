@@ -2,6 +2,7 @@ package com.yourcompany.agritrade.ordering.repository;
 
 import com.yourcompany.agritrade.ordering.domain.Order;
 import com.yourcompany.agritrade.ordering.domain.OrderStatus;
+import com.yourcompany.agritrade.ordering.repository.projection.OrderPaymentTarget;
 import jakarta.persistence.Tuple;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -12,6 +13,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -67,6 +69,52 @@ public interface OrderRepository
       })
   Optional<Order> findByOrderCode(String orderCode); // Ghi đè findByOrderCode
 
+  // Đọc nhẹ cho IPN thanh toán: chỉ các cột cần để chuyển trạng thái, không nạp entity graph
+  @Query(
+      "SELECT new com.yourcompany.agritrade.ordering.repository.projection.OrderPaymentTarget("
+          + "o.id, o.orderCode, o.buyer.id, o.status, o.paymentStatus, o.totalAmount) "
+          + "FROM Order o WHERE o.orderCode = :orderCode")
+  Optional<OrderPaymentTarget> findPaymentTargetByOrderCode(@Param("orderCode") String orderCode);
+
+  /**
+   * Đánh dấu đơn đã thanh toán (đơn PENDING chuyển sang CONFIRMED) mà không đọc entity. Trả về 0
+   * nếu đơn đã PAID từ trước.
+   */
+  @Modifying
+  @Query(
+      "UPDATE Order o SET o.paymentStatus = com.yourcompany.agritrade.ordering.domain.PaymentStatus.PAID, "
+          + "o.status = CASE WHEN o.status = com.yourcompany.agritrade.ordering.domain.OrderStatus.PENDING "
+          + "THEN com.yourcompany.agritrade.ordering.domain.OrderStatus.CONFIRMED ELSE o.status END, "
+          + "o.updatedAt = :now "
+          + "WHERE o.id = :orderId "
+          + "AND o.paymentStatus <> com.yourcompany.agritrade.ordering.domain.PaymentStatus.PAID")
+  int markPaid(@Param("orderId") Long orderId, @Param("now") LocalDateTime now);
+
+  /**
+   * Chuyển đơn REFUND_PENDING đã hủy trước {@code cutoff} mà giao dịch gốc chưa được ghi nhận
+   * REFUND_REQUESTED sang REFUND_MANUAL_REQUIRED: node dừng (hoặc ghi kết quả lỗi) giữa lúc commit
+   * hủy đơn và lúc ghi kết quả hoàn tiền. Không tự gửi lại vì cổng có thể đã nhận yêu cầu.
+   */
+  @Modifying
+  @Query(
+      "UPDATE Order o SET o.paymentStatus = com.yourcompany.agritrade.ordering.domain.PaymentStatus.REFUND_MANUAL_REQUIRED, "
+          + "o.updatedAt = :now "
+          + "WHERE o.paymentStatus = com.yourcompany.agritrade.ordering.domain.PaymentStatus.REFUND_PENDING "
+          + "AND o.updatedAt < :cutoff "
+          + "AND NOT EXISTS (SELECT p.id FROM Payment p WHERE p.order = o "
+          + "AND p.status = com.yourcompany.agritrade.ordering.domain.PaymentTransactionStatus.REFUND_REQUESTED)")
+  int markStaleRefundsManualRequired(
+      @Param("cutoff") LocalDateTime cutoff, @Param("now") LocalDateTime now);
+
+  // Đánh dấu thanh toán thất bại, chỉ khi đơn vẫn đang chờ thanh toán (không ghi đè PAID/hoàn tiền)
+  @Modifying
+  @Query(
+      "UPDATE Order o SET o.paymentStatus = com.yourcompany.agritrade.ordering.domain.PaymentStatus.FAILED, "
+          + "o.updatedAt = :now "
+          + "WHERE o.id = :orderId "
+          + "AND o.paymentStatus = com.yourcompany.agritrade.ordering.domain.PaymentStatus.PENDING")
+  int markPaymentFailed(@Param("orderId") Long orderId, @Param("now") LocalDateTime now);
+
   // Tìm đơn hàng theo ID và Buyer ID (kiểm tra ownership)
   Optional<Order> findByIdAndBuyerId(Long orderId, Long buyerId);
 
@@ -225,4 +273,37 @@ public interface OrderRepository
       @Param("start") LocalDateTime start,
       @Param("end") LocalDateTime end,
       Pageable pageable);
+
+  // ===== NGUỒN DỮ LIỆU CHO BẢNG TỔNG HỢP order_daily_stats =====
+
+  /** Các ngày tạo đơn có đơn hàng thay đổi từ mốc {@code since} (null = mọi đơn hàng). */
+  @Query(
+      "SELECT DISTINCT FUNCTION('DATE', o.createdAt) FROM Order o "
+          + "WHERE :since IS NULL OR o.updatedAt >= :since")
+  List<Object> findDistinctCreatedDatesUpdatedSince(@Param("since") LocalDateTime since);
+
+  // Số đơn và tổng tiền theo trạng thái của các đơn tạo trong [start, end). Trả về [OrderStatus,
+  // Long, BigDecimal]
+  @Query(
+      "SELECT o.status, COUNT(o.id), COALESCE(SUM(o.totalAmount), 0) FROM Order o "
+          + "WHERE o.createdAt >= :start AND o.createdAt < :end "
+          + "GROUP BY o.status")
+  List<Object[]> aggregateByStatusCreatedBetween(
+      @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+  // Như trên nhưng tách theo farmer. Trả về [Long farmerId, OrderStatus, Long, BigDecimal]
+  @Query(
+      "SELECT o.farmer.id, o.status, COUNT(o.id), COALESCE(SUM(o.totalAmount), 0) FROM Order o "
+          + "WHERE o.createdAt >= :start AND o.createdAt < :end "
+          + "GROUP BY o.farmer.id, o.status")
+  List<Object[]> aggregateByFarmerAndStatusCreatedBetween(
+      @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+  // Như trên nhưng tách theo buyer. Trả về [Long buyerId, OrderStatus, Long, BigDecimal]
+  @Query(
+      "SELECT o.buyer.id, o.status, COUNT(o.id), COALESCE(SUM(o.totalAmount), 0) FROM Order o "
+          + "WHERE o.createdAt >= :start AND o.createdAt < :end "
+          + "GROUP BY o.buyer.id, o.status")
+  List<Object[]> aggregateByBuyerAndStatusCreatedBetween(
+      @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 }
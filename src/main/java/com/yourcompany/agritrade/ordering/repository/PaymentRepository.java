@@ -1,12 +1,46 @@
 package com.yourcompany.agritrade.ordering.repository;
 
 import com.yourcompany.agritrade.ordering.domain.Payment;
+import com.yourcompany.agritrade.ordering.domain.PaymentTransactionStatus;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
   List<Payment> findByOrderId(Long orderId);
 
-  Optional<Payment> findByTransactionCode(String transactionCode);
+  // Khóa idempotency của IPN: mỗi (cổng, mã giao dịch) chỉ được ghi nhận một lần
+  boolean existsByPaymentGatewayInAndTransactionCode(
+      Collection<String> paymentGateways, String transactionCode);
+
+  // Id các payment PENDING của đơn, cũ nhất trước
+  @Query(
+      "SELECT p.id FROM Payment p WHERE p.order.id = :orderId "
+          + "AND p.status = com.yourcompany.agritrade.ordering.domain.PaymentTransactionStatus.PENDING "
+          + "ORDER BY p.id")
+  List<Long> findPendingPaymentIdsByOrderId(@Param("orderId") Long orderId);
+
+  /**
+   * Chuyển một payment từ PENDING sang kết quả của cổng bằng UPDATE có điều kiện. Khi nhiều IPN
+   * trùng chạy song song, chỉ một lần cập nhật trả về 1; các lần còn lại trả về 0.
+   */
+  @Modifying
+  @Query(
+      "UPDATE Payment p SET p.status = :status, p.paymentGateway = :gateway, "
+          + "p.transactionCode = :transactionCode, p.paymentTime = :paymentTime, "
+          + "p.gatewayMessage = :message, p.updatedAt = :now "
+          + "WHERE p.id = :paymentId "
+          + "AND p.status = com.yourcompany.agritrade.ordering.domain.PaymentTransactionStatus.PENDING")
+  int completePendingPayment(
+      @Param("paymentId") Long paymentId,
+      @Param("status") PaymentTransactionStatus status,
+      @Param("gateway") String gateway,
+      @Param("transactionCode") String transactionCode,
+      @Param("paymentTime") LocalDateTime paymentTime,
+      @Param("message") String message,
+      @Param("now") LocalDateTime now);
 }
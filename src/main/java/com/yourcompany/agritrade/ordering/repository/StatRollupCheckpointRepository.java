@@ -0,0 +1,18 @@
+package com.yourcompany.agritrade.ordering.repository;
+
+import com.yourcompany.agritrade.ordering.domain.StatRollupCheckpoint;
+import jakarta.persistence.LockModeType;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface StatRollupCheckpointRepository
+    extends JpaRepository<StatRollupCheckpoint, String> {
+
+  /** Khóa dòng checkpoint để chỉ một node chạy job tổng hợp tại một thời điểm. */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT c FROM StatRollupCheckpoint c WHERE c.name = :name")
+  Optional<StatRollupCheckpoint> findByNameForUpdate(@Param("name") String name);
+}
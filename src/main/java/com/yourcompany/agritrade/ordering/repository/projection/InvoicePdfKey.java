@@ -0,0 +1,15 @@
+package com.yourcompany.agritrade.ordering.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Đủ để xác định bản PDF đã render của một hóa đơn (số hóa đơn + phiên bản theo {@code updatedAt}
+ * của hóa đơn, buyer và farmer, vì PDF in họ tên hai bên) mà không phải nạp order, buyer, farmer và
+ * các dòng hàng.
+ */
+public record InvoicePdfKey(
+    Long id,
+    String invoiceNumber,
+    LocalDateTime updatedAt,
+    LocalDateTime buyerUpdatedAt,
+    LocalDateTime farmerUpdatedAt) {}
@@ -0,0 +1,17 @@
+package com.yourcompany.agritrade.ordering.repository.projection;
+
+import com.yourcompany.agritrade.ordering.domain.OrderStatus;
+import com.yourcompany.agritrade.ordering.domain.PaymentStatus;
+import java.math.BigDecimal;
+
+/**
+ * Các cột của đơn hàng mà luồng IPN thanh toán cần, đọc bằng constructor expression thay vì nạp
+ * entity {@code Order} cùng entity graph (buyer, farmer, items, payments).
+ */
+public record OrderPaymentTarget(
+    Long id,
+    String orderCode,
+    Long buyerId,
+    OrderStatus status,
+    PaymentStatus paymentStatus,
+    BigDecimal totalAmount) {}
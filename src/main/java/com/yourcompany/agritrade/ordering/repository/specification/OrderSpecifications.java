@@ -5,6 +5,7 @@ import com.yourcompany.agritrade.ordering.domain.Order;
 import com.yourcompany.agritrade.usermanagement.domain.FarmerProfile;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import jakarta.persistence.criteria.*;
+import java.time.LocalDateTime;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.util.StringUtils;
 
@@ -178,4 +179,22 @@ public class OrderSpecifications {
       return criteriaBuilder.equal(root.get("orderType"), orderType);
     };
   }
+
+  /**
+   * Lọc các đơn hàng đứng sau con trỏ keyset khi sắp xếp (createdAt DESC, id DESC): (createdAt <
+   * c.createdAt) OR (createdAt = c.createdAt AND id < c.id).
+   */
+  public static Specification<Order> beforeCursor(LocalDateTime createdAt, Long id) {
+    return (root, query, criteriaBuilder) -> {
+      if (createdAt == null || id == null) {
+        return criteriaBuilder.conjunction(); // Trang đầu tiên
+      }
+      Path<LocalDateTime> createdAtPath = root.get("createdAt");
+      return criteriaBuilder.or(
+          criteriaBuilder.lessThan(createdAtPath, createdAt),
+          criteriaBuilder.and(
+              criteriaBuilder.equal(createdAtPath, createdAt),
+              criteriaBuilder.lessThan(root.get("id"), id)));
+    };
+  }
 }
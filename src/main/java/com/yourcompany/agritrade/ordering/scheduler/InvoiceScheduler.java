@@ -1,106 +1,68 @@
 package com.yourcompany.agritrade.ordering.scheduler;
 
-import com.yourcompany.agritrade.common.model.RoleType;
-import com.yourcompany.agritrade.notification.service.EmailService;
-import com.yourcompany.agritrade.notification.service.NotificationService;
-import com.yourcompany.agritrade.ordering.domain.Invoice;
-import com.yourcompany.agritrade.ordering.domain.InvoiceStatus;
-import com.yourcompany.agritrade.ordering.repository.InvoiceRepository;
-import com.yourcompany.agritrade.usermanagement.domain.User;
-import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import com.yourcompany.agritrade.common.service.SchedulerLockService;
+import com.yourcompany.agritrade.ordering.service.InvoiceReminderService;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.util.List;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class InvoiceScheduler {
 
-  private final InvoiceRepository invoiceRepository;
-  private final NotificationService notificationService;
-  private final EmailService emailService;
-  private final UserRepository userRepository;
+  static final String LOCK_NAME = "invoice-reminders";
 
-  @Value("${app.scheduler.invoice.cron}")
-  private String invoiceSchedulerCron;
+  private final InvoiceReminderService invoiceReminderService;
+  private final SchedulerLockService schedulerLockService;
 
-  @Value("${app.scheduler.invoice.due_soon_days_before:3}")
-  private int dueSoonDaysBefore;
+  @Value("${app.scheduler.invoice.lock_at_most_for_minutes:120}")
+  private long lockAtMostForMinutes;
 
-  @Value("${app.scheduler.invoice.overdue_admin_notify_after_days:7}")
-  private int overdueAdminNotifyAfterDays;
+  @Value("${app.scheduler.invoice.lock_at_least_for_minutes:5}")
+  private long lockAtLeastForMinutes;
 
+  // Chỉ một node chạy mỗi lượt; lượt bị dừng giữa chừng được chạy tiếp từ checkpoint
   @Scheduled(cron = "${app.scheduler.invoice.cron}")
-  @Transactional
   public void checkInvoicesAndSendReminders() {
     log.info("Scheduled task: Checking invoices and sending reminders - START");
-    LocalDate today = LocalDate.now();
-
-    // 1. Xử lý hóa đơn ISSUED đã quá hạn
-    List<Invoice> newlyOverdueInvoices =
-        invoiceRepository.findWithDetailsByStatusAndDueDateBefore(InvoiceStatus.ISSUED, today);
-    for (Invoice invoice : newlyOverdueInvoices) {
-      log.warn(
-          "Invoice {} for order {} is overdue (Due date: {}). Marking as OVERDUE.",
-          invoice.getInvoiceNumber(),
-          invoice.getOrder().getOrderCode(),
-          invoice.getDueDate());
-      invoice.setStatus(InvoiceStatus.OVERDUE);
-
-      User buyer = invoice.getOrder().getBuyer();
-      if (buyer != null) {
-        notificationService.sendOverdueInvoiceReminderToBuyer(invoice);
-        emailService.sendOverdueInvoiceReminderEmail(invoice); // Gửi email
-      }
-    }
-    if (!newlyOverdueInvoices.isEmpty()) {
-      invoiceRepository.saveAll(newlyOverdueInvoices); // Lưu tất cả thay đổi trạng thái
-      log.info(
-          "Marked {} invoices as OVERDUE and sent buyer reminders.", newlyOverdueInvoices.size());
-    }
-
-    // 2. Gửi thông báo cho Admin về các hóa đơn OVERDUE (có thể có ngưỡng ngày quá hạn)
-    LocalDate adminNotifyThresholdDate = today.minusDays(overdueAdminNotifyAfterDays);
+    runExclusively();
+    log.info("Scheduled task: Checking invoices and sending reminders - END");
+  }
 
-    if (!newlyOverdueInvoices.isEmpty()) {
-      List<User> admins = userRepository.findByRoles_Name(RoleType.ROLE_ADMIN);
-      if (!admins.isEmpty()) {
-        for (Invoice invoice : newlyOverdueInvoices) { // Chỉ thông báo cho những cái mới quá hạn
-          notificationService.sendOverdueInvoiceNotificationToAdmin(invoice);
-          emailService.sendOverdueInvoiceAdminEmail(invoice, admins); // Gửi email cho admin
-        }
-        log.info(
-            "Sent admin notifications for {} newly overdue invoices.", newlyOverdueInvoices.size());
+  // Chạy tiếp lượt hôm nay nếu node chạy trước đó đã dừng giữa chừng (sau khi khóa của nó hết hạn)
+  @Scheduled(
+      fixedDelayString = "${app.scheduler.invoice.resume_check_interval_ms:900000}",
+      initialDelayString = "${app.scheduler.invoice.resume_check_initial_delay_ms:60000}")
+  public void resumeUnfinishedRun() {
+    try {
+      if (invoiceReminderService.hasUnfinishedRun(LocalDate.now())) {
+        log.info("Scheduled task: Resuming unfinished invoice reminder run");
+        runExclusively();
       }
+    } catch (Exception e) {
+      log.error("Scheduled task: failed to check invoice reminder progress: {}", e.getMessage(), e);
     }
+  }
 
-    // 3. Xử lý hóa đơn ISSUED sắp đến hạn
-    LocalDate reminderDateThreshold = today.plusDays(dueSoonDaysBefore);
-    List<Invoice> dueSoonInvoices =
-        invoiceRepository.findWithDetailsByStatusAndDueDateBetween(
-            InvoiceStatus.ISSUED, today, reminderDateThreshold);
-    for (Invoice invoice : dueSoonInvoices) {
-      log.info(
-          "Invoice {} for order {} is due soon (Due date: {}). Sending reminder.",
-          invoice.getInvoiceNumber(),
-          invoice.getOrder().getOrderCode(),
-          invoice.getDueDate());
-      User buyer = invoice.getOrder().getBuyer();
-      if (buyer != null) {
-        notificationService.sendDueSoonInvoiceReminderToBuyer(invoice);
-        emailService.sendDueSoonInvoiceReminderEmail(invoice); // Gửi email
+  private void runExclusively() {
+    try {
+      boolean ran =
+          schedulerLockService.runExclusively(
+              LOCK_NAME,
+              Duration.ofMinutes(lockAtMostForMinutes),
+              Duration.ofMinutes(lockAtLeastForMinutes),
+              () -> invoiceReminderService.sendReminders(LocalDate.now()));
+      if (!ran) {
+        log.info("Invoice reminders are running on another node, skipping");
       }
+    } catch (Exception e) {
+      // Checkpoint giữ nguyên tại lô lỗi, lần kiểm tra sau sẽ chạy tiếp
+      log.error("Scheduled task: invoice reminders failed: {}", e.getMessage(), e);
     }
-    if (!dueSoonInvoices.isEmpty()) {
-      log.info("Sent {} due soon reminders.", dueSoonInvoices.size());
-    }
-
-    log.info("Scheduled task: Checking invoices and sending reminders - END");
   }
 }
@@ -0,0 +1,34 @@
+package com.yourcompany.agritrade.ordering.scheduler;
+
+import com.yourcompany.agritrade.ordering.service.OrderService;
+import java.time.Duration;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RefundReconciliationScheduler {
+
+  private final OrderService orderService;
+
+  // Phải lớn hơn nhiều so với thời gian chờ tối đa của một lần gọi cổng hoàn tiền
+  @Value("${app.scheduler.refund.stale-after-minutes:15}")
+  private long staleAfterMinutes;
+
+  // Đơn hủy kẹt ở REFUND_PENDING (node dừng giữa lúc hủy và lúc ghi kết quả) được chuyển cho admin
+  @Scheduled(
+      fixedDelayString = "${app.scheduler.refund.reconcile-interval-ms:300000}",
+      initialDelayString = "${app.scheduler.refund.reconcile-initial-delay-ms:60000}")
+  public void flagStaleRefunds() {
+    try {
+      orderService.flagStaleRefundsForManualReview(Duration.ofMinutes(staleAfterMinutes));
+    } catch (Exception e) {
+      // Câu lệnh chỉ đổi trạng thái có điều kiện, lượt sau chạy lại an toàn
+      log.error("Scheduled task: failed to flag stale refunds: {}", e.getMessage(), e);
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package com.yourcompany.agritrade.ordering.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Ghi xuống DB các điều chỉnh giỏ hàng phát hiện khi đối soát với sản phẩm (xóa item không còn bán,
+ * giảm số lượng vượt tồn kho). Các câu lệnh đều có điều kiện nên chạy lại nhiều lần vẫn an toàn.
+ */
+public interface CartAdjustmentService {
+
+  /**
+   * Áp dụng điều chỉnh trong transaction hiện tại (hoặc transaction mới nếu chưa có).
+   *
+   * @param userId Chủ giỏ hàng; chỉ item của user này bị thay đổi.
+   * @param cartItemIdsToRemove Id các CartItem cần xóa.
+   * @param quantityCaps cartItemId -> số lượng tối đa; chỉ giảm, không bao giờ tăng số lượng.
+   */
+  void applyAdjustments(
+      Long userId, Collection<Long> cartItemIdsToRemove, Map<Long, Integer> quantityCaps);
+
+  /** Như {@link #applyAdjustments} nhưng chạy nền, dùng cho các API chỉ đọc như xem giỏ hàng. */
+  void applyAdjustmentsAsync(
+      Long userId, Collection<Long> cartItemIdsToRemove, Map<Long, Integer> quantityCaps);
+}
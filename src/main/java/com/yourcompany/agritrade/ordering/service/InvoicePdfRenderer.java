@@ -0,0 +1,40 @@
+package com.yourcompany.agritrade.ordering.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Dựng PDF hóa đơn từ dữ liệu đã tách khỏi entity. Font được nạp một lần khi khởi động và dùng
+ * chung cho mọi lần render, nên có thể gọi song song từ nhiều thread.
+ */
+public interface InvoicePdfRenderer {
+
+  /** Tăng khi đổi bố cục PDF để các bản đã lưu theo bố cục cũ không còn được dùng lại. */
+  int LAYOUT_REVISION = 1;
+
+  record InvoicePdfData(
+      String invoiceNumber,
+      LocalDate issueDate,
+      String sellerName,
+      String buyerName,
+      List<Line> lines,
+      BigDecimal subTotal,
+      BigDecimal shippingFee,
+      BigDecimal discountAmount,
+      BigDecimal totalAmount) {}
+
+  record Line(
+      String productName,
+      String unit,
+      int quantity,
+      BigDecimal pricePerUnit,
+      BigDecimal totalPrice) {}
+
+  /**
+   * Ghi PDF ra {@code out}; không đóng {@code out} để nơi gọi có thể ghi tiếp (ví dụ entry ZIP).
+   */
+  void render(InvoicePdfData data, OutputStream out) throws IOException;
+}
@@ -0,0 +1,34 @@
+package com.yourcompany.agritrade.ordering.service;
+
+import com.yourcompany.agritrade.ordering.repository.projection.InvoicePdfKey;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.List;
+import org.springframework.core.io.Resource;
+
+/**
+ * PDF hóa đơn. Hóa đơn không đổi sau khi phát hành nên mỗi phiên bản (số hóa đơn + {@code
+ * updatedAt} + {@link InvoicePdfRenderer#LAYOUT_REVISION}) chỉ được render một lần; các lần tải sau
+ * stream thẳng file trong {@link InvoicePdfStore}.
+ */
+public interface InvoicePdfService {
+
+  record InvoicePdf(String invoiceNumber, Resource content) {}
+
+  /** Lấy PDF của hóa đơn, render nếu phiên bản hiện tại chưa có trong store. */
+  InvoicePdf getInvoicePdf(Long invoiceId);
+
+  /**
+   * Các hóa đơn (trừ DRAFT) phát hành trong [fromDate, toDate] để xuất ZIP. Ném {@code
+   * BadRequestException} khi khoảng ngày không hợp lệ hoặc có quá nhiều hóa đơn, trước khi bắt đầu
+   * ghi response.
+   */
+  List<InvoicePdfKey> findInvoicesForExport(LocalDate fromDate, LocalDate toDate);
+
+  /**
+   * Ghi file ZIP chứa PDF của các hóa đơn ra {@code out} theo thứ tự danh sách, render song song
+   * những bản chưa có trong store. Không đóng {@code out}.
+   */
+  void writeInvoicesZip(List<InvoicePdfKey> invoices, OutputStream out) throws IOException;
+}
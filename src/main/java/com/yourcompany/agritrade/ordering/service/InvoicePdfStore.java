@@ -0,0 +1,26 @@
+package com.yourcompany.agritrade.ordering.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.springframework.core.io.Resource;
+
+/**
+ * Nơi lưu các bản PDF hóa đơn đã render, theo khóa (số hóa đơn, phiên bản). Mỗi hóa đơn chỉ giữ
+ * phiên bản mới nhất. Bản cài đặt hiện tại lưu trên đĩa cục bộ; có thể thay bằng object storage mà
+ * không phải sửa luồng render.
+ */
+public interface InvoicePdfStore {
+
+  /** Bản PDF đã lưu đúng phiên bản, nếu có. */
+  Optional<Resource> find(String invoiceNumber, String version);
+
+  /** File tạm để renderer ghi vào trước khi {@link #save}. */
+  Path createTempFile() throws IOException;
+
+  /**
+   * Chuyển file vừa render vào store (file tạm không còn dùng được sau lời gọi) và xóa các phiên
+   * bản cũ của hóa đơn.
+   */
+  Resource save(String invoiceNumber, String version, Path renderedFile) throws IOException;
+}
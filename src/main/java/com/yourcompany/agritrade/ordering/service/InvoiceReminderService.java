@@ -0,0 +1,33 @@
+package com.yourcompany.agritrade.ordering.service;
+
+import java.time.LocalDate;
+
+/**
+ * Lượt nhắc hạn hóa đơn hằng ngày: chuyển hóa đơn ISSUED quá hạn sang OVERDUE, nhắc buyer/admin về
+ * các hóa đơn vừa quá hạn, rồi nhắc buyer về các hóa đơn sắp đến hạn.
+ *
+ * <p>Hóa đơn được xử lý theo lô id tăng dần, mỗi lô một transaction ngắn. Thông báo và email được
+ * ghi vào outbox cùng transaction với checkpoint của lô, nên lượt bị dừng giữa chừng tiếp tục từ lô
+ * kế tiếp mà không nhắc trùng hay bỏ sót. Lô bị lỗi được chạy lại từng hóa đơn một; hóa đơn vẫn lỗi
+ * được ghi log, đếm vào {@code failedReminders} và bỏ qua để checkpoint tiếp tục tiến.
+ */
+public interface InvoiceReminderService {
+
+  /** Kết quả một lượt chạy (các số đếm chỉ tính phần chạy trong lần gọi này). */
+  record RunResult(
+      LocalDate runDate,
+      int markedOverdue,
+      int overdueReminders,
+      int dueSoonReminders,
+      int failedReminders,
+      boolean resumed) {}
+
+  /**
+   * Chạy (hoặc chạy tiếp) lượt nhắc của ngày {@code today}. Không làm gì nếu lượt của ngày này đã
+   * xong.
+   */
+  RunResult sendReminders(LocalDate today);
+
+  /** Lượt của ngày {@code today} đã bắt đầu nhưng chưa chạy xong. */
+  boolean hasUnfinishedRun(LocalDate today);
+}
@@ -0,0 +1,11 @@
+package com.yourcompany.agritrade.ordering.service;
+
+/**
+ * Sinh mã đơn hàng dễ đọc và không trùng giữa các node. Tách khỏi {@link OrderService} để có thể
+ * thay nguồn cấp số (DB, Redis...) mà không đụng luồng đặt hàng.
+ */
+public interface OrderCodeGenerator {
+
+  /** Mã đơn hàng mới, dạng {@code AGT{yyMMdd}-{số thứ tự trong ngày}}, vd AGT260117-00042. */
+  String nextOrderCode();
+}
@@ -1,5 +1,7 @@
 package com.yourcompany.agritrade.ordering.service;
 
+import com.yourcompany.agritrade.common.dto.response.CursorPageResponse;
+import com.yourcompany.agritrade.common.model.ExportFormat;
 import com.yourcompany.agritrade.ordering.domain.OrderStatus;
 import com.yourcompany.agritrade.ordering.domain.OrderType;
 import com.yourcompany.agritrade.ordering.domain.PaymentMethod;
@@ -7,6 +9,9 @@ import com.yourcompany.agritrade.ordering.domain.PaymentStatus;
 import com.yourcompany.agritrade.ordering.dto.request.*;
 import com.yourcompany.agritrade.ordering.dto.response.*;
 import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -48,6 +53,41 @@ public interface OrderService {
       Long farmerId,
       Pageable pageable);
 
+  /**
+   * Các biến thể phân trang theo con trỏ (keyset trên createdAt, id) của 3 API danh sách ở trên:
+   * không chạy truy vấn count và không dùng OFFSET nên chi phí mỗi trang không tăng theo độ sâu.
+   */
+  CursorPageResponse<OrderSummaryResponse> getMyOrdersAsBuyerByCursor(
+      Authentication authentication,
+      String keyword,
+      OrderStatus status,
+      PaymentMethod paymentMethod,
+      PaymentStatus paymentStatus,
+      OrderType orderType,
+      String cursor,
+      int size);
+
+  CursorPageResponse<OrderSummaryResponse> getMyOrdersAsFarmerByCursor(
+      Authentication authentication,
+      String keyword,
+      OrderStatus status,
+      PaymentMethod paymentMethod,
+      PaymentStatus paymentStatus,
+      OrderType orderType,
+      String cursor,
+      int size);
+
+  CursorPageResponse<OrderSummaryResponse> getAllOrdersForAdminByCursor(
+      String keyword,
+      OrderStatus status,
+      PaymentMethod paymentMethod,
+      PaymentStatus paymentStatus,
+      OrderType orderType,
+      Long buyerId,
+      Long farmerId,
+      String cursor,
+      int size);
+
   /** Lấy chi tiết đơn hàng theo ID (kiểm tra quyền truy cập) */
   OrderResponse getOrderDetails(Authentication authentication, Long orderId);
 
@@ -64,6 +104,14 @@ public interface OrderService {
   /** Hủy đơn hàng (cho Buyer hoặc Admin, tùy trạng thái) */
   OrderResponse cancelOrder(Authentication authentication, Long orderId);
 
+  /**
+   * Chuyển các đơn đã hủy còn REFUND_PENDING quá {@code olderThan} mà chưa ghi nhận yêu cầu hoàn
+   * tiền tới cổng sang REFUND_MANUAL_REQUIRED để admin đối soát.
+   *
+   * @return Số đơn đã chuyển.
+   */
+  int flagStaleRefundsForManualReview(Duration olderThan);
+
   OrderCalculationResponse calculateOrderTotals(
       Authentication authentication, OrderCalculationRequest request);
 
@@ -90,13 +138,19 @@ public interface OrderService {
   void processBuyerPaymentNotification(
       Long orderId, PaymentNotificationRequest request, Authentication authentication);
 
-  // Thêm phương thức mới
-  List<OrderSummaryResponse> getAllOrdersForAdminExport(
+  /**
+   * Xuất toàn bộ đơn hàng khớp bộ lọc ra out (XLSX hoặc CSV) theo kiểu streaming: đọc từng dòng từ
+   * DB và ghi thẳng ra response, không giữ toàn bộ danh sách trong bộ nhớ.
+   */
+  void exportOrdersForAdmin(
       String keyword,
       OrderStatus status,
       PaymentMethod paymentMethod,
       PaymentStatus paymentStatus,
       Long buyerId,
       Long farmerId,
-      OrderType orderType);
+      OrderType orderType,
+      ExportFormat format,
+      OutputStream out)
+      throws IOException;
 }
@@ -0,0 +1,24 @@
+package com.yourcompany.agritrade.ordering.service;
+
+import java.time.LocalDate;
+
+/**
+ * Duy trì bảng số liệu đơn hàng tổng hợp theo ngày ({@code order_daily_stats}) phục vụ dashboard.
+ *
+ * <p>Mỗi ngày được dựng lại trọn vẹn từ bảng orders (xóa rồi ghi lại), nên việc chạy lặp là an
+ * toàn. Job định kỳ chỉ dựng lại những ngày có đơn hàng được tạo hoặc đổi trạng thái kể từ lần chạy
+ * trước, vì vậy dashboard trễ tối đa một chu kỳ job.
+ */
+public interface OrderStatsRollupService {
+
+  /**
+   * Dựng lại các ngày có đơn hàng thay đổi kể từ checkpoint. Lần chạy đầu tiên (chưa có checkpoint)
+   * sẽ dựng lại toàn bộ lịch sử.
+   *
+   * @return Số ngày đã được dựng lại.
+   */
+  int refreshChangedDays();
+
+  /** Dựng lại số liệu của một ngày tạo đơn. */
+  void rebuildDay(LocalDate day);
+}
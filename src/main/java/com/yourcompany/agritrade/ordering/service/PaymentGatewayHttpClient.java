@@ -0,0 +1,32 @@
+package com.yourcompany.agritrade.ordering.service;
+
+import com.yourcompany.agritrade.ordering.domain.PaymentMethod;
+import java.util.Map;
+
+/**
+ * HTTP client dùng chung cho các cổng thanh toán: pool kết nối keep-alive, timeout riêng từng cổng,
+ * bulkhead giới hạn số lời gọi đồng thời và circuit breaker ngắt nhanh khi cổng liên tục lỗi. Nơi
+ * gọi không được giữ transaction DB trong lúc gọi.
+ */
+public interface PaymentGatewayHttpClient {
+
+  /** Số liệu của một cổng trên node hiện tại. */
+  record GatewayStats(
+      long calls,
+      long failures,
+      long bulkheadRejections,
+      long circuitRejections,
+      String circuitState,
+      int inFlight) {}
+
+  /**
+   * POST body dạng JSON tới cổng và đọc body phản hồi.
+   *
+   * @throws com.yourcompany.agritrade.common.exception.PaymentGatewayUnavailableException khi
+   *     bulkhead đầy, circuit breaker đang mở, hết thời gian chờ, lỗi kết nối hoặc cổng trả về 5xx.
+   * @throws org.springframework.web.client.HttpClientErrorException khi cổng trả về 4xx.
+   */
+  <T> T postJson(PaymentMethod gateway, String url, Object body, Class<T> responseType);
+
+  Map<PaymentMethod, GatewayStats> getStats();
+}
@@ -0,0 +1,41 @@
+package com.yourcompany.agritrade.ordering.service;
+
+import com.yourcompany.agritrade.catalog.domain.Product;
+import java.util.Collection;
+import java.util.Map;
+
+public interface StockReservationService {
+
+  /**
+   * Tải và khóa các sản phẩm trong một truy vấn duy nhất (theo thứ tự id). Phải được gọi bên trong
+   * transaction đang chạy; khóa được giữ đến khi transaction kết thúc. Sản phẩm ở chế độ hot stock
+   * được tải mà không khóa hàng (tồn kho của chúng được giữ chỗ trong ledger Redis).
+   *
+   * @return Map productId -> Product. Sản phẩm không tồn tại/đã xóa sẽ không có trong map.
+   */
+  Map<Long, Product> lockProducts(Collection<Long> productIds);
+
+  /**
+   * Tồn kho khả dụng của các sản phẩm đã tải bằng {@link #lockProducts}: lấy từ ledger với sản phẩm
+   * hot stock, từ entity với các sản phẩm còn lại.
+   */
+  Map<Long, Integer> getAvailableStock(Map<Long, Product> lockedProducts);
+
+  /**
+   * Trừ tồn kho cho các sản phẩm đã tải bằng {@link #lockProducts}. Sản phẩm thường được ghi trong
+   * một lần flush (một JDBC batch); sản phẩm hot stock được giữ chỗ nguyên tử trong ledger và tự
+   * hoàn lại nếu transaction rollback.
+   *
+   * @param lockedProducts Kết quả của {@link #lockProducts}.
+   * @param quantitiesByProductId Số lượng cần trừ cho từng sản phẩm.
+   */
+  void deductStock(Map<Long, Product> lockedProducts, Map<Long, Integer> quantitiesByProductId);
+
+  /**
+   * Hoàn kho cho sản phẩm hot stock (hủy đơn): cộng lại vào ledger sau khi transaction commit.
+   *
+   * @return true nếu sản phẩm do ledger quản lý và đã được lên lịch hoàn kho; false nếu người gọi
+   *     cần tự hoàn kho trong DB.
+   */
+  boolean restoreHotStock(Product product, int quantity);
+}
@@ -0,0 +1,76 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import com.yourcompany.agritrade.common.service.IdBlockAllocator;
+import com.yourcompany.agritrade.common.util.PooledIdSequence;
+import com.yourcompany.agritrade.ordering.service.OrderCodeGenerator;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Mã đơn hàng = tiền tố + ngày + số thứ tự trong ngày. Số thứ tự lấy theo khối từ {@link
+ * IdBlockAllocator} với một dãy riêng cho mỗi ngày ({@code order_code:yyMMdd}), nên mỗi node phát
+ * mã từ bộ nhớ, chỉ chạm DB khi hết khối, và các node không bao giờ trùng mã của nhau. Trong một
+ * node, số tăng dần theo ngày; giữa các node số đan xen theo khối và có khoảng trống khi node dừng.
+ *
+ * <p>Số thứ tự được đệm tối thiểu {@code min-digits} chữ số (mặc định 5), dài hơn mã ngẫu nhiên 4
+ * chữ số cũ nên không thể trùng các mã đã phát trước đây.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BlockOrderCodeGenerator implements OrderCodeGenerator {
+
+  static final String SEQUENCE_PREFIX = "order_code:";
+  private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyMMdd");
+
+  private final IdBlockAllocator idBlockAllocator;
+
+  @Value("${app.order.code.prefix:AGT}")
+  private String prefix;
+
+  @Value("${app.order.code.block-size:50}")
+  private int blockSize;
+
+  @Value("${app.order.code.min-digits:5}")
+  private int minDigits;
+
+  // Cho phép test cố định ngày
+  Clock clock = Clock.systemDefaultZone();
+
+  private DaySequence current;
+
+  @Override
+  public String nextOrderCode() {
+    DaySequence sequence = sequenceForToday();
+    long number = sequence.ids().next();
+    return prefix + sequence.day() + "-" + pad(number);
+  }
+
+  private synchronized DaySequence sequenceForToday() {
+    String day = LocalDate.now(clock).format(DAY_FORMAT);
+    if (current == null || !current.day().equals(day)) {
+      // Sang ngày mới: bỏ phần còn dư của khối ngày cũ, dãy mới bắt đầu từ 1
+      current =
+          new DaySequence(
+              day,
+              new PooledIdSequence(idBlockAllocator, SEQUENCE_PREFIX + day, blockSize, () -> 1));
+      log.debug("Order code sequence switched to day {}", day);
+    }
+    return current;
+  }
+
+  private String pad(long number) {
+    String digits = Long.toString(number);
+    if (digits.length() >= minDigits) {
+      return digits;
+    }
+    return "0".repeat(minDigits - digits.length()) + digits;
+  }
+
+  private record DaySequence(String day, PooledIdSequence ids) {}
+}
@@ -0,0 +1,53 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import com.yourcompany.agritrade.ordering.repository.CartItemRepository;
+import com.yourcompany.agritrade.ordering.service.CartAdjustmentService;
+import java.util.Collection;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CartAdjustmentServiceImpl implements CartAdjustmentService {
+
+  private final CartItemRepository cartItemRepository;
+
+  @Override
+  @Transactional
+  public void applyAdjustments(
+      Long userId, Collection<Long> cartItemIdsToRemove, Map<Long, Integer> quantityCaps) {
+    int removed = 0;
+    if (!cartItemIdsToRemove.isEmpty()) {
+      removed = cartItemRepository.deleteByUserIdAndIdIn(userId, cartItemIdsToRemove);
+    }
+    int capped = 0;
+    for (Map.Entry<Long, Integer> cap : quantityCaps.entrySet()) {
+      capped += cartItemRepository.capQuantityForUser(userId, cap.getKey(), cap.getValue());
+    }
+    if (removed > 0 || capped > 0) {
+      log.info(
+          "Applied cart adjustments for user {}: removed {} item(s), capped {} item(s)",
+          userId,
+          removed,
+          capped);
+    }
+  }
+
+  @Override
+  @Async("taskExecutor")
+  @Transactional
+  public void applyAdjustmentsAsync(
+      Long userId, Collection<Long> cartItemIdsToRemove, Map<Long, Integer> quantityCaps) {
+    try {
+      applyAdjustments(userId, cartItemIdsToRemove, quantityCaps);
+    } catch (Exception e) {
+      // Không ảnh hưởng người dùng: lần xem giỏ sau sẽ đối soát và thử lại
+      log.error("Failed to apply cart adjustments for user {}: {}", userId, e.getMessage(), e);
+    }
+  }
+}
@@ -16,6 +16,7 @@ import com.yourcompany.agritrade.ordering.dto.response.CartResponse;
 import com.yourcompany.agritrade.ordering.dto.response.CartValidationResponse;
 import com.yourcompany.agritrade.ordering.mapper.CartItemMapper;
 import com.yourcompany.agritrade.ordering.repository.CartItemRepository;
+import com.yourcompany.agritrade.ordering.service.CartAdjustmentService;
 import com.yourcompany.agritrade.ordering.service.CartService;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
@@ -24,6 +25,7 @@ import java.util.*;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
@@ -38,137 +40,44 @@ public class CartServiceImpl implements CartService {
   private final ProductRepository productRepository;
   private final UserRepository userRepository;
   private final CartItemMapper cartItemMapper;
+  private final CartAdjustmentService cartAdjustmentService;
+
+  // Kết quả đối soát giỏ hàng với sản phẩm: chỉ tính toán, không thay đổi entity
+  private record CartReconciliation(
+      List<CartItem> validItems,
+      Map<Long, Integer> quantityCaps, // cartItemId -> số lượng sau điều chỉnh
+      List<Long> cartItemIdsToRemove,
+      List<CartAdjustmentInfo> adjustments) {
+
+    boolean hasChanges() {
+      return !quantityCaps.isEmpty() || !cartItemIdsToRemove.isEmpty();
+    }
+  }
 
   @Override
-  @Transactional
+  @Transactional(readOnly = true)
   public CartResponse getCart(Authentication authentication) {
-    User user = SecurityUtils.getCurrentAuthenticatedUser();
-    List<CartItem> cartItemsFromDb = cartItemRepository.findByUserId(user.getId());
-    List<CartItemResponse> validItemResponses = new ArrayList<>();
-    List<Long> itemsToRemoveFromDb = new ArrayList<>(); // Lưu ID của CartItem cần xóa
-    List<CartItem> itemsToUpdateInDb = new ArrayList<>(); // Lưu CartItem cần cập nhật số lượng
-    List<CartAdjustmentInfo> adjustments = new ArrayList<>(); // Lưu thông tin điều chỉnh
-
-    for (CartItem cartItem : cartItemsFromDb) { // Không dùng iterator nữa để có thể modify list
-      Product product = null;
-      boolean markForRemoval = false;
-      String adjustmentMessage = null;
-      String adjustmentType = null;
-      String productNameForMessage = "Sản phẩm không xác định"; // Tên mặc định
-
-      if (cartItem.getProduct() != null) {
-        productNameForMessage =
-            cartItem.getProduct().getName(); // Lấy tên trước khi product có thể bị null
-      }
+    Long userId = SecurityUtils.getCurrentUserId();
+    // Một truy vấn cho cả giỏ: item + sản phẩm + ảnh + farmer + danh mục
+    List<CartItem> cartItemsFromDb = cartItemRepository.findCartViewByUserId(userId);
+    CartReconciliation reconciliation =
+        reconcile(cartItemsFromDb, userId, "đã được xóa", "GET_CART");
 
-      if (cartItem.getProduct() == null) {
-        log.warn(
-            "CartItem ID {} for user {} references a product that is null. Marking for removal.",
-            cartItem.getId(),
-            user.getId());
-        markForRemoval = true;
-        adjustmentMessage =
-            "Một sản phẩm ("
-                + productNameForMessage
-                + ") không còn tồn tại và đã được xóa khỏi giỏ.";
-        adjustmentType = "REMOVED";
-      } else {
-        Optional<Product> productOpt = productRepository.findById(cartItem.getProduct().getId());
-        if (productOpt.isEmpty()) {
-          log.warn(
-              "Product ID {} for CartItem ID {} (user {}) not found or soft-deleted. Marking for removal.",
-              cartItem.getProduct().getId(),
-              cartItem.getId(),
-              user.getId());
-          markForRemoval = true;
-          adjustmentMessage =
-              "Sản phẩm '" + productNameForMessage + "' không còn tồn tại và đã được xóa khỏi giỏ.";
-          adjustmentType = "REMOVED";
-        } else {
-          product = productOpt.get();
-          if (product.getStatus() != ProductStatus.PUBLISHED || product.isDeleted()) {
-            log.warn(
-                "GET_CART: Product ID {} (CartItem ID {}) is not PUBLISHED or is deleted. Marking for removal.",
-                product.getId(),
-                cartItem.getId());
-            markForRemoval = true;
-            adjustmentMessage =
-                "Sản phẩm '" + product.getName() + "' không còn được bán và đã được xóa khỏi giỏ.";
-            adjustmentType = "REMOVED";
-          } else {
-            //  KIỂM TRA VÀ ĐIỀU CHỈNH SỐ LƯỢNG
-            int currentStock = product.getStockQuantity();
-            int quantityInCart = cartItem.getQuantity();
-
-            if (currentStock <= 0) { // Hết hàng
-              log.warn(
-                  "Product ID {} (CartItem ID {}) is out of stock. Marking for removal.",
-                  product.getId(),
-                  cartItem.getId());
-              markForRemoval = true;
-              adjustmentMessage =
-                  "Sản phẩm '" + product.getName() + "' đã hết hàng và được xóa khỏi giỏ.";
-              adjustmentType = "REMOVED";
-            } else if (quantityInCart > currentStock) { // Số lượng trong giỏ > tồn kho
-              log.warn(
-                  "Quantity for Product ID {} (CartItem ID {}) in cart ({}) exceeds stock ({}). Adjusting quantity.",
-                  product.getId(),
-                  cartItem.getId(),
-                  quantityInCart,
-                  currentStock);
-              cartItem.setQuantity(currentStock); // Điều chỉnh số lượng
-              itemsToUpdateInDb.add(cartItem); // Thêm vào danh sách cần cập nhật DB
-              adjustmentMessage =
-                  "Số lượng sản phẩm '"
-                      + product.getName()
-                      + "' đã được cập nhật thành "
-                      + currentStock
-                      + " do thay đổi tồn kho.";
-              adjustmentType = "ADJUSTED";
-            }
-          }
-        }
-      }
+    List<CartItemResponse> validItemResponses = new ArrayList<>();
+    for (CartItem cartItem : reconciliation.validItems()) {
+      validItemResponses.add(
+          toCartItemResponse(cartItem, reconciliation.quantityCaps().get(cartItem.getId())));
+    }
 
-      if (markForRemoval) {
-        itemsToRemoveFromDb.add(cartItem.getId());
-        if (adjustmentMessage != null) {
-          adjustments.add(
-              new CartAdjustmentInfo(
-                  cartItem.getProduct() != null ? cartItem.getProduct().getId() : null,
-                  cartItem.getProduct() != null
-                      ? cartItem.getProduct().getName()
-                      : "Sản phẩm không xác định",
-                  adjustmentMessage,
-                  "REMOVED"));
-        }
-      } else if (product != null) {
-        cartItem.setProduct(product); // Đảm bảo product được gán lại
-        validItemResponses.add(cartItemMapper.toCartItemResponse(cartItem));
-        if (adjustmentMessage != null) {
-          adjustments.add(
-              new CartAdjustmentInfo(
-                  product.getId(), product.getName(), adjustmentMessage, adjustmentType));
-        }
+    // Xem giỏ hàng không ghi DB: điều chỉnh (nếu có) được ghi nền trong transaction riêng
+    if (reconciliation.hasChanges()) {
+      try {
+        cartAdjustmentService.applyAdjustmentsAsync(
+            userId, reconciliation.cartItemIdsToRemove(), reconciliation.quantityCaps());
+      } catch (TaskRejectedException e) {
+        log.warn("Cart adjustment queue is full, skip persisting for user {}", userId);
       }
     }
-    // Thực hiện cập nhật và xóa DB
-    if (!itemsToUpdateInDb.isEmpty()) {
-      log.info(
-          "Updating quantities for {} cart items for user {}.",
-          itemsToUpdateInDb.size(),
-          user.getId());
-      cartItemRepository.saveAll(itemsToUpdateInDb); // Lưu các thay đổi số lượng
-    }
-    // Xóa các CartItem không hợp lệ khỏi CSDL
-    if (!itemsToRemoveFromDb.isEmpty()) {
-      log.info(
-          "Removing {} invalid/out-of-stock cart items for user {}: {}",
-          itemsToRemoveFromDb.size(),
-          user.getId(),
-          itemsToRemoveFromDb);
-      cartItemRepository.deleteAllByIdInBatch(itemsToRemoveFromDb);
-    }
 
     // Tính toán dựa trên validItemResponses
     BigDecimal subTotal =
@@ -179,12 +88,118 @@ public class CartServiceImpl implements CartService {
 
     int totalItems = validItemResponses.stream().mapToInt(CartItemResponse::getQuantity).sum();
 
-    CartResponse cartResponse =
-        new CartResponse(validItemResponses, subTotal, totalItems, adjustments);
-    if (!adjustments.isEmpty()) {
-      cartResponse.setAdjustments(adjustments); // Thêm thông tin điều chỉnh vào response
+    return new CartResponse(validItemResponses, subTotal, totalItems, reconciliation.adjustments());
+  }
+
+  // Map item sang response; nếu số lượng bị giới hạn theo tồn kho thì trả về số lượng mới
+  private CartItemResponse toCartItemResponse(CartItem cartItem, Integer cappedQuantity) {
+    CartItemResponse response = cartItemMapper.toCartItemResponse(cartItem);
+    if (cappedQuantity != null && response != null) {
+      response.setQuantity(cappedQuantity);
+      BigDecimal price = cartItem.getProduct().getPrice();
+      response.setItemTotal(
+          price != null ? price.multiply(BigDecimal.valueOf(cappedQuantity)) : BigDecimal.ZERO);
     }
-    return cartResponse;
+    return response;
+  }
+
+  /**
+   * Đối soát từng item với sản phẩm đã được fetch sẵn: item trỏ tới sản phẩm không còn tồn
+   * tại/không còn bán/hết hàng bị đánh dấu xóa; item vượt tồn kho bị giới hạn số lượng.
+   *
+   * @param removalVerb "đã được xóa" hoặc "sẽ được xóa", dùng trong thông báo cho người dùng
+   */
+  private CartReconciliation reconcile(
+      List<CartItem> cartItems, Long userId, String removalVerb, String logPrefix) {
+    List<CartItem> validItems = new ArrayList<>();
+    Map<Long, Integer> quantityCaps = new LinkedHashMap<>();
+    List<Long> cartItemIdsToRemove = new ArrayList<>();
+    List<CartAdjustmentInfo> adjustments = new ArrayList<>();
+
+    for (CartItem cartItem : cartItems) {
+      Product product = cartItem.getProduct();
+      String removalMessage = null;
+
+      if (product == null) {
+        log.warn(
+            "{}: CartItem ID {} for user {} references a product that is null. Marking for removal.",
+            logPrefix,
+            cartItem.getId(),
+            userId);
+        removalMessage =
+            "Một sản phẩm (Sản phẩm không xác định) không còn tồn tại và "
+                + removalVerb
+                + " khỏi giỏ.";
+      } else if (product.isDeleted()) {
+        log.warn(
+            "{}: Product ID {} for CartItem ID {} (user {}) is soft-deleted. Marking for removal.",
+            logPrefix,
+            product.getId(),
+            cartItem.getId(),
+            userId);
+        removalMessage =
+            "Sản phẩm '"
+                + product.getName()
+                + "' không còn tồn tại và "
+                + removalVerb
+                + " khỏi giỏ.";
+      } else if (product.getStatus() != ProductStatus.PUBLISHED) {
+        log.warn(
+            "{}: Product ID {} (CartItem ID {}) is not PUBLISHED. Marking for removal.",
+            logPrefix,
+            product.getId(),
+            cartItem.getId());
+        removalMessage =
+            "Sản phẩm '"
+                + product.getName()
+                + "' không còn được bán và "
+                + removalVerb
+                + " khỏi giỏ.";
+      } else if (product.getStockQuantity() <= 0) { // Hết hàng
+        log.warn(
+            "{}: Product ID {} (CartItem ID {}) is out of stock. Marking for removal.",
+            logPrefix,
+            product.getId(),
+            cartItem.getId());
+        removalMessage =
+            "Sản phẩm '" + product.getName() + "' đã hết hàng và " + removalVerb + " khỏi giỏ.";
+      }
+
+      if (removalMessage != null) {
+        cartItemIdsToRemove.add(cartItem.getId());
+        adjustments.add(
+            new CartAdjustmentInfo(
+                product != null ? product.getId() : null,
+                product != null ? product.getName() : "Sản phẩm không xác định",
+                removalMessage,
+                "REMOVED"));
+        continue;
+      }
+
+      validItems.add(cartItem);
+      int currentStock = product.getStockQuantity();
+      if (cartItem.getQuantity() > currentStock) { // Số lượng trong giỏ > tồn kho
+        log.warn(
+            "{}: Quantity for Product ID {} (CartItem ID {}) in cart ({}) exceeds stock ({}). Adjusting quantity.",
+            logPrefix,
+            product.getId(),
+            cartItem.getId(),
+            cartItem.getQuantity(),
+            currentStock);
+        quantityCaps.put(cartItem.getId(), currentStock);
+        adjustments.add(
+            new CartAdjustmentInfo(
+                product.getId(),
+                product.getName(),
+                "Số lượng sản phẩm '"
+                    + product.getName()
+                    + "' đã được cập nhật thành "
+                    + currentStock
+                    + " do thay đổi tồn kho.",
+                "ADJUSTED"));
+      }
+    }
+    return new CartReconciliation(validItems, quantityCaps, cartItemIdsToRemove, adjustments);
   }
 
   @Override
@@ -349,8 +364,8 @@ public class CartServiceImpl implements CartService {
   @Override
   @Transactional
   public CartValidationResponse validateCartForCheckout(Authentication authentication) {
-    User user = SecurityUtils.getCurrentAuthenticatedUser();
-    List<CartItem> cartItemsFromDb = cartItemRepository.findByUserId(user.getId());
+    Long userId = SecurityUtils.getCurrentUserId();
+    List<CartItem> cartItemsFromDb = cartItemRepository.findWithProductByUserId(userId);
 
     if (cartItemsFromDb.isEmpty()) {
       return new CartValidationResponse(
@@ -359,119 +374,19 @@ public class CartServiceImpl implements CartService {
           Collections.emptyList());
     }
 
-    boolean isCartGloballyValidForCheckout = true; // Cờ này sẽ là false nếu có BẤT KỲ thay đổi nào
-    List<CartAdjustmentInfo> adjustments = new ArrayList<>();
-    List<Long> itemsToRemoveFromDbById = new ArrayList<>();
-    List<CartItem> itemsToUpdateInDb = new ArrayList<>();
-
-    for (CartItem cartItem : cartItemsFromDb) {
-      Product product = null;
-      boolean currentItemInvalidated = false;
-      String adjustmentMessage = null;
-      String adjustmentType = null;
-      String productNameForMessage = "Sản phẩm không xác định";
-
-      if (cartItem.getProduct() != null) {
-        productNameForMessage = cartItem.getProduct().getName();
-      }
+    CartReconciliation reconciliation =
+        reconcile(cartItemsFromDb, userId, "sẽ được xóa", "VALIDATE_CART");
+    // Nếu có bất kỳ item nào bị xóa hoặc điều chỉnh, giỏ hàng không còn "hoàn toàn hợp lệ" để
+    // checkout ngay
+    boolean isCartGloballyValidForCheckout = !reconciliation.hasChanges();
 
-      if (cartItem.getProduct() == null) {
-        log.warn(
-            "VALIDATE_CART: CartItem ID {} for user {} references a product that is null. Marking for removal.",
-            cartItem.getId(),
-            user.getId());
-        itemsToRemoveFromDbById.add(cartItem.getId());
-        adjustmentMessage =
-            "Một sản phẩm ("
-                + productNameForMessage
-                + ") không còn tồn tại và sẽ được xóa khỏi giỏ.";
-        adjustmentType = "REMOVED";
-        currentItemInvalidated = true;
-      } else {
-        Optional<Product> productOpt = productRepository.findById(cartItem.getProduct().getId());
-        if (productOpt.isEmpty()) {
-          log.warn(
-              "VALIDATE_CART: Product ID {} for CartItem ID {} (user {}) not found or soft-deleted. Marking for removal.",
-              cartItem.getProduct().getId(),
-              cartItem.getId(),
-              user.getId());
-          itemsToRemoveFromDbById.add(cartItem.getId());
-          adjustmentMessage =
-              "Sản phẩm '" + productNameForMessage + "' không còn tồn tại và sẽ được xóa khỏi giỏ.";
-          adjustmentType = "REMOVED";
-          currentItemInvalidated = true;
-        } else {
-          product = productOpt.get();
-          if (product.getStatus() != ProductStatus.PUBLISHED || product.isDeleted()) {
-            log.warn(
-                "VALIDATE_CART: Product ID {} (CartItem ID {}) is not PUBLISHED or is deleted. Marking for removal.",
-                product.getId(),
-                cartItem.getId());
-            itemsToRemoveFromDbById.add(cartItem.getId());
-            adjustmentMessage =
-                "Sản phẩm '" + product.getName() + "' không còn được bán và sẽ được xóa khỏi giỏ.";
-            adjustmentType = "REMOVED";
-            currentItemInvalidated = true;
-          } else {
-            int currentStock = product.getStockQuantity();
-            int quantityInCart = cartItem.getQuantity();
-            productNameForMessage = product.getName();
-
-            if (currentStock <= 0) {
-              log.warn(
-                  "VALIDATE_CART: Product ID {} (CartItem ID {}) is out of stock. Marking for removal.",
-                  product.getId(),
-                  cartItem.getId());
-              itemsToRemoveFromDbById.add(cartItem.getId());
-              adjustmentMessage =
-                  "Sản phẩm '" + product.getName() + "' đã hết hàng và sẽ được xóa khỏi giỏ.";
-              adjustmentType = "REMOVED";
-              currentItemInvalidated = true;
-            } else if (quantityInCart > currentStock) {
-              log.warn(
-                  "VALIDATE_CART: Quantity for Product ID {} (CartItem ID {}) in cart ({}) exceeds stock ({}). Adjusting quantity.",
-                  product.getId(),
-                  cartItem.getId(),
-                  quantityInCart,
-                  currentStock);
-              cartItem.setQuantity(currentStock);
-              itemsToUpdateInDb.add(cartItem);
-              adjustmentMessage =
-                  "Số lượng sản phẩm '"
-                      + product.getName()
-                      + "' đã được cập nhật thành "
-                      + currentStock
-                      + " do thay đổi tồn kho.";
-              adjustmentType = "ADJUSTED";
-              currentItemInvalidated = true; // Đánh dấu có thay đổi, cần user review
-            }
-          }
-        }
-      }
-
-      if (currentItemInvalidated) {
-        isCartGloballyValidForCheckout =
-            false; // Nếu có bất kỳ item nào bị xóa hoặc điều chỉnh, giỏ hàng không còn "hoàn toàn
-        // hợp lệ" để checkout ngay
-        if (adjustmentMessage != null) {
-          adjustments.add(
-              new CartAdjustmentInfo(
-                  cartItem.getProduct() != null ? cartItem.getProduct().getId() : null,
-                  productNameForMessage,
-                  adjustmentMessage,
-                  adjustmentType));
-        }
-      }
-    }
-
-    // Thực hiện cập nhật và xóa DB nếu có thay đổi
-    if (!itemsToUpdateInDb.isEmpty()) {
-      cartItemRepository.saveAllAndFlush(itemsToUpdateInDb);
-    }
-    if (!itemsToRemoveFromDbById.isEmpty()) {
-      cartItemRepository.deleteAllByIdInBatch(itemsToRemoveFromDbById);
+    // Thực hiện cập nhật và xóa DB nếu có thay đổi (đồng bộ, trước khi user checkout)
+    if (reconciliation.hasChanges()) {
+      cartAdjustmentService.applyAdjustments(
+          userId, reconciliation.cartItemIdsToRemove(), reconciliation.quantityCaps());
     }
 
+    List<CartAdjustmentInfo> adjustments = reconciliation.adjustments();
     List<String> messagesForUser =
         adjustments.stream().map(CartAdjustmentInfo::getMessage).collect(Collectors.toList());
     // Nếu không có điều chỉnh nào và giỏ hàng vẫn hợp lệ từ đầu
@@ -0,0 +1,64 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+/**
+ * Circuit breaker đếm lỗi liên tiếp của một cổng thanh toán. CLOSED: cho mọi lời gọi đi qua; OPEN:
+ * từ chối ngay trong openDurationMs; HALF_OPEN: cho đúng một lời gọi thử, thành công thì đóng lại,
+ * lỗi thì mở tiếp.
+ */
+final class GatewayCircuitBreaker {
+
+  enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openDurationMs;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAtMs;
+  private boolean trialInFlight;
+
+  GatewayCircuitBreaker(int failureThreshold, long openDurationMs) {
+    this.failureThreshold = Math.max(1, failureThreshold);
+    this.openDurationMs = openDurationMs;
+  }
+
+  synchronized boolean tryAcquire(long nowMs) {
+    if (state == State.OPEN) {
+      if (nowMs - openedAtMs < openDurationMs) {
+        return false;
+      }
+      state = State.HALF_OPEN;
+      trialInFlight = false;
+    }
+    if (state == State.HALF_OPEN) {
+      if (trialInFlight) {
+        return false;
+      }
+      trialInFlight = true;
+    }
+    return true;
+  }
+
+  synchronized void onSuccess() {
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+    trialInFlight = false;
+  }
+
+  synchronized void onFailure(long nowMs) {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+      state = State.OPEN;
+      openedAtMs = nowMs;
+      trialInFlight = false;
+    }
+  }
+
+  synchronized State getState() {
+    return state;
+  }
+}
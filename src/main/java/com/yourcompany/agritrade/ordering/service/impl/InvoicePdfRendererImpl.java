@@ -0,0 +1,210 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import com.lowagie.text.*;
+import com.lowagie.text.Font;
+import com.lowagie.text.Rectangle;
+import com.lowagie.text.pdf.BaseFont;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfWriter;
+import com.yourcompany.agritrade.ordering.service.InvoicePdfRenderer;
+import jakarta.annotation.PostConstruct;
+import java.awt.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.format.DateTimeFormatter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+/**
+ * {@link BaseFont} được tạo một lần từ bytes của file TTF (IDENTITY_H, nhúng subset) và dùng chung;
+ * mỗi PdfWriter chỉ nhúng các glyph mà hóa đơn của nó dùng. Trước đây mỗi request gọi {@code
+ * FontFactory.getFont} với đường dẫn tương đối, vừa phân giải lại font vừa không tìm thấy file khi
+ * chạy từ jar.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InvoicePdfRendererImpl implements InvoicePdfRenderer {
+
+  private final ResourceLoader resourceLoader;
+
+  @Value("${app.invoice.pdf.font-location:classpath:fonts/font.ttf}")
+  private String fontLocation;
+
+  private Font fontTitle;
+  private Font fontNormal;
+
+  @PostConstruct
+  void init() {
+    BaseFont baseFont = loadBaseFont();
+    fontTitle = new Font(baseFont, 18, Font.BOLD);
+    fontNormal = new Font(baseFont, 10, Font.NORMAL);
+  }
+
+  private BaseFont loadBaseFont() {
+    Resource resource = resourceLoader.getResource(fontLocation);
+    try {
+      if (!resource.exists()) {
+        // Không có font tiếng Việt thì vẫn xuất được hóa đơn, chỉ mất dấu
+        log.warn("Invoice font {} not found, falling back to Helvetica", fontLocation);
+        return BaseFont.createFont(BaseFont.HELVETICA, BaseFont.CP1252, BaseFont.NOT_EMBEDDED);
+      }
+      byte[] ttf;
+      try (InputStream in = resource.getInputStream()) {
+        ttf = in.readAllBytes();
+      }
+      BaseFont baseFont =
+          BaseFont.createFont(
+              "invoice-font.ttf", BaseFont.IDENTITY_H, BaseFont.EMBEDDED, false, ttf, null);
+      log.info("Loaded invoice font {} ({} bytes)", fontLocation, ttf.length);
+      return baseFont;
+    } catch (IOException | DocumentException e) {
+      throw new IllegalStateException("Cannot load invoice font " + fontLocation, e);
+    }
+  }
+
+  @Override
+  public void render(InvoicePdfData data, OutputStream out) throws IOException {
+    Document document = new Document(PageSize.A4);
+    try {
+      PdfWriter writer = PdfWriter.getInstance(document, out);
+      writer.setCloseStream(false);
+      document.open();
+
+      // --- Header ---
+      Paragraph title = new Paragraph("HÓA ĐƠN BÁN HÀNG", fontTitle);
+      title.setAlignment(Element.ALIGN_CENTER);
+      document.add(title);
+      document.add(new Paragraph("Số: " + data.invoiceNumber(), fontNormal));
+      document.add(
+          new Paragraph(
+              "Ngày xuất: " + data.issueDate().format(DateTimeFormatter.ISO_DATE), fontNormal));
+      document.add(Chunk.NEWLINE); // Dòng trống
+
+      // --- Thông tin Người bán / Người mua (Dùng Bảng) ---
+      PdfPTable infoTable = new PdfPTable(2); // 2 cột
+      infoTable.setWidthPercentage(100);
+      infoTable.addCell(createCell("Người bán:", Element.ALIGN_LEFT, false));
+      infoTable.addCell(createCell("Người mua:", Element.ALIGN_LEFT, false));
+      infoTable.addCell(createCell(data.sellerName(), Element.ALIGN_LEFT, false));
+      infoTable.addCell(createCell(data.buyerName(), Element.ALIGN_LEFT, false));
+      document.add(infoTable);
+      document.add(Chunk.NEWLINE);
+
+      // --- Bảng Chi tiết Sản phẩm ---
+      PdfPTable itemTable = new PdfPTable(6); // STT, Tên SP, ĐVT, SL, Đơn giá, Thành tiền
+      itemTable.setWidthPercentage(100);
+      itemTable.setWidths(new float[] {1, 5, 2, 2, 3, 3}); // Tỷ lệ độ rộng cột
+      addTableHeader(itemTable, "STT");
+      addTableHeader(itemTable, "Tên sản phẩm");
+      addTableHeader(itemTable, "ĐVT");
+      addTableHeader(itemTable, "Số lượng");
+      addTableHeader(itemTable, "Đơn giá");
+      addTableHeader(itemTable, "Thành tiền");
+      int stt = 1;
+      for (Line line : data.lines()) {
+        itemTable.addCell(createCell(String.valueOf(stt++), Element.ALIGN_CENTER, true));
+        itemTable.addCell(createCell(line.productName(), Element.ALIGN_LEFT, true));
+        itemTable.addCell(createCell(line.unit(), Element.ALIGN_CENTER, true));
+        itemTable.addCell(createCell(String.valueOf(line.quantity()), Element.ALIGN_RIGHT, true));
+        itemTable.addCell(
+            createCell(line.pricePerUnit().toPlainString(), Element.ALIGN_RIGHT, true));
+        itemTable.addCell(createCell(line.totalPrice().toPlainString(), Element.ALIGN_RIGHT, true));
+      }
+      document.add(itemTable);
+      document.add(Chunk.NEWLINE);
+
+      // --- Tổng kết hóa đơn ---
+      PdfPTable summaryTable = new PdfPTable(2);
+      summaryTable.setWidthPercentage(50);
+      summaryTable.setHorizontalAlignment(Element.ALIGN_RIGHT);
+      summaryTable.setWidths(new float[] {3, 3});
+      addSummaryRow(summaryTable, "Tạm tính:", data.subTotal().toPlainString());
+      addSummaryRow(summaryTable, "Phí vận chuyển:", data.shippingFee().toPlainString());
+      addSummaryRow(summaryTable, "Giảm giá:", data.discountAmount().toPlainString());
+      addSummaryRow(summaryTable, "TỔNG CỘNG:", data.totalAmount().toPlainString());
+      document.add(summaryTable);
+      document.add(Chunk.NEWLINE);
+
+      // --- Tổng tiền bằng chữ ---
+      String totalAmountText =
+          convertNumberToVietnameseText(data.totalAmount().longValue()) + " đồng";
+      document.add(new Paragraph("Số tiền bằng chữ: " + totalAmountText, fontNormal));
+
+      document.close();
+      writer.close();
+    } catch (DocumentException e) {
+      throw new IOException("Error generating PDF for invoice " + data.invoiceNumber(), e);
+    }
+  }
+
+  private void addSummaryRow(PdfPTable table, String label, String value) {
+    table.addCell(createCell(label, Element.ALIGN_LEFT, true));
+    table.addCell(createCell(value, Element.ALIGN_RIGHT, true));
+  }
+
+  // Helper tạo cell cho bảng
+  private PdfPCell createCell(String content, int alignment, boolean border) {
+    PdfPCell cell = new PdfPCell(new Phrase(content, fontNormal));
+    cell.setHorizontalAlignment(alignment);
+    cell.setVerticalAlignment(Element.ALIGN_MIDDLE);
+    cell.setPadding(5);
+    if (!border) {
+      cell.setBorder(Rectangle.NO_BORDER);
+    }
+    return cell;
+  }
+
+  // Helper thêm header cho bảng
+  private void addTableHeader(PdfPTable table, String headerTitle) {
+    PdfPCell header = new PdfPCell();
+    header.setBackgroundColor(Color.LIGHT_GRAY);
+    header.setBorderWidth(1);
+    header.setPhrase(new Phrase(headerTitle, fontNormal));
+    header.setHorizontalAlignment(Element.ALIGN_CENTER);
+    header.setVerticalAlignment(Element.ALIGN_MIDDLE);
+    header.setPadding(5);
+    table.addCell(header);
+  }
+
+  private String convertNumberToVietnameseText(long number) {
+    // Đây là bản đơn giản, bạn có thể nâng cấp thêm (xử lý hàng chục triệu, tỷ...)
+    final String[] units = {"", "mươi", "trăm", "nghìn", "triệu", "tỷ"};
+    final String[] digits = {
+      "không", "một", "hai", "ba", "bốn", "năm", "sáu", "bảy", "tám", "chín"
+    };
+
+    if (number == 0) return "Không";
+
+    StringBuilder sb = new StringBuilder();
+    String numStr = Long.toString(number);
+    int len = numStr.length();
+    boolean isFirst = true;
+
+    for (int i = 0; i < len; i++) {
+      int digit = numStr.charAt(i) - '0';
+      int pos = len - i - 1;
+
+      if (digit != 0) {
+        if (!isFirst) sb.append(" ");
+        sb.append(digits[digit]);
+        if (pos % 3 == 0 && pos != 0) sb.append(" ").append(units[pos / 3]);
+        isFirst = false;
+      } else {
+        if (i < len - 1 && numStr.charAt(i + 1) != '0') {
+          sb.append(" không");
+        }
+      }
+    }
+
+    // Viết hoa chữ cái đầu
+    sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+    return sb.toString();
+  }
+}
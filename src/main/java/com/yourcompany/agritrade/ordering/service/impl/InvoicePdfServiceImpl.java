@@ -0,0 +1,308 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import com.yourcompany.agritrade.common.exception.BadRequestException;
+import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
+import com.yourcompany.agritrade.ordering.domain.Invoice;
+import com.yourcompany.agritrade.ordering.domain.Order;
+import com.yourcompany.agritrade.ordering.domain.OrderItem;
+import com.yourcompany.agritrade.ordering.repository.InvoiceRepository;
+import com.yourcompany.agritrade.ordering.repository.projection.InvoicePdfKey;
+import com.yourcompany.agritrade.ordering.service.InvoicePdfRenderer;
+import com.yourcompany.agritrade.ordering.service.InvoicePdfRenderer.InvoicePdfData;
+import com.yourcompany.agritrade.ordering.service.InvoicePdfService;
+import com.yourcompany.agritrade.ordering.service.InvoicePdfStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Tra khóa PDF bằng projection (không nạp order), chỉ khi store chưa có phiên bản hiện tại mới đọc
+ * dữ liệu hóa đơn trong một transaction read-only ngắn rồi render bên ngoài transaction. Các
+ * request cùng lúc cho cùng một phiên bản chờ chung một lượt render.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InvoicePdfServiceImpl implements InvoicePdfService {
+
+  private static final DateTimeFormatter VERSION_FORMAT =
+      DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSSSSS");
+  static final String FAILED_ENTRY_NAME = "LOI-KHONG-XUAT-DUOC.txt";
+
+  private final InvoiceRepository invoiceRepository;
+  private final InvoicePdfRenderer invoicePdfRenderer;
+  private final InvoicePdfStore invoicePdfStore;
+  private final PlatformTransactionManager transactionManager;
+
+  @Value("${app.invoice.pdf.render-threads:4}")
+  private int renderThreads;
+
+  @Value("${app.invoice.pdf.export-max-invoices:2000}")
+  private int exportMaxInvoices;
+
+  @Value("${app.invoice.pdf.export-max-days:366}")
+  private int exportMaxDays;
+
+  private final ConcurrentHashMap<String, CompletableFuture<Resource>> rendersInFlight =
+      new ConcurrentHashMap<>();
+  private TransactionTemplate readOnlyTransaction;
+  private ExecutorService renderExecutor;
+
+  @PostConstruct
+  void init() {
+    readOnlyTransaction = new TransactionTemplate(transactionManager);
+    readOnlyTransaction.setReadOnly(true);
+    AtomicInteger threadCounter = new AtomicInteger();
+    renderExecutor =
+        Executors.newFixedThreadPool(
+            renderThreads,
+            runnable ->
+                Thread.ofPlatform()
+                    .name("invoice-pdf-" + threadCounter.incrementAndGet())
+                    .daemon(true)
+                    .unstarted(runnable));
+  }
+
+  @PreDestroy
+  void shutdown() {
+    renderExecutor.shutdownNow();
+  }
+
+  @Override
+  public InvoicePdf getInvoicePdf(Long invoiceId) {
+    InvoicePdfKey key =
+        invoiceRepository
+            .findPdfKeyById(invoiceId)
+            .orElseThrow(() -> new ResourceNotFoundException("Invoice", "id", invoiceId));
+    return new InvoicePdf(key.invoiceNumber(), resolve(key));
+  }
+
+  @Override
+  public List<InvoicePdfKey> findInvoicesForExport(LocalDate fromDate, LocalDate toDate) {
+    if (fromDate == null || toDate == null || toDate.isBefore(fromDate)) {
+      throw new BadRequestException("Khoảng ngày xuất hóa đơn không hợp lệ.");
+    }
+    if (ChronoUnit.DAYS.between(fromDate, toDate) >= exportMaxDays) {
+      throw new BadRequestException(
+          "Chỉ được xuất hóa đơn trong tối đa " + exportMaxDays + " ngày mỗi lần.");
+    }
+    // Lấy dư một bản ghi để biết có vượt giới hạn không mà không cần COUNT
+    List<InvoicePdfKey> invoices =
+        invoiceRepository.findPdfKeysByIssueDateBetween(
+            fromDate, toDate, PageRequest.of(0, exportMaxInvoices + 1));
+    if (invoices.size() > exportMaxInvoices) {
+      throw new BadRequestException(
+          "Có hơn "
+              + exportMaxInvoices
+              + " hóa đơn trong khoảng ngày đã chọn, vui lòng thu hẹp khoảng ngày.");
+    }
+    return invoices;
+  }
+
+  @Override
+  public void writeInvoicesZip(List<InvoicePdfKey> invoices, OutputStream out) throws IOException {
+    ZipArchiveOutputStream zip = new ZipArchiveOutputStream(out);
+    zip.setLevel(Deflater.BEST_SPEED); // Nội dung PDF đã nén sẵn, nén thêm gần như không lợi
+    // Giữ tối đa 2 lô render chạy trước phần đang ghi: bộ nhớ không tăng theo số hóa đơn
+    int maxAhead = Math.max(1, renderThreads * 2);
+    Deque<PendingEntry> pending = new ArrayDeque<>();
+    List<String> failed = new ArrayList<>();
+    try {
+      for (InvoicePdfKey key : invoices) {
+        pending.add(
+            new PendingEntry(
+                key, CompletableFuture.supplyAsync(() -> resolve(key), renderExecutor)));
+        if (pending.size() >= maxAhead) {
+          writeEntry(zip, pending.poll(), failed);
+        }
+      }
+      while (!pending.isEmpty()) {
+        writeEntry(zip, pending.poll(), failed);
+      }
+      if (!failed.isEmpty()) {
+        ZipArchiveEntry entry = new ZipArchiveEntry(FAILED_ENTRY_NAME);
+        zip.putArchiveEntry(entry);
+        zip.write(String.join("\n", failed).getBytes(StandardCharsets.UTF_8));
+        zip.closeArchiveEntry();
+      }
+      zip.finish(); // Ghi central directory; out do nơi gọi đóng
+      zip.flush();
+    } finally {
+      // Client ngắt kết nối giữa chừng: bỏ các lượt render chưa chạy
+      pending.forEach(entry -> entry.pdf().cancel(false));
+    }
+    log.info("Exported {} invoice PDFs as ZIP ({} failed)", invoices.size(), failed.size());
+  }
+
+  private void writeEntry(ZipArchiveOutputStream zip, PendingEntry entry, List<String> failed)
+      throws IOException {
+    Resource pdf;
+    try {
+      pdf = await(entry.pdf());
+    } catch (RuntimeException e) {
+      // Một hóa đơn lỗi không làm hỏng cả file ZIP đang stream
+      log.warn(
+          "Skipping invoice {} in ZIP export: {}", entry.key().invoiceNumber(), e.getMessage());
+      failed.add(entry.key().invoiceNumber());
+      return;
+    }
+    ZipArchiveEntry zipEntry =
+        new ZipArchiveEntry(
+            LocalDiskInvoicePdfStore.safeName(entry.key().invoiceNumber()) + ".pdf");
+    zipEntry.setSize(pdf.contentLength());
+    zip.putArchiveEntry(zipEntry);
+    try (InputStream in = pdf.getInputStream()) {
+      in.transferTo(zip);
+    }
+    zip.closeArchiveEntry();
+  }
+
+  private Resource resolve(InvoicePdfKey key) {
+    String version = version(key);
+    Optional<Resource> stored = invoicePdfStore.find(key.invoiceNumber(), version);
+    if (stored.isPresent()) {
+      return stored.get();
+    }
+    String renderKey = key.invoiceNumber() + "/" + version;
+    CompletableFuture<Resource> mine = new CompletableFuture<>();
+    CompletableFuture<Resource> running = rendersInFlight.putIfAbsent(renderKey, mine);
+    if (running != null) {
+      return await(running);
+    }
+    try {
+      // Lượt render trước có thể vừa xong giữa find và putIfAbsent
+      Resource resource = invoicePdfStore.find(key.invoiceNumber(), version).orElse(null);
+      if (resource == null) {
+        resource = render(key, version);
+      }
+      mine.complete(resource);
+      return resource;
+    } catch (IOException e) {
+      UncheckedIOException failure =
+          new UncheckedIOException("Error generating PDF for invoice " + key.invoiceNumber(), e);
+      mine.completeExceptionally(failure);
+      throw failure;
+    } catch (RuntimeException e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      rendersInFlight.remove(renderKey, mine);
+    }
+  }
+
+  private Resource render(InvoicePdfKey key, String version) throws IOException {
+    InvoicePdfData data =
+        readOnlyTransaction.execute(
+            status -> invoiceRepository.findForPdfById(key.id()).map(this::toPdfData).orElse(null));
+    if (data == null) {
+      throw new ResourceNotFoundException("Invoice", "id", key.id());
+    }
+    long start = System.nanoTime();
+    Path tempFile = invoicePdfStore.createTempFile();
+    try {
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tempFile))) {
+        invoicePdfRenderer.render(data, out);
+      }
+      Resource resource = invoicePdfStore.save(key.invoiceNumber(), version, tempFile);
+      log.info(
+          "Rendered PDF for invoice {} (version {}) in {} ms",
+          key.invoiceNumber(),
+          version,
+          (System.nanoTime() - start) / 1_000_000);
+      return resource;
+    } finally {
+      Files.deleteIfExists(tempFile); // Còn lại chỉ khi render/lưu lỗi
+    }
+  }
+
+  private InvoicePdfData toPdfData(Invoice invoice) {
+    Order order = invoice.getOrder();
+    List<InvoicePdfRenderer.Line> lines =
+        order.getOrderItems().stream()
+            .sorted(
+                Comparator.comparing(
+                    OrderItem::getId, Comparator.nullsLast(Comparator.naturalOrder())))
+            .map(
+                item ->
+                    new InvoicePdfRenderer.Line(
+                        item.getProductName(),
+                        item.getUnit(),
+                        item.getQuantity(),
+                        item.getPricePerUnit(),
+                        item.getTotalPrice()))
+            .toList();
+    return new InvoicePdfData(
+        invoice.getInvoiceNumber(),
+        invoice.getIssueDate(),
+        order.getFarmer().getFullName(),
+        order.getBuyer().getFullName(),
+        lines,
+        order.getSubTotal(),
+        order.getShippingFee(),
+        order.getDiscountAmount(),
+        order.getTotalAmount());
+  }
+
+  // PDF in họ tên buyer/farmer: đổi tên một bên cũng phải ra phiên bản mới
+  static String version(InvoicePdfKey key) {
+    return "r"
+        + InvoicePdfRenderer.LAYOUT_REVISION
+        + "-"
+        + format(key.updatedAt())
+        + "-"
+        + format(key.buyerUpdatedAt())
+        + "-"
+        + format(key.farmerUpdatedAt());
+  }
+
+  private static String format(LocalDateTime timestamp) {
+    return timestamp != null ? VERSION_FORMAT.format(timestamp) : "0";
+  }
+
+  private static <T> T await(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  private record PendingEntry(InvoicePdfKey key, CompletableFuture<Resource> pdf) {}
+}
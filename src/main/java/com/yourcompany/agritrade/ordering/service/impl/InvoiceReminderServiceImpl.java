@@ -0,0 +1,286 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import com.yourcompany.agritrade.common.model.RoleType;
+import com.yourcompany.agritrade.notification.service.EmailService;
+import com.yourcompany.agritrade.notification.service.NotificationService;
+import com.yourcompany.agritrade.ordering.domain.Invoice;
+import com.yourcompany.agritrade.ordering.domain.InvoiceReminderCheckpoint;
+import com.yourcompany.agritrade.ordering.domain.InvoiceReminderPhase;
+import com.yourcompany.agritrade.ordering.domain.InvoiceStatus;
+import com.yourcompany.agritrade.ordering.repository.InvoiceReminderCheckpointRepository;
+import com.yourcompany.agritrade.ordering.repository.InvoiceRepository;
+import com.yourcompany.agritrade.ordering.service.InvoiceReminderService;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceReminderServiceImpl implements InvoiceReminderService {
+
+  static final String CHECKPOINT_NAME = "invoice-reminders";
+
+  private record PhaseResult(int reminded, int failed) {}
+
+  private final InvoiceRepository invoiceRepository;
+  private final InvoiceReminderCheckpointRepository checkpointRepository;
+  private final NotificationService notificationService;
+  private final EmailService emailService;
+  private final UserRepository userRepository;
+  private final PlatformTransactionManager transactionManager;
+
+  @Value("${app.scheduler.invoice.due_soon_days_before:3}")
+  private int dueSoonDaysBefore;
+
+  @Value("${app.scheduler.invoice.chunk_size:200}")
+  private int chunkSize;
+
+  @Override
+  public RunResult sendReminders(LocalDate today) {
+    InvoiceReminderCheckpoint checkpoint =
+        inTransaction(() -> checkpointRepository.findById(CHECKPOINT_NAME).orElse(null));
+    boolean sameDay = checkpoint != null && today.equals(checkpoint.getRunDate());
+    if (sameDay && checkpoint.getPhase() == InvoiceReminderPhase.DONE) {
+      log.info("Invoice reminders for {} already sent, skipping", today);
+      return new RunResult(today, 0, 0, 0, 0, false);
+    }
+
+    int overdueReminders = 0;
+    int failedReminders = 0;
+    if (checkpoint != null && !sameDay && checkpoint.getPhase() == InvoiceReminderPhase.OVERDUE) {
+      // Lượt của ngày trước dừng khi chưa nhắc hết các hóa đơn nó đã chuyển sang OVERDUE.
+      // Nhắc sắp đến hạn của ngày đó đã lỗi thời nên bỏ qua.
+      log.warn(
+          "Resuming unfinished overdue reminders of {} after invoice {}",
+          checkpoint.getRunDate(),
+          checkpoint.getLastInvoiceId());
+      try {
+        PhaseResult previous =
+            processPhase(
+                checkpoint.getRunDate(),
+                InvoiceReminderPhase.OVERDUE,
+                checkpoint.getLastInvoiceId());
+        overdueReminders += previous.reminded();
+        failedReminders += previous.failed();
+      } catch (RuntimeException e) {
+        // Phần còn lại của ngày trước không được chặn lượt hôm nay; checkpoint mới sẽ thay thế nó
+        log.error(
+            "Abandoning unfinished overdue reminders of {}: {}",
+            checkpoint.getRunDate(),
+            e.getMessage(),
+            e);
+      }
+    }
+
+    int markedOverdue = 0;
+    InvoiceReminderPhase phase;
+    long afterId;
+    if (sameDay) {
+      phase = checkpoint.getPhase();
+      afterId = checkpoint.getLastInvoiceId();
+      log.warn("Resuming invoice reminders for {} at {} after invoice {}", today, phase, afterId);
+    } else {
+      // Chuyển trạng thái và mở checkpoint của lượt mới trong cùng một transaction
+      markedOverdue =
+          inTransaction(
+              () -> {
+                int marked = invoiceRepository.markOverdue(today, LocalDateTime.now());
+                saveCheckpoint(today, InvoiceReminderPhase.OVERDUE, 0L);
+                return marked;
+              });
+      log.info("Marked {} invoices as OVERDUE.", markedOverdue);
+      phase = InvoiceReminderPhase.OVERDUE;
+      afterId = 0L;
+    }
+
+    if (phase == InvoiceReminderPhase.OVERDUE) {
+      PhaseResult overdue = processPhase(today, InvoiceReminderPhase.OVERDUE, afterId);
+      overdueReminders += overdue.reminded();
+      failedReminders += overdue.failed();
+      phase = InvoiceReminderPhase.DUE_SOON;
+      afterId = 0L;
+    }
+    int dueSoonReminders = 0;
+    if (phase == InvoiceReminderPhase.DUE_SOON) {
+      PhaseResult dueSoon = processPhase(today, InvoiceReminderPhase.DUE_SOON, afterId);
+      dueSoonReminders = dueSoon.reminded();
+      failedReminders += dueSoon.failed();
+    }
+    log.info(
+        "Invoice reminders for {}: {} overdue, {} due soon, {} failed",
+        today,
+        overdueReminders,
+        dueSoonReminders,
+        failedReminders);
+    return new RunResult(
+        today, markedOverdue, overdueReminders, dueSoonReminders, failedReminders, sameDay);
+  }
+
+  @Override
+  public boolean hasUnfinishedRun(LocalDate today) {
+    InvoiceReminderCheckpoint checkpoint =
+        inTransaction(() -> checkpointRepository.findById(CHECKPOINT_NAME).orElse(null));
+    return checkpoint != null
+        && today.equals(checkpoint.getRunDate())
+        && checkpoint.getPhase() != InvoiceReminderPhase.DONE;
+  }
+
+  // Xử lý từng lô của một bước cho tới hết
+  private PhaseResult processPhase(
+      LocalDate runDate, InvoiceReminderPhase phase, long startAfterId) {
+    List<User> admins =
+        phase == InvoiceReminderPhase.OVERDUE
+            ? inTransaction(() -> userRepository.findByRoles_Name(RoleType.ROLE_ADMIN))
+            : List.of();
+    int reminded = 0;
+    int failed = 0;
+    long afterId = startAfterId;
+    while (true) {
+      long chunkAfterId = afterId;
+      List<Long> ids;
+      try {
+        ids = inTransaction(() -> processChunk(runDate, phase, chunkAfterId, admins));
+        reminded += ids.size();
+      } catch (RuntimeException e) {
+        log.warn(
+            "{} reminder chunk after invoice {} failed ({}), retrying invoice by invoice",
+            phase,
+            chunkAfterId,
+            e.getMessage());
+        List<Long> chunkIds = inTransaction(() -> findChunkIds(runDate, phase, chunkAfterId));
+        int chunkFailed = processChunkOneByOne(phase, chunkIds, admins);
+        inTransaction(
+            () -> {
+              advanceCheckpoint(runDate, phase, chunkIds);
+              return null;
+            });
+        ids = chunkIds;
+        reminded += ids.size() - chunkFailed;
+        failed += chunkFailed;
+      }
+      if (ids.size() < chunkSize) {
+        return new PhaseResult(reminded, failed);
+      }
+      afterId = ids.get(ids.size() - 1);
+    }
+  }
+
+  /**
+   * Gửi nhắc cho một lô và dịch checkpoint trong cùng transaction. Lô cuối (ít hơn chunkSize)
+   * chuyển checkpoint sang bước kế tiếp.
+   */
+  private List<Long> processChunk(
+      LocalDate runDate, InvoiceReminderPhase phase, long afterId, List<User> admins) {
+    List<Long> ids = findChunkIds(runDate, phase, afterId);
+    if (!ids.isEmpty()) {
+      for (Invoice invoice : invoiceRepository.findWithDetailsByIdIn(ids)) {
+        remind(invoice, phase, admins);
+      }
+    }
+    advanceCheckpoint(runDate, phase, ids);
+    return ids;
+  }
+
+  /**
+   * Chạy lại lô lỗi, mỗi hóa đơn một transaction, để một hóa đơn lỗi vĩnh viễn không chặn
+   * checkpoint. Dừng giữa chừng ở đây thì lần chạy tiếp nhắc lại các hóa đơn đã xong của lô này.
+   *
+   * @return Số hóa đơn vẫn lỗi và bị bỏ qua.
+   */
+  private int processChunkOneByOne(InvoiceReminderPhase phase, List<Long> ids, List<User> admins) {
+    int failed = 0;
+    for (Long id : ids) {
+      try {
+        inTransaction(
+            () -> {
+              invoiceRepository
+                  .findWithDetailsByIdIn(List.of(id))
+                  .forEach(invoice -> remind(invoice, phase, admins));
+              return null;
+            });
+      } catch (RuntimeException e) {
+        failed++;
+        log.error("Skipping {} reminder for invoice {}: {}", phase, id, e.getMessage(), e);
+      }
+    }
+    return failed;
+  }
+
+  private List<Long> findChunkIds(LocalDate runDate, InvoiceReminderPhase phase, long afterId) {
+    PageRequest chunk = PageRequest.of(0, chunkSize);
+    return phase == InvoiceReminderPhase.OVERDUE
+        ? invoiceRepository.findIdsMarkedOverdueOn(runDate, afterId, chunk)
+        : invoiceRepository.findIdsByStatusAndDueDateBetween(
+            InvoiceStatus.ISSUED, runDate, runDate.plusDays(dueSoonDaysBefore), afterId, chunk);
+  }
+
+  private void remind(Invoice invoice, InvoiceReminderPhase phase, List<User> admins) {
+    if (phase == InvoiceReminderPhase.OVERDUE) {
+      sendOverdueReminders(invoice, admins);
+    } else {
+      sendDueSoonReminder(invoice);
+    }
+  }
+
+  private void advanceCheckpoint(LocalDate runDate, InvoiceReminderPhase phase, List<Long> ids) {
+    if (ids.size() < chunkSize) {
+      saveCheckpoint(runDate, nextPhase(phase), 0L);
+    } else {
+      saveCheckpoint(runDate, phase, ids.get(ids.size() - 1));
+    }
+  }
+
+  private void sendOverdueReminders(Invoice invoice, List<User> admins) {
+    log.warn(
+        "Invoice {} for order {} is overdue (Due date: {}). Sending reminders.",
+        invoice.getInvoiceNumber(),
+        invoice.getOrder().getOrderCode(),
+        invoice.getDueDate());
+    if (invoice.getOrder().getBuyer() != null) {
+      notificationService.sendOverdueInvoiceReminderToBuyer(invoice);
+      emailService.sendOverdueInvoiceReminderEmail(invoice);
+    }
+    if (!admins.isEmpty()) {
+      notificationService.sendOverdueInvoiceNotificationToAdmin(invoice);
+      emailService.sendOverdueInvoiceAdminEmail(invoice, admins);
+    }
+  }
+
+  private void sendDueSoonReminder(Invoice invoice) {
+    log.info(
+        "Invoice {} for order {} is due soon (Due date: {}). Sending reminder.",
+        invoice.getInvoiceNumber(),
+        invoice.getOrder().getOrderCode(),
+        invoice.getDueDate());
+    if (invoice.getOrder().getBuyer() != null) {
+      notificationService.sendDueSoonInvoiceReminderToBuyer(invoice);
+      emailService.sendDueSoonInvoiceReminderEmail(invoice);
+    }
+  }
+
+  private void saveCheckpoint(LocalDate runDate, InvoiceReminderPhase phase, Long lastInvoiceId) {
+    checkpointRepository.save(
+        new InvoiceReminderCheckpoint(CHECKPOINT_NAME, runDate, phase, lastInvoiceId));
+  }
+
+  private static InvoiceReminderPhase nextPhase(InvoiceReminderPhase phase) {
+    return phase == InvoiceReminderPhase.OVERDUE
+        ? InvoiceReminderPhase.DUE_SOON
+        : InvoiceReminderPhase.DONE;
+  }
+
+  private <T> T inTransaction(Supplier<T> work) {
+    return new TransactionTemplate(transactionManager).execute(status -> work.get());
+  }
+}
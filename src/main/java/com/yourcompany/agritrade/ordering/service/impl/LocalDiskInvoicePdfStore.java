@@ -0,0 +1,95 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import com.yourcompany.agritrade.ordering.service.InvoicePdfStore;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+/**
+ * Lưu PDF tại {@code <cache-dir>/<số hóa đơn>/<phiên bản>.pdf}. File được render vào thư mục tạm
+ * cùng ổ đĩa rồi rename nguyên tử, nên người đọc không bao giờ thấy file ghi dở.
+ */
+@Service
+@Slf4j
+public class LocalDiskInvoicePdfStore implements InvoicePdfStore {
+
+  private static final String PDF_SUFFIX = ".pdf";
+
+  @Value("${app.invoice.pdf.cache-dir:${java.io.tmpdir}/agritrade/invoice-pdf}")
+  private String cacheDir;
+
+  private Path root;
+  private Path tempDir;
+
+  @PostConstruct
+  void init() {
+    root = Paths.get(cacheDir).toAbsolutePath().normalize();
+    tempDir = root.resolve(".tmp");
+    try {
+      Files.createDirectories(tempDir);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot create invoice PDF cache directory " + root, e);
+    }
+    log.info("Invoice PDF cache directory: {}", root);
+  }
+
+  @Override
+  public Optional<Resource> find(String invoiceNumber, String version) {
+    Path file = pdfFile(invoiceNumber, version);
+    return Files.isRegularFile(file) ? Optional.of(new FileSystemResource(file)) : Optional.empty();
+  }
+
+  @Override
+  public Path createTempFile() throws IOException {
+    return Files.createTempFile(tempDir, "render-", PDF_SUFFIX);
+  }
+
+  @Override
+  public Resource save(String invoiceNumber, String version, Path renderedFile) throws IOException {
+    Path target = pdfFile(invoiceNumber, version);
+    Files.createDirectories(target.getParent());
+    try {
+      Files.move(renderedFile, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(renderedFile, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+    deleteOtherVersions(target);
+    return new FileSystemResource(target);
+  }
+
+  private void deleteOtherVersions(Path current) {
+    try (DirectoryStream<Path> files =
+        Files.newDirectoryStream(current.getParent(), "*" + PDF_SUFFIX)) {
+      for (Path file : files) {
+        if (!file.equals(current)) {
+          Files.deleteIfExists(file);
+        }
+      }
+    } catch (IOException e) {
+      // Bản cũ còn sót chỉ tốn chỗ, không ảnh hưởng kết quả
+      log.warn("Could not delete old invoice PDF versions in {}: {}", current, e.getMessage());
+    }
+  }
+
+  private Path pdfFile(String invoiceNumber, String version) {
+    return root.resolve(safeName(invoiceNumber)).resolve(safeName(version) + PDF_SUFFIX);
+  }
+
+  // Số hóa đơn/phiên bản chỉ gồm chữ, số, '-', '_' và '.', nhưng vẫn chặn ký tự đường dẫn
+  static String safeName(String value) {
+    String name = value.replaceAll("[^A-Za-z0-9._-]", "_");
+    return name.startsWith(".") ? "_" + name : name;
+  }
+}
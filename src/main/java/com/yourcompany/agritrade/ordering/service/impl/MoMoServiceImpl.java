@@ -1,9 +1,11 @@
 package com.yourcompany.agritrade.ordering.service.impl;
 
+import com.yourcompany.agritrade.common.exception.PaymentGatewayUnavailableException;
 import com.yourcompany.agritrade.common.util.MoMoUtils;
 import com.yourcompany.agritrade.ordering.domain.Order;
 import com.yourcompany.agritrade.ordering.domain.PaymentMethod;
 import com.yourcompany.agritrade.ordering.dto.response.PaymentUrlResponse;
+import com.yourcompany.agritrade.ordering.service.PaymentGatewayHttpClient;
 import com.yourcompany.agritrade.ordering.service.PaymentGatewayService;
 import java.math.BigDecimal;
 import java.util.HashMap;
@@ -11,11 +13,7 @@ import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 @Service("moMoService") // Đặt tên bean
 @RequiredArgsConstructor
@@ -40,7 +38,7 @@ public class MoMoServiceImpl implements PaymentGatewayService {
   @Value("${app.backend.url}")
   private String backendAppUrl;
 
-  private final RestTemplate restTemplate; // Inject RestTemplate
+  private final PaymentGatewayHttpClient gatewayHttpClient;
 
   @Override
   public PaymentUrlResponse createMoMoPaymentUrl(
@@ -89,13 +87,9 @@ public class MoMoServiceImpl implements PaymentGatewayService {
       requestBody.put("requestType", requestType);
       requestBody.put("signature", signature);
 
-      HttpHeaders headers = new HttpHeaders();
-      headers.setContentType(MediaType.APPLICATION_JSON);
-      HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
       // Gọi API MoMo để tạo giao dịch
       Map<String, Object> momoResponse =
-          restTemplate.postForObject(momoEndpoint, entity, Map.class);
+          gatewayHttpClient.postJson(PaymentMethod.MOMO, momoEndpoint, requestBody, Map.class);
 
       if (momoResponse != null && "0".equals(String.valueOf(momoResponse.get("resultCode")))) {
         String payUrl = (String) momoResponse.get("payUrl");
@@ -108,6 +102,12 @@ public class MoMoServiceImpl implements PaymentGatewayService {
             "Error creating MoMo payment URL for order {}: {}", order.getOrderCode(), message);
         throw new RuntimeException("Failed to create MoMo payment: " + message);
       }
+    } catch (PaymentGatewayUnavailableException e) {
+      log.warn(
+          "MoMo unavailable while creating payment URL for order {}: {}",
+          order.getOrderCode(),
+          e.getMessage());
+      throw e;
     } catch (Exception e) {
       log.error(
           "Exception creating MoMo payment URL for order {}: {}",
@@ -179,13 +179,9 @@ public class MoMoServiceImpl implements PaymentGatewayService {
       requestBody.put("signature", signature);
       // Thêm các trường khác theo yêu cầu của MoMo Refund API
 
-      HttpHeaders headers = new HttpHeaders();
-      headers.setContentType(MediaType.APPLICATION_JSON);
-      HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
       // Gọi API hoàn tiền của MoMo
       Map<String, Object> momoRefundResponse =
-          restTemplate.postForObject(momoRefundUrl, entity, Map.class); // Sử dụng momoRefundUrl
+          gatewayHttpClient.postJson(PaymentMethod.MOMO, momoRefundUrl, requestBody, Map.class);
       log.info("MoMo Refund Response: {}", momoRefundResponse);
 
       if (momoRefundResponse != null
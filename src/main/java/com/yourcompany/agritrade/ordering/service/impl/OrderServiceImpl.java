@@ -1,12 +1,17 @@
 package com.yourcompany.agritrade.ordering.service.impl;
 
 import com.yourcompany.agritrade.catalog.domain.*;
+import com.yourcompany.agritrade.catalog.event.CatalogChangedEvent;
 import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.common.dto.response.CursorPageResponse;
 import com.yourcompany.agritrade.common.exception.BadRequestException;
 import com.yourcompany.agritrade.common.exception.OutOfStockException;
 import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
+import com.yourcompany.agritrade.common.model.ExportFormat;
 import com.yourcompany.agritrade.common.model.RoleType;
+import com.yourcompany.agritrade.common.service.ExcelExportService;
 import com.yourcompany.agritrade.common.service.FileStorageService;
+import com.yourcompany.agritrade.common.util.KeysetCursor;
 import com.yourcompany.agritrade.common.util.SecurityUtils;
 import com.yourcompany.agritrade.common.util.VnPayUtils;
 import com.yourcompany.agritrade.notification.service.NotificationService;
@@ -17,29 +22,43 @@ import com.yourcompany.agritrade.ordering.mapper.OrderMapper;
 import com.yourcompany.agritrade.ordering.repository.*;
 import com.yourcompany.agritrade.ordering.repository.specification.OrderSpecifications;
 import com.yourcompany.agritrade.ordering.service.InvoiceService;
+import com.yourcompany.agritrade.ordering.service.OrderCodeGenerator;
 import com.yourcompany.agritrade.ordering.service.OrderService;
 import com.yourcompany.agritrade.ordering.service.PaymentGatewayService;
+import com.yourcompany.agritrade.ordering.service.StockReservationService;
 import com.yourcompany.agritrade.usermanagement.domain.Address;
 import com.yourcompany.agritrade.usermanagement.domain.FarmerProfile;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import com.yourcompany.agritrade.usermanagement.repository.AddressRepository;
 import com.yourcompany.agritrade.usermanagement.repository.FarmerProfileRepository;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.time.LocalDate;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -52,8 +71,10 @@ import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 @Service
@@ -61,6 +82,10 @@ import org.springframework.util.StringUtils;
 @Slf4j
 public class OrderServiceImpl implements OrderService {
 
+  private static final int MAX_CURSOR_PAGE_SIZE = 100;
+  // MySQL Connector/J chỉ stream từng dòng (không nạp cả result set) khi fetchSize = MIN_VALUE
+  private static final int EXPORT_FETCH_SIZE = Integer.MIN_VALUE;
+
   private final OrderRepository orderRepository;
 
   private final PaymentRepository paymentRepository;
@@ -81,6 +106,18 @@ public class OrderServiceImpl implements OrderService {
 
   private final SupplyOrderRequestRepository supplyOrderRequestRepository;
 
+  private final StockReservationService stockReservationService;
+
+  private final OrderCodeGenerator orderCodeGenerator;
+
+  private final ExcelExportService excelExportService;
+
+  private final EntityManager entityManager;
+
+  private final ApplicationEventPublisher eventPublisher;
+
+  private final PlatformTransactionManager transactionManager;
+
   @Value("${app.bank.accountName}")
   private String appBankAccountName;
 
@@ -133,8 +170,20 @@ public class OrderServiceImpl implements OrderService {
     }
 
     // --- BƯỚC 1: XÁC THỰC TOÀN BỘ GIỎ HÀNG VÀ TÍNH TOÁN LẠI TỔNG TIỀN ---
+    // Tải và khóa tất cả sản phẩm trong giỏ bằng một truy vấn (thay vì findById từng sản phẩm)
+    Map<Long, Product> lockedProducts =
+        stockReservationService.lockProducts(
+            cartItems.stream()
+                .map(CartItem::getProduct)
+                .filter(Objects::nonNull)
+                .map(Product::getId)
+                .toList());
+    // Sản phẩm hot stock lấy tồn kho từ ledger, các sản phẩm khác lấy từ hàng vừa khóa
+    Map<Long, Integer> availableStock = stockReservationService.getAvailableStock(lockedProducts);
+
     List<String> validationErrors = new ArrayList<>();
     Map<Long, Product> validatedProducts = new HashMap<>(); // Lưu các sản phẩm đã được kiểm tra
+    Map<Long, Integer> quantitiesToDeduct = new HashMap<>();
     BigDecimal currentActualSubTotal = BigDecimal.ZERO;
 
     for (CartItem cartItem : cartItems) {
@@ -148,7 +197,7 @@ public class OrderServiceImpl implements OrderService {
       Long productId = productInCart.getId();
       int requestedQuantity = cartItem.getQuantity();
 
-      Product productFromDb = productRepository.findById(productId).orElse(null);
+      Product productFromDb = lockedProducts.get(productId);
 
       // Kiểm tra các điều kiện và thu thập lỗi
       if (productFromDb == null || productFromDb.isDeleted()) {
@@ -161,18 +210,21 @@ public class OrderServiceImpl implements OrderService {
         cartItemRepository.delete(cartItem);
         continue;
       }
-      if (productFromDb.getStockQuantity() < requestedQuantity) {
+      int productAvailableStock =
+          availableStock.getOrDefault(productId, productFromDb.getStockQuantity());
+      if (productAvailableStock < requestedQuantity) {
         validationErrors.add(
             "Sản phẩm '"
                 + productFromDb.getName()
                 + "' không đủ số lượng tồn kho (chỉ còn "
-                + productFromDb.getStockQuantity()
+                + productAvailableStock
                 + ").");
         continue; // Không xóa, chỉ báo lỗi để người dùng sửa
       }
 
       // Nếu sản phẩm hợp lệ, thêm vào map để xử lý sau và tính tổng phụ
       validatedProducts.put(productId, productFromDb);
+      quantitiesToDeduct.merge(productId, requestedQuantity, Integer::sum);
       currentActualSubTotal =
           currentActualSubTotal.add(
               productFromDb.getPrice().multiply(BigDecimal.valueOf(requestedQuantity)));
@@ -185,8 +237,18 @@ public class OrderServiceImpl implements OrderService {
           "Không thể đặt hàng. Vui lòng kiểm tra lại giỏ hàng:\n" + combinedErrorMessage);
     }
 
+    // Nạp profile (kèm User) của mọi farmer trong giỏ bằng một truy vấn, dùng chung cho tính phí
+    // ship và tạo đơn thay vì findById từng farmer
+    Map<Long, List<CartItem>> itemsByFarmer =
+        cartItems.stream()
+            .collect(Collectors.groupingBy(item -> item.getProduct().getFarmer().getId()));
+    Map<Long, FarmerProfile> farmerProfiles =
+        farmerProfileRepository.findAllWithUserByUserIdIn(itemsByFarmer.keySet()).stream()
+            .collect(Collectors.toMap(FarmerProfile::getUserId, profile -> profile));
+
     // --- BƯỚC 2: KIỂM TRA TỔNG TIỀN CUỐI CÙNG ---
-    BigDecimal totalShippingFee = calculateTotalShippingFee(cartItems, buyer, shippingAddress);
+    BigDecimal totalShippingFee =
+        calculateTotalShippingFee(itemsByFarmer, buyer, shippingAddress, farmerProfiles);
     BigDecimal totalDiscount = calculateDiscount(buyer, currentActualSubTotal);
     BigDecimal currentActualTotal =
         currentActualSubTotal
@@ -204,29 +266,24 @@ public class OrderServiceImpl implements OrderService {
           "Tổng giá trị đơn hàng đã thay đổi do cập nhật giá hoặc phí vận chuyển. Vui lòng quay lại giỏ hàng để xác nhận lại.");
     }
 
-    // --- BƯỚC 3: TẠO ĐƠN HÀNG (KHI MỌI THỨ ĐỀU HỢP LỆ) ---
-    Map<Long, List<CartItem>> itemsByFarmer =
-        cartItems.stream()
-            .collect(Collectors.groupingBy(item -> item.getProduct().getFarmer().getId()));
+    // --- BƯỚC 3: TRỪ TỒN KHO CHO TOÀN BỘ GIỎ HÀNG TRONG MỘT LẦN GHI ---
+    // Các hàng sản phẩm đã bị khóa ở bước 1 nên không còn xung đột optimistic lock/retry
+    stockReservationService.deductStock(validatedProducts, quantitiesToDeduct);
 
-    List<Order> createdOrders = new ArrayList<>();
+    // --- BƯỚC 4: DỰNG TOÀN BỘ ĐƠN HÀNG TRONG BỘ NHỚ ---
+    List<Order> createdOrders = new ArrayList<>(itemsByFarmer.size());
 
     for (Map.Entry<Long, List<CartItem>> entry : itemsByFarmer.entrySet()) {
       Long farmerId = entry.getKey();
       List<CartItem> farmerCartItems = entry.getValue();
-      User farmer =
-          userRepository
-              .findById(farmerId)
-              .orElseThrow(
-                  () -> new IllegalStateException("Farmer not found during order creation"));
-      FarmerProfile farmerProfile =
-          farmerProfileRepository
-              .findById(farmerId)
-              .orElseThrow(() -> new IllegalStateException("Farmer profile not found"));
+      FarmerProfile farmerProfile = farmerProfiles.get(farmerId);
+      if (farmerProfile == null) {
+        throw new IllegalStateException("Farmer profile not found");
+      }
 
       Order order = new Order();
       order.setBuyer(buyer);
-      order.setFarmer(farmer);
+      order.setFarmer(farmerProfile.getUser());
       order.setOrderType(determineOrderType(buyer, farmerCartItems));
       order.setOrderCode(generateOrderCode());
       order.setPaymentMethod(request.getPaymentMethod());
@@ -241,12 +298,6 @@ public class OrderServiceImpl implements OrderService {
         Product product = validatedProducts.get(cartItem.getProduct().getId());
         int requestedQuantity = cartItem.getQuantity();
 
-        // Trừ tồn kho trên đối tượng đã được xác thực
-        product.setStockQuantity(product.getStockQuantity() - requestedQuantity);
-
-        // Thêm dòng này để lưu lại sự thay đổi tồn kho của sản phẩm
-        productRepository.saveAndFlush(product);
-
         // Tạo OrderItem với giá hiện tại
         OrderItem orderItem = new OrderItem();
         orderItem.setProduct(product);
@@ -274,39 +325,44 @@ public class OrderServiceImpl implements OrderService {
       order.setDiscountAmount(farmerDiscount);
       order.setTotalAmount(farmerSubTotal.add(farmerShippingFee).subtract(farmerDiscount));
 
-      Order savedOrder = orderRepository.save(order);
-      createdOrders.add(savedOrder);
+      // Payment ban đầu đi theo cascade của Order
+      order.addPayment(buildInitialPaymentRecord(order));
+      createdOrders.add(order);
+    }
+
+    // --- BƯỚC 5: GHI THEO LÔ ---
+    // ID cấp theo khối (BlockSequenceId) nên persist không cần INSERT ngay; orders, order_items và
+    // payments được flush thành JDBC batch theo từng bảng
+    orderRepository.saveAll(createdOrders);
 
-      notificationService.sendOrderPlacementNotification(savedOrder);
-      createInitialPaymentRecord(savedOrder);
-      if (savedOrder.getPaymentMethod() == PaymentMethod.INVOICE) {
-        invoiceService.getOrCreateInvoiceForOrder(savedOrder);
+    for (Order order : createdOrders) {
+      notificationService.sendOrderPlacementNotification(order);
+      if (order.getPaymentMethod() == PaymentMethod.INVOICE) {
+        invoiceService.getOrCreateInvoiceForOrder(order);
       }
-      log.info("Order {} created successfully for farmer {}", savedOrder.getOrderCode(), farmerId);
+      log.info(
+          "Order {} created successfully for farmer {}",
+          order.getOrderCode(),
+          order.getFarmer().getId());
     }
 
     // Xóa toàn bộ giỏ hàng sau khi đã xử lý thành công
     cartItemRepository.deleteAllInBatch(cartItems);
 
-    return createdOrders.stream()
-        .map(o -> orderRepository.findById(o.getId()).orElse(o))
-        .map(orderMapper::toOrderResponse)
-        .collect(Collectors.toList());
+    // Các đơn vừa dựng đã đủ buyer, farmer (kèm profile), items và payments trong bộ nhớ
+    return createdOrders.stream().map(orderMapper::toOrderResponse).collect(Collectors.toList());
   }
 
   private BigDecimal calculateTotalShippingFee(
-      List<CartItem> cartItems, User buyer, Address shippingAddress) {
-    Map<Long, List<CartItem>> itemsByFarmer =
-        cartItems.stream()
-            .collect(Collectors.groupingBy(item -> item.getProduct().getFarmer().getId()));
-
+      Map<Long, List<CartItem>> itemsByFarmer,
+      User buyer,
+      Address shippingAddress,
+      Map<Long, FarmerProfile> farmerProfiles) {
     BigDecimal totalShippingFee = BigDecimal.ZERO;
 
     for (Map.Entry<Long, List<CartItem>> entry : itemsByFarmer.entrySet()) {
-      Long farmerId = entry.getKey();
       List<CartItem> farmerCartItems = entry.getValue();
-      // Lấy profile để tính phí ship
-      FarmerProfile farmerProfile = farmerProfileRepository.findById(farmerId).orElse(null);
+      FarmerProfile farmerProfile = farmerProfiles.get(entry.getKey());
       OrderType orderType = determineOrderType(buyer, farmerCartItems);
 
       if (farmerProfile != null) {
@@ -330,12 +386,7 @@ public class OrderServiceImpl implements OrderService {
       Pageable pageable) {
     User buyer = SecurityUtils.getCurrentAuthenticatedUser();
     Specification<Order> spec =
-        Specification.where(OrderSpecifications.byBuyer(buyer.getId()))
-            .and(OrderSpecifications.hasStatus(status))
-            .and(OrderSpecifications.buyerSearch(keyword))
-            .and(OrderSpecifications.hasPaymentMethod(paymentMethod))
-            .and(OrderSpecifications.hasPaymentStatus(paymentStatus))
-            .and(OrderSpecifications.hasOrderType(orderType));
+        buyerOrdersSpec(buyer.getId(), keyword, status, paymentMethod, paymentStatus, orderType);
 
     Page<Order> orderPage = orderRepository.findAll(spec, pageable);
     return orderMapper.toOrderSummaryResponsePage(orderPage);
@@ -353,12 +404,7 @@ public class OrderServiceImpl implements OrderService {
       Pageable pageable) {
     User farmer = SecurityUtils.getCurrentAuthenticatedUser();
     Specification<Order> spec =
-        Specification.where(OrderSpecifications.byFarmer(farmer.getId()))
-            .and(OrderSpecifications.hasStatus(status))
-            .and(OrderSpecifications.farmerSearch(keyword)) // Sử dụng farmerSearch
-            .and(OrderSpecifications.hasPaymentMethod(paymentMethod))
-            .and(OrderSpecifications.hasPaymentStatus(paymentStatus))
-            .and(OrderSpecifications.hasOrderType(orderType));
+        farmerOrdersSpec(farmer.getId(), keyword, status, paymentMethod, paymentStatus, orderType);
 
     Page<Order> orderPage = orderRepository.findAll(spec, pageable);
     return orderMapper.toOrderSummaryResponsePage(orderPage);
@@ -375,6 +421,109 @@ public class OrderServiceImpl implements OrderService {
       Long buyerId,
       Long farmerId,
       Pageable pageable) {
+    Specification<Order> spec =
+        adminOrdersSpec(
+            keyword, status, paymentMethod, paymentStatus, orderType, buyerId, farmerId);
+
+    Page<Order> orderPage = orderRepository.findAll(spec, pageable); // Dùng findAll với Spec
+    return orderMapper.toOrderSummaryResponsePage(orderPage);
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public CursorPageResponse<OrderSummaryResponse> getMyOrdersAsBuyerByCursor(
+      Authentication authentication,
+      String keyword,
+      OrderStatus status,
+      PaymentMethod paymentMethod,
+      PaymentStatus paymentStatus,
+      OrderType orderType,
+      String cursor,
+      int size) {
+    User buyer = SecurityUtils.getCurrentAuthenticatedUser();
+    return findOrdersByCursor(
+        buyerOrdersSpec(buyer.getId(), keyword, status, paymentMethod, paymentStatus, orderType),
+        cursor,
+        size);
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public CursorPageResponse<OrderSummaryResponse> getMyOrdersAsFarmerByCursor(
+      Authentication authentication,
+      String keyword,
+      OrderStatus status,
+      PaymentMethod paymentMethod,
+      PaymentStatus paymentStatus,
+      OrderType orderType,
+      String cursor,
+      int size) {
+    User farmer = SecurityUtils.getCurrentAuthenticatedUser();
+    return findOrdersByCursor(
+        farmerOrdersSpec(farmer.getId(), keyword, status, paymentMethod, paymentStatus, orderType),
+        cursor,
+        size);
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public CursorPageResponse<OrderSummaryResponse> getAllOrdersForAdminByCursor(
+      String keyword,
+      OrderStatus status,
+      PaymentMethod paymentMethod,
+      PaymentStatus paymentStatus,
+      OrderType orderType,
+      Long buyerId,
+      Long farmerId,
+      String cursor,
+      int size) {
+    return findOrdersByCursor(
+        adminOrdersSpec(
+            keyword, status, paymentMethod, paymentStatus, orderType, buyerId, farmerId),
+        cursor,
+        size);
+  }
+
+  // --- Helper: Specification dùng chung cho phân trang OFFSET và phân trang keyset ---
+
+  private Specification<Order> buyerOrdersSpec(
+      Long buyerId,
+      String keyword,
+      OrderStatus status,
+      PaymentMethod paymentMethod,
+      PaymentStatus paymentStatus,
+      OrderType orderType) {
+    return Specification.where(OrderSpecifications.byBuyer(buyerId))
+        .and(OrderSpecifications.hasStatus(status))
+        .and(OrderSpecifications.buyerSearch(keyword))
+        .and(OrderSpecifications.hasPaymentMethod(paymentMethod))
+        .and(OrderSpecifications.hasPaymentStatus(paymentStatus))
+        .and(OrderSpecifications.hasOrderType(orderType));
+  }
+
+  private Specification<Order> farmerOrdersSpec(
+      Long farmerId,
+      String keyword,
+      OrderStatus status,
+      PaymentMethod paymentMethod,
+      PaymentStatus paymentStatus,
+      OrderType orderType) {
+    return Specification.where(OrderSpecifications.byFarmer(farmerId))
+        .and(OrderSpecifications.hasStatus(status))
+        .and(OrderSpecifications.farmerSearch(keyword)) // Sử dụng farmerSearch
+        .and(OrderSpecifications.hasPaymentMethod(paymentMethod))
+        .and(OrderSpecifications.hasPaymentStatus(paymentStatus))
+        .and(OrderSpecifications.hasOrderType(orderType));
+  }
+
+  private Specification<Order> adminOrdersSpec(
+      String keyword,
+      OrderStatus status,
+      PaymentMethod paymentMethod,
+      PaymentStatus paymentStatus,
+      OrderType orderType,
+      Long buyerId,
+      Long farmerId) {
     Specification<Order> spec =
         Specification.where(OrderSpecifications.hasStatus(status))
             .and(OrderSpecifications.byBuyer(buyerId))
@@ -392,9 +541,43 @@ public class OrderServiceImpl implements OrderService {
                   OrderSpecifications.hasBuyerName(keyword),
                   OrderSpecifications.hasFarmerName(keyword)));
     }
+    return spec;
+  }
 
-    Page<Order> orderPage = orderRepository.findAll(spec, pageable); // Dùng findAll với Spec
-    return orderMapper.toOrderSummaryResponsePage(orderPage);
+  /**
+   * Phân trang keyset: lấy size + 1 bản ghi sau con trỏ theo (createdAt DESC, id DESC) để biết còn
+   * trang sau hay không, không cần truy vấn count.
+   */
+  private CursorPageResponse<OrderSummaryResponse> findOrdersByCursor(
+      Specification<Order> filterSpec, String cursor, int size) {
+    int pageSize = Math.min(Math.max(size, 1), MAX_CURSOR_PAGE_SIZE);
+    KeysetCursor position = KeysetCursor.decode(cursor);
+    Specification<Order> spec =
+        filterSpec
+            .and(OrderSpecifications.fetchBuyerAndFarmerSummary())
+            .and(
+                position == null
+                    ? null
+                    : OrderSpecifications.beforeCursor(position.createdAt(), position.id()));
+
+    List<Order> orders =
+        orderRepository.findBy(
+            spec,
+            query ->
+                query
+                    .sortBy(Sort.by(Sort.Direction.DESC, "createdAt", "id"))
+                    .limit(pageSize + 1)
+                    .all());
+
+    boolean hasNext = orders.size() > pageSize;
+    List<Order> pageContent = hasNext ? orders.subList(0, pageSize) : orders;
+    String nextCursor = null;
+    if (hasNext) {
+      Order last = pageContent.get(pageContent.size() - 1);
+      nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+    }
+    return new CursorPageResponse<>(
+        orderMapper.toOrderSummaryResponseList(pageContent), pageSize, hasNext, nextCursor);
   }
 
   @Override
@@ -507,8 +690,10 @@ public class OrderServiceImpl implements OrderService {
     return getOrderDetails(authentication, orderId); // Load lại đầy đủ để trả về
   }
 
+  // Không mở transaction bao ngoài: hoàn tiền qua cổng thanh toán được gọi giữa hai transaction
+  // ngắn
+  // để một cổng chậm không giữ connection DB. Mỗi lần @Retryable thử lại là một transaction mới.
   @Override
-  @Transactional
   @Retryable(
       retryFor = {
         OptimisticLockingFailureException.class,
@@ -520,6 +705,46 @@ public class OrderServiceImpl implements OrderService {
   public OrderResponse cancelOrder(Authentication authentication, Long orderId) {
     User currentUser = SecurityUtils.getCurrentAuthenticatedUser();
 
+    // Bước 1-6: hủy đơn, hoàn kho, cập nhật thanh toán, thông báo (một transaction)
+    PendingRefund pendingRefund =
+        inTransaction(() -> cancelOrderInTransaction(currentUser, orderId));
+
+    // Gọi cổng thanh toán sau khi commit, rồi ghi kết quả trong transaction riêng
+    if (pendingRefund != null) {
+      requestRefund(pendingRefund);
+    }
+
+    // Bước 7: Load lại đầy đủ thông tin và trả về
+    return inReadOnlyTransaction(
+        () -> {
+          Order finalCancelledOrder =
+              orderRepository
+                  .findById(orderId)
+                  .orElseThrow(
+                      () ->
+                          new IllegalStateException(
+                              "Cancelled order not found after saving: " + orderId));
+          // Đảm bảo hình ảnh sản phẩm được populate nếu OrderResponse cần
+          populateProductImageUrlsInOrder(finalCancelledOrder);
+          return orderMapper.toOrderResponse(finalCancelledOrder);
+        });
+  }
+
+  @Override
+  @Transactional
+  public int flagStaleRefundsForManualReview(Duration olderThan) {
+    LocalDateTime now = LocalDateTime.now();
+    int flagged = orderRepository.markStaleRefundsManualRequired(now.minus(olderThan), now);
+    if (flagged > 0) {
+      log.warn(
+          "{} cancelled orders stuck in REFUND_PENDING without a gateway refund request,"
+              + " marked REFUND_MANUAL_REQUIRED",
+          flagged);
+    }
+    return flagged;
+  }
+
+  private PendingRefund cancelOrderInTransaction(User currentUser, Long orderId) {
     // Bước 1: Lấy thông tin đơn hàng cùng với các mục hàng và người mua/bán
     // Sử dụng một phương thức repository để tối ưu
     Order order =
@@ -541,7 +766,7 @@ public class OrderServiceImpl implements OrderService {
     // Bước 5: Cập nhật trạng thái đơn hàng và trạng thái thanh toán
     OrderStatus previousOrderStatus = order.getStatus(); // Lưu lại trạng thái cũ để gửi thông báo
     order.setStatus(OrderStatus.CANCELLED);
-    updatePaymentStatusForCancelledOrder(order);
+    PendingRefund pendingRefund = updatePaymentStatusForCancelledOrder(order, currentUser);
 
     Order cancelledOrder = orderRepository.save(order); // Lưu lại đơn hàng đã hủy
     log.info(
@@ -553,19 +778,7 @@ public class OrderServiceImpl implements OrderService {
     // Bước 6: Gửi thông báo hủy đơn
     // (NotificationService nên tự xử lý việc gửi cho buyer và farmer)
     notificationService.sendOrderCancellationNotification(cancelledOrder);
-
-    // Bước 7: Load lại đầy đủ thông tin và trả về
-
-    Order finalCancelledOrder =
-        orderRepository
-            .findById(cancelledOrder.getId())
-            .orElseThrow(
-                () ->
-                    new IllegalStateException(
-                        "Cancelled order not found after saving: " + cancelledOrder.getId()));
-    // Đảm bảo hình ảnh sản phẩm được populate nếu OrderResponse cần
-    populateProductImageUrlsInOrder(finalCancelledOrder);
-    return orderMapper.toOrderResponse(finalCancelledOrder);
+    return pendingRefund;
   }
 
   private void validateCancellationPermission(User currentUser, Order order) {
@@ -603,6 +816,7 @@ public class OrderServiceImpl implements OrderService {
       return;
     }
 
+    List<Product> restoredProducts = new ArrayList<>();
     for (OrderItem item : order.getOrderItems()) {
       if (item.getProduct() == null) {
         log.warn(
@@ -629,6 +843,15 @@ public class OrderServiceImpl implements OrderService {
           continue;
         }
 
+        // Sản phẩm hot stock: hoàn vào ledger sau commit, ledger tự ghi trễ xuống DB
+        if (stockReservationService.restoreHotStock(product, quantityToRestore)) {
+          log.debug(
+              "Scheduled hot stock restore for product {}: restoring={}",
+              productId,
+              quantityToRestore);
+          continue;
+        }
+
         log.debug(
             "Restoring stock for product {}: current={}, restoring={}",
             productId,
@@ -637,6 +860,7 @@ public class OrderServiceImpl implements OrderService {
         product.setStockQuantity(product.getStockQuantity() + quantityToRestore);
         try {
           productRepository.saveAndFlush(product); // Flush để phát hiện lỗi sớm
+          restoredProducts.add(product);
         } catch (OptimisticLockingFailureException e) {
           log.warn(
               "Optimistic lock failed while restoring stock for product {} in order {}. Retrying (handled by @Retryable)...",
@@ -671,60 +895,39 @@ public class OrderServiceImpl implements OrderService {
                 + " not found. Cannot cancel order.");
       }
     }
+    if (!restoredProducts.isEmpty()) {
+      eventPublisher.publishEvent(CatalogChangedEvent.stockChanged(restoredProducts));
+    }
   }
 
-  private void updatePaymentStatusForCancelledOrder(Order order) {
+  // Trả về yêu cầu hoàn tiền cần gửi tới cổng sau khi commit (null nếu không cần gọi cổng)
+  private PendingRefund updatePaymentStatusForCancelledOrder(Order order, User cancelledBy) {
     if (order.getPaymentStatus() == PaymentStatus.PAID) {
       Payment successfulPayment =
           findSuccessfulPaymentForOrder(order); // Tìm giao dịch thanh toán thành công
 
       if (successfulPayment != null) {
-        boolean refundRequested = false;
-        try {
-          PaymentGatewayService gatewayService =
-              getPaymentGatewayService(
-                  successfulPayment.getPaymentGateway()); // Lấy service tương ứng
-          if (gatewayService != null) {
-            // Số tiền hoàn có thể là toàn bộ hoặc một phần (nếu chính sách cho phép)
-            refundRequested =
-                gatewayService.requestRefund(
-                    successfulPayment.getTransactionCode(),
-                    successfulPayment.getAmount(), // Hoàn toàn bộ số tiền của giao dịch đó
-                    "Order "
-                        + order.getOrderCode()
-                        + " cancelled by "
-                        + SecurityUtils.getCurrentAuthenticatedUser().getFullName());
-          } else {
-            log.warn(
-                "No payment gateway service found for gateway: {}",
-                successfulPayment.getPaymentGateway());
-          }
-        } catch (Exception e) {
-          log.error(
-              "Error requesting refund for order {} via gateway {}: {}",
+        if (getPaymentGatewayService(successfulPayment.getPaymentGateway()) != null) {
+          // Đơn chờ hoàn tiền cho tới khi cổng trả lời (xem requestRefund)
+          order.setPaymentStatus(PaymentStatus.REFUND_PENDING);
+          return new PendingRefund(
+              order.getId(),
               order.getOrderCode(),
+              successfulPayment.getId(),
               successfulPayment.getPaymentGateway(),
-              e.getMessage(),
-              e);
-          // Xử lý lỗi khi gọi API hoàn tiền (ví dụ: lưu lại để thử lại, thông báo admin)
-        }
-
-        if (refundRequested) {
-          order.setPaymentStatus(PaymentStatus.REFUND_PENDING); // Hoặc REFUND_REQUESTED
-          successfulPayment.setStatus(
-              PaymentTransactionStatus.REFUND_REQUESTED); // Cập nhật trạng thái giao dịch gốc
-          log.info(
-              "Refund requested for order {}. Payment status set to REFUND_PENDING.",
-              order.getOrderCode());
-        } else {
-          // Nếu không thể yêu cầu hoàn tiền tự động (lỗi API, cổng không hỗ trợ)
-          order.setPaymentStatus(
-              PaymentStatus.REFUND_MANUAL_REQUIRED); // Một trạng thái mới để admin xử lý
-          log.warn(
-              "Failed to automatically request refund for order {}. Manual refund required.",
-              order.getOrderCode());
+              successfulPayment.getTransactionCode(),
+              successfulPayment.getAmount(), // Hoàn toàn bộ số tiền của giao dịch đó
+              "Order " + order.getOrderCode() + " cancelled by " + cancelledBy.getFullName());
         }
-        paymentRepository.save(successfulPayment);
+        log.warn(
+            "No payment gateway service found for gateway: {}",
+            successfulPayment.getPaymentGateway());
+        // Cổng không hỗ trợ hoàn tiền tự động
+        order.setPaymentStatus(
+            PaymentStatus.REFUND_MANUAL_REQUIRED); // Một trạng thái mới để admin xử lý
+        log.warn(
+            "Failed to automatically request refund for order {}. Manual refund required.",
+            order.getOrderCode());
       } else {
         log.warn(
             "No successful payment record found for PAID order {} to refund.",
@@ -749,6 +952,123 @@ public class OrderServiceImpl implements OrderService {
           "Order {} cancelled. Payment status set to FAILED as it was pending or awaiting term.",
           order.getOrderCode());
     }
+    return null;
+  }
+
+  /**
+   * Gửi yêu cầu hoàn tiền tới cổng thanh toán (không giữ transaction), sau đó ghi kết quả trong một
+   * transaction ngắn. Lỗi ở bước này không làm hỏng việc hủy đơn đã commit: đơn vẫn ở
+   * REFUND_PENDING và được chuyển REFUND_MANUAL_REQUIRED nếu cổng từ chối. Nếu node dừng hoặc ghi
+   * kết quả lỗi, RefundReconciliationScheduler chuyển đơn sang REFUND_MANUAL_REQUIRED sau đó.
+   */
+  private void requestRefund(PendingRefund refund) {
+    boolean refundRequested = false;
+    try {
+      refundRequested =
+          getPaymentGatewayService(refund.gateway())
+              .requestRefund(refund.transactionCode(), refund.amount(), refund.reason());
+    } catch (Exception e) {
+      log.error(
+          "Error requesting refund for order {} via gateway {}: {}",
+          refund.orderCode(),
+          refund.gateway(),
+          e.getMessage(),
+          e);
+      // Không tự gửi lại: cổng có thể đã nhận yêu cầu; đơn được chuyển cho admin xử lý thủ công
+    }
+
+    boolean accepted = refundRequested;
+    try {
+      inTransaction(
+          () -> {
+            recordRefundResult(refund, accepted);
+            return null;
+          });
+    } catch (Exception e) {
+      log.error(
+          "Failed to record refund result (accepted={}) for order {}: {}",
+          accepted,
+          refund.orderCode(),
+          e.getMessage(),
+          e);
+    }
+  }
+
+  private void recordRefundResult(PendingRefund refund, boolean accepted) {
+    if (accepted) {
+      paymentRepository
+          .findById(refund.paymentId())
+          .ifPresent(
+              payment -> {
+                payment.setStatus(
+                    PaymentTransactionStatus.REFUND_REQUESTED); // Cập nhật trạng thái giao dịch gốc
+                paymentRepository.save(payment);
+              });
+      log.info(
+          "Refund requested for order {}. Payment status set to REFUND_PENDING.",
+          refund.orderCode());
+      return;
+    }
+    // Nếu không thể yêu cầu hoàn tiền tự động (lỗi API, cổng không khả dụng)
+    orderRepository
+        .findById(refund.orderId())
+        .ifPresent(
+            order -> {
+              order.setPaymentStatus(PaymentStatus.REFUND_MANUAL_REQUIRED);
+              orderRepository.save(order);
+            });
+    log.warn(
+        "Failed to automatically request refund for order {}. Manual refund required.",
+        refund.orderCode());
+  }
+
+  // Yêu cầu hoàn tiền được gửi tới cổng sau khi transaction hủy đơn đã commit
+  private record PendingRefund(
+      Long orderId,
+      String orderCode,
+      Long paymentId,
+      String gateway,
+      String transactionCode,
+      BigDecimal amount,
+      String reason) {}
+
+  private <T> T inTransaction(Supplier<T> work) {
+    return new TransactionTemplate(transactionManager).execute(status -> work.get());
+  }
+
+  private <T> T inReadOnlyTransaction(Supplier<T> work) {
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    transactionTemplate.setReadOnly(true);
+    return transactionTemplate.execute(status -> work.get());
+  }
+
+  private Order prepareOrderForPayment(User user, Long orderId, PaymentMethod paymentMethod) {
+    Order order =
+        orderRepository
+            .findByIdAndBuyerId(orderId, user.getId()) // Đảm bảo đúng order của user
+            .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
+
+    // Kiểm tra trạng thái đơn hàng và thanh toán
+    if (order.getPaymentStatus() == PaymentStatus.PAID) {
+      throw new BadRequestException("Đơn hàng này đã được thanh toán.");
+    }
+    if (order.getStatus() == OrderStatus.CANCELLED || order.getStatus() == OrderStatus.DELIVERED) {
+      throw new BadRequestException("Không thể thanh toán cho đơn hàng đã hủy hoặc đã hoàn thành.");
+    }
+    if (paymentMethod != PaymentMethod.VNPAY && paymentMethod != PaymentMethod.MOMO) {
+      throw new BadRequestException(
+          "Phương thức thanh toán không được hỗ trợ hoặc không hợp lệ cho việc tạo URL: "
+              + paymentMethod);
+    }
+
+    // Cập nhật paymentMethod của Order nếu người dùng chọn lại hoặc thanh toán lại sau khi FAILED
+    if (order.getPaymentMethod() != paymentMethod
+        || order.getPaymentStatus() == PaymentStatus.FAILED) {
+      order.setPaymentMethod(paymentMethod);
+      order.setPaymentStatus(PaymentStatus.PENDING); // Reset về PENDING
+      orderRepository.save(order);
+    }
+    return order;
   }
 
   // Helper để lấy PaymentGatewayService tương ứng
@@ -772,10 +1092,8 @@ public class OrderServiceImpl implements OrderService {
 
   @Override
   public String generateOrderCode() {
-    // Ví dụ: LS + Năm + Tháng + Ngày + 4 số ngẫu nhiên
-    String datePart = LocalDate.now().format(DateTimeFormatter.ofPattern("yyMMdd"));
-    int randomPart = ThreadLocalRandom.current().nextInt(1000, 10000);
-    return "AGT" + datePart + "-" + randomPart;
+    // AGT + yyMMdd + số thứ tự trong ngày cấp theo khối (không còn va chạm như 4 số ngẫu nhiên)
+    return orderCodeGenerator.nextOrderCode();
   }
 
   private void copyShippingAddress(Order order, Address address) {
@@ -1020,6 +1338,11 @@ public class OrderServiceImpl implements OrderService {
 
   // Helper tạo Payment Record ban đầu
   private void createInitialPaymentRecord(Order order) {
+    paymentRepository.save(buildInitialPaymentRecord(order));
+  }
+
+  // Dựng Payment ban đầu (chưa lưu) và cập nhật paymentStatus của đơn theo phương thức thanh toán
+  private Payment buildInitialPaymentRecord(Order order) {
     Payment initialPayment = new Payment();
     initialPayment.setOrder(order);
     initialPayment.setAmount(order.getTotalAmount());
@@ -1050,8 +1373,7 @@ public class OrderServiceImpl implements OrderService {
     }
     initialPayment.setStatus(initialStatus);
     order.setPaymentStatus(orderPaymentStatus);
-
-    paymentRepository.save(initialPayment);
+    return initialPayment;
   }
 
   @Override
@@ -1342,42 +1664,36 @@ public class OrderServiceImpl implements OrderService {
         qrCodeDataString);
   }
 
-  // Phương thức helper để điền imageUrls cho sản phẩm trong OrderItems
+  // Phương thức helper để điền imageUrls cho sản phẩm trong OrderItems (lấy URL theo lô)
   private void populateProductImageUrlsInOrder(Order order) {
-    if (order != null && order.getOrderItems() != null) {
-      for (OrderItem item : order.getOrderItems()) {
-        Product product = item.getProduct(); // Lấy Product từ OrderItem
-        if (product != null && product.getImages() != null && !product.getImages().isEmpty()) {
-          for (ProductImage image : product.getImages()) {
-            if (StringUtils.hasText(image.getBlobPath())) {
-              image.setImageUrl(fileStorageService.getFileUrl(image.getBlobPath()));
-            }
-          }
-        }
-      }
+    if (order == null || order.getOrderItems() == null) {
+      return;
     }
+    List<ProductImage> images =
+        order.getOrderItems().stream()
+            .map(OrderItem::getProduct)
+            .filter(product -> product != null && product.getImages() != null)
+            .flatMap(product -> product.getImages().stream())
+            .filter(image -> StringUtils.hasText(image.getBlobPath()))
+            .toList();
+    if (images.isEmpty()) {
+      return;
+    }
+    Map<String, String> urls =
+        fileStorageService.getFileUrls(images.stream().map(ProductImage::getBlobPath).toList());
+    images.forEach(image -> image.setImageUrl(urls.get(image.getBlobPath())));
   }
 
+  // Cập nhật đơn trong transaction ngắn, sau đó mới tạo URL: MoMo gọi HTTP tới cổng và không được
+  // giữ connection DB trong lúc chờ
   @Override
-  @Transactional // Có thể cần @Transactional nếu  cập nhật trạng thái Order
   public PaymentUrlResponse createPaymentUrl(
       Authentication authentication,
       Long orderId,
       PaymentMethod paymentMethod,
       HttpServletRequest httpServletRequest) {
     User user = SecurityUtils.getCurrentAuthenticatedUser(); // Sử dụng lại helper method
-    Order order =
-        orderRepository
-            .findByIdAndBuyerId(orderId, user.getId()) // Đảm bảo đúng order của user
-            .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
-
-    // Kiểm tra trạng thái đơn hàng và thanh toán
-    if (order.getPaymentStatus() == PaymentStatus.PAID) {
-      throw new BadRequestException("Đơn hàng này đã được thanh toán.");
-    }
-    if (order.getStatus() == OrderStatus.CANCELLED || order.getStatus() == OrderStatus.DELIVERED) {
-      throw new BadRequestException("Không thể thanh toán cho đơn hàng đã hủy hoặc đã hoàn thành.");
-    }
+    Order order = inTransaction(() -> prepareOrderForPayment(user, orderId, paymentMethod));
 
     PaymentUrlResponse paymentUrlResponse;
     String clientIp = VnPayUtils.getIpAddress(httpServletRequest);
@@ -1386,26 +1702,11 @@ public class OrderServiceImpl implements OrderService {
     switch (paymentMethod) {
       case VNPAY:
         frontendReturnUrl = frontendAppUrl + "/payment/vnpay/result";
-        // Cập nhật paymentMethod của Order nếu người dùng chọn lại hoặc thanh toán lại sau khi
-        // FAILED
-        if (order.getPaymentMethod() != PaymentMethod.VNPAY
-            || order.getPaymentStatus() == PaymentStatus.FAILED) {
-          order.setPaymentMethod(PaymentMethod.VNPAY);
-          order.setPaymentStatus(PaymentStatus.PENDING); // Reset về PENDING
-
-          orderRepository.save(order);
-        }
         paymentUrlResponse = vnPayService.createVnPayPaymentUrl(order, clientIp, frontendReturnUrl);
         break;
       case MOMO:
         frontendReturnUrl = frontendAppUrl + "/payment/momo/result";
         String backendIpnUrl = backendAppUrl + "/api/payments/callback/momo/ipn";
-        if (order.getPaymentMethod() != PaymentMethod.MOMO
-            || order.getPaymentStatus() == PaymentStatus.FAILED) {
-          order.setPaymentMethod(PaymentMethod.MOMO);
-          order.setPaymentStatus(PaymentStatus.PENDING);
-          orderRepository.save(order);
-        }
         paymentUrlResponse =
             moMoService.createMoMoPaymentUrl(order, frontendReturnUrl, backendIpnUrl);
         break;
@@ -1674,33 +1975,81 @@ public class OrderServiceImpl implements OrderService {
 
   @Override
   @Transactional(readOnly = true)
-  public List<OrderSummaryResponse> getAllOrdersForAdminExport(
+  public void exportOrdersForAdmin(
       String keyword,
       OrderStatus status,
       PaymentMethod paymentMethod,
       PaymentStatus paymentStatus,
       Long buyerId,
       Long farmerId,
-      OrderType orderType) {
+      OrderType orderType,
+      ExportFormat format,
+      OutputStream out)
+      throws IOException {
     Specification<Order> spec =
-        Specification.where(OrderSpecifications.hasStatus(status))
-            .and(OrderSpecifications.byBuyer(buyerId))
-            .and(OrderSpecifications.byFarmer(farmerId))
-            .and(OrderSpecifications.hasPaymentMethod(paymentMethod))
-            .and(OrderSpecifications.hasPaymentStatus(paymentStatus))
-            .and(OrderSpecifications.hasOrderType(orderType));
+        adminOrdersSpec(
+            keyword, status, paymentMethod, paymentStatus, orderType, buyerId, farmerId);
 
-    if (StringUtils.hasText(keyword)) {
-      spec =
-          spec.and(
-              Specification.anyOf(
-                  OrderSpecifications.hasOrderCode(keyword),
-                  OrderSpecifications.hasBuyerName(keyword),
-                  OrderSpecifications.hasFarmerName(keyword)));
+    try (Stream<OrderSummaryResponse> rows = streamOrderSummaries(spec)) {
+      if (format == ExportFormat.CSV) {
+        excelExportService.writeOrdersToCsv(rows, out);
+      } else {
+        excelExportService.writeOrdersToExcel(rows, out);
+      }
     }
+  }
+
+  /**
+   * Đọc forward-only các cột cần cho bản tóm tắt đơn hàng. Chỉ select giá trị vô hướng (không tạo
+   * entity) nên persistence context không phình ra và không phát sinh truy vấn phụ (roles EAGER của
+   * User) trong lúc result set đang được stream.
+   */
+  private Stream<OrderSummaryResponse> streamOrderSummaries(Specification<Order> spec) {
+    CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Tuple> query = cb.createTupleQuery();
+    Root<Order> root = query.from(Order.class);
+    Join<Order, User> buyerJoin = root.join("buyer", JoinType.LEFT);
+    Join<Order, User> farmerJoin = root.join("farmer", JoinType.LEFT);
+    Join<User, FarmerProfile> profileJoin = farmerJoin.join("farmerProfile", JoinType.LEFT);
+
+    query.multiselect(
+        root.get("id"),
+        root.get("orderCode"),
+        root.get("orderType"),
+        root.get("totalAmount"),
+        root.get("status"),
+        root.get("paymentStatus"),
+        root.get("createdAt"),
+        buyerJoin.get("fullName"),
+        farmerJoin.get("fullName"),
+        profileJoin.get("farmName"));
+    Predicate predicate = spec.toPredicate(root, query, cb);
+    if (predicate != null) {
+      query.where(predicate);
+    }
+    query.orderBy(cb.desc(root.get("createdAt")), cb.desc(root.get("id")));
+
+    return entityManager
+        .createQuery(query)
+        .setHint(AvailableHints.HINT_FETCH_SIZE, EXPORT_FETCH_SIZE)
+        .setHint(AvailableHints.HINT_READ_ONLY, true)
+        .getResultStream()
+        .map(this::toOrderSummaryRow);
+  }
 
-    // Sử dụng Sort nhưng không dùng Pageable
-    List<Order> orders = orderRepository.findAll(spec, Sort.by(Sort.Direction.DESC, "createdAt"));
-    return orderMapper.toOrderSummaryResponseList(orders);
+  private OrderSummaryResponse toOrderSummaryRow(Tuple tuple) {
+    OrderSummaryResponse row = new OrderSummaryResponse();
+    row.setId(tuple.get(0, Long.class));
+    row.setOrderCode(tuple.get(1, String.class));
+    row.setOrderType(tuple.get(2, OrderType.class));
+    row.setTotalAmount(tuple.get(3, BigDecimal.class));
+    row.setStatus(tuple.get(4, OrderStatus.class));
+    row.setPaymentStatus(tuple.get(5, PaymentStatus.class));
+    row.setCreatedAt(tuple.get(6, LocalDateTime.class));
+    row.setBuyerName(tuple.get(7, String.class));
+    // Cùng quy tắc với OrderMapper.mapUserToBestFarmerName: ưu tiên tên trang trại
+    String farmName = tuple.get(9, String.class);
+    row.setFarmerName(StringUtils.hasLength(farmName) ? farmName : tuple.get(8, String.class));
+    return row;
   }
 }
@@ -0,0 +1,131 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import com.yourcompany.agritrade.ordering.domain.OrderDailyStat;
+import com.yourcompany.agritrade.ordering.domain.OrderStatScope;
+import com.yourcompany.agritrade.ordering.domain.OrderStatus;
+import com.yourcompany.agritrade.ordering.domain.StatRollupCheckpoint;
+import com.yourcompany.agritrade.ordering.repository.OrderDailyStatRepository;
+import com.yourcompany.agritrade.ordering.repository.OrderRepository;
+import com.yourcompany.agritrade.ordering.repository.StatRollupCheckpointRepository;
+import com.yourcompany.agritrade.ordering.service.OrderStatsRollupService;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OrderStatsRollupServiceImpl implements OrderStatsRollupService {
+
+  static final String CHECKPOINT_NAME = "order_daily_stats";
+
+  private final OrderRepository orderRepository;
+  private final OrderDailyStatRepository orderDailyStatRepository;
+  private final StatRollupCheckpointRepository checkpointRepository;
+
+  // Lùi mốc checkpoint một khoảng để không bỏ sót đơn có transaction commit sau thời điểm updatedAt
+  @Value("${app.stats.rollup.overlap-seconds:300}")
+  private long overlapSeconds;
+
+  @Override
+  @Transactional
+  public int refreshChangedDays() {
+    LocalDateTime runStartedAt = LocalDateTime.now();
+    // Khóa checkpoint: các node khác chạy cùng lúc sẽ chờ rồi chỉ xử lý phần thay đổi còn lại
+    StatRollupCheckpoint checkpoint =
+        checkpointRepository.findByNameForUpdate(CHECKPOINT_NAME).orElse(null);
+    LocalDateTime since =
+        checkpoint != null ? checkpoint.getProcessedUntil().minusSeconds(overlapSeconds) : null;
+
+    TreeSet<LocalDate> changedDays =
+        orderRepository.findDistinctCreatedDatesUpdatedSince(since).stream()
+            .map(this::toLocalDate)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toCollection(TreeSet::new));
+    changedDays.forEach(this::rebuild);
+
+    if (checkpoint == null) {
+      checkpoint = new StatRollupCheckpoint(CHECKPOINT_NAME, runStartedAt);
+    } else {
+      checkpoint.setProcessedUntil(runStartedAt);
+    }
+    checkpointRepository.save(checkpoint);
+
+    if (!changedDays.isEmpty()) {
+      log.debug(
+          "Rebuilt order daily stats for {} day(s): {} .. {}",
+          changedDays.size(),
+          changedDays.first(),
+          changedDays.last());
+    }
+    return changedDays.size();
+  }
+
+  @Override
+  @Transactional
+  public void rebuildDay(LocalDate day) {
+    rebuild(day);
+  }
+
+  private void rebuild(LocalDate day) {
+    LocalDateTime start = day.atStartOfDay();
+    LocalDateTime end = day.plusDays(1).atStartOfDay();
+
+    List<OrderDailyStat> rows = new ArrayList<>();
+    for (Object[] row : orderRepository.aggregateByStatusCreatedBetween(start, end)) {
+      rows.add(toStat(day, OrderStatScope.ALL, OrderDailyStat.ALL_PARTIES, row[0], row[1], row[2]));
+    }
+    for (Object[] row : orderRepository.aggregateByFarmerAndStatusCreatedBetween(start, end)) {
+      rows.add(toStat(day, OrderStatScope.FARMER, (Long) row[0], row[1], row[2], row[3]));
+    }
+    for (Object[] row : orderRepository.aggregateByBuyerAndStatusCreatedBetween(start, end)) {
+      rows.add(toStat(day, OrderStatScope.BUYER, (Long) row[0], row[1], row[2], row[3]));
+    }
+
+    // Bulk delete chạy ngay trên DB. Id IDENTITY buộc Hibernate INSERT từng dòng ngay trong saveAll
+    // (không trì hoãn tới lúc flush, không gom batch), nên thứ tự câu lệnh đúng như thứ tự gọi ở
+    // đây: xóa trước rồi mới chèn, không đụng unique key
+    orderDailyStatRepository.deleteByStatDate(day);
+    orderDailyStatRepository.saveAll(rows);
+  }
+
+  private OrderDailyStat toStat(
+      LocalDate day,
+      OrderStatScope scope,
+      Long partyId,
+      Object status,
+      Object orderCount,
+      Object totalAmount) {
+    return new OrderDailyStat(
+        day,
+        scope,
+        partyId,
+        (OrderStatus) status,
+        ((Number) orderCount).longValue(),
+        (BigDecimal) totalAmount);
+  }
+
+  private LocalDate toLocalDate(Object dateObject) {
+    if (dateObject instanceof LocalDate localDate) {
+      return localDate;
+    } else if (dateObject instanceof java.sql.Date sqlDate) {
+      return sqlDate.toLocalDate();
+    } else if (dateObject instanceof java.util.Date utilDate) {
+      return new java.sql.Date(utilDate.getTime()).toLocalDate();
+    }
+    log.warn(
+        "Unexpected date type returned from query: {}",
+        dateObject != null ? dateObject.getClass().getName() : "null");
+    return null;
+  }
+}
@@ -0,0 +1,211 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import com.yourcompany.agritrade.common.exception.PaymentGatewayUnavailableException;
+import com.yourcompany.agritrade.config.properties.PaymentGatewayClientProperties;
+import com.yourcompany.agritrade.ordering.domain.PaymentMethod;
+import com.yourcompany.agritrade.ordering.service.PaymentGatewayHttpClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.net.http.HttpClient;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+/**
+ * Một {@link HttpClient} của JDK dùng chung (HTTP/1.1 keep-alive, tự giữ pool kết nối theo host),
+ * mỗi cổng có RestClient với read timeout riêng, một Semaphore làm bulkhead và một circuit breaker.
+ * Khi cổng chậm, số thread request bị giữ tối đa bằng maxConcurrentCalls; phần còn lại bị từ chối
+ * sau bulkheadWaitMs thay vì xếp hàng vô hạn.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentGatewayHttpClientImpl implements PaymentGatewayHttpClient {
+
+  static final List<PaymentMethod> GATEWAYS = List.of(PaymentMethod.VNPAY, PaymentMethod.MOMO);
+
+  private final PaymentGatewayClientProperties properties;
+
+  private final Map<PaymentMethod, GatewayChannel> channels = new EnumMap<>(PaymentMethod.class);
+  private HttpClient httpClient;
+  private volatile Map<PaymentMethod, GatewayStats> lastLoggedStats = Map.of();
+
+  // Cho phép test thay đồng hồ của circuit breaker
+  Clock clock = Clock.systemUTC();
+
+  @PostConstruct
+  void init() {
+    httpClient =
+        HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(properties.getConnectTimeoutMs()))
+            .build();
+    for (PaymentMethod gateway : GATEWAYS) {
+      PaymentGatewayClientProperties.Gateway config = properties.gateway(gateway);
+      JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+      requestFactory.setReadTimeout(Duration.ofMillis(config.getReadTimeoutMs()));
+      channels.put(
+          gateway,
+          new GatewayChannel(
+              RestClient.builder().requestFactory(requestFactory).build(),
+              new Semaphore(config.getMaxConcurrentCalls()),
+              config.getBulkheadWaitMs(),
+              new GatewayCircuitBreaker(config.getFailureThreshold(), config.getOpenDurationMs())));
+      log.info(
+          "Payment gateway client {}: readTimeoutMs={}, maxConcurrentCalls={}, failureThreshold={}",
+          gateway,
+          config.getReadTimeoutMs(),
+          config.getMaxConcurrentCalls(),
+          config.getFailureThreshold());
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    if (httpClient != null) {
+      httpClient.shutdownNow();
+    }
+  }
+
+  @Override
+  public <T> T postJson(PaymentMethod gateway, String url, Object body, Class<T> responseType) {
+    GatewayChannel channel = channels.get(gateway);
+    if (channel == null) {
+      throw new IllegalArgumentException("Unsupported payment gateway: " + gateway);
+    }
+    acquirePermit(gateway, channel);
+    try {
+      if (!channel.circuitBreaker.tryAcquire(clock.millis())) {
+        channel.circuitRejections.increment();
+        throw new PaymentGatewayUnavailableException(
+            gateway.name(), "Circuit breaker is open for payment gateway " + gateway);
+      }
+      channel.calls.increment();
+      try {
+        T response =
+            channel
+                .restClient
+                .post()
+                .uri(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .body(body)
+                .retrieve()
+                .body(responseType);
+        channel.circuitBreaker.onSuccess();
+        return response;
+      } catch (HttpClientErrorException e) {
+        // 4xx: cổng vẫn phản hồi, lỗi nằm ở yêu cầu nên không tính vào circuit breaker
+        channel.circuitBreaker.onSuccess();
+        throw e;
+      } catch (RestClientException e) {
+        // Timeout, lỗi kết nối, 5xx hoặc phản hồi không đọc được
+        channel.failures.increment();
+        channel.circuitBreaker.onFailure(clock.millis());
+        throw new PaymentGatewayUnavailableException(
+            gateway.name(), "Payment gateway " + gateway + " call failed: " + e.getMessage(), e);
+      } catch (RuntimeException e) {
+        // Lỗi khác (URI sai, lỗi chuyển đổi body...): vẫn phải ghi nhận kết quả, nếu không lời gọi
+        // thử ở HALF_OPEN giữ circuit breaker kẹt và mọi lời gọi sau đều bị từ chối
+        channel.failures.increment();
+        channel.circuitBreaker.onFailure(clock.millis());
+        throw e;
+      }
+    } finally {
+      channel.bulkhead.release();
+    }
+  }
+
+  private void acquirePermit(PaymentMethod gateway, GatewayChannel channel) {
+    boolean acquired;
+    try {
+      acquired = channel.bulkhead.tryAcquire(channel.bulkheadWaitMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PaymentGatewayUnavailableException(
+          gateway.name(), "Interrupted while waiting for payment gateway " + gateway, e);
+    }
+    if (!acquired) {
+      channel.bulkheadRejections.increment();
+      throw new PaymentGatewayUnavailableException(
+          gateway.name(), "Too many concurrent calls to payment gateway " + gateway);
+    }
+  }
+
+  @Override
+  public Map<PaymentMethod, GatewayStats> getStats() {
+    Map<PaymentMethod, GatewayStats> stats = new EnumMap<>(PaymentMethod.class);
+    channels.forEach(
+        (gateway, channel) ->
+            stats.put(
+                gateway,
+                new GatewayStats(
+                    channel.calls.sum(),
+                    channel.failures.sum(),
+                    channel.bulkheadRejections.sum(),
+                    channel.circuitRejections.sum(),
+                    channel.circuitBreaker.getState().name(),
+                    channel.maxConcurrentCalls - channel.bulkhead.availablePermits())));
+    return stats;
+  }
+
+  // Ghi log định kỳ số liệu từng cổng (chỉ khi có thay đổi)
+  @Scheduled(fixedDelayString = "${app.payment.gateway-client.stats-log-interval-ms:60000}")
+  public void logStats() {
+    Map<PaymentMethod, GatewayStats> stats = getStats();
+    if (stats.equals(lastLoggedStats)) {
+      return;
+    }
+    lastLoggedStats = stats;
+    stats.forEach(
+        (gateway, s) ->
+            log.info(
+                "Payment gateway {}: calls={}, failures={}, bulkheadRejections={},"
+                    + " circuitRejections={}, circuit={}, inFlight={}",
+                gateway,
+                s.calls(),
+                s.failures(),
+                s.bulkheadRejections(),
+                s.circuitRejections(),
+                s.circuitState(),
+                s.inFlight()));
+  }
+
+  private static final class GatewayChannel {
+    private final RestClient restClient;
+    private final Semaphore bulkhead;
+    private final int maxConcurrentCalls;
+    private final long bulkheadWaitMs;
+    private final GatewayCircuitBreaker circuitBreaker;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bulkheadRejections = new LongAdder();
+    private final LongAdder circuitRejections = new LongAdder();
+
+    private GatewayChannel(
+        RestClient restClient,
+        Semaphore bulkhead,
+        long bulkheadWaitMs,
+        GatewayCircuitBreaker circuitBreaker) {
+      this.restClient = restClient;
+      this.bulkhead = bulkhead;
+      this.maxConcurrentCalls = bulkhead.availablePermits();
+      this.bulkheadWaitMs = bulkheadWaitMs;
+      this.circuitBreaker = circuitBreaker;
+    }
+  }
+}
@@ -6,26 +6,46 @@ import com.yourcompany.agritrade.ordering.domain.*;
 import com.yourcompany.agritrade.ordering.dto.request.PaymentCallbackRequest;
 import com.yourcompany.agritrade.ordering.repository.OrderRepository;
 import com.yourcompany.agritrade.ordering.repository.PaymentRepository;
+import com.yourcompany.agritrade.ordering.repository.projection.OrderPaymentTarget;
 import com.yourcompany.agritrade.ordering.service.PaymentService;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PaymentServiceImpl implements PaymentService {
 
+  // Controller gửi tên kênh dạng "VNPAY_IPN"; payment lưu tên cổng "VNPAY" như lúc checkout
+  private static final String IPN_SUFFIX = "_IPN";
+  private static final int MAX_CALLBACK_ATTEMPTS = 2;
+
   private final PaymentRepository paymentRepository;
   private final OrderRepository orderRepository;
   // Inject các service/component cần thiết để xác thực callback
   private final NotificationService notificationService;
+  private final PlatformTransactionManager transactionManager;
 
+  /**
+   * Cổng thanh toán gửi lại IPN nhiều lần và có thể song song, nên mỗi IPN chạy trong một
+   * transaction ngắn: đọc nhẹ đơn hàng, bỏ qua nếu (cổng, mã giao dịch) đã được ghi nhận, rồi
+   * chuyển payment PENDING bằng UPDATE có điều kiện. Chỉ IPN thắng được lần chuyển đó mới cập nhật
+   * đơn và ghi thông báo vào outbox (gửi bất đồng bộ sau khi commit).
+   *
+   * <p>Khi không có payment PENDING, các IPN trùng cùng chèn một bản ghi: MySQL có thể chọn một
+   * transaction làm nạn nhân deadlock. Transaction đó được chạy lại một lần và khi đó sẽ thấy giao
+   * dịch đã được ghi nhận.
+   */
   @Override
-  @Transactional
   public void handlePaymentCallback(String gateway, PaymentCallbackRequest callbackData) {
     log.info("Received payment callback from [{}]: {}", gateway, callbackData);
 
@@ -42,10 +62,9 @@ public class PaymentServiceImpl implements PaymentService {
     log.warn("Callback validation skipped for gateway: {}", gateway); // Bỏ qua validation
 
     // --- BƯỚC 2: LẤY THÔNG TIN ---
+    String paymentGateway = normalizeGateway(gateway);
     String orderCode = callbackData.getOrderCode();
     String transactionCode = callbackData.getTransactionCode(); // Mã giao dịch của cổng thanh toán
-    boolean paymentSuccess = callbackData.isSuccess();
-    String errorMessage = callbackData.getErrorMessage(); // Lấy lỗi nếu thất bại
 
     if (orderCode == null) {
       log.error(
@@ -53,100 +72,147 @@ public class PaymentServiceImpl implements PaymentService {
       throw new BadRequestException("Missing order code in callback.");
     }
 
-    // --- BƯỚC 3: TÌM ĐƠN HÀNG ---
-    // Tìm theo orderCode, không cần fetch hết details
-    Order order =
+    TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    for (int attempt = 1; ; attempt++) {
+      try {
+        transactionTemplate.executeWithoutResult(
+            status -> applyCallback(paymentGateway, callbackData));
+        break;
+      } catch (DataIntegrityViolationException e) {
+        if (!isDuplicateTransaction(e)) {
+          throw e;
+        }
+        // Một IPN trùng khác vừa chèn payment cùng (cổng, mã giao dịch) và đã commit trước
+        logDuplicate(orderCode, transactionCode);
+        break;
+      } catch (PessimisticLockingFailureException e) {
+        // Deadlock/hết thời gian chờ khóa khi chèn trùng song song
+        if (attempt >= MAX_CALLBACK_ATTEMPTS) {
+          throw e;
+        }
+        log.warn(
+            "Lock conflict applying payment callback for order {}, retrying: {}",
+            orderCode,
+            e.getMessage());
+      }
+    }
+
+    // --- TRẢ VỀ RESPONSE CHO CỔNG THANH TOÁN ---
+    // Logic này nằm ở Controller, Service chỉ xử lý nghiệp vụ.
+  }
+
+  private void applyCallback(String gateway, PaymentCallbackRequest callbackData) {
+    String orderCode = callbackData.getOrderCode();
+    String transactionCode = callbackData.getTransactionCode();
+    boolean paymentSuccess = callbackData.isSuccess();
+
+    // --- BƯỚC 3: TÌM ĐƠN HÀNG (chỉ các cột cần thiết) ---
+    OrderPaymentTarget order =
         orderRepository
-            .findByOrderCode(orderCode)
+            .findPaymentTargetByOrderCode(orderCode)
             .orElseThrow(
                 () -> {
                   log.error(
                       "Order not found for callback with orderCode: {}. Gateway: {}",
                       orderCode,
                       gateway);
-                  // Vẫn nên xử lý để trả về thành công cho cổng thanh toán
                   return new BadRequestException("Order not found for callback: " + orderCode);
                 });
 
-    // --- BƯỚC 4: TÌM HOẶC TẠO PAYMENT RECORD ---
-    // Nên tìm theo transactionCode nếu có, hoặc tạo mới nếu là lần đầu nhận callback cho đơn này
-    Payment payment =
-        paymentRepository
-            .findByTransactionCode(transactionCode) // Ưu tiên tìm theo mã giao dịch cổng TT
-            .orElseGet(
-                () ->
-                    paymentRepository
-                        .findByOrderId(
-                            order.getId()) // Nếu ko có mã GD, tìm payment PENDING của đơn hàng
-                        .stream()
-                        .filter(p -> p.getStatus() == PaymentTransactionStatus.PENDING)
-                        .findFirst()
-                        .orElseGet(
-                            () -> { // Nếu ko có payment PENDING -> tạo mới (trường hợp callback đến
-                              // trước?)
-                              log.warn(
-                                  "No PENDING payment found for order {}, creating new one for callback.",
-                                  orderCode);
-                              Payment newPayment = new Payment();
-                              newPayment.setOrder(order);
-                              newPayment.setPaymentGateway(gateway.toUpperCase());
-                              newPayment.setTransactionCode(transactionCode);
-                              newPayment.setAmount(
-                                  callbackData.getAmount() != null
-                                      ? callbackData.getAmount()
-                                      : order.getTotalAmount());
-                              newPayment.setStatus(
-                                  PaymentTransactionStatus.PENDING); // Bắt đầu là PENDING
-                              return newPayment;
-                            }));
-
-    // --- BƯỚC 5: CẬP NHẬT TRẠNG THÁI ---
-    // Chỉ xử lý nếu giao dịch đang PENDING để tránh xử lý trùng lặp
-    if (payment.getStatus() == PaymentTransactionStatus.PENDING) {
-      if (paymentSuccess) {
-        payment.setStatus(PaymentTransactionStatus.SUCCESS);
-        payment.setTransactionCode(
-            callbackData.getTransactionCode()); // LƯU LẠI MÃ GIAO DỊCH CỔNG TT
-        payment.setPaymentTime(LocalDateTime.now()); // Hoặc lấy từ callback
-        payment.setGatewayMessage("Payment successful via " + gateway);
-        order.setPaymentStatus(PaymentStatus.PAID);
-        // Chuyển trạng thái đơn hàng nếu đang PENDING
-        if (order.getStatus() == OrderStatus.PENDING) {
-          order.setStatus(OrderStatus.CONFIRMED); // Hoặc PROCESSING
-        }
-        log.info(
-            "Payment SUCCESS recorded for order {}, transaction {}", orderCode, transactionCode);
-        // *** Gửi thông báo thanh toán thành công ***
-        notificationService.sendPaymentSuccessNotification(order);
-      } else {
-        payment.setStatus(PaymentTransactionStatus.FAILED);
-        payment.setGatewayMessage(
-            errorMessage != null ? errorMessage : "Payment failed via " + gateway);
-        order.setPaymentStatus(PaymentStatus.FAILED);
-        // Giữ nguyên trạng thái PENDING của đơn hàng hoặc chuyển sang CANCELLED tùy logic
-        log.error(
-            "Payment FAILED recorded for order {}, transaction {}. Reason: {}",
-            orderCode,
-            transactionCode,
-            errorMessage);
+    // --- BƯỚC 4: IDEMPOTENCY ---
+    // IPN gửi lại cho giao dịch đã ghi nhận: dừng trước khi khóa bất kỳ dòng nào. Payment cũ có
+    // thể còn lưu tên kênh "VNPAY_IPN" nếu PaymentSchemaInitializer chưa chuẩn hóa
+    if (transactionCode != null
+        && paymentRepository.existsByPaymentGatewayInAndTransactionCode(
+            List.of(gateway, gateway + IPN_SUFFIX), transactionCode)) {
+      logDuplicate(orderCode, transactionCode);
+      return;
+    }
+
+    // --- BƯỚC 5: CHUYỂN TRẠNG THÁI PAYMENT ---
+    LocalDateTime now = LocalDateTime.now();
+    PaymentTransactionStatus newStatus =
+        paymentSuccess ? PaymentTransactionStatus.SUCCESS : PaymentTransactionStatus.FAILED;
+    String gatewayMessage =
+        paymentSuccess
+            ? "Payment successful via " + gateway
+            : (callbackData.getErrorMessage() != null
+                ? callbackData.getErrorMessage()
+                : "Payment failed via " + gateway);
+    LocalDateTime paymentTime = paymentSuccess ? now : null;
 
-        // *** Gửi thông báo thanh toán thất bại ***
-        notificationService.sendPaymentFailureNotification(order);
+    List<Long> pendingPaymentIds = paymentRepository.findPendingPaymentIdsByOrderId(order.id());
+    if (!pendingPaymentIds.isEmpty()) {
+      int updated =
+          paymentRepository.completePendingPayment(
+              pendingPaymentIds.get(0),
+              newStatus,
+              gateway,
+              transactionCode,
+              paymentTime,
+              gatewayMessage,
+              now);
+      if (updated == 0) {
+        // IPN trùng chạy song song đã chuyển payment này trước
+        logDuplicate(orderCode, transactionCode);
+        return;
       }
-      // Lưu lại thay đổi
-      paymentRepository.save(payment);
-      orderRepository.save(order);
     } else {
-      log.warn(
-          "Received callback for already processed payment (status: {}) for order {}, transaction {}",
-          payment.getStatus(),
+      // Không có payment PENDING (callback đến trước?): tạo mới, khóa unique chặn bản ghi trùng
+      log.warn("No PENDING payment found for order {}, creating new one for callback.", orderCode);
+      Payment newPayment = new Payment();
+      newPayment.setOrder(orderRepository.getReferenceById(order.id()));
+      newPayment.setPaymentGateway(gateway);
+      newPayment.setTransactionCode(transactionCode);
+      newPayment.setAmount(
+          callbackData.getAmount() != null ? callbackData.getAmount() : order.totalAmount());
+      newPayment.setStatus(newStatus);
+      newPayment.setPaymentTime(paymentTime);
+      newPayment.setGatewayMessage(gatewayMessage);
+      paymentRepository.saveAndFlush(newPayment);
+    }
+
+    // --- BƯỚC 6: CẬP NHẬT ĐƠN HÀNG VÀ THÔNG BÁO ---
+    Order orderRef = orderRepository.getReferenceById(order.id());
+    if (paymentSuccess) {
+      orderRepository.markPaid(order.id(), now);
+      log.info("Payment SUCCESS recorded for order {}, transaction {}", orderCode, transactionCode);
+      notificationService.sendPaymentSuccessNotification(orderRef);
+    } else {
+      orderRepository.markPaymentFailed(order.id(), now);
+      log.error(
+          "Payment FAILED recorded for order {}, transaction {}. Reason: {}",
           orderCode,
-          transactionCode);
+          transactionCode,
+          gatewayMessage);
+      notificationService.sendPaymentFailureNotification(orderRef);
     }
+  }
 
-    // --- BƯỚC 6: TRẢ VỀ RESPONSE CHO CỔNG THANH TOÁN (QUAN TRỌNG) ---
-    // Logic này nằm ở Controller, Service chỉ xử lý nghiệp vụ.
-    // Controller cần trả về mã 200 OK hoặc theo yêu cầu của cổng thanh toán.
+  private void logDuplicate(String orderCode, String transactionCode) {
+    log.info(
+        "Ignoring duplicate payment callback for order {}, transaction {}",
+        orderCode,
+        transactionCode);
+  }
+
+  // Chỉ vi phạm khóa idempotency mới là IPN trùng; các ràng buộc khác vẫn là lỗi thật
+  private static boolean isDuplicateTransaction(DataIntegrityViolationException e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      String message = cause.getMessage();
+      if (message != null
+          && message.toLowerCase(Locale.ROOT).contains(Payment.GATEWAY_TRANSACTION_KEY)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String normalizeGateway(String gateway) {
+    String name = gateway.toUpperCase(Locale.ROOT);
+    return name.endsWith(IPN_SUFFIX)
+        ? name.substring(0, name.length() - IPN_SUFFIX.length())
+        : name;
   }
 
   private boolean validateCallback(
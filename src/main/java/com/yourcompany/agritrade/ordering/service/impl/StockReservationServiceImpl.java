@@ -0,0 +1,219 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.catalog.event.CatalogChangedEvent;
+import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.catalog.service.HotStockLedgerService;
+import com.yourcompany.agritrade.catalog.service.HotStockLedgerService.ReservationResult;
+import com.yourcompany.agritrade.common.exception.OutOfStockException;
+import com.yourcompany.agritrade.ordering.service.StockReservationService;
+import java.time.LocalDateTime;
+import java.util.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationServiceImpl implements StockReservationService {
+
+  private final ProductRepository productRepository;
+  private final HotStockLedgerService hotStockLedgerService;
+  private final ApplicationEventPublisher eventPublisher;
+
+  @Override
+  @Transactional(propagation = Propagation.MANDATORY) // Khóa chỉ có ý nghĩa trong transaction gọi
+  public Map<Long, Product> lockProducts(Collection<Long> productIds) {
+    if (productIds == null || productIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    List<Long> sortedIds =
+        productIds.stream().filter(Objects::nonNull).distinct().sorted().toList();
+
+    // Sản phẩm hot stock không cần khóa hàng: tránh để mọi người mua xếp hàng trên cùng một row
+    Set<Long> hotIds = hotStockLedgerService.findHotProductIds(sortedIds);
+    List<Long> idsToLock = sortedIds.stream().filter(id -> !hotIds.contains(id)).toList();
+
+    Map<Long, Product> lockedProducts = new LinkedHashMap<>();
+    if (!idsToLock.isEmpty()) {
+      for (Product product : productRepository.findAllByIdInForUpdate(idsToLock)) {
+        lockedProducts.put(product.getId(), product);
+      }
+    }
+    if (!hotIds.isEmpty()) {
+      for (Product product : productRepository.findAllById(hotIds)) {
+        lockedProducts.put(product.getId(), product);
+      }
+    }
+    log.debug(
+        "Loaded {} of {} requested products for stock reservation ({} hot stock)",
+        lockedProducts.size(),
+        sortedIds.size(),
+        hotIds.size());
+    return lockedProducts;
+  }
+
+  @Override
+  public Map<Long, Integer> getAvailableStock(Map<Long, Product> lockedProducts) {
+    Map<Long, Integer> available = new HashMap<>();
+    List<Long> hotIds = new ArrayList<>();
+    lockedProducts.forEach(
+        (id, product) -> {
+          available.put(id, product.getStockQuantity());
+          if (product.isHotStockEnabled()) {
+            hotIds.add(id);
+          }
+        });
+    if (!hotIds.isEmpty()) {
+      // Sản phẩm chưa có bộ đếm trong ledger giữ nguyên giá trị của entity
+      available.putAll(hotStockLedgerService.getAvailableStock(hotIds));
+    }
+    return available;
+  }
+
+  @Override
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void deductStock(
+      Map<Long, Product> lockedProducts, Map<Long, Integer> quantitiesByProductId) {
+    if (quantitiesByProductId == null || quantitiesByProductId.isEmpty()) {
+      return;
+    }
+    LocalDateTime now = LocalDateTime.now();
+    List<Product> changedProducts = new ArrayList<>(quantitiesByProductId.size());
+    Map<Long, Integer> hotQuantities = new HashMap<>();
+
+    for (Map.Entry<Long, Integer> entry : quantitiesByProductId.entrySet()) {
+      Product product = lockedProducts.get(entry.getKey());
+      if (product == null) {
+        throw new IllegalStateException(
+            "Product " + entry.getKey() + " was not locked before deducting stock");
+      }
+      int quantity = entry.getValue();
+      if (product.isHotStockEnabled()) {
+        hotQuantities.put(product.getId(), quantity);
+        continue;
+      }
+      // Hàng đã bị khóa nên giá trị đọc được là mới nhất, kiểm tra lại để phòng gọi sai thứ tự
+      if (product.getStockQuantity() < quantity) {
+        throw new OutOfStockException(
+            "Sản phẩm '" + product.getName() + "' không đủ số lượng tồn kho.",
+            product.getStockQuantity());
+      }
+      product.setStockQuantity(product.getStockQuantity() - quantity);
+      product.setLastStockUpdate(now);
+      changedProducts.add(product);
+    }
+
+    if (!hotQuantities.isEmpty()) {
+      reserveHotStock(lockedProducts, hotQuantities, now);
+    }
+
+    if (!changedProducts.isEmpty()) {
+      // Một lần flush duy nhất: Hibernate gom các UPDATE vào một JDBC batch
+      // (xem spring.jpa.properties.hibernate.jdbc.batch_size)
+      productRepository.saveAllAndFlush(changedProducts);
+      eventPublisher.publishEvent(CatalogChangedEvent.stockChanged(changedProducts));
+    }
+  }
+
+  @Override
+  public boolean restoreHotStock(Product product, int quantity) {
+    if (product == null || !product.isHotStockEnabled()) {
+      return false;
+    }
+    Long productId = product.getId();
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              hotStockLedgerService.adjust(productId, quantity);
+            }
+          });
+    } else {
+      hotStockLedgerService.adjust(productId, quantity);
+    }
+    return true;
+  }
+
+  private void reserveHotStock(
+      Map<Long, Product> products, Map<Long, Integer> quantities, LocalDateTime now) {
+    Map<Long, Integer> toReserve = new HashMap<>(quantities);
+    while (!toReserve.isEmpty()) {
+      ReservationResult result = hotStockLedgerService.tryReserve(toReserve);
+      if (result.success()) {
+        registerRollbackCompensation(toReserve);
+        return;
+      }
+      Product failed = products.get(result.failedProductId());
+      if (!result.counterMissing()) {
+        Integer available =
+            hotStockLedgerService.getAvailableStock(List.of(failed.getId())).get(failed.getId());
+        throw new OutOfStockException(
+            "Sản phẩm '" + failed.getName() + "' không đủ số lượng tồn kho.",
+            available != null ? available : 0);
+      }
+      // Bộ đếm chưa được seed: trừ thẳng trong DB bằng UPDATE có điều kiện. UPDATE giữ khóa hàng
+      // đến khi commit nên bước seed (cũng khóa hàng) sẽ thấy giá trị đã trừ.
+      int quantity = toReserve.remove(failed.getId());
+      if (productRepository.decrementStockIfAvailable(failed.getId(), quantity, now) == 0) {
+        throw new OutOfStockException(
+            "Sản phẩm '" + failed.getName() + "' không đủ số lượng tồn kho.",
+            failed.getStockQuantity());
+      }
+      log.debug(
+          "Hot stock counter for product {} not seeded yet, deducted {} directly in database",
+          failed.getId(),
+          quantity);
+      reseedAfterCommit(failed.getId());
+    }
+  }
+
+  // Cờ bật mà ledger mất bộ đếm: seed lại ngay thay vì để mọi checkout trừ thẳng vào DB tới lượt
+  // đối soát kế tiếp. Seed phải khóa hàng nên chờ transaction này commit và nhả khóa của UPDATE.
+  private void reseedAfterCommit(Long productId) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      requestReseed(productId);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            requestReseed(productId);
+          }
+        });
+  }
+
+  private void requestReseed(Long productId) {
+    try {
+      hotStockLedgerService.reseed(productId);
+    } catch (RuntimeException e) {
+      // Vd hàng đợi executor đầy: lượt đối soát định kỳ vẫn sẽ seed
+      log.warn("Could not schedule hot stock reseed for product {}: {}", productId, e.getMessage());
+    }
+  }
+
+  private void registerRollbackCompensation(Map<Long, Integer> reserved) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+    Map<Long, Integer> snapshot = Map.copyOf(reserved);
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCompletion(int status) {
+            if (status == STATUS_ROLLED_BACK) {
+              snapshot.forEach(hotStockLedgerService::adjust);
+              log.info("Released hot stock reservations after rollback: {}", snapshot);
+            }
+          }
+        });
+  }
+}
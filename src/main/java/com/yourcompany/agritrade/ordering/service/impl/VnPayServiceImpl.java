@@ -4,6 +4,7 @@ import com.yourcompany.agritrade.common.util.VnPayUtils;
 import com.yourcompany.agritrade.ordering.domain.Order;
 import com.yourcompany.agritrade.ordering.domain.PaymentMethod;
 import com.yourcompany.agritrade.ordering.dto.response.PaymentUrlResponse;
+import com.yourcompany.agritrade.ordering.service.PaymentGatewayHttpClient;
 import com.yourcompany.agritrade.ordering.service.PaymentGatewayService;
 import java.math.BigDecimal;
 import java.net.URLEncoder;
@@ -13,9 +14,7 @@ import java.util.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 @Service("vnPayService")
 @RequiredArgsConstructor
@@ -40,7 +39,7 @@ public class VnPayServiceImpl implements PaymentGatewayService {
   @Value("${app.backend.vnpayIpnUrl}")
   private String vnpIpnUrl; // URL Backend nhận IPN
 
-  private final RestTemplate restTemplate;
+  private final PaymentGatewayHttpClient gatewayHttpClient;
 
   @Override
   public PaymentUrlResponse createVnPayPaymentUrl(
@@ -170,16 +169,11 @@ public class VnPayServiceImpl implements PaymentGatewayService {
     String vnp_SecureHash = VnPayUtils.hmacSHA512(vnpHashSecret, hashData.toString());
     vnp_Params.put("vnp_SecureHash", vnp_SecureHash);
 
-    HttpHeaders headers = new HttpHeaders();
-    headers.setContentType(MediaType.APPLICATION_JSON);
-    HttpEntity<Map<String, String>> entity = new HttpEntity<>(vnp_Params, headers);
-
     try {
       log.debug("Sending VNPay Refund Request: {}", vnp_Params);
       // VNPay Refund API thường là POST và trả về JSON
-      ResponseEntity<Map> responseEntity =
-          restTemplate.exchange(vnpApiUrl, HttpMethod.POST, entity, Map.class);
-      Map<String, Object> responseBody = responseEntity.getBody();
+      Map<String, Object> responseBody =
+          gatewayHttpClient.postJson(PaymentMethod.VNPAY, vnpApiUrl, vnp_Params, Map.class);
       log.info("VNPay Refund Response: {}", responseBody);
 
       if (responseBody != null && "00".equals(responseBody.get("vnp_ResponseCode"))) {
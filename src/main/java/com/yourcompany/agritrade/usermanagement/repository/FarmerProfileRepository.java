@@ -2,11 +2,15 @@ package com.yourcompany.agritrade.usermanagement.repository;
 
 import com.yourcompany.agritrade.common.model.VerificationStatus;
 import com.yourcompany.agritrade.usermanagement.domain.FarmerProfile;
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface FarmerProfileRepository
     extends JpaRepository<FarmerProfile, Long>, JpaSpecificationExecutor<FarmerProfile> {
@@ -19,4 +23,8 @@ public interface FarmerProfileRepository
   // Sử dụng @EntityGraph để fetch User cùng lúc, tránh N+1 query
   @EntityGraph(attributePaths = {"user", "user.roles"}) // Fetch user và roles của user đó
   Page<FarmerProfile> findByVerificationStatus(VerificationStatus status, Pageable pageable);
+
+  // Nạp profile kèm User của nhiều farmer trong một truy vấn (checkout giỏ hàng nhiều farmer)
+  @Query("SELECT fp FROM FarmerProfile fp JOIN FETCH fp.user WHERE fp.userId IN :userIds")
+  List<FarmerProfile> findAllWithUserByUserIdIn(@Param("userIds") Collection<Long> userIds);
 }
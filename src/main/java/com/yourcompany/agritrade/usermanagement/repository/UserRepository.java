@@ -8,6 +8,7 @@ import java.util.Optional;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -34,6 +35,23 @@ public interface UserRepository extends JpaRepository<User, Long>, JpaSpecificat
   @Query("SELECT u FROM User u WHERE u.id = :id")
   Optional<User> findByIdIncludingDeleted(@Param("id") Long id);
 
+  // Nạp user cùng farmer profile trong một truy vấn (dùng khi dựng bản sao cho cache user)
+  @Query("SELECT u FROM User u LEFT JOIN FETCH u.farmerProfile WHERE u.id = :id")
+  Optional<User> findWithFarmerProfileById(@Param("id") Long id);
+
+  // Cộng/trừ trực tiếp bộ đếm follow trong DB (không đếm lại bảng user_follows), không để âm
+  @Modifying
+  @Query(
+      "UPDATE User u SET u.followingCount = u.followingCount + :delta "
+          + "WHERE u.id = :userId AND u.followingCount + :delta >= 0")
+  int adjustFollowingCount(@Param("userId") Long userId, @Param("delta") int delta);
+
+  @Modifying
+  @Query(
+      "UPDATE User u SET u.followerCount = u.followerCount + :delta "
+          + "WHERE u.id = :userId AND u.followerCount + :delta >= 0")
+  int adjustFollowerCount(@Param("userId") Long userId, @Param("delta") int delta);
+
   // Thêm phương thức tìm user bằng verification token (bất kể active/deleted)
   @Query("SELECT u FROM User u WHERE u.verificationToken = :token")
   Optional<User> findByVerificationToken(@Param("token") String token);
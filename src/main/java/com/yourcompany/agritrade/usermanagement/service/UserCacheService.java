@@ -0,0 +1,25 @@
+package com.yourcompany.agritrade.usermanagement.service;
+
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import java.util.Optional;
+
+/**
+ * Cache ngắn hạn cho User entity của người dùng đang đăng nhập, giúp các API chỉ đọc không phải
+ * truy vấn bảng users ở mỗi request. Cache giữ ảnh chụp bất biến; mỗi lần gọi nhận một User mới
+ * tách khỏi persistence context (không có mật khẩu và token), chỉ dùng để đọc; mọi thao tác ghi
+ * phải nạp lại entity từ repository.
+ */
+public interface UserCacheService {
+
+  /** Lấy user (bản sao mới, chỉ đọc) theo id, nạp từ DB khi cache chưa có hoặc đã hết hạn. */
+  Optional<User> findById(Long userId);
+
+  /** Xóa user khỏi cache ngay lập tức. */
+  void evict(Long userId);
+
+  /**
+   * Xóa user khỏi cache sau khi transaction hiện tại commit thành công (hoặc ngay lập tức nếu không
+   * có transaction), để request khác không nạp lại dữ liệu cũ trước khi commit.
+   */
+  void evictAfterCommit(Long userId);
+}
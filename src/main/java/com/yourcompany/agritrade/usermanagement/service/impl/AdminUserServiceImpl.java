@@ -18,6 +18,7 @@ import com.yourcompany.agritrade.usermanagement.repository.*;
 import com.yourcompany.agritrade.usermanagement.repository.specification.FarmerProfileSpecification;
 import com.yourcompany.agritrade.usermanagement.repository.specification.UserSpecification;
 import com.yourcompany.agritrade.usermanagement.service.AdminUserService;
+import com.yourcompany.agritrade.usermanagement.service.UserCacheService;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
@@ -43,6 +44,7 @@ public class AdminUserServiceImpl implements AdminUserService {
   private final FarmerProfileMapper farmerProfileMapper;
   private final BusinessProfileMapper businessProfileMapper;
   private final NotificationService notificationService;
+  private final UserCacheService userCacheService;
 
   @Override
   @Transactional(readOnly = true)
@@ -106,6 +108,7 @@ public class AdminUserServiceImpl implements AdminUserService {
 
     user.setActive(isActive);
     User updatedUser = userRepository.save(user);
+    userCacheService.evictAfterCommit(userId);
     log.info("User {} status updated to {} by admin {}", userId, isActive, adminAuth.getName());
 
     // Gửi thông báo cho người dùng
@@ -136,6 +139,7 @@ public class AdminUserServiceImpl implements AdminUserService {
 
     user.setRoles(newRoles);
     User updatedUser = userRepository.save(user);
+    userCacheService.evictAfterCommit(userId);
     log.info("User {} roles updated to {} by admin {}", userId, roleNames, adminAuth.getName());
 
     // Gửi thông báo cho người dùng
@@ -206,6 +210,7 @@ public class AdminUserServiceImpl implements AdminUserService {
     profile.setVerifiedAt(LocalDateTime.now());
     profile.setVerifiedBy(admin); // Lưu lại admin nào đã duyệt
     farmerProfileRepository.save(profile);
+    userCacheService.evictAfterCommit(userId); // Bản cache chứa farmer profile cũ
 
     // Kích hoạt tài khoản User nếu chưa active
     User farmerUser = profile.getUser();
@@ -237,6 +242,7 @@ public class AdminUserServiceImpl implements AdminUserService {
     profile.setVerifiedAt(LocalDateTime.now()); // Vẫn lưu thời gian xử lý
     profile.setVerifiedBy(admin);
     farmerProfileRepository.save(profile);
+    userCacheService.evictAfterCommit(userId);
 
     // Không kích hoạt tài khoản User
     log.info(
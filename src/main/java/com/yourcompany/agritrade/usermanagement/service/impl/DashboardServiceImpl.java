@@ -13,10 +13,13 @@ import com.yourcompany.agritrade.common.service.FileStorageService;
 import com.yourcompany.agritrade.common.util.SecurityUtils;
 import com.yourcompany.agritrade.interaction.repository.ReviewRepository;
 import com.yourcompany.agritrade.ordering.domain.Order;
+import com.yourcompany.agritrade.ordering.domain.OrderDailyStat;
+import com.yourcompany.agritrade.ordering.domain.OrderStatScope;
 import com.yourcompany.agritrade.ordering.domain.OrderStatus;
 import com.yourcompany.agritrade.ordering.domain.SupplyOrderRequestStatus;
 import com.yourcompany.agritrade.ordering.dto.response.OrderSummaryResponse;
 import com.yourcompany.agritrade.ordering.mapper.OrderMapper;
+import com.yourcompany.agritrade.ordering.repository.OrderDailyStatRepository;
 import com.yourcompany.agritrade.ordering.repository.OrderRepository;
 import com.yourcompany.agritrade.ordering.repository.SupplyOrderRequestRepository;
 import com.yourcompany.agritrade.usermanagement.domain.User;
@@ -26,12 +29,10 @@ import com.yourcompany.agritrade.usermanagement.mapper.UserMapper;
 import com.yourcompany.agritrade.usermanagement.repository.FarmerProfileRepository;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
 import com.yourcompany.agritrade.usermanagement.service.DashboardService;
-import jakarta.persistence.Tuple;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.ZoneId;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -52,6 +53,9 @@ import org.springframework.transaction.annotation.Transactional;
 public class DashboardServiceImpl implements DashboardService {
 
   private final OrderRepository orderRepository;
+  // Số liệu đơn hàng đã tổng hợp theo ngày (order_daily_stats), cập nhật bởi
+  // OrderStatsRollupScheduler
+  private final OrderDailyStatRepository orderDailyStatRepository;
   private final ProductRepository productRepository;
   private final UserRepository userRepository;
   private final FarmerProfileRepository farmerProfileRepository;
@@ -74,23 +78,24 @@ public class DashboardServiceImpl implements DashboardService {
   public DashboardStatsResponse getFarmerDashboardStats(Authentication authentication) {
     User farmer = SecurityUtils.getCurrentAuthenticatedUser();
     Long farmerId = farmer.getId();
-    LocalDateTime todayStart = LocalDate.now().atStartOfDay();
-    LocalDateTime todayEnd = LocalDate.now().atTime(LocalTime.MAX);
-    LocalDateTime monthStart = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-    LocalDateTime monthEnd = todayEnd; // Tính đến hiện tại của tháng
+    LocalDate today = LocalDate.now();
+    LocalDate monthStart = today.withDayOfMonth(1);
 
     long totalOrdersToday =
-        orderRepository.countByFarmerIdAndCreatedAtBetween(farmerId, todayStart, todayEnd);
+        orderDailyStatRepository.sumOrderCount(OrderStatScope.FARMER, farmerId, today, today);
     long totalOrdersThisMonth =
-        orderRepository.countByFarmerIdAndCreatedAtBetween(farmerId, monthStart, monthEnd);
+        orderDailyStatRepository.sumOrderCount(OrderStatScope.FARMER, farmerId, monthStart, today);
     BigDecimal totalRevenueToday =
-        orderRepository.sumTotalAmountByFarmerIdAndStatusInAndCreatedAtBetween(
-            farmerId, REVENUE_ORDER_STATUSES, todayStart, todayEnd);
+        orderDailyStatRepository.sumTotalAmount(
+            OrderStatScope.FARMER, farmerId, REVENUE_ORDER_STATUSES, today, today);
     BigDecimal totalRevenueThisMonth =
-        orderRepository.sumTotalAmountByFarmerIdAndStatusInAndCreatedAtBetween(
-            farmerId, REVENUE_ORDER_STATUSES, monthStart, monthEnd);
+        orderDailyStatRepository.sumTotalAmount(
+            OrderStatScope.FARMER, farmerId, REVENUE_ORDER_STATUSES, monthStart, today);
     long pendingOrders =
-        orderRepository.countByFarmerIdAndStatusIn(farmerId, PENDING_ORDER_STATUSES);
+        countOrdersByStatus(OrderStatScope.FARMER, farmerId).entrySet().stream()
+            .filter(entry -> PENDING_ORDER_STATUSES.contains(entry.getKey()))
+            .mapToLong(Map.Entry::getValue)
+            .sum();
     // Query cho sản phẩm B2C sắp hết ( b2bEnabled=false)
     long lowStockProducts =
         productRepository.countByFarmerIdAndB2bEnabledAndStockQuantityLessThan(
@@ -192,38 +197,11 @@ public class DashboardServiceImpl implements DashboardService {
     User farmer = SecurityUtils.getCurrentAuthenticatedUser();
     Long farmerId = farmer.getId();
 
-    LocalDateTime startDateTime = startDate.atStartOfDay();
-    LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
-
-    // Gọi query mới trong repository
-    List<Tuple> dailyCounts =
-        orderRepository.countOrdersByDayForFarmer(farmerId, startDateTime, endDateTime);
-
-    // Tạo Map từ kết quả query (LocalDate -> Long count)
+    // Đọc từ bảng tổng hợp: tối đa (số ngày × số trạng thái) dòng
     Map<LocalDate, Long> countsMap =
-        dailyCounts.stream()
-            .collect(
-                Collectors.toMap(
-                    tuple -> {
-                      Object dateObject = tuple.get(0); // Lấy cột đầu tiên (ngày)
-                      if (dateObject instanceof java.sql.Date) {
-                        return ((java.sql.Date) dateObject).toLocalDate();
-                      } else if (dateObject instanceof Date) { // Fallback cho java.util.Date
-                        return ((Date) dateObject)
-                            .toInstant()
-                            .atZone(ZoneId.systemDefault())
-                            .toLocalDate();
-                      } else {
-                        // Xử lý trường hợp không mong muốn hoặc log lỗi
-                        log.error(
-                            "Unexpected date type in tuple for order count chart: {}",
-                            dateObject != null ? dateObject.getClass() : "null");
-                        // Có thể trả về một giá trị mặc định hoặc ném lỗi tùy logic
-                        return LocalDate.MIN; // Ví dụ trả về ngày nhỏ nhất để dễ lọc bỏ
-                      }
-                    },
-                    tuple -> tuple.get(1, Long.class) // Lấy số lượng (cột 1)
-                    ));
+        toDailyCountMap(
+            orderDailyStatRepository.findDailyOrderCounts(
+                OrderStatScope.FARMER, farmerId, startDate, endDate));
 
     // Tạo danh sách đầy đủ các ngày trong khoảng thời gian
     List<LocalDate> dateRange =
@@ -251,42 +229,11 @@ public class DashboardServiceImpl implements DashboardService {
     User farmer = SecurityUtils.getCurrentAuthenticatedUser();
     Long farmerId = farmer.getId();
 
-    LocalDateTime startDateTime = startDate.atStartOfDay();
-    LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
-
-    // Gọi query mới trong repository, sử dụng REVENUE_ORDER_STATUSES
-    List<Tuple> dailyRevenues =
-        orderRepository.sumRevenueByDayForFarmer(
-            farmerId,
-            startDateTime,
-            endDateTime,
-            REVENUE_ORDER_STATUSES // Chỉ tính doanh thu từ các trạng thái này
-            );
-
-    // Tạo Map từ kết quả query (LocalDate -> BigDecimal revenue)
+    // Chỉ tính doanh thu từ các trạng thái REVENUE_ORDER_STATUSES
     Map<LocalDate, BigDecimal> revenuesMap =
-        dailyRevenues.stream()
-            .filter(tuple -> tuple.get(1, BigDecimal.class) != null)
-            .collect(
-                Collectors.toMap(
-                    tuple -> {
-                      Object dateObject = tuple.get(0);
-                      if (dateObject instanceof java.sql.Date) {
-                        return ((java.sql.Date) dateObject).toLocalDate();
-                      } else if (dateObject instanceof Date) {
-                        return ((Date) dateObject)
-                            .toInstant()
-                            .atZone(ZoneId.systemDefault())
-                            .toLocalDate();
-                      } else {
-                        log.error(
-                            "Unexpected date type in tuple for revenue chart: {}",
-                            dateObject != null ? dateObject.getClass() : "null");
-                        return LocalDate.MIN;
-                      }
-                    },
-                    tuple -> tuple.get(1, BigDecimal.class) // Lấy doanh thu (cột 1)
-                    ));
+        toDailyAmountMap(
+            orderDailyStatRepository.findDailyTotalAmounts(
+                OrderStatScope.FARMER, farmerId, REVENUE_ORDER_STATUSES, startDate, endDate));
 
     // Tạo danh sách đầy đủ các ngày trong khoảng thời gian
     List<LocalDate> dateRange =
@@ -309,33 +256,33 @@ public class DashboardServiceImpl implements DashboardService {
 
   @Override
   public DashboardStatsResponse getAdminDashboardStats() {
-    LocalDateTime todayStart = LocalDate.now().atStartOfDay();
-    LocalDateTime todayEnd = LocalDate.now().atTime(LocalTime.MAX);
-    LocalDateTime monthStart = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-    LocalDateTime monthEnd = todayEnd;
+    LocalDate today = LocalDate.now();
+    LocalDate monthStart = today.withDayOfMonth(1);
 
     // Tính toán cho tháng trước
-    LocalDateTime previousMonthStart = monthStart.minusMonths(1);
-    LocalDateTime previousMonthEnd = monthStart.minusNanos(1);
+    LocalDate previousMonthStart = monthStart.minusMonths(1);
+    LocalDate previousMonthEnd = monthStart.minusDays(1);
 
-    long totalOrdersToday = orderRepository.countByCreatedAtBetween(todayStart, todayEnd);
-    long totalOrdersThisMonth = orderRepository.countByCreatedAtBetween(monthStart, monthEnd);
+    Long all = OrderDailyStat.ALL_PARTIES;
+    long totalOrdersToday =
+        orderDailyStatRepository.sumOrderCount(OrderStatScope.ALL, all, today, today);
+    long totalOrdersThisMonth =
+        orderDailyStatRepository.sumOrderCount(OrderStatScope.ALL, all, monthStart, today);
     BigDecimal totalRevenueToday =
-        orderRepository.sumTotalAmountByStatusInAndCreatedAtBetween(
-            REVENUE_ORDER_STATUSES, todayStart, todayEnd);
+        orderDailyStatRepository.sumTotalAmount(
+            OrderStatScope.ALL, all, REVENUE_ORDER_STATUSES, today, today);
     BigDecimal totalRevenueThisMonth =
-        orderRepository.sumTotalAmountByStatusInAndCreatedAtBetween(
-            REVENUE_ORDER_STATUSES, monthStart, monthEnd);
-
-    // *** THÊM QUERY MỚI ***
+        orderDailyStatRepository.sumTotalAmount(
+            OrderStatScope.ALL, all, REVENUE_ORDER_STATUSES, monthStart, today);
     BigDecimal totalRevenuePreviousMonth =
-        orderRepository.sumTotalAmountByStatusInAndCreatedAtBetween(
-            REVENUE_ORDER_STATUSES, previousMonthStart, previousMonthEnd);
+        orderDailyStatRepository.sumTotalAmount(
+            OrderStatScope.ALL, all, REVENUE_ORDER_STATUSES, previousMonthStart, previousMonthEnd);
 
-    // *** THÊM LOGIC LẤY PHÂN BỔ TRẠNG THÁI ***
+    // Phân bổ trạng thái: một truy vấn GROUP BY trên bảng tổng hợp, trạng thái không có đơn = 0
+    Map<OrderStatus, Long> countsByStatus = countOrdersByStatus(OrderStatScope.ALL, all);
     Map<String, Long> orderStatusDistribution = new HashMap<>();
     for (OrderStatus status : OrderStatus.values()) {
-      orderStatusDistribution.put(status.name(), orderRepository.countByStatus(status));
+      orderStatusDistribution.put(status.name(), countsByStatus.getOrDefault(status, 0L));
     }
 
     long totalUsers =
@@ -346,11 +293,7 @@ public class DashboardServiceImpl implements DashboardService {
     long totalConsumers = userRepository.countByRoleName(RoleType.ROLE_CONSUMER);
     long totalBusinessBuyers = userRepository.countByRoleName(RoleType.ROLE_BUSINESS_BUYER);
 
-    long pendingFarmerApprovals =
-        farmerProfileRepository.countByVerificationStatus(VerificationStatus.PENDING);
-    long pendingProductApprovals =
-        productRepository.countByStatus(ProductStatus.PENDING_APPROVAL); // Nếu có duyệt SP
-    long pendingReviews = reviewRepository.countByStatus(ReviewStatus.PENDING);
+    Map<String, Long> pendingApprovalCounts = getPendingApprovalCounts();
 
     return DashboardStatsResponse.builder()
         .totalOrdersToday(totalOrdersToday)
@@ -361,12 +304,9 @@ public class DashboardServiceImpl implements DashboardService {
         .totalFarmers(totalFarmers)
         .totalConsumers(totalConsumers)
         .totalBusinessBuyers(totalBusinessBuyers)
-        .pendingFarmerApprovals(pendingFarmerApprovals)
-        .pendingProductApprovals(pendingProductApprovals)
-        .pendingReviews(pendingReviews)
-        .pendingFarmerApprovals(getPendingApprovalCounts().getOrDefault("farmers", 0L))
-        .pendingProductApprovals(getPendingApprovalCounts().getOrDefault("products", 0L))
-        .pendingReviews(getPendingApprovalCounts().getOrDefault("reviews", 0L))
+        .pendingFarmerApprovals(pendingApprovalCounts.getOrDefault("farmers", 0L))
+        .pendingProductApprovals(pendingApprovalCounts.getOrDefault("products", 0L))
+        .pendingReviews(pendingApprovalCounts.getOrDefault("reviews", 0L))
         .totalRevenuePreviousMonth(totalRevenuePreviousMonth) // << Thêm dữ liệu mới
         .orderStatusDistribution(orderStatusDistribution) // << Thêm dữ liệu mới
         .build();
@@ -376,24 +316,14 @@ public class DashboardServiceImpl implements DashboardService {
   public List<TimeSeriesDataPoint<BigDecimal>> getDailyRevenueForAdminChart(
       LocalDate startDate, LocalDate endDate) {
 
-    LocalDateTime startDateTime = startDate.atStartOfDay();
-    LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
-    List<Object[]> results =
-        orderRepository.findDailyRevenueBetween(REVENUE_ORDER_STATUSES, startDateTime, endDateTime);
-
-    // Tạo Map từ kết quả query (LocalDate -> BigDecimal revenue)
     Map<LocalDate, BigDecimal> revenuesMap =
-        results.stream()
-            .filter(
-                result ->
-                    result != null
-                        && result.length > 1
-                        && result[0] != null
-                        && result[1] != null) // Kiểm tra null kỹ hơn
-            .collect(
-                Collectors.toMap(
-                    result -> parseDateFromResult(result[0]), // Dùng helper function
-                    result -> (BigDecimal) result[1]));
+        toDailyAmountMap(
+            orderDailyStatRepository.findDailyTotalAmounts(
+                OrderStatScope.ALL,
+                OrderDailyStat.ALL_PARTIES,
+                REVENUE_ORDER_STATUSES,
+                startDate,
+                endDate));
 
     // Tạo danh sách đầy đủ các ngày trong khoảng thời gian
     List<LocalDate> dateRange =
@@ -413,19 +343,10 @@ public class DashboardServiceImpl implements DashboardService {
   public List<TimeSeriesDataPoint<Long>> getDailyOrderCountForAdminChart(
       LocalDate startDate, LocalDate endDate) {
 
-    LocalDateTime startDateTime = startDate.atStartOfDay();
-    LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
-    List<Object[]> results = orderRepository.findDailyOrderCountBetween(startDateTime, endDateTime);
-
-    // Tạo Map từ kết quả query (LocalDate -> Long count)
     Map<LocalDate, Long> countsMap =
-        results.stream()
-            .filter(
-                result ->
-                    result != null && result.length > 1 && result[0] != null && result[1] != null)
-            .collect(
-                Collectors.toMap(
-                    result -> parseDateFromResult(result[0]), result -> (Long) result[1]));
+        toDailyCountMap(
+            orderDailyStatRepository.findDailyOrderCounts(
+                OrderStatScope.ALL, OrderDailyStat.ALL_PARTIES, startDate, endDate));
 
     // Tạo danh sách đầy đủ các ngày trong khoảng thời gian
     List<LocalDate> dateRange =
@@ -509,6 +430,33 @@ public class DashboardServiceImpl implements DashboardService {
     return counts;
   }
 
+  // Số đơn theo trạng thái hiện tại của một phạm vi, đọc từ bảng tổng hợp
+  private Map<OrderStatus, Long> countOrdersByStatus(OrderStatScope scope, Long partyId) {
+    Map<OrderStatus, Long> counts = new EnumMap<>(OrderStatus.class);
+    for (Object[] row : orderDailyStatRepository.sumOrderCountGroupByStatus(scope, partyId)) {
+      counts.put((OrderStatus) row[0], ((Number) row[1]).longValue());
+    }
+    return counts;
+  }
+
+  // Chuyển kết quả [LocalDate, Long] của bảng tổng hợp thành Map
+  private Map<LocalDate, Long> toDailyCountMap(List<Object[]> rows) {
+    return rows.stream()
+        .filter(row -> row != null && row[0] != null && row[1] != null)
+        .collect(
+            Collectors.toMap(
+                row -> (LocalDate) row[0], row -> ((Number) row[1]).longValue(), Long::sum));
+  }
+
+  // Chuyển kết quả [LocalDate, BigDecimal] của bảng tổng hợp thành Map
+  private Map<LocalDate, BigDecimal> toDailyAmountMap(List<Object[]> rows) {
+    return rows.stream()
+        .filter(row -> row != null && row[0] != null && row[1] != null)
+        .collect(
+            Collectors.toMap(
+                row -> (LocalDate) row[0], row -> (BigDecimal) row[1], BigDecimal::add));
+  }
+
   // Helper function để parse Date từ Object trả về của query (tránh lặp code)
   private LocalDate parseDateFromResult(Object dateObject) {
     if (dateObject instanceof java.sql.Date) {
@@ -534,13 +482,16 @@ public class DashboardServiceImpl implements DashboardService {
   @Override
   public List<FarmerSummaryResponse> getTopPerformingFarmers(int limit) {
     // Lấy top farmer dựa trên doanh thu tháng này
-    LocalDateTime monthStart = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-    LocalDateTime monthEnd = LocalDate.now().atTime(LocalTime.MAX);
+    LocalDate today = LocalDate.now();
     Pageable pageable = PageRequest.of(0, limit);
 
     List<Object[]> topFarmerData =
-        orderRepository.findTopFarmersByRevenue(
-            REVENUE_ORDER_STATUSES, monthStart, monthEnd, pageable);
+        orderDailyStatRepository.findTopPartiesByTotalAmount(
+            OrderStatScope.FARMER,
+            REVENUE_ORDER_STATUSES,
+            today.withDayOfMonth(1),
+            today,
+            pageable);
 
     List<Long> farmerIds =
         topFarmerData.stream().map(row -> (Long) row[0]).collect(Collectors.toList());
@@ -561,13 +512,12 @@ public class DashboardServiceImpl implements DashboardService {
 
   @Override
   public List<UserResponse> getTopSpendingBuyers(int limit) {
-    LocalDateTime monthStart = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-    LocalDateTime monthEnd = LocalDate.now().atTime(LocalTime.MAX);
+    LocalDate today = LocalDate.now();
     Pageable pageable = PageRequest.of(0, limit);
 
     List<Object[]> topBuyerData =
-        orderRepository.findTopBuyersByTotalSpent(
-            REVENUE_ORDER_STATUSES, monthStart, monthEnd, pageable);
+        orderDailyStatRepository.findTopPartiesByTotalAmount(
+            OrderStatScope.BUYER, REVENUE_ORDER_STATUSES, today.withDayOfMonth(1), today, pageable);
 
     List<Long> buyerIds =
         topBuyerData.stream().map(row -> (Long) row[0]).collect(Collectors.toList());
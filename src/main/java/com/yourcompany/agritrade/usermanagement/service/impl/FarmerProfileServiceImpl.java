@@ -14,6 +14,7 @@ import com.yourcompany.agritrade.usermanagement.repository.FarmerProfileReposito
 import com.yourcompany.agritrade.usermanagement.repository.RoleRepository;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
 import com.yourcompany.agritrade.usermanagement.service.FarmerProfileService;
+import com.yourcompany.agritrade.usermanagement.service.UserCacheService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
@@ -27,6 +28,7 @@ public class FarmerProfileServiceImpl implements FarmerProfileService {
   private final UserRepository userRepository;
   private final FarmerProfileMapper farmerProfileMapper;
   private final RoleRepository roleRepository;
+  private final UserCacheService userCacheService;
   private static final String LANG_SON_PROVINCE_CODE = "20";
 
   @Override
@@ -58,6 +60,7 @@ public class FarmerProfileServiceImpl implements FarmerProfileService {
     }
 
     FarmerProfile savedProfile = farmerProfileRepository.save(profile);
+    userCacheService.evictAfterCommit(user.getId());
 
     // *** Quan trọng: Gán thêm vai trò FARMER nếu là tạo profile mới ***
     if (isNewProfile) {
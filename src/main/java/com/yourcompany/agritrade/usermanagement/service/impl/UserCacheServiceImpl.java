@@ -0,0 +1,286 @@
+package com.yourcompany.agritrade.usermanagement.service.impl;
+
+import com.yourcompany.agritrade.common.model.RoleType;
+import com.yourcompany.agritrade.common.model.VerificationStatus;
+import com.yourcompany.agritrade.usermanagement.domain.FarmerProfile;
+import com.yourcompany.agritrade.usermanagement.domain.Permission;
+import com.yourcompany.agritrade.usermanagement.domain.Role;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import com.yourcompany.agritrade.usermanagement.service.UserCacheService;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Service
+@Slf4j
+public class UserCacheServiceImpl implements UserCacheService {
+
+  private record CachedUser(UserSnapshot snapshot, Instant expiresAt) {}
+
+  /**
+   * Ảnh chụp bất biến của user được giữ trong cache; mỗi lần đọc dựng một {@link User} mới từ đây
+   * nên request này sửa đối tượng nhận được cũng không ảnh hưởng request khác. Không giữ mật khẩu
+   * và các token (không cần cho luồng chỉ đọc).
+   */
+  record UserSnapshot(
+      Long id,
+      String email,
+      String fullName,
+      String phoneNumber,
+      String avatarUrl,
+      Integer followerCount,
+      Integer followingCount,
+      Set<RoleSnapshot> roles,
+      FarmerProfileSnapshot farmerProfile,
+      String provider,
+      LocalDateTime createdAt,
+      LocalDateTime updatedAt,
+      boolean deleted,
+      boolean active) {
+
+    static UserSnapshot of(User user) {
+      FarmerProfile profile = user.getFarmerProfile();
+      return new UserSnapshot(
+          user.getId(),
+          user.getEmail(),
+          user.getFullName(),
+          user.getPhoneNumber(),
+          user.getAvatarUrl(),
+          user.getFollowerCount(),
+          user.getFollowingCount(),
+          user.getRoles().stream().map(RoleSnapshot::of).collect(Collectors.toUnmodifiableSet()),
+          profile != null && Hibernate.isInitialized(profile)
+              ? FarmerProfileSnapshot.of(profile)
+              : null,
+          user.getProvider(),
+          user.getCreatedAt(),
+          user.getUpdatedAt(),
+          user.isDeleted(),
+          user.isActive());
+    }
+
+    User toUser() {
+      User user = new User();
+      user.setId(id);
+      user.setEmail(email);
+      user.setFullName(fullName);
+      user.setPhoneNumber(phoneNumber);
+      user.setAvatarUrl(avatarUrl);
+      user.setFollowerCount(followerCount);
+      user.setFollowingCount(followingCount);
+      Set<Role> userRoles = new HashSet<>();
+      roles.forEach(role -> userRoles.add(role.toRole()));
+      user.setRoles(userRoles);
+      if (farmerProfile != null) {
+        user.setFarmerProfile(farmerProfile.toFarmerProfile(user));
+      }
+      user.setProvider(provider);
+      user.setCreatedAt(createdAt);
+      user.setUpdatedAt(updatedAt);
+      user.setDeleted(deleted);
+      user.setActive(active);
+      return user;
+    }
+  }
+
+  record RoleSnapshot(
+      Integer id, RoleType name, String description, Set<PermissionSnapshot> permissions) {
+
+    static RoleSnapshot of(Role role) {
+      return new RoleSnapshot(
+          role.getId(),
+          role.getName(),
+          role.getDescription(),
+          role.getPermissions() != null
+              ? role.getPermissions().stream()
+                  .map(PermissionSnapshot::of)
+                  .collect(Collectors.toUnmodifiableSet())
+              : Set.of());
+    }
+
+    Role toRole() {
+      Role role = new Role(name);
+      role.setId(id);
+      role.setDescription(description);
+      Set<Permission> rolePermissions = new HashSet<>();
+      permissions.forEach(permission -> rolePermissions.add(permission.toPermission()));
+      role.setPermissions(rolePermissions);
+      return role;
+    }
+  }
+
+  record PermissionSnapshot(Integer id, String name, String description) {
+
+    static PermissionSnapshot of(Permission permission) {
+      return new PermissionSnapshot(
+          permission.getId(), permission.getName(), permission.getDescription());
+    }
+
+    Permission toPermission() {
+      Permission permission = new Permission(name, description);
+      permission.setId(id);
+      return permission;
+    }
+  }
+
+  /** Người duyệt chỉ giữ tên (đủ cho verifiedByAdminName), và chỉ khi đã được nạp sẵn. */
+  record FarmerProfileSnapshot(
+      Long userId,
+      String farmName,
+      String description,
+      String addressDetail,
+      String provinceCode,
+      String districtCode,
+      String wardCode,
+      String coverImageUrl,
+      VerificationStatus verificationStatus,
+      LocalDateTime verifiedAt,
+      Long verifiedById,
+      String verifiedByName,
+      boolean canSupplyB2b,
+      String b2bCertifications,
+      BigDecimal minB2bOrderValue,
+      LocalDateTime createdAt,
+      LocalDateTime updatedAt) {
+
+    static FarmerProfileSnapshot of(FarmerProfile profile) {
+      User verifiedBy = profile.getVerifiedBy();
+      boolean verifierLoaded = verifiedBy != null && Hibernate.isInitialized(verifiedBy);
+      return new FarmerProfileSnapshot(
+          profile.getUserId(),
+          profile.getFarmName(),
+          profile.getDescription(),
+          profile.getAddressDetail(),
+          profile.getProvinceCode(),
+          profile.getDistrictCode(),
+          profile.getWardCode(),
+          profile.getCoverImageUrl(),
+          profile.getVerificationStatus(),
+          profile.getVerifiedAt(),
+          verifierLoaded ? verifiedBy.getId() : null,
+          verifierLoaded ? verifiedBy.getFullName() : null,
+          profile.isCanSupplyB2b(),
+          profile.getB2bCertifications(),
+          profile.getMinB2bOrderValue(),
+          profile.getCreatedAt(),
+          profile.getUpdatedAt());
+    }
+
+    FarmerProfile toFarmerProfile(User owner) {
+      FarmerProfile profile = new FarmerProfile();
+      profile.setUserId(userId);
+      profile.setUser(owner);
+      profile.setFarmName(farmName);
+      profile.setDescription(description);
+      profile.setAddressDetail(addressDetail);
+      profile.setProvinceCode(provinceCode);
+      profile.setDistrictCode(districtCode);
+      profile.setWardCode(wardCode);
+      profile.setCoverImageUrl(coverImageUrl);
+      profile.setVerificationStatus(verificationStatus);
+      profile.setVerifiedAt(verifiedAt);
+      if (verifiedById != null) {
+        User verifiedBy = new User();
+        verifiedBy.setId(verifiedById);
+        verifiedBy.setFullName(verifiedByName);
+        profile.setVerifiedBy(verifiedBy);
+      }
+      profile.setCanSupplyB2b(canSupplyB2b);
+      profile.setB2bCertifications(b2bCertifications);
+      profile.setMinB2bOrderValue(minB2bOrderValue);
+      profile.setCreatedAt(createdAt);
+      profile.setUpdatedAt(updatedAt);
+      return profile;
+    }
+  }
+
+  private final ConcurrentHashMap<Long, CachedUser> entries = new ConcurrentHashMap<>();
+  private final UserRepository userRepository;
+  private final Duration ttl;
+  private final int maxEntries;
+  private final Clock clock;
+
+  @Autowired
+  public UserCacheServiceImpl(
+      UserRepository userRepository,
+      @Value("${app.security.user-cache.ttl-seconds:30}") long ttlSeconds,
+      @Value("${app.security.user-cache.max-entries:10000}") int maxEntries) {
+    this(userRepository, Duration.ofSeconds(ttlSeconds), maxEntries, Clock.systemUTC());
+  }
+
+  UserCacheServiceImpl(UserRepository userRepository, Duration ttl, int maxEntries, Clock clock) {
+    this.userRepository = userRepository;
+    this.ttl = ttl;
+    this.maxEntries = maxEntries;
+    this.clock = clock;
+  }
+
+  @Override
+  public Optional<User> findById(Long userId) {
+    Instant now = clock.instant();
+    CachedUser cached = entries.get(userId);
+    if (cached != null && now.isBefore(cached.expiresAt())) {
+      return Optional.of(cached.snapshot().toUser());
+    }
+
+    Optional<UserSnapshot> loaded =
+        userRepository.findWithFarmerProfileById(userId).map(UserSnapshot::of);
+    loaded.ifPresentOrElse(
+        snapshot -> put(userId, new CachedUser(snapshot, now.plus(ttl)), now),
+        () -> entries.remove(userId));
+    return loaded.map(UserSnapshot::toUser);
+  }
+
+  @Override
+  public void evict(Long userId) {
+    if (userId != null) {
+      entries.remove(userId);
+    }
+  }
+
+  @Override
+  public void evictAfterCommit(Long userId) {
+    if (userId == null) {
+      return;
+    }
+    // Xóa ngay để chính request này không đọc lại bản cũ, và xóa lần nữa sau commit
+    // phòng khi request khác kịp nạp dữ liệu chưa commit vào cache trong lúc chờ
+    entries.remove(userId);
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              entries.remove(userId);
+            }
+          });
+    }
+  }
+
+  private void put(Long userId, CachedUser cachedUser, Instant now) {
+    if (entries.size() >= maxEntries) {
+      entries.values().removeIf(entry -> !now.isBefore(entry.expiresAt()));
+      if (entries.size() >= maxEntries) {
+        // Cache đầy toàn phần tử còn hạn: bỏ qua, lần sau sẽ nạp lại từ DB
+        log.debug("User cache is full ({} entries), skip caching user {}", maxEntries, userId);
+        return;
+      }
+    }
+    entries.put(userId, cachedUser);
+  }
+}
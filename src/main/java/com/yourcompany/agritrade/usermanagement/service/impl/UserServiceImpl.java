@@ -33,6 +33,7 @@ import com.yourcompany.agritrade.usermanagement.repository.FarmerProfileReposito
 import com.yourcompany.agritrade.usermanagement.repository.RoleRepository;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
 import com.yourcompany.agritrade.usermanagement.repository.specification.UserSpecification;
+import com.yourcompany.agritrade.usermanagement.service.UserCacheService;
 import com.yourcompany.agritrade.usermanagement.service.UserService;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
@@ -83,6 +84,8 @@ public class UserServiceImpl implements UserService {
 
   private final NotificationService notificationService;
 
+  private final UserCacheService userCacheService;
+
   private static final String MSG_USER_NOT_FOUND_WITH_EMAIL = "User not found with email: ";
 
   @Value("${app.frontend.url}") // Lấy URL frontend
@@ -188,6 +191,7 @@ public class UserServiceImpl implements UserService {
 
     // Lưu tất cả thay đổi (mật khẩu mới và refresh token đã xóa) trong một lần duy nhất
     userRepository.save(user);
+    userCacheService.evictAfterCommit(user.getId());
   }
 
   //  Implement các phương thức cho Admin
@@ -217,6 +221,7 @@ public class UserServiceImpl implements UserService {
     }
 
     User updatedUser = userRepository.save(user);
+    userCacheService.evictAfterCommit(updatedUser.getId());
     return userMapper.toUserResponse(updatedUser);
   }
 
@@ -272,6 +277,7 @@ public class UserServiceImpl implements UserService {
             .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
     user.setActive(isActive);
     User updatedUser = userRepository.save(user);
+    userCacheService.evictAfterCommit(id);
 
     // *** Gửi thông báo cho user bị thay đổi trạng thái ***
     notificationService.sendAccountStatusUpdateNotification(
@@ -299,6 +305,7 @@ public class UserServiceImpl implements UserService {
 
     user.setRoles(newRoles);
     User updatedUser = userRepository.save(user);
+    userCacheService.evictAfterCommit(id);
 
     // *** Gửi thông báo cho user bị thay đổi vai trò ***
     notificationService.sendRolesUpdateNotification(updatedUser); // Gọi NotificationService
@@ -315,6 +322,7 @@ public class UserServiceImpl implements UserService {
             .findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
     userRepository.delete(user); // Hibernate sẽ chạy câu lệnh trong @SQLDelete
+    userCacheService.evictAfterCommit(id);
   }
 
   //  Thêm phương thức khôi phục user
@@ -329,6 +337,7 @@ public class UserServiceImpl implements UserService {
     }
     user.setDeleted(false);
     User restoredUser = userRepository.save(user);
+    userCacheService.evictAfterCommit(id);
     return userMapper.toUserResponse(restoredUser);
   }
 
@@ -353,6 +362,7 @@ public class UserServiceImpl implements UserService {
     user.setVerificationToken(null); // Xóa token sau khi đã dùng
     user.setVerificationTokenExpiry(null);
     userRepository.save(user);
+    userCacheService.evictAfterCommit(user.getId());
 
     // *** Gửi thông báo Welcome sau khi xác thực thành công ***
     notificationService.sendWelcomeNotification(user); // Gọi NotificationService
@@ -401,6 +411,7 @@ public class UserServiceImpl implements UserService {
     user.setVerificationToken(null); // Xóa token
     user.setVerificationTokenExpiry(null);
     userRepository.save(user);
+    userCacheService.evictAfterCommit(user.getId());
 
     // *** Gửi thông báo đổi mật khẩu thành công ***
     notificationService.sendPasswordChangedNotification(user); // Gọi NotificationService
@@ -553,7 +564,7 @@ public class UserServiceImpl implements UserService {
             .orElseThrow(
                 () -> new UsernameNotFoundException("User not found after authentication"));
 
-    String accessToken = jwtTokenProvider.generateAccessToken(authentication);
+    String accessToken = jwtTokenProvider.generateAccessToken(authentication, user.getId());
     String refreshToken = jwtTokenProvider.generateRefreshToken(authentication);
 
     user.setRefreshToken(refreshToken);
@@ -608,7 +619,7 @@ public class UserServiceImpl implements UserService {
         new UsernamePasswordAuthenticationToken(
             user.getEmail(), null, mapRolesToAuthorities(user.getRoles()));
 
-    String accessToken = jwtTokenProvider.generateAccessToken(authentication);
+    String accessToken = jwtTokenProvider.generateAccessToken(authentication, user.getId());
     String refreshToken = jwtTokenProvider.generateRefreshToken(authentication);
 
     user.setRefreshToken(refreshToken);
@@ -879,7 +890,7 @@ public class UserServiceImpl implements UserService {
     Collection<? extends GrantedAuthority> authorities = mapRolesToAuthorities(user.getRoles());
     UsernamePasswordAuthenticationToken authentication =
         new UsernamePasswordAuthenticationToken(user.getEmail(), null, authorities);
-    String newAccessToken = jwtTokenProvider.generateAccessToken(authentication);
+    String newAccessToken = jwtTokenProvider.generateAccessToken(authentication, user.getId());
 
     // 5. ( Refresh Token)
 
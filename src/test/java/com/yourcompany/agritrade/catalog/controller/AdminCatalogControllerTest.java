@@ -14,12 +14,14 @@ import com.yourcompany.agritrade.catalog.dto.request.ProductRejectRequest;
 import com.yourcompany.agritrade.catalog.dto.response.CategoryResponse;
 import com.yourcompany.agritrade.catalog.dto.response.ProductDetailResponse;
 import com.yourcompany.agritrade.catalog.dto.response.ProductSummaryResponse;
+import com.yourcompany.agritrade.catalog.service.CatalogCacheService;
 import com.yourcompany.agritrade.catalog.service.CategoryService;
 import com.yourcompany.agritrade.catalog.service.ProductService;
 import com.yourcompany.agritrade.common.exception.BadRequestException;
 import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
 import com.yourcompany.agritrade.config.TestSecurityConfig;
 import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -49,6 +51,8 @@ class AdminCatalogControllerTest {
 
   @MockBean private ProductService productService;
 
+  @MockBean private CatalogCacheService catalogCacheService;
+
   private CategoryRequest categoryRequest;
   private CategoryResponse categoryResponse;
   private ProductDetailResponse productDetailResponse;
@@ -263,4 +267,20 @@ class AdminCatalogControllerTest {
           .andExpect(jsonPath("$.message", is("Product permanently deleted")));
     }
   }
+
+  @Test
+  @DisplayName("GET /api/admin/catalog/cache-stats - Returns Hit Ratio Per Region")
+  void getCatalogCacheStats_success() throws Exception {
+    when(catalogCacheService.getStats())
+        .thenReturn(
+            Map.of(
+                CatalogCacheService.Region.PRODUCT_DETAIL,
+                new CatalogCacheService.RegionStats(60, 15, 25, 0, 0, 40)));
+
+    mockMvc
+        .perform(get("/api/admin/catalog/cache-stats"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.data.PRODUCT_DETAIL.l1Hits", is(60)))
+        .andExpect(jsonPath("$.data.PRODUCT_DETAIL.hitRatio", is(0.75)));
+  }
 }
@@ -0,0 +1,25 @@
+package com.yourcompany.agritrade.catalog.repository.specification;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.common.util.SearchTextNormalizer;
+import org.junit.jupiter.api.Test;
+
+class ProductSpecificationsTest {
+
+  @Test
+  void toBooleanModeQuery_shouldRequireEveryIndexableToken() {
+    assertEquals(
+        "+xoai +cat +hoa +loc",
+        ProductSpecifications.toBooleanModeQuery(
+            SearchTextNormalizer.tokenize("Xoài cát Hòa Lộc")));
+  }
+
+  @Test
+  void toBooleanModeQuery_shouldSkipTokensShorterThanNgramSize() {
+    assertEquals(
+        "+vitamin",
+        ProductSpecifications.toBooleanModeQuery(SearchTextNormalizer.tokenize("vitamin C")));
+    assertNull(ProductSpecifications.toBooleanModeQuery(SearchTextNormalizer.tokenize("c + -")));
+  }
+}
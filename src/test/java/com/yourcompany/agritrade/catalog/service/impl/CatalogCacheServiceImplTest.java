@@ -0,0 +1,291 @@
+package com.yourcompany.agritrade.catalog.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.catalog.dto.response.CategoryResponse;
+import com.yourcompany.agritrade.catalog.event.CatalogChangedEvent;
+import com.yourcompany.agritrade.catalog.service.CatalogCacheService.Region;
+import com.yourcompany.agritrade.catalog.service.CatalogCacheService.RegionStats;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogCacheServiceImplTest {
+
+  private static final TypeReference<List<CategoryResponse>> LIST_TYPE = new TypeReference<>() {};
+
+  @Mock private StringRedisTemplate redisTemplate;
+  @Mock private ValueOperations<String, String> valueOperations;
+  @Mock private RedisMessageListenerContainer listenerContainer;
+
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+  private final Instant now = Instant.parse("2026-01-01T00:00:00Z");
+  private CatalogCacheServiceImpl cacheService;
+
+  @BeforeEach
+  void setUp() {
+    cacheService = new CatalogCacheServiceImpl(redisTemplate, listenerContainer, objectMapper);
+    cacheService.clock = Clock.fixed(now, ZoneOffset.UTC);
+    ReflectionTestUtils.setField(cacheService, "enabled", true);
+    ReflectionTestUtils.setField(cacheService, "redisEnabled", true);
+    ReflectionTestUtils.setField(cacheService, "categoryTtlSeconds", 300L);
+    ReflectionTestUtils.setField(cacheService, "productDetailTtlSeconds", 300L);
+    ReflectionTestUtils.setField(cacheService, "productListingTtlSeconds", 60L);
+    ReflectionTestUtils.setField(cacheService, "maxEntriesPerRegion", 10);
+    cacheService.init();
+    lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+  }
+
+  private static List<CategoryResponse> categories(String... names) {
+    return Arrays.stream(names)
+        .map(
+            name -> {
+              CategoryResponse response = new CategoryResponse();
+              response.setName(name);
+              response.setSlug(name.toLowerCase());
+              return response;
+            })
+        .toList();
+  }
+
+  @Test
+  @DisplayName("Get - Miss Loads Once, Writes Redis, Then Served From L1")
+  void get_whenMiss_loadsAndServesFromLocalTier() {
+    when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList(null, null));
+    AtomicInteger loads = new AtomicInteger();
+
+    List<CategoryResponse> first =
+        cacheService.get(
+            Region.CATEGORY,
+            "tree",
+            LIST_TYPE,
+            () -> {
+              loads.incrementAndGet();
+              return categories("Rau");
+            });
+    List<CategoryResponse> second =
+        cacheService.get(Region.CATEGORY, "tree", LIST_TYPE, () -> categories("Khác"));
+
+    assertEquals(1, loads.get());
+    assertSame(first, second);
+    verify(redisTemplate)
+        .execute(
+            eq(CatalogCacheServiceImpl.WRITE_IF_UNCHANGED_SCRIPT),
+            eq(List.of("catalog:CATEGORY:0:tree", "catalog:ver:CATEGORY:tree")),
+            anyString(),
+            eq(""),
+            eq("300000"));
+    RegionStats stats = cacheService.getStats().get(Region.CATEGORY);
+    assertEquals(1, stats.l1Hits());
+    assertEquals(1, stats.misses());
+    assertEquals(0.5, stats.hitRatio());
+  }
+
+  @Test
+  @DisplayName("Get - Redis Hit Skips Loader And Keeps Remote Expiry")
+  void get_whenRedisHasEntry_returnsRemoteValue() throws Exception {
+    String json =
+        objectMapper.writeValueAsString(
+            new CatalogCacheServiceImpl.RemoteEntry(
+                now.plusSeconds(5).toEpochMilli(), categories("Trái cây")));
+    when(valueOperations.get("catalog:gen:CATEGORY")).thenReturn("0");
+    when(valueOperations.multiGet(List.of("catalog:CATEGORY:0:tree", "catalog:ver:CATEGORY:tree")))
+        .thenReturn(Arrays.asList(json, "2"));
+
+    List<CategoryResponse> result =
+        cacheService.get(
+            Region.CATEGORY, "tree", LIST_TYPE, () -> fail("Loader must not be called"));
+
+    assertEquals("Trái cây", result.get(0).getName());
+    assertEquals(1, cacheService.getStats().get(Region.CATEGORY).l2Hits());
+
+    // Bản L1 hết hạn cùng lúc với bản trong Redis
+    cacheService.clock = Clock.fixed(now.plusSeconds(6), ZoneOffset.UTC);
+    when(valueOperations.multiGet(List.of("catalog:CATEGORY:0:tree", "catalog:ver:CATEGORY:tree")))
+        .thenReturn(Arrays.asList(null, "2"));
+    assertEquals(
+        "Rau",
+        cacheService
+            .get(Region.CATEGORY, "tree", LIST_TYPE, () -> categories("Rau"))
+            .get(0)
+            .getName());
+  }
+
+  @Test
+  @DisplayName("Get - Redis Unavailable Falls Back To Loader")
+  void get_whenRedisFails_fallsBackToLoader() {
+    when(valueOperations.get(anyString()))
+        .thenThrow(new RedisConnectionFailureException("connection refused"));
+
+    List<CategoryResponse> result =
+        cacheService.get(Region.CATEGORY, "tree", LIST_TYPE, () -> categories("Rau"));
+
+    assertEquals(1, result.size());
+    assertTrue(cacheService.getStats().get(Region.CATEGORY).redisErrors() >= 1);
+  }
+
+  @Test
+  @DisplayName("Get - Load Overlapping An Invalidation Is Not Cached")
+  void get_whenInvalidatedDuringLoad_doesNotStoreStaleValue() {
+    when(valueOperations.increment("catalog:gen:CATEGORY")).thenReturn(1L);
+
+    cacheService.get(
+        Region.CATEGORY,
+        "tree",
+        LIST_TYPE,
+        () -> {
+          cacheService.invalidateRegion(Region.CATEGORY);
+          return categories("Cũ");
+        });
+    List<CategoryResponse> reloaded =
+        cacheService.get(Region.CATEGORY, "tree", LIST_TYPE, () -> categories("Mới"));
+
+    assertEquals("Mới", reloaded.get(0).getName());
+    verify(redisTemplate, never())
+        .execute(
+            eq(CatalogCacheServiceImpl.WRITE_IF_UNCHANGED_SCRIPT),
+            eq(List.of("catalog:CATEGORY:0:tree", "catalog:ver:CATEGORY:tree")),
+            any(Object[].class));
+  }
+
+  @Test
+  @DisplayName("Get - Redis Write Is Conditional On The Version Read Before Loading")
+  void get_whenMiss_writesRedisOnlyIfVersionUnchanged() {
+    when(valueOperations.get("catalog:gen:PRODUCT_DETAIL")).thenReturn("2");
+    when(valueOperations.multiGet(
+            List.of("catalog:PRODUCT_DETAIL:2:id:7", "catalog:ver:PRODUCT_DETAIL:id:7")))
+        .thenReturn(Arrays.asList(null, "5"));
+
+    cacheService.get(Region.PRODUCT_DETAIL, "id:7", LIST_TYPE, () -> categories("Cũ"));
+
+    // Node khác invalidate trong lúc nạp sẽ tăng phiên bản lên 6 và script bỏ qua lệnh ghi
+    verify(redisTemplate)
+        .execute(
+            eq(CatalogCacheServiceImpl.WRITE_IF_UNCHANGED_SCRIPT),
+            eq(List.of("catalog:PRODUCT_DETAIL:2:id:7", "catalog:ver:PRODUCT_DETAIL:id:7")),
+            anyString(),
+            eq("5"),
+            eq("300000"));
+  }
+
+  @Test
+  @DisplayName("Get - Redis Read Failure Skips The Redis Write")
+  void get_whenRedisReadFails_doesNotWriteRedis() {
+    when(valueOperations.get("catalog:gen:CATEGORY")).thenReturn("0");
+    when(valueOperations.multiGet(anyList()))
+        .thenThrow(new RedisConnectionFailureException("connection refused"));
+
+    cacheService.get(Region.CATEGORY, "tree", LIST_TYPE, () -> categories("Rau"));
+
+    verify(redisTemplate, never())
+        .execute(
+            eq(CatalogCacheServiceImpl.WRITE_IF_UNCHANGED_SCRIPT), anyList(), any(Object[].class));
+  }
+
+  @Test
+  @DisplayName("Product Changed - Evicts Detail Keys And Bumps Listing Generation")
+  @SuppressWarnings("unchecked")
+  void onCatalogChanged_whenProductChanged_invalidatesDetailAndListing() {
+    when(valueOperations.increment("catalog:gen:PRODUCT_LISTING")).thenReturn(4L);
+    Product product = Product.builder().id(7L).slug("xoai-cat").build();
+
+    cacheService.onCatalogChanged(CatalogChangedEvent.productChanged(product, "xoai"));
+
+    ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+    verify(redisTemplate)
+        .execute(eq(CatalogCacheServiceImpl.INVALIDATE_SCRIPT), keys.capture(), eq("300000"));
+    assertEquals(6, keys.getValue().size());
+    assertTrue(keys.getValue().subList(0, 3).contains("catalog:PRODUCT_DETAIL:0:id:7"));
+    assertTrue(keys.getValue().subList(0, 3).contains("catalog:PRODUCT_DETAIL:0:slug:xoai"));
+    assertTrue(keys.getValue().subList(3, 6).contains("catalog:ver:PRODUCT_DETAIL:id:7"));
+    verify(redisTemplate, times(2))
+        .convertAndSend(eq(CatalogCacheServiceImpl.INVALIDATE_CHANNEL), anyString());
+  }
+
+  @Test
+  @DisplayName("Invalidation From Another Node - Clears Local Region And Adopts Generation")
+  void handleInvalidationMessage_fromOtherNode_clearsLocalEntries() throws Exception {
+    cacheService.get(Region.CATEGORY, "tree", LIST_TYPE, () -> categories("Cũ"));
+    byte[] message =
+        objectMapper
+            .writeValueAsString(
+                new CatalogCacheServiceImpl.Invalidation("other-node", Region.CATEGORY, 3L, null))
+            .getBytes(StandardCharsets.UTF_8);
+
+    cacheService.handleInvalidationMessage(message);
+    List<CategoryResponse> reloaded =
+        cacheService.get(Region.CATEGORY, "tree", LIST_TYPE, () -> categories("Mới"));
+
+    assertEquals("Mới", reloaded.get(0).getName());
+    verify(valueOperations)
+        .multiGet(List.of("catalog:CATEGORY:3:tree", "catalog:ver:CATEGORY:tree"));
+  }
+
+  @Test
+  @DisplayName("Local Tier - Bounded, Oldest Entries Evicted First")
+  void get_whenRegionFull_evictsOldestEntries() {
+    ReflectionTestUtils.setField(cacheService, "redisEnabled", false);
+    for (int i = 0; i < 11; i++) {
+      cacheService.clock = Clock.fixed(now.plusSeconds(i), ZoneOffset.UTC);
+      String key = "k" + i;
+      cacheService.get(Region.PRODUCT_LISTING, key, LIST_TYPE, () -> categories(key));
+    }
+
+    RegionStats stats = cacheService.getStats().get(Region.PRODUCT_LISTING);
+    assertEquals(9, stats.size());
+    assertEquals(2, stats.evictions());
+    AtomicInteger loads = new AtomicInteger();
+    cacheService.get(
+        Region.PRODUCT_LISTING,
+        "k0",
+        LIST_TYPE,
+        () -> {
+          loads.incrementAndGet();
+          return categories("k0");
+        });
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  @DisplayName("Disabled - Always Calls Loader")
+  void get_whenDisabled_bypassesCache() {
+    ReflectionTestUtils.setField(cacheService, "enabled", false);
+    AtomicInteger loads = new AtomicInteger();
+
+    for (int i = 0; i < 3; i++) {
+      cacheService.get(
+          Region.CATEGORY,
+          "tree",
+          LIST_TYPE,
+          () -> {
+            loads.incrementAndGet();
+            return categories("Rau");
+          });
+    }
+
+    assertEquals(3, loads.get());
+    verifyNoInteractions(redisTemplate);
+  }
+}
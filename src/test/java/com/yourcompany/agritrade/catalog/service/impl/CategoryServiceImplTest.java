@@ -9,15 +9,18 @@ import com.github.slugify.Slugify;
 import com.yourcompany.agritrade.catalog.domain.Category;
 import com.yourcompany.agritrade.catalog.dto.request.CategoryRequest;
 import com.yourcompany.agritrade.catalog.dto.response.CategoryResponse;
+import com.yourcompany.agritrade.catalog.event.CatalogChangedEvent;
 import com.yourcompany.agritrade.catalog.mapper.CategoryMapper;
 import com.yourcompany.agritrade.catalog.repository.CategoryRepository;
 import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.catalog.service.CatalogCacheService;
 import com.yourcompany.agritrade.common.exception.BadRequestException;
 import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
 import com.yourcompany.agritrade.common.service.FileStorageService;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -28,7 +31,9 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @ExtendWith(MockitoExtension.class)
 class CategoryServiceImplTest {
@@ -37,6 +42,9 @@ class CategoryServiceImplTest {
   @Mock private ProductRepository productRepository;
   @Mock private CategoryMapper categoryMapper;
   @Mock private FileStorageService fileStorageService;
+  @Mock private CatalogCacheService catalogCacheService;
+  @Mock private ApplicationEventPublisher eventPublisher;
+  @Mock private PlatformTransactionManager transactionManager;
 
   @Spy private Slugify slugify = Slugify.builder().build(); // Sử dụng instance thật của Slugify
 
@@ -87,6 +95,11 @@ class CategoryServiceImplTest {
     categoryRequest.setName("Trái Cây Mới");
     categoryRequest.setDescription("Mô tả trái cây mới");
     categoryRequest.setBlobPath("images/trai-cay-moi.jpg");
+
+    // Cache catalog luôn miss: đọc thẳng từ loader
+    lenient()
+        .when(catalogCacheService.get(any(), anyString(), any(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
   }
 
   @Nested
@@ -358,6 +371,7 @@ class CategoryServiceImplTest {
 
       verify(categoryRepository).delete(category2);
       verify(fileStorageService).delete("images/cu-qua.jpg");
+      verify(eventPublisher).publishEvent(CatalogChangedEvent.categoryChanged());
     }
 
     @Test
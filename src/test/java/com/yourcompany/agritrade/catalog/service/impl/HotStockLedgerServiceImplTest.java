@@ -0,0 +1,258 @@
+package com.yourcompany.agritrade.catalog.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.catalog.event.CatalogChangedEvent;
+import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.catalog.service.HotStockLedgerService.ReservationResult;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class HotStockLedgerServiceImplTest {
+
+  private static final String PENDING_KEY = "hot_stock:{ledger}:pending";
+  private static final String FLUSHING_KEY = "hot_stock:{ledger}:flushing";
+  private static final String FLUSH_ID_KEY = "hot_stock:{ledger}:flush_id";
+  private static final String FLUSH_LOCK_KEY = "hot_stock:{ledger}:flush_lock";
+
+  @Mock private StringRedisTemplate redisTemplate;
+  @Mock private ValueOperations<String, String> valueOperations;
+  @Mock private SetOperations<String, String> setOperations;
+  @Mock private HashOperations<String, Object, Object> hashOperations;
+  @Mock private ProductRepository productRepository;
+  @Mock private PlatformTransactionManager transactionManager;
+  @Mock private ApplicationEventPublisher eventPublisher;
+
+  @InjectMocks private HotStockLedgerServiceImpl ledgerService;
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(ledgerService, "flushLockTtlSeconds", 30L);
+    lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    lenient().when(redisTemplate.opsForSet()).thenReturn(setOperations);
+    lenient().doReturn(hashOperations).when(redisTemplate).opsForHash();
+  }
+
+  private void stubFlushLock(boolean acquired) {
+    when(valueOperations.setIfAbsent(eq(FLUSH_LOCK_KEY), anyString(), any(Duration.class)))
+        .thenReturn(acquired);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void stubBeginFlush(String flushId) {
+    when(redisTemplate.execute(
+            any(RedisScript.class), eq(List.of(PENDING_KEY, FLUSHING_KEY, FLUSH_ID_KEY)), any()))
+        .thenReturn(flushId);
+  }
+
+  private static Product product(Long id, String slug, int stock) {
+    Product product = Product.builder().id(id).slug(slug).build();
+    product.setStockQuantity(stock);
+    return product;
+  }
+
+  @Test
+  @DisplayName("Reserve - Checks Products In Id Order And Reports Short Product")
+  @SuppressWarnings("unchecked")
+  void tryReserve_whenSecondProductShort_reportsIt() {
+    Map<Long, Integer> quantities = new LinkedHashMap<>();
+    quantities.put(9L, 1);
+    quantities.put(7L, 2);
+    when(redisTemplate.execute(
+            any(RedisScript.class),
+            eq(
+                List.of(
+                    "hot_stock:{ledger}:available:7",
+                    "hot_stock:{ledger}:available:9",
+                    PENDING_KEY)),
+            eq("2"),
+            eq("1"),
+            eq("7"),
+            eq("9")))
+        .thenReturn(2L);
+
+    ReservationResult result = ledgerService.tryReserve(quantities);
+
+    assertFalse(result.success());
+    assertEquals(9L, result.failedProductId());
+    assertFalse(result.counterMissing());
+  }
+
+  @Test
+  @DisplayName("Reserve - Missing Counter Is Reported As Such")
+  @SuppressWarnings("unchecked")
+  void tryReserve_whenCounterMissing_flagsIt() {
+    when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+        .thenReturn(-1L);
+
+    ReservationResult result = ledgerService.tryReserve(Map.of(7L, 2));
+
+    assertFalse(result.success());
+    assertEquals(7L, result.failedProductId());
+    assertTrue(result.counterMissing());
+  }
+
+  @Test
+  @DisplayName("Flush - Applies Deltas With Flush Id, Publishes Stock Change, Clears Batch")
+  @SuppressWarnings("unchecked")
+  void flushPendingToDatabase_appliesDeltasOnce() {
+    stubFlushLock(true);
+    stubBeginFlush("flush-1");
+    when(hashOperations.entries(FLUSHING_KEY)).thenReturn(Map.of("7", "-3", "8", "0"));
+    when(productRepository.applyStockDelta(eq(7L), eq(-3), eq("flush-1"), any())).thenReturn(1);
+    when(productRepository.findAllById(List.of(7L)))
+        .thenReturn(List.of(product(7L, "xoai-cat", 7)));
+
+    int flushed = ledgerService.flushPendingToDatabase();
+
+    assertEquals(1, flushed);
+    verify(productRepository, never()).applyStockDelta(eq(8L), anyInt(), anyString(), any());
+    ArgumentCaptor<CatalogChangedEvent> event = ArgumentCaptor.forClass(CatalogChangedEvent.class);
+    verify(eventPublisher).publishEvent(event.capture());
+    assertEquals(CatalogChangedEvent.Scope.STOCK, event.getValue().scope());
+    assertEquals(Set.of(7L), event.getValue().productIds());
+    verify(redisTemplate).delete(List.of(FLUSHING_KEY, FLUSH_ID_KEY));
+    verify(redisTemplate).execute(any(RedisScript.class), eq(List.of(FLUSH_LOCK_KEY)), any());
+  }
+
+  @Test
+  @DisplayName("Flush - Batch Already Committed Before A Crash Is Not Applied Twice")
+  void flushPendingToDatabase_whenBatchAlreadyApplied_skipsProducts() {
+    stubFlushLock(true);
+    stubBeginFlush("flush-1");
+    when(hashOperations.entries(FLUSHING_KEY)).thenReturn(Map.of("7", "-3"));
+    // Sản phẩm đã mang mã flush-1 trong DB: câu UPDATE có điều kiện không khớp dòng nào
+    when(productRepository.applyStockDelta(eq(7L), eq(-3), eq("flush-1"), any())).thenReturn(0);
+
+    int flushed = ledgerService.flushPendingToDatabase();
+
+    assertEquals(0, flushed);
+    verifyNoInteractions(eventPublisher);
+    verify(redisTemplate).delete(List.of(FLUSHING_KEY, FLUSH_ID_KEY));
+  }
+
+  @Test
+  @DisplayName("Flush - Nothing Pending Skips The Database")
+  void flushPendingToDatabase_whenNothingPending_doesNothing() {
+    stubFlushLock(true);
+    stubBeginFlush(null);
+
+    assertEquals(0, ledgerService.flushPendingToDatabase());
+
+    verifyNoInteractions(productRepository, transactionManager, eventPublisher);
+  }
+
+  @Test
+  @DisplayName("Flush - Lock Held By Another Node Skips The Run")
+  @SuppressWarnings("unchecked")
+  void flushPendingToDatabase_whenLockHeld_skips() {
+    stubFlushLock(false);
+
+    assertEquals(0, ledgerService.flushPendingToDatabase());
+
+    verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    verifyNoInteractions(productRepository);
+  }
+
+  @Test
+  @DisplayName("Reconcile - Drops Unflagged Products And Corrects Drift When Enabled")
+  @SuppressWarnings("unchecked")
+  void reconcile_whenCounterDrifted_resetsIt() {
+    ReflectionTestUtils.setField(ledgerService, "autoCorrectDrift", true);
+    stubFlushLock(true);
+    stubBeginFlush(null);
+    when(productRepository.findHotStockProductIds()).thenReturn(List.of(7L));
+    when(setOperations.members("hot_stock:{ledger}:products")).thenReturn(Set.of("7", "9"));
+    when(productRepository.findAllByIdInForUpdate(List.of(7L)))
+        .thenReturn(List.of(product(7L, "xoai-cat", 10)));
+    when(redisTemplate.execute(
+            any(RedisScript.class),
+            eq(List.of("hot_stock:{ledger}:available:7", PENDING_KEY)),
+            eq("7"),
+            eq("10")))
+        .thenReturn(List.of(12L, 0L, 0L));
+
+    int drifted = ledgerService.reconcile();
+
+    assertEquals(1, drifted);
+    verify(setOperations).remove("hot_stock:{ledger}:products", "9");
+    verify(redisTemplate).delete("hot_stock:{ledger}:available:9");
+    verify(valueOperations).set("hot_stock:{ledger}:available:7", "10");
+  }
+
+  @Test
+  @DisplayName("Reseed - Missing Counter Of Flagged Product Is Seeded From Database")
+  @SuppressWarnings("unchecked")
+  void reseed_whenCounterMissing_seedsIt() {
+    when(redisTemplate.hasKey("hot_stock:{ledger}:available:7")).thenReturn(false);
+    stubFlushLock(true);
+    stubBeginFlush(null);
+    Product product = product(7L, "xoai-cat", 10);
+    product.setHotStockEnabled(true);
+    when(productRepository.findAllByIdInForUpdate(List.of(7L))).thenReturn(List.of(product));
+    when(redisTemplate.execute(
+            any(RedisScript.class),
+            eq(List.of("hot_stock:{ledger}:available:7", PENDING_KEY)),
+            eq("7"),
+            eq("10")))
+        .thenReturn(List.of(10L, 0L, 1L));
+
+    ledgerService.reseed(7L);
+
+    verify(setOperations).add("hot_stock:{ledger}:products", "7");
+    verify(redisTemplate)
+        .execute(
+            any(RedisScript.class),
+            eq(List.of("hot_stock:{ledger}:available:7", PENDING_KEY)),
+            eq("7"),
+            eq("10"));
+    verify(valueOperations, never()).set(anyString(), anyString());
+  }
+
+  @Test
+  @DisplayName("Reseed - Flag Turned Off Meanwhile - Leaves Ledger Untouched")
+  void reseed_whenFlagDisabled_doesNotSeed() {
+    when(redisTemplate.hasKey("hot_stock:{ledger}:available:7")).thenReturn(false);
+    stubFlushLock(true);
+    stubBeginFlush(null);
+    when(productRepository.findAllByIdInForUpdate(List.of(7L)))
+        .thenReturn(List.of(product(7L, "xoai-cat", 10)));
+
+    ledgerService.reseed(7L);
+
+    verify(setOperations, never()).add(anyString(), any(String[].class));
+  }
+
+  @Test
+  @DisplayName("Reseed - Counter Already Present - Does Nothing")
+  void reseed_whenCounterPresent_skips() {
+    when(redisTemplate.hasKey("hot_stock:{ledger}:available:7")).thenReturn(true);
+
+    ledgerService.reseed(7L);
+
+    verifyNoInteractions(valueOperations, productRepository);
+  }
+}
@@ -0,0 +1,231 @@
+package com.yourcompany.agritrade.catalog.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.catalog.domain.Category;
+import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.catalog.repository.specification.ProductSpecifications;
+import com.yourcompany.agritrade.common.util.SearchTextNormalizer;
+import com.yourcompany.agritrade.config.persistence.ProductSearchIndexInitializer;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import jakarta.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Benchmark tìm kiếm sản phẩm: so sánh LIKE '%kw%' (quét bảng) với MATCH ... AGAINST trên chỉ mục
+ * FULLTEXT ngram, cùng bộ lọc và phân trang như trang tìm kiếm công khai. Số sản phẩm mặc định
+ * 1.000.000, đổi bằng -Dbench.search.products=N. Cần Docker (Testcontainers MySQL); tự bỏ qua nếu
+ * môi trường không có Docker.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@Import(ProductSearchIndexInitializer.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // Seed bằng JDBC autocommit
+@Tag("benchmark")
+@Slf4j
+class ProductSearchBenchmarkTest {
+
+  private static final int PRODUCTS = Integer.getInteger("bench.search.products", 1_000_000);
+  private static final int INSERT_BATCH_SIZE = 5_000;
+  private static final int WARMUP_RUNS = 2;
+  private static final int MEASURED_RUNS = 5;
+
+  private static final String[] PRODUCE = {
+    "Xoài cát Hòa Lộc", "Gạo ST25", "Sầu riêng Ri6", "Cà phê Robusta", "Thanh long ruột đỏ",
+    "Bưởi da xanh", "Vải thiều Lục Ngạn", "Nhãn lồng Hưng Yên", "Chè Thái Nguyên", "Hồ tiêu",
+    "Dưa lưới", "Cà rốt Đà Lạt", "Khoai lang mật", "Chôm chôm", "Măng cụt"
+  };
+  private static final String[] ORIGINS = {
+    "Tiền Giang", "Sóc Trăng", "Đắk Lắk", "Bình Thuận", "Bắc Giang", "Lâm Đồng", "Bến Tre"
+  };
+  private static final String[] DESCRIPTIONS = {
+    "Hàng tuyển chọn, thu hoạch trong ngày",
+    "Đạt chuẩn VietGAP, đóng thùng 10kg",
+    "Canh tác hữu cơ, không chất bảo quản",
+    "Giao sỉ cho nhà hàng và siêu thị"
+  };
+  private static final List<String> KEYWORDS =
+      List.of("xoài cát", "gạo st25", "sầu riêng", "cà phê robusta", "thanh long đỏ");
+
+  private static boolean seeded;
+
+  @Container
+  static MySQLContainer<?> mysql =
+      new MySQLContainer<>("mysql:8.0.33").withCommand("mysqld", "--innodb-ft-enable-stopword=OFF");
+
+  @DynamicPropertySource
+  static void datasourceProperties(DynamicPropertyRegistry registry) {
+    registry.add(
+        "spring.datasource.url", () -> mysql.getJdbcUrl() + "?rewriteBatchedStatements=true");
+    registry.add("spring.datasource.username", mysql::getUsername);
+    registry.add("spring.datasource.password", mysql::getPassword);
+    registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+    registry.add("spring.jpa.show-sql", () -> "false");
+    registry.add("app.search.product.init-on-startup", () -> "false"); // Tự gọi sau khi seed
+  }
+
+  @Autowired private ProductRepository productRepository;
+  @Autowired private ProductSearchIndexInitializer searchIndexInitializer;
+  @Autowired private JdbcTemplate jdbcTemplate;
+  @Autowired private EntityManager entityManager;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private TransactionTemplate readOnlyTx;
+
+  @BeforeEach
+  void setUp() {
+    readOnlyTx = new TransactionTemplate(transactionManager);
+    readOnlyTx.setReadOnly(true);
+    if (!seeded) {
+      seed();
+      seeded = true;
+    }
+  }
+
+  @Test
+  @DisplayName("LIKE vs FULLTEXT ngram - public search with count query")
+  void likeVersusFullText() {
+    for (String keyword : KEYWORDS) {
+      Measurement like = measure(keyword, false);
+      Measurement fullText = measure(keyword, true);
+      log.info(
+          "[search-bench] products={} keyword='{}' like: {} ms avg ({} hits) | fulltext: {} ms"
+              + " avg ({} hits)",
+          PRODUCTS,
+          keyword,
+          String.format("%.1f", like.avgMillis()),
+          like.hits(),
+          String.format("%.1f", fullText.avgMillis()),
+          fullText.hits());
+      // FULLTEXT yêu cầu đủ các token chứ không cần liền nhau nên luôn bao trùm kết quả LIKE
+      assertTrue(fullText.hits() >= like.hits(), "FULLTEXT bỏ sót kết quả của LIKE: " + keyword);
+    }
+  }
+
+  private Measurement measure(String keyword, boolean useFullText) {
+    Specification<Product> spec =
+        Specification.where(ProductSpecifications.isPublished())
+            .and(ProductSpecifications.matchesKeyword(keyword, useFullText, useFullText))
+            .and(ProductSpecifications.isB2cProduct());
+    long hits = 0;
+    long totalNanos = 0;
+    for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+      long start = System.nanoTime();
+      Page<Product> page =
+          readOnlyTx.execute(status -> productRepository.findAll(spec, PageRequest.of(0, 12)));
+      long elapsed = System.nanoTime() - start;
+      if (run >= WARMUP_RUNS) {
+        totalNanos += elapsed;
+      }
+      hits = page.getTotalElements();
+    }
+    return new Measurement(totalNanos / 1_000_000.0 / MEASURED_RUNS, hits);
+  }
+
+  private void seed() {
+    Long[] ids =
+        new TransactionTemplate(transactionManager)
+            .execute(
+                status -> {
+                  User farmer =
+                      User.builder()
+                          .email("farmer@bench.local")
+                          .passwordHash("x")
+                          .fullName("Bench Farmer")
+                          .followerCount(0)
+                          .followingCount(0)
+                          .isActive(true)
+                          .build();
+                  entityManager.persist(farmer);
+                  Category category = new Category();
+                  category.setName("Bench");
+                  category.setSlug("bench");
+                  entityManager.persist(category);
+                  return new Long[] {farmer.getId(), category.getId().longValue()};
+                });
+
+    String sql =
+        "INSERT INTO products (farmer_id, category_id, name, slug, description, unit, price,"
+            + " stock_quantity, version, status, province_code, average_rating, rating_count,"
+            + " b2b_enabled, favorite_count, hot_stock_enabled, negotiable_price, created_at,"
+            + " updated_at, is_deleted, search_name, search_text)"
+            + " VALUES (?, ?, ?, ?, ?, 'kg', ?, 100, 0, ?, ?, 0, 0, false, 0, false, true, ?, ?,"
+            + " false, ?, ?)";
+    Random random = new Random(42);
+    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    long start = System.nanoTime();
+    List<Object[]> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+    for (int i = 0; i < PRODUCTS; i++) {
+      String name =
+          PRODUCE[random.nextInt(PRODUCE.length)]
+              + " "
+              + ORIGINS[random.nextInt(ORIGINS.length)]
+              + " loại "
+              + (1 + random.nextInt(3));
+      String description = DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)];
+      batch.add(
+          new Object[] {
+            ids[0],
+            ids[1],
+            name,
+            "p-" + i,
+            description,
+            10_000 + random.nextInt(200_000),
+            random.nextInt(10) == 0 ? "PENDING_APPROVAL" : "PUBLISHED",
+            String.valueOf(1 + random.nextInt(63)),
+            now,
+            now,
+            SearchTextNormalizer.fold(name),
+            SearchTextNormalizer.foldAll(name, description)
+          });
+      if (batch.size() == INSERT_BATCH_SIZE) {
+        jdbcTemplate.batchUpdate(sql, batch);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      jdbcTemplate.batchUpdate(sql, batch);
+    }
+    log.info(
+        "[search-bench] seeded {} products in {} ms",
+        PRODUCTS,
+        (System.nanoTime() - start) / 1_000_000);
+
+    long indexStart = System.nanoTime();
+    assertTrue(searchIndexInitializer.ensureFullTextIndex());
+    log.info(
+        "[search-bench] built FULLTEXT index in {} ms",
+        (System.nanoTime() - indexStart) / 1_000_000);
+    assertEquals(0, searchIndexInitializer.backfillSearchColumns());
+  }
+
+  private record Measurement(double avgMillis, long hits) {}
+}
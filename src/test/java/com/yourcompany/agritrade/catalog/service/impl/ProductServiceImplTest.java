@@ -9,11 +9,15 @@ import com.yourcompany.agritrade.catalog.domain.*;
 import com.yourcompany.agritrade.catalog.dto.request.ProductImageRequest;
 import com.yourcompany.agritrade.catalog.dto.request.ProductRequest;
 import com.yourcompany.agritrade.catalog.dto.response.*;
+import com.yourcompany.agritrade.catalog.event.CatalogChangedEvent;
 import com.yourcompany.agritrade.catalog.mapper.ProductImageMapper;
 import com.yourcompany.agritrade.catalog.mapper.ProductMapper;
 import com.yourcompany.agritrade.catalog.repository.CategoryRepository;
 import com.yourcompany.agritrade.catalog.repository.ProductImageRepository;
 import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.catalog.repository.projection.ProductSummaryView;
+import com.yourcompany.agritrade.catalog.service.CatalogCacheService;
+import com.yourcompany.agritrade.catalog.service.HotStockLedgerService;
 import com.yourcompany.agritrade.common.exception.BadRequestException;
 import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
 import com.yourcompany.agritrade.common.model.RoleType;
@@ -32,17 +36,24 @@ import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Supplier;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @ExtendWith(MockitoExtension.class)
 class ProductServiceImplTest {
@@ -61,6 +72,10 @@ class ProductServiceImplTest {
 
   // SỬA LỖI: Thêm mock cho ReviewService
   @Mock private ReviewService reviewService;
+  @Mock private HotStockLedgerService hotStockLedgerService;
+  @Mock private CatalogCacheService catalogCacheService;
+  @Mock private ApplicationEventPublisher eventPublisher;
+  @Mock private PlatformTransactionManager transactionManager;
 
   @Spy private Slugify slugify = Slugify.builder().build();
 
@@ -76,6 +91,7 @@ class ProductServiceImplTest {
   private Product productEntity, productEntity2;
   private ProductDetailResponse productDetailResponse;
   private ProductSummaryResponse productSummaryResponse, productSummaryResponse2;
+  private ProductSummaryView productSummaryView;
 
   @BeforeEach
   void setUp() {
@@ -217,6 +233,36 @@ class ProductServiceImplTest {
     productSummaryResponse.setUnit(productRequest.getUnit());
     productSummaryResponse.setStatus(ProductStatus.PENDING_APPROVAL);
 
+    // Projection tương ứng productSummaryResponse (dòng đọc từ DB)
+    productSummaryView =
+        new ProductSummaryView(
+            1L,
+            productRequest.getName(),
+            "ca-rot-da-lat",
+            productRequest.getPrice(),
+            productRequest.getUnit(),
+            100,
+            0.0f,
+            "20",
+            ProductStatus.PENDING_APPROVAL,
+            null,
+            null,
+            false,
+            null,
+            null,
+            true,
+            null,
+            null,
+            categoryEntity.getId(),
+            categoryEntity.getName(),
+            categoryEntity.getSlug(),
+            farmerUser.getId(),
+            farmerUser.getFullName(),
+            null,
+            null,
+            null,
+            "images/ca-rot.jpg");
+
     // Product Summary Response 2
     productSummaryResponse2 = new ProductSummaryResponse();
     productSummaryResponse2.setId(2L);
@@ -229,6 +275,19 @@ class ProductServiceImplTest {
     lenient()
         .when(fileStorageService.getFileUrl(anyString()))
         .thenAnswer(invocation -> "mockedUrl/" + invocation.getArgument(0));
+    lenient()
+        .when(fileStorageService.getFileUrls(anyCollection()))
+        .thenAnswer(
+            invocation -> {
+              Map<String, String> urls = new LinkedHashMap<>();
+              Collection<String> blobPaths = invocation.getArgument(0);
+              blobPaths.forEach(blobPath -> urls.put(blobPath, "mockedUrl/" + blobPath));
+              return urls;
+            });
+    // Cache catalog luôn miss: đọc thẳng từ loader
+    lenient()
+        .when(catalogCacheService.get(any(), anyString(), any(), any()))
+        .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
   }
 
   // SỬA LỖI: Thêm tearDown để đóng mock static sau mỗi test
@@ -258,11 +317,12 @@ class ProductServiceImplTest {
       String keyword = "Cà Rốt";
       ProductStatus status = ProductStatus.PENDING_APPROVAL;
 
-      Page<Product> productPage = new PageImpl<>(List.of(productEntity), pageable, 1);
+      Page<ProductSummaryView> productPage =
+          new PageImpl<>(List.of(productSummaryView), pageable, 1);
 
-      when(productMapper.toProductSummaryResponse(productEntity))
-          .thenReturn(productSummaryResponse);
-      when(productRepository.findAll(any(Specification.class), eq(pageable)))
+      when(productMapper.toProductSummaryResponses(List.of(productSummaryView)))
+          .thenReturn(List.of(productSummaryResponse));
+      when(productRepository.findSummaries(any(Specification.class), eq(pageable)))
           .thenReturn(productPage);
 
       Page<ProductSummaryResponse> result =
@@ -271,7 +331,7 @@ class ProductServiceImplTest {
       assertNotNull(result);
       assertEquals(1, result.getTotalElements());
       assertEquals(productSummaryResponse.getName(), result.getContent().get(0).getName());
-      verify(productRepository).findAll(any(Specification.class), eq(pageable));
+      verify(productRepository).findSummaries(any(Specification.class), eq(pageable));
     }
 
     @Test
@@ -327,10 +387,18 @@ class ProductServiceImplTest {
       when(productRepository.save(any(Product.class))).thenReturn(productEntity);
       when(productMapper.toProductDetailResponse(productEntity)).thenReturn(productDetailResponse);
 
+      String previousSlug = productEntity.getSlug();
       productService.updateMyProduct(authentication, productEntity.getId(), updateRequest);
 
       assertEquals(newExpectedSlug, productEntity.getSlug());
       verify(productRepository).save(productEntity);
+
+      // Cache catalog phải bỏ cả slug cũ lẫn slug mới
+      ArgumentCaptor<CatalogChangedEvent> eventCaptor =
+          ArgumentCaptor.forClass(CatalogChangedEvent.class);
+      verify(eventPublisher).publishEvent(eventCaptor.capture());
+      assertEquals(CatalogChangedEvent.Scope.PRODUCT, eventCaptor.getValue().scope());
+      assertEquals(Set.of(previousSlug, newExpectedSlug), eventCaptor.getValue().productSlugs());
     }
 
     @Test
@@ -470,12 +538,13 @@ class ProductServiceImplTest {
       Integer categoryId = categoryEntity.getId();
       Long farmerIdParam = farmerUser.getId();
 
-      Page<Product> productPage = new PageImpl<>(List.of(productEntity), pageable, 1);
+      Page<ProductSummaryView> productPage =
+          new PageImpl<>(List.of(productSummaryView), pageable, 1);
 
-      when(productRepository.findAll(any(Specification.class), eq(pageable)))
+      when(productRepository.findSummaries(any(Specification.class), eq(pageable)))
           .thenReturn(productPage);
-      when(productMapper.toProductSummaryResponse(productEntity))
-          .thenReturn(productSummaryResponse);
+      when(productMapper.toProductSummaryResponses(List.of(productSummaryView)))
+          .thenReturn(List.of(productSummaryResponse));
 
       Page<ProductSummaryResponse> result =
           productService.getAllProductsForAdmin(
@@ -484,7 +553,7 @@ class ProductServiceImplTest {
       assertNotNull(result);
       assertEquals(1, result.getTotalElements());
       assertEquals(productSummaryResponse.getName(), result.getContent().get(0).getName());
-      verify(productRepository).findAll(any(Specification.class), eq(pageable));
+      verify(productRepository).findSummaries(any(Specification.class), eq(pageable));
     }
 
     @Test
@@ -496,6 +565,50 @@ class ProductServiceImplTest {
     }
   }
 
+  @Nested
+  @DisplayName("Admin Hot Stock Mode")
+  class AdminHotStockMode {
+
+    @BeforeEach
+    void initSynchronization() {
+      TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    @DisplayName("Set Hot Stock Mode - Enables Ledger After Commit")
+    void setHotStockMode_whenEnabling_shouldFlagProductAndEnableLedgerAfterCommit() {
+      when(productRepository.findAllByIdInForUpdate(List.of(productEntity.getId())))
+          .thenReturn(List.of(productEntity));
+      when(productRepository.findByIdWithDetails(productEntity.getId()))
+          .thenReturn(Optional.of(productEntity));
+      when(productMapper.toProductDetailResponse(productEntity)).thenReturn(productDetailResponse);
+
+      productService.setHotStockMode(productEntity.getId(), true);
+
+      assertTrue(productEntity.isHotStockEnabled());
+      verify(productRepository).save(productEntity);
+      verify(hotStockLedgerService, never()).enable(any());
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(TransactionSynchronization::afterCommit);
+      verify(hotStockLedgerService).enable(productEntity.getId());
+    }
+
+    @Test
+    @DisplayName("Set Hot Stock Mode - Product Not Found")
+    void setHotStockMode_whenProductNotFound_shouldThrowResourceNotFound() {
+      when(productRepository.findAllByIdInForUpdate(List.of(99L))).thenReturn(List.of());
+
+      assertThrows(
+          ResourceNotFoundException.class, () -> productService.setHotStockMode(99L, true));
+      verifyNoInteractions(hotStockLedgerService);
+    }
+  }
+
   @Nested
   @DisplayName("Public Product Viewing")
   class PublicProductViewing {
@@ -545,15 +658,15 @@ class ProductServiceImplTest {
     void getPublicProductsByFarmerId_whenFarmerHasPublishedProducts_shouldReturnPage() {
       Pageable pageable = PageRequest.of(0, 10);
       productEntity.setStatus(ProductStatus.PUBLISHED);
-      Page<Product> productPage = new PageImpl<>(List.of(productEntity), pageable, 1);
+      Page<ProductSummaryView> productPage =
+          new PageImpl<>(List.of(productSummaryView), pageable, 1);
 
       when(userRepository.existsByIdAndRoles_Name(farmerUser.getId(), RoleType.ROLE_FARMER))
           .thenReturn(true);
-      when(productRepository.findByFarmerIdAndStatus(
-              farmerUser.getId(), ProductStatus.PUBLISHED, pageable))
+      when(productRepository.findSummaries(any(Specification.class), eq(pageable)))
           .thenReturn(productPage);
-      when(productMapper.toProductSummaryResponse(productEntity))
-          .thenReturn(productSummaryResponse);
+      when(productMapper.toProductSummaryResponses(List.of(productSummaryView)))
+          .thenReturn(List.of(productSummaryResponse));
 
       Page<ProductSummaryResponse> result =
           productService.getPublicProductsByFarmerId(farmerUser.getId(), pageable);
@@ -561,8 +674,58 @@ class ProductServiceImplTest {
       assertNotNull(result);
       assertEquals(1, result.getTotalElements());
       assertEquals(productSummaryResponse.getName(), result.getContent().get(0).getName());
-      verify(productRepository)
-          .findByFarmerIdAndStatus(farmerUser.getId(), ProductStatus.PUBLISHED, pageable);
+      verify(productRepository).findSummaries(any(Specification.class), eq(pageable));
+    }
+
+    @Test
+    @DisplayName("Search Public Products - sort=relevance bị bỏ khỏi Pageable")
+    void searchPublicProducts_whenSortByRelevance_shouldQueryWithUnsortedPageable() {
+      Pageable pageable = PageRequest.of(1, 12, Sort.by(Sort.Direction.DESC, "relevance"));
+      when(productRepository.findSummaries(any(Specification.class), any(Pageable.class)))
+          .thenReturn(Page.empty());
+
+      productService.searchPublicProducts("xoài cát", null, null, null, null, null, pageable);
+
+      verify(productRepository).findSummaries(any(Specification.class), eq(PageRequest.of(1, 12)));
+    }
+
+    @Test
+    @DisplayName("Search Public Products - giữ nguyên sort theo cột")
+    void searchPublicProducts_whenSortByColumn_shouldKeepPageable() {
+      Pageable pageable = PageRequest.of(0, 12, Sort.by(Sort.Direction.ASC, "price"));
+      when(productRepository.findSummaries(any(Specification.class), any(Pageable.class)))
+          .thenReturn(Page.empty());
+
+      productService.searchPublicProducts("gạo", null, null, null, null, null, pageable);
+
+      verify(productRepository).findSummaries(any(Specification.class), eq(pageable));
+    }
+
+    @Test
+    @DisplayName("Search Public Products - trang đầu đi qua cache, trang sâu đọc thẳng DB")
+    void searchPublicProducts_whenEarlyPage_shouldUseListingCache() {
+      ReflectionTestUtils.setField(productService, "listingCacheMaxPage", 2);
+      when(productRepository.findSummaries(any(Specification.class), any(Pageable.class)))
+          .thenAnswer(
+              invocation ->
+                  new PageImpl<>(List.of(productSummaryView), invocation.getArgument(1), 30));
+      when(productMapper.toProductSummaryResponses(List.of(productSummaryView)))
+          .thenReturn(List.of(productSummaryResponse));
+
+      Pageable firstPage = PageRequest.of(0, 12, Sort.by(Sort.Direction.DESC, "createdAt"));
+      Page<ProductSummaryResponse> result =
+          productService.searchPublicProducts(" Xoài ", 5, "20", null, null, null, firstPage);
+      productService.searchPublicProducts("xoài", 5, "20", null, null, null, PageRequest.of(2, 12));
+
+      assertEquals(30, result.getTotalElements());
+      assertEquals(firstPage, result.getPageable());
+      assertEquals(List.of(productSummaryResponse), result.getContent());
+      ArgumentCaptor<String> keyCaptor = ArgumentCaptor.forClass(String.class);
+      verify(catalogCacheService)
+          .get(eq(CatalogCacheService.Region.PRODUCT_LISTING), keyCaptor.capture(), any(), any());
+      assertTrue(keyCaptor.getValue().startsWith("q=xoài|c=5|p=20|"));
+      verify(productRepository, times(2))
+          .findSummaries(any(Specification.class), any(Pageable.class));
     }
   }
 
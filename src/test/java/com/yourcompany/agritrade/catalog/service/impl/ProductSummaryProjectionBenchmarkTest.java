@@ -0,0 +1,250 @@
+package com.yourcompany.agritrade.catalog.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.catalog.domain.Category;
+import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.catalog.domain.ProductImage;
+import com.yourcompany.agritrade.catalog.domain.ProductStatus;
+import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.catalog.repository.projection.ProductSummaryView;
+import com.yourcompany.agritrade.catalog.repository.specification.ProductSpecifications;
+import com.yourcompany.agritrade.common.persistence.MySqlBenchmarkSupport;
+import com.yourcompany.agritrade.usermanagement.domain.FarmerProfile;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import jakarta.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Benchmark trang danh sách sản phẩm: cách cũ (findAll nạp entity Product đầy đủ, ảnh nạp lazy khi
+ * map thumbnail) so với constructor projection {@link ProductRepository#findSummaries}. Với mỗi
+ * trang đo số câu SQL, số dòng/entity đọc (Hibernate Statistics) và số byte MySQL gửi về
+ * (Bytes_sent của session). Mô tả sản phẩm được seed dài để thấy phần cột LONGTEXT bị bỏ. Cần
+ * Docker (Testcontainers MySQL); tự bỏ qua nếu môi trường không có Docker.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // Mỗi trang tự mở transaction riêng
+@Tag("benchmark")
+@Slf4j
+class ProductSummaryProjectionBenchmarkTest extends MySqlBenchmarkSupport {
+
+  private static final int PRODUCTS = 500;
+  private static final int IMAGES_PER_PRODUCT = 3;
+  private static final int DESCRIPTION_LENGTH = 2_000;
+  private static final int PAGE_SIZE = 24;
+  private static final int PAGES = 10;
+  private static final int WARMUP_RUNS = 2;
+
+  @DynamicPropertySource
+  static void benchmarkProperties(DynamicPropertyRegistry registry) {
+    registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+  }
+
+  @Autowired private ProductRepository productRepository;
+  @Autowired private EntityManagerFactory entityManagerFactory;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private TransactionTemplate readOnlyTx;
+  private Long farmerId;
+
+  @BeforeEach
+  void setUp() {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    readOnlyTx = new TransactionTemplate(transactionManager);
+    readOnlyTx.setReadOnly(true);
+    farmerId =
+        tx.execute(
+            status -> {
+              long suffix = System.nanoTime();
+              User farmer =
+                  User.builder()
+                      .email("farmer" + suffix + "@bench.local")
+                      .passwordHash("x")
+                      .fullName("Farmer " + suffix)
+                      .followerCount(0)
+                      .followingCount(0)
+                      .isActive(true)
+                      .build();
+              entityManager.persist(farmer);
+              FarmerProfile profile = new FarmerProfile();
+              profile.setUser(farmer);
+              profile.setFarmName("Vườn " + suffix);
+              profile.setProvinceCode("20");
+              entityManager.persist(profile);
+              Category category = new Category();
+              category.setName("Bench");
+              category.setSlug("bench-" + suffix);
+              entityManager.persist(category);
+
+              String description = "Mô tả dài. ".repeat(DESCRIPTION_LENGTH / 11);
+              for (int i = 0; i < PRODUCTS; i++) {
+                Product product =
+                    Product.builder()
+                        .farmer(farmer)
+                        .category(category)
+                        .name("Listing product " + i)
+                        .slug("listing-product-" + suffix + "-" + i)
+                        .description(description)
+                        .searchText(description)
+                        .unit("kg")
+                        .price(new BigDecimal("10000.00"))
+                        .stockQuantity(100)
+                        .status(ProductStatus.PUBLISHED)
+                        .provinceCode("20")
+                        .averageRating(0.0f)
+                        .ratingCount(0)
+                        .favoriteCount(0)
+                        .build();
+                entityManager.persist(product);
+                for (int j = 0; j < IMAGES_PER_PRODUCT; j++) {
+                  ProductImage image = new ProductImage();
+                  image.setProduct(product);
+                  image.setDefault(j == 1);
+                  image.setDisplayOrder(j);
+                  image.setBlobPath("products/" + suffix + "/" + i + "-" + j + ".jpg");
+                  entityManager.persist(image);
+                }
+                if (i % 100 == 99) {
+                  entityManager.flush();
+                  entityManager.clear();
+                  farmer = entityManager.getReference(User.class, farmer.getId());
+                  category = entityManager.getReference(Category.class, category.getId());
+                }
+              }
+              return farmer.getId();
+            });
+  }
+
+  @Test
+  @DisplayName("Full entity listing vs summary projection - rows, bytes and statements per page")
+  void listingPage() {
+    Specification<Product> spec =
+        Specification.where(ProductSpecifications.byFarmer(farmerId))
+            .and(ProductSpecifications.isPublished());
+
+    // Cách cũ: entity đầy đủ + fetch farmer/profile, ảnh nạp lazy khi chọn thumbnail
+    Result legacy =
+        measure(
+            pageable -> {
+              Page<Product> page =
+                  productRepository.findAll(
+                      spec.and(ProductSpecifications.fetchFarmerAndProfile()), pageable);
+              page.forEach(
+                  product -> {
+                    product.getCategory().getName();
+                    product.getImages().stream()
+                        .filter(ProductImage::isDefault)
+                        .findFirst()
+                        .or(
+                            () ->
+                                product.getImages().stream()
+                                    .min(Comparator.comparingInt(ProductImage::getDisplayOrder)))
+                        .map(ProductImage::getBlobPath)
+                        .orElseThrow();
+                  });
+              return page.getNumberOfElements();
+            });
+    Result projection =
+        measure(
+            pageable -> {
+              Page<ProductSummaryView> page = productRepository.findSummaries(spec, pageable);
+              page.forEach(view -> assertTrue(view.thumbnailBlobPath().endsWith("-1.jpg")));
+              return page.getNumberOfElements();
+            });
+
+    report("full-entity", legacy);
+    report("projection", projection);
+    assertEquals(PAGE_SIZE, legacy.items());
+    assertEquals(PAGE_SIZE, projection.items());
+    assertTrue(
+        projection.statementsPerPage() < legacy.statementsPerPage(),
+        "Projection phải đọc trang trong ít câu SQL hơn");
+    assertTrue(
+        projection.bytesPerPage() < legacy.bytesPerPage(),
+        "Projection không được đọc các cột mô tả/tìm kiếm");
+  }
+
+  private Result measure(Function<Pageable, Integer> readPage) {
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    Sort sort = Sort.by(Sort.Direction.DESC, "createdAt");
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      readOnlyTx.execute(status -> readPage.apply(PageRequest.of(0, PAGE_SIZE, sort)));
+    }
+    statistics.clear();
+    int items = 0;
+    long bytes = 0;
+    long start = System.nanoTime();
+    for (int page = 0; page < PAGES; page++) {
+      Pageable pageable = PageRequest.of(page, PAGE_SIZE, sort);
+      long[] sent = new long[1];
+      items =
+          readOnlyTx.execute(
+              status -> {
+                // Cùng connection trong transaction: chênh lệch Bytes_sent là dữ liệu của trang
+                long probe = bytesSent();
+                long before = bytesSent();
+                long overhead = before - probe; // Byte của chính câu SHOW STATUS
+                int count = readPage.apply(pageable);
+                sent[0] = bytesSent() - before - overhead;
+                return count;
+              });
+      bytes += sent[0];
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    return new Result(
+        items,
+        (double) statistics.getPrepareStatementCount() / PAGES,
+        (double) (statistics.getEntityLoadCount() + statistics.getCollectionLoadCount()) / PAGES,
+        (double) bytes / PAGES,
+        elapsedNanos / 1_000_000.0 / PAGES);
+  }
+
+  private long bytesSent() {
+    Object[] row =
+        (Object[])
+            entityManager
+                .createNativeQuery("SHOW SESSION STATUS LIKE 'Bytes_sent'")
+                .getSingleResult();
+    return Long.parseLong(row[1].toString());
+  }
+
+  private void report(String label, Result result) {
+    log.info(
+        "[listing-bench] {}: items={} statements/page={} entities/page={} bytes/page={} avg={} ms",
+        label,
+        result.items(),
+        String.format("%.1f", result.statementsPerPage()),
+        String.format("%.1f", result.entitiesPerPage()),
+        String.format("%.0f", result.bytesPerPage()),
+        String.format("%.2f", result.avgMillis()));
+  }
+
+  private record Result(
+      int items,
+      double statementsPerPage,
+      double entitiesPerPage,
+      double bytesPerPage,
+      double avgMillis) {}
+}
@@ -0,0 +1,48 @@
+package com.yourcompany.agritrade.common.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.EventType;
+import org.hibernate.jdbc.WorkExecutorVisitable;
+import org.hibernate.resource.transaction.spi.IsolationDelegate;
+import org.hibernate.resource.transaction.spi.TransactionCoordinator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class BlockSequenceIdGeneratorTest {
+
+  @Mock private SharedSessionContractImplementor session;
+  @Mock private TransactionCoordinator transactionCoordinator;
+  @Mock private IsolationDelegate isolationDelegate;
+
+  @BeforeEach
+  void setUp() {
+    when(session.getTransactionCoordinator()).thenReturn(transactionCoordinator);
+    when(transactionCoordinator.createIsolationDelegate()).thenReturn(isolationDelegate);
+  }
+
+  @Test
+  @DisplayName("Generate - Hands Out Ids From Memory And Fetches A New Block Only When Exhausted")
+  void generate_allocatesBlocksLazily() {
+    when(isolationDelegate.delegateWork(any(WorkExecutorVisitable.class), eq(true)))
+        .thenReturn(100L, 500L);
+    BlockSequenceIdGenerator generator = new BlockSequenceIdGenerator("orders", 3, "orders", "id");
+
+    assertEquals(100L, generator.generate(session, new Object(), null, EventType.INSERT));
+    assertEquals(101L, generator.generate(session, new Object(), null, EventType.INSERT));
+    assertEquals(102L, generator.generate(session, new Object(), null, EventType.INSERT));
+    assertEquals(500L, generator.generate(session, new Object(), null, EventType.INSERT));
+
+    // Khối được cấp trong transaction cô lập
+    verify(isolationDelegate, times(2)).delegateWork(any(WorkExecutorVisitable.class), eq(true));
+  }
+}
@@ -0,0 +1,60 @@
+package com.yourcompany.agritrade.common.persistence;
+
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Nền chung cho các benchmark chạy trên MySQL thật (Testcontainers): container, thuộc tính
+ * datasource/JPA dùng chung và hàm tạo user seed. Lớp con chỉ khai báo thêm thuộc tính riêng trong
+ * một {@code @DynamicPropertySource} khác tên (không ghi đè các key ở đây). Cần Docker; tự bỏ qua
+ * nếu môi trường không có Docker.
+ *
+ * <p>Mọi benchmark dùng chung một container, khởi động một lần và không dừng giữa các lớp: context
+ * Spring được cache theo cấu hình nên cổng MySQL phải giữ nguyên suốt lượt chạy. Testcontainers
+ * (Ryuk) dọn container khi JVM thoát.
+ */
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class MySqlBenchmarkSupport {
+
+  protected static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0.33");
+
+  static {
+    if (DockerClientFactory.instance().isDockerAvailable()) {
+      MYSQL.start();
+    }
+  }
+
+  @Autowired protected EntityManager entityManager;
+
+  @DynamicPropertySource
+  static void mysqlProperties(DynamicPropertyRegistry registry) {
+    registry.add("spring.datasource.url", MYSQL::getJdbcUrl);
+    registry.add("spring.datasource.username", MYSQL::getUsername);
+    registry.add("spring.datasource.password", MYSQL::getPassword);
+    registry.add("spring.jpa.hibernate.ddl-auto", () -> "create-drop");
+    registry.add("spring.jpa.show-sql", () -> "false");
+  }
+
+  /** Lưu một user tối thiểu (email {@code <prefix>@bench.local}); cần transaction đang mở. */
+  protected User newUser(String prefix) {
+    User user =
+        User.builder()
+            .email(prefix + "@bench.local")
+            .passwordHash("x")
+            .fullName(prefix)
+            .followerCount(0)
+            .followingCount(0)
+            .isActive(true)
+            .build();
+    entityManager.persist(user);
+    return user;
+  }
+}
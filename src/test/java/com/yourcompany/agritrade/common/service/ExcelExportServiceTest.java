@@ -0,0 +1,69 @@
+package com.yourcompany.agritrade.common.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.ordering.domain.OrderStatus;
+import com.yourcompany.agritrade.ordering.domain.PaymentStatus;
+import com.yourcompany.agritrade.ordering.dto.response.OrderSummaryResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ExcelExportServiceTest {
+
+  private final ExcelExportService excelExportService = new ExcelExportService();
+
+  private OrderSummaryResponse order(int i, String buyerName) {
+    OrderSummaryResponse order = new OrderSummaryResponse();
+    order.setId((long) i);
+    order.setOrderCode("ORD-" + i);
+    order.setCreatedAt(LocalDateTime.of(2024, 5, 1, 10, 30));
+    order.setBuyerName(buyerName);
+    order.setFarmerName("Nông trại A");
+    order.setTotalAmount(new BigDecimal("150000.00"));
+    order.setStatus(OrderStatus.DELIVERED);
+    order.setPaymentStatus(PaymentStatus.PAID);
+    return order;
+  }
+
+  @Test
+  @DisplayName("Write Orders To Excel - Rows Beyond The SXSSF Window Are Written")
+  void writeOrdersToExcel_writesAllRows() throws Exception {
+    int rows = 1_000; // Lớn hơn cửa sổ 100 dòng của SXSSF
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    excelExportService.writeOrdersToExcel(
+        IntStream.range(0, rows).mapToObj(i -> order(i, "Người mua " + i)), out);
+
+    try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+      Sheet sheet = workbook.getSheet("DonHang");
+      assertEquals(rows, sheet.getLastRowNum()); // Dòng 0 là header
+      assertEquals("Mã ĐH", sheet.getRow(0).getCell(0).getStringCellValue());
+      assertEquals("ORD-999", sheet.getRow(rows).getCell(0).getStringCellValue());
+      assertEquals("01/05/2024 10:30", sheet.getRow(1).getCell(1).getStringCellValue());
+      assertEquals(150000.0, sheet.getRow(1).getCell(4).getNumericCellValue());
+    }
+  }
+
+  @Test
+  @DisplayName("Write Orders To Csv - Escapes Values And Writes BOM")
+  void writeOrdersToCsv_escapesValues() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    excelExportService.writeOrdersToCsv(Stream.of(order(1, "Nguyễn \"Văn\", A")), out);
+
+    String csv = out.toString(StandardCharsets.UTF_8);
+    assertTrue(csv.startsWith("\uFEFFMã ĐH,Ngày đặt"));
+    assertTrue(
+        csv.contains(
+            "ORD-1,01/05/2024 10:30,\"Nguyễn \"\"Văn\"\", A\",Nông trại A,150000.00,DELIVERED,PAID\r\n"));
+  }
+}
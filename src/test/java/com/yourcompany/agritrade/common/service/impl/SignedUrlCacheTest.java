@@ -0,0 +1,126 @@
+package com.yourcompany.agritrade.common.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class SignedUrlCacheTest {
+
+  private MutableClock clock;
+  private AtomicInteger signCount;
+  private Function<String, String> signer;
+
+  @BeforeEach
+  void setUp() {
+    clock = new MutableClock(Instant.parse("2024-05-10T00:00:00Z"));
+    signCount = new AtomicInteger();
+    signer = blobPath -> "https://signed/" + blobPath + "?v=" + signCount.incrementAndGet();
+  }
+
+  private SignedUrlCache newCache(int maxEntries) {
+    return new SignedUrlCache(Duration.ofMinutes(60), Duration.ofMinutes(10), maxEntries, clock);
+  }
+
+  @Test
+  @DisplayName("Get - Reuses Signed URL Until Refresh Window")
+  void get_reusesUrlUntilNearExpiry() {
+    SignedUrlCache cache = newCache(100);
+
+    String first = cache.get("products/a.jpg", signer);
+    clock.advance(Duration.ofMinutes(49));
+    String second = cache.get("products/a.jpg", signer);
+    clock.advance(Duration.ofMinutes(2)); // Còn 9 phút < 10 phút -> ký lại
+    String third = cache.get("products/a.jpg", signer);
+
+    assertEquals(first, second);
+    assertNotEquals(first, third);
+    assertEquals(2, signCount.get());
+    SignedUrlCache.Stats stats = cache.stats();
+    assertEquals(1, stats.hits());
+    assertEquals(2, stats.misses());
+  }
+
+  @Test
+  @DisplayName("Get - Signer Failure - Nothing Is Cached")
+  void get_whenSignerFails_doesNotCache() {
+    SignedUrlCache cache = newCache(100);
+
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            cache.get(
+                "products/a.jpg",
+                blobPath -> {
+                  throw new IllegalStateException("sign failed");
+                }));
+
+    assertEquals(0, cache.stats().size());
+    cache.get("products/a.jpg", signer);
+    assertEquals(1, signCount.get());
+  }
+
+  @Test
+  @DisplayName("Get - Over Capacity - Evicts Earliest Expiring Entries")
+  void get_whenOverCapacity_evictsOldestEntries() {
+    SignedUrlCache cache = newCache(10);
+    for (int i = 0; i < 11; i++) {
+      cache.get("products/" + i + ".jpg", signer);
+      clock.advance(Duration.ofSeconds(1));
+    }
+
+    SignedUrlCache.Stats stats = cache.stats();
+    assertEquals(9, stats.size());
+    assertEquals(2, stats.evictions());
+    // Phần tử mới nhất vẫn còn trong cache
+    cache.get("products/10.jpg", signer);
+    assertEquals(11, signCount.get());
+  }
+
+  @Test
+  @DisplayName("Invalidate - Forces Re-Sign")
+  void invalidate_forcesResign() {
+    SignedUrlCache cache = newCache(100);
+    cache.get("products/a.jpg", signer);
+
+    cache.invalidate("products/a.jpg");
+    cache.get("products/a.jpg", signer);
+
+    assertEquals(2, signCount.get());
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant now;
+
+    private MutableClock(Instant now) {
+      this.now = now;
+    }
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.yourcompany.agritrade.common.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.common.service.IdBlockAllocator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class PooledIdSequenceTest {
+
+  /** Allocator giả: lời gọi đồng bộ và lời gọi lấy trước được đếm riêng. */
+  private static class RecordingAllocator implements IdBlockAllocator {
+    private final AtomicLong nextStart = new AtomicLong(1);
+    private final AtomicInteger syncCalls = new AtomicInteger();
+    private final List<CompletableFuture<Long>> prefetches = new ArrayList<>();
+    private boolean failPrefetch;
+
+    @Override
+    public long allocateBlock(String sequenceName, int blockSize, long minimumStart) {
+      syncCalls.incrementAndGet();
+      return nextStart.getAndAdd(blockSize);
+    }
+
+    @Override
+    public CompletableFuture<Long> allocateBlockAsync(
+        String sequenceName, int blockSize, LongSupplier minimumStart) {
+      CompletableFuture<Long> block =
+          failPrefetch
+              ? CompletableFuture.failedFuture(new IllegalStateException("DB unavailable"))
+              : CompletableFuture.completedFuture(nextStart.getAndAdd(blockSize));
+      prefetches.add(block);
+      return block;
+    }
+  }
+
+  @Test
+  @DisplayName("Next - Blocks Come From Prefetch, Caller Thread Never Allocates")
+  void next_usesPrefetchedBlocks() {
+    RecordingAllocator allocator = new RecordingAllocator();
+    PooledIdSequence sequence = new PooledIdSequence(allocator, "test", 4, () -> 1);
+
+    List<Long> ids = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      ids.add(sequence.next());
+    }
+
+    assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), ids);
+    assertEquals(0, allocator.syncCalls.get());
+    // Khối đầu lấy khi tạo, khối sau lấy khi khối hiện tại còn một nửa
+    assertEquals(4, allocator.prefetches.size());
+  }
+
+  @Test
+  @DisplayName("Next - Failed Prefetch Falls Back To Allocating On Caller Thread")
+  void next_whenPrefetchFails_allocatesSynchronously() {
+    RecordingAllocator allocator = new RecordingAllocator();
+    allocator.failPrefetch = true;
+    PooledIdSequence sequence = new PooledIdSequence(allocator, "test", 2, () -> 1);
+
+    assertEquals(1L, sequence.next());
+    assertEquals(2L, sequence.next());
+    assertEquals(3L, sequence.next());
+    assertEquals(2, allocator.syncCalls.get());
+  }
+}
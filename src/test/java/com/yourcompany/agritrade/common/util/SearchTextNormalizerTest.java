@@ -0,0 +1,36 @@
+package com.yourcompany.agritrade.common.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SearchTextNormalizerTest {
+
+  @Test
+  void fold_shouldStripVietnameseDiacriticsAndLowercase() {
+    assertEquals("xoai cat hoa loc", SearchTextNormalizer.fold("Xoài Cát Hòa Lộc"));
+    assertEquals("dua luoi dong thap", SearchTextNormalizer.fold("Dưa lưới ĐỒNG THÁP"));
+    assertEquals("sau rieng ri6", SearchTextNormalizer.fold("Sầu riêng Ri6"));
+  }
+
+  @Test
+  void fold_shouldCollapseWhitespace() {
+    assertEquals("gao st25", SearchTextNormalizer.fold("  Gạo \t ST25\n"));
+    assertEquals("", SearchTextNormalizer.fold("   "));
+    assertNull(SearchTextNormalizer.fold(null));
+  }
+
+  @Test
+  void foldAll_shouldJoinNonEmptyParts() {
+    assertEquals("ca rot da lat", SearchTextNormalizer.foldAll("Cà rốt", null, " ", "Đà Lạt"));
+  }
+
+  @Test
+  void tokenize_shouldTreatBooleanOperatorsAsSeparators() {
+    assertEquals(
+        List.of("ca", "phe", "robusta", "100"),
+        SearchTextNormalizer.tokenize("+Cà-phê \"Robusta\" 100%*"));
+    assertTrue(SearchTextNormalizer.tokenize(" ++ ").isEmpty());
+  }
+}
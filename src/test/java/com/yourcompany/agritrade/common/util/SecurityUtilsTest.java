@@ -2,10 +2,17 @@
 package com.yourcompany.agritrade.common.util;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import com.yourcompany.agritrade.config.security.AuthenticatedUser;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import com.yourcompany.agritrade.usermanagement.service.UserCacheService;
+import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -21,11 +28,13 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @ExtendWith(MockitoExtension.class)
 class SecurityUtilsTest {
 
   @Mock private UserRepository mockUserRepository;
+  @Mock private UserCacheService mockUserCacheService;
   @Mock private Authentication mockAuthentication;
   @Mock private SecurityContext mockSecurityContext;
 
@@ -37,7 +46,7 @@ class SecurityUtilsTest {
   void setUp() {
     // Tạo instance SecurityUtils với UserRepository đã mock
     // Điều này mô phỏng việc Spring inject UserRepository vào SecurityUtils
-    securityUtils = new SecurityUtils(mockUserRepository);
+    securityUtils = new SecurityUtils(mockUserRepository, mockUserCacheService);
 
     // Mock SecurityContextHolder để trả về mockSecurityContext
     mockedSecurityContextHolder = Mockito.mockStatic(SecurityContextHolder.class);
@@ -141,4 +150,65 @@ class SecurityUtilsTest {
 
     assertThrows(AccessDeniedException.class, SecurityUtils::getCurrentAuthenticatedUser);
   }
+
+  @Test
+  void getCurrentAuthenticatedUser_whenJwtPrincipalInReadOnlyTransaction_usesUserCache() {
+    User cachedUser = new User();
+    cachedUser.setId(7L);
+    when(mockSecurityContext.getAuthentication()).thenReturn(mockAuthentication);
+    when(mockAuthentication.isAuthenticated()).thenReturn(true);
+    when(mockAuthentication.getPrincipal())
+        .thenReturn(new AuthenticatedUser(7L, "test@example.com", List.of("ROLE_CONSUMER")));
+    when(mockUserCacheService.findById(7L)).thenReturn(Optional.of(cachedUser));
+
+    TransactionSynchronizationManager.setActualTransactionActive(true);
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    try {
+      assertSame(cachedUser, SecurityUtils.getCurrentAuthenticatedUser());
+    } finally {
+      TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+      TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+    verifyNoInteractions(mockUserRepository);
+  }
+
+  @Test
+  void getCurrentAuthenticatedUser_whenJwtPrincipalOutsideReadOnlyTransaction_loadsById() {
+    User managedUser = new User();
+    managedUser.setId(7L);
+    when(mockSecurityContext.getAuthentication()).thenReturn(mockAuthentication);
+    when(mockAuthentication.isAuthenticated()).thenReturn(true);
+    when(mockAuthentication.getPrincipal())
+        .thenReturn(new AuthenticatedUser(7L, "test@example.com", List.of("ROLE_CONSUMER")));
+    when(mockUserRepository.findWithFarmerProfileById(7L)).thenReturn(Optional.of(managedUser));
+
+    assertSame(managedUser, SecurityUtils.getCurrentAuthenticatedUser());
+    verifyNoInteractions(mockUserCacheService);
+    verify(mockUserRepository, never()).findByEmail(any());
+  }
+
+  @Test
+  void getCurrentUserId_whenJwtPrincipal_returnsIdWithoutQuery() {
+    when(mockSecurityContext.getAuthentication()).thenReturn(mockAuthentication);
+    when(mockAuthentication.isAuthenticated()).thenReturn(true);
+    when(mockAuthentication.getPrincipal())
+        .thenReturn(new AuthenticatedUser(7L, "test@example.com", List.of("ROLE_CONSUMER")));
+
+    assertEquals(7L, SecurityUtils.getCurrentUserId());
+    verifyNoInteractions(mockUserRepository, mockUserCacheService);
+  }
+
+  @Test
+  void getCurrentUserId_whenLegacyStringPrincipal_fallsBackToEmailLookup() {
+    String email = "test@example.com";
+    User user = new User();
+    user.setId(9L);
+    user.setEmail(email);
+    when(mockSecurityContext.getAuthentication()).thenReturn(mockAuthentication);
+    when(mockAuthentication.isAuthenticated()).thenReturn(true);
+    when(mockAuthentication.getPrincipal()).thenReturn(email);
+    when(mockUserRepository.findByEmail(email)).thenReturn(Optional.of(user));
+
+    assertEquals(9L, SecurityUtils.getCurrentUserId());
+  }
 }
@@ -0,0 +1,129 @@
+package com.yourcompany.agritrade.config.mail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Máy chủ SMTP tối giản trên loopback cho test: nhận EHLO/MAIL/RCPT/DATA/RSET/NOOP/QUIT, không
+ * STARTTLS/AUTH. Người nhận có chứa "reject" bị trả 550. {@code handshakeDelayMs} mô phỏng độ trễ
+ * bắt tay (TCP + TLS + AUTH) của máy chủ thật.
+ */
+class FakeSmtpServer implements AutoCloseable {
+
+  private final ServerSocket serverSocket;
+  private final long handshakeDelayMs;
+  private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+  private final AtomicInteger connections = new AtomicInteger();
+  private final AtomicInteger messages = new AtomicInteger();
+  private volatile boolean running = true;
+
+  FakeSmtpServer(long handshakeDelayMs) throws IOException {
+    this.handshakeDelayMs = handshakeDelayMs;
+    this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    Thread.ofPlatform().daemon(true).name("fake-smtp-accept").start(this::acceptLoop);
+  }
+
+  int port() {
+    return serverSocket.getLocalPort();
+  }
+
+  int connectionCount() {
+    return connections.get();
+  }
+
+  int messageCount() {
+    return messages.get();
+  }
+
+  /** Mô phỏng máy chủ ngắt các kết nối đang mở (hết thời gian nhàn rỗi, khởi động lại...). */
+  void dropConnections() {
+    for (Socket socket : openSockets) {
+      closeQuietly(socket);
+    }
+    openSockets.clear();
+  }
+
+  private void acceptLoop() {
+    while (running) {
+      try {
+        Socket socket = serverSocket.accept();
+        connections.incrementAndGet();
+        openSockets.add(socket);
+        Thread.ofPlatform().daemon(true).name("fake-smtp-session").start(() -> session(socket));
+      } catch (IOException e) {
+        return; // Đã đóng server
+      }
+    }
+  }
+
+  private void session(Socket socket) {
+    try (socket;
+        BufferedReader in =
+            new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+      OutputStream out = socket.getOutputStream();
+      if (handshakeDelayMs > 0) {
+        Thread.sleep(handshakeDelayMs);
+      }
+      reply(out, "220 fake-smtp ready");
+      String line;
+      while ((line = in.readLine()) != null) {
+        String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line;
+        switch (command) {
+          case "EHLO", "HELO" -> reply(out, "250 fake-smtp");
+          case "MAIL", "RSET", "NOOP" -> reply(out, "250 OK");
+          case "RCPT" -> reply(
+              out, line.toLowerCase().contains("reject") ? "550 mailbox unavailable" : "250 OK");
+          case "DATA" -> {
+            reply(out, "354 end with .");
+            while ((line = in.readLine()) != null && !line.equals(".")) {
+              // Bỏ qua nội dung email
+            }
+            messages.incrementAndGet();
+            reply(out, "250 queued");
+          }
+          case "QUIT" -> {
+            reply(out, "221 bye");
+            return;
+          }
+          default -> reply(out, "502 not implemented");
+        }
+      }
+    } catch (IOException e) {
+      // Client hoặc test đã đóng kết nối
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      openSockets.remove(socket);
+    }
+  }
+
+  private static void reply(OutputStream out, String line) throws IOException {
+    out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    out.flush();
+  }
+
+  private static void closeQuietly(Socket socket) {
+    try {
+      socket.close();
+    } catch (IOException ignored) {
+      // Không quan trọng trong test
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    running = false;
+    serverSocket.close();
+    dropConnections();
+  }
+}
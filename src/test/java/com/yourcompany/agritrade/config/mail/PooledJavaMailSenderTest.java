@@ -0,0 +1,131 @@
+package com.yourcompany.agritrade.config.mail;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.config.properties.MailPoolProperties;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Properties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+class PooledJavaMailSenderTest {
+
+  private FakeSmtpServer server;
+  private MailPoolProperties poolProperties;
+  private PooledJavaMailSender sender;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    server = new FakeSmtpServer(0);
+    poolProperties = new MailPoolProperties();
+    poolProperties.setMaxConnections(2);
+    sender = newSender();
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    sender.destroy();
+    server.close();
+  }
+
+  private PooledJavaMailSender newSender() {
+    PooledJavaMailSender mailSender = new PooledJavaMailSender(poolProperties);
+    mailSender.setHost("127.0.0.1");
+    mailSender.setPort(server.port());
+    Properties properties = new Properties();
+    properties.put("mail.smtp.connectiontimeout", "2000");
+    properties.put("mail.smtp.timeout", "2000");
+    mailSender.setJavaMailProperties(properties);
+    return mailSender;
+  }
+
+  private MimeMessage message(String to) throws MessagingException {
+    MimeMessage message = sender.createMimeMessage();
+    MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+    helper.setFrom("noreply@agritrade.test");
+    helper.setTo(to);
+    helper.setSubject("Test");
+    helper.setText("<p>Xin chào</p>", true);
+    return message;
+  }
+
+  @Test
+  @DisplayName("Separate Sends - Reuse One SMTP Connection")
+  void send_reusesPooledConnection() throws Exception {
+    sender.send(message("a@example.com"));
+    sender.send(message("b@example.com"));
+    sender.send(message("c@example.com"));
+
+    assertEquals(1, server.connectionCount());
+    assertEquals(3, server.messageCount());
+    PooledJavaMailSender.PoolStats stats = sender.getPoolStats();
+    assertEquals(1, stats.connectionsOpened());
+    assertEquals(2, stats.connectionsReused());
+    assertEquals(1, stats.idle());
+    assertEquals(0, stats.inUse());
+  }
+
+  @Test
+  @DisplayName("Batch With Rejected Recipient - Only That Message Fails, Connection Kept")
+  void send_whenRecipientRejected_failsOnlyThatMessage() throws Exception {
+    MimeMessage rejected = message("reject@example.com");
+
+    MailSendException ex =
+        assertThrows(
+            MailSendException.class,
+            () -> sender.send(message("a@example.com"), rejected, message("b@example.com")));
+
+    assertEquals(1, ex.getFailedMessages().size());
+    assertTrue(ex.getFailedMessages().containsKey(rejected));
+    assertEquals(2, server.messageCount());
+    assertEquals(1, server.connectionCount());
+  }
+
+  @Test
+  @DisplayName("Pooled Connection Dropped By Server - Retries On A New Connection")
+  void send_whenPooledConnectionDropped_reconnects() throws Exception {
+    sender.send(message("a@example.com"));
+    server.dropConnections();
+
+    sender.send(message("b@example.com"));
+
+    assertEquals(2, server.connectionCount());
+    assertEquals(2, server.messageCount());
+  }
+
+  @Test
+  @DisplayName("Max Messages Per Connection - Opens A New Connection")
+  void send_rotatesConnectionAfterMaxMessages() throws Exception {
+    poolProperties.setMaxMessagesPerConnection(2);
+
+    sender.send(
+        message("a@example.com"),
+        message("b@example.com"),
+        message("c@example.com"),
+        message("d@example.com"),
+        message("e@example.com"));
+
+    assertEquals(5, server.messageCount());
+    assertEquals(3, server.connectionCount());
+  }
+
+  @Test
+  @DisplayName("Idle Too Long - Evicted And Not Reused")
+  void evictIdleConnections_closesExpiredConnections() throws Exception {
+    sender.send(message("a@example.com"));
+    sender.clock = Clock.offset(Clock.systemUTC(), Duration.ofMinutes(5));
+
+    sender.evictIdleConnections();
+    assertEquals(0, sender.getPoolStats().idle());
+    sender.send(message("b@example.com"));
+
+    assertEquals(2, server.connectionCount());
+  }
+}
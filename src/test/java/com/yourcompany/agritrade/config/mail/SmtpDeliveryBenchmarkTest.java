@@ -0,0 +1,114 @@
+package com.yourcompany.agritrade.config.mail;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.config.properties.MailPoolProperties;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+/**
+ * Benchmark gửi email qua SMTP: mỗi email một kết nối (JavaMailSenderImpl, cách cũ của outbox) so
+ * với pool kết nối gửi theo lô. Máy chủ giả trễ {@link #HANDSHAKE_DELAY_MS} ms khi bắt tay để mô
+ * phỏng TCP + STARTTLS + AUTH. Chỉ in số email/giây, không assert thời gian để tránh test chập
+ * chờn.
+ */
+@Tag("benchmark")
+@Slf4j
+class SmtpDeliveryBenchmarkTest {
+
+  private static final long HANDSHAKE_DELAY_MS = 10;
+  private static final int THREADS = 4;
+  private static final int MESSAGES_PER_THREAD = 30;
+  private static final int BATCH_SIZE = 10;
+
+  @Test
+  @DisplayName("SMTP throughput - connection per message vs pooled batches")
+  void smtpThroughput() throws Exception {
+    try (FakeSmtpServer server = new FakeSmtpServer(HANDSHAKE_DELAY_MS)) {
+      JavaMailSenderImpl perMessage = configure(new JavaMailSenderImpl(), server);
+      double perMessageRate = run(perMessage, 1);
+      int perMessageConnections = server.connectionCount();
+
+      MailPoolProperties poolProperties = new MailPoolProperties();
+      poolProperties.setMaxConnections(THREADS);
+      PooledJavaMailSender pooled = configure(new PooledJavaMailSender(poolProperties), server);
+      try {
+        double pooledRate = run(pooled, BATCH_SIZE);
+        int pooledConnections = server.connectionCount() - perMessageConnections;
+
+        log.info(
+            "[smtp-bench] {} messages, {} threads: connection per message {} msg/s ({} connections)"
+                + " | pooled batches of {} {} msg/s ({} connections)",
+            THREADS * MESSAGES_PER_THREAD,
+            THREADS,
+            String.format("%.0f", perMessageRate),
+            perMessageConnections,
+            BATCH_SIZE,
+            String.format("%.0f", pooledRate),
+            pooledConnections);
+        assertEquals(2 * THREADS * MESSAGES_PER_THREAD, server.messageCount());
+        assertTrue(pooledConnections <= THREADS);
+      } finally {
+        pooled.destroy();
+      }
+    }
+  }
+
+  private static <T extends JavaMailSenderImpl> T configure(T sender, FakeSmtpServer server) {
+    sender.setHost("127.0.0.1");
+    sender.setPort(server.port());
+    return sender;
+  }
+
+  // Trả về số email/giây
+  private double run(JavaMailSenderImpl sender, int batchSize) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      long start = System.nanoTime();
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int sent = 0; sent < MESSAGES_PER_THREAD; sent += batchSize) {
+                    MimeMessage[] batch = new MimeMessage[batchSize];
+                    for (int i = 0; i < batchSize; i++) {
+                      batch[i] = message(sender, "user" + (sent + i) + "@example.com");
+                    }
+                    sender.send(batch);
+                  }
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+      return THREADS * MESSAGES_PER_THREAD / seconds;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static MimeMessage message(JavaMailSenderImpl sender, String to)
+      throws MessagingException {
+    MimeMessage message = sender.createMimeMessage();
+    MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+    helper.setFrom("noreply@agritrade.test");
+    helper.setTo(to);
+    helper.setSubject("Đơn hàng mới");
+    helper.setText("<p>Bạn có đơn hàng mới</p>", true);
+    return message;
+  }
+}
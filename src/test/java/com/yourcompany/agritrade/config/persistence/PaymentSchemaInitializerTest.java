@@ -0,0 +1,53 @@
+package com.yourcompany.agritrade.config.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.yourcompany.agritrade.ordering.domain.Payment;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentSchemaInitializerTest {
+
+  @Mock private JdbcTemplate jdbcTemplate;
+
+  @InjectMocks private PaymentSchemaInitializer initializer;
+
+  @Test
+  @DisplayName("Startup - Normalizes Legacy Gateway Names Before Dropping Old Unique Index")
+  void run_normalizesThenDropsLegacyIndex() {
+    ReflectionTestUtils.setField(initializer, "initOnStartup", true);
+    when(jdbcTemplate.update(contains("LEFT(payment_gateway"))).thenReturn(3);
+    when(jdbcTemplate.queryForList(
+            contains("information_schema.statistics"),
+            eq(String.class),
+            eq(Payment.GATEWAY_TRANSACTION_KEY)))
+        .thenReturn(List.of("UK_legacy_tx"));
+
+    initializer.run(null);
+
+    InOrder order = inOrder(jdbcTemplate);
+    order.verify(jdbcTemplate).update(contains("WHERE payment_gateway LIKE '%\\_IPN'"));
+    order.verify(jdbcTemplate).execute("ALTER TABLE payments DROP INDEX `UK_legacy_tx`");
+  }
+
+  @Test
+  @DisplayName("Startup - Already Migrated Schema Is Left Untouched")
+  void dropLegacyTransactionCodeIndexes_whenNoneLeft_dropsNothing() {
+    when(jdbcTemplate.queryForList(anyString(), eq(String.class), any())).thenReturn(List.of());
+
+    assertTrue(initializer.dropLegacyTransactionCodeIndexes().isEmpty());
+
+    verify(jdbcTemplate, never()).execute(anyString());
+  }
+}
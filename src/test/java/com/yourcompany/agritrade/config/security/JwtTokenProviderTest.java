@@ -0,0 +1,164 @@
+package com.yourcompany.agritrade.config.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.config.properties.JwtProperties;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+class JwtTokenProviderTest {
+
+  // HS512 cần khóa tối thiểu 512 bit
+  static final String SECRET =
+      "YWdyaXRyYWRlLXRlc3Qtc2VjcmV0LWZvci1oczUxMi1zaWduaW5nLW11c3QtYmUtYXQtbGVhc3QtNjQtYnl0ZXMh";
+
+  private MutableClock clock;
+  private JwtTokenProvider tokenProvider;
+  private Authentication authentication;
+
+  static JwtProperties jwtProperties() {
+    JwtProperties properties = new JwtProperties();
+    properties.setSecret(SECRET);
+    properties.setExpirationMs(TimeUnit.HOURS.toMillis(1));
+    JwtProperties.RefreshToken refreshToken = new JwtProperties.RefreshToken();
+    refreshToken.setExpirationMs(TimeUnit.DAYS.toMillis(7));
+    properties.setRefreshToken(refreshToken);
+    return properties;
+  }
+
+  static Authentication farmerAuthentication() {
+    return new UsernamePasswordAuthenticationToken(
+        "farmer@example.com", null, List.of(new SimpleGrantedAuthority("ROLE_FARMER")));
+  }
+
+  @BeforeEach
+  void setUp() {
+    clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+    tokenProvider = new JwtTokenProvider(jwtProperties(), clock);
+    authentication = farmerAuthentication();
+  }
+
+  @Test
+  @DisplayName("Verify - Returns All Claims From One Parse")
+  void verify_validToken_returnsClaims() {
+    String token = tokenProvider.generateAccessToken(authentication, 7L);
+
+    VerifiedToken verified = tokenProvider.verify(token);
+
+    assertNotNull(verified);
+    assertEquals("farmer@example.com", verified.email());
+    assertEquals(7L, verified.userId());
+    assertEquals(List.of("ROLE_FARMER"), verified.authorities());
+    assertEquals(tokenProvider.getJtiFromToken(token), verified.jti());
+    assertEquals(clock.instant().plus(Duration.ofHours(1)), verified.expiresAt());
+    assertEquals(
+        new AuthenticatedUser(7L, "farmer@example.com", List.of("ROLE_FARMER")),
+        verified.toPrincipal());
+  }
+
+  @Test
+  @DisplayName("Verify - Second Call Is Served From Cache")
+  void verify_sameTokenTwice_returnsCachedInstance() {
+    String token = tokenProvider.generateAccessToken(authentication, 7L);
+
+    assertSame(tokenProvider.verify(token), tokenProvider.verify(token));
+  }
+
+  @Test
+  @DisplayName("Verify - Tampered Or Foreign Token Is Rejected")
+  void verify_invalidToken_returnsNull() {
+    String token = tokenProvider.generateAccessToken(authentication, 7L);
+    String tampered = token.substring(0, token.length() - 2) + "xx";
+
+    assertNull(tokenProvider.verify(tampered));
+    assertNull(tokenProvider.verify("not-a-jwt"));
+    assertNull(tokenProvider.verify(""));
+    assertFalse(tokenProvider.validateToken(tampered));
+  }
+
+  @Test
+  @DisplayName("Verify - Cached Token Expires With Its exp Claim")
+  void verify_cachedTokenAfterExpiry_returnsNull() {
+    String token = tokenProvider.generateAccessToken(authentication, 7L);
+    assertNotNull(tokenProvider.verify(token));
+
+    clock.advance(Duration.ofHours(1).plusSeconds(1));
+
+    assertNull(tokenProvider.verify(token));
+    assertNull(tokenProvider.verify(token)); // Lần sau parse lại và vẫn bị từ chối
+  }
+
+  @Test
+  @DisplayName("Verify - Full Cache Of Live Tokens Is Not Swept Until One Expires")
+  void verify_whenCacheFullOfLiveTokens_waitsForEarliestExpiry() {
+    JwtProperties properties = jwtProperties();
+    JwtProperties.VerifiedCache cacheProperties = new JwtProperties.VerifiedCache();
+    cacheProperties.setMaxEntries(2);
+    properties.setVerifiedCache(cacheProperties);
+    tokenProvider = new JwtTokenProvider(properties, clock);
+    tokenProvider.verify(tokenProvider.generateAccessToken(authentication, 1L));
+    tokenProvider.verify(tokenProvider.generateAccessToken(authentication, 2L));
+
+    String overflow = tokenProvider.generateAccessToken(authentication, 3L);
+    assertNotSame(tokenProvider.verify(overflow), tokenProvider.verify(overflow));
+
+    // Token vào sau vẫn không được cache khi chưa có token nào trong cache hết hạn
+    clock.advance(Duration.ofMinutes(30));
+    String later = tokenProvider.generateAccessToken(authentication, 4L);
+    assertNotSame(tokenProvider.verify(later), tokenProvider.verify(later));
+
+    // Hai token đầu hết hạn: lượt dọn kế tiếp giải phóng chỗ
+    clock.advance(Duration.ofMinutes(30).plusSeconds(1));
+    assertSame(tokenProvider.verify(later), tokenProvider.verify(later));
+  }
+
+  @Test
+  @DisplayName("Verify - Legacy Token Without uid Keeps Email Principal")
+  void verify_tokenWithoutUserId_usesEmailPrincipal() {
+    String token = tokenProvider.generateAccessToken(authentication);
+
+    VerifiedToken verified = tokenProvider.verify(token);
+
+    assertNull(verified.userId());
+    assertEquals("farmer@example.com", verified.toPrincipal());
+  }
+
+  // Clock có thể tua nhanh cho test hết hạn token
+  static class MutableClock extends Clock {
+    private Instant now;
+
+    MutableClock(Instant now) {
+      this.now = now;
+    }
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
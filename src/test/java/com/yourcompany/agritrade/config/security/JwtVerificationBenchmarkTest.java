@@ -0,0 +1,91 @@
+package com.yourcompany.agritrade.config.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
+import javax.crypto.SecretKey;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Benchmark chi phí xác thực JWT cho mỗi request: cách cũ (build parser và kiểm tra chữ ký riêng
+ * cho validate/jti/email/roles/uid) so với {@link JwtTokenProvider#verify(String)} khi chưa có và
+ * đã có trong cache. Chỉ in kết quả, không assert thời gian để tránh test chập chờn.
+ */
+@Tag("benchmark")
+@Slf4j
+class JwtVerificationBenchmarkTest {
+
+  private static final int TOKENS = 200;
+  private static final int REQUESTS_PER_TOKEN = 20;
+
+  private final SecretKey key =
+      Keys.hmacShaKeyFor(Decoders.BASE64.decode(JwtTokenProviderTest.SECRET));
+
+  @Test
+  @DisplayName("Per-request auth overhead - legacy 5 parses vs single verify vs cached verify")
+  void perRequestAuthOverhead() {
+    JwtTokenProvider tokenProvider = new JwtTokenProvider(JwtTokenProviderTest.jwtProperties());
+    List<String> tokens =
+        LongStream.range(0, TOKENS)
+            .mapToObj(
+                id ->
+                    tokenProvider.generateAccessToken(
+                        JwtTokenProviderTest.farmerAuthentication(), id))
+            .toList();
+
+    // Khởi động JIT
+    run(tokens, 1, this::legacyAuthenticate);
+    run(tokens, 1, new JwtTokenProvider(JwtTokenProviderTest.jwtProperties())::verify);
+
+    double legacy = run(tokens, REQUESTS_PER_TOKEN, this::legacyAuthenticate);
+    // Provider mới, cache rỗng: lần verify đầu tiên của mỗi token phải kiểm tra chữ ký
+    JwtTokenProvider coldProvider = new JwtTokenProvider(JwtTokenProviderTest.jwtProperties());
+    double singleParse = run(tokens, 1, coldProvider::verify);
+    double cached = run(tokens, REQUESTS_PER_TOKEN, coldProvider::verify);
+
+    log.info(
+        "[jwt-bench] per request: legacy {} us | single parse {} us | cached {} us",
+        String.format("%.2f", legacy),
+        String.format("%.2f", singleParse),
+        String.format("%.2f", cached));
+    assertNotNull(coldProvider.verify(tokens.get(0)));
+  }
+
+  // Đường đi cũ của JwtAuthenticationFilter: mỗi claim một lần build parser + kiểm tra chữ ký
+  @SuppressWarnings("unchecked")
+  private void legacyAuthenticate(String token) {
+    parse(token); // validateToken
+    Claims jti = parse(token);
+    Claims email = parse(token);
+    Claims roles = parse(token);
+    Claims uid = parse(token);
+    assertNotNull(jti.getId());
+    assertNotNull(email.getSubject());
+    assertNotNull((List<String>) roles.get("roles", List.class));
+    assertNotNull(uid.get("uid", Number.class));
+  }
+
+  private Claims parse(String token) {
+    return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+  }
+
+  // Trả về số micro giây trung bình cho mỗi request
+  private double run(List<String> tokens, int requestsPerToken, Consumer<String> authenticate) {
+    long start = System.nanoTime();
+    for (int i = 0; i < requestsPerToken; i++) {
+      for (String token : tokens) {
+        authenticate.accept(token);
+      }
+    }
+    return (System.nanoTime() - start) / 1_000.0 / ((long) tokens.size() * requestsPerToken);
+  }
+}
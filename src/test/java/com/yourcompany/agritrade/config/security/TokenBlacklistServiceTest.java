@@ -0,0 +1,185 @@
+package com.yourcompany.agritrade.config.security;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@ExtendWith(MockitoExtension.class)
+class TokenBlacklistServiceTest {
+
+  private static final byte[] CHANNEL =
+      TokenBlacklistService.REVOCATION_CHANNEL.getBytes(StandardCharsets.UTF_8);
+
+  @Mock private StringRedisTemplate redisTemplate;
+  @Mock private ValueOperations<String, String> valueOperations;
+  @Mock private RedisMessageListenerContainer listenerContainer;
+  @Mock private Cursor<String> cursor;
+
+  private TokenBlacklistService tokenBlacklistService;
+  private SubscriptionListener subscriptionListener;
+  private long expiresAtMillis;
+
+  @BeforeEach
+  void setUp() {
+    tokenBlacklistService = new TokenBlacklistService(redisTemplate, listenerContainer, 100);
+    tokenBlacklistService.subscribe();
+    ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+    verify(listenerContainer).addMessageListener(listener.capture(), any(ChannelTopic.class));
+    subscriptionListener = (SubscriptionListener) listener.getValue();
+    subscriptionListener.onChannelSubscribed(CHANNEL, 1);
+    expiresAtMillis = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+  }
+
+  // Giả lập Redis chứa đúng một key blacklist (hoặc rỗng nếu key == null)
+  private void stubRedisContents(String key, String value) {
+    when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+    if (key == null) {
+      when(cursor.hasNext()).thenReturn(false);
+      return;
+    }
+    when(cursor.hasNext()).thenReturn(true, false);
+    when(cursor.next()).thenReturn(key);
+    when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    when(valueOperations.multiGet(List.of(key))).thenReturn(List.of(value));
+  }
+
+  @Test
+  @DisplayName("Is Blacklisted - Before Sync - Falls Back To Redis")
+  void isBlacklisted_beforeSync_queriesRedis() {
+    when(redisTemplate.hasKey("jwt_blacklist:jti-1")).thenReturn(true);
+
+    assertTrue(tokenBlacklistService.isBlacklisted("jti-1"));
+    assertEquals(1, tokenBlacklistService.getStats().remoteChecks());
+  }
+
+  @Test
+  @DisplayName("Is Blacklisted - After Sync - Answers From Local Copy")
+  void isBlacklisted_afterSync_answersLocally() {
+    stubRedisContents("jwt_blacklist:revoked", String.valueOf(expiresAtMillis));
+
+    tokenBlacklistService.resyncFromRedis();
+
+    assertTrue(tokenBlacklistService.isBlacklisted("revoked"));
+    assertFalse(tokenBlacklistService.isBlacklisted("still-valid"));
+    verify(redisTemplate, never()).hasKey(anyString());
+    TokenBlacklistService.Stats stats = tokenBlacklistService.getStats();
+    assertTrue(stats.synced());
+    assertEquals(2, stats.checks());
+    assertEquals(0, stats.remoteChecks());
+    assertEquals(1, stats.revokedHits());
+  }
+
+  @Test
+  @DisplayName("Resync - Legacy Value Uses Key TTL")
+  void resync_legacyValue_usesKeyTtl() {
+    stubRedisContents("jwt_blacklist:legacy", "blacklisted");
+    when(redisTemplate.getExpire("jwt_blacklist:legacy", TimeUnit.MILLISECONDS))
+        .thenReturn(60_000L);
+
+    tokenBlacklistService.resyncFromRedis();
+
+    assertTrue(tokenBlacklistService.isBlacklisted("legacy"));
+  }
+
+  @Test
+  @DisplayName("Resync - Redis Failure - Falls Back To Redis Checks")
+  void resync_failure_marksUnsynced() {
+    stubRedisContents(null, null);
+    tokenBlacklistService.resyncFromRedis();
+    when(redisTemplate.scan(any(ScanOptions.class))).thenThrow(new RuntimeException("down"));
+
+    tokenBlacklistService.resyncFromRedis();
+
+    assertFalse(tokenBlacklistService.getStats().synced());
+    tokenBlacklistService.isBlacklisted("jti-1");
+    verify(redisTemplate).hasKey("jwt_blacklist:jti-1");
+  }
+
+  @Test
+  @DisplayName("Subscription Lost - Falls Back To Redis Until Resubscribed And Resynced")
+  void subscriptionLost_fallsBackToRedisUntilResynced() {
+    stubRedisContents(null, null);
+    tokenBlacklistService.resyncFromRedis();
+    assertTrue(tokenBlacklistService.getStats().synced());
+
+    subscriptionListener.onChannelUnsubscribed(CHANNEL, 0);
+    assertFalse(tokenBlacklistService.getStats().synced());
+    // Không có kênh thì đối soát thành công cũng không đủ: message mới sẽ bị lỡ
+    tokenBlacklistService.resyncFromRedis();
+    assertFalse(tokenBlacklistService.getStats().synced());
+    tokenBlacklistService.isBlacklisted("jti-1");
+    verify(redisTemplate).hasKey("jwt_blacklist:jti-1");
+
+    subscriptionListener.onChannelSubscribed(CHANNEL, 1);
+    assertFalse(tokenBlacklistService.getStats().synced());
+    tokenBlacklistService.resyncFromRedis();
+    assertTrue(tokenBlacklistService.getStats().synced());
+  }
+
+  @Test
+  @DisplayName("Resubscribed During Resync - That Resync Does Not Mark The Copy Synced")
+  void resync_overlappingResubscription_staysUnsynced() {
+    when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+    when(cursor.hasNext())
+        .thenAnswer(
+            invocation -> {
+              // Kết nối pub/sub đứt và được đăng ký lại trong lúc đang SCAN
+              subscriptionListener.onChannelSubscribed(CHANNEL, 1);
+              return false;
+            });
+
+    tokenBlacklistService.resyncFromRedis();
+
+    assertFalse(tokenBlacklistService.getStats().synced());
+  }
+
+  @Test
+  @DisplayName("Revocation Message - Marks JTI Revoked On Other Nodes")
+  void handleRevocationMessage_marksRevoked() {
+    stubRedisContents(null, null);
+    tokenBlacklistService.resyncFromRedis();
+
+    tokenBlacklistService.handleRevocationMessage(expiresAtMillis + ":jti-2");
+
+    assertTrue(tokenBlacklistService.isBlacklisted("jti-2"));
+    verify(redisTemplate, never()).hasKey(anyString());
+  }
+
+  @Test
+  @DisplayName("Add To Blacklist - Stores Expiry, Publishes And Caches Locally")
+  void addToBlacklist_storesPublishesAndCaches() {
+    when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+    tokenBlacklistService.addToBlacklist("jti-3", new Date(expiresAtMillis));
+
+    verify(valueOperations)
+        .set(
+            eq("jwt_blacklist:jti-3"),
+            eq(String.valueOf(expiresAtMillis)),
+            longThat(ttl -> ttl > 0),
+            eq(TimeUnit.MILLISECONDS));
+    verify(redisTemplate)
+        .convertAndSend(TokenBlacklistService.REVOCATION_CHANNEL, expiresAtMillis + ":jti-3");
+    assertTrue(tokenBlacklistService.isBlacklisted("jti-3"));
+  }
+}
@@ -10,6 +10,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yourcompany.agritrade.common.dto.response.CursorPageResponse;
 import com.yourcompany.agritrade.common.exception.BadRequestException;
 import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
 import com.yourcompany.agritrade.config.TestSecurityConfig;
@@ -174,6 +175,23 @@ class FollowControllerTest {
               jsonPath("$.data.content[0].userId", is(followUserResponse.getUserId().intValue())));
     }
 
+    @Test
+    @WithMockUser
+    @DisplayName("GET /api/follows/followers/my/cursor - Phân trang theo con trỏ - Thành công")
+    void getMyFollowersByCursor_success() throws Exception {
+      when(followService.getFollowersByCursor(any(Authentication.class), eq("abc"), eq(10)))
+          .thenReturn(new CursorPageResponse<>(List.of(followUserResponse), 10, true, "next"));
+
+      mockMvc
+          .perform(
+              get("/api/follows/followers/my/cursor").param("cursor", "abc").param("size", "10"))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.success", is(true)))
+          .andExpect(jsonPath("$.data.content", hasSize(1)))
+          .andExpect(jsonPath("$.data.hasNext", is(true)))
+          .andExpect(jsonPath("$.data.nextCursor", is("next")));
+    }
+
     @Test
     @DisplayName("GET /api/follows/followers/user/{userId} - User không tồn tại (Public)")
     void getFollowersPublic_userNotFound_throwsNotFound() throws Exception {
@@ -0,0 +1,241 @@
+package com.yourcompany.agritrade.interaction.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.yourcompany.agritrade.common.service.IdBlockAllocator;
+import com.yourcompany.agritrade.interaction.domain.ChatMessage;
+import com.yourcompany.agritrade.interaction.domain.ChatRoom;
+import com.yourcompany.agritrade.interaction.domain.MessageType;
+import com.yourcompany.agritrade.interaction.dto.event.WebSocketErrorEvent;
+import com.yourcompany.agritrade.interaction.service.ChatMessageWriteService;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class ChatMessageWriteServiceImplTest {
+
+  @Mock private JdbcTemplate jdbcTemplate;
+  @Mock private PlatformTransactionManager transactionManager;
+  @Mock private IdBlockAllocator idBlockAllocator;
+  @Mock private SimpMessagingTemplate messagingTemplate;
+
+  private ChatMessageWriteServiceImpl writeService;
+
+  private User user1, user2, user3;
+  private ChatRoom room12, room13;
+  private final LocalDateTime baseTime = LocalDateTime.of(2026, 1, 1, 8, 0);
+
+  @BeforeEach
+  void setUp() {
+    writeService =
+        new ChatMessageWriteServiceImpl(
+            jdbcTemplate, transactionManager, idBlockAllocator, messagingTemplate);
+    ReflectionTestUtils.setField(writeService, "batchingEnabled", false);
+    ReflectionTestUtils.setField(writeService, "batchMaxSize", 200);
+    ReflectionTestUtils.setField(writeService, "batchMaxDelayMillis", 10L);
+    ReflectionTestUtils.setField(writeService, "queueCapacity", 100);
+    ReflectionTestUtils.setField(writeService, "idBlockSize", 3);
+    ReflectionTestUtils.setField(writeService, "shutdownTimeoutMillis", 5000L);
+    ReflectionTestUtils.setField(writeService, "flushTimeoutMillis", 2000L);
+
+    user1 = user(1L);
+    user2 = user(2L);
+    user3 = user(3L);
+    room12 = new ChatRoom(user1, user2);
+    room12.setId(10L);
+    room13 = new ChatRoom(user1, user3);
+    room13.setId(11L);
+  }
+
+  @AfterEach
+  void tearDown() {
+    writeService.stop();
+  }
+
+  private static User user(Long id) {
+    User user = new User();
+    user.setId(id);
+    user.setEmail("user" + id + "@example.com");
+    return user;
+  }
+
+  private ChatMessage message(
+      long id, ChatRoom room, User sender, User recipient, MessageType type, int secondOffset) {
+    ChatMessage message = new ChatMessage();
+    message.setId(id);
+    message.setRoom(room);
+    message.setSender(sender);
+    message.setRecipient(recipient);
+    message.setContent("msg " + id);
+    message.setMessageType(type);
+    message.setSentAt(baseTime.plusSeconds(secondOffset));
+    return message;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<Object[]> captureRoomUpdates() {
+    ArgumentCaptor<List<Object[]>> captor = ArgumentCaptor.forClass(List.class);
+    verify(jdbcTemplate).batchUpdate(startsWith("UPDATE chat_rooms"), captor.capture());
+    return captor.getValue();
+  }
+
+  @Test
+  @DisplayName("Write Batch - One Insert Batch And One Counter Update Per Room")
+  void enqueue_inline_aggregatesCountersPerRoom() {
+    writeService.start();
+
+    writeService.enqueue(
+        List.of(
+            message(1, room12, user1, user2, MessageType.TEXT, 0),
+            message(2, room12, user2, user1, MessageType.TEXT, 2),
+            message(3, room12, user1, user2, MessageType.SYSTEM, 1),
+            message(4, room13, user3, user1, MessageType.IMAGE, 0)));
+
+    verify(jdbcTemplate)
+        .batchUpdate(
+            startsWith("INSERT INTO chat_messages"),
+            argThat((Collection<?> batch) -> batch.size() == 4),
+            eq(4),
+            any(ParameterizedPreparedStatementSetter.class));
+
+    List<Object[]> updates = captureRoomUpdates();
+    assertEquals(2, updates.size());
+
+    Object[] room12Update = updates.get(0);
+    assertEquals(10L, room12Update[7]);
+    assertEquals(1, room12Update[0]); // user1 nhận tin id 2
+    assertEquals(1, room12Update[1]); // user2 nhận tin id 1, tin SYSTEM không tính
+    assertEquals(2L, room12Update[3]); // Tin nhắn cuối là tin mới nhất theo thời gian
+    assertEquals(Timestamp.valueOf(baseTime.plusSeconds(2)), room12Update[5]);
+
+    Object[] room13Update = updates.get(1);
+    assertEquals(11L, room13Update[7]);
+    assertEquals(1, room13Update[0]);
+    assertEquals(0, room13Update[1]);
+    assertEquals(4L, room13Update[3]);
+
+    ChatMessageWriteService.Stats stats = writeService.getStats();
+    assertEquals(4, stats.written());
+    assertEquals(1, stats.batches());
+    assertEquals(4, stats.inlineWrites());
+  }
+
+  @Test
+  @DisplayName("Write Batch - Failed Batch Retried One By One, Sender Notified For Bad Message")
+  void writeBatch_whenBatchFails_retriesIndividuallyAndNotifiesSender() {
+    writeService.start();
+    when(jdbcTemplate.batchUpdate(
+            startsWith("INSERT INTO chat_messages"),
+            anyCollection(),
+            anyInt(),
+            any(ParameterizedPreparedStatementSetter.class)))
+        .thenAnswer(
+            invocation -> {
+              Collection<ChatMessageWriteServiceImpl.PendingMessage> batch =
+                  invocation.getArgument(1);
+              if (batch.stream().anyMatch(m -> m.id() == 2L)) {
+                throw new DataIntegrityViolationException("duplicate key");
+              }
+              return new int[][] {{1}};
+            });
+
+    writeService.enqueue(
+        List.of(
+            message(1, room12, user1, user2, MessageType.TEXT, 0),
+            message(2, room12, user2, user1, MessageType.TEXT, 1),
+            message(3, room13, user1, user3, MessageType.TEXT, 2)));
+
+    ChatMessageWriteService.Stats stats = writeService.getStats();
+    assertEquals(2, stats.written());
+    assertEquals(1, stats.failed());
+
+    ArgumentCaptor<WebSocketErrorEvent> errorCaptor =
+        ArgumentCaptor.forClass(WebSocketErrorEvent.class);
+    verify(messagingTemplate)
+        .convertAndSend(eq("/user/user2@example.com/queue/errors"), errorCaptor.capture());
+    assertEquals("MessageNotSaved", errorCaptor.getValue().getError());
+    assertTrue(errorCaptor.getValue().getMessage().contains("2"));
+  }
+
+  @Test
+  @DisplayName("Next Message Id - Draws Blocks From Allocator Above Current Max Id")
+  void nextMessageId_allocatesBlocksLazily() {
+    when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(500L);
+    when(idBlockAllocator.allocateBlock(ChatMessageWriteServiceImpl.SEQUENCE_NAME, 3, 500L))
+        .thenReturn(500L, 800L);
+    writeService.start();
+
+    assertEquals(500L, writeService.nextMessageId());
+    assertEquals(501L, writeService.nextMessageId());
+    assertEquals(502L, writeService.nextMessageId());
+    assertEquals(800L, writeService.nextMessageId());
+    verify(idBlockAllocator, times(2)).allocateBlock(anyString(), anyInt(), anyLong());
+  }
+
+  @Test
+  @DisplayName("Writer Thread - Groups Queued Messages And Drains On Stop")
+  void enqueue_withWriterThread_groupCommitsAndDrainsOnStop() {
+    ReflectionTestUtils.setField(writeService, "batchingEnabled", true);
+    ReflectionTestUtils.setField(writeService, "batchMaxDelayMillis", 200L);
+    writeService.start();
+
+    for (int i = 0; i < 5; i++) {
+      writeService.enqueue(List.of(message(i + 1, room12, user1, user2, MessageType.TEXT, i)));
+    }
+    writeService.stop();
+
+    ChatMessageWriteService.Stats stats = writeService.getStats();
+    assertEquals(5, stats.enqueued());
+    assertEquals(5, stats.written());
+    assertEquals(0, stats.inlineWrites());
+    assertTrue(stats.batches() < 5, "Messages should be group-committed, got " + stats);
+  }
+
+  @Test
+  @DisplayName("Writer Thread - Await Pending Writes Flushes The Open Batch Without Waiting Delay")
+  void awaitPendingWrites_whileBatchPending_writesBeforeReturning() {
+    ReflectionTestUtils.setField(writeService, "batchingEnabled", true);
+    ReflectionTestUtils.setField(writeService, "batchMaxDelayMillis", 5000L);
+    writeService.start();
+
+    writeService.enqueue(List.of(message(1, room12, user1, user2, MessageType.TEXT, 0)));
+    long startedAt = System.nanoTime();
+    writeService.awaitPendingWrites();
+    long waitedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+
+    // Đánh dấu đã đọc ngay sau đó sẽ thấy cả tin nhắn lẫn phần cộng bộ đếm chưa đọc
+    assertEquals(1, writeService.getStats().written());
+    assertEquals(1, captureRoomUpdates().size());
+    assertTrue(
+        waitedMillis < 2000, "Barrier should cut the batch delay short, waited " + waitedMillis);
+  }
+
+  @Test
+  @DisplayName("Await Pending Writes - Returns Immediately When Batching Disabled")
+  void awaitPendingWrites_withoutWriterThread_returnsImmediately() {
+    writeService.enqueue(List.of(message(1, room12, user1, user2, MessageType.TEXT, 0)));
+
+    writeService.awaitPendingWrites();
+
+    assertEquals(1, writeService.getStats().inlineWrites());
+  }
+}
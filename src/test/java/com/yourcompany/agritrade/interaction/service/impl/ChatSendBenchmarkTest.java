@@ -0,0 +1,221 @@
+package com.yourcompany.agritrade.interaction.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.common.persistence.MySqlBenchmarkSupport;
+import com.yourcompany.agritrade.common.service.impl.JdbcIdBlockAllocator;
+import com.yourcompany.agritrade.interaction.domain.ChatMessage;
+import com.yourcompany.agritrade.interaction.domain.ChatRoom;
+import com.yourcompany.agritrade.interaction.domain.MessageType;
+import com.yourcompany.agritrade.interaction.repository.ChatRoomRepository;
+import com.yourcompany.agritrade.interaction.service.ChatMessageWriteService;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Đo thông lượng ghi tin nhắn chat bền vững (tin nhắn/giây đã xuống DB) khi nhiều người gửi đồng
+ * thời: cách cũ (mỗi tin một transaction, save tin nhắn rồi đọc-sửa-ghi entity phòng) so với luồng
+ * ghi theo lô của {@link ChatMessageWriteServiceImpl}. Đồng thời kiểm tra bộ đếm chưa đọc: cách cũ
+ * có thể mất lượt cộng khi hai tin cùng phòng ghi song song, cách mới phải đúng tuyệt đối. Cần
+ * Docker (Testcontainers MySQL); tự bỏ qua nếu môi trường không có Docker.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ChatMessageWriteServiceImpl.class, JdbcIdBlockAllocator.class})
+@Tag("benchmark")
+@Slf4j
+class ChatSendBenchmarkTest extends MySqlBenchmarkSupport {
+
+  private static final int ROOMS = 20;
+  private static final int SENDER_THREADS = 8;
+  private static final int MESSAGES_PER_THREAD = 500;
+  private static final int TOTAL_MESSAGES = SENDER_THREADS * MESSAGES_PER_THREAD;
+
+  @DynamicPropertySource
+  static void benchmarkProperties(DynamicPropertyRegistry registry) {
+    registry.add("spring.datasource.hikari.maximum-pool-size", () -> "20");
+    registry.add("app.chat.write.batch-max-size", () -> "200");
+    registry.add("app.chat.write.batch-max-delay-ms", () -> "10");
+  }
+
+  @MockBean private SimpMessagingTemplate messagingTemplate;
+
+  @Autowired private ChatMessageWriteService chatMessageWriteService;
+  @Autowired private ChatRoomRepository chatRoomRepository;
+  @Autowired private PlatformTransactionManager transactionManager;
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  @Test
+  @DisplayName("Legacy per-message save vs batched write-behind - sustained messages/sec")
+  void sustainedThroughput() throws Exception {
+    List<ChatRoom> legacyRooms = createRooms("legacy");
+    List<ChatRoom> batchedRooms = createRooms("batched");
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+    double legacyRate =
+        run(
+            legacyRooms,
+            (room, message) ->
+                tx.executeWithoutResult(
+                    status -> {
+                      ChatRoom managed = chatRoomRepository.findById(room.getId()).orElseThrow();
+                      message.setRoom(managed);
+                      message.setSender(
+                          entityManager.getReference(User.class, message.getSender().getId()));
+                      message.setRecipient(
+                          entityManager.getReference(User.class, message.getRecipient().getId()));
+                      entityManager.persist(message);
+                      managed.setLastMessage(message);
+                      managed.setLastMessageTime(message.getSentAt());
+                      if (managed.getUser1().getId().equals(message.getRecipient().getId())) {
+                        managed.setUser1UnreadCount(managed.getUser1UnreadCount() + 1);
+                      } else {
+                        managed.setUser2UnreadCount(managed.getUser2UnreadCount() + 1);
+                      }
+                      chatRoomRepository.save(managed);
+                    }),
+            () -> {});
+
+    long writtenBefore = chatMessageWriteService.getStats().written();
+    double batchedRate =
+        run(
+            batchedRooms,
+            (room, message) -> chatMessageWriteService.enqueue(List.of(message)),
+            () -> awaitWritten(writtenBefore + TOTAL_MESSAGES));
+
+    long legacyLost = TOTAL_MESSAGES - totalUnread(legacyRooms);
+    long batchedLost = TOTAL_MESSAGES - totalUnread(batchedRooms);
+    log.info(
+        "[chat-bench] legacy-per-message: {} msg/s, lost unread increments={}",
+        String.format("%.0f", legacyRate),
+        legacyLost);
+    log.info(
+        "[chat-bench] batched-write-behind: {} msg/s, lost unread increments={}, stats={}",
+        String.format("%.0f", batchedRate),
+        batchedLost,
+        chatMessageWriteService.getStats());
+
+    assertEquals(0, batchedLost, "Bộ đếm chưa đọc phải khớp tuyệt đối với số tin đã gửi");
+    assertEquals(
+        (long) TOTAL_MESSAGES,
+        jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM chat_messages m JOIN chat_rooms r ON r.id = m.room_id"
+                + " JOIN users u ON u.id = r.user_id_1 WHERE u.email LIKE 'batched%'",
+            Long.class));
+  }
+
+  /**
+   * Mỗi luồng gửi {@link #MESSAGES_PER_THREAD} tin xoay vòng qua các phòng, luân phiên chiều gửi.
+   * Thời gian tính tới khi {@code awaitPersisted} xác nhận mọi tin đã xuống DB.
+   */
+  private double run(
+      List<ChatRoom> rooms, BiConsumer<ChatRoom, ChatMessage> send, Runnable awaitPersisted)
+      throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(SENDER_THREADS);
+    try {
+      long start = System.nanoTime();
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < SENDER_THREADS; t++) {
+        int thread = t;
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int k = 0; k < MESSAGES_PER_THREAD; k++) {
+                    ChatRoom room = rooms.get((thread + k) % rooms.size());
+                    boolean fromUser1 = k % 2 == 0;
+                    send.accept(
+                        room,
+                        newMessage(
+                            room,
+                            fromUser1 ? room.getUser1() : room.getUser2(),
+                            fromUser1 ? room.getUser2() : room.getUser1()));
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      awaitPersisted.run();
+      double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+      return TOTAL_MESSAGES / seconds;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void awaitWritten(long target) {
+    long deadline = System.currentTimeMillis() + 120_000;
+    while (chatMessageWriteService.getStats().written() < target) {
+      assertTrue(System.currentTimeMillis() < deadline, "Luồng ghi không xả kịp hàng đợi");
+      try {
+        Thread.sleep(5);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  private ChatMessage newMessage(ChatRoom room, User sender, User recipient) {
+    ChatMessage message = new ChatMessage();
+    message.setId(chatMessageWriteService.nextMessageId());
+    message.setRoom(room);
+    message.setSender(sender);
+    message.setRecipient(recipient);
+    message.setContent("benchmark message");
+    message.setMessageType(MessageType.TEXT);
+    message.setSentAt(LocalDateTime.now());
+    return message;
+  }
+
+  private long totalUnread(List<ChatRoom> rooms) {
+    long total = 0;
+    for (ChatRoom room : rooms) {
+      total +=
+          jdbcTemplate.queryForObject(
+              "SELECT user1_unread_count + user2_unread_count FROM chat_rooms WHERE id = ?",
+              Long.class,
+              room.getId());
+    }
+    return total;
+  }
+
+  private List<ChatRoom> createRooms(String prefix) {
+    return new TransactionTemplate(transactionManager)
+        .execute(
+            status -> {
+              List<ChatRoom> rooms = new ArrayList<>();
+              long suffix = System.nanoTime();
+              for (int i = 0; i < ROOMS; i++) {
+                User a = newUser(prefix + "-a" + i + "-" + suffix);
+                User b = newUser(prefix + "-b" + i + "-" + suffix);
+                ChatRoom room = new ChatRoom(a, b);
+                entityManager.persist(room);
+                rooms.add(room);
+              }
+              return rooms;
+            });
+  }
+}
@@ -18,6 +18,7 @@ import com.yourcompany.agritrade.interaction.mapper.ChatMessageMapper;
 import com.yourcompany.agritrade.interaction.mapper.ChatRoomMapper;
 import com.yourcompany.agritrade.interaction.repository.ChatMessageRepository;
 import com.yourcompany.agritrade.interaction.repository.ChatRoomRepository;
+import com.yourcompany.agritrade.interaction.service.ChatMessageWriteService;
 import com.yourcompany.agritrade.ordering.repository.SupplyOrderRequestRepository;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
@@ -27,6 +28,7 @@ import java.util.Optional;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
@@ -51,6 +53,7 @@ class ChatServiceImplTest {
   @Mock private ChatMessageMapper chatMessageMapper;
   @Mock private SimpMessagingTemplate messagingTemplate;
   @Mock private SupplyOrderRequestRepository supplyOrderRequestRepository;
+  @Mock private ChatMessageWriteService chatMessageWriteService;
   @Mock private Authentication authentication;
 
   // SỬA LỖI: Thêm MockedStatic để quản lý mock cho lớp tiện ích SecurityUtils
@@ -126,7 +129,7 @@ class ChatServiceImplTest {
     void getOrCreateChatRoom_whenRoomExists_shouldReturnExistingRoom() {
       mockAuthenticatedUser(senderUser);
       when(userRepository.findById(recipientUser.getId())).thenReturn(Optional.of(recipientUser));
-      when(chatRoomRepository.findRoomBetweenUsers(senderUser.getId(), recipientUser.getId()))
+      when(chatRoomRepository.findByUserPair(senderUser.getId(), recipientUser.getId()))
           .thenReturn(Optional.of(chatRoomEntity));
       when(chatRoomMapper.toChatRoomResponse(chatRoomEntity)).thenReturn(chatRoomResponseDto);
 
@@ -143,7 +146,7 @@ class ChatServiceImplTest {
     void getOrCreateChatRoom_whenRoomNotExists_shouldCreateNewRoom() {
       mockAuthenticatedUser(senderUser);
       when(userRepository.findById(recipientUser.getId())).thenReturn(Optional.of(recipientUser));
-      when(chatRoomRepository.findRoomBetweenUsers(senderUser.getId(), recipientUser.getId()))
+      when(chatRoomRepository.findByUserPair(senderUser.getId(), recipientUser.getId()))
           .thenReturn(Optional.empty());
       when(chatRoomRepository.save(any(ChatRoom.class))).thenReturn(chatRoomEntity);
       when(chatRoomMapper.toChatRoomResponse(chatRoomEntity)).thenReturn(chatRoomResponseDto);
@@ -174,11 +177,10 @@ class ChatServiceImplTest {
     void sendMessage_success_roomExists() {
       mockAuthenticatedUser(senderUser);
       when(userRepository.findById(recipientUser.getId())).thenReturn(Optional.of(recipientUser));
-      when(chatRoomRepository.findRoomBetweenUsers(senderUser.getId(), recipientUser.getId()))
+      when(chatRoomRepository.findByUserPair(senderUser.getId(), recipientUser.getId()))
           .thenReturn(Optional.of(chatRoomEntity));
-      when(chatMessageRepository.save(any(ChatMessage.class))).thenReturn(chatMessageEntity);
-      when(chatRoomRepository.save(any(ChatRoom.class))).thenReturn(chatRoomEntity);
-      when(chatMessageMapper.toChatMessageResponse(chatMessageEntity))
+      when(chatMessageWriteService.nextMessageId()).thenReturn(100L);
+      when(chatMessageMapper.toChatMessageResponse(any(ChatMessage.class)))
           .thenReturn(chatMessageResponseDto);
       doNothing()
           .when(messagingTemplate)
@@ -189,17 +191,25 @@ class ChatServiceImplTest {
       assertNotNull(result);
       assertEquals(chatMessageResponseDto.getContent(), result.getContent());
 
-      ArgumentCaptor<ChatMessage> msgCaptor = ArgumentCaptor.forClass(ChatMessage.class);
-      verify(chatMessageRepository).save(msgCaptor.capture());
-      assertEquals(senderUser, msgCaptor.getValue().getSender());
-      assertEquals(recipientUser, msgCaptor.getValue().getRecipient());
-
-      ArgumentCaptor<ChatRoom> roomCaptor = ArgumentCaptor.forClass(ChatRoom.class);
-      verify(chatRoomRepository).save(roomCaptor.capture());
-      assertEquals(chatMessageEntity, roomCaptor.getValue().getLastMessage());
-      assertEquals(1, roomCaptor.getValue().getUser2UnreadCount());
-
-      verify(messagingTemplate, times(2)).convertAndSend(anyString(), eq(chatMessageResponseDto));
+      // Đẩy WebSocket trước, ghi DB giao cho luồng ghi theo lô
+      InOrder inOrder = inOrder(messagingTemplate, chatMessageWriteService);
+      inOrder
+          .verify(messagingTemplate, times(2))
+          .convertAndSend(anyString(), eq(chatMessageResponseDto));
+      ArgumentCaptor<List<ChatMessage>> msgCaptor = ArgumentCaptor.forClass(List.class);
+      inOrder.verify(chatMessageWriteService).enqueue(msgCaptor.capture());
+
+      assertEquals(1, msgCaptor.getValue().size());
+      ChatMessage queued = msgCaptor.getValue().get(0);
+      assertEquals(100L, queued.getId());
+      assertEquals(chatRoomEntity, queued.getRoom());
+      assertEquals(senderUser, queued.getSender());
+      assertEquals(recipientUser, queued.getRecipient());
+      assertEquals("Hello!", queued.getContent());
+
+      // Không còn đọc-sửa-ghi entity phòng hay lưu tin nhắn qua JPA
+      verify(chatMessageRepository, never()).save(any(ChatMessage.class));
+      verify(chatRoomRepository, never()).save(any(ChatRoom.class));
     }
 
     @Test
@@ -207,17 +217,85 @@ class ChatServiceImplTest {
     void sendMessage_success_createsNewRoom() {
       mockAuthenticatedUser(senderUser);
       when(userRepository.findById(recipientUser.getId())).thenReturn(Optional.of(recipientUser));
-      when(chatRoomRepository.findRoomBetweenUsers(senderUser.getId(), recipientUser.getId()))
+      when(chatRoomRepository.findByUserPair(senderUser.getId(), recipientUser.getId()))
           .thenReturn(Optional.empty());
       when(chatRoomRepository.save(any(ChatRoom.class))).thenReturn(chatRoomEntity);
-      when(chatMessageRepository.save(any(ChatMessage.class))).thenReturn(chatMessageEntity);
-      when(chatMessageMapper.toChatMessageResponse(chatMessageEntity))
+      when(chatMessageWriteService.nextMessageId()).thenReturn(100L);
+      when(chatMessageMapper.toChatMessageResponse(any(ChatMessage.class)))
           .thenReturn(chatMessageResponseDto);
 
       chatService.sendMessage(authentication, chatMessageRequest);
 
-      verify(chatRoomRepository, times(2)).save(any(ChatRoom.class));
+      verify(chatRoomRepository).save(any(ChatRoom.class));
       verify(messagingTemplate, times(2)).convertAndSend(anyString(), eq(chatMessageResponseDto));
+      verify(chatMessageWriteService).enqueue(anyList());
+    }
+
+    @Test
+    @DisplayName("Send Message - Reverse Direction - Uses Same Canonical Room Key")
+    void sendMessage_fromHigherUserId_looksUpCanonicalPair() {
+      mockAuthenticatedUser(recipientUser);
+      chatMessageRequest.setRecipientId(senderUser.getId());
+      when(userRepository.findById(senderUser.getId())).thenReturn(Optional.of(senderUser));
+      when(chatRoomRepository.findByUserPair(1L, 2L)).thenReturn(Optional.of(chatRoomEntity));
+      when(chatMessageWriteService.nextMessageId()).thenReturn(101L);
+      when(chatMessageMapper.toChatMessageResponse(any(ChatMessage.class)))
+          .thenReturn(chatMessageResponseDto);
+
+      chatService.sendMessage(authentication, chatMessageRequest);
+
+      verify(chatRoomRepository).findByUserPair(1L, 2L);
+    }
+
+    @Test
+    @DisplayName("Send Message - Second Message - Resolves Room From Cache")
+    void sendMessage_secondMessage_usesCachedRoomId() {
+      mockAuthenticatedUser(senderUser);
+      when(userRepository.findById(recipientUser.getId())).thenReturn(Optional.of(recipientUser));
+      when(chatRoomRepository.findByUserPair(senderUser.getId(), recipientUser.getId()))
+          .thenReturn(Optional.of(chatRoomEntity));
+      when(chatRoomRepository.getReferenceById(chatRoomEntity.getId())).thenReturn(chatRoomEntity);
+      when(chatMessageWriteService.nextMessageId()).thenReturn(100L, 101L);
+      when(chatMessageMapper.toChatMessageResponse(any(ChatMessage.class)))
+          .thenReturn(chatMessageResponseDto);
+
+      chatService.sendMessage(authentication, chatMessageRequest);
+      chatService.sendMessage(authentication, chatMessageRequest);
+
+      verify(chatRoomRepository, times(1)).findByUserPair(anyLong(), anyLong());
+      verify(chatRoomRepository, times(1)).getReferenceById(chatRoomEntity.getId());
+      verify(chatMessageWriteService, times(2)).enqueue(anyList());
+    }
+
+    @Test
+    @DisplayName("Send Message - Product Context - System Message Sent Once Per Window")
+    void sendMessage_withProductContext_sendsContextMessageOnlyOnce() {
+      mockAuthenticatedUser(senderUser);
+      chatMessageRequest.setContextProductId(55L);
+      chatMessageRequest.setContextProductName("Gạo ST25");
+      when(userRepository.findById(recipientUser.getId())).thenReturn(Optional.of(recipientUser));
+      when(chatRoomRepository.findByUserPair(senderUser.getId(), recipientUser.getId()))
+          .thenReturn(Optional.of(chatRoomEntity));
+      when(chatRoomRepository.getReferenceById(chatRoomEntity.getId())).thenReturn(chatRoomEntity);
+      when(chatMessageRepository.findByRoomIdAndSenderIdOrderBySentAtDesc(
+              eq(chatRoomEntity.getId()), eq(senderUser.getId()), any(Pageable.class)))
+          .thenReturn(Page.empty());
+      when(chatMessageWriteService.nextMessageId()).thenReturn(100L, 101L, 102L);
+      when(chatMessageMapper.toChatMessageResponse(any(ChatMessage.class)))
+          .thenReturn(chatMessageResponseDto);
+
+      chatService.sendMessage(authentication, chatMessageRequest);
+      chatService.sendMessage(authentication, chatMessageRequest);
+
+      ArgumentCaptor<List<ChatMessage>> msgCaptor = ArgumentCaptor.forClass(List.class);
+      verify(chatMessageWriteService, times(2)).enqueue(msgCaptor.capture());
+      List<ChatMessage> first = msgCaptor.getAllValues().get(0);
+      assertEquals(2, first.size());
+      assertEquals(MessageType.SYSTEM, first.get(0).getMessageType());
+      assertTrue(first.get(0).getSentAt().isBefore(first.get(1).getSentAt()));
+      // Tin nhắn ngữ cảnh lần đầu có thể chưa xuống DB -> lần hai dựa vào bộ nhớ, không gửi lại
+      assertEquals(1, msgCaptor.getAllValues().get(1).size());
+      assertEquals(MessageType.TEXT, msgCaptor.getAllValues().get(1).get(0).getMessageType());
     }
 
     @Test
@@ -314,13 +392,23 @@ class ChatServiceImplTest {
       when(chatMessageRepository.markMessagesAsRead(
               eq(chatRoomEntity.getId()), eq(recipientUser.getId()), any(LocalDateTime.class)))
           .thenReturn(5);
-      when(chatRoomRepository.save(any(ChatRoom.class))).thenReturn(chatRoomEntity);
+      when(chatRoomRepository.resetUnreadCount(chatRoomEntity.getId(), recipientUser.getId()))
+          .thenReturn(1);
       doNothing().when(messagingTemplate).convertAndSend(anyString(), any(MessageReadEvent.class));
 
       chatService.markMessagesAsRead(authentication, chatRoomEntity.getId());
 
-      assertEquals(0, chatRoomEntity.getUser2UnreadCount());
-      verify(chatRoomRepository).save(chatRoomEntity);
+      // Lô tin nhắn đang chờ phải được ghi trước, nếu không sẽ cộng lại bộ đếm vừa reset
+      InOrder inOrder = inOrder(chatMessageWriteService, chatMessageRepository, chatRoomRepository);
+      inOrder.verify(chatMessageWriteService).awaitPendingWrites();
+      inOrder
+          .verify(chatMessageRepository)
+          .markMessagesAsRead(
+              eq(chatRoomEntity.getId()), eq(recipientUser.getId()), any(LocalDateTime.class));
+      inOrder
+          .verify(chatRoomRepository)
+          .resetUnreadCount(chatRoomEntity.getId(), recipientUser.getId());
+      verify(chatRoomRepository, never()).save(any(ChatRoom.class));
       verify(messagingTemplate)
           .convertAndSend(
               eq("/user/" + senderUser.getEmail() + "/queue/read"), any(MessageReadEvent.class));
@@ -340,7 +428,7 @@ class ChatServiceImplTest {
 
       chatService.markMessagesAsRead(authentication, chatRoomEntity.getId());
 
-      verify(chatRoomRepository, never()).save(any(ChatRoom.class));
+      verify(chatRoomRepository, never()).resetUnreadCount(anyLong(), anyLong());
       verify(messagingTemplate, never()).convertAndSend(anyString(), any(MessageReadEvent.class));
     }
   }
@@ -2,12 +2,14 @@ package com.yourcompany.agritrade.interaction.service.impl;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 import com.yourcompany.agritrade.catalog.domain.Product;
 import com.yourcompany.agritrade.catalog.dto.response.ProductSummaryResponse;
 import com.yourcompany.agritrade.catalog.mapper.ProductMapper;
 import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.catalog.repository.projection.ProductSummaryView;
 import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
 import com.yourcompany.agritrade.common.util.SecurityUtils;
 import com.yourcompany.agritrade.interaction.domain.FavoriteProduct;
@@ -33,6 +35,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -187,30 +190,35 @@ class FavoriteServiceImplTest {
   class GetMyFavoritesTests {
     @Test
     @DisplayName("Get My Favorites - Success")
+    @SuppressWarnings("unchecked")
     void getMyFavorites_shouldReturnPageOfProductSummaries() {
       mockAuthenticatedUser(testUser);
       Pageable pageable = PageRequest.of(0, 10);
-      List<Product> favoriteProductsList = List.of(product1, product2);
-      Page<Product> favoriteProductsPage =
-          new PageImpl<>(favoriteProductsList, pageable, favoriteProductsList.size());
+      // Trang ID theo thứ tự addedAt giảm dần; projection trả về theo thứ tự bất kỳ
+      Page<Long> favoriteIdsPage = new PageImpl<>(List.of(20L, 10L), pageable, 2);
+      ProductSummaryView view1 = summaryView(product1);
+      ProductSummaryView view2 = summaryView(product2);
 
       ProductSummaryResponse summary1 = new ProductSummaryResponse();
       summary1.setId(product1.getId());
       ProductSummaryResponse summary2 = new ProductSummaryResponse();
       summary2.setId(product2.getId());
 
-      when(favoriteProductRepository.findFavoriteProductsByUserId(testUser.getId(), pageable))
-          .thenReturn(favoriteProductsPage);
-      when(productMapper.toProductSummaryResponse(product1)).thenReturn(summary1);
-      when(productMapper.toProductSummaryResponse(product2)).thenReturn(summary2);
+      when(favoriteProductRepository.findFavoriteProductIdsByUserId(testUser.getId(), pageable))
+          .thenReturn(favoriteIdsPage);
+      when(productRepository.findSummaries(any(Specification.class), eq(Pageable.unpaged())))
+          .thenReturn(new PageImpl<>(List.of(view1, view2)));
+      when(productMapper.toProductSummaryResponses(List.of(view2, view1)))
+          .thenReturn(List.of(summary2, summary1));
 
       Page<ProductSummaryResponse> result =
           favoriteService.getMyFavorites(authentication, pageable);
 
       assertNotNull(result);
       assertEquals(2, result.getTotalElements());
-      assertEquals(summary1.getId(), result.getContent().get(0).getId());
-      assertEquals(summary2.getId(), result.getContent().get(1).getId());
+      assertEquals(summary2.getId(), result.getContent().get(0).getId());
+      assertEquals(summary1.getId(), result.getContent().get(1).getId());
+      verify(productRepository, never()).findAll(any(Specification.class), any(Pageable.class));
     }
 
     @Test
@@ -218,9 +226,9 @@ class FavoriteServiceImplTest {
     void getMyFavorites_whenNoFavorites_shouldReturnEmptyPage() {
       mockAuthenticatedUser(testUser);
       Pageable pageable = PageRequest.of(0, 10);
-      Page<Product> emptyPage = new PageImpl<>(Collections.emptyList(), pageable, 0);
+      Page<Long> emptyPage = new PageImpl<>(Collections.emptyList(), pageable, 0);
 
-      when(favoriteProductRepository.findFavoriteProductsByUserId(testUser.getId(), pageable))
+      when(favoriteProductRepository.findFavoriteProductIdsByUserId(testUser.getId(), pageable))
           .thenReturn(emptyPage);
 
       Page<ProductSummaryResponse> result =
@@ -228,6 +236,7 @@ class FavoriteServiceImplTest {
 
       assertNotNull(result);
       assertTrue(result.isEmpty());
+      verifyNoInteractions(productRepository);
     }
   }
 
@@ -284,4 +293,34 @@ class FavoriteServiceImplTest {
           () -> favoriteService.addFavorite(authentication, product1.getId()));
     }
   }
+
+  private static ProductSummaryView summaryView(Product product) {
+    return new ProductSummaryView(
+        product.getId(),
+        product.getName(),
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        false,
+        null,
+        null,
+        true,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null,
+        null);
+  }
 }
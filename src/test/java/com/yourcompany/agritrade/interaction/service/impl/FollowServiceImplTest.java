@@ -4,15 +4,18 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import com.yourcompany.agritrade.common.dto.response.CursorPageResponse;
 import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
+import com.yourcompany.agritrade.common.util.KeysetCursor;
 import com.yourcompany.agritrade.common.util.SecurityUtils;
 import com.yourcompany.agritrade.interaction.domain.UserFollow;
 import com.yourcompany.agritrade.interaction.dto.response.FollowUserResponse;
-import com.yourcompany.agritrade.interaction.mapper.FollowUserMapper;
 import com.yourcompany.agritrade.interaction.repository.UserFollowRepository;
 import com.yourcompany.agritrade.notification.service.NotificationService;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import com.yourcompany.agritrade.usermanagement.service.UserCacheService;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.*;
@@ -24,8 +27,10 @@ import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -35,8 +40,8 @@ class FollowServiceImplTest {
 
   @Mock private UserFollowRepository userFollowRepository;
   @Mock private UserRepository userRepository;
-  @Mock private FollowUserMapper followUserMapper;
   @Mock private NotificationService notificationService;
+  @Mock private UserCacheService userCacheService;
   @Mock private Authentication authentication;
 
   // SỬA LỖI: Thêm MockedStatic để quản lý mock cho lớp tiện ích SecurityUtils
@@ -82,6 +87,14 @@ class FollowServiceImplTest {
     mockedSecurityUtils.when(SecurityUtils::getCurrentAuthenticatedUser).thenReturn(user);
   }
 
+  private void mockAuthenticatedUserId(Long userId) {
+    mockedSecurityUtils.when(SecurityUtils::getCurrentUserId).thenReturn(userId);
+  }
+
+  private FollowUserResponse followResponse(Long userId, LocalDateTime followedAt) {
+    return new FollowUserResponse(userId, "User " + userId, null, null, followedAt);
+  }
+
   @Nested
   @DisplayName("Follow User Tests")
   class FollowUserTests {
@@ -94,11 +107,6 @@ class FollowServiceImplTest {
               currentUser.getId(), userToFollow.getId()))
           .thenReturn(false);
       when(userFollowRepository.save(any(UserFollow.class))).thenAnswer(inv -> inv.getArgument(0));
-      when(userRepository.findById(currentUser.getId())).thenReturn(Optional.of(currentUser));
-      when(userRepository.findById(userToFollow.getId())).thenReturn(Optional.of(userToFollow));
-      when(userFollowRepository.countByFollowerId(currentUser.getId())).thenReturn(1L);
-      when(userFollowRepository.countByFollowingId(userToFollow.getId())).thenReturn(1L);
-      when(userRepository.save(any(User.class))).thenAnswer(inv -> inv.getArgument(0));
       doNothing().when(notificationService).sendNewFollowerNotification(userToFollow, currentUser);
 
       followService.followUser(authentication, userToFollow.getId());
@@ -108,15 +116,11 @@ class FollowServiceImplTest {
       assertEquals(currentUser, userFollowCaptor.getValue().getFollower());
       assertEquals(userToFollow, userFollowCaptor.getValue().getFollowing());
 
-      ArgumentCaptor<User> userCaptor = ArgumentCaptor.forClass(User.class);
-      verify(userRepository, times(2)).save(userCaptor.capture());
-      List<User> savedUsers = userCaptor.getAllValues();
-      assertTrue(
-          savedUsers.stream()
-              .anyMatch(u -> u.getId().equals(currentUser.getId()) && u.getFollowingCount() == 1));
-      assertTrue(
-          savedUsers.stream()
-              .anyMatch(u -> u.getId().equals(userToFollow.getId()) && u.getFollowerCount() == 1));
+      // Count được cộng trực tiếp trong DB, không đếm lại bảng user_follows
+      verify(userRepository).adjustFollowingCount(currentUser.getId(), 1);
+      verify(userRepository).adjustFollowerCount(userToFollow.getId(), 1);
+      verify(userFollowRepository, never()).countByFollowerId(anyLong());
+      verify(userRepository, never()).save(any(User.class));
 
       verify(notificationService).sendNewFollowerNotification(userToFollow, currentUser);
     }
@@ -133,7 +137,7 @@ class FollowServiceImplTest {
       followService.followUser(authentication, userToFollow.getId());
 
       verify(userFollowRepository, never()).save(any(UserFollow.class));
-      verify(userRepository, never()).save(any(User.class));
+      verify(userRepository, never()).adjustFollowingCount(anyLong(), anyInt());
       verify(notificationService, never()).sendNewFollowerNotification(any(), any());
     }
 
@@ -154,45 +158,30 @@ class FollowServiceImplTest {
     @DisplayName("Unfollow User - Success")
     void unfollowUser_success() {
       mockAuthenticatedUser(currentUser);
-      when(userFollowRepository.existsByFollowerIdAndFollowingId(
+      when(userFollowRepository.deleteByFollowerIdAndFollowingId(
               currentUser.getId(), userToFollow.getId()))
-          .thenReturn(true);
-      doNothing()
-          .when(userFollowRepository)
-          .deleteByFollowerIdAndFollowingId(currentUser.getId(), userToFollow.getId());
-      when(userRepository.findById(currentUser.getId())).thenReturn(Optional.of(currentUser));
-      when(userRepository.findById(userToFollow.getId())).thenReturn(Optional.of(userToFollow));
-      when(userFollowRepository.countByFollowerId(currentUser.getId())).thenReturn(0L);
-      when(userFollowRepository.countByFollowingId(userToFollow.getId())).thenReturn(0L);
-      when(userRepository.save(any(User.class))).thenAnswer(inv -> inv.getArgument(0));
+          .thenReturn(1);
 
       followService.unfollowUser(authentication, userToFollow.getId());
 
-      verify(userFollowRepository)
-          .deleteByFollowerIdAndFollowingId(currentUser.getId(), userToFollow.getId());
-      ArgumentCaptor<User> userCaptor = ArgumentCaptor.forClass(User.class);
-      verify(userRepository, times(2)).save(userCaptor.capture());
-      List<User> savedUsers = userCaptor.getAllValues();
-      assertTrue(
-          savedUsers.stream()
-              .anyMatch(u -> u.getId().equals(currentUser.getId()) && u.getFollowingCount() == 0));
-      assertTrue(
-          savedUsers.stream()
-              .anyMatch(u -> u.getId().equals(userToFollow.getId()) && u.getFollowerCount() == 0));
+      verify(userRepository).adjustFollowingCount(currentUser.getId(), -1);
+      verify(userRepository).adjustFollowerCount(userToFollow.getId(), -1);
+      verify(userCacheService).evictAfterCommit(currentUser.getId());
+      verify(userCacheService).evictAfterCommit(userToFollow.getId());
     }
 
     @Test
     @DisplayName("Unfollow User - Not Following - Should Do Nothing")
     void unfollowUser_notFollowing_shouldDoNothing() {
       mockAuthenticatedUser(currentUser);
-      when(userFollowRepository.existsByFollowerIdAndFollowingId(
+      when(userFollowRepository.deleteByFollowerIdAndFollowingId(
               currentUser.getId(), userToFollow.getId()))
-          .thenReturn(false);
+          .thenReturn(0);
 
       followService.unfollowUser(authentication, userToFollow.getId());
 
-      verify(userFollowRepository, never()).deleteByFollowerIdAndFollowingId(anyLong(), anyLong());
-      verify(userRepository, never()).save(any(User.class));
+      verify(userRepository, never()).adjustFollowingCount(anyLong(), anyInt());
+      verify(userRepository, never()).adjustFollowerCount(anyLong(), anyInt());
     }
   }
 
@@ -202,69 +191,57 @@ class FollowServiceImplTest {
     @Test
     @DisplayName("Get My Following - Success")
     void getMyFollowing_success() {
-      mockAuthenticatedUser(currentUser);
-      Pageable pageable = PageRequest.of(0, 10);
-      List<User> followingUsersList = List.of(userToFollow, anotherUser);
-      FollowUserResponse response1 = new FollowUserResponse();
-      response1.setUserId(userToFollow.getId());
-      FollowUserResponse response2 = new FollowUserResponse();
-      response2.setUserId(anotherUser.getId());
-      List<FollowUserResponse> expectedResponseList = List.of(response1, response2);
-
-      when(userFollowRepository.findFollowingByFollowerId(currentUser.getId()))
-          .thenReturn(followingUsersList);
-      when(userFollowRepository.countByFollowerId(currentUser.getId()))
-          .thenReturn((long) followingUsersList.size());
-      when(followUserMapper.toFollowUserResponseList(followingUsersList))
-          .thenReturn(expectedResponseList);
+      mockAuthenticatedUserId(currentUser.getId());
+      Pageable pageable = PageRequest.of(0, 10, Sort.by("fullName"));
+      Page<FollowUserResponse> expectedPage =
+          new PageImpl<>(
+              List.of(
+                  followResponse(userToFollow.getId(), LocalDateTime.now()),
+                  followResponse(anotherUser.getId(), LocalDateTime.now())),
+              PageRequest.of(0, 10),
+              2);
+
+      // Sort của client bị bỏ qua vì thứ tự đã cố định trong truy vấn
+      when(userFollowRepository.findFollowingResponses(currentUser.getId(), PageRequest.of(0, 10)))
+          .thenReturn(expectedPage);
 
       Page<FollowUserResponse> result = followService.getFollowing(authentication, pageable);
 
       assertNotNull(result);
       assertEquals(2, result.getTotalElements());
-      assertEquals(expectedResponseList, result.getContent());
+      assertEquals(expectedPage.getContent(), result.getContent());
     }
 
     @Test
     @DisplayName("Get My Followers - Success")
     void getMyFollowers_success() {
-      mockAuthenticatedUser(currentUser);
+      mockAuthenticatedUserId(currentUser.getId());
       Pageable pageable = PageRequest.of(0, 10);
-      List<User> followerUsersList = List.of(anotherUser);
-      FollowUserResponse response1 = new FollowUserResponse();
-      response1.setUserId(anotherUser.getId());
-      List<FollowUserResponse> expectedResponseList = List.of(response1);
-
-      when(userFollowRepository.findFollowersByFollowingId(currentUser.getId()))
-          .thenReturn(followerUsersList);
-      when(userFollowRepository.countByFollowingId(currentUser.getId()))
-          .thenReturn((long) followerUsersList.size());
-      when(followUserMapper.toFollowUserResponseList(followerUsersList))
-          .thenReturn(expectedResponseList);
+      Page<FollowUserResponse> expectedPage =
+          new PageImpl<>(
+              List.of(followResponse(anotherUser.getId(), LocalDateTime.now())), pageable, 1);
+
+      when(userFollowRepository.findFollowerResponses(currentUser.getId(), pageable))
+          .thenReturn(expectedPage);
 
       Page<FollowUserResponse> result = followService.getFollowers(authentication, pageable);
 
       assertNotNull(result);
       assertEquals(1, result.getTotalElements());
-      assertEquals(expectedResponseList, result.getContent());
+      assertEquals(expectedPage.getContent(), result.getContent());
     }
 
     @Test
     @DisplayName("Get Followers Public - User Exists - Success")
     void getFollowersPublic_userExists_success() {
       Pageable pageable = PageRequest.of(0, 10);
-      List<User> followerUsersList = List.of(currentUser);
-      FollowUserResponse response1 = new FollowUserResponse();
-      response1.setUserId(currentUser.getId());
-      List<FollowUserResponse> expectedResponseList = List.of(response1);
+      Page<FollowUserResponse> expectedPage =
+          new PageImpl<>(
+              List.of(followResponse(currentUser.getId(), LocalDateTime.now())), pageable, 1);
 
       when(userRepository.existsById(userToFollow.getId())).thenReturn(true);
-      when(userFollowRepository.findFollowersByFollowingId(userToFollow.getId()))
-          .thenReturn(followerUsersList);
-      when(userFollowRepository.countByFollowingId(userToFollow.getId()))
-          .thenReturn((long) followerUsersList.size());
-      when(followUserMapper.toFollowUserResponseList(followerUsersList))
-          .thenReturn(expectedResponseList);
+      when(userFollowRepository.findFollowerResponses(userToFollow.getId(), pageable))
+          .thenReturn(expectedPage);
 
       Page<FollowUserResponse> result =
           followService.getFollowersPublic(userToFollow.getId(), pageable);
@@ -273,6 +250,46 @@ class FollowServiceImplTest {
       assertEquals(1, result.getTotalElements());
     }
 
+    @Test
+    @DisplayName("Get My Following By Cursor - Returns Next Cursor When More Rows Exist")
+    void getMyFollowingByCursor_hasNext_returnsCursorOfLastRow() {
+      mockAuthenticatedUserId(currentUser.getId());
+      LocalDateTime t1 = LocalDateTime.of(2024, 5, 10, 10, 0);
+      LocalDateTime t2 = t1.minusMinutes(1);
+      LocalDateTime t3 = t1.minusMinutes(2);
+      when(userFollowRepository.findFollowingResponsesBefore(
+              currentUser.getId(), null, null, PageRequest.of(0, 3)))
+          .thenReturn(
+              List.of(followResponse(5L, t1), followResponse(4L, t2), followResponse(3L, t3)));
+
+      CursorPageResponse<FollowUserResponse> page =
+          followService.getFollowingByCursor(authentication, null, 2);
+
+      assertEquals(2, page.getContent().size());
+      assertTrue(page.isHasNext());
+      KeysetCursor next = KeysetCursor.decode(page.getNextCursor());
+      assertEquals(t2, next.createdAt());
+      assertEquals(4L, next.id());
+    }
+
+    @Test
+    @DisplayName("Get Followers Public By Cursor - Continues From Cursor")
+    void getFollowersPublicByCursor_withCursor_passesPosition() {
+      LocalDateTime t1 = LocalDateTime.of(2024, 5, 10, 10, 0);
+      String cursor = new KeysetCursor(t1, 9L).encode();
+      when(userRepository.existsById(userToFollow.getId())).thenReturn(true);
+      when(userFollowRepository.findFollowerResponsesBefore(
+              userToFollow.getId(), t1, 9L, PageRequest.of(0, 21)))
+          .thenReturn(List.of(followResponse(8L, t1)));
+
+      CursorPageResponse<FollowUserResponse> page =
+          followService.getFollowersPublicByCursor(userToFollow.getId(), cursor, 20);
+
+      assertEquals(1, page.getContent().size());
+      assertFalse(page.isHasNext());
+      assertNull(page.getNextCursor());
+    }
+
     @Test
     @DisplayName("Get Followers Public - User Not Exists - Throws ResourceNotFoundException")
     void getFollowersPublic_userNotExists_throwsResourceNotFoundException() {
@@ -0,0 +1,247 @@
+package com.yourcompany.agritrade.interaction.websocket;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Harness nhiều node chạy cục bộ cho chế độ cụm WebSocket: mỗi node có kết nối Redis, listener
+ * container, presence registry, relay và brokerChannel riêng, dùng chung một Redis. Đo độ trễ giao
+ * message giữa các node, thông lượng fan-out và thời gian lan truyền trạng thái online. Cần Docker
+ * (Testcontainers Redis); tự bỏ qua nếu môi trường không có Docker.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@Tag("benchmark")
+@Slf4j
+class ClusterFanOutBenchmarkTest {
+
+  private static final int NODES = 3;
+  private static final int LATENCY_SAMPLES = 500;
+  private static final int THROUGHPUT_MESSAGES = 20_000;
+  private static final String DESTINATION = "/topic/bench";
+
+  @Container
+  static GenericContainer<?> redis =
+      new GenericContainer<>("redis:7.2-alpine").withExposedPorts(6379);
+
+  private static final List<Node> nodes = new ArrayList<>();
+
+  private long publishedBefore;
+
+  /** Một "pod" giả lập: các bean WebSocket cụm nối với một brokerChannel riêng. */
+  private static final class Node {
+    final LettuceConnectionFactory connectionFactory;
+    final RedisMessageListenerContainer listenerContainer;
+    final ClusterPresenceRegistry registry;
+    final ClusterMessageRelay relay;
+    final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+    final LongAdder delivered = new LongAdder();
+    final AtomicReference<CountDownLatch> latch = new AtomicReference<>(new CountDownLatch(0));
+    final List<Long> latenciesNanos = new ArrayList<>();
+
+    Node(String nodeId) {
+      connectionFactory = new LettuceConnectionFactory(redis.getHost(), redis.getMappedPort(6379));
+      connectionFactory.afterPropertiesSet();
+      connectionFactory.start();
+      StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+      listenerContainer = new RedisMessageListenerContainer();
+      listenerContainer.setConnectionFactory(connectionFactory);
+      listenerContainer.afterPropertiesSet();
+      listenerContainer.start();
+      registry =
+          new ClusterPresenceRegistry(
+              redisTemplate, listenerContainer, event -> {}, true, nodeId, 30);
+      relay =
+          new ClusterMessageRelay(
+              redisTemplate, listenerContainer, registry, new ObjectMapper(), brokerChannel);
+      brokerChannel.addInterceptor(relay);
+      // Đóng vai simple broker: ghi nhận message tới đích benchmark đến từ node khác
+      brokerChannel.subscribe(
+          message -> {
+            if (!DESTINATION.equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))
+                || !message.getHeaders().containsKey(ClusterMessageRelay.ORIGIN_HEADER)) {
+              return;
+            }
+            long sentAt =
+                Long.parseLong(new String((byte[]) message.getPayload(), StandardCharsets.UTF_8));
+            synchronized (latenciesNanos) {
+              latenciesNanos.add(System.nanoTime() - sentAt);
+            }
+            delivered.increment();
+            latch.get().countDown();
+          });
+      registry.subscribe();
+      relay.subscribe();
+    }
+
+    void send() {
+      SimpMessageHeaderAccessor accessor =
+          SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+      accessor.setDestination(DESTINATION);
+      Message<byte[]> message =
+          MessageBuilder.createMessage(
+              String.valueOf(System.nanoTime()).getBytes(StandardCharsets.UTF_8),
+              accessor.getMessageHeaders());
+      brokerChannel.send(message);
+    }
+
+    void stop() {
+      registry.leaveCluster();
+      listenerContainer.stop();
+      connectionFactory.destroy();
+    }
+  }
+
+  @BeforeAll
+  static void startNodes() throws Exception {
+    for (int i = 0; i < NODES; i++) {
+      nodes.add(new Node("bench-node-" + i));
+    }
+    nodes.forEach(node -> node.registry.heartbeat());
+    nodes.forEach(node -> node.registry.heartbeat()); // Node đầu tiên thấy các node khởi động sau
+    for (Node node : nodes) {
+      assertTrue(node.registry.hasRemoteNodes());
+    }
+    // Chờ mọi listener container đăng ký xong kênh fan-out
+    awaitTrue(
+        () -> {
+          nodes.get(0).send();
+          return nodes.stream().skip(1).allMatch(node -> node.delivered.sum() > 0);
+        },
+        10_000);
+  }
+
+  @AfterAll
+  static void stopNodes() {
+    nodes.forEach(Node::stop);
+  }
+
+  @Test
+  @DisplayName("Cross-node delivery latency")
+  void deliveryLatency() throws Exception {
+    List<Node> receivers = resetReceivers();
+    for (int i = 0; i < LATENCY_SAMPLES; i++) {
+      CountDownLatch latch = new CountDownLatch(receivers.size());
+      receivers.forEach(node -> node.latch.set(latch));
+      nodes.get(0).send();
+      assertTrue(latch.await(5, TimeUnit.SECONDS), "Message không tới được mọi node");
+    }
+    long[] sorted =
+        receivers.stream()
+            .flatMap(node -> node.latenciesNanos.stream())
+            .mapToLong(Long::longValue)
+            .sorted()
+            .toArray();
+    log.info(
+        "[ws-cluster-bench] nodes={} samples={} latency p50={} ms p99={} ms max={} ms",
+        NODES,
+        sorted.length,
+        millis(sorted[sorted.length / 2]),
+        millis(sorted[(int) (sorted.length * 0.99)]),
+        millis(sorted[sorted.length - 1]));
+  }
+
+  @Test
+  @DisplayName("Fan-out throughput")
+  void fanOutThroughput() throws Exception {
+    List<Node> receivers = resetReceivers();
+    CountDownLatch latch = new CountDownLatch(THROUGHPUT_MESSAGES * receivers.size());
+    receivers.forEach(node -> node.latch.set(latch));
+
+    long start = System.nanoTime();
+    for (int i = 0; i < THROUGHPUT_MESSAGES; i++) {
+      nodes.get(0).send();
+    }
+    long publishedNanos = System.nanoTime() - start;
+    assertTrue(latch.await(60, TimeUnit.SECONDS), "Fan-out chưa giao hết message");
+    long elapsedNanos = System.nanoTime() - start;
+
+    long deliveries = THROUGHPUT_MESSAGES * (long) receivers.size();
+    log.info(
+        "[ws-cluster-bench] nodes={} messages={} publish={} msg/s deliveries={} in {} ms -> {}"
+            + " deliveries/s",
+        NODES,
+        THROUGHPUT_MESSAGES,
+        Math.round(THROUGHPUT_MESSAGES / (publishedNanos / 1e9)),
+        deliveries,
+        millis(elapsedNanos),
+        Math.round(deliveries / (elapsedNanos / 1e9)));
+    assertEquals(THROUGHPUT_MESSAGES, nodes.get(0).relay.getStats().published() - publishedBefore);
+  }
+
+  @Test
+  @DisplayName("Presence propagation across nodes")
+  void presencePropagation() throws Exception {
+    long userId = 4242L;
+    long start = System.nanoTime();
+    nodes.get(1).registry.markOnline(userId);
+    awaitTrue(
+        () ->
+            nodes.get(0).registry.isOnlineElsewhere(userId)
+                && nodes.get(2).registry.isOnlineElsewhere(userId),
+        5_000);
+    long onlineNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    nodes.get(1).registry.markOffline(userId);
+    awaitTrue(
+        () ->
+            !nodes.get(0).registry.isOnlineElsewhere(userId)
+                && !nodes.get(2).registry.isOnlineElsewhere(userId),
+        5_000);
+    log.info(
+        "[ws-cluster-bench] presence propagation online={} ms offline={} ms",
+        millis(onlineNanos),
+        millis(System.nanoTime() - start));
+  }
+
+  private List<Node> resetReceivers() {
+    List<Node> receivers = nodes.subList(1, nodes.size());
+    receivers.forEach(
+        node -> {
+          synchronized (node.latenciesNanos) {
+            node.latenciesNanos.clear();
+          }
+        });
+    publishedBefore = nodes.get(0).relay.getStats().published();
+    return receivers;
+  }
+
+  private static String millis(long nanos) {
+    return String.format("%.2f", nanos / 1_000_000.0);
+  }
+
+  private static void awaitTrue(BooleanSupplier condition, long timeoutMillis)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < deadline, "Hết thời gian chờ điều kiện");
+      Thread.sleep(20);
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package com.yourcompany.agritrade.interaction.websocket;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterMessageRelayTest {
+
+  @Mock private StringRedisTemplate redisTemplate;
+  @Mock private RedisMessageListenerContainer listenerContainer;
+  @Mock private ClusterPresenceRegistry presenceRegistry;
+  @Mock private MessageChannel brokerChannel;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private ClusterMessageRelay relay;
+
+  @BeforeEach
+  void setUp() {
+    relay =
+        new ClusterMessageRelay(
+            redisTemplate, listenerContainer, presenceRegistry, objectMapper, brokerChannel);
+    lenient().when(presenceRegistry.isEnabled()).thenReturn(true);
+    lenient().when(presenceRegistry.hasRemoteNodes()).thenReturn(true);
+    lenient().when(presenceRegistry.getNodeId()).thenReturn("node-a");
+  }
+
+  private Message<byte[]> brokerMessage(SimpMessageType type, String destination) {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+    accessor.setDestination(destination);
+    accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+    return MessageBuilder.createMessage(
+        "{\"id\":1}".getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+  }
+
+  @Test
+  @DisplayName("Pre Send - User Destination - Publishes Envelope And Keeps Local Delivery")
+  void preSend_userDestination_publishesEnvelope() throws Exception {
+    Message<byte[]> message =
+        brokerMessage(SimpMessageType.MESSAGE, "/user/b@example.com/queue/messages");
+
+    assertSame(message, relay.preSend(message, brokerChannel));
+
+    ArgumentCaptor<String> jsonCaptor = ArgumentCaptor.forClass(String.class);
+    verify(redisTemplate)
+        .convertAndSend(eq(ClusterMessageRelay.FANOUT_CHANNEL), jsonCaptor.capture());
+    ClusterMessageRelay.Envelope envelope =
+        objectMapper.readValue(jsonCaptor.getValue(), ClusterMessageRelay.Envelope.class);
+    assertEquals("node-a", envelope.origin());
+    assertEquals("/user/b@example.com/queue/messages", envelope.destination());
+    assertEquals("application/json", envelope.contentType());
+    assertEquals("{\"id\":1}", new String(envelope.payload(), StandardCharsets.UTF_8));
+    assertEquals(1, relay.getStats().published());
+  }
+
+  @Test
+  @DisplayName("Pre Send - Resolved Session Destination Or Subscribe - Not Relayed")
+  void preSend_resolvedOrSubscribe_notRelayed() {
+    relay.preSend(brokerMessage(SimpMessageType.MESSAGE, "/queue/messages-user123"), brokerChannel);
+    relay.preSend(brokerMessage(SimpMessageType.SUBSCRIBE, "/topic/presence"), brokerChannel);
+
+    verifyNoInteractions(redisTemplate);
+  }
+
+  @Test
+  @DisplayName("Pre Send - Already Relayed Or Single Node - Not Relayed")
+  void preSend_relayedOrSingleNode_notRelayed() {
+    SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+    accessor.setDestination("/topic/presence");
+    accessor.setHeader(ClusterMessageRelay.ORIGIN_HEADER, "node-b");
+    relay.preSend(
+        MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), brokerChannel);
+
+    when(presenceRegistry.hasRemoteNodes()).thenReturn(false);
+    relay.preSend(brokerMessage(SimpMessageType.MESSAGE, "/topic/presence"), brokerChannel);
+
+    verifyNoInteractions(redisTemplate);
+    assertEquals(1, relay.getStats().skipped());
+  }
+
+  @Test
+  @DisplayName("Fan Out Message From Other Node - Re-injected Into Broker Channel")
+  void handleFanOutMessage_fromOtherNode_reinjects() throws Exception {
+    byte[] body =
+        objectMapper.writeValueAsBytes(
+            new ClusterMessageRelay.Envelope(
+                "node-b",
+                "/user/a@example.com/queue/messages",
+                "application/json",
+                "{\"id\":2}".getBytes(StandardCharsets.UTF_8)));
+
+    relay.handleFanOutMessage(body);
+
+    ArgumentCaptor<Message<?>> messageCaptor = ArgumentCaptor.forClass(Message.class);
+    verify(brokerChannel).send(messageCaptor.capture());
+    Message<?> injected = messageCaptor.getValue();
+    assertEquals(
+        "/user/a@example.com/queue/messages",
+        SimpMessageHeaderAccessor.getDestination(injected.getHeaders()));
+    assertEquals("node-b", injected.getHeaders().get(ClusterMessageRelay.ORIGIN_HEADER));
+    assertArrayEquals(
+        "{\"id\":2}".getBytes(StandardCharsets.UTF_8), (byte[]) injected.getPayload());
+    // Message đã relay không bị phát lại
+    relay.preSend(injected, brokerChannel);
+    verifyNoInteractions(redisTemplate);
+  }
+
+  @Test
+  @DisplayName("Fan Out Message From This Node - Ignored")
+  void handleFanOutMessage_ownMessage_ignored() throws Exception {
+    byte[] body =
+        objectMapper.writeValueAsBytes(
+            new ClusterMessageRelay.Envelope("node-a", "/topic/presence", null, new byte[0]));
+
+    relay.handleFanOutMessage(body);
+    relay.handleFanOutMessage("not json".getBytes(StandardCharsets.UTF_8));
+
+    verifyNoInteractions(brokerChannel);
+  }
+}
@@ -0,0 +1,121 @@
+package com.yourcompany.agritrade.interaction.websocket;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterPresenceRegistryTest {
+
+  @Mock private StringRedisTemplate redisTemplate;
+  @Mock private SetOperations<String, String> setOperations;
+  @Mock private ZSetOperations<String, String> zSetOperations;
+  @Mock private RedisMessageListenerContainer listenerContainer;
+  @Mock private ApplicationEventPublisher eventPublisher;
+
+  private ClusterPresenceRegistry registry;
+
+  @BeforeEach
+  void setUp() {
+    registry =
+        new ClusterPresenceRegistry(
+            redisTemplate, listenerContainer, eventPublisher, true, "node-a", 30);
+  }
+
+  // Giả lập cụm gồm node-a và node-b, node-b đang giữ các user cho trước
+  private void stubClusterWithNodeB(Set<String> nodeBUsers) {
+    when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+    when(zSetOperations.rangeByScore(
+            eq(ClusterPresenceRegistry.NODES_KEY), anyDouble(), anyDouble()))
+        .thenReturn(Set.of("node-a", "node-b"));
+    lenient().when(redisTemplate.opsForSet()).thenReturn(setOperations);
+    when(setOperations.members("ws:presence:node:node-b")).thenReturn(nodeBUsers);
+  }
+
+  @Test
+  @DisplayName("Mark Online - Publishes Presence Event Once Per Local Transition")
+  void markOnline_publishesOncePerTransition() {
+    when(redisTemplate.opsForSet()).thenReturn(setOperations);
+
+    registry.markOnline(7L);
+    registry.markOnline(7L);
+
+    verify(setOperations).add("ws:presence:node:node-a", "7");
+    verify(redisTemplate).convertAndSend(ClusterPresenceRegistry.PRESENCE_CHANNEL, "1:node-a:7");
+  }
+
+  @Test
+  @DisplayName("Presence Message From Other Node - Updates Remote Copy")
+  void handlePresenceMessage_updatesRemoteCopy() {
+    registry.handlePresenceMessage("1:node-b:7");
+    assertTrue(registry.isOnlineElsewhere(7L));
+    assertTrue(registry.hasRemoteNodes());
+
+    registry.handlePresenceMessage("0:node-b:7");
+    assertFalse(registry.isOnlineElsewhere(7L));
+
+    registry.handlePresenceMessage("1:node-a:8"); // Message của chính node này
+    registry.handlePresenceMessage("garbage");
+    assertFalse(registry.isOnlineElsewhere(8L));
+  }
+
+  @Test
+  @DisplayName("Heartbeat - Loads Users Of Live Remote Nodes")
+  void heartbeat_loadsRemoteNodes() {
+    stubClusterWithNodeB(Set.of("5", "6"));
+
+    registry.heartbeat();
+
+    verify(zSetOperations).add(eq(ClusterPresenceRegistry.NODES_KEY), eq("node-a"), anyDouble());
+    assertEquals(Set.of(5L, 6L), registry.getRemoteOnlineUserIds());
+    verify(eventPublisher, never()).publishEvent(any());
+  }
+
+  @Test
+  @DisplayName("Heartbeat - Node Gone - Publishes Offline Event For Its Users")
+  void heartbeat_departedNode_publishesOfflineEvent() {
+    registry.handlePresenceMessage("1:node-c:9");
+    registry.handlePresenceMessage("1:node-c:5");
+    stubClusterWithNodeB(Set.of("5"));
+
+    registry.heartbeat();
+
+    assertFalse(registry.isOnlineElsewhere(9L));
+    assertTrue(registry.isOnlineElsewhere(5L)); // Vẫn online trên node-b
+    ArgumentCaptor<ClusterPresenceRegistry.RemoteUsersOfflineEvent> eventCaptor =
+        ArgumentCaptor.forClass(ClusterPresenceRegistry.RemoteUsersOfflineEvent.class);
+    verify(eventPublisher).publishEvent(eventCaptor.capture());
+    assertEquals(Set.of(9L), eventCaptor.getValue().userIds());
+  }
+
+  @Test
+  @DisplayName("Disabled - Never Touches Redis")
+  void disabled_neverTouchesRedis() {
+    ClusterPresenceRegistry disabled =
+        new ClusterPresenceRegistry(
+            redisTemplate, listenerContainer, eventPublisher, false, "node-a", 30);
+
+    disabled.subscribe();
+    disabled.markOnline(1L);
+    disabled.heartbeat();
+    disabled.handlePresenceMessage("1:node-b:2");
+
+    assertFalse(disabled.isOnlineElsewhere(2L));
+    assertFalse(disabled.hasRemoteNodes());
+    verifyNoInteractions(redisTemplate, listenerContainer);
+  }
+}
@@ -6,10 +6,13 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import com.yourcompany.agritrade.config.security.AuthenticatedUser;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -30,6 +33,7 @@ import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.messaging.support.GenericMessage;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.socket.messaging.SessionConnectEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 import org.springframework.web.socket.messaging.SessionSubscribeEvent;
@@ -40,6 +44,7 @@ class WebSocketEventListenerTest {
 
   @Mock private SimpMessageSendingOperations messagingTemplate;
   @Mock private UserRepository userRepository;
+  @Mock private ClusterPresenceRegistry clusterPresenceRegistry;
 
   // Sử dụng @Spy cho các Map để có thể kiểm tra và reset trạng thái của chúng
   // Tuy nhiên, việc spy ConcurrentHashMap có thể phức tạp.
@@ -163,6 +168,19 @@ class WebSocketEventListenerTest {
           .convertAndSend(eq("/topic/presence"), any(Map.class)); // Không broadcast lại
     }
 
+    @Test
+    @DisplayName("Handle Connect - User Online On Another Node - Should Not Broadcast Again")
+    void handleWebSocketConnectListener_userOnlineOnAnotherNode_shouldNotBroadcast() {
+      when(clusterPresenceRegistry.isOnlineElsewhere(testUser1.getId())).thenReturn(true);
+
+      webSocketEventListener.handleWebSocketConnectListener(
+          createConnectEvent(mockAuth1, SESSION_ID_1));
+
+      assertTrue(onlineUsersStatusMap.getOrDefault(testUser1.getId(), false));
+      verify(clusterPresenceRegistry).markOnline(testUser1.getId());
+      verify(messagingTemplate, never()).convertAndSend(eq("/topic/presence"), any(Map.class));
+    }
+
     @Test
     @DisplayName("Handle Connect - User Not Found in DB - Should Log Error")
     void handleWebSocketConnectListener_userNotFoundInDb_shouldLogError() {
@@ -240,6 +258,23 @@ class WebSocketEventListenerTest {
       verify(messagingTemplate, never()).convertAndSend(eq("/topic/presence"), any(Map.class));
     }
 
+    @Test
+    @DisplayName("Handle Disconnect - Last Local Session, Still Online On Another Node")
+    void handleWebSocketDisconnectListener_stillOnlineOnAnotherNode_shouldNotBroadcastOffline() {
+      webSocketEventListener.handleWebSocketConnectListener(
+          createConnectEvent(mockAuth1, SESSION_ID_1));
+      reset(messagingTemplate);
+      when(clusterPresenceRegistry.isOnlineElsewhere(testUser1.getId())).thenReturn(true);
+
+      webSocketEventListener.handleWebSocketDisconnectListener(
+          createDisconnectEvent(null, SESSION_ID_1, "1000"));
+
+      assertFalse(onlineUsersStatusMap.containsKey(testUser1.getId()));
+      verify(clusterPresenceRegistry).markOffline(testUser1.getId());
+      verify(messagingTemplate, never()).convertAndSend(eq("/topic/presence"), any(Map.class));
+      assertTrue(webSocketEventListener.isUserOnline(testUser1.getId()));
+    }
+
     @Test
     @DisplayName("Handle Disconnect - SessionId Not Found - Should Log Warn")
     void handleWebSocketDisconnectListener_sessionIdNotFound_shouldLogWarn() {
@@ -286,6 +321,235 @@ class WebSocketEventListenerTest {
       assertFalse(onlineIds.contains(testUser1.getId()));
       assertTrue(onlineIds.contains(testUser2.getId()));
     }
+
+    @Test
+    @DisplayName("getOnlineUserIds - Includes Users Online On Other Nodes")
+    void getOnlineUserIds_includesRemoteUsers() {
+      when(clusterPresenceRegistry.getRemoteOnlineUserIds()).thenReturn(Set.of(99L));
+      webSocketEventListener.handleWebSocketConnectListener(
+          createConnectEvent(mockAuth1, SESSION_ID_1));
+
+      assertEquals(Set.of(testUser1.getId(), 99L), webSocketEventListener.getOnlineUserIds());
+    }
+
+    @Test
+    @DisplayName("Remote Users Offline - Broadcasts Locally Only For Users Not Connected Here")
+    void handleRemoteUsersOffline_shouldBroadcastLocallyOnly() {
+      webSocketEventListener.handleWebSocketConnectListener(
+          createConnectEvent(mockAuth1, SESSION_ID_1));
+      reset(messagingTemplate);
+
+      webSocketEventListener.handleRemoteUsersOffline(
+          new ClusterPresenceRegistry.RemoteUsersOfflineEvent(
+              Set.of(testUser1.getId(), testUser2.getId())));
+
+      ArgumentCaptor<Map<String, Object>> payloadCaptor = ArgumentCaptor.forClass(Map.class);
+      verify(messagingTemplate)
+          .convertAndSend(
+              eq("/topic/presence"),
+              payloadCaptor.capture(),
+              eq(Map.<String, Object>of(ClusterMessageRelay.ORIGIN_HEADER, "local")));
+      assertEquals(testUser2.getId(), payloadCaptor.getValue().get("userId"));
+      assertFalse((Boolean) payloadCaptor.getValue().get("online"));
+    }
+  }
+
+  @Nested
+  @DisplayName("Session Index And Presence Debounce Tests")
+  class SessionIndexAndDebounceTests {
+    private Authentication authenticatedUserPrincipal(User user) {
+      AuthenticatedUser principal =
+          new AuthenticatedUser(user.getId(), user.getEmail(), List.of("ROLE_CONSUMER"));
+      return new UsernamePasswordAuthenticationToken(principal, null, Collections.emptyList());
+    }
+
+    @Test
+    @DisplayName("Connect/Disconnect - Principal Carries User Id - No DB Lookup")
+    void connectAndDisconnect_principalWithUserId_shouldNotQueryDb() {
+      Authentication auth = authenticatedUserPrincipal(testUser1);
+
+      webSocketEventListener.handleWebSocketConnectListener(createConnectEvent(auth, SESSION_ID_1));
+      webSocketEventListener.handleWebSocketDisconnectListener(
+          createDisconnectEvent(null, SESSION_ID_1, "1000"));
+
+      verifyNoInteractions(userRepository);
+      ArgumentCaptor<Map<String, Object>> payloadCaptor = ArgumentCaptor.forClass(Map.class);
+      verify(messagingTemplate, times(2))
+          .convertAndSend(eq("/topic/presence"), payloadCaptor.capture());
+      assertEquals(testUser1.getEmail(), payloadCaptor.getAllValues().get(1).get("username"));
+      assertFalse(webSocketEventListener.isUserOnline(testUser1.getId()));
+    }
+
+    @Test
+    @DisplayName("Disconnect - Unknown Session Among Many Users - Leaves Others Untouched")
+    void disconnect_unknownSession_leavesOthersUntouched() {
+      webSocketEventListener.handleWebSocketConnectListener(
+          createConnectEvent(authenticatedUserPrincipal(testUser1), SESSION_ID_1));
+      webSocketEventListener.handleWebSocketConnectListener(
+          createConnectEvent(authenticatedUserPrincipal(testUser2), SESSION_ID_2));
+
+      webSocketEventListener.handleWebSocketDisconnectListener(
+          createDisconnectEvent(null, "unknown_session", "1000"));
+
+      assertEquals(Set.of(SESSION_ID_1), userSessionsMap.get(testUser1.getId()));
+      assertEquals(Set.of(SESSION_ID_2), userSessionsMap.get(testUser2.getId()));
+    }
+
+    @Test
+    @DisplayName("Reconnect Racing Last Disconnect - User Stays Online Locally And In Cluster")
+    void disconnectLastSession_racingReconnect_keepsUserOnline() throws Exception {
+      Authentication auth = authenticatedUserPrincipal(testUser1);
+      webSocketEventListener.handleWebSocketConnectListener(createConnectEvent(auth, SESSION_ID_1));
+      reset(messagingTemplate);
+
+      // Connect của session mới chạy đúng lúc disconnect của session cuối đang đánh dấu offline
+      Thread[] reconnect = new Thread[1];
+      doAnswer(
+              inv -> {
+                reconnect[0] =
+                    Thread.ofPlatform()
+                        .start(
+                            () ->
+                                webSocketEventListener.handleWebSocketConnectListener(
+                                    createConnectEvent(auth, SESSION_ID_2)));
+                reconnect[0].join(200); // Connect phải chờ disconnect xong mới được chạy tiếp
+                return null;
+              })
+          .when(clusterPresenceRegistry)
+          .markOffline(testUser1.getId());
+
+      webSocketEventListener.handleWebSocketDisconnectListener(
+          createDisconnectEvent(null, SESSION_ID_1, "1000"));
+      reconnect[0].join(5000);
+
+      assertEquals(Set.of(SESSION_ID_2), userSessionsMap.get(testUser1.getId()));
+      assertTrue(webSocketEventListener.isUserOnline(testUser1.getId()));
+      var order = inOrder(clusterPresenceRegistry);
+      order.verify(clusterPresenceRegistry).markOffline(testUser1.getId());
+      order.verify(clusterPresenceRegistry).markOnline(testUser1.getId());
+      ArgumentCaptor<Map<String, Object>> payloadCaptor = ArgumentCaptor.forClass(Map.class);
+      verify(messagingTemplate, atLeastOnce())
+          .convertAndSend(eq("/topic/presence"), payloadCaptor.capture());
+      List<Map<String, Object>> payloads = payloadCaptor.getAllValues();
+      assertTrue((Boolean) payloads.get(payloads.size() - 1).get("online"));
+    }
+
+    private boolean hasSession(String sessionId) {
+      return userSessionsMap.getOrDefault(testUser1.getId(), Set.of()).contains(sessionId);
+    }
+
+    @Test
+    @DisplayName("Slow Cluster Registry - Session Map Not Locked While Publishing Presence")
+    void disconnectLastSession_whileRegistrySlow_reconnectRegistersSession() throws Exception {
+      Authentication auth = authenticatedUserPrincipal(testUser1);
+      webSocketEventListener.handleWebSocketConnectListener(createConnectEvent(auth, SESSION_ID_1));
+
+      // Redis chậm trong markOffline: connect mới của cùng user vẫn ghi nhận được session ngay
+      boolean[] registeredDuringRedisCall = {false};
+      Thread[] reconnect = new Thread[1];
+      doAnswer(
+              inv -> {
+                reconnect[0] =
+                    Thread.ofPlatform()
+                        .start(
+                            () ->
+                                webSocketEventListener.handleWebSocketConnectListener(
+                                    createConnectEvent(auth, SESSION_ID_2)));
+                long deadline = System.currentTimeMillis() + 2000;
+                while (System.currentTimeMillis() < deadline && !hasSession(SESSION_ID_2)) {
+                  Thread.sleep(5);
+                }
+                registeredDuringRedisCall[0] = hasSession(SESSION_ID_2);
+                return null;
+              })
+          .when(clusterPresenceRegistry)
+          .markOffline(testUser1.getId());
+
+      webSocketEventListener.handleWebSocketDisconnectListener(
+          createDisconnectEvent(null, SESSION_ID_1, "1000"));
+      reconnect[0].join(5000);
+
+      assertTrue(registeredDuringRedisCall[0]);
+      assertTrue(webSocketEventListener.isUserOnline(testUser1.getId()));
+      var order = inOrder(clusterPresenceRegistry);
+      order.verify(clusterPresenceRegistry).markOffline(testUser1.getId());
+      order.verify(clusterPresenceRegistry).markOnline(testUser1.getId());
+    }
+
+    @Test
+    @DisplayName("Reconnect During Offline Broadcast - Online Notice Is Sent Last")
+    @SuppressWarnings("unchecked")
+    void disconnectBroadcast_racingReconnect_sendsOnlineLast() throws Exception {
+      Authentication auth = authenticatedUserPrincipal(testUser1);
+      webSocketEventListener.handleWebSocketConnectListener(createConnectEvent(auth, SESSION_ID_1));
+      reset(messagingTemplate);
+
+      // Connect mới chạy đúng lúc thông báo OFFLINE đang được gửi (đã qua bước kiểm tra trạng thái)
+      List<Boolean> delivered = Collections.synchronizedList(new ArrayList<>());
+      Thread[] reconnect = new Thread[1];
+      doAnswer(
+              inv -> {
+                boolean online = (Boolean) inv.getArgument(1, Map.class).get("online");
+                if (!online && reconnect[0] == null) {
+                  reconnect[0] =
+                      Thread.ofPlatform()
+                          .start(
+                              () ->
+                                  webSocketEventListener.handleWebSocketConnectListener(
+                                      createConnectEvent(auth, SESSION_ID_2)));
+                  reconnect[0].join(200); // ONLINE phải chờ OFFLINE gửi xong
+                }
+                delivered.add(online);
+                return null;
+              })
+          .when(messagingTemplate)
+          .convertAndSend(eq("/topic/presence"), any(Map.class));
+
+      webSocketEventListener.handleWebSocketDisconnectListener(
+          createDisconnectEvent(null, SESSION_ID_1, "1000"));
+      reconnect[0].join(5000);
+
+      assertEquals(List.of(false, true), delivered);
+      assertTrue(webSocketEventListener.isUserOnline(testUser1.getId()));
+    }
+
+    @Test
+    @DisplayName("Debounce - Reconnect Within Window - No Presence Broadcast")
+    void debounce_reconnectFlap_shouldNotBroadcast() throws InterruptedException {
+      webSocketEventListener.handleWebSocketConnectListener(
+          createConnectEvent(mockAuth1, SESSION_ID_1));
+      reset(messagingTemplate);
+      ReflectionTestUtils.setField(webSocketEventListener, "presenceDebounceMillis", 20L);
+
+      webSocketEventListener.handleWebSocketDisconnectListener(
+          createDisconnectEvent(null, SESSION_ID_1, "1000"));
+      webSocketEventListener.handleWebSocketConnectListener(
+          createConnectEvent(mockAuth1, SESSION_ID_2));
+      Thread.sleep(30);
+      webSocketEventListener.flushPresenceBroadcasts();
+
+      verify(messagingTemplate, never()).convertAndSend(eq("/topic/presence"), any(Map.class));
+      assertTrue(webSocketEventListener.isUserOnline(testUser1.getId()));
+    }
+
+    @Test
+    @DisplayName("Debounce - Single Transition - Broadcast Once After Window")
+    void debounce_singleTransition_shouldBroadcastAfterWindow() throws InterruptedException {
+      ReflectionTestUtils.setField(webSocketEventListener, "presenceDebounceMillis", 20L);
+
+      webSocketEventListener.handleWebSocketConnectListener(
+          createConnectEvent(mockAuth1, SESSION_ID_1));
+      webSocketEventListener.flushPresenceBroadcasts(); // Chưa hết cửa sổ
+      verify(messagingTemplate, never()).convertAndSend(eq("/topic/presence"), any(Map.class));
+
+      Thread.sleep(30);
+      webSocketEventListener.flushPresenceBroadcasts();
+      webSocketEventListener.flushPresenceBroadcasts();
+
+      ArgumentCaptor<Map<String, Object>> payloadCaptor = ArgumentCaptor.forClass(Map.class);
+      verify(messagingTemplate).convertAndSend(eq("/topic/presence"), payloadCaptor.capture());
+      assertTrue((Boolean) payloadCaptor.getValue().get("online"));
+    }
   }
 
   // Test cho handleWebSocketSubscribeListener và handleWebSocketUnsubscribeListener
@@ -0,0 +1,339 @@
+package com.yourcompany.agritrade.notification.scheduler;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.yourcompany.agritrade.common.model.NotificationType;
+import com.yourcompany.agritrade.notification.domain.NotificationOutbox;
+import com.yourcompany.agritrade.notification.domain.OutboxChannel;
+import com.yourcompany.agritrade.notification.domain.OutboxStatus;
+import com.yourcompany.agritrade.notification.repository.NotificationOutboxRepository;
+import com.yourcompany.agritrade.notification.service.EmailService;
+import com.yourcompany.agritrade.notification.service.EmailService.OutgoingEmail;
+import com.yourcompany.agritrade.notification.service.InAppNotificationService;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.MailSendException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationOutboxDispatcherTest {
+
+  @Mock private NotificationOutboxRepository outboxRepository;
+  @Mock private InAppNotificationService inAppNotificationService;
+  @Mock private EmailService emailService;
+  @Mock private PlatformTransactionManager transactionManager;
+
+  private NotificationOutboxDispatcher dispatcher;
+  private ExecutorService emailExecutor;
+
+  @BeforeEach
+  void setUp() {
+    dispatcher =
+        new NotificationOutboxDispatcher(
+            outboxRepository, inAppNotificationService, emailService, transactionManager);
+    ReflectionTestUtils.setField(dispatcher, "inAppBatchSize", 500);
+    ReflectionTestUtils.setField(dispatcher, "emailBatchSize", 20);
+    ReflectionTestUtils.setField(dispatcher, "leaseSeconds", 120L);
+    ReflectionTestUtils.setField(dispatcher, "maxAttempts", 3);
+    ReflectionTestUtils.setField(dispatcher, "retryBaseDelayMillis", 5000L);
+    ReflectionTestUtils.setField(dispatcher, "retryMaxDelayMillis", 60000L);
+    // Không khởi động luồng dispatcher; test gọi từng lượt trực tiếp
+    emailExecutor = Executors.newFixedThreadPool(2);
+    ReflectionTestUtils.setField(dispatcher, "emailExecutor", emailExecutor);
+    ReflectionTestUtils.setField(dispatcher, "emailSlots", new Semaphore(2));
+  }
+
+  @AfterEach
+  void tearDown() {
+    emailExecutor.shutdownNow();
+  }
+
+  private static NotificationOutbox entry(Long id, OutboxChannel channel, int attempts) {
+    NotificationOutbox entry = new NotificationOutbox();
+    entry.setId(id);
+    entry.setChannel(channel);
+    entry.setStatus(OutboxStatus.PROCESSING);
+    entry.setRecipientId(id);
+    entry.setRecipientEmail("user" + id + "@example.com");
+    entry.setNotificationType(NotificationType.ORDER_PLACED);
+    entry.setSubject("Subject " + id);
+    entry.setBody("Body " + id);
+    entry.setAttempts(attempts);
+    return entry;
+  }
+
+  private void stubClaim(OutboxChannel channel, List<NotificationOutbox> entries) {
+    List<Long> ids = entries.stream().map(NotificationOutbox::getId).toList();
+    when(outboxRepository.lockDueIds(eq(channel.name()), any(LocalDateTime.class), anyInt()))
+        .thenReturn(ids);
+    when(outboxRepository.findByClaimTokenOrderByIdAsc(anyString())).thenReturn(entries);
+  }
+
+  private void awaitEmails() throws InterruptedException {
+    emailExecutor.shutdown();
+    assertTrue(emailExecutor.awaitTermination(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  @DisplayName("In-App - Claims Batch, Marks Sent And Delivers In One Transaction")
+  void dispatchInApp_deliversWholeBatch() {
+    List<NotificationOutbox> entries =
+        List.of(entry(1L, OutboxChannel.IN_APP, 0), entry(2L, OutboxChannel.IN_APP, 0));
+    stubClaim(OutboxChannel.IN_APP, entries);
+    when(outboxRepository.markSent(
+            anyCollection(),
+            anyString(),
+            any(LocalDateTime.class),
+            eq(OutboxStatus.SENT),
+            eq(OutboxStatus.PROCESSING)))
+        .thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(0)).size());
+
+    assertEquals(2, dispatcher.dispatchInApp());
+
+    ArgumentCaptor<String> tokenCaptor = ArgumentCaptor.forClass(String.class);
+    verify(outboxRepository)
+        .claim(
+            eq(List.of(1L, 2L)),
+            tokenCaptor.capture(),
+            any(LocalDateTime.class),
+            eq(OutboxStatus.PROCESSING));
+    verify(outboxRepository)
+        .markSent(
+            eq(List.of(1L, 2L)),
+            eq(tokenCaptor.getValue()),
+            any(LocalDateTime.class),
+            eq(OutboxStatus.SENT),
+            eq(OutboxStatus.PROCESSING));
+    verify(inAppNotificationService).deliver(entries);
+    assertEquals(2, dispatcher.getStats().inAppDelivered());
+  }
+
+  @Test
+  @DisplayName("In-App - Nothing Due - Does Not Claim")
+  void dispatchInApp_whenNothingDue_returnsZero() {
+    when(outboxRepository.lockDueIds(anyString(), any(LocalDateTime.class), anyInt()))
+        .thenReturn(List.of());
+
+    assertEquals(0, dispatcher.dispatchInApp());
+
+    verify(outboxRepository, never()).claim(anyCollection(), anyString(), any(), any());
+    verifyNoInteractions(inAppNotificationService);
+  }
+
+  @Test
+  @DisplayName("In-App - Batch Failure - Retries One By One And Schedules Retry For Bad Entry")
+  void dispatchInApp_whenBatchFails_fallsBackToSingleEntries() {
+    NotificationOutbox good = entry(1L, OutboxChannel.IN_APP, 0);
+    NotificationOutbox bad = entry(2L, OutboxChannel.IN_APP, 0);
+    stubClaim(OutboxChannel.IN_APP, List.of(good, bad));
+    when(outboxRepository.markSent(anyCollection(), anyString(), any(), any(), any()))
+        .thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(0)).size());
+    doAnswer(
+            invocation -> {
+              List<NotificationOutbox> batch = invocation.getArgument(0);
+              if (batch.contains(bad)) {
+                throw new IllegalStateException("recipient deleted");
+              }
+              return null;
+            })
+        .when(inAppNotificationService)
+        .deliver(anyList());
+    when(outboxRepository.markAttemptFailed(
+            eq(2L), anyString(), eq(OutboxStatus.PENDING), any(LocalDateTime.class), anyString()))
+        .thenReturn(1);
+
+    dispatcher.dispatchInApp();
+
+    verify(inAppNotificationService).deliver(List.of(good));
+    assertEquals(1, dispatcher.getStats().inAppDelivered());
+    assertEquals(1, dispatcher.getStats().retried());
+  }
+
+  @Test
+  @DisplayName("Email - Few Entries - Spread One Batch Per Free Slot")
+  void dispatchEmail_spreadsEntriesOverFreeSlots() throws Exception {
+    List<NotificationOutbox> entries =
+        List.of(entry(5L, OutboxChannel.EMAIL, 0), entry(6L, OutboxChannel.EMAIL, 0));
+    stubClaim(OutboxChannel.EMAIL, entries);
+    when(outboxRepository.markSent(anyCollection(), anyString(), any(), any(), any()))
+        .thenReturn(1);
+
+    assertEquals(2, dispatcher.dispatchEmail());
+    awaitEmails();
+
+    // 2 slot trống x 20 email mỗi lô
+    verify(outboxRepository).lockDueIds(eq("EMAIL"), any(LocalDateTime.class), eq(40));
+    verify(emailService)
+        .deliverBatch(List.of(new OutgoingEmail("user5@example.com", "Subject 5", "Body 5")));
+    verify(emailService)
+        .deliverBatch(List.of(new OutgoingEmail("user6@example.com", "Subject 6", "Body 6")));
+    assertEquals(2, dispatcher.getStats().emailDelivered());
+  }
+
+  @Test
+  @DisplayName("Email - Batch With One Rejected Email - Others Marked Sent Together")
+  void dispatchEmail_whenOneEmailInBatchFails_retriesOnlyThatEntry() throws Exception {
+    ReflectionTestUtils.setField(dispatcher, "emailSlots", new Semaphore(1));
+    List<NotificationOutbox> entries =
+        List.of(
+            entry(8L, OutboxChannel.EMAIL, 0),
+            entry(9L, OutboxChannel.EMAIL, 0),
+            entry(10L, OutboxChannel.EMAIL, 0));
+    stubClaim(OutboxChannel.EMAIL, entries);
+    when(emailService.deliverBatch(anyList()))
+        .thenReturn(Map.of(1, new MailSendException("550 mailbox unavailable")));
+    when(outboxRepository.markAttemptFailed(
+            eq(9L), anyString(), eq(OutboxStatus.PENDING), any(LocalDateTime.class), anyString()))
+        .thenReturn(1);
+    when(outboxRepository.markSent(anyCollection(), anyString(), any(), any(), any()))
+        .thenReturn(2);
+
+    assertEquals(3, dispatcher.dispatchEmail());
+    awaitEmails();
+
+    ArgumentCaptor<List<OutgoingEmail>> batchCaptor = ArgumentCaptor.forClass(List.class);
+    verify(emailService).deliverBatch(batchCaptor.capture());
+    assertEquals(3, batchCaptor.getValue().size());
+    verify(outboxRepository)
+        .markSent(
+            eq(List.of(8L, 10L)),
+            anyString(),
+            any(LocalDateTime.class),
+            eq(OutboxStatus.SENT),
+            eq(OutboxStatus.PROCESSING));
+    assertEquals(2, dispatcher.getStats().emailDelivered());
+    assertEquals(1, dispatcher.getStats().retried());
+  }
+
+  @Test
+  @DisplayName("Email - No Free Slot - Does Not Claim")
+  void dispatchEmail_whenNoFreeSlot_doesNotClaim() {
+    ReflectionTestUtils.setField(dispatcher, "emailSlots", new Semaphore(0));
+
+    assertEquals(0, dispatcher.dispatchEmail());
+
+    verifyNoInteractions(outboxRepository);
+  }
+
+  @Test
+  @DisplayName("Email - Last Attempt Fails - Marked FAILED")
+  void dispatchEmail_whenMaxAttemptsReached_marksFailed() throws Exception {
+    stubClaim(OutboxChannel.EMAIL, List.of(entry(7L, OutboxChannel.EMAIL, 2)));
+    when(emailService.deliverBatch(anyList())).thenThrow(new MailSendException("SMTP down"));
+    when(outboxRepository.markAttemptFailed(
+            eq(7L), anyString(), eq(OutboxStatus.FAILED), any(LocalDateTime.class), anyString()))
+        .thenReturn(1);
+
+    dispatcher.dispatchEmail();
+    awaitEmails();
+
+    verify(outboxRepository, never()).markSent(anyCollection(), anyString(), any(), any(), any());
+    assertEquals(1, dispatcher.getStats().failed());
+  }
+
+  @Test
+  @DisplayName("Email - Sensitive Email Deleted Right After Delivery")
+  void dispatchEmail_whenSensitiveEmailSent_deletesEntry() throws Exception {
+    ReflectionTestUtils.setField(dispatcher, "emailSlots", new Semaphore(1));
+    NotificationOutbox reset = entry(12L, OutboxChannel.EMAIL, 0);
+    reset.setSensitive(true);
+    stubClaim(OutboxChannel.EMAIL, List.of(entry(11L, OutboxChannel.EMAIL, 0), reset));
+    when(emailService.deliverBatch(anyList())).thenReturn(Map.of());
+    when(outboxRepository.markSent(anyCollection(), anyString(), any(), any(), any()))
+        .thenReturn(1);
+    when(outboxRepository.deleteSent(anyCollection(), anyString(), any())).thenReturn(1);
+
+    dispatcher.dispatchEmail();
+    awaitEmails();
+
+    verify(outboxRepository)
+        .markSent(
+            eq(List.of(11L)),
+            anyString(),
+            any(LocalDateTime.class),
+            eq(OutboxStatus.SENT),
+            eq(OutboxStatus.PROCESSING));
+    verify(outboxRepository).deleteSent(eq(List.of(12L)), anyString(), eq(OutboxStatus.PROCESSING));
+    assertEquals(2, dispatcher.getStats().emailDelivered());
+    assertEquals(0, dispatcher.getStats().leaseLost());
+  }
+
+  @Test
+  @DisplayName("Email - Sensitive Email Given Up - Body Redacted")
+  void dispatchEmail_whenSensitiveEmailGivenUp_redactsBody() throws Exception {
+    NotificationOutbox reset = entry(13L, OutboxChannel.EMAIL, 2);
+    reset.setSensitive(true);
+    stubClaim(OutboxChannel.EMAIL, List.of(reset));
+    when(emailService.deliverBatch(anyList())).thenThrow(new MailSendException("SMTP down"));
+    when(outboxRepository.markAttemptFailed(
+            eq(13L), anyString(), eq(OutboxStatus.FAILED), any(LocalDateTime.class), anyString()))
+        .thenReturn(1);
+
+    dispatcher.dispatchEmail();
+    awaitEmails();
+
+    verify(outboxRepository).redactBody(13L, NotificationOutboxDispatcher.REDACTED_BODY);
+  }
+
+  @Test
+  @DisplayName("Email - Ordinary Email Given Up - Body Kept")
+  void dispatchEmail_whenOrdinaryEmailGivenUp_keepsBody() throws Exception {
+    stubClaim(OutboxChannel.EMAIL, List.of(entry(14L, OutboxChannel.EMAIL, 2)));
+    when(emailService.deliverBatch(anyList())).thenThrow(new MailSendException("SMTP down"));
+    when(outboxRepository.markAttemptFailed(
+            eq(14L), anyString(), eq(OutboxStatus.FAILED), any(LocalDateTime.class), anyString()))
+        .thenReturn(1);
+
+    dispatcher.dispatchEmail();
+    awaitEmails();
+
+    verify(outboxRepository, never()).redactBody(any(), any());
+  }
+
+  @Test
+  @DisplayName("Purge - Deletes Old Sent And Old Failed Entries")
+  void purgeSentEntries_deletesSentAndFailed() {
+    ReflectionTestUtils.setField(dispatcher, "retentionDays", 7);
+    ReflectionTestUtils.setField(dispatcher, "failedRetentionDays", 30);
+    LocalDateTime before = LocalDateTime.now();
+
+    dispatcher.purgeSentEntries();
+
+    ArgumentCaptor<LocalDateTime> sentCutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+    ArgumentCaptor<LocalDateTime> failedCutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+    verify(outboxRepository)
+        .deleteByStatusAndSentAtBefore(eq(OutboxStatus.SENT), sentCutoff.capture());
+    verify(outboxRepository)
+        .deleteByStatusAndCreatedAtBefore(eq(OutboxStatus.FAILED), failedCutoff.capture());
+    assertFalse(sentCutoff.getValue().isBefore(before.minusDays(7)));
+    assertFalse(failedCutoff.getValue().isBefore(before.minusDays(30)));
+    assertTrue(failedCutoff.getValue().isBefore(before.minusDays(29)));
+  }
+
+  @Test
+  @DisplayName("Retry Delay - Doubles Per Attempt Up To Max")
+  void retryDelay_isExponentialAndCapped() {
+    assertEquals(Duration.ofSeconds(5), dispatcher.retryDelay(1));
+    assertEquals(Duration.ofSeconds(10), dispatcher.retryDelay(2));
+    assertEquals(Duration.ofSeconds(40), dispatcher.retryDelay(4));
+    assertEquals(Duration.ofSeconds(60), dispatcher.retryDelay(10));
+  }
+}
@@ -7,6 +7,8 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.notification.service.EmailService.OutgoingEmail;
+import com.yourcompany.agritrade.notification.service.NotificationOutboxService;
 import com.yourcompany.agritrade.ordering.domain.*;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import jakarta.mail.MessagingException;
@@ -14,9 +16,9 @@ import jakarta.mail.Session;
 import jakarta.mail.internet.MimeMessage;
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -26,17 +28,20 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.MailAuthenticationException;
 import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.thymeleaf.context.Context;
 import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
 
 @ExtendWith(MockitoExtension.class)
 class EmailServiceImplTest {
 
   @Mock private JavaMailSender mailSender;
   @Mock private SpringTemplateEngine thymeleafTemplateEngine;
+  @Mock private NotificationOutboxService notificationOutboxService;
 
   @InjectMocks private EmailServiceImpl emailService;
 
@@ -112,23 +117,17 @@ class EmailServiceImplTest {
     // Tuy nhiên, trong các test case thành công, nó phải được gọi.
     verify(thymeleafTemplateEngine).process(eq(expectedTemplateName), contextCaptor.capture());
 
-    ArgumentCaptor<MimeMessage> messageCaptor = ArgumentCaptor.forClass(MimeMessage.class);
-    verify(mailSender).send(messageCaptor.capture());
-
-    MimeMessage sentMessage = messageCaptor.getValue();
-    assertTrue(
-        Arrays.stream(sentMessage.getRecipients(MimeMessage.RecipientType.TO))
-            .anyMatch(addr -> addr.toString().equals(expectedRecipient)),
-        "Expected recipient "
-            + expectedRecipient
-            + " not found in "
-            + Arrays.toString(sentMessage.getRecipients(MimeMessage.RecipientType.TO)));
+    // Email đã render được ghi vào outbox, chưa gửi SMTP ngay
+    ArgumentCaptor<String> subjectCaptor = ArgumentCaptor.forClass(String.class);
+    verify(notificationOutboxService)
+        .enqueueEmail(eq(expectedRecipient), subjectCaptor.capture(), any());
+    verify(mailSender, never()).send(any(MimeMessage.class));
     assertTrue(
-        sentMessage.getSubject().contains(expectedSubjectContains),
+        subjectCaptor.getValue().contains(expectedSubjectContains),
         "Expected subject to contain '"
             + expectedSubjectContains
             + "', but was '"
-            + sentMessage.getSubject()
+            + subjectCaptor.getValue()
             + "'");
   }
 
@@ -145,7 +144,13 @@ class EmailServiceImplTest {
 
       emailService.sendVerificationEmail(testUser, token, verificationUrl);
 
-      verifyEmailSent("mail/email-verification", testUser.getEmail(), "Xác thực tài khoản");
+      // Link chứa token: ghi vào outbox dạng nhạy cảm (không giữ lại sau khi gửi)
+      verify(notificationOutboxService)
+          .enqueueSensitiveEmail(
+              eq(testUser.getEmail()),
+              contains("Xác thực tài khoản"),
+              eq("<html>Verification HTML</html>"));
+      verify(notificationOutboxService, never()).enqueueEmail(anyString(), anyString(), any());
       ArgumentCaptor<Context> contextCaptor = ArgumentCaptor.forClass(Context.class);
       // verify(thymeleafTemplateEngine).process(anyString(), contextCaptor.capture()); // Dòng này
       // thừa nếu đã verify ở trên
@@ -155,6 +160,21 @@ class EmailServiceImplTest {
       assertEquals(verificationUrl, contextCaptor.getValue().getVariable("verificationUrl"));
     }
 
+    @Test
+    @DisplayName("Send Password Reset Email - Enqueued As Sensitive")
+    void sendPasswordResetEmail_enqueuesSensitiveEmail() {
+      when(thymeleafTemplateEngine.process(eq("mail/password-reset"), any(Context.class)))
+          .thenReturn("<html>Reset HTML</html>");
+
+      emailService.sendPasswordResetEmail(
+          testUser, "reset-token", FRONTEND_URL + "/reset?token=reset-token");
+
+      verify(notificationOutboxService)
+          .enqueueSensitiveEmail(
+              eq(testUser.getEmail()), contains("đặt lại mật khẩu"), eq("<html>Reset HTML</html>"));
+      verify(notificationOutboxService, never()).enqueueEmail(anyString(), anyString(), any());
+    }
+
     @Test
     @DisplayName("Send Welcome Email")
     void sendWelcomeEmail_shouldProcessTemplateAndSend() throws MessagingException {
@@ -208,7 +228,7 @@ class EmailServiceImplTest {
       emailService.sendOrderStatusUpdateEmailToBuyer(testOrder, previousStatus);
 
       verify(thymeleafTemplateEngine, never()).process(anyString(), any(Context.class));
-      verify(mailSender, never()).send(any(MimeMessage.class));
+      verify(notificationOutboxService, never()).enqueueEmail(anyString(), anyString(), any());
     }
   }
 
@@ -229,7 +249,7 @@ class EmailServiceImplTest {
     @DisplayName("Send Product Approved Email To Farmer - Farmer Null - Should Not Send")
     void sendProductApprovedEmailToFarmer_whenFarmerNull_shouldNotSend() {
       emailService.sendProductApprovedEmailToFarmer(testProduct, null);
-      verify(mailSender, never()).send(any(MimeMessage.class));
+      verify(notificationOutboxService, never()).enqueueEmail(anyString(), anyString(), any());
     }
 
     @Test
@@ -237,7 +257,7 @@ class EmailServiceImplTest {
     void sendProductApprovedEmailToFarmer_whenFarmerEmailNull_shouldNotSend() {
       testFarmer.setEmail(null);
       emailService.sendProductApprovedEmailToFarmer(testProduct, testFarmer);
-      verify(mailSender, never()).send(any(MimeMessage.class));
+      verify(notificationOutboxService, never()).enqueueEmail(anyString(), anyString(), any());
     }
   }
 
@@ -274,7 +294,7 @@ class EmailServiceImplTest {
     @DisplayName("Send Overdue Invoice Admin Email - No Admins - Should Not Send")
     void sendOverdueInvoiceAdminEmail_whenNoAdmins_shouldNotSend() {
       emailService.sendOverdueInvoiceAdminEmail(testInvoice, Collections.emptyList());
-      verify(mailSender, never()).send(any(MimeMessage.class));
+      verify(notificationOutboxService, never()).enqueueEmail(anyString(), anyString(), any());
     }
   }
 
@@ -286,22 +306,140 @@ class EmailServiceImplTest {
     void sendHtmlEmail_whenRecipientEmailEmpty_shouldNotSend() {
       testUser.setEmail("");
       emailService.sendWelcomeEmail(testUser);
-      verify(mailSender, never()).send(any(MimeMessage.class));
+      verify(notificationOutboxService, never()).enqueueEmail(anyString(), anyString(), any());
     }
 
     @Test
-    @DisplayName("sendHtmlEmail - MailSendException Occurs - Should Log Error")
-    void sendHtmlEmail_whenMailSendException_shouldLogError() { // Bỏ throws MessagingException
-      when(thymeleafTemplateEngine.process(anyString(), any(Context.class)))
-          .thenReturn("<html></html>");
+    @DisplayName("deliver - Builds MIME Message And Sends Via SMTP")
+    void deliver_shouldSendMimeMessage() throws MessagingException {
+      emailService.deliver("user@example.com", "Subject here", "<html>Body</html>");
+
+      ArgumentCaptor<MimeMessage> messageCaptor = ArgumentCaptor.forClass(MimeMessage.class);
+      verify(mailSender).send(messageCaptor.capture());
+      MimeMessage sentMessage = messageCaptor.getValue();
+      assertEquals(
+          "user@example.com",
+          sentMessage.getRecipients(MimeMessage.RecipientType.TO)[0].toString());
+      assertEquals("Subject here", sentMessage.getSubject());
+    }
+
+    @Test
+    @DisplayName("deliver - MailSendException Occurs - Propagates For Retry")
+    void deliver_whenMailSendException_shouldPropagate() {
       doThrow(new MailSendException("Test send failed")) // SỬA: Dùng MailSendException
           .when(mailSender)
           .send(any(MimeMessage.class));
 
-      testUser.setEmail("user@example.com"); // Đảm bảo email hợp lệ để không bị return sớm
-      emailService.sendWelcomeEmail(testUser);
-
+      assertThrows(
+          MailSendException.class,
+          () -> emailService.deliver("user@example.com", "Subject", "<html></html>"));
       verify(mailSender).send(any(MimeMessage.class));
     }
   }
+
+  @Nested
+  @DisplayName("Batch Delivery Tests")
+  class DeliverBatchTests {
+
+    private final List<OutgoingEmail> batch =
+        List.of(
+            new OutgoingEmail("a@example.com", "Subject A", "<html>A</html>"),
+            new OutgoingEmail("b@example.com", "Subject B", "<html>B</html>"),
+            new OutgoingEmail("c@example.com", "Subject C", "<html>C</html>"));
+
+    @BeforeEach
+    void distinctMessages() {
+      when(mailSender.createMimeMessage()).thenAnswer(inv -> new MimeMessage((Session) null));
+    }
+
+    @Test
+    @DisplayName("deliverBatch - Sends Whole Batch In One Call")
+    void deliverBatch_shouldSendAllMessagesInOneCall() throws MessagingException {
+      ArgumentCaptor<MimeMessage[]> messagesCaptor = ArgumentCaptor.forClass(MimeMessage[].class);
+      doNothing().when(mailSender).send(messagesCaptor.capture());
+
+      Map<Integer, Exception> failures = emailService.deliverBatch(batch);
+
+      assertTrue(failures.isEmpty());
+      MimeMessage[] sent = messagesCaptor.getValue();
+      assertEquals(3, sent.length);
+      assertEquals("Subject B", sent[1].getSubject());
+    }
+
+    @Test
+    @DisplayName("deliverBatch - One Message Rejected - Reports Only Its Position")
+    void deliverBatch_whenOneMessageFails_shouldReportItsPosition() {
+      Exception rejected = new MessagingException("550 mailbox unavailable");
+      doAnswer(
+              inv -> {
+                // Mockito trải mảng varargs thành từng tham số
+                MimeMessage third = inv.getArgument(2);
+                throw new MailSendException(Map.of(third, rejected));
+              })
+          .when(mailSender)
+          .send(any(MimeMessage[].class));
+
+      Map<Integer, Exception> failures = emailService.deliverBatch(batch);
+
+      assertEquals(Map.of(2, rejected), failures);
+    }
+
+    @Test
+    @DisplayName("deliverBatch - Connection Level Failure - Reports Every Position")
+    void deliverBatch_whenWholeSendFails_shouldReportAllPositions() {
+      doThrow(new MailAuthenticationException("535 bad credentials"))
+          .when(mailSender)
+          .send(any(MimeMessage[].class));
+
+      Map<Integer, Exception> failures = emailService.deliverBatch(batch);
+
+      assertEquals(3, failures.size());
+      assertTrue(
+          failures.values().stream().allMatch(MailAuthenticationException.class::isInstance));
+    }
+  }
+
+  @Nested
+  @DisplayName("Template Warm-Up Tests")
+  class TemplateWarmUpTests {
+
+    private SpringTemplateEngine classpathTemplateEngine() {
+      ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+      resolver.setPrefix("templates/");
+      resolver.setSuffix(".html");
+      resolver.setCharacterEncoding("UTF-8");
+      SpringTemplateEngine engine = new SpringTemplateEngine();
+      engine.setTemplateResolver(resolver);
+      return engine;
+    }
+
+    @Test
+    @DisplayName("warmUpTemplates - Every Mail Template Is Parsed Into The Cache")
+    void warmUpTemplates_shouldCacheEveryMailTemplate() {
+      SpringTemplateEngine engine = classpathTemplateEngine();
+      EmailServiceImpl service =
+          new EmailServiceImpl(mailSender, engine, notificationOutboxService);
+
+      assertEquals(
+          EmailServiceImpl.MAIL_TEMPLATES.size(),
+          service.warmUpTemplates(EmailServiceImpl.MAIL_TEMPLATES));
+
+      assertEquals(
+          EmailServiceImpl.MAIL_TEMPLATES.size(),
+          engine.getCacheManager().getTemplateCache().keySet().size());
+    }
+
+    @Test
+    @DisplayName("warmUpTemplates - Missing Template Is Not Counted As Warmed")
+    void warmUpTemplates_whenTemplateMissing_countsOnlyCachedTemplates() {
+      EmailServiceImpl service =
+          new EmailServiceImpl(mailSender, classpathTemplateEngine(), notificationOutboxService);
+
+      // order-confirmation-buyer lỗi biểu thức với context rỗng nhưng đã được parse vào cache
+      assertEquals(
+          2,
+          service.warmUpTemplates(
+              List.of("mail/welcome", "mail/does-not-exist", "mail/order-confirmation-buyer")));
+    }
+  }
 }
@@ -7,10 +7,16 @@ import static org.mockito.Mockito.*;
 
 import com.yourcompany.agritrade.common.model.NotificationType;
 import com.yourcompany.agritrade.notification.domain.Notification;
+import com.yourcompany.agritrade.notification.domain.NotificationOutbox;
+import com.yourcompany.agritrade.notification.domain.OutboxChannel;
 import com.yourcompany.agritrade.notification.dto.response.NotificationResponse;
 import com.yourcompany.agritrade.notification.mapper.NotificationMapper;
 import com.yourcompany.agritrade.notification.repository.NotificationRepository;
+import com.yourcompany.agritrade.notification.service.NotificationOutboxService;
 import com.yourcompany.agritrade.usermanagement.domain.User;
+import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -19,7 +25,10 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @ExtendWith(MockitoExtension.class)
 class InAppNotificationServiceImplTest {
@@ -27,12 +36,13 @@ class InAppNotificationServiceImplTest {
   @Mock private NotificationRepository notificationRepository;
   @Mock private SimpMessagingTemplate messagingTemplate;
   @Mock private NotificationMapper notificationMapper;
+  @Mock private NotificationOutboxService notificationOutboxService;
+  @Mock private UserRepository userRepository;
 
   @InjectMocks private InAppNotificationServiceImpl inAppNotificationService;
 
-  private User testRecipient;
-  private Notification savedNotification;
-  private NotificationResponse notificationResponseDto;
+  private User testRecipient, otherRecipient;
+  private NotificationOutbox entry1, entry2;
 
   @BeforeEach
   void setUp() {
@@ -41,119 +51,118 @@ class InAppNotificationServiceImplTest {
     testRecipient.setEmail("recipient@example.com");
     testRecipient.setFullName("Test Recipient");
 
-    // Giả lập đối tượng Notification sau khi được lưu
-    savedNotification = new Notification();
-    savedNotification.setId(100L);
-    savedNotification.setRecipient(testRecipient);
-    savedNotification.setMessage("Test message");
-    savedNotification.setType(NotificationType.OTHER);
-    savedNotification.setLink("/test-link");
-
-    // Giả lập đối tượng NotificationResponse sau khi map
-    notificationResponseDto = new NotificationResponse();
-    notificationResponseDto.setId(100L);
-    notificationResponseDto.setMessage("Test message");
-    notificationResponseDto.setType(NotificationType.OTHER);
-    notificationResponseDto.setLink("/test-link");
+    otherRecipient = new User();
+    otherRecipient.setId(2L);
+    otherRecipient.setEmail("other@example.com");
+
+    entry1 = outboxEntry(10L, testRecipient, "Test message");
+    entry2 = outboxEntry(11L, otherRecipient, "Other message");
+
+    // deliver() chạy trong transaction của dispatcher
+    TransactionSynchronizationManager.initSynchronization();
   }
 
-  @Test
-  @DisplayName("Create and Send In-App Notification - Success")
-  void createAndSendInAppNotification_whenValidInput_shouldSaveAndSendViaWebSocket() {
-    // Arrange
-    String message = "Your order has been shipped!";
-    NotificationType type = NotificationType.ORDER_STATUS_UPDATE;
-    String link = "/orders/123";
-
-    when(notificationRepository.save(any(Notification.class))).thenReturn(savedNotification);
-    when(notificationMapper.toNotificationResponse(savedNotification))
-        .thenReturn(notificationResponseDto);
-    doNothing()
-        .when(messagingTemplate)
-        .convertAndSend(anyString(), any(NotificationResponse.class));
+  @AfterEach
+  void tearDown() {
+    TransactionSynchronizationManager.clearSynchronization();
+  }
 
-    // Act
-    inAppNotificationService.createAndSendInAppNotification(testRecipient, message, type, link);
+  private static NotificationOutbox outboxEntry(Long id, User recipient, String message) {
+    NotificationOutbox entry = new NotificationOutbox();
+    entry.setId(id);
+    entry.setChannel(OutboxChannel.IN_APP);
+    entry.setRecipientId(recipient.getId());
+    entry.setRecipientEmail(recipient.getEmail());
+    entry.setNotificationType(NotificationType.OTHER);
+    entry.setBody(message);
+    entry.setLink("/test-link");
+    return entry;
+  }
 
-    // Assert
-    ArgumentCaptor<Notification> notificationCaptor = ArgumentCaptor.forClass(Notification.class);
-    verify(notificationRepository).save(notificationCaptor.capture());
-    Notification capturedNotification = notificationCaptor.getValue();
-    assertEquals(testRecipient, capturedNotification.getRecipient());
-    assertEquals(message, capturedNotification.getMessage());
-    assertEquals(type, capturedNotification.getType());
-    assertEquals(link, capturedNotification.getLink());
+  private static NotificationResponse response(Long id) {
+    NotificationResponse dto = new NotificationResponse();
+    dto.setId(id);
+    return dto;
+  }
 
-    verify(notificationMapper).toNotificationResponse(savedNotification);
+  private void stubSaveAndMap() {
+    when(userRepository.getReferenceById(1L)).thenReturn(testRecipient);
+    when(userRepository.getReferenceById(2L)).thenReturn(otherRecipient);
+    when(notificationRepository.saveAll(anyList()))
+        .thenAnswer(
+            invocation -> {
+              List<Notification> notifications = invocation.getArgument(0);
+              for (int i = 0; i < notifications.size(); i++) {
+                notifications.get(i).setId(100L + i);
+              }
+              return notifications;
+            });
+    when(notificationMapper.toNotificationResponse(any(Notification.class)))
+        .thenAnswer(invocation -> response(((Notification) invocation.getArgument(0)).getId()));
+  }
 
-    String expectedDestination = "/user/" + testRecipient.getEmail() + "/queue/notifications";
-    verify(messagingTemplate).convertAndSend(eq(expectedDestination), eq(notificationResponseDto));
+  private void commit() {
+    TransactionSynchronizationManager.getSynchronizations()
+        .forEach(TransactionSynchronization::afterCommit);
   }
 
   @Test
-  @DisplayName("Create and Send In-App Notification - Recipient is Null")
-  void createAndSendInAppNotification_whenRecipientIsNull_shouldLogWarningAndReturn() {
-    // Arrange
-    String message = "Test message";
-    NotificationType type = NotificationType.OTHER;
-    String link = "/link";
-
-    // Act
-    inAppNotificationService.createAndSendInAppNotification(null, message, type, link);
-
-    // Assert
-    verify(notificationRepository, never()).save(any(Notification.class));
-    verify(notificationMapper, never()).toNotificationResponse(any(Notification.class));
-    verify(messagingTemplate, never()).convertAndSend(anyString(), any(NotificationResponse.class));
-    // Kiểm tra log (khó hơn trong unit test thuần túy, có thể cần thư viện hỗ trợ log testing)
-    // Hoặc bạn có thể tin tưởng vào việc log đã được ghi dựa trên code.
+  @DisplayName("Create In-App Notification - Writes To Outbox Instead Of Sending")
+  void createAndSendInAppNotification_shouldEnqueueToOutbox() {
+    inAppNotificationService.createAndSendInAppNotification(
+        testRecipient, "Test message", NotificationType.OTHER, "/test-link");
+
+    verify(notificationOutboxService)
+        .enqueueInApp(testRecipient, "Test message", NotificationType.OTHER, "/test-link");
+    verifyNoInteractions(notificationRepository, messagingTemplate);
   }
 
   @Test
-  @DisplayName("Create and Send In-App Notification - Repository Save Fails")
-  void createAndSendInAppNotification_whenRepositorySaveFails_shouldLogErrorAndNotSendWebSocket() {
-    // Arrange
-    String message = "Test message";
-    NotificationType type = NotificationType.OTHER;
-    String link = "/link";
-    RuntimeException dbException = new RuntimeException("Database save error");
-
-    when(notificationRepository.save(any(Notification.class))).thenThrow(dbException);
-
-    // Act
-    inAppNotificationService.createAndSendInAppNotification(testRecipient, message, type, link);
-
-    // Assert
-    verify(notificationRepository).save(any(Notification.class));
-    verify(notificationMapper, never()).toNotificationResponse(any(Notification.class));
-    verify(messagingTemplate, never()).convertAndSend(anyString(), any(NotificationResponse.class));
-    // Kiểm tra log lỗi
+  @DisplayName("Deliver - Saves Notifications And Sends WebSocket Only After Commit")
+  void deliver_shouldSaveAllAndSendAfterCommit() {
+    stubSaveAndMap();
+
+    inAppNotificationService.deliver(List.of(entry1, entry2));
+
+    ArgumentCaptor<List<Notification>> captor = ArgumentCaptor.forClass(List.class);
+    verify(notificationRepository).saveAll(captor.capture());
+    List<Notification> saved = captor.getValue();
+    assertEquals(2, saved.size());
+    assertEquals(testRecipient, saved.get(0).getRecipient());
+    assertEquals("Test message", saved.get(0).getMessage());
+    assertEquals(NotificationType.OTHER, saved.get(0).getType());
+    assertEquals("/test-link", saved.get(0).getLink());
+    verifyNoInteractions(messagingTemplate);
+
+    commit();
+
+    verify(messagingTemplate)
+        .convertAndSend(eq("/user/recipient@example.com/queue/notifications"), eq(response(100L)));
+    verify(messagingTemplate)
+        .convertAndSend(eq("/user/other@example.com/queue/notifications"), eq(response(101L)));
   }
 
   @Test
-  @DisplayName("Create and Send In-App Notification - WebSocket Send Fails")
-  void createAndSendInAppNotification_whenWebSocketSendFails_shouldLogError() {
-    // Arrange
-    String message = "Test message";
-    NotificationType type = NotificationType.OTHER;
-    String link = "/link";
-    RuntimeException wsException = new RuntimeException("WebSocket send error");
-
-    when(notificationRepository.save(any(Notification.class))).thenReturn(savedNotification);
-    when(notificationMapper.toNotificationResponse(savedNotification))
-        .thenReturn(notificationResponseDto);
-    doThrow(wsException)
+  @DisplayName("Deliver - WebSocket Failure For One Recipient Does Not Stop Others")
+  void deliver_whenWebSocketSendFails_shouldContinueWithOthers() {
+    stubSaveAndMap();
+    doThrow(new MessageDeliveryException("WebSocket send failed"))
         .when(messagingTemplate)
-        .convertAndSend(anyString(), any(NotificationResponse.class));
+        .convertAndSend(eq("/user/recipient@example.com/queue/notifications"), any(Object.class));
+
+    inAppNotificationService.deliver(List.of(entry1, entry2));
+    assertDoesNotThrow(this::commit);
 
-    // Act
-    inAppNotificationService.createAndSendInAppNotification(testRecipient, message, type, link);
+    verify(messagingTemplate)
+        .convertAndSend(eq("/user/other@example.com/queue/notifications"), eq(response(101L)));
+  }
+
+  @Test
+  @DisplayName("Deliver - Empty List - Does Nothing")
+  void deliver_whenEmpty_shouldDoNothing() {
+    inAppNotificationService.deliver(List.of());
 
-    // Assert
-    verify(notificationRepository).save(any(Notification.class));
-    verify(notificationMapper).toNotificationResponse(savedNotification);
-    String expectedDestination = "/user/" + testRecipient.getEmail() + "/queue/notifications";
-    verify(messagingTemplate).convertAndSend(eq(expectedDestination), eq(notificationResponseDto));
-    // Kiểm tra log lỗi
+    verifyNoInteractions(notificationRepository, messagingTemplate, notificationMapper);
+    assertTrue(TransactionSynchronizationManager.getSynchronizations().isEmpty());
   }
 }
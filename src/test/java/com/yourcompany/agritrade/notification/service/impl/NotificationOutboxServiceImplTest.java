@@ -0,0 +1,93 @@
+package com.yourcompany.agritrade.notification.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.yourcompany.agritrade.common.model.NotificationType;
+import com.yourcompany.agritrade.notification.domain.NotificationOutbox;
+import com.yourcompany.agritrade.notification.domain.OutboxChannel;
+import com.yourcompany.agritrade.notification.domain.OutboxStatus;
+import com.yourcompany.agritrade.notification.repository.NotificationOutboxRepository;
+import com.yourcompany.agritrade.notification.service.NotificationOutboxService;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationOutboxServiceImplTest {
+
+  @Mock private NotificationOutboxRepository outboxRepository;
+  @Mock private ApplicationEventPublisher eventPublisher;
+
+  @InjectMocks private NotificationOutboxServiceImpl outboxService;
+
+  @Test
+  @DisplayName("Enqueue In-App - Saves Pending Entry And Publishes Event")
+  void enqueueInApp_savesPendingEntry() {
+    User recipient = new User();
+    recipient.setId(3L);
+    recipient.setEmail("farmer@example.com");
+
+    outboxService.enqueueInApp(recipient, "Đơn hàng mới", NotificationType.ORDER_PLACED, "/o/1");
+
+    ArgumentCaptor<NotificationOutbox> captor = ArgumentCaptor.forClass(NotificationOutbox.class);
+    verify(outboxRepository).save(captor.capture());
+    NotificationOutbox entry = captor.getValue();
+    assertEquals(OutboxChannel.IN_APP, entry.getChannel());
+    assertEquals(OutboxStatus.PENDING, entry.getStatus());
+    assertEquals(3L, entry.getRecipientId());
+    assertEquals("farmer@example.com", entry.getRecipientEmail());
+    assertEquals("Đơn hàng mới", entry.getBody());
+    assertEquals(NotificationType.ORDER_PLACED, entry.getNotificationType());
+    assertNotNull(entry.getNextAttemptAt());
+    verify(eventPublisher)
+        .publishEvent(new NotificationOutboxService.EnqueuedEvent(OutboxChannel.IN_APP));
+  }
+
+  @Test
+  @DisplayName("Enqueue In-App - Null Recipient - Skipped")
+  void enqueueInApp_whenRecipientNull_doesNothing() {
+    outboxService.enqueueInApp(null, "msg", NotificationType.OTHER, null);
+
+    verifyNoInteractions(outboxRepository, eventPublisher);
+  }
+
+  @Test
+  @DisplayName("Enqueue Email - Saves Rendered Email")
+  void enqueueEmail_savesRenderedEmail() {
+    outboxService.enqueueEmail("buyer@example.com", "Xác nhận đơn hàng", "<html/>");
+
+    ArgumentCaptor<NotificationOutbox> captor = ArgumentCaptor.forClass(NotificationOutbox.class);
+    verify(outboxRepository).save(captor.capture());
+    assertEquals(OutboxChannel.EMAIL, captor.getValue().getChannel());
+    assertEquals("Xác nhận đơn hàng", captor.getValue().getSubject());
+    assertEquals("<html/>", captor.getValue().getBody());
+    assertFalse(captor.getValue().isSensitive());
+  }
+
+  @Test
+  @DisplayName("Enqueue Sensitive Email - Flagged For Deletion After Delivery")
+  void enqueueSensitiveEmail_flagsEntry() {
+    outboxService.enqueueSensitiveEmail("user@example.com", "Đặt lại mật khẩu", "<html/>");
+
+    ArgumentCaptor<NotificationOutbox> captor = ArgumentCaptor.forClass(NotificationOutbox.class);
+    verify(outboxRepository).save(captor.capture());
+    assertTrue(captor.getValue().isSensitive());
+    assertEquals(OutboxChannel.EMAIL, captor.getValue().getChannel());
+  }
+
+  @Test
+  @DisplayName("Enqueue Email - Blank Recipient - Skipped")
+  void enqueueEmail_whenRecipientBlank_doesNothing() {
+    outboxService.enqueueEmail(" ", "Subject", "<html/>");
+
+    verify(outboxRepository, never()).save(any());
+  }
+}
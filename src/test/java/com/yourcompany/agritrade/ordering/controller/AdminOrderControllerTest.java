@@ -1,20 +1,26 @@
 package com.yourcompany.agritrade.ordering.controller;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yourcompany.agritrade.common.dto.response.CursorPageResponse;
 import com.yourcompany.agritrade.common.exception.BadRequestException;
 import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
-import com.yourcompany.agritrade.common.service.ExcelExportService;
+import com.yourcompany.agritrade.common.model.ExportFormat;
 import com.yourcompany.agritrade.config.TestSecurityConfig;
 import com.yourcompany.agritrade.ordering.domain.OrderStatus;
 import com.yourcompany.agritrade.ordering.domain.OrderType;
@@ -24,6 +30,8 @@ import com.yourcompany.agritrade.ordering.dto.request.OrderStatusUpdateRequest;
 import com.yourcompany.agritrade.ordering.dto.response.OrderResponse;
 import com.yourcompany.agritrade.ordering.dto.response.OrderSummaryResponse;
 import com.yourcompany.agritrade.ordering.service.OrderService;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -38,10 +46,12 @@ import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(AdminOrderController.class)
 @Import(TestSecurityConfig.class)
@@ -54,8 +64,6 @@ class AdminOrderControllerTest {
 
   @MockBean private OrderService orderService;
 
-  @MockBean private ExcelExportService excelExportService;
-
   // Authentication sẽ được cung cấp bởi @WithMockUser
 
   private OrderSummaryResponse orderSummaryResponse;
@@ -115,6 +123,69 @@ class AdminOrderControllerTest {
               jsonPath("$.data.content[0].orderCode", is(orderSummaryResponse.getOrderCode())));
     }
 
+    @Test
+    @DisplayName("GET /api/admin/orders/cursor - Phân trang theo con trỏ")
+    void getAllOrdersByCursor_success() throws Exception {
+      CursorPageResponse<OrderSummaryResponse> cursorPage =
+          new CursorPageResponse<>(List.of(orderSummaryResponse), 20, true, "next-cursor");
+      when(orderService.getAllOrdersForAdminByCursor(
+              isNull(),
+              eq(OrderStatus.PENDING),
+              isNull(),
+              isNull(),
+              isNull(),
+              isNull(),
+              isNull(),
+              eq("abc"),
+              eq(20)))
+          .thenReturn(cursorPage);
+
+      mockMvc
+          .perform(
+              get("/api/admin/orders/cursor").param("status", "PENDING").param("cursor", "abc"))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$.data.content", hasSize(1)))
+          .andExpect(jsonPath("$.data.hasNext", is(true)))
+          .andExpect(jsonPath("$.data.nextCursor", is("next-cursor")));
+    }
+
+    @Test
+    @DisplayName("GET /api/admin/orders/export - Stream CSV trực tiếp ra response")
+    void exportOrders_csv_streamsToResponse() throws Exception {
+      doAnswer(
+              invocation -> {
+                OutputStream out = invocation.getArgument(8);
+                out.write("csv-content".getBytes(StandardCharsets.UTF_8));
+                return null;
+              })
+          .when(orderService)
+          .exportOrdersForAdmin(
+              isNull(),
+              eq(OrderStatus.DELIVERED),
+              isNull(),
+              isNull(),
+              isNull(),
+              isNull(),
+              isNull(),
+              eq(ExportFormat.CSV),
+              any(OutputStream.class));
+
+      MvcResult mvcResult =
+          mockMvc
+              .perform(
+                  get("/api/admin/orders/export")
+                      .param("status", "DELIVERED")
+                      .param("format", "CSV"))
+              .andExpect(request().asyncStarted())
+              .andReturn();
+
+      mockMvc
+          .perform(asyncDispatch(mvcResult))
+          .andExpect(status().isOk())
+          .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, containsString(".csv")))
+          .andExpect(content().string("csv-content"));
+    }
+
     @Test
     @DisplayName("GET /api/admin/orders - Thành công không có bộ lọc")
     void getAllOrders_noFilters_success() throws Exception {
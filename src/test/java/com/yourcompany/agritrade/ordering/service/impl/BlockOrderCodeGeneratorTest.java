@@ -0,0 +1,138 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.common.service.IdBlockAllocator;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class BlockOrderCodeGeneratorTest {
+
+  private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+  /** Giả lập bảng id_block_sequences dùng chung giữa các node. */
+  private static class InMemoryIdBlockAllocator implements IdBlockAllocator {
+    private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public long allocateBlock(String sequenceName, int blockSize, long minimumStart) {
+      calls.incrementAndGet();
+      AtomicLong next = sequences.computeIfAbsent(sequenceName, k -> new AtomicLong(minimumStart));
+      return next.getAndAdd(blockSize);
+    }
+  }
+
+  private static BlockOrderCodeGenerator generator(
+      IdBlockAllocator allocator, int blockSize, Clock clock) {
+    BlockOrderCodeGenerator generator = new BlockOrderCodeGenerator(allocator);
+    ReflectionTestUtils.setField(generator, "prefix", "AGT");
+    ReflectionTestUtils.setField(generator, "blockSize", blockSize);
+    ReflectionTestUtils.setField(generator, "minDigits", 5);
+    generator.clock = clock;
+    return generator;
+  }
+
+  private static Clock fixedClock(String instant) {
+    return Clock.fixed(Instant.parse(instant), ZONE);
+  }
+
+  @Test
+  @DisplayName("Next Order Code - Readable, Sequential Within A Day, One Allocation Per Block")
+  void nextOrderCode_formatsDailySequence() {
+    InMemoryIdBlockAllocator allocator = new InMemoryIdBlockAllocator();
+    BlockOrderCodeGenerator generator = generator(allocator, 3, fixedClock("2026-01-17T03:00:00Z"));
+
+    assertEquals("AGT260117-00001", generator.nextOrderCode());
+    assertEquals("AGT260117-00002", generator.nextOrderCode());
+    assertEquals("AGT260117-00003", generator.nextOrderCode());
+    assertEquals("AGT260117-00004", generator.nextOrderCode());
+    assertEquals(2, allocator.calls.get());
+    assertTrue(generator.nextOrderCode().length() <= 20, "orderCode column is 20 chars");
+  }
+
+  @Test
+  @DisplayName("Next Order Code - New Day Starts A New Sequence")
+  void nextOrderCode_rollsOverAtMidnight() {
+    InMemoryIdBlockAllocator allocator = new InMemoryIdBlockAllocator();
+    BlockOrderCodeGenerator generator =
+        generator(allocator, 50, fixedClock("2026-01-17T16:59:59Z")); // 23:59:59 giờ VN
+
+    assertEquals("AGT260117-00001", generator.nextOrderCode());
+    generator.clock = fixedClock("2026-01-17T17:00:00Z"); // 00:00 ngày 18
+    assertEquals("AGT260118-00001", generator.nextOrderCode());
+  }
+
+  @Test
+  @DisplayName("Concurrency - Millions Of Codes From Several Nodes And Threads, Zero Duplicates")
+  void nextOrderCode_concurrentNodes_neverDuplicate() throws Exception {
+    int nodes = 4;
+    int threadsPerNode = 4;
+    int codesPerThread = 150_000; // 2.4 triệu mã
+    InMemoryIdBlockAllocator allocator = new InMemoryIdBlockAllocator();
+    Clock clock = fixedClock("2026-01-17T03:00:00Z");
+    List<BlockOrderCodeGenerator> generators = new ArrayList<>();
+    for (int n = 0; n < nodes; n++) {
+      generators.add(generator(allocator, 50, clock));
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(nodes * threadsPerNode);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<long[]>> futures = new ArrayList<>();
+    try {
+      for (int t = 0; t < nodes * threadsPerNode; t++) {
+        BlockOrderCodeGenerator generator = generators.get(t % nodes);
+        futures.add(
+            pool.submit(
+                () -> {
+                  start.await();
+                  long[] numbers = new long[codesPerThread];
+                  long previous = 0;
+                  for (int i = 0; i < codesPerThread; i++) {
+                    String code = generator.nextOrderCode();
+                    if (!code.startsWith("AGT260117-")) {
+                      throw new AssertionError("Unexpected code " + code);
+                    }
+                    numbers[i] = Long.parseLong(code.substring(10));
+                    // Trong một node, mã do một luồng nhận luôn tăng dần
+                    if (numbers[i] <= previous) {
+                      throw new AssertionError("Code not monotonic: " + code);
+                    }
+                    previous = numbers[i];
+                  }
+                  return numbers;
+                }));
+      }
+      start.countDown();
+
+      long[] all = new long[nodes * threadsPerNode * codesPerThread];
+      int offset = 0;
+      for (Future<long[]> future : futures) {
+        long[] numbers = future.get();
+        System.arraycopy(numbers, 0, all, offset, numbers.length);
+        offset += numbers.length;
+      }
+      Arrays.sort(all);
+      for (int i = 1; i < all.length; i++) {
+        assertNotEquals(all[i - 1], all[i], "Duplicate order code number " + all[i]);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
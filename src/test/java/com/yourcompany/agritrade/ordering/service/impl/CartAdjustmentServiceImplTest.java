@@ -0,0 +1,51 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.yourcompany.agritrade.ordering.repository.CartItemRepository;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+@ExtendWith(MockitoExtension.class)
+class CartAdjustmentServiceImplTest {
+
+  @Mock private CartItemRepository cartItemRepository;
+
+  @InjectMocks private CartAdjustmentServiceImpl cartAdjustmentService;
+
+  @Test
+  @DisplayName("Apply Adjustments - Deletes In One Statement And Caps Each Item")
+  void applyAdjustments_removesAndCapsItemsOfUser() {
+    cartAdjustmentService.applyAdjustments(1L, List.of(100L, 200L), Map.of(300L, 2));
+
+    verify(cartItemRepository).deleteByUserIdAndIdIn(1L, List.of(100L, 200L));
+    verify(cartItemRepository).capQuantityForUser(1L, 300L, 2);
+  }
+
+  @Test
+  @DisplayName("Apply Adjustments - Nothing To Remove Skips Delete")
+  void applyAdjustments_withoutRemovals_skipsDelete() {
+    cartAdjustmentService.applyAdjustments(1L, List.of(), Map.of(300L, 2));
+
+    verify(cartItemRepository, never()).deleteByUserIdAndIdIn(anyLong(), anyCollection());
+    verify(cartItemRepository).capQuantityForUser(1L, 300L, 2);
+  }
+
+  @Test
+  @DisplayName("Apply Adjustments Async - Failure Is Logged, Not Thrown")
+  void applyAdjustmentsAsync_whenDatabaseFails_doesNotThrow() {
+    when(cartItemRepository.deleteByUserIdAndIdIn(1L, List.of(100L)))
+        .thenThrow(new DataAccessResourceFailureException("down"));
+
+    assertDoesNotThrow(
+        () -> cartAdjustmentService.applyAdjustmentsAsync(1L, List.of(100L), Map.of()));
+  }
+}
@@ -19,11 +19,13 @@ import com.yourcompany.agritrade.ordering.dto.response.CartResponse;
 import com.yourcompany.agritrade.ordering.dto.response.CartValidationResponse;
 import com.yourcompany.agritrade.ordering.mapper.CartItemMapper;
 import com.yourcompany.agritrade.ordering.repository.CartItemRepository;
+import com.yourcompany.agritrade.ordering.service.CartAdjustmentService;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
 import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -36,6 +38,7 @@ import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -47,6 +50,7 @@ class CartServiceImplTest {
   @Mock private ProductRepository productRepository;
   @Mock private UserRepository userRepository;
   @Mock private CartItemMapper cartItemMapper;
+  @Mock private CartAdjustmentService cartAdjustmentService;
   @Mock private Authentication authentication;
 
   // SỬA LỖI: Thêm MockedStatic để quản lý mock cho lớp tiện ích SecurityUtils
@@ -75,6 +79,7 @@ class CartServiceImplTest {
     // SỬA LỖI: Định nghĩa hành vi mặc định cho SecurityUtils trong setUp
     // vì tất cả các phương thức trong service đều gọi nó.
     mockedSecurityUtils.when(SecurityUtils::getCurrentAuthenticatedUser).thenReturn(testUser);
+    mockedSecurityUtils.when(SecurityUtils::getCurrentUserId).thenReturn(testUser.getId());
 
     product1 = new Product();
     product1.setId(10L);
@@ -169,10 +174,8 @@ class CartServiceImplTest {
     @Test
     @DisplayName("Get Cart - Success with Valid Items")
     void getCart_whenAllItemsValid_shouldReturnCartResponse() {
-      when(cartItemRepository.findByUserId(testUser.getId()))
+      when(cartItemRepository.findCartViewByUserId(testUser.getId()))
           .thenReturn(List.of(cartItemEntity1, cartItemEntity2));
-      when(productRepository.findById(product1.getId())).thenReturn(Optional.of(product1));
-      when(productRepository.findById(product2.getId())).thenReturn(Optional.of(product2));
       when(cartItemMapper.toCartItemResponse(cartItemEntity1)).thenReturn(cartItemResponse1);
       when(cartItemMapper.toCartItemResponse(cartItemEntity2)).thenReturn(cartItemResponse2);
 
@@ -183,16 +186,17 @@ class CartServiceImplTest {
       assertEquals(new BigDecimal("400.00"), result.getSubTotal());
       assertEquals(3, result.getTotalItems());
       assertTrue(result.getAdjustments().isEmpty());
+      // Sản phẩm đã được fetch cùng giỏ hàng, không tải lại từng cái; không ghi DB
+      verifyNoInteractions(productRepository, cartAdjustmentService);
       verify(cartItemRepository, never()).saveAll(anyList());
       verify(cartItemRepository, never()).deleteAllByIdInBatch(anyList());
     }
 
     @Test
-    @DisplayName("Get Cart - Item Product Not Found (Soft-Deleted or Does Not Exist)")
+    @DisplayName("Get Cart - Item Product Soft-Deleted")
     void getCart_whenItemProductNotFound_shouldRemoveItemAndAddAdjustment() {
-      when(cartItemRepository.findByUserId(testUser.getId()))
+      when(cartItemRepository.findCartViewByUserId(testUser.getId()))
           .thenReturn(List.of(cartItemDeletedProductEntity));
-      when(productRepository.findById(productDeleted.getId())).thenReturn(Optional.empty());
 
       CartResponse result = cartService.getCart(authentication);
 
@@ -203,17 +207,16 @@ class CartServiceImplTest {
       assertEquals(1, result.getAdjustments().size());
       assertEquals("REMOVED", result.getAdjustments().get(0).getType());
       assertTrue(result.getAdjustments().get(0).getMessage().contains(productDeleted.getName()));
-      verify(cartItemRepository)
-          .deleteAllByIdInBatch(List.of(cartItemDeletedProductEntity.getId()));
+      verify(cartAdjustmentService)
+          .applyAdjustmentsAsync(
+              testUser.getId(), List.of(cartItemDeletedProductEntity.getId()), Map.of());
     }
 
     @Test
     @DisplayName("Get Cart - Item Product Not Published")
     void getCart_whenItemProductNotPublished_shouldRemoveItemAndAddAdjustment() {
-      when(cartItemRepository.findByUserId(testUser.getId()))
+      when(cartItemRepository.findCartViewByUserId(testUser.getId()))
           .thenReturn(List.of(cartItemUnavailableEntity));
-      when(productRepository.findById(productUnavailable.getId()))
-          .thenReturn(Optional.of(productUnavailable));
 
       CartResponse result = cartService.getCart(authentication);
 
@@ -221,23 +224,25 @@ class CartServiceImplTest {
       assertEquals(1, result.getAdjustments().size());
       assertTrue(
           result.getAdjustments().get(0).getMessage().contains(productUnavailable.getName()));
-      verify(cartItemRepository).deleteAllByIdInBatch(List.of(cartItemUnavailableEntity.getId()));
+      verify(cartAdjustmentService)
+          .applyAdjustmentsAsync(
+              testUser.getId(), List.of(cartItemUnavailableEntity.getId()), Map.of());
     }
 
     @Test
     @DisplayName("Get Cart - Item Out Of Stock")
     void getCart_whenItemOutOfStock_shouldRemoveItemAndAddAdjustment() {
-      when(cartItemRepository.findByUserId(testUser.getId()))
+      when(cartItemRepository.findCartViewByUserId(testUser.getId()))
           .thenReturn(List.of(cartItemOutOfStockEntity));
-      when(productRepository.findById(productOutOfStock.getId()))
-          .thenReturn(Optional.of(productOutOfStock));
 
       CartResponse result = cartService.getCart(authentication);
 
       assertTrue(result.getItems().isEmpty());
       assertEquals(1, result.getAdjustments().size());
       assertTrue(result.getAdjustments().get(0).getMessage().contains(productOutOfStock.getName()));
-      verify(cartItemRepository).deleteAllByIdInBatch(List.of(cartItemOutOfStockEntity.getId()));
+      verify(cartAdjustmentService)
+          .applyAdjustmentsAsync(
+              testUser.getId(), List.of(cartItemOutOfStockEntity.getId()), Map.of());
     }
 
     @Test
@@ -246,31 +251,45 @@ class CartServiceImplTest {
       product1.setStockQuantity(1);
       cartItemEntity1.setQuantity(2);
 
-      CartItemResponse adjustedResponse = new CartItemResponse();
-      adjustedResponse.setId(cartItemEntity1.getId());
-      adjustedResponse.setQuantity(1);
-      adjustedResponse.setItemTotal(product1.getPrice().multiply(BigDecimal.ONE));
-
-      when(cartItemRepository.findByUserId(testUser.getId())).thenReturn(List.of(cartItemEntity1));
-      when(productRepository.findById(product1.getId())).thenReturn(Optional.of(product1));
-      when(cartItemMapper.toCartItemResponse(
-              argThat(ci -> ci.getId().equals(cartItemEntity1.getId()) && ci.getQuantity() == 1)))
-          .thenReturn(adjustedResponse);
+      when(cartItemRepository.findCartViewByUserId(testUser.getId()))
+          .thenReturn(List.of(cartItemEntity1));
+      when(cartItemMapper.toCartItemResponse(cartItemEntity1)).thenReturn(cartItemResponse1);
 
       CartResponse result = cartService.getCart(authentication);
 
       assertEquals(1, result.getItems().size());
       assertEquals(1, result.getItems().get(0).getQuantity());
+      assertEquals(new BigDecimal("100.00"), result.getItems().get(0).getItemTotal());
+      assertEquals(new BigDecimal("100.00"), result.getSubTotal());
       assertEquals(1, result.getAdjustments().size());
       assertEquals("ADJUSTED", result.getAdjustments().get(0).getType());
       assertTrue(result.getAdjustments().get(0).getMessage().contains(product1.getName()));
-      verify(cartItemRepository).saveAll(List.of(cartItemEntity1));
+      // Entity không bị sửa trong transaction chỉ đọc; việc giảm số lượng được ghi nền
+      assertEquals(2, cartItemEntity1.getQuantity());
+      verify(cartAdjustmentService)
+          .applyAdjustmentsAsync(testUser.getId(), List.of(), Map.of(cartItemEntity1.getId(), 1));
+    }
+
+    @Test
+    @DisplayName("Get Cart - Adjustment Queue Full Still Returns Cart")
+    void getCart_whenAdjustmentQueueRejects_shouldStillReturnCart() {
+      when(cartItemRepository.findCartViewByUserId(testUser.getId()))
+          .thenReturn(List.of(cartItemOutOfStockEntity));
+      doThrow(new TaskRejectedException("queue full"))
+          .when(cartAdjustmentService)
+          .applyAdjustmentsAsync(anyLong(), anyCollection(), anyMap());
+
+      CartResponse result = cartService.getCart(authentication);
+
+      assertTrue(result.getItems().isEmpty());
+      assertEquals(1, result.getAdjustments().size());
     }
 
     @Test
     @DisplayName("Get Cart - Empty Cart")
     void getCart_whenCartIsEmpty_shouldReturnEmptyCartResponse() {
-      when(cartItemRepository.findByUserId(testUser.getId())).thenReturn(Collections.emptyList());
+      when(cartItemRepository.findCartViewByUserId(testUser.getId()))
+          .thenReturn(Collections.emptyList());
 
       CartResponse result = cartService.getCart(authentication);
 
@@ -278,6 +297,7 @@ class CartServiceImplTest {
       assertEquals(BigDecimal.ZERO, result.getSubTotal());
       assertEquals(0, result.getTotalItems());
       assertTrue(result.getAdjustments().isEmpty());
+      verifyNoInteractions(cartAdjustmentService);
     }
   }
 
@@ -541,10 +561,8 @@ class CartServiceImplTest {
     @Test
     @DisplayName("Validate Cart - All Items Valid")
     void validateCartForCheckout_whenAllItemsValid_shouldReturnValidResponse() {
-      when(cartItemRepository.findByUserId(testUser.getId()))
+      when(cartItemRepository.findWithProductByUserId(testUser.getId()))
           .thenReturn(List.of(cartItemEntity1, cartItemEntity2));
-      when(productRepository.findById(product1.getId())).thenReturn(Optional.of(product1));
-      when(productRepository.findById(product2.getId())).thenReturn(Optional.of(product2));
 
       CartValidationResponse response = cartService.validateCartForCheckout(authentication);
 
@@ -552,6 +570,7 @@ class CartServiceImplTest {
       assertTrue(
           response.getMessages().stream().anyMatch(m -> m.contains("Giỏ hàng của bạn hợp lệ")));
       assertTrue(response.getAdjustments().isEmpty());
+      verifyNoInteractions(productRepository, cartAdjustmentService);
     }
 
     @Test
@@ -560,8 +579,8 @@ class CartServiceImplTest {
       product1.setStockQuantity(1);
       cartItemEntity1.setQuantity(2);
 
-      when(cartItemRepository.findByUserId(testUser.getId())).thenReturn(List.of(cartItemEntity1));
-      when(productRepository.findById(product1.getId())).thenReturn(Optional.of(product1));
+      when(cartItemRepository.findWithProductByUserId(testUser.getId()))
+          .thenReturn(List.of(cartItemEntity1));
 
       CartValidationResponse response = cartService.validateCartForCheckout(authentication);
 
@@ -574,16 +593,15 @@ class CartServiceImplTest {
               .get(0)
               .getMessage()
               .contains("Số lượng sản phẩm '" + product1.getName() + "' đã được cập nhật thành 1"));
-      verify(cartItemRepository).saveAllAndFlush(List.of(cartItemEntity1));
+      verify(cartAdjustmentService)
+          .applyAdjustments(testUser.getId(), List.of(), Map.of(cartItemEntity1.getId(), 1));
     }
 
     @Test
     @DisplayName("Validate Cart - Item Removed (Out Of Stock)")
     void validateCartForCheckout_whenItemRemoved_shouldReturnInvalidWithAdjustments() {
-      when(cartItemRepository.findByUserId(testUser.getId()))
+      when(cartItemRepository.findWithProductByUserId(testUser.getId()))
           .thenReturn(List.of(cartItemOutOfStockEntity));
-      when(productRepository.findById(productOutOfStock.getId()))
-          .thenReturn(Optional.of(productOutOfStock));
 
       CartValidationResponse response = cartService.validateCartForCheckout(authentication);
 
@@ -596,13 +614,15 @@ class CartServiceImplTest {
               .get(0)
               .getMessage()
               .contains("Sản phẩm '" + productOutOfStock.getName() + "' đã hết hàng"));
-      verify(cartItemRepository).deleteAllByIdInBatch(List.of(cartItemOutOfStockEntity.getId()));
+      verify(cartAdjustmentService)
+          .applyAdjustments(testUser.getId(), List.of(cartItemOutOfStockEntity.getId()), Map.of());
     }
 
     @Test
     @DisplayName("Validate Cart - Empty Cart")
     void validateCartForCheckout_whenCartIsEmpty_shouldReturnValidWithEmptyMessage() {
-      when(cartItemRepository.findByUserId(testUser.getId())).thenReturn(Collections.emptyList());
+      when(cartItemRepository.findWithProductByUserId(testUser.getId()))
+          .thenReturn(Collections.emptyList());
       CartValidationResponse response = cartService.validateCartForCheckout(authentication);
       assertTrue(response.isValid());
       assertTrue(
@@ -616,7 +636,7 @@ class CartServiceImplTest {
   void getUserFromAuthentication_whenUserNotFound_shouldThrowUsernameNotFoundException() {
     // Mock SecurityUtils để nó ném lỗi, đây là cách test đúng
     mockedSecurityUtils
-        .when(SecurityUtils::getCurrentAuthenticatedUser)
+        .when(SecurityUtils::getCurrentUserId)
         .thenThrow(new UsernameNotFoundException("User not found"));
 
     assertThrows(UsernameNotFoundException.class, () -> cartService.getCart(authentication));
@@ -627,7 +647,7 @@ class CartServiceImplTest {
   void getUserFromAuthentication_whenNotAuthenticated_shouldThrowAccessDeniedException() {
     // Mock SecurityUtils để nó ném lỗi
     mockedSecurityUtils
-        .when(SecurityUtils::getCurrentAuthenticatedUser)
+        .when(SecurityUtils::getCurrentUserId)
         .thenThrow(new AccessDeniedException("Not authenticated"));
 
     assertThrows(AccessDeniedException.class, () -> cartService.getCart(authentication));
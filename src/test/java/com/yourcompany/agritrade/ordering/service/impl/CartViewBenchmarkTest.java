@@ -0,0 +1,182 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.catalog.domain.Category;
+import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.catalog.domain.ProductImage;
+import com.yourcompany.agritrade.catalog.domain.ProductStatus;
+import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.common.persistence.MySqlBenchmarkSupport;
+import com.yourcompany.agritrade.ordering.domain.CartItem;
+import com.yourcompany.agritrade.ordering.repository.CartItemRepository;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import jakarta.persistence.EntityManagerFactory;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Benchmark xem giỏ hàng 50 sản phẩm: cách cũ (findByUserId rồi findById từng sản phẩm, ảnh/farmer/
+ * danh mục nạp lazy khi map) so với một truy vấn fetch join. Đếm số câu SQL qua Hibernate
+ * Statistics và đo thời gian. Cần Docker (Testcontainers MySQL); tự bỏ qua nếu môi trường không có
+ * Docker.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // Mỗi lần xem giỏ tự mở transaction riêng
+@Tag("benchmark")
+@Slf4j
+class CartViewBenchmarkTest extends MySqlBenchmarkSupport {
+
+  private static final int CART_SIZE = 50;
+  private static final int IMAGES_PER_PRODUCT = 3;
+  private static final int WARMUP_RUNS = 5;
+  private static final int MEASURED_RUNS = 50;
+
+  @DynamicPropertySource
+  static void benchmarkProperties(DynamicPropertyRegistry registry) {
+    registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+  }
+
+  @Autowired private CartItemRepository cartItemRepository;
+  @Autowired private ProductRepository productRepository;
+  @Autowired private EntityManagerFactory entityManagerFactory;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private TransactionTemplate readOnlyTx;
+  private Long buyerId;
+
+  @BeforeEach
+  void setUp() {
+    TransactionTemplate tx = new TransactionTemplate(transactionManager);
+    readOnlyTx = new TransactionTemplate(transactionManager);
+    readOnlyTx.setReadOnly(true);
+    buyerId =
+        tx.execute(
+            status -> {
+              long suffix = System.nanoTime();
+              User farmer = newUser("farmer" + suffix);
+              User buyer = newUser("buyer" + suffix);
+              Category category = new Category();
+              category.setName("Bench");
+              category.setSlug("bench-" + suffix);
+              entityManager.persist(category);
+
+              for (int i = 0; i < CART_SIZE; i++) {
+                Product product =
+                    Product.builder()
+                        .farmer(farmer)
+                        .category(category)
+                        .name("Cart product " + i)
+                        .slug("cart-product-" + suffix + "-" + i)
+                        .unit("kg")
+                        .price(new BigDecimal("10000.00"))
+                        .stockQuantity(100)
+                        .status(ProductStatus.PUBLISHED)
+                        .provinceCode("20")
+                        .averageRating(0.0f)
+                        .ratingCount(0)
+                        .favoriteCount(0)
+                        .build();
+                entityManager.persist(product);
+                for (int j = 0; j < IMAGES_PER_PRODUCT; j++) {
+                  ProductImage image = new ProductImage();
+                  image.setProduct(product);
+                  image.setDefault(j == 0);
+                  image.setDisplayOrder(j);
+                  image.setBlobPath("products/" + suffix + "/" + i + "-" + j + ".jpg");
+                  entityManager.persist(image);
+                }
+                CartItem cartItem = new CartItem();
+                cartItem.setUser(buyer);
+                cartItem.setProduct(product);
+                cartItem.setQuantity(1 + i % 3);
+                entityManager.persist(cartItem);
+              }
+              return buyer.getId();
+            });
+  }
+
+  @Test
+  @DisplayName("Legacy per-item findById vs single fetch-join query - 50 item cart")
+  void cartView() {
+    Result legacy =
+        measure(
+            () -> {
+              List<CartItem> items = cartItemRepository.findByUserId(buyerId);
+              for (CartItem item : items) {
+                Product product =
+                    productRepository.findById(item.getProduct().getId()).orElseThrow();
+                touchSummaryFields(product);
+              }
+              return items.size();
+            });
+    Result batched =
+        measure(
+            () -> {
+              List<CartItem> items = cartItemRepository.findCartViewByUserId(buyerId);
+              items.forEach(item -> touchSummaryFields(item.getProduct()));
+              return items.size();
+            });
+
+    report("legacy-per-item", legacy);
+    report("single-fetch", batched);
+    assertEquals(CART_SIZE, legacy.items());
+    assertEquals(CART_SIZE, batched.items());
+    assertTrue(
+        batched.statementsPerView() < legacy.statementsPerView(),
+        "Fetch join phải giảm số câu SQL khi xem giỏ");
+  }
+
+  // Các liên kết mà ProductMapper.toProductSummaryResponse chạm tới
+  private void touchSummaryFields(Product product) {
+    assertFalse(product.getImages().isEmpty());
+    assertNotNull(product.getFarmer().getFullName());
+    product.getFarmer().getFarmerProfile();
+    assertNotNull(product.getCategory().getName());
+  }
+
+  private Result measure(Supplier<Integer> viewCart) {
+    Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    int items = 0;
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      readOnlyTx.execute(status -> viewCart.get());
+    }
+    statistics.clear();
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_RUNS; i++) {
+      items = readOnlyTx.execute(status -> viewCart.get());
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    return new Result(
+        items,
+        (double) statistics.getPrepareStatementCount() / MEASURED_RUNS,
+        elapsedNanos / 1_000_000.0 / MEASURED_RUNS);
+  }
+
+  private void report(String label, Result result) {
+    log.info(
+        "[cart-bench] {}: items={} statements/view={} avg={} ms",
+        label,
+        result.items(),
+        String.format("%.1f", result.statementsPerView()),
+        String.format("%.2f", result.avgMillis()));
+  }
+
+  private record Result(int items, double statementsPerView, double avgMillis) {}
+}
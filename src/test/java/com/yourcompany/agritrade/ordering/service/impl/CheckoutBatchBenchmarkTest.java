@@ -0,0 +1,239 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.catalog.domain.Category;
+import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.catalog.domain.ProductStatus;
+import com.yourcompany.agritrade.common.persistence.MySqlBenchmarkSupport;
+import com.yourcompany.agritrade.ordering.domain.*;
+import com.yourcompany.agritrade.ordering.repository.OrderRepository;
+import com.yourcompany.agritrade.ordering.repository.PaymentRepository;
+import com.yourcompany.agritrade.usermanagement.domain.FarmerProfile;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import com.yourcompany.agritrade.usermanagement.repository.FarmerProfileRepository;
+import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Đo phần ghi của checkout cho giỏ hàng 10 farmer: cách cũ (findById farmer + profile, save đơn,
+ * save payment từng farmer rồi findById lại từng đơn để map) so với pipeline theo lô của {@link
+ * OrderServiceImpl#checkout} (nạp profile một truy vấn, saveAll với cascade, flush thành JDBC
+ * batch, map từ bộ nhớ). Báo thời gian và số câu lệnh JDBC mỗi checkout. Cần Docker (Testcontainers
+ * MySQL); tự bỏ qua nếu môi trường không có Docker.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Tag("benchmark")
+@Slf4j
+class CheckoutBatchBenchmarkTest extends MySqlBenchmarkSupport {
+
+  private static final int FARMERS = 10;
+  private static final int ITEMS_PER_FARMER = 3;
+  private static final int WARMUP_CHECKOUTS = 20;
+  private static final int MEASURED_CHECKOUTS = 200;
+
+  @DynamicPropertySource
+  static void benchmarkProperties(DynamicPropertyRegistry registry) {
+    // Driver gộp các INSERT của JDBC batch thành một câu lệnh nhiều dòng
+    registry.add(
+        "spring.datasource.hikari.data-source-properties.rewriteBatchedStatements", () -> "true");
+    registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+  }
+
+  @Autowired private PlatformTransactionManager transactionManager;
+  @Autowired private OrderRepository orderRepository;
+  @Autowired private PaymentRepository paymentRepository;
+  @Autowired private UserRepository userRepository;
+  @Autowired private FarmerProfileRepository farmerProfileRepository;
+
+  private final AtomicLong orderCodeSeq = new AtomicLong();
+  private TransactionTemplate tx;
+  private User buyer;
+  private Map<Long, List<Product>> productsByFarmer;
+
+  @BeforeEach
+  void setUp() {
+    tx = new TransactionTemplate(transactionManager);
+    tx.executeWithoutResult(
+        status -> {
+          long suffix = System.nanoTime();
+          buyer = newUser("buyer-" + suffix);
+          Category category = new Category();
+          category.setName("Bench");
+          category.setSlug("bench-" + suffix);
+          entityManager.persist(category);
+
+          productsByFarmer = new LinkedHashMap<>();
+          for (int f = 0; f < FARMERS; f++) {
+            User farmer = newUser("farmer-" + f + "-" + suffix);
+            FarmerProfile profile = new FarmerProfile();
+            profile.setUser(farmer);
+            profile.setFarmName("Farm " + f);
+            profile.setProvinceCode("20");
+            entityManager.persist(profile);
+
+            List<Product> products = new ArrayList<>();
+            for (int p = 0; p < ITEMS_PER_FARMER; p++) {
+              Product product =
+                  Product.builder()
+                      .farmer(farmer)
+                      .category(category)
+                      .name("Product " + f + "-" + p)
+                      .slug("product-" + f + "-" + p + "-" + suffix)
+                      .unit("kg")
+                      .price(new BigDecimal("10000.00"))
+                      .stockQuantity(1_000_000)
+                      .status(ProductStatus.PUBLISHED)
+                      .provinceCode("20")
+                      .averageRating(0.0f)
+                      .ratingCount(0)
+                      .favoriteCount(0)
+                      .build();
+              entityManager.persist(product);
+              products.add(product);
+            }
+            productsByFarmer.put(farmer.getId(), products);
+          }
+        });
+  }
+
+  @Test
+  @DisplayName("Legacy per-farmer save + re-read vs batched checkout pipeline - 10-farmer carts")
+  void tenFarmerCheckout() {
+    Result legacy = measure(this::legacyCheckout);
+    Result batched = measure(this::batchedCheckout);
+    log.info("[checkout-bench] legacy-per-farmer: {}", legacy);
+    log.info("[checkout-bench] batched-pipeline: {}", batched);
+
+    assertTrue(
+        batched.statementsPerCheckout() < legacy.statementsPerCheckout(),
+        "Pipeline theo lô phải dùng ít câu lệnh JDBC hơn");
+    long expectedOrders = (long) (WARMUP_CHECKOUTS + MEASURED_CHECKOUTS) * FARMERS * 2;
+    assertEquals(expectedOrders, orderRepository.count());
+    assertEquals(expectedOrders, paymentRepository.count());
+  }
+
+  private Result measure(Function<Map<Long, List<Product>>, Integer> checkout) {
+    for (int i = 0; i < WARMUP_CHECKOUTS; i++) {
+      tx.execute(status -> checkout.apply(productsByFarmer));
+    }
+    Statistics statistics =
+        entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+    long start = System.nanoTime();
+    for (int i = 0; i < MEASURED_CHECKOUTS; i++) {
+      Integer created = tx.execute(status -> checkout.apply(productsByFarmer));
+      assertEquals(FARMERS, created);
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    return new Result(
+        elapsedNanos / 1_000_000.0 / MEASURED_CHECKOUTS,
+        (double) statistics.getPrepareStatementCount() / MEASURED_CHECKOUTS);
+  }
+
+  /** Luồng ghi cũ: mỗi farmer hai lần findById, save đơn + payment, cuối cùng findById lại. */
+  private int legacyCheckout(Map<Long, List<Product>> cart) {
+    User managedBuyer = entityManager.getReference(User.class, buyer.getId());
+    List<Long> orderIds = new ArrayList<>();
+    for (Map.Entry<Long, List<Product>> entry : cart.entrySet()) {
+      User farmer = userRepository.findById(entry.getKey()).orElseThrow();
+      farmerProfileRepository.findById(entry.getKey()).orElseThrow();
+      Order order = newOrder(managedBuyer, farmer, entry.getValue());
+      Order saved = orderRepository.saveAndFlush(order);
+      Payment payment = newPayment(saved);
+      paymentRepository.saveAndFlush(payment);
+      orderIds.add(saved.getId());
+    }
+    entityManager.clear();
+    return (int) orderIds.stream().map(id -> orderRepository.findById(id).orElseThrow()).count();
+  }
+
+  /** Pipeline mới: một truy vấn profile, dựng đơn trong bộ nhớ, saveAll rồi flush một lần. */
+  private int batchedCheckout(Map<Long, List<Product>> cart) {
+    User managedBuyer = entityManager.getReference(User.class, buyer.getId());
+    Map<Long, FarmerProfile> profiles =
+        farmerProfileRepository.findAllWithUserByUserIdIn(cart.keySet()).stream()
+            .collect(Collectors.toMap(FarmerProfile::getUserId, Function.identity()));
+    List<Order> orders = new ArrayList<>();
+    for (Map.Entry<Long, List<Product>> entry : cart.entrySet()) {
+      Order order =
+          newOrder(managedBuyer, profiles.get(entry.getKey()).getUser(), entry.getValue());
+      order.addPayment(newPayment(order));
+      orders.add(order);
+    }
+    orderRepository.saveAll(orders);
+    entityManager.flush();
+    return orders.size();
+  }
+
+  private Order newOrder(User buyer, User farmer, List<Product> products) {
+    Order order = new Order();
+    order.setBuyer(buyer);
+    order.setFarmer(farmer);
+    order.setOrderType(OrderType.B2C);
+    order.setOrderCode("BENCH-" + orderCodeSeq.incrementAndGet());
+    order.setPaymentMethod(PaymentMethod.COD);
+    order.setShippingFullName("Bench Buyer");
+    order.setShippingPhoneNumber("0900000000");
+    order.setShippingAddressDetail("1 Bench Street");
+    order.setShippingProvinceCode("20");
+    order.setShippingDistrictCode("180");
+    order.setShippingWardCode("06289");
+    BigDecimal subTotal = BigDecimal.ZERO;
+    for (Product product : products) {
+      OrderItem item = new OrderItem();
+      item.setProduct(entityManager.getReference(Product.class, product.getId()));
+      item.setProductName(product.getName());
+      item.setUnit(product.getUnit());
+      item.setPricePerUnit(product.getPrice());
+      item.setQuantity(2);
+      item.setTotalPrice(product.getPrice().multiply(BigDecimal.TWO));
+      order.addOrderItem(item);
+      subTotal = subTotal.add(item.getTotalPrice());
+    }
+    order.setSubTotal(subTotal);
+    order.setTotalAmount(subTotal);
+    return order;
+  }
+
+  private static Payment newPayment(Order order) {
+    Payment payment = new Payment();
+    payment.setOrder(order);
+    payment.setAmount(order.getTotalAmount());
+    payment.setPaymentGateway(order.getPaymentMethod().name());
+    payment.setStatus(PaymentTransactionStatus.PENDING);
+    return payment;
+  }
+
+  private record Result(double millisPerCheckout, double statementsPerCheckout) {
+    @Override
+    public String toString() {
+      return String.format(
+          "%.2f ms/checkout, %.1f JDBC statements/checkout",
+          millisPerCheckout, statementsPerCheckout);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.lowagie.text.pdf.PdfReader;
+import com.yourcompany.agritrade.ordering.service.InvoicePdfRenderer.InvoicePdfData;
+import com.yourcompany.agritrade.ordering.service.InvoicePdfRenderer.Line;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class InvoicePdfRendererImplTest {
+
+  private InvoicePdfRendererImpl renderer;
+
+  @BeforeEach
+  void setUp() {
+    renderer = newRenderer("classpath:fonts/font.ttf");
+  }
+
+  private static InvoicePdfRendererImpl newRenderer(String fontLocation) {
+    InvoicePdfRendererImpl renderer = new InvoicePdfRendererImpl(new DefaultResourceLoader());
+    ReflectionTestUtils.setField(renderer, "fontLocation", fontLocation);
+    renderer.init();
+    return renderer;
+  }
+
+  private static InvoicePdfData sampleData(String invoiceNumber) {
+    return new InvoicePdfData(
+        invoiceNumber,
+        LocalDate.of(2026, 3, 15),
+        "Nông trại Đà Lạt",
+        "Nguyễn Văn Bình",
+        List.of(
+            new Line("Cà chua bi", "kg", 3, new BigDecimal("30000"), new BigDecimal("90000")),
+            new Line("Xoài cát", "kg", 2, new BigDecimal("45000"), new BigDecimal("90000"))),
+        new BigDecimal("180000"),
+        new BigDecimal("20000"),
+        BigDecimal.ZERO,
+        new BigDecimal("200000"));
+  }
+
+  private static byte[] render(InvoicePdfRendererImpl renderer, InvoicePdfData data)
+      throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    renderer.render(data, out);
+    return out.toByteArray();
+  }
+
+  @Test
+  @DisplayName("Render - Produces Single Page PDF With Embedded Subset Font")
+  void render_producesPdfWithEmbeddedFont() throws IOException {
+    byte[] pdf = render(renderer, sampleData("INV-ORD-1"));
+
+    PdfReader reader = new PdfReader(pdf);
+    assertEquals(1, reader.getNumberOfPages());
+    reader.close();
+    String raw = new String(pdf, StandardCharsets.ISO_8859_1);
+    assertTrue(raw.contains("/FontFile2"), "Font TTF phải được nhúng");
+    // Chỉ nhúng subset glyph đã dùng, nhỏ hơn nhiều so với file TTF gốc (~460 KB)
+    assertTrue(pdf.length < 200_000, "PDF size " + pdf.length);
+  }
+
+  @Test
+  @DisplayName("Render - Does Not Close Caller Stream")
+  void render_doesNotCloseOutputStream() throws IOException {
+    boolean[] closed = new boolean[1];
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    FilterOutputStream out =
+        new FilterOutputStream(buffer) {
+          @Override
+          public void close() {
+            closed[0] = true;
+          }
+        };
+
+    renderer.render(sampleData("INV-ORD-2"), out);
+
+    assertFalse(closed[0]);
+    assertTrue(buffer.size() > 0);
+  }
+
+  @Test
+  @DisplayName("Render - Shared Fonts Are Safe Across Threads")
+  void render_inParallel_producesValidDocuments() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<byte[]>> results = new ArrayList<>();
+      for (int i = 0; i < 32; i++) {
+        String number = "INV-PAR-" + i;
+        results.add(executor.submit(() -> render(renderer, sampleData(number))));
+      }
+      for (Future<byte[]> result : results) {
+        PdfReader reader = new PdfReader(result.get());
+        assertEquals(1, reader.getNumberOfPages());
+        reader.close();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  @DisplayName("Render - Missing Font Falls Back To Built-in Font")
+  void render_whenFontMissing_fallsBackToHelvetica() throws IOException {
+    InvoicePdfRendererImpl fallback = newRenderer("classpath:fonts/missing.ttf");
+
+    byte[] pdf = render(fallback, sampleData("INV-ORD-3"));
+
+    assertEquals(1, new PdfReader(pdf).getNumberOfPages());
+    assertTrue(new String(pdf, StandardCharsets.ISO_8859_1).contains("Helvetica"));
+  }
+}
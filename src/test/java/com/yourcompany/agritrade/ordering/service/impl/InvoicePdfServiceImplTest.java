@@ -0,0 +1,331 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.yourcompany.agritrade.common.exception.BadRequestException;
+import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
+import com.yourcompany.agritrade.ordering.domain.Invoice;
+import com.yourcompany.agritrade.ordering.domain.Order;
+import com.yourcompany.agritrade.ordering.domain.OrderItem;
+import com.yourcompany.agritrade.ordering.repository.InvoiceRepository;
+import com.yourcompany.agritrade.ordering.repository.projection.InvoicePdfKey;
+import com.yourcompany.agritrade.ordering.service.InvoicePdfRenderer;
+import com.yourcompany.agritrade.ordering.service.InvoicePdfService.InvoicePdf;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class InvoicePdfServiceImplTest {
+
+  private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2026, 3, 15, 10, 0);
+
+  @Mock private InvoiceRepository invoiceRepository;
+  @Mock private PlatformTransactionManager transactionManager;
+
+  @TempDir Path cacheDir;
+
+  private final AtomicInteger renders = new AtomicInteger();
+  private volatile CountDownLatch renderGate;
+  private InvoicePdfServiceImpl pdfService;
+
+  // Renderer giả: ghi số hóa đơn làm nội dung "PDF" và đếm số lần render
+  private final InvoicePdfRenderer renderer =
+      (data, out) -> {
+        renders.incrementAndGet();
+        CountDownLatch gate = renderGate;
+        if (gate != null) {
+          try {
+            gate.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        out.write(("PDF " + data.invoiceNumber()).getBytes(StandardCharsets.UTF_8));
+      };
+
+  @BeforeEach
+  void setUp() {
+    LocalDiskInvoicePdfStore store = new LocalDiskInvoicePdfStore();
+    ReflectionTestUtils.setField(store, "cacheDir", cacheDir.toString());
+    store.init();
+    pdfService = new InvoicePdfServiceImpl(invoiceRepository, renderer, store, transactionManager);
+    ReflectionTestUtils.setField(pdfService, "renderThreads", 2);
+    ReflectionTestUtils.setField(pdfService, "exportMaxInvoices", 3);
+    ReflectionTestUtils.setField(pdfService, "exportMaxDays", 31);
+    pdfService.init();
+  }
+
+  @AfterEach
+  void tearDown() {
+    pdfService.shutdown();
+  }
+
+  private static Invoice invoice(Long id, String number) {
+    User buyer = new User();
+    buyer.setFullName("Người mua");
+    User farmer = new User();
+    farmer.setFullName("Nông trại");
+    OrderItem item = new OrderItem();
+    item.setProductName("Cà chua");
+    item.setUnit("kg");
+    item.setQuantity(2);
+    item.setPricePerUnit(new BigDecimal("10000"));
+    item.setTotalPrice(new BigDecimal("20000"));
+    Order order = new Order();
+    order.setBuyer(buyer);
+    order.setFarmer(farmer);
+    order.setOrderItems(new HashSet<>(List.of(item)));
+    order.setSubTotal(new BigDecimal("20000"));
+    order.setShippingFee(BigDecimal.ZERO);
+    order.setDiscountAmount(BigDecimal.ZERO);
+    order.setTotalAmount(new BigDecimal("20000"));
+    Invoice invoice = new Invoice();
+    invoice.setId(id);
+    invoice.setInvoiceNumber(number);
+    invoice.setIssueDate(LocalDate.of(2026, 3, 15));
+    invoice.setOrder(order);
+    return invoice;
+  }
+
+  // Buyer/farmer chưa sửa từ lúc tạo hóa đơn
+  private static InvoicePdfKey key(Long id, String number, LocalDateTime updatedAt) {
+    return new InvoicePdfKey(id, number, updatedAt, UPDATED_AT, UPDATED_AT);
+  }
+
+  private void givenInvoice(Long id, String number, LocalDateTime updatedAt) {
+    givenInvoice(key(id, number, updatedAt));
+  }
+
+  private void givenInvoice(InvoicePdfKey key) {
+    lenient().when(invoiceRepository.findPdfKeyById(key.id())).thenReturn(Optional.of(key));
+    lenient()
+        .when(invoiceRepository.findForPdfById(key.id()))
+        .thenReturn(Optional.of(invoice(key.id(), key.invoiceNumber())));
+  }
+
+  private static String content(InvoicePdf pdf) throws IOException {
+    return pdf.content().getContentAsString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  @DisplayName("Get PDF - Second Download Is Served From Store Without Loading Or Rendering")
+  void getInvoicePdf_whenAlreadyRendered_skipsLoadAndRender() throws IOException {
+    givenInvoice(10L, "INV-ORD1", UPDATED_AT);
+
+    InvoicePdf first = pdfService.getInvoicePdf(10L);
+    InvoicePdf second = pdfService.getInvoicePdf(10L);
+
+    assertEquals("INV-ORD1", second.invoiceNumber());
+    assertEquals("PDF INV-ORD1", content(first));
+    assertEquals("PDF INV-ORD1", content(second));
+    assertEquals(1, renders.get());
+    verify(invoiceRepository, times(1)).findForPdfById(10L);
+    verify(transactionManager, times(1)).commit(any());
+  }
+
+  @Test
+  @DisplayName("Get PDF - Invoice Updated - New Version Is Rendered")
+  void getInvoicePdf_whenInvoiceUpdated_rendersNewVersion() {
+    givenInvoice(10L, "INV-ORD1", UPDATED_AT);
+    pdfService.getInvoicePdf(10L);
+
+    givenInvoice(10L, "INV-ORD1", UPDATED_AT.plusMinutes(1));
+    pdfService.getInvoicePdf(10L);
+
+    assertEquals(2, renders.get());
+  }
+
+  @Test
+  @DisplayName("Get PDF - Buyer Or Farmer Renamed - New Version Is Rendered")
+  void getInvoicePdf_whenPartyUpdated_rendersNewVersion() {
+    LocalDateTime renamedAt = UPDATED_AT.plusDays(1);
+    givenInvoice(10L, "INV-ORD1", UPDATED_AT);
+    pdfService.getInvoicePdf(10L);
+
+    // Hóa đơn không đổi, chỉ họ tên buyer rồi farmer được sửa
+    givenInvoice(new InvoicePdfKey(10L, "INV-ORD1", UPDATED_AT, renamedAt, UPDATED_AT));
+    pdfService.getInvoicePdf(10L);
+    givenInvoice(new InvoicePdfKey(10L, "INV-ORD1", UPDATED_AT, renamedAt, renamedAt));
+    pdfService.getInvoicePdf(10L);
+
+    assertEquals(3, renders.get());
+  }
+
+  @Test
+  @DisplayName("Get PDF - Concurrent Requests For Same Version Share One Render")
+  void getInvoicePdf_concurrentRequests_renderOnce() throws Exception {
+    givenInvoice(10L, "INV-ORD1", UPDATED_AT);
+    renderGate = new CountDownLatch(1);
+    ExecutorService callers = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<InvoicePdf>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(callers.submit(() -> pdfService.getInvoicePdf(10L)));
+      }
+      Thread.sleep(200); // Để các request còn lại kịp chờ lượt render đang chạy
+      renderGate.countDown();
+      for (Future<InvoicePdf> result : results) {
+        assertEquals("PDF INV-ORD1", content(result.get(5, TimeUnit.SECONDS)));
+      }
+    } finally {
+      callers.shutdownNow();
+    }
+
+    assertEquals(1, renders.get());
+  }
+
+  @Test
+  @DisplayName("Get PDF - Invoice Not Found - Throws ResourceNotFoundException")
+  void getInvoicePdf_whenInvoiceNotFound_throws() {
+    when(invoiceRepository.findPdfKeyById(99L)).thenReturn(Optional.empty());
+
+    assertThrows(ResourceNotFoundException.class, () -> pdfService.getInvoicePdf(99L));
+    assertEquals(0, renders.get());
+  }
+
+  @Test
+  @DisplayName("Get PDF - Order Data Missing - Throws ResourceNotFoundException")
+  void getInvoicePdf_whenOrderDataMissing_throws() {
+    when(invoiceRepository.findPdfKeyById(10L))
+        .thenReturn(Optional.of(key(10L, "INV-ORD1", UPDATED_AT)));
+    when(invoiceRepository.findForPdfById(10L)).thenReturn(Optional.empty());
+
+    assertThrows(ResourceNotFoundException.class, () -> pdfService.getInvoicePdf(10L));
+  }
+
+  @Test
+  @DisplayName("Export ZIP - Entries In Order, Failed Invoice Listed Instead Of Aborting")
+  void writeInvoicesZip_writesEntriesAndListsFailures() throws IOException {
+    List<InvoicePdfKey> keys = new ArrayList<>();
+    for (long id = 1; id <= 5; id++) {
+      String number = "INV-ORD" + id;
+      keys.add(key(id, number, UPDATED_AT));
+      if (id == 3) {
+        when(invoiceRepository.findForPdfById(id)).thenReturn(Optional.empty());
+      } else {
+        when(invoiceRepository.findForPdfById(id)).thenReturn(Optional.of(invoice(id, number)));
+      }
+    }
+    boolean[] closed = new boolean[1];
+    ByteArrayOutputStream buffer =
+        new ByteArrayOutputStream() {
+          @Override
+          public void close() {
+            closed[0] = true;
+          }
+        };
+
+    pdfService.writeInvoicesZip(keys, buffer);
+
+    List<String> names = new ArrayList<>();
+    String failedList = null;
+    try (ZipArchiveInputStream zip =
+        new ZipArchiveInputStream(new ByteArrayInputStream(buffer.toByteArray()))) {
+      ZipArchiveEntry entry;
+      while ((entry = zip.getNextEntry()) != null) {
+        names.add(entry.getName());
+        String body = new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+        if (entry.getName().equals(InvoicePdfServiceImpl.FAILED_ENTRY_NAME)) {
+          failedList = body;
+        } else {
+          assertEquals("PDF " + entry.getName().replace(".pdf", ""), body);
+        }
+      }
+    }
+    assertEquals(
+        List.of(
+            "INV-ORD1.pdf",
+            "INV-ORD2.pdf",
+            "INV-ORD4.pdf",
+            "INV-ORD5.pdf",
+            InvoicePdfServiceImpl.FAILED_ENTRY_NAME),
+        names);
+    assertEquals("INV-ORD3", failedList);
+    assertFalse(closed[0]);
+  }
+
+  @Test
+  @DisplayName("Export ZIP - Already Rendered PDFs Are Reused")
+  void writeInvoicesZip_reusesStoredPdfs() throws IOException {
+    givenInvoice(10L, "INV-ORD1", UPDATED_AT);
+    pdfService.getInvoicePdf(10L);
+
+    pdfService.writeInvoicesZip(
+        List.of(key(10L, "INV-ORD1", UPDATED_AT)), OutputStream.nullOutputStream());
+
+    assertEquals(1, renders.get());
+  }
+
+  @Test
+  @DisplayName("Find For Export - Invalid Or Too Wide Period - Throws BadRequestException")
+  void findInvoicesForExport_whenPeriodInvalid_throws() {
+    LocalDate from = LocalDate.of(2026, 3, 1);
+
+    assertThrows(
+        BadRequestException.class, () -> pdfService.findInvoicesForExport(from, from.minusDays(1)));
+    assertThrows(
+        BadRequestException.class, () -> pdfService.findInvoicesForExport(from, from.plusDays(31)));
+    verifyNoInteractions(invoiceRepository);
+  }
+
+  @Test
+  @DisplayName("Find For Export - More Invoices Than Limit - Throws BadRequestException")
+  void findInvoicesForExport_whenTooManyInvoices_throws() {
+    LocalDate from = LocalDate.of(2026, 3, 1);
+    LocalDate to = from.plusDays(30);
+    List<InvoicePdfKey> four = new ArrayList<>();
+    for (long id = 1; id <= 4; id++) {
+      four.add(key(id, "INV-" + id, UPDATED_AT));
+    }
+    when(invoiceRepository.findPdfKeysByIssueDateBetween(eq(from), eq(to), any(Pageable.class)))
+        .thenReturn(four);
+
+    assertThrows(BadRequestException.class, () -> pdfService.findInvoicesForExport(from, to));
+
+    when(invoiceRepository.findPdfKeysByIssueDateBetween(eq(from), eq(to), any(Pageable.class)))
+        .thenReturn(four.subList(0, 3));
+    assertEquals(3, pdfService.findInvoicesForExport(from, to).size());
+  }
+
+  @Test
+  @DisplayName("Version - Includes Layout Revision And Update Times Of Invoice And Parties")
+  void version_includesLayoutRevisionAndUpdatedAt() {
+    assertEquals(
+        "r" + InvoicePdfRenderer.LAYOUT_REVISION + "-20260315100000000000-20260316100000000000-0",
+        InvoicePdfServiceImpl.version(
+            new InvoicePdfKey(1L, "INV-1", UPDATED_AT, UPDATED_AT.plusDays(1), null)));
+  }
+}
@@ -0,0 +1,272 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.yourcompany.agritrade.common.model.RoleType;
+import com.yourcompany.agritrade.notification.service.EmailService;
+import com.yourcompany.agritrade.notification.service.NotificationService;
+import com.yourcompany.agritrade.ordering.domain.Invoice;
+import com.yourcompany.agritrade.ordering.domain.InvoiceReminderCheckpoint;
+import com.yourcompany.agritrade.ordering.domain.InvoiceReminderPhase;
+import com.yourcompany.agritrade.ordering.domain.InvoiceStatus;
+import com.yourcompany.agritrade.ordering.domain.Order;
+import com.yourcompany.agritrade.ordering.repository.InvoiceReminderCheckpointRepository;
+import com.yourcompany.agritrade.ordering.repository.InvoiceRepository;
+import com.yourcompany.agritrade.ordering.service.InvoiceReminderService.RunResult;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class InvoiceReminderServiceImplTest {
+
+  @Mock private InvoiceRepository invoiceRepository;
+  @Mock private InvoiceReminderCheckpointRepository checkpointRepository;
+  @Mock private NotificationService notificationService;
+  @Mock private EmailService emailService;
+  @Mock private UserRepository userRepository;
+  @Mock private PlatformTransactionManager transactionManager;
+
+  @InjectMocks private InvoiceReminderServiceImpl reminderService;
+
+  private final LocalDate today = LocalDate.of(2026, 3, 10);
+  private final User admin = User.builder().id(99L).email("admin@example.com").build();
+  private final List<InvoiceReminderCheckpoint> savedCheckpoints = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(reminderService, "chunkSize", 2);
+    ReflectionTestUtils.setField(reminderService, "dueSoonDaysBefore", 3);
+    lenient()
+        .when(checkpointRepository.save(any(InvoiceReminderCheckpoint.class)))
+        .thenAnswer(
+            invocation -> {
+              InvoiceReminderCheckpoint checkpoint = invocation.getArgument(0);
+              // Chụp lại giá trị vì service tạo đối tượng mới cho mỗi lần lưu
+              savedCheckpoints.add(
+                  new InvoiceReminderCheckpoint(
+                      checkpoint.getName(),
+                      checkpoint.getRunDate(),
+                      checkpoint.getPhase(),
+                      checkpoint.getLastInvoiceId()));
+              return checkpoint;
+            });
+    lenient()
+        .when(invoiceRepository.findWithDetailsByIdIn(anyCollection()))
+        .thenAnswer(
+            invocation -> {
+              Collection<Long> ids = invocation.getArgument(0);
+              return ids.stream().map(InvoiceReminderServiceImplTest::invoice).toList();
+            });
+  }
+
+  private static Invoice invoice(Long id) {
+    Order order = new Order();
+    order.setId(id * 10);
+    order.setOrderCode("ORD-" + id);
+    order.setBuyer(User.builder().id(id + 100).email("buyer" + id + "@example.com").build());
+    Invoice invoice = new Invoice();
+    invoice.setId(id);
+    invoice.setInvoiceNumber("INV-" + id);
+    invoice.setOrder(order);
+    invoice.setDueDate(LocalDate.of(2026, 3, 1));
+    return invoice;
+  }
+
+  private InvoiceReminderCheckpoint lastCheckpoint() {
+    return savedCheckpoints.get(savedCheckpoints.size() - 1);
+  }
+
+  @Test
+  @DisplayName("Fresh Run - Bulk Marks Overdue Then Reminds In Chunks With Checkpoints")
+  void sendReminders_freshRun_processesChunksAndFinishes() {
+    when(checkpointRepository.findById(InvoiceReminderServiceImpl.CHECKPOINT_NAME))
+        .thenReturn(Optional.empty());
+    when(invoiceRepository.markOverdue(eq(today), any())).thenReturn(3);
+    when(userRepository.findByRoles_Name(RoleType.ROLE_ADMIN)).thenReturn(List.of(admin));
+    when(invoiceRepository.findIdsMarkedOverdueOn(eq(today), eq(0L), any()))
+        .thenReturn(List.of(1L, 2L));
+    when(invoiceRepository.findIdsMarkedOverdueOn(eq(today), eq(2L), any()))
+        .thenReturn(List.of(3L));
+    when(invoiceRepository.findIdsByStatusAndDueDateBetween(
+            eq(InvoiceStatus.ISSUED), eq(today), eq(today.plusDays(3)), eq(0L), any()))
+        .thenReturn(List.of(7L));
+
+    RunResult result = reminderService.sendReminders(today);
+
+    assertEquals(new RunResult(today, 3, 3, 1, 0, false), result);
+    verify(notificationService, times(3)).sendOverdueInvoiceReminderToBuyer(any());
+    verify(emailService, times(3)).sendOverdueInvoiceAdminEmail(any(), eq(List.of(admin)));
+    verify(notificationService).sendDueSoonInvoiceReminderToBuyer(any());
+    verify(emailService).sendDueSoonInvoiceReminderEmail(any());
+    // Mở lượt -> sau lô đầy -> lô cuối chuyển bước -> bước sắp đến hạn xong
+    assertEquals(
+        List.of(
+            InvoiceReminderPhase.OVERDUE,
+            InvoiceReminderPhase.OVERDUE,
+            InvoiceReminderPhase.DUE_SOON,
+            InvoiceReminderPhase.DONE),
+        savedCheckpoints.stream().map(InvoiceReminderCheckpoint::getPhase).toList());
+    assertEquals(2L, savedCheckpoints.get(1).getLastInvoiceId());
+    // Mở lượt, 2 lô quá hạn, 1 lô sắp đến hạn, và các lần đọc checkpoint/admin
+    verify(transactionManager, times(6)).commit(any());
+  }
+
+  @Test
+  @DisplayName("Crashed Run - Resumes Due-Soon Step After Last Checkpointed Invoice")
+  void sendReminders_whenRunUnfinished_resumesFromCheckpoint() {
+    when(checkpointRepository.findById(InvoiceReminderServiceImpl.CHECKPOINT_NAME))
+        .thenReturn(
+            Optional.of(
+                new InvoiceReminderCheckpoint(
+                    InvoiceReminderServiceImpl.CHECKPOINT_NAME,
+                    today,
+                    InvoiceReminderPhase.DUE_SOON,
+                    40L)));
+    when(invoiceRepository.findIdsByStatusAndDueDateBetween(any(), any(), any(), eq(40L), any()))
+        .thenReturn(List.of(41L));
+
+    RunResult result = reminderService.sendReminders(today);
+
+    assertTrue(result.resumed());
+    assertEquals(1, result.dueSoonReminders());
+    verify(invoiceRepository, never()).markOverdue(any(), any());
+    verify(invoiceRepository, never()).findIdsMarkedOverdueOn(any(), any(), any());
+    verifyNoInteractions(userRepository);
+    assertEquals(InvoiceReminderPhase.DONE, lastCheckpoint().getPhase());
+  }
+
+  @Test
+  @DisplayName("Previous Day Stopped Mid-Overdue - Finishes Its Reminders Before Today's Run")
+  void sendReminders_whenPreviousDayUnfinished_finishesOverdueThenStartsToday() {
+    LocalDate yesterday = today.minusDays(1);
+    when(checkpointRepository.findById(InvoiceReminderServiceImpl.CHECKPOINT_NAME))
+        .thenReturn(
+            Optional.of(
+                new InvoiceReminderCheckpoint(
+                    InvoiceReminderServiceImpl.CHECKPOINT_NAME,
+                    yesterday,
+                    InvoiceReminderPhase.OVERDUE,
+                    5L)));
+    when(userRepository.findByRoles_Name(RoleType.ROLE_ADMIN)).thenReturn(List.of());
+    when(invoiceRepository.findIdsMarkedOverdueOn(eq(yesterday), eq(5L), any()))
+        .thenReturn(List.of(6L));
+    when(invoiceRepository.findIdsMarkedOverdueOn(eq(today), eq(0L), any())).thenReturn(List.of());
+    when(invoiceRepository.findIdsByStatusAndDueDateBetween(any(), any(), any(), any(), any()))
+        .thenReturn(List.of());
+
+    RunResult result = reminderService.sendReminders(today);
+
+    assertEquals(1, result.overdueReminders());
+    verify(invoiceRepository).markOverdue(eq(today), any());
+    verify(notificationService).sendOverdueInvoiceReminderToBuyer(any());
+    verify(notificationService, never()).sendOverdueInvoiceNotificationToAdmin(any());
+    assertEquals(today, lastCheckpoint().getRunDate());
+    assertEquals(InvoiceReminderPhase.DONE, lastCheckpoint().getPhase());
+  }
+
+  @Test
+  @DisplayName("Already Finished Today - Does Nothing")
+  void sendReminders_whenTodayDone_skips() {
+    when(checkpointRepository.findById(InvoiceReminderServiceImpl.CHECKPOINT_NAME))
+        .thenReturn(
+            Optional.of(
+                new InvoiceReminderCheckpoint(
+                    InvoiceReminderServiceImpl.CHECKPOINT_NAME,
+                    today,
+                    InvoiceReminderPhase.DONE,
+                    0L)));
+
+    RunResult result = reminderService.sendReminders(today);
+
+    assertEquals(new RunResult(today, 0, 0, 0, 0, false), result);
+    verify(invoiceRepository, never()).markOverdue(any(), any());
+    verifyNoInteractions(notificationService, emailService);
+    assertFalse(reminderService.hasUnfinishedRun(today));
+  }
+
+  @Test
+  @DisplayName("Invoice That Always Fails - Chunk Retried One By One, Poison Invoice Skipped")
+  void sendReminders_whenOneInvoiceAlwaysFails_skipsItAndKeepsCheckpointMoving() {
+    when(checkpointRepository.findById(InvoiceReminderServiceImpl.CHECKPOINT_NAME))
+        .thenReturn(Optional.empty());
+    when(userRepository.findByRoles_Name(RoleType.ROLE_ADMIN)).thenReturn(List.of());
+    when(invoiceRepository.findIdsMarkedOverdueOn(eq(today), eq(0L), any()))
+        .thenReturn(List.of(1L, 2L));
+    when(invoiceRepository.findIdsMarkedOverdueOn(eq(today), eq(2L), any()))
+        .thenReturn(List.of(3L, 4L));
+    when(invoiceRepository.findIdsMarkedOverdueOn(eq(today), eq(4L), any())).thenReturn(List.of());
+    when(invoiceRepository.findIdsByStatusAndDueDateBetween(any(), any(), any(), any(), any()))
+        .thenReturn(List.of());
+    doAnswer(
+            invocation -> {
+              Invoice invoice = invocation.getArgument(0);
+              if (invoice.getId() == 3L) {
+                throw new IllegalStateException("buyer data broken");
+              }
+              return null;
+            })
+        .when(notificationService)
+        .sendOverdueInvoiceReminderToBuyer(any());
+
+    RunResult result = reminderService.sendReminders(today);
+
+    assertEquals(3, result.overdueReminders());
+    assertEquals(1, result.failedReminders());
+    // Lô 1 -> lô lỗi chạy lại từng hóa đơn, checkpoint vẫn tiến qua hóa đơn lỗi -> lô rỗng
+    assertTrue(
+        savedCheckpoints.stream()
+            .anyMatch(
+                checkpoint ->
+                    checkpoint.getPhase() == InvoiceReminderPhase.OVERDUE
+                        && checkpoint.getLastInvoiceId() == 4L));
+    assertEquals(InvoiceReminderPhase.DONE, lastCheckpoint().getPhase());
+    // Lô thứ hai rollback, rồi hóa đơn 3 rollback riêng khi chạy lại
+    verify(transactionManager, times(2)).rollback(any());
+    verify(invoiceRepository).findWithDetailsByIdIn(List.of(4L));
+  }
+
+  @Test
+  @DisplayName("Previous Day's Resume Fails - Today's Run Still Marks Overdue And Finishes")
+  void sendReminders_whenPreviousDayResumeFails_stillRunsToday() {
+    LocalDate yesterday = today.minusDays(1);
+    when(checkpointRepository.findById(InvoiceReminderServiceImpl.CHECKPOINT_NAME))
+        .thenReturn(
+            Optional.of(
+                new InvoiceReminderCheckpoint(
+                    InvoiceReminderServiceImpl.CHECKPOINT_NAME,
+                    yesterday,
+                    InvoiceReminderPhase.OVERDUE,
+                    5L)));
+    when(userRepository.findByRoles_Name(RoleType.ROLE_ADMIN)).thenReturn(List.of());
+    when(invoiceRepository.findIdsMarkedOverdueOn(eq(yesterday), eq(5L), any()))
+        .thenThrow(new IllegalStateException("query failed"));
+    when(invoiceRepository.markOverdue(eq(today), any())).thenReturn(2);
+    when(invoiceRepository.findIdsMarkedOverdueOn(eq(today), eq(0L), any()))
+        .thenReturn(List.of(8L));
+    when(invoiceRepository.findIdsByStatusAndDueDateBetween(any(), any(), any(), any(), any()))
+        .thenReturn(List.of());
+
+    RunResult result = reminderService.sendReminders(today);
+
+    assertEquals(2, result.markedOverdue());
+    assertEquals(1, result.overdueReminders());
+    assertEquals(today, lastCheckpoint().getRunDate());
+    assertEquals(InvoiceReminderPhase.DONE, lastCheckpoint().getPhase());
+  }
+}
@@ -4,12 +4,10 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
-import com.yourcompany.agritrade.common.exception.ResourceNotFoundException;
 import com.yourcompany.agritrade.ordering.domain.*;
 import com.yourcompany.agritrade.ordering.dto.response.InvoiceSummaryResponse;
 import com.yourcompany.agritrade.ordering.mapper.InvoiceMapper;
 import com.yourcompany.agritrade.ordering.repository.InvoiceRepository;
-import com.yourcompany.agritrade.ordering.repository.OrderRepository;
 import com.yourcompany.agritrade.usermanagement.domain.User;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -37,7 +35,6 @@ import org.springframework.test.util.ReflectionTestUtils;
 class InvoiceServiceImplTest {
 
   @Mock private InvoiceRepository invoiceRepository;
-  @Mock private OrderRepository orderRepository;
   @Mock private InvoiceMapper invoiceMapper;
 
   @InjectMocks private InvoiceServiceImpl invoiceService;
@@ -195,30 +192,6 @@ class InvoiceServiceImplTest {
     }
   }
 
-  @Nested
-  @DisplayName("Generate Invoice PDF Tests")
-  class GenerateInvoicePdfTests {
-
-    @Test
-    @DisplayName("Generate PDF - Invoice Not Found - Throws ResourceNotFoundException")
-    void generateInvoicePdf_whenInvoiceNotFound_shouldThrowResourceNotFoundException() {
-      when(invoiceRepository.findById(99L)).thenReturn(Optional.empty());
-
-      assertThrows(ResourceNotFoundException.class, () -> invoiceService.generateInvoicePdf(99L));
-    }
-
-    @Test
-    @DisplayName("Generate PDF - Order Not Found for Invoice - Throws ResourceNotFoundException")
-    void generateInvoicePdf_whenOrderNotFoundForInvoice_shouldThrowResourceNotFoundException() {
-      when(invoiceRepository.findById(testInvoice.getId())).thenReturn(Optional.of(testInvoice));
-      when(orderRepository.findById(testOrder.getId())).thenReturn(Optional.empty());
-
-      assertThrows(
-          ResourceNotFoundException.class,
-          () -> invoiceService.generateInvoicePdf(testInvoice.getId()));
-    }
-  }
-
   @Nested
   @DisplayName("Admin Get All Invoices Tests")
   class AdminGetAllInvoicesTests {
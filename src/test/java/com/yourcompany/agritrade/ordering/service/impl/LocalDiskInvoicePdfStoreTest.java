@@ -0,0 +1,78 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class LocalDiskInvoicePdfStoreTest {
+
+  @TempDir Path cacheDir;
+
+  private LocalDiskInvoicePdfStore store;
+
+  @BeforeEach
+  void setUp() {
+    store = new LocalDiskInvoicePdfStore();
+    ReflectionTestUtils.setField(store, "cacheDir", cacheDir.toString());
+    store.init();
+  }
+
+  private Path rendered(String content) throws IOException {
+    Path file = store.createTempFile();
+    Files.writeString(file, content);
+    return file;
+  }
+
+  @Test
+  @DisplayName("Save Then Find - Same Version Is Served From Disk")
+  void saveThenFind_returnsStoredFile() throws IOException {
+    Path temp = rendered("pdf-v1");
+
+    store.save("INV-ORD1", "r1-a", temp);
+
+    Resource found = store.find("INV-ORD1", "r1-a").orElseThrow();
+    assertEquals("pdf-v1", found.getContentAsString(StandardCharsets.UTF_8));
+    assertFalse(Files.exists(temp));
+    assertTrue(store.find("INV-ORD1", "r1-b").isEmpty());
+  }
+
+  @Test
+  @DisplayName("Save New Version - Older Versions Of Same Invoice Are Removed")
+  void save_newVersion_deletesOldVersions() throws IOException {
+    store.save("INV-ORD1", "r1-a", rendered("old"));
+    store.save("INV-ORD2", "r1-a", rendered("other"));
+
+    store.save("INV-ORD1", "r1-b", rendered("new"));
+
+    assertTrue(store.find("INV-ORD1", "r1-a").isEmpty());
+    assertEquals(
+        "new",
+        store.find("INV-ORD1", "r1-b").orElseThrow().getContentAsString(StandardCharsets.UTF_8));
+    assertTrue(store.find("INV-ORD2", "r1-a").isPresent());
+  }
+
+  @Test
+  @DisplayName("Invoice Number With Path Characters - Stays Inside Cache Directory")
+  void save_withUnsafeInvoiceNumber_staysInsideCacheDir() throws IOException {
+    store.save("../../etc/INV", "r1-a", rendered("x"));
+
+    try (Stream<Path> files = Files.walk(cacheDir)) {
+      assertTrue(
+          files
+              .filter(Files::isRegularFile)
+              .allMatch(file -> file.normalize().startsWith(cacheDir.toAbsolutePath())));
+    }
+    assertTrue(store.find("../../etc/INV", "r1-a").isPresent());
+    assertEquals("_.._.._etc_INV", LocalDiskInvoicePdfStore.safeName("../../etc/INV"));
+  }
+}
@@ -7,10 +7,14 @@ import static org.mockito.Mockito.*;
 import com.yourcompany.agritrade.catalog.domain.Product;
 import com.yourcompany.agritrade.catalog.domain.ProductImage;
 import com.yourcompany.agritrade.catalog.domain.ProductStatus;
+import com.yourcompany.agritrade.catalog.event.CatalogChangedEvent;
 import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.common.dto.response.CursorPageResponse;
 import com.yourcompany.agritrade.common.exception.BadRequestException;
+import com.yourcompany.agritrade.common.exception.PaymentGatewayUnavailableException;
 import com.yourcompany.agritrade.common.model.RoleType;
 import com.yourcompany.agritrade.common.service.FileStorageService;
+import com.yourcompany.agritrade.common.util.KeysetCursor;
 import com.yourcompany.agritrade.common.util.SecurityUtils;
 import com.yourcompany.agritrade.notification.service.NotificationService;
 import com.yourcompany.agritrade.ordering.domain.*;
@@ -21,7 +25,9 @@ import com.yourcompany.agritrade.ordering.dto.response.*;
 import com.yourcompany.agritrade.ordering.mapper.OrderMapper;
 import com.yourcompany.agritrade.ordering.repository.*;
 import com.yourcompany.agritrade.ordering.service.InvoiceService;
+import com.yourcompany.agritrade.ordering.service.OrderCodeGenerator;
 import com.yourcompany.agritrade.ordering.service.PaymentGatewayService;
+import com.yourcompany.agritrade.ordering.service.StockReservationService;
 import com.yourcompany.agritrade.usermanagement.domain.Address;
 import com.yourcompany.agritrade.usermanagement.domain.FarmerProfile;
 import com.yourcompany.agritrade.usermanagement.domain.Role;
@@ -31,15 +37,20 @@ import com.yourcompany.agritrade.usermanagement.repository.FarmerProfileReposito
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
 import jakarta.servlet.http.HttpServletRequest;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -49,6 +60,8 @@ import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @ExtendWith(MockitoExtension.class)
 class OrderServiceImplTest {
@@ -65,6 +78,8 @@ class OrderServiceImplTest {
   @Mock private InvoiceService invoiceService;
   @Mock private InvoiceRepository invoiceRepository;
   @Mock private FileStorageService fileStorageService;
+  @Mock private StockReservationService stockReservationService;
+  @Mock private OrderCodeGenerator orderCodeGenerator;
 
   @Mock
   @Qualifier("vnPayService")
@@ -75,6 +90,8 @@ class OrderServiceImplTest {
   private PaymentGatewayService moMoService;
 
   @Mock private HttpServletRequest httpServletRequest;
+  @Mock private ApplicationEventPublisher eventPublisher;
+  @Mock private PlatformTransactionManager transactionManager;
   @Mock private Authentication authentication;
 
   private MockedStatic<SecurityUtils> mockedSecurityUtils;
@@ -93,6 +110,9 @@ class OrderServiceImplTest {
   @BeforeEach
   void setUp() {
     mockedSecurityUtils = Mockito.mockStatic(SecurityUtils.class);
+    // Hai cổng cùng kiểu PaymentGatewayService: @InjectMocks không phân biệt theo @Qualifier
+    ReflectionTestUtils.setField(orderService, "vnPayService", vnPayService);
+    ReflectionTestUtils.setField(orderService, "moMoService", moMoService);
 
     testBuyer =
         User.builder()
@@ -201,6 +221,15 @@ class OrderServiceImplTest {
     lenient()
         .when(fileStorageService.getFileUrl(anyString()))
         .thenAnswer(invocation -> "mockedUrl/" + invocation.getArgument(0));
+    lenient()
+        .when(fileStorageService.getFileUrls(anyCollection()))
+        .thenAnswer(
+            invocation -> {
+              Map<String, String> urls = new LinkedHashMap<>();
+              Collection<String> blobPaths = invocation.getArgument(0);
+              blobPaths.forEach(blobPath -> urls.put(blobPath, "mockedUrl/" + blobPath));
+              return urls;
+            });
   }
 
   @AfterEach
@@ -244,27 +273,17 @@ class OrderServiceImplTest {
 
       List<CartItem> cartItems = List.of(ci1, ci2);
 
-      // Tạo một đối tượng Order mẫu mà chúng ta mong đợi sẽ được lưu
-      Order expectedOrderToBeSaved = new Order();
-      expectedOrderToBeSaved.setId(123L); // Gán một ID giả định
-      expectedOrderToBeSaved.setOrderCode("MOCKED-CODE-123");
-
       // 2. Thiết lập hành vi cho các Mock (đơn giản hóa)
       when(addressRepository.findByIdAndUserId(shippingAddress.getId(), testBuyer.getId()))
           .thenReturn(Optional.of(shippingAddress));
       when(cartItemRepository.findByUserId(testBuyer.getId())).thenReturn(cartItems);
-      when(productRepository.findById(product1.getId())).thenReturn(Optional.of(product1));
-      when(productRepository.findById(product2.getId())).thenReturn(Optional.of(product2));
-      when(userRepository.findById(testFarmer.getId())).thenReturn(Optional.of(testFarmer));
-      when(farmerProfileRepository.findById(testFarmer.getId()))
-          .thenReturn(Optional.of(farmerProfile));
-
-      // Đơn giản hóa mock save: Khi gọi save, trả về đối tượng order đã chuẩn bị sẵn
-      when(orderRepository.save(any(Order.class))).thenReturn(expectedOrderToBeSaved);
-
-      // Đơn giản hóa mock findById: Khi được gọi để map kết quả, trả về chính order đó
-      when(orderRepository.findById(expectedOrderToBeSaved.getId()))
-          .thenReturn(Optional.of(expectedOrderToBeSaved));
+      Map<Long, Product> lockedProducts =
+          Map.of(product1.getId(), product1, product2.getId(), product2);
+      when(stockReservationService.lockProducts(anyList())).thenReturn(lockedProducts);
+      // Profile + User của mọi farmer được nạp một lần
+      when(farmerProfileRepository.findAllWithUserByUserIdIn(Set.of(testFarmer.getId())))
+          .thenReturn(List.of(farmerProfile));
+      when(orderCodeGenerator.nextOrderCode()).thenReturn("AGT260117-00001");
 
       // Mock mapper để trả về DTO
       when(orderMapper.toOrderResponse(any(Order.class))).thenReturn(orderResponseDto);
@@ -290,10 +309,30 @@ class OrderServiceImplTest {
 
       // Kiểm tra các tương tác quan trọng
       verify(cartItemRepository).deleteAllInBatch(cartItems);
-      verify(productRepository, times(2)).saveAndFlush(any(Product.class));
+      verify(stockReservationService)
+          .deductStock(
+              argThat(products -> products.size() == 2),
+              eq(Map.of(product1.getId(), 2, product2.getId(), 1)));
+      verify(productRepository, never()).findById(anyLong());
+      verify(productRepository, never()).saveAndFlush(any(Product.class));
       verify(notificationService).sendOrderPlacementNotification(any(Order.class));
-      verify(paymentRepository).save(any(Payment.class));
-      verify(orderRepository).save(any(Order.class)); // Chỉ cần kiểm tra nó được gọi là đủ
+
+      // Đơn, item và payment được lưu một lần qua cascade; không đọc lại farmer/đơn từng cái
+      ArgumentCaptor<List<Order>> ordersCaptor = ArgumentCaptor.forClass(List.class);
+      verify(orderRepository).saveAll(ordersCaptor.capture());
+      Order savedOrder = ordersCaptor.getValue().get(0);
+      assertSame(testFarmer, savedOrder.getFarmer());
+      assertEquals("AGT260117-00001", savedOrder.getOrderCode());
+      assertEquals(2, savedOrder.getOrderItems().size());
+      assertEquals(1, savedOrder.getPayments().size());
+      assertEquals(
+          savedOrder.getTotalAmount(), savedOrder.getPayments().iterator().next().getAmount());
+      verify(orderRepository, never()).save(any(Order.class));
+      verify(orderRepository, never()).findById(anyLong());
+      verify(paymentRepository, never()).save(any(Payment.class));
+      verify(userRepository, never()).findById(anyLong());
+      verify(farmerProfileRepository, never()).findById(anyLong());
+      verify(orderMapper).toOrderResponse(savedOrder);
     }
 
     @Test
@@ -322,13 +361,39 @@ class OrderServiceImplTest {
       when(addressRepository.findByIdAndUserId(any(), any()))
           .thenReturn(Optional.of(shippingAddress));
       when(cartItemRepository.findByUserId(testBuyer.getId())).thenReturn(List.of(ci1));
-      when(productRepository.findById(product1.getId())).thenReturn(Optional.of(product1));
+      when(stockReservationService.lockProducts(List.of(product1.getId())))
+          .thenReturn(Map.of(product1.getId(), product1));
 
       BadRequestException exception =
           assertThrows(
               BadRequestException.class,
               () -> orderService.checkout(authentication, checkoutRequest));
       assertTrue(exception.getMessage().contains("không đủ số lượng tồn kho"));
+      verify(stockReservationService, never()).deductStock(any(), any());
+    }
+
+    @Test
+    @DisplayName("Checkout - Product Deleted While Locking - Removes Cart Item")
+    void checkout_whenProductNoLongerExists_removesCartItemAndThrows() {
+      mockAuthenticatedUser(testBuyer);
+      CartItem ci1 = new CartItem();
+      ci1.setId(1L);
+      ci1.setUser(testBuyer);
+      ci1.setProduct(product1);
+      ci1.setQuantity(1);
+
+      when(addressRepository.findByIdAndUserId(any(), any()))
+          .thenReturn(Optional.of(shippingAddress));
+      when(cartItemRepository.findByUserId(testBuyer.getId())).thenReturn(List.of(ci1));
+      when(stockReservationService.lockProducts(anyList())).thenReturn(Collections.emptyMap());
+
+      BadRequestException exception =
+          assertThrows(
+              BadRequestException.class,
+              () -> orderService.checkout(authentication, checkoutRequest));
+      assertTrue(exception.getMessage().contains("không còn tồn tại"));
+      verify(cartItemRepository).delete(ci1);
+      verify(stockReservationService, never()).deductStock(any(), any());
     }
   }
 
@@ -369,6 +434,62 @@ class OrderServiceImplTest {
       assertNotNull(result);
       assertEquals(1, result.getTotalElements());
     }
+
+    @Test
+    @DisplayName("Get My Orders As Buyer By Cursor - Has Next Page, No Count Query")
+    void getMyOrdersAsBuyerByCursor_whenMoreRows_returnsNextCursor() {
+      mockAuthenticatedUser(testBuyer);
+      LocalDateTime createdAt = LocalDateTime.of(2024, 5, 1, 10, 0);
+      orderEntity.setCreatedAt(createdAt);
+      Order olderOrder = new Order();
+      olderOrder.setId(0L);
+      olderOrder.setCreatedAt(createdAt.minusMinutes(1));
+      when(orderRepository.findBy(any(Specification.class), any()))
+          .thenReturn(List.of(orderEntity, olderOrder));
+      when(orderMapper.toOrderSummaryResponseList(List.of(orderEntity)))
+          .thenReturn(List.of(orderSummaryResponseDto));
+
+      CursorPageResponse<OrderSummaryResponse> result =
+          orderService.getMyOrdersAsBuyerByCursor(
+              authentication, null, null, null, null, null, null, 1);
+
+      assertEquals(1, result.getContent().size());
+      assertTrue(result.isHasNext());
+      KeysetCursor next = KeysetCursor.decode(result.getNextCursor());
+      assertEquals(createdAt, next.createdAt());
+      assertEquals(orderEntity.getId(), next.id());
+      verify(orderRepository, never()).findAll(any(Specification.class), any(Pageable.class));
+      verify(orderRepository, never()).count(any(Specification.class));
+    }
+
+    @Test
+    @DisplayName("Get All Orders For Admin By Cursor - Last Page")
+    void getAllOrdersForAdminByCursor_whenLastPage_returnsNoCursor() {
+      String cursor = new KeysetCursor(LocalDateTime.of(2024, 5, 1, 10, 0), 5L).encode();
+      when(orderRepository.findBy(any(Specification.class), any()))
+          .thenReturn(List.of(orderEntity));
+      when(orderMapper.toOrderSummaryResponseList(List.of(orderEntity)))
+          .thenReturn(List.of(orderSummaryResponseDto));
+
+      CursorPageResponse<OrderSummaryResponse> result =
+          orderService.getAllOrdersForAdminByCursor(
+              "ORD", null, null, null, null, null, null, cursor, 20);
+
+      assertEquals(1, result.getContent().size());
+      assertFalse(result.isHasNext());
+      assertNull(result.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Get All Orders For Admin By Cursor - Invalid Cursor")
+    void getAllOrdersForAdminByCursor_whenCursorInvalid_throwsBadRequest() {
+      assertThrows(
+          BadRequestException.class,
+          () ->
+              orderService.getAllOrdersForAdminByCursor(
+                  null, null, null, null, null, null, null, "not-a-cursor", 20));
+      verifyNoInteractions(orderRepository);
+    }
   }
 
   @Nested
@@ -385,7 +506,7 @@ class OrderServiceImplTest {
 
       assertNotNull(result);
       assertEquals(orderResponseDto.getOrderCode(), result.getOrderCode());
-      verify(fileStorageService).getFileUrl(eq("product1/image.jpg"));
+      verify(fileStorageService).getFileUrls(List.of("product1/image.jpg"));
     }
 
     @Test
@@ -475,6 +596,85 @@ class OrderServiceImplTest {
       assertEquals(OrderStatus.CANCELLED, orderEntity.getStatus());
       assertEquals(10, product1.getStockQuantity());
       verify(notificationService).sendOrderCancellationNotification(orderEntity);
+      verify(eventPublisher).publishEvent(CatalogChangedEvent.stockChanged(List.of(product1)));
+    }
+
+    @Test
+    @DisplayName("Cancel Order - Paid Order - Refund Requested After Cancellation Commits")
+    void cancelOrder_whenPaid_shouldRequestRefundOutsideTransaction() {
+      mockAuthenticatedUser(testBuyer);
+      Payment payment = paidVnPayPayment();
+      when(orderRepository.findById(orderEntity.getId())).thenReturn(Optional.of(orderEntity));
+      when(productRepository.findById(product1.getId())).thenReturn(Optional.of(product1));
+      when(productRepository.saveAndFlush(product1)).thenReturn(product1);
+      when(orderRepository.save(any(Order.class))).thenReturn(orderEntity);
+      when(paymentRepository.findById(payment.getId())).thenReturn(Optional.of(payment));
+      when(vnPayService.requestRefund(eq("VNP-123"), eq(new BigDecimal("250.00")), anyString()))
+          .thenReturn(true);
+      when(orderMapper.toOrderResponse(orderEntity)).thenReturn(orderResponseDto);
+
+      orderService.cancelOrder(authentication, orderEntity.getId());
+
+      assertEquals(OrderStatus.CANCELLED, orderEntity.getStatus());
+      assertEquals(PaymentStatus.REFUND_PENDING, orderEntity.getPaymentStatus());
+      assertEquals(PaymentTransactionStatus.REFUND_REQUESTED, payment.getStatus());
+      // Transaction hủy đơn đã commit trước khi gọi cổng, kết quả được ghi trong transaction sau
+      InOrder inOrder = inOrder(transactionManager, vnPayService, paymentRepository);
+      inOrder.verify(transactionManager).commit(any());
+      inOrder.verify(vnPayService).requestRefund(anyString(), any(), anyString());
+      inOrder.verify(paymentRepository).save(payment);
+      inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("Cancel Order - Gateway Unavailable - Order Marked For Manual Refund")
+    void cancelOrder_whenGatewayUnavailable_shouldRequireManualRefund() {
+      mockAuthenticatedUser(testBuyer);
+      Payment payment = paidVnPayPayment();
+      when(orderRepository.findById(orderEntity.getId())).thenReturn(Optional.of(orderEntity));
+      when(productRepository.findById(product1.getId())).thenReturn(Optional.of(product1));
+      when(productRepository.saveAndFlush(product1)).thenReturn(product1);
+      when(orderRepository.save(any(Order.class))).thenReturn(orderEntity);
+      when(vnPayService.requestRefund(anyString(), any(), anyString()))
+          .thenThrow(new PaymentGatewayUnavailableException("VNPAY", "Circuit breaker is open"));
+      when(orderMapper.toOrderResponse(orderEntity)).thenReturn(orderResponseDto);
+
+      orderService.cancelOrder(authentication, orderEntity.getId());
+
+      assertEquals(OrderStatus.CANCELLED, orderEntity.getStatus());
+      assertEquals(PaymentStatus.REFUND_MANUAL_REQUIRED, orderEntity.getPaymentStatus());
+      assertEquals(PaymentTransactionStatus.SUCCESS, payment.getStatus());
+      verify(paymentRepository, never()).save(payment);
+    }
+
+    @Test
+    @DisplayName("Stale Refund Sweep - Flags Only Orders Older Than The Cutoff")
+    void flagStaleRefundsForManualReview_usesCutoffBeforeNow() {
+      ArgumentCaptor<LocalDateTime> cutoffCaptor = ArgumentCaptor.forClass(LocalDateTime.class);
+      ArgumentCaptor<LocalDateTime> nowCaptor = ArgumentCaptor.forClass(LocalDateTime.class);
+      when(orderRepository.markStaleRefundsManualRequired(
+              cutoffCaptor.capture(), nowCaptor.capture()))
+          .thenReturn(2);
+
+      int flagged = orderService.flagStaleRefundsForManualReview(Duration.ofMinutes(15));
+
+      assertEquals(2, flagged);
+      assertEquals(
+          Duration.ofMinutes(15), Duration.between(cutoffCaptor.getValue(), nowCaptor.getValue()));
+    }
+
+    private Payment paidVnPayPayment() {
+      orderEntity.setStatus(OrderStatus.CONFIRMED);
+      orderEntity.setPaymentMethod(PaymentMethod.VNPAY);
+      orderEntity.setPaymentStatus(PaymentStatus.PAID);
+      Payment payment = new Payment();
+      payment.setId(500L);
+      payment.setPaymentGateway(PaymentMethod.VNPAY.name());
+      payment.setTransactionCode("VNP-123");
+      payment.setAmount(orderEntity.getTotalAmount());
+      payment.setStatus(PaymentTransactionStatus.SUCCESS);
+      orderEntity.addPayment(payment);
+      return payment;
     }
   }
 
@@ -496,6 +696,27 @@ class OrderServiceImplTest {
               orderService.createPaymentUrl(
                   authentication, orderEntity.getId(), PaymentMethod.VNPAY, httpServletRequest));
     }
+
+    @Test
+    @DisplayName("Create Payment URL - MoMo Called After Order Update Commits")
+    void createPaymentUrl_whenMoMo_shouldCallGatewayOutsideTransaction() {
+      mockAuthenticatedUser(testBuyer);
+      when(orderRepository.findByIdAndBuyerId(orderEntity.getId(), testBuyer.getId()))
+          .thenReturn(Optional.of(orderEntity));
+      when(moMoService.createMoMoPaymentUrl(eq(orderEntity), any(), any()))
+          .thenReturn(new PaymentUrlResponse("https://momo.test/pay", PaymentMethod.MOMO.name()));
+
+      PaymentUrlResponse result =
+          orderService.createPaymentUrl(
+              authentication, orderEntity.getId(), PaymentMethod.MOMO, httpServletRequest);
+
+      assertEquals("https://momo.test/pay", result.getPaymentUrl());
+      assertEquals(PaymentMethod.MOMO, orderEntity.getPaymentMethod());
+      InOrder inOrder = inOrder(orderRepository, transactionManager, moMoService);
+      inOrder.verify(orderRepository).save(orderEntity);
+      inOrder.verify(transactionManager).commit(any());
+      inOrder.verify(moMoService).createMoMoPaymentUrl(eq(orderEntity), any(), any());
+    }
   }
 
   @Nested
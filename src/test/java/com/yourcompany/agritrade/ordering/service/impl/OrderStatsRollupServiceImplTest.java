@@ -0,0 +1,123 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+import com.yourcompany.agritrade.ordering.domain.OrderDailyStat;
+import com.yourcompany.agritrade.ordering.domain.OrderStatScope;
+import com.yourcompany.agritrade.ordering.domain.OrderStatus;
+import com.yourcompany.agritrade.ordering.domain.StatRollupCheckpoint;
+import com.yourcompany.agritrade.ordering.repository.OrderDailyStatRepository;
+import com.yourcompany.agritrade.ordering.repository.OrderRepository;
+import com.yourcompany.agritrade.ordering.repository.StatRollupCheckpointRepository;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class OrderStatsRollupServiceImplTest {
+
+  @Mock private OrderRepository orderRepository;
+  @Mock private OrderDailyStatRepository orderDailyStatRepository;
+  @Mock private StatRollupCheckpointRepository checkpointRepository;
+
+  @InjectMocks private OrderStatsRollupServiceImpl rollupService;
+
+  private final LocalDate day = LocalDate.of(2024, 5, 10);
+
+  @BeforeEach
+  void setUp() {
+    ReflectionTestUtils.setField(rollupService, "overlapSeconds", 300L);
+  }
+
+  @Test
+  @DisplayName("Rebuild Day - Replaces Rows For ALL, FARMER And BUYER Scopes")
+  @SuppressWarnings("unchecked")
+  void rebuildDay_replacesRowsForAllScopes() {
+    LocalDateTime start = day.atStartOfDay();
+    LocalDateTime end = day.plusDays(1).atStartOfDay();
+    when(orderRepository.aggregateByStatusCreatedBetween(start, end))
+        .thenReturn(
+            List.<Object[]>of(new Object[] {OrderStatus.DELIVERED, 3L, new BigDecimal("300")}));
+    when(orderRepository.aggregateByFarmerAndStatusCreatedBetween(start, end))
+        .thenReturn(
+            List.<Object[]>of(new Object[] {7L, OrderStatus.DELIVERED, 3L, new BigDecimal("300")}));
+    when(orderRepository.aggregateByBuyerAndStatusCreatedBetween(start, end))
+        .thenReturn(
+            List.of(
+                new Object[] {1L, OrderStatus.DELIVERED, 2L, new BigDecimal("200")},
+                new Object[] {2L, OrderStatus.DELIVERED, 1L, new BigDecimal("100")}));
+
+    rollupService.rebuildDay(day);
+
+    InOrder inOrder = inOrder(orderDailyStatRepository);
+    inOrder.verify(orderDailyStatRepository).deleteByStatDate(day);
+    ArgumentCaptor<List<OrderDailyStat>> captor = ArgumentCaptor.forClass(List.class);
+    inOrder.verify(orderDailyStatRepository).saveAll(captor.capture());
+
+    List<OrderDailyStat> rows = captor.getValue();
+    assertEquals(4, rows.size());
+    OrderDailyStat all = rows.get(0);
+    assertEquals(OrderStatScope.ALL, all.getScope());
+    assertEquals(OrderDailyStat.ALL_PARTIES, all.getPartyId());
+    assertEquals(day, all.getStatDate());
+    assertEquals(3L, all.getOrderCount());
+    assertEquals(new BigDecimal("300"), all.getTotalAmount());
+    assertEquals(OrderStatScope.FARMER, rows.get(1).getScope());
+    assertEquals(7L, rows.get(1).getPartyId());
+    assertEquals(2, rows.stream().filter(r -> r.getScope() == OrderStatScope.BUYER).count());
+  }
+
+  @Test
+  @DisplayName("Refresh - First Run - Rebuilds Full History And Creates Checkpoint")
+  void refreshChangedDays_whenNoCheckpoint_rebuildsAllDaysAndCreatesCheckpoint() {
+    when(checkpointRepository.findByNameForUpdate(OrderStatsRollupServiceImpl.CHECKPOINT_NAME))
+        .thenReturn(Optional.empty());
+    when(orderRepository.findDistinctCreatedDatesUpdatedSince(isNull()))
+        .thenReturn(List.of(Date.valueOf(day), Date.valueOf(day.minusDays(1))));
+
+    int rebuilt = rollupService.refreshChangedDays();
+
+    assertEquals(2, rebuilt);
+    verify(orderDailyStatRepository).deleteByStatDate(day);
+    verify(orderDailyStatRepository).deleteByStatDate(day.minusDays(1));
+    ArgumentCaptor<StatRollupCheckpoint> captor =
+        ArgumentCaptor.forClass(StatRollupCheckpoint.class);
+    verify(checkpointRepository).save(captor.capture());
+    assertEquals(OrderStatsRollupServiceImpl.CHECKPOINT_NAME, captor.getValue().getName());
+    assertNotNull(captor.getValue().getProcessedUntil());
+  }
+
+  @Test
+  @DisplayName("Refresh - Existing Checkpoint - Scans From Checkpoint Minus Overlap")
+  void refreshChangedDays_withCheckpoint_scansWithOverlapAndAdvancesCheckpoint() {
+    LocalDateTime processedUntil = LocalDateTime.now().minusMinutes(1);
+    StatRollupCheckpoint checkpoint =
+        new StatRollupCheckpoint(OrderStatsRollupServiceImpl.CHECKPOINT_NAME, processedUntil);
+    when(checkpointRepository.findByNameForUpdate(OrderStatsRollupServiceImpl.CHECKPOINT_NAME))
+        .thenReturn(Optional.of(checkpoint));
+    when(orderRepository.findDistinctCreatedDatesUpdatedSince(processedUntil.minusSeconds(300)))
+        .thenReturn(Collections.emptyList());
+
+    int rebuilt = rollupService.refreshChangedDays();
+
+    assertEquals(0, rebuilt);
+    verify(orderDailyStatRepository, never()).deleteByStatDate(any());
+    verify(checkpointRepository).save(checkpoint);
+    assertTrue(checkpoint.getProcessedUntil().isAfter(processedUntil));
+  }
+}
@@ -0,0 +1,181 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.yourcompany.agritrade.common.persistence.MySqlBenchmarkSupport;
+import com.yourcompany.agritrade.notification.service.NotificationService;
+import com.yourcompany.agritrade.ordering.domain.Order;
+import com.yourcompany.agritrade.ordering.domain.OrderStatus;
+import com.yourcompany.agritrade.ordering.domain.OrderType;
+import com.yourcompany.agritrade.ordering.domain.Payment;
+import com.yourcompany.agritrade.ordering.domain.PaymentMethod;
+import com.yourcompany.agritrade.ordering.domain.PaymentStatus;
+import com.yourcompany.agritrade.ordering.domain.PaymentTransactionStatus;
+import com.yourcompany.agritrade.ordering.dto.request.PaymentCallbackRequest;
+import com.yourcompany.agritrade.ordering.repository.OrderRepository;
+import com.yourcompany.agritrade.ordering.repository.PaymentRepository;
+import com.yourcompany.agritrade.ordering.service.PaymentService;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Phát lại IPN trùng song song như khi cổng thanh toán gửi lại dồn dập: 1.000 bản sao của cùng một
+ * IPN chạy đồng thời phải chuyển payment đúng một lần, cập nhật đơn một lần và chỉ ghi một thông
+ * báo. Cần Docker (Testcontainers MySQL); tự bỏ qua nếu môi trường không có Docker.
+ */
+@DataJpaTest
+@Import(PaymentServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // Mỗi IPN tự mở transaction riêng
+@Tag("benchmark")
+@Slf4j
+class PaymentCallbackReplayBenchmarkTest extends MySqlBenchmarkSupport {
+
+  private static final int DUPLICATE_IPNS = 1_000;
+  private static final int SENDER_THREADS = 50;
+
+  @Autowired private PaymentService paymentService;
+  @Autowired private PaymentRepository paymentRepository;
+  @Autowired private OrderRepository orderRepository;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @MockBean private NotificationService notificationService;
+
+  @Test
+  @DisplayName("1,000 concurrent duplicate IPNs - pending payment transitions exactly once")
+  void duplicateIpnsForPendingPayment() throws Exception {
+    String orderCode = createOrder(true);
+
+    Result result = replay(orderCode, "VNP-" + orderCode, DUPLICATE_IPNS);
+
+    log.info("[ipn-replay-bench] pending-payment: {}", result);
+    assertEquals(0, result.errors(), "IPN trùng phải được xác nhận, không được báo lỗi");
+    assertProcessedOnce(orderCode, "VNP-" + orderCode);
+  }
+
+  @Test
+  @DisplayName("Concurrent duplicate IPNs without pending payment - unique key keeps one record")
+  void duplicateIpnsWithoutPendingPayment() throws Exception {
+    String orderCode = createOrder(false);
+
+    Result first = replay(orderCode, "VNP-" + orderCode, DUPLICATE_IPNS / 10);
+    // Nạn nhân deadlock khi chèn trùng được chạy lại trong service, cổng không nhận lỗi nào
+    Result retry = replay(orderCode, "VNP-" + orderCode, DUPLICATE_IPNS / 10);
+
+    log.info("[ipn-replay-bench] insert-path: first {}, retry {}", first, retry);
+    assertEquals(0, first.errors(), "IPN trùng phải được xác nhận, không được báo lỗi");
+    assertEquals(0, retry.errors());
+    assertProcessedOnce(orderCode, "VNP-" + orderCode);
+  }
+
+  private Result replay(String orderCode, String transactionCode, int copies) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(SENDER_THREADS);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicInteger errors = new AtomicInteger();
+    long begin;
+    try {
+      for (int i = 0; i < copies; i++) {
+        pool.submit(
+            () -> {
+              start.await();
+              PaymentCallbackRequest callback = new PaymentCallbackRequest();
+              callback.setOrderCode(orderCode);
+              callback.setTransactionCode(transactionCode);
+              callback.setSuccess(true);
+              callback.setAmount(new BigDecimal("250000.00"));
+              try {
+                paymentService.handlePaymentCallback("VNPAY_IPN", callback);
+              } catch (DataAccessException e) {
+                errors.incrementAndGet();
+              }
+              return null;
+            });
+      }
+      begin = System.nanoTime();
+      start.countDown();
+      pool.shutdown();
+      assertTrue(pool.awaitTermination(5, TimeUnit.MINUTES));
+    } finally {
+      pool.shutdownNow();
+    }
+    return new Result(copies, errors.get(), System.nanoTime() - begin);
+  }
+
+  private void assertProcessedOnce(String orderCode, String transactionCode) {
+    new TransactionTemplate(transactionManager)
+        .executeWithoutResult(
+            status -> {
+              Order order = orderRepository.findByOrderCode(orderCode).orElseThrow();
+              assertEquals(PaymentStatus.PAID, order.getPaymentStatus());
+              assertEquals(OrderStatus.CONFIRMED, order.getStatus());
+              List<Payment> payments = paymentRepository.findByOrderId(order.getId());
+              assertEquals(1, payments.size());
+              assertEquals(PaymentTransactionStatus.SUCCESS, payments.get(0).getStatus());
+              assertEquals("VNPAY", payments.get(0).getPaymentGateway());
+              assertEquals(transactionCode, payments.get(0).getTransactionCode());
+            });
+    verify(notificationService, times(1)).sendPaymentSuccessNotification(any());
+  }
+
+  private String createOrder(boolean withPendingPayment) {
+    return new TransactionTemplate(transactionManager)
+        .execute(
+            status -> {
+              long suffix = System.nanoTime() % 1_000_000_000L;
+              User buyer = newUser("buyer" + suffix);
+              User farmer = newUser("farmer" + suffix);
+              Order order = new Order();
+              order.setBuyer(buyer);
+              order.setFarmer(farmer);
+              order.setOrderType(OrderType.B2C);
+              order.setOrderCode("IPN-" + suffix);
+              order.setPaymentMethod(PaymentMethod.VNPAY);
+              order.setShippingFullName("Bench Buyer");
+              order.setShippingPhoneNumber("0900000000");
+              order.setShippingAddressDetail("1 Bench Street");
+              order.setShippingProvinceCode("20");
+              order.setShippingDistrictCode("180");
+              order.setShippingWardCode("06289");
+              order.setSubTotal(new BigDecimal("250000.00"));
+              order.setTotalAmount(new BigDecimal("250000.00"));
+              if (withPendingPayment) {
+                Payment payment = new Payment();
+                payment.setAmount(order.getTotalAmount());
+                payment.setPaymentGateway(PaymentMethod.VNPAY.name());
+                payment.setStatus(PaymentTransactionStatus.PENDING);
+                order.addPayment(payment);
+              }
+              entityManager.persist(order);
+              return order.getOrderCode();
+            });
+  }
+
+  private record Result(int ipns, int errors, long elapsedNanos) {
+    @Override
+    public String toString() {
+      return String.format(
+          "%d IPNs, %d errors, %.1f ms total, %.0f IPN/s",
+          ipns, errors, elapsedNanos / 1_000_000.0, ipns * 1_000_000_000.0 / elapsedNanos);
+    }
+  }
+}
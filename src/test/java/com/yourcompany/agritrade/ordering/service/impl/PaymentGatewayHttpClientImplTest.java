@@ -0,0 +1,194 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.common.exception.PaymentGatewayUnavailableException;
+import com.yourcompany.agritrade.config.properties.PaymentGatewayClientProperties;
+import com.yourcompany.agritrade.ordering.domain.PaymentMethod;
+import com.yourcompany.agritrade.ordering.service.PaymentGatewayHttpClient.GatewayStats;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpClientErrorException;
+
+/** Gọi thật qua HTTP tới {@link StubPaymentGateway} để đo thread/kết nối khi cổng bị chậm. */
+class PaymentGatewayHttpClientImplTest {
+
+  private final Instant now = Instant.parse("2026-01-01T00:00:00Z");
+  private final Map<String, Object> body = Map.of("orderId", "ORD-1");
+
+  private StubPaymentGateway stub;
+  private PaymentGatewayClientProperties.Gateway vnpay;
+  private PaymentGatewayHttpClientImpl client;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    stub = StubPaymentGateway.start();
+    vnpay = new PaymentGatewayClientProperties.Gateway();
+    vnpay.setReadTimeoutMs(2000);
+    vnpay.setMaxConcurrentCalls(3);
+    vnpay.setBulkheadWaitMs(50);
+    vnpay.setFailureThreshold(2);
+    vnpay.setOpenDurationMs(30000);
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (client != null) {
+      client.shutdown();
+    }
+    stub.close();
+  }
+
+  private void startClient() {
+    PaymentGatewayClientProperties properties = new PaymentGatewayClientProperties();
+    properties.setConnectTimeoutMs(1000);
+    properties.getGateways().put("vnpay", vnpay);
+    client = new PaymentGatewayHttpClientImpl(properties);
+    client.clock = Clock.fixed(now, ZoneOffset.UTC);
+    client.init();
+  }
+
+  private Map<?, ?> call() {
+    return client.postJson(PaymentMethod.VNPAY, stub.url(), body, Map.class);
+  }
+
+  private GatewayStats stats() {
+    return client.getStats().get(PaymentMethod.VNPAY);
+  }
+
+  @Test
+  @DisplayName("Sequential Calls - Reuse One Keep-Alive Connection")
+  void postJson_sequentialCalls_reuseConnection() {
+    startClient();
+
+    for (int i = 0; i < 20; i++) {
+      assertEquals(0, call().get("resultCode"));
+    }
+
+    assertEquals(20, stub.requestCount());
+    assertEquals(1, stub.connectionCount());
+    assertEquals(20, stats().calls());
+  }
+
+  @Test
+  @DisplayName("Slow Gateway - Bulkhead Caps In-Flight Calls And Rejects The Rest Fast")
+  void postJson_whenGatewaySlow_bulkheadCapsConcurrency() throws Exception {
+    stub.setLatencyMs(400);
+    startClient();
+    int callers = 12;
+    ExecutorService executor = Executors.newFixedThreadPool(callers);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Long>> results = new ArrayList<>();
+    try {
+      for (int i = 0; i < callers; i++) {
+        results.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  long begin = System.nanoTime();
+                  try {
+                    call();
+                    return -1L;
+                  } catch (PaymentGatewayUnavailableException e) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+                  }
+                }));
+      }
+      start.countDown();
+      int succeeded = 0;
+      for (Future<Long> result : results) {
+        long rejectedAfterMs = result.get(5, TimeUnit.SECONDS);
+        if (rejectedAfterMs < 0) {
+          succeeded++;
+        } else {
+          // Bị từ chối sau bulkheadWaitMs, không phải chờ hết độ trễ của cổng
+          assertTrue(rejectedAfterMs < 400, "Rejected after " + rejectedAfterMs + " ms");
+        }
+      }
+
+      assertEquals(3, succeeded);
+      assertEquals(3, stub.maxInFlight());
+      assertTrue(stub.connectionCount() <= 3);
+      assertEquals(callers - 3, stats().bulkheadRejections());
+      assertEquals(0, stats().inFlight());
+      assertEquals("CLOSED", stats().circuitState());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  @DisplayName("Read Timeouts - Open Circuit, Fail Fast, Then Half-Open Trial Closes It")
+  void postJson_whenGatewayTimesOut_opensCircuit() {
+    stub.setLatencyMs(500);
+    vnpay.setReadTimeoutMs(100);
+    startClient();
+
+    assertThrows(PaymentGatewayUnavailableException.class, this::call);
+    assertThrows(PaymentGatewayUnavailableException.class, this::call);
+    assertEquals("OPEN", stats().circuitState());
+
+    long begin = System.nanoTime();
+    assertThrows(PaymentGatewayUnavailableException.class, this::call);
+    assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin) < 100);
+    assertEquals(2, stub.requestCount());
+    assertEquals(1, stats().circuitRejections());
+    assertEquals(2, stats().failures());
+
+    stub.setLatencyMs(0);
+    client.clock = Clock.fixed(now.plusSeconds(30), ZoneOffset.UTC);
+    assertEquals(0, call().get("resultCode"));
+    assertEquals("CLOSED", stats().circuitState());
+  }
+
+  @Test
+  @DisplayName("Half-Open Trial Fails With Unexpected Exception - Circuit Not Stuck")
+  void postJson_whenHalfOpenTrialThrowsUnexpectedly_circuitRecovers() {
+    stub.setLatencyMs(500);
+    vnpay.setReadTimeoutMs(100);
+    startClient();
+    assertThrows(PaymentGatewayUnavailableException.class, this::call);
+    assertThrows(PaymentGatewayUnavailableException.class, this::call);
+    assertEquals("OPEN", stats().circuitState());
+    stub.setLatencyMs(0);
+
+    // Lời gọi thử ở HALF_OPEN lỗi trước khi tới cổng (URI template thiếu biến)
+    client.clock = Clock.fixed(now.plusSeconds(30), ZoneOffset.UTC);
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> client.postJson(PaymentMethod.VNPAY, stub.url() + "/{missing}", body, Map.class));
+    assertEquals("OPEN", stats().circuitState());
+
+    client.clock = Clock.fixed(now.plusSeconds(60), ZoneOffset.UTC);
+    assertEquals(0, call().get("resultCode"));
+    assertEquals("CLOSED", stats().circuitState());
+  }
+
+  @Test
+  @DisplayName("Client Error - 4xx Is Rethrown Without Tripping The Circuit")
+  void postJson_whenClientError_doesNotTripCircuit() {
+    stub.setStatusCode(400);
+    startClient();
+
+    for (int i = 0; i < 3; i++) {
+      assertThrows(HttpClientErrorException.class, this::call);
+    }
+
+    assertEquals(3, stub.requestCount());
+    assertEquals(0, stats().failures());
+    assertEquals("CLOSED", stats().circuitState());
+  }
+}
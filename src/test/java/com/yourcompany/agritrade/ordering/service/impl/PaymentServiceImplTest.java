@@ -0,0 +1,256 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.yourcompany.agritrade.common.exception.BadRequestException;
+import com.yourcompany.agritrade.notification.service.NotificationService;
+import com.yourcompany.agritrade.ordering.domain.Order;
+import com.yourcompany.agritrade.ordering.domain.OrderStatus;
+import com.yourcompany.agritrade.ordering.domain.Payment;
+import com.yourcompany.agritrade.ordering.domain.PaymentStatus;
+import com.yourcompany.agritrade.ordering.domain.PaymentTransactionStatus;
+import com.yourcompany.agritrade.ordering.dto.request.PaymentCallbackRequest;
+import com.yourcompany.agritrade.ordering.repository.OrderRepository;
+import com.yourcompany.agritrade.ordering.repository.PaymentRepository;
+import com.yourcompany.agritrade.ordering.repository.projection.OrderPaymentTarget;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentServiceImplTest {
+
+  @Mock private PaymentRepository paymentRepository;
+  @Mock private OrderRepository orderRepository;
+  @Mock private NotificationService notificationService;
+  @Mock private PlatformTransactionManager transactionManager;
+
+  @InjectMocks private PaymentServiceImpl paymentService;
+
+  private final OrderPaymentTarget target =
+      new OrderPaymentTarget(
+          10L,
+          "ORD-10",
+          1L,
+          OrderStatus.PENDING,
+          PaymentStatus.PENDING,
+          new BigDecimal("250000.00"));
+  private final Order orderRef = new Order();
+  private PaymentCallbackRequest callback;
+
+  @BeforeEach
+  void setUp() {
+    callback = new PaymentCallbackRequest();
+    callback.setOrderCode("ORD-10");
+    callback.setTransactionCode("VNP-1");
+    callback.setSuccess(true);
+    callback.setAmount(new BigDecimal("250000.00"));
+  }
+
+  private void stubOrderLookup() {
+    when(orderRepository.findPaymentTargetByOrderCode("ORD-10")).thenReturn(Optional.of(target));
+  }
+
+  @Test
+  @DisplayName("IPN Success - Pending Payment Claimed With Conditional Update")
+  void handlePaymentCallback_whenSuccess_completesPendingPaymentAndNotifiesOnce() {
+    stubOrderLookup();
+    when(paymentRepository.existsByPaymentGatewayInAndTransactionCode(
+            List.of("VNPAY", "VNPAY_IPN"), "VNP-1"))
+        .thenReturn(false);
+    when(paymentRepository.findPendingPaymentIdsByOrderId(10L)).thenReturn(List.of(500L));
+    when(paymentRepository.completePendingPayment(
+            eq(500L),
+            eq(PaymentTransactionStatus.SUCCESS),
+            eq("VNPAY"),
+            eq("VNP-1"),
+            any(),
+            anyString(),
+            any()))
+        .thenReturn(1);
+    when(orderRepository.getReferenceById(10L)).thenReturn(orderRef);
+
+    paymentService.handlePaymentCallback("VNPAY_IPN", callback);
+
+    verify(orderRepository).markPaid(eq(10L), any());
+    verify(notificationService).sendPaymentSuccessNotification(orderRef);
+    verify(orderRepository, never()).findByOrderCode(anyString());
+    verify(paymentRepository, never()).save(any());
+    verify(transactionManager).commit(any());
+  }
+
+  @Test
+  @DisplayName("IPN Replay - Already Recorded Transaction Is Ignored")
+  void handlePaymentCallback_whenTransactionAlreadyRecorded_doesNothing() {
+    stubOrderLookup();
+    when(paymentRepository.existsByPaymentGatewayInAndTransactionCode(
+            List.of("VNPAY", "VNPAY_IPN"), "VNP-1"))
+        .thenReturn(true);
+
+    paymentService.handlePaymentCallback("VNPAY_IPN", callback);
+
+    verify(paymentRepository, never())
+        .completePendingPayment(any(), any(), any(), any(), any(), any(), any());
+    verify(orderRepository, never()).markPaid(any(), any());
+    verifyNoInteractions(notificationService);
+  }
+
+  @Test
+  @DisplayName("IPN Replay - Payment Stored Under Legacy Channel Name Is Recognized")
+  void handlePaymentCallback_whenRecordedUnderLegacyGatewayName_doesNothing() {
+    stubOrderLookup();
+    // Dòng cũ lưu cổng "VNPAY_IPN" (trước khi chuẩn hóa tên cổng)
+    when(paymentRepository.existsByPaymentGatewayInAndTransactionCode(anyCollection(), eq("VNP-1")))
+        .thenAnswer(inv -> inv.<Collection<String>>getArgument(0).contains("VNPAY_IPN"));
+
+    paymentService.handlePaymentCallback("VNPAY_IPN", callback);
+
+    verify(paymentRepository, never()).findPendingPaymentIdsByOrderId(any());
+    verify(paymentRepository, never()).saveAndFlush(any());
+    verify(orderRepository, never()).markPaid(any(), any());
+    verifyNoInteractions(notificationService);
+  }
+
+  @Test
+  @DisplayName("IPN Race - Losing Conditional Update Skips Order Update And Notification")
+  void handlePaymentCallback_whenConcurrentDuplicateWon_doesNotNotify() {
+    stubOrderLookup();
+    when(paymentRepository.findPendingPaymentIdsByOrderId(10L)).thenReturn(List.of(500L));
+    when(paymentRepository.completePendingPayment(any(), any(), any(), any(), any(), any(), any()))
+        .thenReturn(0);
+
+    paymentService.handlePaymentCallback("VNPAY_IPN", callback);
+
+    verify(orderRepository, never()).markPaid(any(), any());
+    verifyNoInteractions(notificationService);
+  }
+
+  @Test
+  @DisplayName("IPN Failure - Records Gateway Message And Marks Order Payment Failed")
+  void handlePaymentCallback_whenFailure_marksPaymentFailed() {
+    callback.setSuccess(false);
+    callback.setErrorMessage("Insufficient balance");
+    stubOrderLookup();
+    when(paymentRepository.findPendingPaymentIdsByOrderId(10L)).thenReturn(List.of(500L));
+    when(paymentRepository.completePendingPayment(
+            eq(500L),
+            eq(PaymentTransactionStatus.FAILED),
+            eq("MOMO"),
+            eq("VNP-1"),
+            isNull(),
+            eq("Insufficient balance"),
+            any()))
+        .thenReturn(1);
+    when(orderRepository.getReferenceById(10L)).thenReturn(orderRef);
+
+    paymentService.handlePaymentCallback("MOMO_IPN", callback);
+
+    verify(orderRepository).markPaymentFailed(eq(10L), any());
+    verify(notificationService).sendPaymentFailureNotification(orderRef);
+  }
+
+  @Test
+  @DisplayName("IPN Without Pending Payment - Inserts Payment Under Idempotency Key")
+  void handlePaymentCallback_whenNoPendingPayment_insertsPayment() {
+    stubOrderLookup();
+    when(paymentRepository.findPendingPaymentIdsByOrderId(10L)).thenReturn(List.of());
+    when(orderRepository.getReferenceById(10L)).thenReturn(orderRef);
+
+    paymentService.handlePaymentCallback("VNPAY_IPN", callback);
+
+    ArgumentCaptor<Payment> saved = ArgumentCaptor.forClass(Payment.class);
+    verify(paymentRepository).saveAndFlush(saved.capture());
+    assertEquals("VNPAY", saved.getValue().getPaymentGateway());
+    assertEquals("VNP-1", saved.getValue().getTransactionCode());
+    assertEquals(PaymentTransactionStatus.SUCCESS, saved.getValue().getStatus());
+    verify(notificationService).sendPaymentSuccessNotification(orderRef);
+  }
+
+  @Test
+  @DisplayName("IPN Insert Race - Unique Key Violation Treated As Duplicate")
+  void handlePaymentCallback_whenDuplicateInsertRejected_isAcknowledged() {
+    stubOrderLookup();
+    when(paymentRepository.findPendingPaymentIdsByOrderId(10L)).thenReturn(List.of());
+    when(orderRepository.getReferenceById(10L)).thenReturn(orderRef);
+    when(paymentRepository.saveAndFlush(any(Payment.class)))
+        .thenThrow(new DataIntegrityViolationException("uk_payments_gateway_transaction"));
+
+    assertDoesNotThrow(() -> paymentService.handlePaymentCallback("VNPAY_IPN", callback));
+
+    verify(transactionManager).rollback(any());
+    verifyNoInteractions(notificationService);
+  }
+
+  @Test
+  @DisplayName("IPN Insert Race - Other Constraint Violation Is Not Swallowed")
+  void handlePaymentCallback_whenOtherConstraintViolated_rethrows() {
+    stubOrderLookup();
+    when(paymentRepository.findPendingPaymentIdsByOrderId(10L)).thenReturn(List.of());
+    when(orderRepository.getReferenceById(10L)).thenReturn(orderRef);
+    when(paymentRepository.saveAndFlush(any(Payment.class)))
+        .thenThrow(new DataIntegrityViolationException("Column 'amount' cannot be null"));
+
+    assertThrows(
+        DataIntegrityViolationException.class,
+        () -> paymentService.handlePaymentCallback("VNPAY_IPN", callback));
+    verifyNoInteractions(notificationService);
+  }
+
+  @Test
+  @DisplayName("IPN Insert Race - Deadlock Victim Retried Once And Sees Duplicate")
+  void handlePaymentCallback_whenInsertDeadlocks_retriesAndAcknowledges() {
+    stubOrderLookup();
+    when(paymentRepository.existsByPaymentGatewayInAndTransactionCode(
+            List.of("VNPAY", "VNPAY_IPN"), "VNP-1"))
+        .thenReturn(false, true);
+    when(paymentRepository.findPendingPaymentIdsByOrderId(10L)).thenReturn(List.of());
+    when(orderRepository.getReferenceById(10L)).thenReturn(orderRef);
+    when(paymentRepository.saveAndFlush(any(Payment.class)))
+        .thenThrow(new CannotAcquireLockException("Deadlock found when trying to get lock"));
+
+    assertDoesNotThrow(() -> paymentService.handlePaymentCallback("VNPAY_IPN", callback));
+
+    verify(paymentRepository, times(1)).saveAndFlush(any(Payment.class));
+    verify(transactionManager, times(2)).getTransaction(any());
+    verifyNoInteractions(notificationService);
+  }
+
+  @Test
+  @DisplayName("IPN Insert Race - Repeated Lock Failure Is Reported")
+  void handlePaymentCallback_whenInsertKeepsDeadlocking_rethrowsAfterRetry() {
+    stubOrderLookup();
+    when(paymentRepository.findPendingPaymentIdsByOrderId(10L)).thenReturn(List.of());
+    when(orderRepository.getReferenceById(10L)).thenReturn(orderRef);
+    when(paymentRepository.saveAndFlush(any(Payment.class)))
+        .thenThrow(new CannotAcquireLockException("Lock wait timeout exceeded"));
+
+    assertThrows(
+        CannotAcquireLockException.class,
+        () -> paymentService.handlePaymentCallback("VNPAY_IPN", callback));
+    verify(paymentRepository, times(2)).saveAndFlush(any(Payment.class));
+  }
+
+  @Test
+  @DisplayName("IPN Unknown Order - Bad Request")
+  void handlePaymentCallback_whenOrderMissing_throwsBadRequest() {
+    when(orderRepository.findPaymentTargetByOrderCode("ORD-10")).thenReturn(Optional.empty());
+
+    assertThrows(
+        BadRequestException.class,
+        () -> paymentService.handlePaymentCallback("VNPAY_IPN", callback));
+  }
+}
@@ -0,0 +1,204 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.yourcompany.agritrade.catalog.domain.Category;
+import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.catalog.domain.ProductStatus;
+import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.catalog.service.HotStockLedgerService;
+import com.yourcompany.agritrade.common.persistence.MySqlBenchmarkSupport;
+import com.yourcompany.agritrade.ordering.service.StockReservationService;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Benchmark tranh chấp tồn kho: N người mua cùng đặt một sản phẩm "hot". So sánh cách cũ (findById
+ * + saveAndFlush + retry optimistic lock) với cách khóa hàng có thứ tự + ghi một batch. Cần Docker
+ * (Testcontainers MySQL); tự bỏ qua nếu môi trường không có Docker.
+ */
+@DataJpaTest
+@Import(StockReservationServiceImpl.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // Mỗi luồng tự mở transaction riêng
+@Tag("benchmark")
+@Slf4j
+class StockReservationContentionBenchmarkTest extends MySqlBenchmarkSupport {
+
+  private static final int BUYERS = 32;
+  private static final int CHECKOUTS_PER_BUYER = 20;
+  private static final int INITIAL_STOCK = BUYERS * CHECKOUTS_PER_BUYER;
+
+  @Autowired private ProductRepository productRepository;
+  @Autowired private StockReservationService stockReservationService;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  @MockBean
+  private HotStockLedgerService hotStockLedgerService; // Sản phẩm không ở chế độ hot stock
+
+  private TransactionTemplate tx;
+  private Long hotProductId;
+
+  @BeforeEach
+  void setUp() {
+    tx = new TransactionTemplate(transactionManager);
+    hotProductId =
+        tx.execute(
+            status -> {
+              long suffix = System.nanoTime();
+              User farmer =
+                  User.builder()
+                      .email("farmer" + suffix + "@bench.local")
+                      .passwordHash("x")
+                      .fullName("Bench Farmer")
+                      .followerCount(0)
+                      .followingCount(0)
+                      .isActive(true)
+                      .build();
+              entityManager.persist(farmer);
+
+              Category category = new Category();
+              category.setName("Bench");
+              category.setSlug("bench-" + suffix);
+              entityManager.persist(category);
+
+              Product product =
+                  Product.builder()
+                      .farmer(farmer)
+                      .category(category)
+                      .name("Hot product")
+                      .slug("hot-product-" + suffix)
+                      .unit("kg")
+                      .price(new BigDecimal("10000.00"))
+                      .stockQuantity(INITIAL_STOCK)
+                      .status(ProductStatus.PUBLISHED)
+                      .provinceCode("20")
+                      .averageRating(0.0f)
+                      .ratingCount(0)
+                      .favoriteCount(0)
+                      .build();
+              entityManager.persist(product);
+              return product.getId();
+            });
+  }
+
+  @Test
+  @DisplayName("Legacy optimistic path - findById + saveAndFlush with 3 retries")
+  void legacyOptimisticPath() throws Exception {
+    Result result =
+        runBuyers(
+            () -> {
+              for (int attempt = 1; ; attempt++) {
+                try {
+                  tx.executeWithoutResult(
+                      status -> {
+                        Product product = productRepository.findById(hotProductId).orElseThrow();
+                        product.setStockQuantity(product.getStockQuantity() - 1);
+                        productRepository.saveAndFlush(product);
+                      });
+                  return true;
+                } catch (OptimisticLockingFailureException e) {
+                  if (attempt >= 3) {
+                    return false; // Giống @Retryable(maxAttempts = 3) trong checkout cũ
+                  }
+                  sleepQuietly(100);
+                }
+              }
+            });
+    report("legacy-optimistic", result);
+  }
+
+  @Test
+  @DisplayName("Locked batch path - ordered FOR UPDATE + single flush")
+  void lockedBatchPath() throws Exception {
+    Result result =
+        runBuyers(
+            () -> {
+              tx.executeWithoutResult(
+                  status -> {
+                    Map<Long, Product> locked =
+                        stockReservationService.lockProducts(List.of(hotProductId));
+                    stockReservationService.deductStock(locked, Map.of(hotProductId, 1));
+                  });
+              return true;
+            });
+    report("locked-batch", result);
+    assertEquals(0, result.failed(), "Khóa bi quan không được làm thất bại đơn hàng nào");
+  }
+
+  private Result runBuyers(Callable<Boolean> checkout) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(BUYERS);
+    AtomicInteger succeeded = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    long begin;
+    try {
+      for (int b = 0; b < BUYERS; b++) {
+        pool.submit(
+            () -> {
+              start.await();
+              for (int i = 0; i < CHECKOUTS_PER_BUYER; i++) {
+                if (checkout.call()) {
+                  succeeded.incrementAndGet();
+                } else {
+                  failed.incrementAndGet();
+                }
+              }
+              return null;
+            });
+      }
+      begin = System.nanoTime();
+      start.countDown();
+      pool.shutdown();
+      assertTrue(pool.awaitTermination(5, TimeUnit.MINUTES));
+    } finally {
+      pool.shutdownNow();
+    }
+    long elapsedNanos = System.nanoTime() - begin;
+    int remaining =
+        tx.execute(status -> productRepository.findById(hotProductId).orElseThrow())
+            .getStockQuantity();
+    // Không được bán vượt hoặc mất cập nhật
+    assertEquals(INITIAL_STOCK - succeeded.get(), remaining);
+    return new Result(succeeded.get(), failed.get(), elapsedNanos);
+  }
+
+  private void report(String label, Result result) {
+    double seconds = result.elapsedNanos() / 1_000_000_000.0;
+    log.info(
+        "[stock-bench] {}: buyers={}, ok={}, failed={}, elapsed={}s, throughput={} checkouts/s",
+        label,
+        BUYERS,
+        result.succeeded(),
+        result.failed(),
+        String.format("%.2f", seconds),
+        String.format("%.1f", result.succeeded() / seconds));
+  }
+
+  private static void sleepQuietly(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private record Result(int succeeded, int failed, long elapsedNanos) {}
+}
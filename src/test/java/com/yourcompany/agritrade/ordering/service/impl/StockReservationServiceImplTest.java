@@ -0,0 +1,221 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import com.yourcompany.agritrade.catalog.domain.Product;
+import com.yourcompany.agritrade.catalog.event.CatalogChangedEvent;
+import com.yourcompany.agritrade.catalog.repository.ProductRepository;
+import com.yourcompany.agritrade.catalog.service.HotStockLedgerService;
+import com.yourcompany.agritrade.catalog.service.HotStockLedgerService.ReservationResult;
+import com.yourcompany.agritrade.common.exception.OutOfStockException;
+import java.util.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationServiceImplTest {
+
+  @Mock private ProductRepository productRepository;
+  @Mock private HotStockLedgerService hotStockLedgerService;
+  @Mock private ApplicationEventPublisher eventPublisher;
+
+  @InjectMocks private StockReservationServiceImpl stockReservationService;
+
+  private Product product1, product2;
+
+  @BeforeEach
+  void setUp() {
+    product1 = Product.builder().id(10L).name("Sản phẩm A").stockQuantity(10).build();
+    product2 = Product.builder().id(20L).name("Sản phẩm B").stockQuantity(5).build();
+  }
+
+  @Test
+  @DisplayName("Lock Products - Loads All Ids Sorted In One Query")
+  void lockProducts_loadsDistinctSortedIdsInSingleQuery() {
+    when(productRepository.findAllByIdInForUpdate(List.of(10L, 20L)))
+        .thenReturn(List.of(product1, product2));
+
+    Map<Long, Product> result = stockReservationService.lockProducts(List.of(20L, 10L, 20L));
+
+    assertEquals(2, result.size());
+    assertSame(product1, result.get(10L));
+    verify(productRepository, times(1)).findAllByIdInForUpdate(List.of(10L, 20L));
+    verifyNoMoreInteractions(productRepository);
+  }
+
+  @Test
+  @DisplayName("Lock Products - Empty Input - No Query")
+  void lockProducts_whenEmpty_returnsEmptyWithoutQuery() {
+    assertTrue(stockReservationService.lockProducts(Collections.emptyList()).isEmpty());
+    verifyNoInteractions(productRepository);
+  }
+
+  @Test
+  @DisplayName("Deduct Stock - Writes All Products In One Flush")
+  @SuppressWarnings("unchecked")
+  void deductStock_updatesAllProductsInSingleFlush() {
+    Map<Long, Product> locked = Map.of(10L, product1, 20L, product2);
+
+    stockReservationService.deductStock(locked, Map.of(10L, 3, 20L, 5));
+
+    assertEquals(7, product1.getStockQuantity());
+    assertEquals(0, product2.getStockQuantity());
+    assertNotNull(product1.getLastStockUpdate());
+    ArgumentCaptor<List<Product>> captor = ArgumentCaptor.forClass(List.class);
+    verify(productRepository, times(1)).saveAllAndFlush(captor.capture());
+    assertEquals(2, captor.getValue().size());
+    verify(productRepository, never()).saveAndFlush(any());
+    verify(eventPublisher)
+        .publishEvent(CatalogChangedEvent.stockChanged(List.of(product1, product2)));
+  }
+
+  @Test
+  @DisplayName("Deduct Stock - Insufficient Stock - Throws OutOfStockException")
+  void deductStock_whenInsufficient_throwsOutOfStock() {
+    Map<Long, Product> locked = Map.of(20L, product2);
+
+    OutOfStockException ex =
+        assertThrows(
+            OutOfStockException.class,
+            () -> stockReservationService.deductStock(locked, Map.of(20L, 6)));
+
+    assertEquals(5, ex.getAvailableStock());
+    assertEquals(5, product2.getStockQuantity());
+    verify(productRepository, never()).saveAllAndFlush(any());
+  }
+
+  @Test
+  @DisplayName("Deduct Stock - Product Not Locked - Throws IllegalStateException")
+  void deductStock_whenProductNotLocked_throwsIllegalState() {
+    assertThrows(
+        IllegalStateException.class,
+        () -> stockReservationService.deductStock(Map.of(10L, product1), Map.of(20L, 1)));
+  }
+
+  @Test
+  @DisplayName("Lock Products - Hot Stock Products Are Loaded Without Row Lock")
+  void lockProducts_whenHotStock_skipsRowLock() {
+    product2.setHotStockEnabled(true);
+    when(hotStockLedgerService.findHotProductIds(List.of(10L, 20L))).thenReturn(Set.of(20L));
+    when(productRepository.findAllByIdInForUpdate(List.of(10L))).thenReturn(List.of(product1));
+    when(productRepository.findAllById(Set.of(20L))).thenReturn(List.of(product2));
+
+    Map<Long, Product> result = stockReservationService.lockProducts(List.of(10L, 20L));
+
+    assertEquals(2, result.size());
+    verify(productRepository, never()).findAllByIdInForUpdate(List.of(10L, 20L));
+  }
+
+  @Test
+  @DisplayName("Get Available Stock - Uses Ledger For Hot Stock Products")
+  void getAvailableStock_usesLedgerForHotProducts() {
+    product2.setHotStockEnabled(true);
+    when(hotStockLedgerService.getAvailableStock(List.of(20L))).thenReturn(Map.of(20L, 2));
+
+    Map<Long, Integer> result =
+        stockReservationService.getAvailableStock(Map.of(10L, product1, 20L, product2));
+
+    assertEquals(10, result.get(10L));
+    assertEquals(2, result.get(20L));
+  }
+
+  @Test
+  @DisplayName("Deduct Stock - Hot Stock Reserved In Ledger, Not Written To DB")
+  @SuppressWarnings("unchecked")
+  void deductStock_whenHotStock_reservesInLedger() {
+    product2.setHotStockEnabled(true);
+    when(hotStockLedgerService.tryReserve(Map.of(20L, 4))).thenReturn(ReservationResult.ok());
+
+    stockReservationService.deductStock(
+        Map.of(10L, product1, 20L, product2), Map.of(10L, 3, 20L, 4));
+
+    assertEquals(7, product1.getStockQuantity());
+    assertEquals(5, product2.getStockQuantity()); // DB được cập nhật bằng ghi trễ
+    ArgumentCaptor<List<Product>> captor = ArgumentCaptor.forClass(List.class);
+    verify(productRepository).saveAllAndFlush(captor.capture());
+    assertEquals(List.of(product1), captor.getValue());
+  }
+
+  @Test
+  @DisplayName("Deduct Stock - Hot Stock Insufficient In Ledger - Throws OutOfStockException")
+  void deductStock_whenHotStockInsufficient_throwsOutOfStock() {
+    product2.setHotStockEnabled(true);
+    when(hotStockLedgerService.tryReserve(Map.of(20L, 4)))
+        .thenReturn(new ReservationResult(false, 20L, false));
+    when(hotStockLedgerService.getAvailableStock(List.of(20L))).thenReturn(Map.of(20L, 1));
+
+    OutOfStockException ex =
+        assertThrows(
+            OutOfStockException.class,
+            () -> stockReservationService.deductStock(Map.of(20L, product2), Map.of(20L, 4)));
+
+    assertEquals(1, ex.getAvailableStock());
+    verify(productRepository, never()).saveAllAndFlush(any());
+  }
+
+  @Test
+  @DisplayName("Deduct Stock - Hot Stock Counter Missing - Falls Back To Conditional DB Update")
+  void deductStock_whenHotStockCounterMissing_fallsBackToDatabase() {
+    product2.setHotStockEnabled(true);
+    when(hotStockLedgerService.tryReserve(Map.of(20L, 4)))
+        .thenReturn(new ReservationResult(false, 20L, true));
+    when(productRepository.decrementStockIfAvailable(eq(20L), eq(4), any())).thenReturn(1);
+
+    stockReservationService.deductStock(Map.of(20L, product2), Map.of(20L, 4));
+
+    verify(productRepository).decrementStockIfAvailable(eq(20L), eq(4), any());
+    verify(hotStockLedgerService, times(1)).tryReserve(any());
+    verify(hotStockLedgerService).reseed(20L);
+  }
+
+  @Test
+  @DisplayName("Deduct Stock - Hot Stock Counter Missing - Reseeds Ledger Only After Commit")
+  void deductStock_whenHotStockCounterMissing_reseedsAfterCommit() {
+    product2.setHotStockEnabled(true);
+    when(hotStockLedgerService.tryReserve(Map.of(20L, 4)))
+        .thenReturn(new ReservationResult(false, 20L, true));
+    when(productRepository.decrementStockIfAvailable(eq(20L), eq(4), any())).thenReturn(1);
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      stockReservationService.deductStock(Map.of(20L, product2), Map.of(20L, 4));
+
+      // Seed cần khóa hàng vừa bị UPDATE giữ: chưa được chạy trước khi commit
+      verify(hotStockLedgerService, never()).reseed(any());
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(TransactionSynchronization::afterCommit);
+      verify(hotStockLedgerService).reseed(20L);
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  @DisplayName("Restore Hot Stock - Non Hot Product - Returns False")
+  void restoreHotStock_whenNotHot_returnsFalse() {
+    assertFalse(stockReservationService.restoreHotStock(product1, 2));
+    verify(hotStockLedgerService, never()).adjust(any(), anyInt());
+  }
+
+  @Test
+  @DisplayName("Restore Hot Stock - Hot Product - Adjusts Ledger")
+  void restoreHotStock_whenHot_adjustsLedger() {
+    product2.setHotStockEnabled(true);
+
+    assertTrue(stockReservationService.restoreHotStock(product2, 2));
+    verify(hotStockLedgerService).adjust(20L, 2);
+  }
+}
@@ -0,0 +1,99 @@
+package com.yourcompany.agritrade.ordering.service.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cổng thanh toán giả chạy trên loopback cho test: trả JSON thành công sau một độ trễ cấu hình được
+ * (giả lập cổng chậm), đếm số request, số request xử lý đồng thời và số kết nối TCP client đã mở.
+ */
+final class StubPaymentGateway implements AutoCloseable {
+
+  private static final byte[] SUCCESS_BODY =
+      "{\"resultCode\":0,\"vnp_ResponseCode\":\"00\",\"payUrl\":\"https://stub/pay\"}"
+          .getBytes(StandardCharsets.UTF_8);
+
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+  private volatile long latencyMs;
+  private volatile int statusCode = 200;
+
+  private StubPaymentGateway(HttpServer server) {
+    this.server = server;
+    server.createContext("/", this::handle);
+    server.setExecutor(executor);
+    server.start();
+  }
+
+  static StubPaymentGateway start() throws IOException {
+    return new StubPaymentGateway(
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0));
+  }
+
+  String url() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/gateway";
+  }
+
+  void setLatencyMs(long latencyMs) {
+    this.latencyMs = latencyMs;
+  }
+
+  void setStatusCode(int statusCode) {
+    this.statusCode = statusCode;
+  }
+
+  int requestCount() {
+    return requests.get();
+  }
+
+  int maxInFlight() {
+    return maxInFlight.get();
+  }
+
+  // Mỗi kết nối TCP của client có một cổng nguồn riêng
+  int connectionCount() {
+    return connections.size();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    connections.add(exchange.getRemoteAddress());
+    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    try {
+      exchange.getRequestBody().readAllBytes();
+      if (latencyMs > 0) {
+        Thread.sleep(latencyMs);
+      }
+      exchange.getResponseHeaders().set("Content-Type", "application/json");
+      exchange.sendResponseHeaders(statusCode, SUCCESS_BODY.length);
+      exchange.getResponseBody().write(SUCCESS_BODY);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      // Client đã hết thời gian chờ và đóng kết nối
+    } finally {
+      inFlight.decrementAndGet();
+      exchange.close();
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
@@ -23,6 +23,7 @@ import com.yourcompany.agritrade.usermanagement.repository.BusinessProfileReposi
 import com.yourcompany.agritrade.usermanagement.repository.FarmerProfileRepository;
 import com.yourcompany.agritrade.usermanagement.repository.RoleRepository;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import com.yourcompany.agritrade.usermanagement.service.UserCacheService;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -46,6 +47,7 @@ class AdminUserServiceImplTest {
 
   @Mock private UserRepository userRepository;
   @Mock private RoleRepository roleRepository;
+  @Mock private UserCacheService userCacheService;
   @Mock private FarmerProfileRepository farmerProfileRepository;
   @Mock private BusinessProfileRepository businessProfileRepository;
   @Mock private UserMapper userMapper;
@@ -145,6 +147,7 @@ class AdminUserServiceImplTest {
       assertFalse(testUser.isActive());
       verify(userRepository).save(testUser);
       verify(notificationService).sendAccountStatusUpdateNotification(testUser, false);
+      verify(userCacheService).evictAfterCommit(testUser.getId());
     }
 
     @Test
@@ -176,6 +179,7 @@ class AdminUserServiceImplTest {
       assertEquals(2, testUser.getRoles().size());
       verify(userRepository).save(testUser);
       verify(notificationService).sendRolesUpdateNotification(testUser);
+      verify(userCacheService).evictAfterCommit(testUser.getId());
     }
   }
 
@@ -17,10 +17,13 @@ import com.yourcompany.agritrade.common.util.SecurityUtils;
 import com.yourcompany.agritrade.interaction.domain.Review;
 import com.yourcompany.agritrade.interaction.repository.ReviewRepository;
 import com.yourcompany.agritrade.ordering.domain.Order;
+import com.yourcompany.agritrade.ordering.domain.OrderDailyStat;
+import com.yourcompany.agritrade.ordering.domain.OrderStatScope;
 import com.yourcompany.agritrade.ordering.domain.OrderStatus;
 import com.yourcompany.agritrade.ordering.domain.SupplyOrderRequestStatus;
 import com.yourcompany.agritrade.ordering.dto.response.OrderSummaryResponse;
 import com.yourcompany.agritrade.ordering.mapper.OrderMapper;
+import com.yourcompany.agritrade.ordering.repository.OrderDailyStatRepository;
 import com.yourcompany.agritrade.ordering.repository.OrderRepository;
 import com.yourcompany.agritrade.ordering.repository.SupplyOrderRequestRepository;
 import com.yourcompany.agritrade.usermanagement.domain.User;
@@ -29,12 +32,9 @@ import com.yourcompany.agritrade.usermanagement.mapper.FarmerSummaryMapper;
 import com.yourcompany.agritrade.usermanagement.mapper.UserMapper;
 import com.yourcompany.agritrade.usermanagement.repository.FarmerProfileRepository;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
-import jakarta.persistence.Tuple;
 import java.math.BigDecimal;
-import java.sql.Date;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.*;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -52,6 +52,7 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 class DashboardServiceImplTest {
 
   @Mock private OrderRepository orderRepository;
+  @Mock private OrderDailyStatRepository orderDailyStatRepository;
   @Mock private ProductRepository productRepository;
   @Mock private UserRepository userRepository;
   @Mock private FarmerProfileRepository farmerProfileRepository;
@@ -72,8 +73,6 @@ class DashboardServiceImplTest {
   private final Long FARMER_ID = 1L;
   private final List<OrderStatus> REVENUE_STATUSES =
       Arrays.asList(OrderStatus.SHIPPING, OrderStatus.DELIVERED);
-  private final List<OrderStatus> PENDING_STATUSES =
-      Arrays.asList(OrderStatus.PENDING, OrderStatus.CONFIRMED, OrderStatus.PROCESSING);
 
   @BeforeEach
   void setUp() {
@@ -105,21 +104,27 @@ class DashboardServiceImplTest {
     @Test
     @DisplayName("Get Farmer Dashboard Stats - Success")
     void getFarmerDashboardStats_success() {
-      LocalDateTime todayStart = LocalDate.now().atStartOfDay();
-      LocalDateTime todayEnd = LocalDate.now().atTime(LocalTime.MAX);
-      LocalDateTime monthStart = LocalDate.now().withDayOfMonth(1).atStartOfDay();
+      LocalDate today = LocalDate.now();
+      LocalDate monthStart = today.withDayOfMonth(1);
 
-      when(orderRepository.countByFarmerIdAndCreatedAtBetween(FARMER_ID, todayStart, todayEnd))
+      when(orderDailyStatRepository.sumOrderCount(OrderStatScope.FARMER, FARMER_ID, today, today))
           .thenReturn(5L);
-      when(orderRepository.countByFarmerIdAndCreatedAtBetween(FARMER_ID, monthStart, todayEnd))
+      when(orderDailyStatRepository.sumOrderCount(
+              OrderStatScope.FARMER, FARMER_ID, monthStart, today))
           .thenReturn(20L);
-      when(orderRepository.sumTotalAmountByFarmerIdAndStatusInAndCreatedAtBetween(
-              FARMER_ID, REVENUE_STATUSES, todayStart, todayEnd))
+      when(orderDailyStatRepository.sumTotalAmount(
+              OrderStatScope.FARMER, FARMER_ID, REVENUE_STATUSES, today, today))
           .thenReturn(new BigDecimal("1500.00"));
-      when(orderRepository.sumTotalAmountByFarmerIdAndStatusInAndCreatedAtBetween(
-              FARMER_ID, REVENUE_STATUSES, monthStart, todayEnd))
+      when(orderDailyStatRepository.sumTotalAmount(
+              OrderStatScope.FARMER, FARMER_ID, REVENUE_STATUSES, monthStart, today))
           .thenReturn(new BigDecimal("10000.00"));
-      when(orderRepository.countByFarmerIdAndStatusIn(FARMER_ID, PENDING_STATUSES)).thenReturn(3L);
+      // Đơn chờ xử lý = tổng các trạng thái PENDING/CONFIRMED/PROCESSING, bỏ qua DELIVERED
+      when(orderDailyStatRepository.sumOrderCountGroupByStatus(OrderStatScope.FARMER, FARMER_ID))
+          .thenReturn(
+              List.of(
+                  new Object[] {OrderStatus.PENDING, 2L},
+                  new Object[] {OrderStatus.PROCESSING, 1L},
+                  new Object[] {OrderStatus.DELIVERED, 9L}));
       when(productRepository.countByFarmerIdAndB2bEnabledAndStockQuantityLessThan(
               FARMER_ID, false, 5))
           .thenReturn(2L);
@@ -207,16 +212,10 @@ class DashboardServiceImplTest {
     void getFarmerRevenueChartData_success() {
       LocalDate startDate = LocalDate.now().minusDays(1);
       LocalDate endDate = LocalDate.now();
-      LocalDateTime startDateTime = startDate.atStartOfDay();
-      LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
-
-      Tuple tuple1 = mock(Tuple.class);
-      when(tuple1.get(0)).thenReturn(Date.valueOf(startDate));
-      when(tuple1.get(1, BigDecimal.class)).thenReturn(new BigDecimal("120.50"));
-
-      when(orderRepository.sumRevenueByDayForFarmer(
-              FARMER_ID, startDateTime, endDateTime, REVENUE_STATUSES))
-          .thenReturn(List.of(tuple1));
+      Object[] row1 = {startDate, new BigDecimal("120.50")};
+      when(orderDailyStatRepository.findDailyTotalAmounts(
+              OrderStatScope.FARMER, FARMER_ID, REVENUE_STATUSES, startDate, endDate))
+          .thenReturn(List.<Object[]>of(row1));
 
       List<FarmerChartDataResponse> result =
           dashboardService.getFarmerRevenueChartData(authentication, startDate, endDate);
@@ -235,22 +234,24 @@ class DashboardServiceImplTest {
     @Test
     @DisplayName("Get Admin Dashboard Stats - Success")
     void getAdminDashboardStats_success() {
-      LocalDateTime todayStart = LocalDate.now().atStartOfDay();
-      LocalDateTime todayEnd = LocalDate.now().atTime(LocalTime.MAX);
-      LocalDateTime monthStart = LocalDate.now().withDayOfMonth(1).atStartOfDay();
-      LocalDateTime prevMonthStart = monthStart.minusMonths(1);
-      LocalDateTime prevMonthEnd = monthStart.minusNanos(1);
-
-      when(orderRepository.countByCreatedAtBetween(todayStart, todayEnd)).thenReturn(10L);
-      when(orderRepository.countByCreatedAtBetween(monthStart, todayEnd)).thenReturn(50L);
-      when(orderRepository.sumTotalAmountByStatusInAndCreatedAtBetween(
-              REVENUE_STATUSES, todayStart, todayEnd))
+      LocalDate today = LocalDate.now();
+      LocalDate monthStart = today.withDayOfMonth(1);
+      LocalDate prevMonthStart = monthStart.minusMonths(1);
+      LocalDate prevMonthEnd = monthStart.minusDays(1);
+      Long all = OrderDailyStat.ALL_PARTIES;
+
+      when(orderDailyStatRepository.sumOrderCount(OrderStatScope.ALL, all, today, today))
+          .thenReturn(10L);
+      when(orderDailyStatRepository.sumOrderCount(OrderStatScope.ALL, all, monthStart, today))
+          .thenReturn(50L);
+      when(orderDailyStatRepository.sumTotalAmount(
+              OrderStatScope.ALL, all, REVENUE_STATUSES, today, today))
           .thenReturn(new BigDecimal("5000.00"));
-      when(orderRepository.sumTotalAmountByStatusInAndCreatedAtBetween(
-              REVENUE_STATUSES, monthStart, todayEnd))
+      when(orderDailyStatRepository.sumTotalAmount(
+              OrderStatScope.ALL, all, REVENUE_STATUSES, monthStart, today))
           .thenReturn(new BigDecimal("25000.00"));
-      when(orderRepository.sumTotalAmountByStatusInAndCreatedAtBetween(
-              REVENUE_STATUSES, prevMonthStart, prevMonthEnd))
+      when(orderDailyStatRepository.sumTotalAmount(
+              OrderStatScope.ALL, all, REVENUE_STATUSES, prevMonthStart, prevMonthEnd))
           .thenReturn(new BigDecimal("20000.00"));
 
       when(userRepository.count()).thenReturn(100L);
@@ -263,12 +264,8 @@ class DashboardServiceImplTest {
       when(productRepository.countByStatus(ProductStatus.PENDING_APPROVAL)).thenReturn(8L);
       when(reviewRepository.countByStatus(ReviewStatus.PENDING)).thenReturn(12L);
 
-      Arrays.stream(OrderStatus.values())
-          .forEach(
-              status ->
-                  when(orderRepository.countByStatus(status))
-                      .thenReturn(2L) // Giả sử mỗi status có 2 order
-              );
+      when(orderDailyStatRepository.sumOrderCountGroupByStatus(OrderStatScope.ALL, all))
+          .thenReturn(List.<Object[]>of(new Object[] {OrderStatus.PENDING, 2L}));
 
       DashboardStatsResponse stats = dashboardService.getAdminDashboardStats();
 
@@ -284,6 +281,11 @@ class DashboardServiceImplTest {
       assertEquals(12L, stats.getPendingReviews());
       assertNotNull(stats.getOrderStatusDistribution());
       assertEquals(2L, stats.getOrderStatusDistribution().get(OrderStatus.PENDING.name()));
+      // Trạng thái không có dòng tổng hợp vẫn xuất hiện với giá trị 0
+      assertEquals(0L, stats.getOrderStatusDistribution().get(OrderStatus.DELIVERED.name()));
+      verify(farmerProfileRepository, times(1))
+          .countByVerificationStatus(VerificationStatus.PENDING);
+      verifyNoInteractions(orderRepository);
     }
 
     @Test
@@ -291,12 +293,10 @@ class DashboardServiceImplTest {
     void getDailyRevenueForAdminChart_success() {
       LocalDate startDate = LocalDate.now().minusDays(1);
       LocalDate endDate = LocalDate.now();
-      LocalDateTime startDateTime = startDate.atStartOfDay();
-      LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
-
-      Object[] row1 = {Date.valueOf(startDate), new BigDecimal("1000.00")};
-      Object[] row2 = {Date.valueOf(endDate), new BigDecimal("1500.00")};
-      when(orderRepository.findDailyRevenueBetween(REVENUE_STATUSES, startDateTime, endDateTime))
+      Object[] row1 = {startDate, new BigDecimal("1000.00")};
+      Object[] row2 = {endDate, new BigDecimal("1500.00")};
+      when(orderDailyStatRepository.findDailyTotalAmounts(
+              OrderStatScope.ALL, OrderDailyStat.ALL_PARTIES, REVENUE_STATUSES, startDate, endDate))
           .thenReturn(List.of(row1, row2));
 
       List<TimeSeriesDataPoint<BigDecimal>> result =
@@ -313,12 +313,10 @@ class DashboardServiceImplTest {
     void getDailyOrderCountForAdminChart_success() {
       LocalDate startDate = LocalDate.now().minusDays(1);
       LocalDate endDate = LocalDate.now();
-      LocalDateTime startDateTime = startDate.atStartOfDay();
-      LocalDateTime endDateTime = endDate.atTime(LocalTime.MAX);
-
-      Object[] row1 = {Date.valueOf(startDate), 5L};
-      Object[] row2 = {Date.valueOf(endDate), 8L};
-      when(orderRepository.findDailyOrderCountBetween(startDateTime, endDateTime))
+      Object[] row1 = {startDate, 5L};
+      Object[] row2 = {endDate, 8L};
+      when(orderDailyStatRepository.findDailyOrderCounts(
+              OrderStatScope.ALL, OrderDailyStat.ALL_PARTIES, startDate, endDate))
           .thenReturn(List.of(row1, row2));
 
       List<TimeSeriesDataPoint<Long>> result =
@@ -17,6 +17,7 @@ import com.yourcompany.agritrade.usermanagement.mapper.FarmerProfileMapper;
 import com.yourcompany.agritrade.usermanagement.repository.FarmerProfileRepository;
 import com.yourcompany.agritrade.usermanagement.repository.RoleRepository;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import com.yourcompany.agritrade.usermanagement.service.UserCacheService;
 import java.util.HashSet;
 import java.util.Optional;
 import org.junit.jupiter.api.AfterEach;
@@ -38,6 +39,7 @@ class FarmerProfileServiceImplUnitTest {
   @Mock private UserRepository userRepository;
   @Mock private FarmerProfileMapper farmerProfileMapper;
   @Mock private RoleRepository roleRepository;
+  @Mock private UserCacheService userCacheService;
   @Mock private Authentication authentication;
 
   // SỬA LỖI: Thêm biến để quản lý mock static
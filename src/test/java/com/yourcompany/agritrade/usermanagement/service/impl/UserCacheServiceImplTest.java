@@ -0,0 +1,155 @@
+package com.yourcompany.agritrade.usermanagement.service.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.yourcompany.agritrade.usermanagement.domain.FarmerProfile;
+import com.yourcompany.agritrade.usermanagement.domain.Role;
+import com.yourcompany.agritrade.usermanagement.domain.User;
+import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class UserCacheServiceImplTest {
+
+  @Mock private UserRepository userRepository;
+
+  private MutableClock clock;
+  private UserCacheServiceImpl userCacheService;
+  private User managedUser;
+
+  @BeforeEach
+  void setUp() {
+    clock = new MutableClock(Instant.parse("2024-05-10T00:00:00Z"));
+    userCacheService = new UserCacheServiceImpl(userRepository, Duration.ofSeconds(30), 100, clock);
+
+    managedUser = new User();
+    managedUser.setId(1L);
+    managedUser.setEmail("farmer@example.com");
+    managedUser.setPasswordHash("hash");
+    managedUser.setFullName("Farmer");
+    managedUser.setActive(true);
+    managedUser.setRoles(new HashSet<>(Set.of(new Role())));
+    FarmerProfile profile = new FarmerProfile();
+    profile.setUserId(1L);
+    profile.setFarmName("Farm");
+    profile.setUser(managedUser);
+    managedUser.setFarmerProfile(profile);
+  }
+
+  @Test
+  @DisplayName("Find By Id - Returns A Fresh Detached Copy And Serves Repeated Reads From Cache")
+  void findById_returnsDetachedCopyAndCaches() {
+    when(userRepository.findWithFarmerProfileById(1L)).thenReturn(Optional.of(managedUser));
+
+    User first = userCacheService.findById(1L).orElseThrow();
+    User second = userCacheService.findById(1L).orElseThrow();
+
+    assertNotSame(first, second);
+    assertNotSame(managedUser, first);
+    assertEquals("farmer@example.com", first.getEmail());
+    assertNull(first.getPasswordHash());
+    assertTrue(first.isActive());
+    assertEquals(1, first.getRoles().size());
+    assertNotSame(managedUser.getRoles(), first.getRoles());
+    assertNotSame(managedUser.getFarmerProfile(), first.getFarmerProfile());
+    assertEquals("Farm", first.getFarmerProfile().getFarmName());
+    assertSame(first, first.getFarmerProfile().getUser());
+    verify(userRepository, times(1)).findWithFarmerProfileById(1L);
+  }
+
+  @Test
+  @DisplayName("Find By Id - Changes To A Returned User Do Not Leak Into The Cache")
+  void findById_mutatingResult_doesNotAffectLaterReads() {
+    when(userRepository.findWithFarmerProfileById(1L)).thenReturn(Optional.of(managedUser));
+
+    User first = userCacheService.findById(1L).orElseThrow();
+    first.setFullName("Changed");
+    first.getRoles().iterator().next().setDescription("Changed");
+    first.getFarmerProfile().setFarmName("Changed");
+    first.getRoles().clear();
+
+    User second = userCacheService.findById(1L).orElseThrow();
+
+    assertEquals("Farmer", second.getFullName());
+    assertEquals(1, second.getRoles().size());
+    assertNull(second.getRoles().iterator().next().getDescription());
+    assertEquals("Farm", second.getFarmerProfile().getFarmName());
+    verify(userRepository, times(1)).findWithFarmerProfileById(1L);
+  }
+
+  @Test
+  @DisplayName("Find By Id - Reloads After TTL Expires")
+  void findById_reloadsAfterTtl() {
+    when(userRepository.findWithFarmerProfileById(1L)).thenReturn(Optional.of(managedUser));
+
+    userCacheService.findById(1L);
+    clock.advance(Duration.ofSeconds(31));
+    userCacheService.findById(1L);
+
+    verify(userRepository, times(2)).findWithFarmerProfileById(1L);
+  }
+
+  @Test
+  @DisplayName("Evict After Commit - Without Transaction Evicts Immediately")
+  void evictAfterCommit_withoutTransaction_evictsImmediately() {
+    when(userRepository.findWithFarmerProfileById(1L)).thenReturn(Optional.of(managedUser));
+
+    userCacheService.findById(1L);
+    userCacheService.evictAfterCommit(1L);
+    userCacheService.findById(1L);
+
+    verify(userRepository, times(2)).findWithFarmerProfileById(1L);
+  }
+
+  @Test
+  @DisplayName("Find By Id - Missing User Is Not Cached")
+  void findById_missingUser_returnsEmpty() {
+    when(userRepository.findWithFarmerProfileById(2L)).thenReturn(Optional.empty());
+
+    assertTrue(userCacheService.findById(2L).isEmpty());
+    assertTrue(userCacheService.findById(2L).isEmpty());
+
+    verify(userRepository, times(2)).findWithFarmerProfileById(2L);
+  }
+
+  private static final class MutableClock extends Clock {
+    private Instant now;
+
+    private MutableClock(Instant now) {
+      this.now = now;
+    }
+
+    void advance(Duration duration) {
+      now = now.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
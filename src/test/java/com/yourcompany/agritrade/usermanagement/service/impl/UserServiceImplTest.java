@@ -30,6 +30,7 @@ import com.yourcompany.agritrade.usermanagement.repository.BusinessProfileReposi
 import com.yourcompany.agritrade.usermanagement.repository.FarmerProfileRepository;
 import com.yourcompany.agritrade.usermanagement.repository.RoleRepository;
 import com.yourcompany.agritrade.usermanagement.repository.UserRepository;
+import com.yourcompany.agritrade.usermanagement.service.UserCacheService;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
 import java.time.LocalDateTime;
@@ -62,6 +63,7 @@ class UserServiceImplTest {
 
   @Mock private UserRepository userRepository;
   @Mock private RoleRepository roleRepository;
+  @Mock private UserCacheService userCacheService;
   @Mock private PasswordEncoder passwordEncoder;
   @Mock private UserMapper userMapper;
   @Mock private FarmerProfileRepository farmerProfileRepository;
@@ -470,6 +472,7 @@ class UserServiceImplTest {
       assertFalse(testUser.isActive());
       verify(notificationService).sendAccountStatusUpdateNotification(testUser, false);
       verify(userRepository).save(testUser);
+      verify(userCacheService).evictAfterCommit(testUser.getId());
     }
 
     @Test
@@ -662,7 +665,7 @@ class UserServiceImplTest {
       String refreshToken = "new-refresh-token";
 
       when(userRepository.findByEmail(testUser.getEmail())).thenReturn(Optional.of(testUser));
-      when(jwtTokenProvider.generateAccessToken(auth)).thenReturn(accessToken);
+      when(jwtTokenProvider.generateAccessToken(auth, testUser.getId())).thenReturn(accessToken);
       when(jwtTokenProvider.generateRefreshToken(auth)).thenReturn(refreshToken);
       when(userRepository.save(any(User.class))).thenReturn(testUser);
       when(userMapper.toUserResponse(testUser)).thenReturn(userResponseDto);
@@ -712,7 +715,7 @@ class UserServiceImplTest {
                   newUser.setId(4L);
                   return newUser;
                 });
-        when(jwtTokenProvider.generateAccessToken(any(Authentication.class)))
+        when(jwtTokenProvider.generateAccessToken(any(Authentication.class), any()))
             .thenReturn("new-access");
         when(jwtTokenProvider.generateRefreshToken(any(Authentication.class)))
             .thenReturn("new-refresh");
@@ -757,7 +760,7 @@ class UserServiceImplTest {
 
         when(userRepository.findByEmail(googleEmail)).thenReturn(Optional.of(testUser));
         when(userRepository.save(any(User.class))).thenReturn(testUser);
-        when(jwtTokenProvider.generateAccessToken(any(Authentication.class)))
+        when(jwtTokenProvider.generateAccessToken(any(Authentication.class), any()))
             .thenReturn("new-access");
         when(jwtTokenProvider.generateRefreshToken(any(Authentication.class)))
             .thenReturn("new-refresh");
@@ -787,7 +790,7 @@ class UserServiceImplTest {
       when(jwtTokenProvider.validateToken(oldRefreshToken)).thenReturn(true);
       when(jwtTokenProvider.getEmailFromToken(oldRefreshToken)).thenReturn(testUser.getEmail());
 
-      when(jwtTokenProvider.generateAccessToken(any(Authentication.class)))
+      when(jwtTokenProvider.generateAccessToken(any(Authentication.class), any()))
           .thenReturn(newAccessToken);
       when(jwtTokenProvider.generateRefreshToken(any(Authentication.class)))
           .thenReturn(newRefreshToken);